@@ -0,0 +1,72 @@
+package org.rajawali3d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.rajawali3d.ATransformable3D;
+import org.rajawali3d.animation.Animation;
+import org.rajawali3d.animation.AnimationScheduler;
+import org.rajawali3d.animation.TranslateAnimation3D;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One frame of {@code count} infinitely repeating translation tweens, driven either as individual
+ * {@link TranslateAnimation3D}s the way {@code Scene} updates registered animations, or by an
+ * {@link AnimationScheduler}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class AnimationSchedulerBenchmark {
+
+    private static final double FRAME = 1.0 / 60.0;
+
+    @Param({"1000", "10000"})
+    public int count;
+
+    private final List<Animation>    mAnimations = new ArrayList<>();
+    private final AnimationScheduler mScheduler  = new AnimationScheduler();
+
+    private static final class Target extends ATransformable3D {
+    }
+
+    @Setup
+    public void setup() {
+        final Vector3 to = new Vector3();
+        for (int i = 0; i < count; ++i) {
+            to.setAll(i, -i, i * 0.5);
+            final long duration = 500 + (i % 7) * 100;
+
+            final TranslateAnimation3D animation = new TranslateAnimation3D(to);
+            animation.setTransformable3D(new Target());
+            animation.setDurationMilliseconds(duration);
+            animation.setRepeatMode(Animation.RepeatMode.REVERSE_INFINITE);
+            animation.play();
+            mAnimations.add(animation);
+
+            final long handle = mScheduler.addTranslation(new Target(), to, duration, 0);
+            mScheduler.setRepeat(handle, Animation.RepeatMode.REVERSE_INFINITE, 0);
+        }
+    }
+
+    @Benchmark
+    public void animations() {
+        for (int i = 0, j = mAnimations.size(); i < j; ++i) {
+            final Animation animation = mAnimations.get(i);
+            if (animation.isPlaying()) {
+                animation.update(FRAME);
+            }
+        }
+    }
+
+    @Benchmark
+    public void scheduler() {
+        mScheduler.update(FRAME);
+    }
+}
@@ -0,0 +1,54 @@
+package org.rajawali3d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.rajawali3d.bounds.BoundingBox;
+import org.rajawali3d.cameras.Frustum;
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+
+/**
+ * Cost of the per object bounding volume work done while culling.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class BoundsBenchmark {
+
+    private final Matrix4 mModelMatrix = new Matrix4();
+    private final Frustum mFrustum     = new Frustum();
+    private BoundingBox mInside;
+    private BoundingBox mOutside;
+
+    @Setup
+    public void setup() {
+        mInside = new BoundingBox(new Vector3(-1, -1, -6), new Vector3(1, 1, -4));
+        mOutside = new BoundingBox(new Vector3(-1, -1, 4), new Vector3(1, 1, 6));
+        mModelMatrix.setAll(new Vector3(1, 2, 3), new Vector3(2, 2, 2),
+                               new Quaternion().fromEuler(10, 20, 30));
+
+        final Matrix4 projection = new Matrix4().setToPerspective(1, 100, 60, 16d / 9d);
+        final Matrix4 view = new Matrix4().setToLookAt(Vector3.ZERO, Vector3.NEG_Z.clone(), Vector3.Y);
+        mFrustum.update(projection.multiply(view).inverse());
+    }
+
+    @Benchmark
+    public BoundingBox transform() {
+        mInside.transform(mModelMatrix);
+        return mInside;
+    }
+
+    @Benchmark
+    public boolean boundsInFrustumVisible() {
+        return mFrustum.boundsInFrustum(mInside);
+    }
+
+    @Benchmark
+    public boolean boundsInFrustumCulled() {
+        return mFrustum.boundsInFrustum(mOutside);
+    }
+}
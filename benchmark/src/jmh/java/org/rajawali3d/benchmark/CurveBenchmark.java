@@ -0,0 +1,44 @@
+package org.rajawali3d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.rajawali3d.curves.CatmullRomCurve3D;
+import org.rajawali3d.math.vector.Vector3;
+
+/**
+ * Cost of evaluating a point on a {@link CatmullRomCurve3D}, as done every frame by path animations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class CurveBenchmark {
+
+    @Param({"false", "true"})
+    public boolean calculateTangents;
+
+    private final CatmullRomCurve3D mCurve  = new CatmullRomCurve3D();
+    private final Vector3           mResult = new Vector3();
+    private double mT;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < 32; ++i) {
+            mCurve.addPoint(new Vector3(Math.cos(i * 0.5) * i, Math.sin(i * 0.5) * i, i));
+        }
+        mCurve.setCalculateTangents(calculateTangents);
+    }
+
+    @Benchmark
+    public Vector3 calculatePoint() {
+        mT += 0.001;
+        if (mT > 1) {
+            mT = 0;
+        }
+        mCurve.calculatePoint(mResult, mT);
+        return mResult;
+    }
+}
@@ -0,0 +1,63 @@
+package org.rajawali3d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.rajawali3d.math.Matrix;
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.vector.Vector3;
+
+/**
+ * Single threaded cost of the {@link Matrix4} operations used for every object every frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class MatrixBenchmark {
+
+    private final Matrix4  mLhs    = new Matrix4();
+    private final Matrix4  mRhs    = new Matrix4();
+    private final Matrix4  mResult = new Matrix4();
+    private final double[] mArray  = new double[16];
+
+    @Setup
+    public void setup() {
+        mLhs.setToRotation(10, 20, 30).translate(1, 2, 3);
+        mRhs.setToScale(2, 3, 4).rotate(Vector3.Axis.Y, 45);
+    }
+
+    @Benchmark
+    public Matrix4 multiply() {
+        return mResult.setAll(mLhs).multiply(mRhs);
+    }
+
+    @Benchmark
+    public Matrix4 leftMultiply() {
+        return mResult.setAll(mLhs).leftMultiply(mRhs);
+    }
+
+    @Benchmark
+    public Matrix4 inverse() {
+        return mResult.setAll(mLhs).inverse();
+    }
+
+    @Benchmark
+    public Matrix4 rotateAxisAngle() {
+        return mResult.setAll(mLhs).rotate(Vector3.Axis.Z, 30);
+    }
+
+    @Benchmark
+    public double[] multiplyMM() {
+        Matrix.multiplyMM(mArray, 0, mLhs.getDoubleValues(), 0, mRhs.getDoubleValues(), 0);
+        return mArray;
+    }
+
+    @Benchmark
+    public double[] rotateM() {
+        mLhs.toArray(mArray);
+        Matrix.rotateM(mArray, 0, 30, 1, 1, 0);
+        return mArray;
+    }
+}
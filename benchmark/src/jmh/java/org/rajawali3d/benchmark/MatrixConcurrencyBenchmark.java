@@ -0,0 +1,46 @@
+package org.rajawali3d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.rajawali3d.math.Matrix;
+
+/**
+ * Compares the reentrant {@link Matrix#rotateM(double[], int, double, double, double, double)} against
+ * the previous implementation, which serialized every caller on a shared static scratch array, when
+ * called from a pool of worker threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Threads(4)
+public class MatrixConcurrencyBenchmark {
+
+    private static final double[] sTemp = new double[32];
+
+    private final double[] mMatrix = new double[16];
+
+    @Setup
+    public void setup() {
+        Matrix.setRotateEulerM(mMatrix, 0, 10, 20, 30);
+    }
+
+    @Benchmark
+    public double[] reentrantRotateM() {
+        Matrix.rotateM(mMatrix, 0, 1, 1, 1, 0);
+        return mMatrix;
+    }
+
+    @Benchmark
+    public double[] sharedScratchRotateM() {
+        synchronized (sTemp) {
+            Matrix.setRotateM(sTemp, 0, 1, 1, 1, 0);
+            Matrix.multiplyMM(sTemp, 16, mMatrix, 0, sTemp, 0);
+            System.arraycopy(sTemp, 16, mMatrix, 0, 16);
+        }
+        return mMatrix;
+    }
+}
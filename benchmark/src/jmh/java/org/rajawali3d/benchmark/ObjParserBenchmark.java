@@ -0,0 +1,218 @@
+package org.rajawali3d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.rajawali3d.loader.ObjParser;
+import org.rajawali3d.util.IntArrayList;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the geometry of an OBJ file with the byte level {@link ObjParser} against the line and
+ * {@link StringTokenizer} based loop it replaced in {@code LoaderOBJ}, kept here as the reference. Only the
+ * statements both read are timed, building objects and materials is the same for either. The parallel run uses
+ * four threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ObjParserBenchmark {
+
+    @Param({"100", "500"})
+    public int gridSize;
+
+    private byte[]          mData;
+    private ExecutorService mExecutor;
+
+    @Setup
+    public void setup() throws Exception {
+        final StringBuilder builder = new StringBuilder("# grid\nmtllib grid.mtl\no grid\n");
+        for (int y = 0; y <= gridSize; ++y) {
+            for (int x = 0; x <= gridSize; ++x) {
+                builder.append(String.format(Locale.US, "v %f %f %f\n", x * 0.013f, Math.sin(x + y) * 0.5, y * 0.017f));
+                builder.append(String.format(Locale.US, "vt %f %f\n", x / (float) gridSize, y / (float) gridSize));
+                builder.append(String.format(Locale.US, "vn %f %f %f\n", 0.0, 1.0, 0.0));
+            }
+        }
+        builder.append("usemtl grid\n");
+        for (int y = 0; y < gridSize; ++y) {
+            for (int x = 0; x < gridSize; ++x) {
+                final int a = y * (gridSize + 1) + x + 1;
+                final int b = a + 1;
+                final int c = a + gridSize + 1;
+                final int d = c + 1;
+                builder.append("f ").append(a).append('/').append(a).append('/').append(a).append(' ')
+                       .append(b).append('/').append(b).append('/').append(b).append(' ')
+                       .append(d).append('/').append(d).append('/').append(d).append('\n');
+                builder.append("f ").append(a).append('/').append(a).append('/').append(a).append(' ')
+                       .append(d).append('/').append(d).append('/').append(d).append(' ')
+                       .append(c).append('/').append(c).append('/').append(c).append('\n');
+            }
+        }
+        mData = builder.toString().getBytes(StandardCharsets.US_ASCII);
+        mExecutor = Executors.newFixedThreadPool(4);
+
+        final ObjParser parser = bytes();
+        final Legacy legacy = legacy();
+        if (!Arrays.equals(parser.getVertices().toArray(), toFloats(legacy.vertices))
+            || !Arrays.equals(parser.getTexCoords().toArray(), toFloats(legacy.texCoords))
+            || parser.getNormals().size() != legacy.normals.size()) {
+            throw new IllegalStateException("The parsers disagree.");
+        }
+    }
+
+    @Benchmark
+    public ObjParser bytes() throws Exception {
+        final IntArrayList vertexIndices = new IntArrayList();
+        final IntArrayList texCoordIndices = new IntArrayList();
+        final IntArrayList normalIndices = new IntArrayList();
+        final ObjParser parser = new ObjParser(new ObjParser.StatementListener() {
+            @Override
+            public void onStatement(String line) {
+            }
+        });
+        parser.setFaceTarget(vertexIndices, texCoordIndices, normalIndices);
+        parser.parse(new ByteArrayInputStream(mData));
+        return parser;
+    }
+
+    @Benchmark
+    public ObjParser bytesParallel() throws Exception {
+        final ObjParser parser = new ObjParser(new ObjParser.StatementListener() {
+            @Override
+            public void onStatement(String line) {
+            }
+        });
+        parser.setFaceTarget(new IntArrayList(), new IntArrayList(), new IntArrayList());
+        parser.parse(mData, mData.length, mExecutor, 16);
+        return parser;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mExecutor.shutdown();
+    }
+
+    @Benchmark
+    public Legacy legacy() throws Exception {
+        final BufferedReader buffer = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(mData)), 8192);
+        final Legacy result = new Legacy();
+        String line;
+        while ((line = buffer.readLine()) != null) {
+            if (line.length() == 0 || line.charAt(0) == '#') {
+                continue;
+            }
+            if (line.endsWith("\\")) {
+                line = line.substring(0, line.length() - 1) + buffer.readLine();
+            }
+            StringTokenizer parts = new StringTokenizer(line, " ");
+            final int numTokens = parts.countTokens();
+            if (numTokens == 0) {
+                continue;
+            }
+            final String type = parts.nextToken();
+            if (type.equals("v")) {
+                result.vertices.add(Float.parseFloat(parts.nextToken()));
+                result.vertices.add(Float.parseFloat(parts.nextToken()));
+                result.vertices.add(Float.parseFloat(parts.nextToken()));
+            } else if (type.equals("f")) {
+                final boolean isQuad = numTokens == 5;
+                final int[] quadvids = new int[4];
+                final int[] quadtids = new int[4];
+                final int[] quadnids = new int[4];
+                final boolean emptyVt = line.indexOf("//") > -1;
+                if (emptyVt) {
+                    line = line.replace("//", "/");
+                }
+                parts = new StringTokenizer(line);
+                parts.nextToken();
+                StringTokenizer subParts = new StringTokenizer(parts.nextToken(), "/");
+                final int partLength = subParts.countTokens();
+                final boolean hasuv = partLength >= 2 && !emptyVt;
+                final boolean hasn = partLength == 3 || (partLength == 2 && emptyVt);
+                int idx;
+                for (int i = 1; i < numTokens; i++) {
+                    if (i > 1) {
+                        subParts = new StringTokenizer(parts.nextToken(), "/");
+                    }
+                    idx = Integer.parseInt(subParts.nextToken());
+                    idx = idx < 0 ? (result.vertices.size() / 3) + idx : idx - 1;
+                    if (!isQuad) {
+                        result.vertexIndices.add(idx);
+                    } else {
+                        quadvids[i - 1] = idx;
+                    }
+                    if (hasuv) {
+                        idx = Integer.parseInt(subParts.nextToken());
+                        idx = idx < 0 ? (result.texCoords.size() / 2) + idx : idx - 1;
+                        if (!isQuad) {
+                            result.texCoordIndices.add(idx);
+                        } else {
+                            quadtids[i - 1] = idx;
+                        }
+                    }
+                    if (hasn) {
+                        idx = Integer.parseInt(subParts.nextToken());
+                        idx = idx < 0 ? (result.normals.size() / 3) + idx : idx - 1;
+                        if (!isQuad) {
+                            result.normalIndices.add(idx);
+                        } else {
+                            quadnids[i - 1] = idx;
+                        }
+                    }
+                }
+                if (isQuad) {
+                    for (int index : new int[]{ 0, 1, 2, 0, 2, 3 }) {
+                        result.vertexIndices.add(quadvids[index]);
+                        result.texCoordIndices.add(quadtids[index]);
+                        result.normalIndices.add(quadnids[index]);
+                    }
+                }
+            } else if (type.equals("vt")) {
+                result.texCoords.add(Float.parseFloat(parts.nextToken()));
+                result.texCoords.add(1f - Float.parseFloat(parts.nextToken()));
+            } else if (type.equals("vn")) {
+                result.normals.add(Float.parseFloat(parts.nextToken()));
+                result.normals.add(Float.parseFloat(parts.nextToken()));
+                result.normals.add(Float.parseFloat(parts.nextToken()));
+            }
+        }
+        buffer.close();
+        return result;
+    }
+
+    public static class Legacy {
+
+        final ArrayList<Float>   vertices        = new ArrayList<>();
+        final ArrayList<Float>   texCoords       = new ArrayList<>();
+        final ArrayList<Float>   normals         = new ArrayList<>();
+        final ArrayList<Integer> vertexIndices   = new ArrayList<>();
+        final ArrayList<Integer> texCoordIndices = new ArrayList<>();
+        final ArrayList<Integer> normalIndices   = new ArrayList<>();
+    }
+
+    private static float[] toFloats(ArrayList<Float> values) {
+        final float[] result = new float[values.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+}
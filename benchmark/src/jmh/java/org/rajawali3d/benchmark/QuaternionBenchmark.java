@@ -0,0 +1,48 @@
+package org.rajawali3d.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.Quaternion;
+
+/**
+ * Cost of the {@link Quaternion} interpolation used by rotation and skeletal animations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class QuaternionBenchmark {
+
+    @Param({"0.25", "0.5", "0.99"})
+    public double t;
+
+    private final Quaternion mStart  = new Quaternion();
+    private final Quaternion mEnd    = new Quaternion();
+    private final Quaternion mResult = new Quaternion();
+    private final Matrix4    mMatrix = new Matrix4();
+
+    @Setup
+    public void setup() {
+        mStart.fromEuler(10, 20, 30);
+        mEnd.fromEuler(80, -40, 120);
+    }
+
+    @Benchmark
+    public Quaternion slerp() {
+        return mResult.slerp(mStart, mEnd, t);
+    }
+
+    @Benchmark
+    public Quaternion nlerp() {
+        return Quaternion.nlerp(mStart, mEnd, t, true);
+    }
+
+    @Benchmark
+    public Matrix4 toRotationMatrix() {
+        return mResult.slerp(mStart, mEnd, t).toRotationMatrix(mMatrix);
+    }
+}
@@ -0,0 +1,238 @@
+package org.rajawali3d.loader;
+
+import android.content.res.Resources;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.loader.LoaderAWD.AWDLittleEndianDataInputStream;
+import org.rajawali3d.loader.LoaderAWD.BlockHeader;
+import org.rajawali3d.loader.awd.ABlockParser;
+import org.rajawali3d.loader.awd.AExportableBlockParser;
+import org.rajawali3d.loader.awd.BlockTriangleGeometry;
+import org.rajawali3d.util.MeshOptimizer;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parses AWD files built in memory, on a device since the loader keeps its blocks in {@link android.util.SparseArray}s.
+ */
+@RunWith(AndroidJUnit4.class)
+@SmallTest
+public class LoaderAWDParsingTest {
+
+    private static final int GEOMETRY_ID = 1;
+    private static final int REFERENCE_ID = 1000;
+    private static final int NS_TEST = 7;
+    private static final int REFERENCE_TYPE = 1;
+    private static final int INSTANCE_TYPE = 2;
+
+    @Test
+    public void testParallelOutputMatchesSequential() throws Exception {
+        final byte[] file = createFile(12);
+        final TestLoader sequential = new TestLoader(file);
+        sequential.parse();
+        final TestLoader parallel = new TestLoader(file);
+        parallel.setParallelism(4).parse();
+
+        for (int i = 0; i < 12; ++i) {
+            assertArrayEquals(getVertices(sequential.getGeometry(i)), getVertices(parallel.getGeometry(i)), 0);
+        }
+    }
+
+    @Test
+    public void testDependentBlocksSeeCompleteBlocksInFileOrder() throws Exception {
+        final byte[] file = createFile(12);
+        for (int run = 0; run < 5; ++run) {
+            final TestLoader loader = new TestLoader(file);
+            loader.setParallelism(4).parse();
+
+            for (int i = 0; i < 12; ++i) {
+                final ReferenceBlock reference = (ReferenceBlock) loader.getBlockByID(REFERENCE_ID + i).parser;
+                // Each reference found its geometry fully parsed, and the references ran in file order
+                assertEquals(i, reference.order);
+                assertEquals(i, reference.firstVertex, 0);
+                assertSame(loader.getGeometry(i), reference.referenced);
+            }
+        }
+    }
+
+    @Test
+    public void testRegisteredFactoryOverridesBuiltInType() throws Exception {
+        final TestLoader loader = new TestLoader(createFile(2));
+        loader.registerBlockParser(LoaderAWD.NS_AWD, 1, new LoaderAWD.BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new CustomGeometry();
+            }
+        });
+        loader.parse();
+
+        assertTrue(loader.getBlockByID(GEOMETRY_ID).parser instanceof CustomGeometry);
+        assertTrue(loader.getBlockByID(GEOMETRY_ID + 1).parser instanceof CustomGeometry);
+        assertEquals(1, loader.getGeometry(1).getGeometry().getVertices().get(0), 0);
+    }
+
+    @Test
+    public void testPostProcessesExportedObjects() throws Exception {
+        final TestLoader loader = new TestLoader(createFile(3, INSTANCE_TYPE));
+        loader.setMeshOptimizer(new MeshOptimizer());
+        loader.parse();
+        loader.postProcess();
+
+        assertEquals(3, loader.getParsedObject().getNumChildren());
+        assertEquals(3, loader.getOptimizationStatistics().getTriangleCount());
+    }
+
+    /**
+     * Parses an AWD file from memory, with reference and instance blocks in {@link #NS_TEST}.
+     */
+    private static final class TestLoader extends LoaderAWD {
+
+        private final byte[] mFile;
+        private int mReferences;
+
+        TestLoader(byte[] file) {
+            super((Resources) null, null, 0);
+            mFile = file;
+            registerBlockParser(NS_TEST, REFERENCE_TYPE, new BlockParserFactory() {
+                @Override
+                public ABlockParser createBlockParser() {
+                    return new ReferenceBlock(TestLoader.this);
+                }
+            });
+            registerBlockParser(NS_TEST, INSTANCE_TYPE, new BlockParserFactory() {
+                @Override
+                public ABlockParser createBlockParser() {
+                    return new InstanceBlock();
+                }
+            });
+        }
+
+        Object3D getGeometry(int index) {
+            return ((BlockTriangleGeometry) getBlockByID(GEOMETRY_ID + index).parser).getBaseObject3D();
+        }
+
+        @Override
+        protected AWDLittleEndianDataInputStream getLittleEndianInputStream(int size) {
+            return new AWDLittleEndianDataInputStream(new ByteArrayInputStream(mFile));
+        }
+    }
+
+    /**
+     * Refers to a geometry block and records what it found there.
+     */
+    private static final class ReferenceBlock extends ABlockParser {
+
+        private final TestLoader mLoader;
+
+        Object3D referenced;
+        float firstVertex = -1;
+        int order;
+
+        ReferenceBlock(TestLoader loader) {
+            mLoader = loader;
+        }
+
+        @Override
+        public void parseBlock(AWDLittleEndianDataInputStream dis, BlockHeader blockHeader) throws Exception {
+            final BlockTriangleGeometry geometry = (BlockTriangleGeometry) blockHeader.blockHeaders
+                    .get(dis.readInt()).parser;
+            referenced = geometry.getBaseObject3D();
+            firstVertex = referenced.getGeometry().getVertices().get(0);
+            order = mLoader.mReferences++;
+        }
+    }
+
+    /**
+     * Exports the object of a geometry block.
+     */
+    private static final class InstanceBlock extends AExportableBlockParser {
+
+        private Object3D mObject;
+
+        @Override
+        public Object3D getBaseObject3D() {
+            return mObject;
+        }
+
+        @Override
+        public void parseBlock(AWDLittleEndianDataInputStream dis, BlockHeader blockHeader) throws Exception {
+            mObject = ((BlockTriangleGeometry) blockHeader.blockHeaders.get(dis.readInt()).parser).getBaseObject3D();
+        }
+    }
+
+    private static final class CustomGeometry extends BlockTriangleGeometry {
+    }
+
+    private static float[] getVertices(Object3D object) {
+        final FloatBuffer vertices = object.getGeometry().getVertices();
+        final float[] values = new float[vertices.limit()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = vertices.get(i);
+        }
+        return values;
+    }
+
+    private static byte[] createFile(int count) {
+        return createFile(count, REFERENCE_TYPE);
+    }
+
+    /**
+     * Writes an uncompressed AWD file of triangle geometry blocks, each followed by a block referring to it.
+     */
+    private static byte[] createFile(int count, int referenceType) {
+        final ByteBuffer body = ByteBuffer.allocate(256 * count).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; ++i) {
+            // Triangle geometry with one sub geometry of a single triangle, its first coordinate is i
+            final ByteBuffer geometry = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+            geometry.putShort((short) 0); // Lookup name
+            geometry.putShort((short) 1); // Sub geometries
+            geometry.putInt(0); // Properties
+            geometry.putInt(4 + 6 + 9 * 4 + 6 + 3 * 2 + 4); // Sub geometry length
+            geometry.putInt(0); // Sub geometry properties
+            geometry.put((byte) 1).put((byte) 0).putInt(9 * 4);
+            for (int v = 0; v < 9; ++v) {
+                geometry.putFloat(i + v);
+            }
+            geometry.put((byte) 2).put((byte) 0).putInt(3 * 2);
+            geometry.putShort((short) 0).putShort((short) 1).putShort((short) 2);
+            geometry.putInt(0); // Sub geometry user attributes
+            geometry.putInt(0); // User attributes
+            putBlock(body, GEOMETRY_ID + i, LoaderAWD.NS_AWD, 1, geometry);
+
+            final ByteBuffer reference = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            reference.putInt(GEOMETRY_ID + i);
+            putBlock(body, REFERENCE_ID + i, NS_TEST, referenceType, reference);
+        }
+        body.flip();
+
+        final ByteBuffer file = ByteBuffer.allocate(12 + body.limit()).order(ByteOrder.LITTLE_ENDIAN);
+        file.put((byte) 'A').put((byte) 'W').put((byte) 'D');
+        file.put((byte) 2).put((byte) 1); // Version 2.1
+        file.putShort((short) 0); // Flags
+        file.put((byte) 0); // No compression
+        file.putInt(body.limit());
+        file.put(body);
+        return file.array();
+    }
+
+    private static void putBlock(ByteBuffer body, int id, int namespace, int type, ByteBuffer data) {
+        data.flip();
+        body.putInt(id);
+        body.put((byte) namespace).put((byte) type).put((byte) 0);
+        body.putInt(data.limit());
+        body.put(data);
+    }
+}
@@ -0,0 +1,250 @@
+package org.rajawali3d;
+
+import android.opengl.GLES20;
+import androidx.annotation.NonNull;
+
+import org.rajawali3d.util.FreeListAllocator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs the vertex and index data of many small geometries into a few large GL buffers, called pages. Every geometry
+ * given to {@link Geometry3D#setBufferArena(BufferArena)} gets a range of a page instead of buffers of its own, its
+ * attributes and indices are addressed through the byte offset of that range. Scenes made of hundreds of small meshes
+ * then need a handful of buffer objects rather than hundreds, and consecutive draws from the same page skip binding
+ * the index buffer again, see {@link #bindElementBuffer(int)}.
+ *
+ * Ranges within a page are managed by a {@link FreeListAllocator}. A geometry which does not fit into a page of the
+ * configured size gets a page of its own. Pages are never shrunk, only deleted with {@link #destroy()}. All methods
+ * have to be called on the GL thread.
+ */
+public class BufferArena {
+
+    public static final int DEFAULT_PAGE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Offsets are kept 4 byte aligned, which suits every attribute and index type.
+     */
+    private static final int ALIGNMENT = 4;
+
+    /**
+     * The element array buffer last bound through {@link #bindElementBuffer(int)}, -1 if unknown.
+     */
+    private static int sBoundElementBuffer = -1;
+
+    /**
+     * Counts the GL contexts created, see {@link #onContextCreated()}.
+     */
+    private static int sContextGeneration;
+
+    private final int        mPageSize;
+    private final int        mUsage;
+    private final List<Page> mPages = new ArrayList<>();
+    private int              mGeneration;
+    private int              mContextGeneration = sContextGeneration;
+
+    /**
+     * A range of a page, owned by one buffer of a geometry.
+     */
+    public static final class Allocation {
+
+        private final Page mPage;
+        private final int  mOffset;
+        private final int  mSize;
+        private final int  mGeneration;
+        private boolean    mFreed;
+
+        Allocation(Page page, int offset, int size, int generation) {
+            mPage = page;
+            mOffset = offset;
+            mSize = size;
+            mGeneration = generation;
+        }
+
+        /**
+         * @return {@code int} GL handle of the page holding the range.
+         */
+        public int getHandle() {
+            return mPage.handle;
+        }
+
+        /**
+         * @return {@code int} Byte offset of the range within its page.
+         */
+        public int getOffset() {
+            return mOffset;
+        }
+
+        public int getSize() {
+            return mSize;
+        }
+    }
+
+    static final class Page {
+
+        final int               target;
+        final int               handle;
+        final FreeListAllocator allocator;
+
+        Page(int target, int handle, int size) {
+            this.target = target;
+            this.handle = handle;
+            this.allocator = new FreeListAllocator(size);
+        }
+    }
+
+    public BufferArena() {
+        this(DEFAULT_PAGE_SIZE, GLES20.GL_STATIC_DRAW);
+    }
+
+    /**
+     * @param pageSize {@code int} Size in bytes of the GL buffers ranges are taken from.
+     * @param usage    {@code int} Usage hint of the pages, such as {@link GLES20#GL_STATIC_DRAW}.
+     */
+    public BufferArena(int pageSize, int usage) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The page size has to be positive.");
+        }
+        mPageSize = pageSize;
+        mUsage = usage;
+    }
+
+    /**
+     * Reserves a range of a page, creating a new page when no existing one has enough room.
+     *
+     * @param target {@code int} {@link GLES20#GL_ARRAY_BUFFER} or {@link GLES20#GL_ELEMENT_ARRAY_BUFFER}. Vertex and
+     *               index data never share a page since some drivers do not allow binding a buffer to both targets.
+     * @param size   {@code int} Size in bytes.
+     *
+     * @return {@link Allocation} The reserved range.
+     */
+    @NonNull
+    public Allocation allocate(int target, int size) {
+        if (mContextGeneration != sContextGeneration) {
+            // The context was lost along with every page, start over
+            mContextGeneration = sContextGeneration;
+            reset();
+        }
+        for (int i = 0, j = mPages.size(); i < j; ++i) {
+            final Page page = mPages.get(i);
+            if (page.target != target) {
+                continue;
+            }
+            final int offset = page.allocator.allocate(size, ALIGNMENT);
+            if (offset >= 0) {
+                return new Allocation(page, offset, size, mGeneration);
+            }
+        }
+        final int pageSize = Math.max(mPageSize, size);
+        final Page page = new Page(target, createPageBuffer(target, pageSize), pageSize);
+        mPages.add(page);
+        return new Allocation(page, page.allocator.allocate(size, ALIGNMENT), size, mGeneration);
+    }
+
+    /**
+     * Returns a range to its page. Freeing a range twice, or one of a page which no longer exists, does nothing.
+     *
+     * @param allocation {@link Allocation} returned by {@link #allocate(int, int)}.
+     */
+    public void free(@NonNull Allocation allocation) {
+        if (allocation.mFreed || allocation.mGeneration != mGeneration) {
+            return;
+        }
+        allocation.mFreed = true;
+        allocation.mPage.allocator.free(allocation.mOffset);
+    }
+
+    /**
+     * Deletes every page. Geometries still using the arena have to be destroyed or reloaded afterwards.
+     */
+    public void destroy() {
+        for (int i = 0, j = mPages.size(); i < j; ++i) {
+            deletePageBuffer(mPages.get(i).handle);
+        }
+        reset();
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    public int getPageCount() {
+        return mPages.size();
+    }
+
+    /**
+     * @return {@code long} Combined size in bytes of all live ranges.
+     */
+    public long getUsedBytes() {
+        long used = 0;
+        for (int i = 0, j = mPages.size(); i < j; ++i) {
+            used += mPages.get(i).allocator.getUsed();
+        }
+        return used;
+    }
+
+    /**
+     * @return {@code long} Combined size in bytes of all pages.
+     */
+    public long getReservedBytes() {
+        long reserved = 0;
+        for (int i = 0, j = mPages.size(); i < j; ++i) {
+            reserved += mPages.get(i).allocator.getCapacity();
+        }
+        return reserved;
+    }
+
+    private void reset() {
+        mPages.clear();
+        // Ranges handed out so far now belong to pages which are gone
+        ++mGeneration;
+    }
+
+    protected int createPageBuffer(int target, int size) {
+        final int[] handles = new int[1];
+        GLES20.glGenBuffers(1, handles, 0);
+        GLES20.glBindBuffer(target, handles[0]);
+        GLES20.glBufferData(target, size, null, mUsage);
+        GLES20.glBindBuffer(target, 0);
+        invalidateBindings();
+        return handles[0];
+    }
+
+    protected void deletePageBuffer(int handle) {
+        GLES20.glDeleteBuffers(1, new int[]{ handle }, 0);
+        invalidateBindings();
+    }
+
+    /**
+     * Tells every arena that a new GL context was created, which happens when the surface is created again after the
+     * previous context was lost. Pages of the old context are forgotten on the next allocation instead of being
+     * deleted. Called by {@link org.rajawali3d.renderer.Renderer}, whose geometry then reloads into fresh pages.
+     * Buffer handles cannot tell this, the new context hands out the same handles again.
+     */
+    public static void onContextCreated() {
+        ++sContextGeneration;
+        invalidateBindings();
+    }
+
+    /**
+     * Binds an element array buffer unless it is bound already. Objects whose indices live in an arena page leave it
+     * bound after drawing, so the next object from the same page draws without touching the binding.
+     *
+     * @param handle {@code int} Buffer handle, 0 to unbind.
+     */
+    public static void bindElementBuffer(int handle) {
+        if (handle != sBoundElementBuffer) {
+            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, handle);
+            sBoundElementBuffer = handle;
+        }
+    }
+
+    /**
+     * Forgets the element array buffer binding. Has to be called whenever it was changed without
+     * {@link #bindElementBuffer(int)}, and at the start of every frame since other code may share the context.
+     */
+    public static void invalidateBindings() {
+        sBoundElementBuffer = -1;
+    }
+}
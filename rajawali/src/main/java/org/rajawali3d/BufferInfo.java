@@ -14,6 +14,7 @@ package org.rajawali3d;
 
 import android.opengl.GLES20;
 import org.rajawali3d.Geometry3D.BufferType;
+import org.rajawali3d.util.DirtyRanges;
 
 import java.nio.Buffer;
 
@@ -28,6 +29,19 @@ public class BufferInfo {
     public int stride = 0;
     public int offset = 0;
     public int type = GLES20.GL_FLOAT;
+    public boolean normalized = false;
+    /**
+     * Elements changed since the last upload, only set for streaming buffers.
+     *
+     * @see Geometry3D#setStreaming(BufferInfo, boolean)
+     */
+    public DirtyRanges dirtyRanges;
+    /**
+     * Range of a shared buffer holding the data, only set for buffers suballocated from an arena.
+     *
+     * @see Geometry3D#setBufferArena(BufferArena)
+     */
+    public BufferArena.Allocation allocation;
 
 	public BufferInfo() {
 		this.usage = GLES20.GL_STATIC_DRAW;
@@ -14,9 +14,18 @@ package org.rajawali3d;
 
 import android.graphics.Color;
 import android.opengl.GLES20;
+import androidx.annotation.Nullable;
 import org.rajawali3d.bounds.BoundingBox;
 import org.rajawali3d.bounds.BoundingSphere;
+import org.rajawali3d.math.Matrix4;
 import org.rajawali3d.math.vector.Vector3;
+import org.rajawali3d.util.Capabilities;
+import org.rajawali3d.util.DirtyRanges;
+import org.rajawali3d.util.RajLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
@@ -27,15 +36,18 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * This is where the vertex, normal, texture coordinate, color and index data is stored.
  * The data is stored in FloatBuffers, IntBuffers and ShortBuffers. The data is uploaded
  * to the graphics card using Vertex Buffer Objects (VBOs). The data in the FloatBuffers
  * is kept in memory in order to restore the VBOs when the OpenGL context needs to be
- * restored (typically when the application regains focus).
+ * restored (typically when the application regains focus), unless a {@link RetentionPolicy}
+ * releases it after the upload.
  * <p>
  * An object's Geometry3D and its data can be accessed by calling the getGeometry() and its methods:
  * <pre><code> // Get the geometry instance
@@ -48,8 +60,8 @@ import java.util.Arrays;
  * FloatBuffer texCoords = geom.getTextureCoords();
  * // Get colors (r, g, b, a)
  * FloatBuffer colors = geom.getColors();
- * // Get indices.
- * IntBuffer indices = geom.getIndices();
+ * // Get indices, a ShortBuffer for meshes with less than 65536 vertices and an IntBuffer otherwise.
+ * Buffer indices = geom.getIndices();
  * </pre></code>
  *
  * @author dennis.ippel
@@ -67,6 +79,16 @@ public class Geometry3D {
     public static final int COLOR_BUFFER_KEY   = 3;
     public static final int INDEX_BUFFER_KEY   = 4;
 
+    /**
+     * The number of vertices which can be addressed by 16 bit indices.
+     */
+    public static final int MAX_SHORT_INDEX_VERTICES = 65536;
+
+    /**
+     * Streaming buffers with at least this fraction of their elements changed are re-specified as a whole.
+     */
+    public static final float DEFAULT_ORPHAN_THRESHOLD = 0.5f;
+
     protected final ArrayList<BufferInfo> mBuffers;
 
     /**
@@ -105,6 +127,78 @@ public class Geometry3D {
      * Indicates whether this geometry contains texture coordinates or not.
      */
     protected boolean        mHasTextureCoordinates;
+    /**
+     * The interleaved layout of this geometry or null when every attribute has its own buffer.
+     */
+    protected VertexFormat   mVertexFormat;
+    /**
+     * The shared VBO of the interleaved attributes. Its CPU side data is only held while uploading, the separate
+     * attribute buffers remain the source of truth.
+     */
+    protected BufferInfo     mInterleavedBufferInfo;
+    /**
+     * Expands positions stored as normalized shorts back onto the bounds of the mesh. Null unless the current
+     * {@link VertexFormat} quantizes positions.
+     */
+    protected Matrix4        mPositionDecodeMatrix;
+    /**
+     * Scale (x, y) and offset (z, w) expanding texture coordinates stored as normalized shorts. Null unless the
+     * current {@link VertexFormat} quantizes texture coordinates.
+     */
+    protected float[]        mTextureCoordDecode;
+    /**
+     * What happens to the CPU side data once it has been uploaded.
+     */
+    protected RetentionPolicy mRetentionPolicy = RetentionPolicy.KEEP;
+    /**
+     * Puts dropped data back when the buffers have to be created again.
+     */
+    protected DataRestorer   mDataRestorer;
+    /**
+     * File the data is written to by {@link RetentionPolicy#SPILL}.
+     */
+    protected File           mSpillFile;
+    /**
+     * Indicates whether the CPU side data is currently released.
+     */
+    protected boolean        mDataReleased;
+    /**
+     * Fraction of a streaming buffer which has to be dirty for it to be re-specified as a whole instead of patched.
+     */
+    protected float          mOrphanThreshold = DEFAULT_ORPHAN_THRESHOLD;
+    /**
+     * Bytes uploaded for this geometry since the counter was last reset.
+     */
+    protected long           mUploadedBytes;
+    /**
+     * Arena the vertex and index buffers are suballocated from or null if they are buffers of their own.
+     */
+    protected BufferArena    mBufferArena;
+    /**
+     * Vertex array objects recording the attribute setup of this geometry for the programs it is drawn with.
+     */
+    protected final VertexArrayCache mVertexArrays = new VertexArrayCache();
+    /**
+     * First index of every spatial cluster followed by the number of indices, or null if the geometry is drawn whole.
+     */
+    protected int[]          mClusterOffsets;
+    /**
+     * Bounding box of every spatial cluster, in model space.
+     */
+    protected BoundingBox[]  mClusterBounds;
+    /**
+     * First index drawn when only a range of the indices is drawn.
+     */
+    protected int            mDrawRangeStart;
+    /**
+     * Number of indices drawn from {@link #mDrawRangeStart}, or -1 to draw all of them.
+     */
+    protected int            mDrawRangeCount = -1;
+
+    /**
+     * Bytes uploaded by all geometry on the GL thread since the counter was last reset.
+     */
+    private static long sTotalUploadedBytes;
 
     public enum BufferType {
         FLOAT_BUFFER,
@@ -113,6 +207,43 @@ public class Geometry3D {
         BYTE_BUFFER
     }
 
+    /**
+     * What happens to the CPU side copy of the buffers once they have been uploaded. Releasing it halves the memory a
+     * mesh costs. The bounding box and sphere are computed before the release and stay available, as do the vertex and
+     * index counts. Geometry which is updated or read at runtime, such as vertex animation frames or posable meshes,
+     * has to keep its data.
+     */
+    public enum RetentionPolicy {
+        /**
+         * The data stays in memory.
+         */
+        KEEP,
+        /**
+         * The data is released and brought back by a {@link DataRestorer} when the buffers have to be created again,
+         * typically after the OpenGL context was lost.
+         */
+        DROP,
+        /**
+         * The data is written to a file and released. The file is read back when the buffers have to be created
+         * again.
+         */
+        SPILL
+    }
+
+    /**
+     * Restores the data of a geometry using {@link RetentionPolicy#DROP}, for instance by running the loader which
+     * created it again. It is called on the GL thread.
+     */
+    public interface DataRestorer {
+
+        /**
+         * Fills the {@link BufferInfo#buffer}s of the geometry with the data it had when it was released.
+         *
+         * @param geometry {@link Geometry3D} to restore.
+         */
+        void restore(Geometry3D geometry);
+    }
+
     public Geometry3D() {
         mHaveCreatedBuffers = false;
         mBuffers = new ArrayList<>(8);
@@ -218,7 +349,8 @@ public class Geometry3D {
                 } else if (buffer instanceof ShortBuffer) {
                     int count = 0;
                     while (buffer.hasRemaining()) {
-                        array[count] = (int) (((ShortBuffer) buffer).get());
+                        // Indices are unsigned
+                        array[count] = ((ShortBuffer) buffer).get() & 0xFFFF;
                         ++count;
                     }
                 }
@@ -240,16 +372,25 @@ public class Geometry3D {
         this.mNumIndices = geom.getNumIndices();
         this.mNumVertices = geom.getNumVertices();
 
-        mBuffers.add(VERTEX_BUFFER_KEY, geom.getVertexBufferInfo());
-        mBuffers.add(NORMAL_BUFFER_KEY, geom.getNormalBufferInfo());
-        mBuffers.add(TEXTURE_BUFFER_KEY, geom.getTexCoordBufferInfo());
+        mBuffers.set(VERTEX_BUFFER_KEY, geom.getVertexBufferInfo());
+        mBuffers.set(NORMAL_BUFFER_KEY, geom.getNormalBufferInfo());
+        mBuffers.set(TEXTURE_BUFFER_KEY, geom.getTexCoordBufferInfo());
         if (mBuffers.get(COLOR_BUFFER_KEY).buffer == null) {
-            mBuffers.add(COLOR_BUFFER_KEY, geom.getColorBufferInfo());
+            mBuffers.set(COLOR_BUFFER_KEY, geom.getColorBufferInfo());
         }
-        mBuffers.add(INDEX_BUFFER_KEY, geom.getIndexBufferInfo());
+        mBuffers.set(INDEX_BUFFER_KEY, geom.getIndexBufferInfo());
+        mVertexArrays.invalidate();
         this.mOriginalGeometry = geom;
+        this.mVertexFormat = geom.getVertexFormat();
+        this.mInterleavedBufferInfo = geom.getInterleavedBufferInfo();
+        this.mPositionDecodeMatrix = geom.getPositionDecodeMatrix();
+        this.mTextureCoordDecode = geom.getTextureCoordDecode();
         this.mHasNormals = geom.hasNormals();
         this.mHasTextureCoordinates = geom.hasTextureCoordinates();
+        this.mClusterOffsets = geom.mClusterOffsets;
+        this.mClusterBounds = geom.mClusterBounds;
+        this.mDrawRangeStart = geom.mDrawRangeStart;
+        this.mDrawRangeCount = geom.mDrawRangeCount;
     }
 
     /**
@@ -364,8 +505,9 @@ public class Geometry3D {
         }
         setIndices(indices);
 
-        mBuffers.add(VERTEX_BUFFER_KEY, vertexBufferInfo);
-        mBuffers.add(NORMAL_BUFFER_KEY, normalBufferInfo);
+        mBuffers.set(VERTEX_BUFFER_KEY, vertexBufferInfo);
+        mBuffers.set(NORMAL_BUFFER_KEY, normalBufferInfo);
+        mVertexArrays.invalidate();
 
         mOriginalGeometry = null;
 
@@ -465,13 +607,70 @@ public class Geometry3D {
         }
     }
 
+    /**
+     * Sets the data from direct buffers, which are kept as they are instead of being copied like the arrays of the
+     * other setters. Meant for loaders which fill buffers straight from a file, so a large mesh never has to exist on
+     * the Java heap. The buffers have to be in native byte order and are owned by the geometry afterwards.
+     *
+     * @param vertices      {@link FloatBuffer} Positions, 3 components per vertex.
+     * @param normals       {@link FloatBuffer} Normals, 3 components per vertex, or null.
+     * @param textureCoords {@link FloatBuffer} Texture coordinates, 2 components per vertex, or null.
+     * @param indices       {@link ShortBuffer} or {@link IntBuffer} of indices.
+     * @param createVBOs    {@code boolean} True to create the buffer objects right away.
+     */
+    public void setData(FloatBuffer vertices, @Nullable FloatBuffer normals, @Nullable FloatBuffer textureCoords,
+                        Buffer indices, boolean createVBOs) {
+        if (!vertices.isDirect() || (normals != null && !normals.isDirect())
+            || (textureCoords != null && !textureCoords.isDirect()) || !indices.isDirect()) {
+            throw new IllegalArgumentException("Only direct buffers can be used as they are.");
+        }
+        final BufferInfo indexInfo = mBuffers.get(INDEX_BUFFER_KEY);
+        if (indices instanceof ShortBuffer) {
+            indexInfo.bufferType = BufferType.SHORT_BUFFER;
+        } else if (indices instanceof IntBuffer) {
+            indexInfo.bufferType = BufferType.INT_BUFFER;
+        } else {
+            throw new IllegalArgumentException("Indices have to be a ShortBuffer or an IntBuffer.");
+        }
+        vertices.position(0);
+        mBuffers.get(VERTEX_BUFFER_KEY).buffer = vertices;
+        mNumVertices = vertices.limit() / 3;
+        if (normals != null) {
+            normals.position(0);
+            mBuffers.get(NORMAL_BUFFER_KEY).buffer = normals;
+            mHasNormals = true;
+        }
+        if (textureCoords != null) {
+            textureCoords.position(0);
+            mBuffers.get(TEXTURE_BUFFER_KEY).buffer = textureCoords;
+            mHasTextureCoordinates = true;
+        }
+        indices.position(0);
+        indexInfo.buffer = indices;
+        mNumIndices = indices.limit();
+        mClusterOffsets = null;
+        mClusterBounds = null;
+        mDrawRangeCount = -1;
+
+        if (createVBOs) {
+            createBuffers();
+        }
+    }
+
     /**
      * Creates the actual Buffer objects.
      */
     public void createBuffers() {
+        if (mDataReleased) {
+            restoreData();
+        }
 
-        for (BufferInfo info : mBuffers) {
-            if (info.buffer != null) {
+        for (int i = 0, j = mBuffers.size(); i < j; ++i) {
+            final BufferInfo info = mBuffers.get(i);
+            if (info.buffer != null && info.buffer.position() == 0) {
+                // Same as compacting but without writing, which would copy the pages of a mapped file
+                info.buffer.limit(info.buffer.capacity());
+            } else if (info.buffer != null) {
                 if (info.buffer instanceof FloatBuffer) {
                     ((FloatBuffer) info.buffer).compact().position(0);
                 } else if (info.buffer instanceof IntBuffer) {
@@ -489,13 +688,577 @@ public class Geometry3D {
                 }
             }
 
-            createBuffer(info);
+            if (!isInterleaved(info)) {
+                createBuffer(i, info);
+            }
+        }
+        if (mVertexFormat != null) {
+            createInterleavedBuffer();
         }
 
         GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
         GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        BufferArena.invalidateBindings();
 
         mHaveCreatedBuffers = true;
+        if (mRetentionPolicy != RetentionPolicy.KEEP) {
+            releaseData();
+        }
+    }
+
+    /**
+     * Sets what happens to the CPU side data after it has been uploaded. Dropping data requires a
+     * {@link DataRestorer}, use {@link #setRetentionPolicy(RetentionPolicy, DataRestorer)} for that.
+     *
+     * @param policy {@link RetentionPolicy} to use.
+     */
+    public void setRetentionPolicy(RetentionPolicy policy) {
+        setRetentionPolicy(policy, null);
+    }
+
+    /**
+     * Sets what happens to the CPU side data after it has been uploaded.
+     *
+     * @param policy   {@link RetentionPolicy} to use.
+     * @param restorer {@link DataRestorer} bringing back dropped data, required for {@link RetentionPolicy#DROP}.
+     */
+    public void setRetentionPolicy(RetentionPolicy policy, DataRestorer restorer) {
+        if (policy == RetentionPolicy.DROP && restorer == null) {
+            throw new IllegalArgumentException("Dropping geometry data requires a way to restore it.");
+        }
+        if (mDataReleased) {
+            restoreData();
+        }
+        mRetentionPolicy = policy;
+        mDataRestorer = restorer;
+    }
+
+    public RetentionPolicy getRetentionPolicy() {
+        return mRetentionPolicy;
+    }
+
+    /**
+     * Sets the file {@link RetentionPolicy#SPILL} writes to. By default a temporary file is created.
+     *
+     * @param file {@link File} to write the data to, it is overwritten.
+     */
+    public void setSpillFile(File file) {
+        mSpillFile = file;
+    }
+
+    public File getSpillFile() {
+        return mSpillFile;
+    }
+
+    /**
+     * @return {@code boolean} True if the CPU side data is currently released by the {@link RetentionPolicy}.
+     */
+    public boolean isDataReleased() {
+        return mDataReleased;
+    }
+
+    /**
+     * @return {@code boolean} True if this geometry holds vertices, whether or not their CPU side copy is released.
+     */
+    public boolean hasVertices() {
+        return mDataReleased || getVertices() != null;
+    }
+
+    /**
+     * Releases the CPU side data according to the {@link RetentionPolicy}. This happens automatically after the
+     * buffers are created. The data of clones belongs to their original geometry and is never released.
+     */
+    public void releaseData() {
+        if (mDataReleased || mRetentionPolicy == RetentionPolicy.KEEP || mOriginalGeometry != null) {
+            return;
+        }
+        // Summaries which have to outlive the data
+        getBoundingBox();
+        getBoundingSphere();
+        if (mRetentionPolicy == RetentionPolicy.SPILL) {
+            try {
+                spill();
+            } catch (IOException e) {
+                RajLog.e("Keeping geometry data in memory, spilling it failed: " + e.getMessage());
+                return;
+            }
+        }
+        for (int i = 0, j = mBuffers.size(); i < j; ++i) {
+            final BufferInfo info = mBuffers.get(i);
+            // Streaming buffers are uploaded from their CPU copy every time they change
+            if (info != null && info.dirtyRanges == null) {
+                info.buffer = null;
+            }
+        }
+        mDataReleased = true;
+    }
+
+    /**
+     * Brings released CPU side data back, reading the spill file or calling the {@link DataRestorer}. This happens
+     * automatically when the buffers are created again.
+     */
+    public void restoreData() {
+        if (!mDataReleased) {
+            return;
+        }
+        if (mRetentionPolicy == RetentionPolicy.SPILL) {
+            try {
+                unspill();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read the geometry data from " + mSpillFile, e);
+            }
+        } else {
+            mDataRestorer.restore(this);
+        }
+        mDataReleased = false;
+    }
+
+    /**
+     * Brings released data back before it is changed, restoring it later would undo the change otherwise. Spilled
+     * data is released again by the caller once changed, dropped data is kept from then on as the
+     * {@link DataRestorer} cannot bring the change back.
+     *
+     * @return {@code boolean} True if the data was released, {@link #releaseData()} has to follow the change.
+     */
+    private boolean restoreForChange() {
+        if (!mDataReleased) {
+            return false;
+        }
+        restoreData();
+        if (mRetentionPolicy == RetentionPolicy.DROP) {
+            mRetentionPolicy = RetentionPolicy.KEEP;
+            mDataRestorer = null;
+        }
+        return true;
+    }
+
+    /**
+     * Writes every buffer to the spill file as an element type, an element count and the raw elements in native byte
+     * order. The file only ever lives on this device so no conversion is needed.
+     */
+    private void spill() throws IOException {
+        if (mSpillFile == null) {
+            mSpillFile = File.createTempFile("geometry", ".bin");
+            mSpillFile.deleteOnExit();
+        }
+        final RandomAccessFile file = new RandomAccessFile(mSpillFile, "rw");
+        try {
+            final FileChannel channel = file.getChannel();
+            channel.truncate(0);
+            final ByteBuffer header = ByteBuffer.allocate(2 * INT_SIZE_BYTES).order(ByteOrder.nativeOrder());
+            for (int i = 0, j = mBuffers.size(); i < j; ++i) {
+                final BufferInfo info = mBuffers.get(i);
+                final Buffer buffer = info != null ? info.buffer : null;
+                final BufferType type = getSpillType(buffer);
+                final int count = type != null ? buffer.limit() : 0;
+                header.clear();
+                header.putInt(type != null ? type.ordinal() : -1).putInt(count).flip();
+                writeFully(channel, header);
+                if (type == null) {
+                    continue;
+                }
+                final ByteBuffer bytes = ByteBuffer.allocate(count * getElementSize(type))
+                        .order(ByteOrder.nativeOrder());
+                switch (type) {
+                    case FLOAT_BUFFER:
+                        bytes.asFloatBuffer().put((FloatBuffer) ((FloatBuffer) buffer).duplicate().position(0));
+                        break;
+                    case INT_BUFFER:
+                        bytes.asIntBuffer().put((IntBuffer) ((IntBuffer) buffer).duplicate().position(0));
+                        break;
+                    case SHORT_BUFFER:
+                        bytes.asShortBuffer().put((ShortBuffer) ((ShortBuffer) buffer).duplicate().position(0));
+                        break;
+                    default:
+                        bytes.put((ByteBuffer) ((ByteBuffer) buffer).duplicate().position(0));
+                        break;
+                }
+                bytes.position(0);
+                writeFully(channel, bytes);
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    private void unspill() throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(mSpillFile, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            final ByteBuffer header = ByteBuffer.allocate(2 * INT_SIZE_BYTES).order(ByteOrder.nativeOrder());
+            for (int i = 0, j = mBuffers.size(); i < j; ++i) {
+                header.clear();
+                readFully(channel, header);
+                final int typeIndex = header.getInt(0);
+                final int count = header.getInt(INT_SIZE_BYTES);
+                final BufferInfo info = mBuffers.get(i);
+                if (typeIndex < 0) {
+                    continue;
+                }
+                final BufferType type = BufferType.values()[typeIndex];
+                final ByteBuffer bytes = ByteBuffer.allocateDirect(count * getElementSize(type))
+                        .order(ByteOrder.nativeOrder());
+                readFully(channel, bytes);
+                bytes.position(0);
+                if (info == null || info.dirtyRanges != null) {
+                    continue;
+                }
+                switch (type) {
+                    case FLOAT_BUFFER:
+                        info.buffer = bytes.asFloatBuffer();
+                        break;
+                    case INT_BUFFER:
+                        info.buffer = bytes.asIntBuffer();
+                        break;
+                    case SHORT_BUFFER:
+                        info.buffer = bytes.asShortBuffer();
+                        break;
+                    default:
+                        info.buffer = bytes;
+                        break;
+                }
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    private static BufferType getSpillType(Buffer buffer) {
+        if (buffer instanceof FloatBuffer) {
+            return BufferType.FLOAT_BUFFER;
+        } else if (buffer instanceof IntBuffer) {
+            return BufferType.INT_BUFFER;
+        } else if (buffer instanceof ShortBuffer) {
+            return BufferType.SHORT_BUFFER;
+        } else if (buffer instanceof ByteBuffer) {
+            return BufferType.BYTE_BUFFER;
+        }
+        return null;
+    }
+
+    private static int getElementSize(BufferType type) {
+        switch (type) {
+            case INT_BUFFER:
+                return INT_SIZE_BYTES;
+            case SHORT_BUFFER:
+                return SHORT_SIZE_BYTES;
+            case BYTE_BUFFER:
+                return BYTE_SIZE_BYTES;
+            default:
+                return FLOAT_SIZE_BYTES;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of the spill file.");
+            }
+        }
+    }
+
+    /**
+     * Switches this geometry between separate attribute buffers and an interleaved layout. Attributes in the format
+     * are packed into a single VBO which {@link org.rajawali3d.materials.Material} binds through the stride and
+     * offsets of their {@link BufferInfo}s, the remaining attributes keep their own buffer. The CPU side buffers
+     * returned by {@link #getVertices()} and friends are unaffected.
+     * <p>
+     * This should be called before the buffers are created. Calling it afterwards replaces the existing VBOs and
+     * must then happen on the GL thread.
+     *
+     * @param format {@link VertexFormat} to use or null to return to separate buffers.
+     */
+    public void setVertexFormat(VertexFormat format) {
+        if (format != null) {
+            for (VertexFormat.Attribute attribute : format.getAttributes()) {
+                final BufferInfo info = mBuffers.get(attribute.bufferKey);
+                if (info.buffer == null || !(info.buffer instanceof FloatBuffer)) {
+                    throw new IllegalArgumentException("Geometry has no float data for interleaved attribute "
+                                                       + attribute);
+                }
+            }
+        }
+        final boolean recreate = mHaveCreatedBuffers;
+        if (recreate) {
+            releaseVertexBuffers();
+        }
+        mVertexFormat = format;
+        if (format == null) {
+            mInterleavedBufferInfo = null;
+        }
+        for (VertexFormat.Attribute attribute : VertexFormat.Attribute.values()) {
+            final BufferInfo info = mBuffers.get(attribute.bufferKey);
+            if (format == null || !format.contains(attribute)) {
+                info.stride = 0;
+                info.offset = 0;
+                info.type = GLES20.GL_FLOAT;
+                info.normalized = false;
+            }
+        }
+        updateDecodeRanges();
+        if (recreate) {
+            for (VertexFormat.Attribute attribute : VertexFormat.Attribute.values()) {
+                final BufferInfo info = mBuffers.get(attribute.bufferKey);
+                if (!isInterleaved(info)) {
+                    createBuffer(attribute.bufferKey, info);
+                }
+            }
+            if (format != null) {
+                createInterleavedBuffer();
+            }
+            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        }
+    }
+
+    public VertexFormat getVertexFormat() {
+        return mVertexFormat;
+    }
+
+    public BufferInfo getInterleavedBufferInfo() {
+        return mInterleavedBufferInfo;
+    }
+
+    /**
+     * Checks whether the provided buffer is one of the attribute streams packed into the interleaved VBO.
+     *
+     * @param bufferInfo {@link BufferInfo} to check.
+     *
+     * @return {@code boolean} True if the buffer has no VBO of its own.
+     */
+    public boolean isInterleaved(BufferInfo bufferInfo) {
+        if (mVertexFormat == null || bufferInfo == null) {
+            return false;
+        }
+        for (VertexFormat.Attribute attribute : mVertexFormat.getAttributes()) {
+            if (mBuffers.get(attribute.bufferKey) == bufferInfo) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Packs the attribute streams named by the current {@link VertexFormat} into a single buffer.
+     *
+     * @return {@link ByteBuffer} in native byte order holding one stride worth of data per vertex.
+     */
+    ByteBuffer buildInterleavedData() {
+        if (mDataReleased) {
+            throw new IllegalStateException("The geometry data is released, restore it before interleaving it.");
+        }
+        final VertexFormat format = mVertexFormat;
+        final int stride = format.getStride();
+        final ByteBuffer data = ByteBuffer.allocateDirect(mNumVertices * stride).order(ByteOrder.nativeOrder());
+        updateDecodeRanges();
+        for (VertexFormat.Attribute attribute : format.getAttributes()) {
+            final FloatBuffer source = (FloatBuffer) mBuffers.get(attribute.bufferKey).buffer;
+            final VertexFormat.Encoding encoding = format.getEncoding(attribute);
+            final int components = attribute.getComponents();
+            final int count = Math.min(mNumVertices, source.limit() / components);
+            final double[] center = new double[components];
+            final double[] extent = new double[components];
+            if (encoding == VertexFormat.Encoding.NORMALIZED_SHORT) {
+                getDecodeRange(attribute, center, extent);
+            }
+            int position = format.getOffset(attribute);
+            int read = 0;
+            for (int i = 0; i < count; ++i) {
+                switch (encoding) {
+                    case NORMALIZED_SHORT:
+                        for (int c = 0; c < components; ++c) {
+                            data.putShort(position + c * SHORT_SIZE_BYTES,
+                                          VertexFormat.toNormalizedShort((source.get(read++) - center[c]) / extent[c]));
+                        }
+                        break;
+                    case HALF_FLOAT:
+                        for (int c = 0; c < components; ++c) {
+                            data.putShort(position + c * SHORT_SIZE_BYTES, VertexFormat.toHalfFloat(source.get(read++)));
+                        }
+                        break;
+                    case OCTAHEDRAL:
+                        final short packed = VertexFormat.toOctahedral(source.get(read), source.get(read + 1),
+                                                                       source.get(read + 2));
+                        data.put(position, (byte) (packed >> 8));
+                        data.put(position + 1, (byte) packed);
+                        read += components;
+                        break;
+                    case UNSIGNED_BYTE:
+                        for (int c = 0; c < components; ++c) {
+                            data.put(position + c, VertexFormat.toUnsignedByte(source.get(read++)));
+                        }
+                        break;
+                    default:
+                        for (int c = 0; c < components; ++c) {
+                            data.putFloat(position + c * FLOAT_SIZE_BYTES, source.get(read++));
+                        }
+                        break;
+                }
+                position += stride;
+            }
+        }
+        data.position(0);
+        return data;
+    }
+
+    /**
+     * Recomputes the ranges quantized positions and texture coordinates are mapped onto.
+     */
+    private void updateDecodeRanges() {
+        final VertexFormat format = mVertexFormat;
+        if (format != null && format.getEncoding(VertexFormat.Attribute.POSITION)
+                              == VertexFormat.Encoding.NORMALIZED_SHORT) {
+            final double[] center = new double[3];
+            final double[] extent = new double[3];
+            computeRange((FloatBuffer) mBuffers.get(VERTEX_BUFFER_KEY).buffer, 3, center, extent);
+            if (mPositionDecodeMatrix == null) {
+                mPositionDecodeMatrix = new Matrix4();
+            }
+            mPositionDecodeMatrix.setToScale(extent[0], extent[1], extent[2]).translate(center[0], center[1],
+                                                                                        center[2]);
+        } else {
+            mPositionDecodeMatrix = null;
+        }
+        if (format != null && format.getEncoding(VertexFormat.Attribute.TEXTURE_COORDINATE)
+                              == VertexFormat.Encoding.NORMALIZED_SHORT) {
+            final double[] center = new double[2];
+            final double[] extent = new double[2];
+            computeRange((FloatBuffer) mBuffers.get(TEXTURE_BUFFER_KEY).buffer, 2, center, extent);
+            mTextureCoordDecode = new float[]{ (float) extent[0], (float) extent[1], (float) center[0],
+                                               (float) center[1] };
+        } else {
+            mTextureCoordDecode = null;
+        }
+    }
+
+    private void computeRange(FloatBuffer source, int components, double[] center, double[] extent) {
+        final int count = Math.min(mNumVertices, source.limit() / components);
+        for (int c = 0; c < components; ++c) {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = c, j = count * components; i < j; i += components) {
+                final float value = source.get(i);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (count == 0) {
+                min = max = 0;
+            }
+            center[c] = (min + max) * 0.5;
+            // A flat axis still needs a non zero extent to divide by
+            extent[c] = max > min ? (max - min) * 0.5 : 1;
+        }
+    }
+
+    private void getDecodeRange(VertexFormat.Attribute attribute, double[] center, double[] extent) {
+        if (attribute == VertexFormat.Attribute.POSITION) {
+            final double[] m = mPositionDecodeMatrix.getDoubleValues();
+            extent[0] = m[Matrix4.M00];
+            extent[1] = m[Matrix4.M11];
+            extent[2] = m[Matrix4.M22];
+            center[0] = m[Matrix4.M03];
+            center[1] = m[Matrix4.M13];
+            center[2] = m[Matrix4.M23];
+        } else {
+            extent[0] = mTextureCoordDecode[0];
+            extent[1] = mTextureCoordDecode[1];
+            center[0] = mTextureCoordDecode[2];
+            center[1] = mTextureCoordDecode[3];
+        }
+    }
+
+    /**
+     * @return {@link Matrix4} expanding quantized positions onto the mesh or null if positions are stored as floats.
+     */
+    public Matrix4 getPositionDecodeMatrix() {
+        return mPositionDecodeMatrix;
+    }
+
+    /**
+     * @return {@code float[]} Scale (x, y) and offset (z, w) expanding quantized texture coordinates or null if they
+     * are stored as floats.
+     */
+    public float[] getTextureCoordDecode() {
+        return mTextureCoordDecode;
+    }
+
+    private void createInterleavedBuffer() {
+        if (mInterleavedBufferInfo == null) {
+            mInterleavedBufferInfo = new BufferInfo();
+            mInterleavedBufferInfo.target = GLES20.GL_ARRAY_BUFFER;
+            mInterleavedBufferInfo.usage = mBuffers.get(VERTEX_BUFFER_KEY).usage;
+        }
+        mInterleavedBufferInfo.buffer = buildInterleavedData();
+        if (mBufferArena != null) {
+            allocateBuffer(mInterleavedBufferInfo, BufferType.BYTE_BUFFER, GLES20.GL_ARRAY_BUFFER);
+        } else {
+            createBuffer(mInterleavedBufferInfo, BufferType.BYTE_BUFFER, GLES20.GL_ARRAY_BUFFER,
+                         mInterleavedBufferInfo.usage);
+        }
+        mInterleavedBufferInfo.buffer = null;
+        mInterleavedBufferInfo.stride = mVertexFormat.getStride();
+
+        for (VertexFormat.Attribute attribute : mVertexFormat.getAttributes()) {
+            final BufferInfo info = mBuffers.get(attribute.bufferKey);
+            final VertexFormat.Encoding encoding = mVertexFormat.getEncoding(attribute);
+            info.bufferHandle = mInterleavedBufferInfo.bufferHandle;
+            info.byteSize = encoding.componentSize;
+            info.type = encoding == VertexFormat.Encoding.HALF_FLOAT ? getHalfFloatType() : encoding.type;
+            info.normalized = encoding.normalized;
+            info.stride = mVertexFormat.getStride();
+            info.offset = mInterleavedBufferInfo.offset + mVertexFormat.getOffset(attribute);
+        }
+    }
+
+    private static int getHalfFloatType() {
+        final int type = Capabilities.getInstance().getHalfFloatVertexType();
+        if (type == 0) {
+            throw new IllegalStateException("Half float vertex attributes are not supported by this device.");
+        }
+        return type;
+    }
+
+    /**
+     * Re-uploads the whole interleaved VBO from the attribute streams.
+     */
+    private void updateInterleavedBuffer() {
+        if (mInterleavedBufferInfo.allocation != null) {
+            // The range may have to move if the size changed, which also moves the attribute offsets
+            createInterleavedBuffer();
+            return;
+        }
+        final ByteBuffer data = buildInterleavedData();
+        uploadBufferData(mInterleavedBufferInfo, data, 0, data.capacity(), true);
+    }
+
+    /**
+     * Deletes the VBOs of the four vertex attributes, shared interleaved ones only once.
+     */
+    private void releaseVertexBuffers() {
+        mVertexArrays.invalidate();
+        final int[] handles = new int[5];
+        int count = 0;
+        for (VertexFormat.Attribute attribute : VertexFormat.Attribute.values()) {
+            final BufferInfo info = mBuffers.get(attribute.bufferKey);
+            if (info.allocation != null) {
+                freeAllocation(info);
+            } else if (info.bufferHandle > 0 && !isInterleaved(info)) {
+                handles[count++] = info.bufferHandle;
+            }
+        }
+        if (mInterleavedBufferInfo != null && mInterleavedBufferInfo.allocation != null) {
+            freeAllocation(mInterleavedBufferInfo);
+        } else if (mInterleavedBufferInfo != null && mInterleavedBufferInfo.bufferHandle > 0) {
+            handles[count++] = mInterleavedBufferInfo.bufferHandle;
+        }
+        if (count > 0) {
+            GLES20.glDeleteBuffers(count, handles, 0);
+        }
     }
 
     /**
@@ -510,6 +1273,8 @@ public class Geometry3D {
             }
             copyFromGeometry3D(mOriginalGeometry);
         }
+        // Vertex arrays went down with the context
+        mVertexArrays.forget();
         createBuffers();
     }
 
@@ -539,6 +1304,7 @@ public class Geometry3D {
 
         GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
         GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        BufferArena.invalidateBindings();
     }
 
     /**
@@ -561,15 +1327,7 @@ public class Geometry3D {
      * @param usage
      */
     public void createBuffer(BufferInfo bufferInfo, BufferType type, int target, int usage) {
-        int byteSize = FLOAT_SIZE_BYTES;
-        if (type == BufferType.SHORT_BUFFER) {
-            byteSize = SHORT_SIZE_BYTES;
-        } else if (type == BufferType.BYTE_BUFFER) {
-            byteSize = BYTE_SIZE_BYTES;
-        } else if (type == BufferType.INT_BUFFER) {
-            byteSize = INT_SIZE_BYTES;
-        }
-        //TODO: Other types
+        final int byteSize = getByteSize(type);
         bufferInfo.byteSize = byteSize;
 
         int buff[] = new int[1];
@@ -584,18 +1342,84 @@ public class Geometry3D {
             GLES20.glBindBuffer(target, handle);
             GLES20.glBufferData(target, buffer.capacity() * byteSize, buffer, usage);
             GLES20.glBindBuffer(target, 0);
+            BufferArena.invalidateBindings();
+            countUpload(buffer.capacity() * byteSize);
+        }
+        if (bufferInfo.dirtyRanges != null) {
+            bufferInfo.dirtyRanges.clear();
         }
 
         bufferInfo.bufferHandle = handle;
         bufferInfo.bufferType = type;
         bufferInfo.target = target;
         bufferInfo.usage = usage;
+        mVertexArrays.invalidate();
     }
 
     public void createBuffer(BufferInfo bufferInfo) {
         createBuffer(bufferInfo, bufferInfo.bufferType, bufferInfo.target, bufferInfo.usage);
     }
 
+    /**
+     * Creates one of the standard buffers, taking it from the arena if there is one.
+     */
+    private void createBuffer(int key, BufferInfo bufferInfo) {
+        if (mBufferArena != null && key <= INDEX_BUFFER_KEY && bufferInfo.buffer != null
+            && bufferInfo.dirtyRanges == null) {
+            allocateBuffer(bufferInfo, bufferInfo.bufferType, bufferInfo.target);
+        } else {
+            createBuffer(bufferInfo);
+        }
+    }
+
+    /**
+     * Uploads the data of a buffer into a range of the arena, replacing any range it held before. The handle of the
+     * buffer becomes that of the page and its offset that of the range.
+     */
+    private void allocateBuffer(BufferInfo bufferInfo, BufferType type, int target) {
+        final int byteSize = getByteSize(type);
+        final Buffer buffer = bufferInfo.buffer;
+        final int size = buffer.capacity() * byteSize;
+        if (bufferInfo.allocation != null) {
+            mBufferArena.free(bufferInfo.allocation);
+        }
+        final BufferArena.Allocation allocation = mBufferArena.allocate(target, size);
+
+        buffer.rewind();
+        GLES20.glBindBuffer(target, allocation.getHandle());
+        GLES20.glBufferSubData(target, allocation.getOffset(), size, buffer);
+        GLES20.glBindBuffer(target, 0);
+        BufferArena.invalidateBindings();
+        countUpload(size);
+
+        bufferInfo.allocation = allocation;
+        bufferInfo.bufferHandle = allocation.getHandle();
+        bufferInfo.offset = allocation.getOffset();
+        bufferInfo.byteSize = byteSize;
+        bufferInfo.bufferType = type;
+        bufferInfo.target = target;
+        mVertexArrays.invalidate();
+    }
+
+    private void freeAllocation(BufferInfo bufferInfo) {
+        mBufferArena.free(bufferInfo.allocation);
+        bufferInfo.allocation = null;
+        bufferInfo.bufferHandle = 0;
+        bufferInfo.offset = 0;
+    }
+
+    private static int getByteSize(BufferType type) {
+        if (type == BufferType.SHORT_BUFFER) {
+            return SHORT_SIZE_BYTES;
+        } else if (type == BufferType.BYTE_BUFFER) {
+            return BYTE_SIZE_BYTES;
+        } else if (type == BufferType.INT_BUFFER) {
+            return INT_SIZE_BYTES;
+        }
+        //TODO: Other types
+        return FLOAT_SIZE_BYTES;
+    }
+
     public int addBuffer(BufferInfo bufferInfo, BufferType type, int target, int usage) {
         createBuffer(bufferInfo, type, target, usage);
         final int key = mBuffers.size();
@@ -620,9 +1444,19 @@ public class Geometry3D {
         for (int i = 0, j = mBuffers.size(); i < j; ++i) {
             final BufferInfo info = mBuffers.get(i);
             if (info != null && info.bufferHandle == 0) {
-                createBuffer(info);
+                if (mDataReleased) {
+                    restoreData();
+                }
+                if (isInterleaved(info)) {
+                    createInterleavedBuffer();
+                } else {
+                    createBuffer(i, info);
+                }
             }
         }
+        if (mRetentionPolicy != RetentionPolicy.KEEP) {
+            releaseData();
+        }
     }
 
     /**
@@ -665,8 +1499,23 @@ public class Geometry3D {
      * @param usage
      */
     public void changeBufferUsage(BufferInfo bufferInfo, final int usage) {
+        if (isInterleaved(bufferInfo)) {
+            // The usage hint applies to the shared buffer of all interleaved attributes
+            mInterleavedBufferInfo.usage = usage;
+            updateInterleavedBuffer();
+            return;
+        }
+        if (bufferInfo.allocation != null) {
+            // Arena pages share one usage hint
+            bufferInfo.usage = usage;
+            return;
+        }
+        final boolean restored = restoreForChange();
         GLES20.glDeleteBuffers(1, new int[]{ bufferInfo.bufferHandle }, 0);
         createBuffer(bufferInfo, bufferInfo.bufferType, bufferInfo.target, usage);
+        if (restored) {
+            releaseData();
+        }
     }
 
     /**
@@ -714,16 +1563,342 @@ public class Geometry3D {
      * @param resizeBuffer
      */
     public void changeBufferData(BufferInfo bufferInfo, Buffer newData, int index, int size, boolean resizeBuffer) {
+        final boolean restored = restoreForChange();
+        applyBufferChange(bufferInfo, newData, index, size, resizeBuffer, restored);
+        if (restored) {
+            releaseData();
+        }
+    }
+
+    private void applyBufferChange(BufferInfo bufferInfo, Buffer newData, int index, int size, boolean resizeBuffer,
+                                   boolean restored) {
         newData.rewind();
 
-        GLES20.glBindBuffer(bufferInfo.target, bufferInfo.bufferHandle);
+        if (isInterleaved(bufferInfo)) {
+            // Interleaved attributes cannot be updated in place, patch the stream and re-upload the shared buffer
+            if (resizeBuffer) {
+                bufferInfo.buffer = newData;
+            } else {
+                final FloatBuffer target = (FloatBuffer) bufferInfo.buffer;
+                target.position(index);
+                target.put((FloatBuffer) newData);
+                target.position(0);
+                newData.rewind();
+            }
+            updateInterleavedBuffer();
+            return;
+        }
+
+        if (bufferInfo.dirtyRanges != null && !resizeBuffer) {
+            // Streaming buffers only patch their CPU copy here, the GL buffer is updated once per frame
+            if (newData != bufferInfo.buffer) {
+                copyElements(newData, bufferInfo.buffer, index, size);
+            }
+            bufferInfo.dirtyRanges.add(index, index + size);
+            return;
+        }
+
+        if (resizeBuffer && bufferInfo.allocation != null) {
+            bufferInfo.buffer = newData;
+            allocateBuffer(bufferInfo, bufferInfo.bufferType, bufferInfo.target);
+            return;
+        }
+
+        final int base = bufferInfo.allocation != null ? bufferInfo.allocation.getOffset() : 0;
         if (resizeBuffer) {
             bufferInfo.buffer = newData;
-            GLES20.glBufferData(bufferInfo.target, size * bufferInfo.byteSize, newData, bufferInfo.usage);
+            if (bufferInfo.dirtyRanges != null) {
+                bufferInfo.dirtyRanges.clear();
+            }
+        } else if (newData != bufferInfo.buffer && bufferInfo.buffer != null
+                   && (restored || mRetentionPolicy != RetentionPolicy.KEEP)) {
+            // The CPU copy is what gets spilled or uploaded again, it has to hold the change as well
+            copyElements(newData, bufferInfo.buffer, index, size);
+        }
+        uploadBufferData(bufferInfo, newData, base + index * bufferInfo.byteSize, size * bufferInfo.byteSize,
+                         resizeBuffer);
+    }
+
+    /**
+     * Uploads data into an existing buffer object. Must run on the GL thread.
+     *
+     * @param bufferInfo {@link BufferInfo} of the buffer object.
+     * @param data       {@link Buffer} holding the data from its position on.
+     * @param byteOffset {@code int} Where the data goes in the buffer object, ignored when re-specifying.
+     * @param byteCount  {@code int} Number of bytes to upload.
+     * @param respecify  {@code boolean} True to replace the whole data store, which may change its size.
+     */
+    protected void uploadBufferData(BufferInfo bufferInfo, Buffer data, int byteOffset, int byteCount,
+                                    boolean respecify) {
+        GLES20.glBindBuffer(bufferInfo.target, bufferInfo.bufferHandle);
+        if (respecify) {
+            GLES20.glBufferData(bufferInfo.target, byteCount, data, bufferInfo.usage);
         } else {
-            GLES20.glBufferSubData(bufferInfo.target, index * bufferInfo.byteSize, size * bufferInfo.byteSize, newData);
+            GLES20.glBufferSubData(bufferInfo.target, byteOffset, byteCount, data);
         }
         GLES20.glBindBuffer(bufferInfo.target, 0);
+        BufferArena.invalidateBindings();
+        countUpload(byteCount);
+    }
+
+    private static void copyElements(Buffer source, Buffer target, int index, int size) {
+        source.rewind();
+        target.position(index);
+        if (target instanceof FloatBuffer) {
+            final FloatBuffer from = ((FloatBuffer) source).duplicate();
+            from.limit(Math.min(from.capacity(), size));
+            ((FloatBuffer) target).put(from);
+        } else if (target instanceof IntBuffer) {
+            final IntBuffer from = ((IntBuffer) source).duplicate();
+            from.limit(Math.min(from.capacity(), size));
+            ((IntBuffer) target).put(from);
+        } else if (target instanceof ShortBuffer) {
+            final ShortBuffer from = ((ShortBuffer) source).duplicate();
+            from.limit(Math.min(from.capacity(), size));
+            ((ShortBuffer) target).put(from);
+        } else if (target instanceof DoubleBuffer) {
+            final DoubleBuffer from = ((DoubleBuffer) source).duplicate();
+            from.limit(Math.min(from.capacity(), size));
+            ((DoubleBuffer) target).put(from);
+        } else {
+            final ByteBuffer from = ((ByteBuffer) source).duplicate();
+            from.limit(Math.min(from.capacity(), size));
+            ((ByteBuffer) target).put(from);
+        }
+        target.position(0);
+    }
+
+    /**
+     * Turns a buffer into a streaming buffer, meant for data which changes every frame or most frames. Changes made
+     * through {@link #changeBufferData} or flagged with {@link #markDirty} are only written to the CPU side copy and
+     * recorded as dirty ranges. They are uploaded together by {@link #uploadDirtyRanges()} just before the geometry is
+     * drawn, once per frame however often the data changed.
+     * <p>
+     * When a large part of the buffer changed it is re-specified as a whole with {@code glBufferData}. This orphans
+     * the storage the GPU may still be reading from a previous frame, so the driver can hand out fresh memory instead
+     * of waiting. Smaller changes are patched range by range. Interleaved attributes can not stream as they share one
+     * buffer.
+     *
+     * @param bufferInfo {@link BufferInfo} of this geometry.
+     * @param streaming  {@code boolean} True to stream the buffer, false to upload changes immediately again.
+     */
+    public void setStreaming(BufferInfo bufferInfo, boolean streaming) {
+        if (streaming && isInterleaved(bufferInfo)) {
+            throw new IllegalArgumentException("Interleaved attributes can not be streamed.");
+        }
+        if (streaming) {
+            if (bufferInfo.dirtyRanges == null) {
+                bufferInfo.dirtyRanges = new DirtyRanges();
+            }
+            bufferInfo.usage = GLES20.GL_STREAM_DRAW;
+        } else {
+            if (bufferInfo.dirtyRanges != null && !bufferInfo.dirtyRanges.isEmpty()) {
+                uploadDirtyRanges(bufferInfo);
+            }
+            bufferInfo.dirtyRanges = null;
+        }
+    }
+
+    public boolean isStreaming(BufferInfo bufferInfo) {
+        return bufferInfo.dirtyRanges != null;
+    }
+
+    /**
+     * Flags elements of a streaming buffer which were changed directly in its {@link BufferInfo#buffer}.
+     *
+     * @param bufferInfo {@link BufferInfo} of a streaming buffer.
+     * @param index      {@code int} First changed element.
+     * @param size       {@code int} Number of changed elements.
+     */
+    public void markDirty(BufferInfo bufferInfo, int index, int size) {
+        if (bufferInfo.dirtyRanges == null) {
+            throw new IllegalStateException("Only streaming buffers track changes.");
+        }
+        bufferInfo.dirtyRanges.add(index, index + size);
+    }
+
+    /**
+     * @param threshold {@code float} Fraction of a streaming buffer which has to be dirty for it to be re-specified as
+     *                  a whole. 0 always re-specifies, 1 only when every element changed.
+     */
+    public void setOrphanThreshold(float threshold) {
+        mOrphanThreshold = threshold;
+    }
+
+    /**
+     * Uploads the dirty ranges of every streaming buffer. Called before the geometry is drawn, must run on the GL
+     * thread.
+     */
+    public void uploadDirtyRanges() {
+        for (int i = 0, j = mBuffers.size(); i < j; ++i) {
+            final BufferInfo info = mBuffers.get(i);
+            if (info != null && info.dirtyRanges != null && !info.dirtyRanges.isEmpty()) {
+                uploadDirtyRanges(info);
+            }
+        }
+    }
+
+    private void uploadDirtyRanges(BufferInfo info) {
+        final DirtyRanges ranges = info.dirtyRanges;
+        final Buffer buffer = info.buffer;
+        if (buffer == null || info.bufferHandle <= 0) {
+            // Nothing to upload to yet, creating the buffer sends everything
+            return;
+        }
+        final int capacity = buffer.capacity();
+        final int base = info.allocation != null ? info.allocation.getOffset() : 0;
+        GLES20.glBindBuffer(info.target, info.bufferHandle);
+        // A range of an arena page can not be orphaned without losing the rest of the page
+        if (info.allocation == null && ranges.getElementCount() >= capacity * mOrphanThreshold) {
+            buffer.position(0);
+            GLES20.glBufferData(info.target, capacity * info.byteSize, buffer, info.usage);
+            countUpload(capacity * info.byteSize);
+        } else {
+            for (int r = 0, count = ranges.size(); r < count; ++r) {
+                final int start = ranges.getStart(r);
+                final int end = Math.min(ranges.getEnd(r), capacity);
+                if (end <= start) {
+                    continue;
+                }
+                buffer.position(start);
+                GLES20.glBufferSubData(info.target, base + start * info.byteSize, (end - start) * info.byteSize,
+                                       buffer);
+                countUpload((end - start) * info.byteSize);
+            }
+        }
+        buffer.position(0);
+        GLES20.glBindBuffer(info.target, 0);
+        BufferArena.invalidateBindings();
+        ranges.clear();
+    }
+
+    private void countUpload(long bytes) {
+        mUploadedBytes += bytes;
+        sTotalUploadedBytes += bytes;
+    }
+
+    /**
+     * @return {@code long} The number of bytes uploaded for this geometry since {@link #resetUploadedBytes()}.
+     */
+    public long getUploadedBytes() {
+        return mUploadedBytes;
+    }
+
+    public void resetUploadedBytes() {
+        mUploadedBytes = 0;
+    }
+
+    /**
+     * @return {@code long} The number of bytes uploaded by all geometry since {@link #resetTotalUploadedBytes()},
+     * reset it every frame to get the upload volume per frame.
+     */
+    public static long getTotalUploadedBytes() {
+        return sTotalUploadedBytes;
+    }
+
+    public static void resetTotalUploadedBytes() {
+        sTotalUploadedBytes = 0;
+    }
+
+    /**
+     * Places the vertex and index data in ranges of an arena's shared buffers instead of buffers of their own. Has to
+     * be set before the buffers are created. Streaming buffers and buffers added with
+     * {@link #addBuffer(BufferInfo, BufferType, int)} keep buffers of their own.
+     *
+     * @param arena {@link BufferArena} to suballocate from or null for separate buffers.
+     */
+    public void setBufferArena(@Nullable BufferArena arena) {
+        if (mHaveCreatedBuffers) {
+            throw new IllegalStateException("The buffer arena has to be set before the buffers are created.");
+        }
+        mBufferArena = arena;
+    }
+
+    @Nullable
+    public BufferArena getBufferArena() {
+        return mBufferArena;
+    }
+
+    public VertexArrayCache getVertexArrays() {
+        return mVertexArrays;
+    }
+
+    /**
+     * Divides the index buffer into spatial clusters which are culled separately, see
+     * {@link org.rajawali3d.util.MeshChunker}. Replacing the indices removes the clusters.
+     *
+     * @param indexOffsets {@code int[]} First index of every cluster followed by the total number of indices, or null
+     *                     to draw the geometry whole.
+     * @param bounds       {@link BoundingBox}es of the clusters in model space.
+     */
+    public void setClusters(@Nullable int[] indexOffsets, @Nullable BoundingBox[] bounds) {
+        if (indexOffsets == null || bounds == null) {
+            mClusterOffsets = null;
+            mClusterBounds = null;
+            return;
+        }
+        if (indexOffsets.length != bounds.length + 1) {
+            throw new IllegalArgumentException("Every cluster needs an index offset and bounds.");
+        }
+        mClusterOffsets = indexOffsets;
+        mClusterBounds = bounds;
+    }
+
+    /**
+     * @return {@code int} The number of spatial clusters, 0 if the geometry is drawn whole.
+     */
+    public int getNumClusters() {
+        return mClusterBounds != null ? mClusterBounds.length : 0;
+    }
+
+    public int getClusterIndexOffset(int cluster) {
+        return mClusterOffsets[cluster];
+    }
+
+    public int getClusterIndexCount(int cluster) {
+        return mClusterOffsets[cluster + 1] - mClusterOffsets[cluster];
+    }
+
+    public BoundingBox getClusterBounds(int cluster) {
+        return mClusterBounds[cluster];
+    }
+
+    /**
+     * Draws only a contiguous range of the indices, such as some of the layers of a
+     * {@link org.rajawali3d.loader.GCodeToolpath}. Geometry divided into clusters is drawn by cluster instead.
+     * Replacing the indices draws all of them again.
+     *
+     * @param firstIndex {@code int} First index to draw.
+     * @param count      {@code int} Number of indices to draw.
+     */
+    public void setDrawRange(int firstIndex, int count) {
+        if (firstIndex < 0 || count < 0) {
+            throw new IllegalArgumentException("The draw range can not be negative.");
+        }
+        mDrawRangeStart = firstIndex;
+        mDrawRangeCount = count;
+    }
+
+    /**
+     * Draws all indices again after {@link #setDrawRange(int, int)}.
+     */
+    public void clearDrawRange() {
+        mDrawRangeStart = 0;
+        mDrawRangeCount = -1;
+    }
+
+    /**
+     * @return {@code int} The first index drawn.
+     */
+    public int getDrawRangeStart() {
+        return mDrawRangeCount < 0 ? 0 : mDrawRangeStart;
+    }
+
+    /**
+     * @return {@code int} The number of indices drawn.
+     */
+    public int getDrawRangeCount() {
+        return mDrawRangeCount < 0 ? mNumIndices : mDrawRangeCount;
     }
 
     public void setVertices(float[] vertices) {
@@ -808,24 +1983,188 @@ public class Geometry3D {
         setIndices(indices, false);
     }
 
+    /**
+     * Sets the face indices. When every index fits in 16 bits they are stored in a {@link ShortBuffer} and drawn as
+     * {@code GL_UNSIGNED_SHORT}, which halves their memory and bandwidth and does not depend on the
+     * {@code OES_element_index_uint} extension. Larger meshes are stored in an {@link IntBuffer}.
+     *
+     * @param indices  {@code int[]} The indices.
+     * @param override {@code boolean} If true, a new buffer is always allocated.
+     */
     public void setIndices(int[] indices, boolean override) {
         final BufferInfo indexInfo = mBuffers.get(INDEX_BUFFER_KEY);
+        final boolean fitsShort = getMaxIndex(indices) < MAX_SHORT_INDEX_VERTICES;
         if (indexInfo.buffer == null || override == true) {
-            indexInfo.buffer = ByteBuffer.allocateDirect(indices.length * INT_SIZE_BYTES)
-                    .order(ByteOrder.nativeOrder()).asIntBuffer();
-            ((IntBuffer) indexInfo.buffer).put(indices).position(0);
+            if (fitsShort) {
+                indexInfo.buffer = ByteBuffer.allocateDirect(indices.length * SHORT_SIZE_BYTES)
+                        .order(ByteOrder.nativeOrder()).asShortBuffer();
+                putShortIndices((ShortBuffer) indexInfo.buffer, indices);
+                indexInfo.buffer.position(0);
+                indexInfo.bufferType = BufferType.SHORT_BUFFER;
+            } else {
+                indexInfo.buffer = ByteBuffer.allocateDirect(indices.length * INT_SIZE_BYTES)
+                        .order(ByteOrder.nativeOrder()).asIntBuffer();
+                ((IntBuffer) indexInfo.buffer).put(indices).position(0);
+                indexInfo.bufferType = BufferType.INT_BUFFER;
+            }
 
             mNumIndices = indices.length;
+            // Cluster and draw ranges referred to the replaced indices
+            mClusterOffsets = null;
+            mClusterBounds = null;
+            mDrawRangeCount = -1;
+        } else if (indexInfo.buffer instanceof ShortBuffer) {
+            if (!fitsShort) {
+                // Widen the existing indices so the new ones fit
+                final ShortBuffer shorts = (ShortBuffer) indexInfo.buffer;
+                final int position = shorts.position();
+                final IntBuffer ints = ByteBuffer.allocateDirect(shorts.capacity() * INT_SIZE_BYTES)
+                        .order(ByteOrder.nativeOrder()).asIntBuffer();
+                for (int i = 0, j = shorts.capacity(); i < j; ++i) {
+                    ints.put(shorts.get(i) & 0xFFFF);
+                }
+                ints.position(position);
+                indexInfo.buffer = ints;
+                indexInfo.bufferType = BufferType.INT_BUFFER;
+                ints.put(indices);
+            } else {
+                putShortIndices((ShortBuffer) indexInfo.buffer, indices);
+            }
         } else {
             ((IntBuffer) indexInfo.buffer).put(indices);
         }
     }
 
-    public IntBuffer getIndices() {
+    private static int getMaxIndex(int[] indices) {
+        int max = 0;
+        for (int i = 0, j = indices.length; i < j; ++i) {
+            if (indices[i] > max) {
+                max = indices[i];
+            }
+        }
+        return max;
+    }
+
+    private static void putShortIndices(ShortBuffer buffer, int[] indices) {
+        for (int i = 0, j = indices.length; i < j; ++i) {
+            buffer.put((short) indices[i]);
+        }
+    }
+
+    /**
+     * Returns the index buffer, which is a {@link ShortBuffer} when the indices fit in 16 bits and an
+     * {@link IntBuffer} otherwise. Use {@link #getIntArrayFromBuffer(Buffer)} to read either.
+     *
+     * @return {@link Buffer} The indices.
+     */
+    public Buffer getIndices() {
         if (mBuffers.get(INDEX_BUFFER_KEY).buffer == null && mOriginalGeometry != null) {
             return mOriginalGeometry.getIndices();
         }
-        return (IntBuffer) mBuffers.get(INDEX_BUFFER_KEY).buffer;
+        return mBuffers.get(INDEX_BUFFER_KEY).buffer;
+    }
+
+    /**
+     * @return {@code int} The GL type to draw the indices with, {@code GL_UNSIGNED_SHORT} or {@code GL_UNSIGNED_INT}.
+     */
+    public int getIndexType() {
+        return mBuffers.get(INDEX_BUFFER_KEY).bufferType == BufferType.SHORT_BUFFER
+               ? GLES20.GL_UNSIGNED_SHORT : GLES20.GL_UNSIGNED_INT;
+    }
+
+    /**
+     * @return {@code boolean} True if this geometry holds 32 bit indices.
+     */
+    public boolean hasIntIndices() {
+        final BufferInfo indexInfo = mBuffers.get(INDEX_BUFFER_KEY);
+        return indexInfo.buffer != null && indexInfo.bufferType == BufferType.INT_BUFFER;
+    }
+
+    /**
+     * Splits this geometry into pieces which each reference at most {@code maxVertices} vertices, so that a mesh
+     * too large for 16 bit indices can be drawn on hardware without support for 32 bit indices. Primitives are kept
+     * whole and in their original order, vertices shared by several pieces are duplicated.
+     *
+     * @param verticesPerPrimitive {@code int} 3 for triangles, 2 for lines and 1 for points.
+     * @param maxVertices          {@code int} The maximum number of vertices in a piece.
+     *
+     * @return {@link List} of {@link Geometry3D} pieces whose buffers have not been created yet.
+     */
+    public List<Geometry3D> split(int verticesPerPrimitive, int maxVertices) {
+        if (verticesPerPrimitive < 1 || maxVertices < verticesPerPrimitive) {
+            throw new IllegalArgumentException("A piece must be able to hold at least one primitive.");
+        }
+        final float[] vertices = getFloatArrayFromBuffer(getVertices());
+        final float[] normals = mHasNormals ? getFloatArrayFromBuffer(getNormals()) : null;
+        final float[] textureCoords = mHasTextureCoordinates ? getFloatArrayFromBuffer(getTextureCoords()) : null;
+        final float[] colors = getColors() != null ? getFloatArrayFromBuffer(getColors()) : null;
+        final int[] indices = getIntArrayFromBuffer(getIndices());
+
+        final List<Geometry3D> pieces = new ArrayList<>();
+        final int[] remap = new int[vertices.length / 3];
+        Arrays.fill(remap, -1);
+        final int[] used = new int[maxVertices];
+        final int[] pieceIndices = new int[indices.length];
+        int usedCount = 0;
+        int indexCount = 0;
+        for (int i = 0; i + verticesPerPrimitive <= indices.length; i += verticesPerPrimitive) {
+            int added = 0;
+            for (int k = 0; k < verticesPerPrimitive; ++k) {
+                if (remap[indices[i + k]] < 0) {
+                    ++added;
+                }
+            }
+            if (usedCount + added > maxVertices) {
+                pieces.add(createPiece(vertices, normals, textureCoords, colors, used, usedCount,
+                                       pieceIndices, indexCount));
+                for (int k = 0; k < usedCount; ++k) {
+                    remap[used[k]] = -1;
+                }
+                usedCount = 0;
+                indexCount = 0;
+            }
+            for (int k = 0; k < verticesPerPrimitive; ++k) {
+                final int index = indices[i + k];
+                if (remap[index] < 0) {
+                    remap[index] = usedCount;
+                    used[usedCount++] = index;
+                }
+                pieceIndices[indexCount++] = remap[index];
+            }
+        }
+        if (indexCount > 0) {
+            pieces.add(createPiece(vertices, normals, textureCoords, colors, used, usedCount,
+                                   pieceIndices, indexCount));
+        }
+        return pieces;
+    }
+
+    private Geometry3D createPiece(float[] vertices, float[] normals, float[] textureCoords, float[] colors,
+                                   int[] used, int usedCount, int[] indices, int indexCount) {
+        final float[] pieceVertices = new float[usedCount * 3];
+        final float[] pieceNormals = normals != null ? new float[usedCount * 3] : null;
+        final float[] pieceTextureCoords = textureCoords != null ? new float[usedCount * 2] : null;
+        final float[] pieceColors = colors != null ? new float[usedCount * 4] : null;
+        for (int i = 0; i < usedCount; ++i) {
+            final int vertex = used[i];
+            System.arraycopy(vertices, vertex * 3, pieceVertices, i * 3, 3);
+            if (pieceNormals != null) {
+                System.arraycopy(normals, vertex * 3, pieceNormals, i * 3, 3);
+            }
+            if (pieceTextureCoords != null) {
+                System.arraycopy(textureCoords, vertex * 2, pieceTextureCoords, i * 2, 2);
+            }
+            if (pieceColors != null) {
+                System.arraycopy(colors, vertex * 4, pieceColors, i * 4, 4);
+            }
+        }
+        final Geometry3D piece = new Geometry3D();
+        piece.setData(pieceVertices, mBuffers.get(VERTEX_BUFFER_KEY).usage,
+                      pieceNormals, mBuffers.get(NORMAL_BUFFER_KEY).usage,
+                      pieceTextureCoords, mBuffers.get(TEXTURE_BUFFER_KEY).usage,
+                      pieceColors, mBuffers.get(COLOR_BUFFER_KEY).usage,
+                      Arrays.copyOf(indices, indexCount), mBuffers.get(INDEX_BUFFER_KEY).usage, false);
+        return piece;
     }
 
     public void setTextureCoords(float[] textureCoords) {
@@ -869,6 +2208,8 @@ public class Geometry3D {
     }
 
     public void setColors(float[] colors, boolean override) {
+        // Released again with the new colors once the buffers are validated
+        restoreForChange();
         final BufferInfo colorInfo = mBuffers.get(COLOR_BUFFER_KEY);
         if (colorInfo.buffer == null || override == true) {
             colorInfo.buffer = ByteBuffer
@@ -906,13 +2247,14 @@ public class Geometry3D {
     }
 
     public void setColor(float r, float g, float b, float a, boolean createNewBuffer) {
+        final boolean restored = restoreForChange();
         BufferInfo colorInfo = mBuffers.get(COLOR_BUFFER_KEY);
         if (colorInfo.buffer == null || colorInfo.buffer.limit() == 0) {
             colorInfo = new BufferInfo();
             colorInfo.buffer = ByteBuffer.allocateDirect(mNumVertices * 4 * FLOAT_SIZE_BYTES)
                     .order(ByteOrder.nativeOrder()).asFloatBuffer();
             createNewBuffer = true;
-            mBuffers.add(COLOR_BUFFER_KEY, colorInfo);
+            setColorBufferInfo(colorInfo);
         }
 
         colorInfo.buffer.position(0);
@@ -925,14 +2267,17 @@ public class Geometry3D {
         }
         colorInfo.buffer.position(0);
 
-        if (createNewBuffer) {
+        if (isInterleaved(colorInfo)) {
+            updateInterleavedBuffer();
+        } else if (createNewBuffer) {
             createBuffer(colorInfo, BufferType.FLOAT_BUFFER, GLES20.GL_ARRAY_BUFFER);
+            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
         } else {
-            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, colorInfo.bufferHandle);
-            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, colorInfo.buffer.limit() * FLOAT_SIZE_BYTES, colorInfo.buffer,
-                                GLES20.GL_STATIC_DRAW);
+            uploadBufferData(colorInfo, colorInfo.buffer, 0, colorInfo.buffer.limit() * FLOAT_SIZE_BYTES, true);
+        }
+        if (restored) {
+            releaseData();
         }
-        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
     }
 
     public String toString() {
@@ -973,20 +2318,36 @@ public class Geometry3D {
     }
 
     public void destroy() {
+        mVertexArrays.invalidate();
         int[] buffers = new int[mBuffers.size()];
         int index = 0;
+        final boolean interleavedInArena = mInterleavedBufferInfo != null && mInterleavedBufferInfo.allocation != null;
+        if (interleavedInArena) {
+            freeAllocation(mInterleavedBufferInfo);
+        }
         for (BufferInfo info : mBuffers) {
-            buffers[index++] = info.bufferHandle;
+            if (info.allocation != null) {
+                // Pages belong to the arena, only the range is returned
+                freeAllocation(info);
+            } else if (!(interleavedInArena && isInterleaved(info))) {
+                buffers[index++] = info.bufferHandle;
+            }
             if (info.buffer != null) {
                 info.buffer.clear();
                 info.buffer = null;
             }
         }
-        GLES20.glDeleteBuffers(buffers.length, buffers, 0);
+        GLES20.glDeleteBuffers(index, buffers, 0);
+        // The interleaved attributes hold the handle of the shared buffer, so it has been deleted with them
+        mInterleavedBufferInfo = null;
 
         mOriginalGeometry = null;
 
         mBuffers.clear();
+        if (mSpillFile != null && mRetentionPolicy == RetentionPolicy.SPILL) {
+            mSpillFile.delete();
+        }
+        mDataReleased = false;
     }
 
     public boolean hasBoundingBox() {
@@ -1023,12 +2384,32 @@ public class Geometry3D {
         return mBoundingSphere;
     }
 
+    /**
+     * Retrieves one of the buffers of this geometry.
+     *
+     * @param key {@code int} One of the *_BUFFER_KEY constants or a key returned by {@link #addBuffer}.
+     *
+     * @return {@link BufferInfo} for the key.
+     */
+    public BufferInfo getBufferInfo(int key) {
+        return mBuffers.get(key);
+    }
+
+    /**
+     * @return {@code int} The number of buffers, the standard ones and those added with {@link #addBuffer}. Keys run
+     * from 0 to one less than this.
+     */
+    public int getBufferCount() {
+        return mBuffers.size();
+    }
+
     public BufferInfo getVertexBufferInfo() {
         return mBuffers.get(VERTEX_BUFFER_KEY);
     }
 
     public void setVertexBufferInfo(BufferInfo vertexBufferInfo) {
-        mBuffers.add(VERTEX_BUFFER_KEY, vertexBufferInfo);
+        mBuffers.set(VERTEX_BUFFER_KEY, vertexBufferInfo);
+        mVertexArrays.invalidate();
     }
 
     public BufferInfo getIndexBufferInfo() {
@@ -1036,7 +2417,8 @@ public class Geometry3D {
     }
 
     public void setIndexBufferInfo(BufferInfo indexBufferInfo) {
-        mBuffers.add(INDEX_BUFFER_KEY, indexBufferInfo);
+        mBuffers.set(INDEX_BUFFER_KEY, indexBufferInfo);
+        mVertexArrays.invalidate();
     }
 
     public BufferInfo getTexCoordBufferInfo() {
@@ -1044,7 +2426,8 @@ public class Geometry3D {
     }
 
     public void setTexCoordBufferInfo(BufferInfo texCoordBufferInfo) {
-        mBuffers.add(TEXTURE_BUFFER_KEY, texCoordBufferInfo);
+        mBuffers.set(TEXTURE_BUFFER_KEY, texCoordBufferInfo);
+        mVertexArrays.invalidate();
         this.mHasTextureCoordinates = true;
     }
 
@@ -1053,7 +2436,8 @@ public class Geometry3D {
     }
 
     public void setColorBufferInfo(BufferInfo colorBufferInfo) {
-        mBuffers.add(COLOR_BUFFER_KEY, colorBufferInfo);
+        mBuffers.set(COLOR_BUFFER_KEY, colorBufferInfo);
+        mVertexArrays.invalidate();
     }
 
     public BufferInfo getNormalBufferInfo() {
@@ -1061,20 +2445,29 @@ public class Geometry3D {
     }
 
     public void setNormalBufferInfo(BufferInfo normalBufferInfo) {
-        mBuffers.add(NORMAL_BUFFER_KEY, normalBufferInfo);
+        mBuffers.set(NORMAL_BUFFER_KEY, normalBufferInfo);
+        mVertexArrays.invalidate();
         this.mHasNormals = true;
     }
 
     public int getNumTriangles() {
         final Buffer vertBuffer = mBuffers.get(VERTEX_BUFFER_KEY).buffer;
-        return vertBuffer != null ? vertBuffer.limit() / 9 : 0;
+        if (vertBuffer == null) {
+            return mDataReleased ? mNumVertices / 3 : 0;
+        }
+        return vertBuffer.limit() / 9;
     }
 
     public void setBuffersCreated(boolean created) {
         mHaveCreatedBuffers = created;
     }
 
-    void setBoundingBox(BoundingBox boundingBox){
+    /**
+     * Sets a known bounding box so it does not have to be computed from the vertices.
+     *
+     * @param boundingBox {@link BoundingBox} enclosing every vertex.
+     */
+    public void setBoundingBox(BoundingBox boundingBox) {
         this.mBoundingBox = boundingBox;
     }
 }
@@ -18,6 +18,7 @@ import androidx.annotation.NonNull;
 import org.rajawali3d.bounds.BoundingBox;
 import org.rajawali3d.bounds.IBoundingVolume;
 import org.rajawali3d.cameras.Camera;
+import org.rajawali3d.cameras.Frustum;
 import org.rajawali3d.materials.Material;
 import org.rajawali3d.materials.MaterialManager;
 import org.rajawali3d.materials.textures.TextureAtlas;
@@ -25,11 +26,13 @@ import org.rajawali3d.materials.textures.TexturePacker.Tile;
 import org.rajawali3d.math.Matrix;
 import org.rajawali3d.math.Matrix4;
 import org.rajawali3d.math.vector.Vector3;
+import org.rajawali3d.util.Capabilities;
 import org.rajawali3d.util.GLU;
 import org.rajawali3d.util.RajLog;
 import org.rajawali3d.visitors.INode;
 import org.rajawali3d.visitors.INodeVisitor;
 
+import java.nio.Buffer;
 import java.nio.FloatBuffer;
 import java.util.Collections;
 import java.util.List;
@@ -50,6 +53,7 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
     public static final int UNPICKABLE = -1;
 
     protected final Matrix4 mMVPMatrix = new Matrix4();
+    protected Matrix4 mPickingMVPMatrix;
 
     protected final Matrix4 mMVMatrix          = new Matrix4();
     protected final Matrix4 mInverseViewMatrix = new Matrix4();
@@ -94,6 +98,14 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
     protected int mBlendFuncDFactor;
     protected boolean mEnableDepthTest = true;
     protected boolean mEnableDepthMask = true;
+    /**
+     * Whether a vertex array object is bound for the draw in progress.
+     */
+    protected boolean mVertexArrayBound;
+    /**
+     * Whether the warning about geometry which needs splitting but is not split has been logged.
+     */
+    private boolean mSplitSkipped;
 
     protected volatile boolean mIsDestroyed = false;
 
@@ -125,7 +137,7 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
                         float[] colors, int[] indices, boolean createVBOs) {
         mGeometry.setData(vertexBufferInfo, normalBufferInfo, textureCoords, colors, indices, createVBOs);
         mIsContainerOnly = false;
-        mElementsBufferType = GLES20.GL_UNSIGNED_INT;
+        mElementsBufferType = mGeometry.getIndexType();
     }
 
     /**
@@ -144,20 +156,102 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
                 colors, GLES20.GL_STATIC_DRAW, indices, GLES20.GL_STATIC_DRAW, createVBOs);
     }
 
+    /**
+     * Passes direct buffers to the Geometry3D instance, which keeps them without copying.
+     *
+     * @see Geometry3D#setData(FloatBuffer, FloatBuffer, FloatBuffer, Buffer, boolean)
+     */
+    public void setData(FloatBuffer vertices, FloatBuffer normals, FloatBuffer textureCoords, Buffer indices,
+                        boolean createVBOs) {
+        mGeometry.setData(vertices, normals, textureCoords, indices, createVBOs);
+        mIsContainerOnly = false;
+        mElementsBufferType = mGeometry.getIndexType();
+    }
+
     public void setData(float[] vertices, int verticesUsage, float[] normals, int normalsUsage, float[] textureCoords,
                         int textureCoordsUsage,
                         float[] colors, int colorsUsage, int[] indices, int indicesUsage, boolean createVBOs) {
         mGeometry.setData(vertices, verticesUsage, normals, normalsUsage, textureCoords, textureCoordsUsage, colors,
                           colorsUsage, indices, indicesUsage, createVBOs);
         mIsContainerOnly = false;
-        mElementsBufferType = GLES20.GL_UNSIGNED_INT;
+        mElementsBufferType = mGeometry.getIndexType();
     }
 
     /**
      * Executed before the rendering process starts
      */
     protected void preRender() {
+        if (mGeometry.hasIntIndices() && !Capabilities.getInstance().isUnsignedIntIndexSupported()) {
+            if (getClass() == Object3D.class) {
+                splitGeometry();
+            } else if (!mSplitSkipped) {
+                // Plain children would lose what the subclass adds, such as skinning or animation
+                mSplitSkipped = true;
+                RajLog.w("[" + getClass().getName() + "] Needs 32 bit indices, which this device does not support."
+                         + " Only plain Object3D geometry is split automatically.");
+            }
+        }
         mGeometry.validateBuffers();
+        mGeometry.uploadDirtyRanges();
+    }
+
+    /**
+     * Moves this object's geometry into child objects which can each be drawn with 16 bit indices and turns this
+     * object into a container. This happens automatically before a plain {@link Object3D} with 65536 vertices or more
+     * is rendered on an OpenGL ES 2.0 device without the {@code OES_element_index_uint} extension. The children are
+     * plain {@link Object3D}s sharing this object's material, color and render state, so subclasses relying on
+     * their own geometry handling, such as animated meshes, should not be split.
+     *
+     * @return {@code boolean} True if the geometry was split.
+     */
+    public boolean splitGeometry() {
+        final int verticesPerPrimitive;
+        switch (mDrawingMode) {
+            case GLES20.GL_TRIANGLES:
+                verticesPerPrimitive = 3;
+                break;
+            case GLES20.GL_LINES:
+                verticesPerPrimitive = 2;
+                break;
+            case GLES20.GL_POINTS:
+                verticesPerPrimitive = 1;
+                break;
+            default:
+                RajLog.w("[" + getClass().getName() + "] Only triangle, line and point lists can be split.");
+                return false;
+        }
+        if (mIsContainerOnly || mGeometry.getNumIndices() == 0) {
+            return false;
+        }
+        final List<Geometry3D> pieces = mGeometry.split(verticesPerPrimitive, Geometry3D.MAX_SHORT_INDEX_VERTICES);
+        for (int i = 0, j = pieces.size(); i < j; ++i) {
+            final Object3D piece = new Object3D(mName);
+            piece.mGeometry = pieces.get(i);
+            piece.mIsContainerOnly = false;
+            piece.mElementsBufferType = piece.mGeometry.getIndexType();
+            piece.setMaterial(mMaterial);
+            System.arraycopy(mColor, 0, piece.mColor, 0, mColor.length);
+            piece.mOverrideMaterialColor = mOverrideMaterialColor;
+            piece.mDrawingMode = mDrawingMode;
+            piece.mDoubleSided = mDoubleSided;
+            piece.mBackSided = mBackSided;
+            piece.mTransparent = mTransparent;
+            piece.mEnableBlending = mEnableBlending;
+            piece.mBlendFuncSFactor = mBlendFuncSFactor;
+            piece.mBlendFuncDFactor = mBlendFuncDFactor;
+            piece.mEnableDepthTest = mEnableDepthTest;
+            piece.mEnableDepthMask = mEnableDepthMask;
+            piece.mFrustumTest = mFrustumTest;
+            piece.setPickingColor(mPickingIndex);
+            addChild(piece);
+        }
+        // A clone's buffers belong to its original geometry, which other clones may still draw
+        if (mGeometry.mOriginalGeometry == null && mGeometry.mHaveCreatedBuffers) {
+            mGeometry.destroy();
+        }
+        mGeometry = new Geometry3D();
+        mIsContainerOnly = true;
+        return true;
     }
 
     /**
@@ -274,19 +368,7 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
                 }
                 material.useProgram();
 
-                setShaderParams(camera);
-                material.bindTextures();
-                if (mGeometry.hasTextureCoordinates()) {
-                    material.setTextureCoords(mGeometry.getTexCoordBufferInfo());
-                }
-                if (mGeometry.hasNormals()) {
-                    material.setNormals(mGeometry.getNormalBufferInfo());
-                }
-                if (mMaterial.usingVertexColors()) {
-                    material.setVertexColors(mGeometry.getColorBufferInfo());
-                }
-
-                material.setVertices(mGeometry.getVertexBufferInfo());
+                setAttributes(camera, material);
             }
             material.setCurrentObject(this);
             if (mOverrideMaterialColor) {
@@ -302,11 +384,11 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
             material.setModelViewMatrix(mMVMatrix);
 
             if (mIsVisible) {
-                int bufferType = mGeometry.getIndexBufferInfo().bufferType == Geometry3D.BufferType.SHORT_BUFFER
-                                 ? GLES20.GL_UNSIGNED_SHORT : GLES20.GL_UNSIGNED_INT;
-                GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mGeometry.getIndexBufferInfo().bufferHandle);
-                GLES20.glDrawElements(mDrawingMode, mGeometry.getNumIndices(), bufferType, 0);
-                GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+                drawElements(camera);
+            }
+            if (mVertexArrayBound) {
+                VertexArrayCache.unbind();
+                mVertexArrayBound = false;
             }
             if (!mIsPartOfBatch && !mRenderChildrenAsBatch && sceneMaterial == null) {
                 material.unbindTextures();
@@ -370,7 +452,7 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
                 updateMaxMinCoords(min, max, child);
             }
 
-            if (mGeometry.getVertices() != null) {
+            if (mGeometry.hasVertices()) {
                 updateMaxMinCoords(min, max, this);
             }
 
@@ -405,6 +487,120 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
         }
     }
 
+    /**
+     * Draws the indexed geometry. Indices in an arena page start at the byte offset of their range and the page stays
+     * bound, so the next object from the same page skips the bind. ES 2 has no base vertex, the attribute pointers
+     * already start at the object's own vertices which has the same effect.
+     *
+     * @param camera {@link Camera} to cull spatial clusters against or null to draw all of them.
+     */
+    private void drawElements(Camera camera) {
+        final BufferInfo indexInfo = mGeometry.getIndexBufferInfo();
+        final int offset = indexInfo.allocation != null ? indexInfo.allocation.getOffset() : 0;
+        // With a vertex array bound the index buffer binding is part of it
+        if (!mVertexArrayBound) {
+            BufferArena.bindElementBuffer(indexInfo.bufferHandle);
+        }
+        if (camera != null && mGeometry.getNumClusters() > 0) {
+            drawVisibleClusters(camera, offset);
+        } else {
+            final int indexType = mGeometry.getIndexType();
+            final int indexSize = indexType == GLES20.GL_UNSIGNED_SHORT ? 2 : 4;
+            GLES20.glDrawElements(mDrawingMode, mGeometry.getDrawRangeCount(), indexType,
+                                  offset + mGeometry.getDrawRangeStart() * indexSize);
+        }
+        if (!mVertexArrayBound && indexInfo.allocation == null) {
+            BufferArena.bindElementBuffer(0);
+        }
+    }
+
+    /**
+     * Draws the index ranges of the clusters inside the frustum, merging neighbouring ranges into one draw call.
+     */
+    private void drawVisibleClusters(Camera camera, int offset) {
+        final Frustum frustum = camera.getFrustum();
+        final int indexType = mGeometry.getIndexType();
+        final int indexSize = indexType == GLES20.GL_UNSIGNED_SHORT ? 2 : 4;
+        int runStart = 0;
+        int runEnd = 0;
+        for (int i = 0, j = mGeometry.getNumClusters(); i < j; ++i) {
+            final BoundingBox bounds = mGeometry.getClusterBounds(i);
+            bounds.transform(mMMatrix);
+            if (!frustum.boxInFrustum(bounds.getTransformedMin(), bounds.getTransformedMax())) {
+                continue;
+            }
+            final int start = mGeometry.getClusterIndexOffset(i);
+            if (start != runEnd) {
+                if (runEnd > runStart) {
+                    GLES20.glDrawElements(mDrawingMode, runEnd - runStart, indexType, offset + runStart * indexSize);
+                }
+                runStart = start;
+            }
+            runEnd = start + mGeometry.getClusterIndexCount(i);
+        }
+        if (runEnd > runStart) {
+            GLES20.glDrawElements(mDrawingMode, runEnd - runStart, indexType, offset + runStart * indexSize);
+        }
+    }
+
+    /**
+     * Sets the shader parameters, binds the textures and sets the vertex attributes for a draw. The vertex array is
+     * bound before anything else, as animated objects set bone or next frame attributes in
+     * {@link #setShaderParams(Camera)} and material plugins set theirs in {@link Material#bindTextures()}. These are
+     * set again on every draw and end up in the vertex array along with the geometry's own attributes.
+     */
+    void setAttributes(Camera camera, Material material) {
+        final VertexArrayCache vertexArrays = mGeometry.getVertexArrays();
+        final int generation = vertexArrays.getGeneration();
+        final boolean recorded = bindVertexArray(material);
+        setShaderParams(camera);
+        material.bindTextures();
+        if (mVertexArrayBound && vertexArrays.getGeneration() != generation) {
+            // A buffer was swapped while setting up, as vertex animations do when they move to the next frame. That
+            // deleted the bound vertex array, this draw uses the default one and the next draw records a new one
+            mVertexArrayBound = false;
+        } else if (recorded) {
+            return;
+        }
+        if (mGeometry.hasTextureCoordinates()) {
+            material.setTextureCoords(mGeometry.getTexCoordBufferInfo());
+        }
+        if (mGeometry.hasNormals()) {
+            material.setNormals(mGeometry.getNormalBufferInfo());
+        }
+        if (mMaterial.usingVertexColors()) {
+            material.setVertexColors(mGeometry.getColorBufferInfo());
+        }
+
+        material.setVertices(mGeometry.getVertexBufferInfo());
+    }
+
+    /**
+     * Binds the vertex array object recorded for the geometry and program, creating it on first use. Objects whose
+     * children are drawn as a batch do not use one, as the children rely on the attributes the parent set.
+     *
+     * @return {@code boolean} True if a recorded vertex array was bound and the attributes need not be set.
+     */
+    boolean bindVertexArray(Material material) {
+        if (mRenderChildrenAsBatch || !VertexArrayCache.isAvailable()) {
+            return false;
+        }
+        final int mask = (mGeometry.hasTextureCoordinates() ? 1 : 0) | (mGeometry.hasNormals() ? 2 : 0)
+                         | (mMaterial.usingVertexColors() ? 4 : 0);
+        final VertexArrayCache vertexArrays = mGeometry.getVertexArrays();
+        int handle = vertexArrays.find(material.getProgramGeneration(), mask);
+        mVertexArrayBound = true;
+        if (handle != 0) {
+            VertexArrayCache.bind(handle);
+            return true;
+        }
+        handle = vertexArrays.create(material.getProgramGeneration(), mask);
+        VertexArrayCache.bind(handle);
+        // Recorded along with the attributes which the caller sets next
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mGeometry.getIndexBufferInfo().bufferHandle);
+        return false;
+    }
+
 
     /**
      * Renders the object for color-picking
@@ -471,17 +667,22 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
             GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
 
             // Apply this object's matrices to the pickingMaterial
-            pickingMaterial.setMVPMatrix(mMVPMatrix);
+            final Matrix4 decode = mGeometry.getPositionDecodeMatrix();
+            if (decode != null) {
+                // The picking shader has no decode plugin, fold the quantization range into its transform
+                if (mPickingMVPMatrix == null) {
+                    mPickingMVPMatrix = new Matrix4();
+                }
+                pickingMaterial.setMVPMatrix(mPickingMVPMatrix.setAll(mMVPMatrix).multiply(decode));
+            } else {
+                pickingMaterial.setMVPMatrix(mMVPMatrix);
+            }
             pickingMaterial.setModelMatrix(mMMatrix);
             pickingMaterial.setInverseViewMatrix(mInverseViewMatrix);
             pickingMaterial.setModelViewMatrix(mMVMatrix);
 
             // Draw the object using its picking color
-            int bufferType = mGeometry.getIndexBufferInfo().bufferType == Geometry3D.BufferType.SHORT_BUFFER
-                             ? GLES20.GL_UNSIGNED_SHORT : GLES20.GL_UNSIGNED_INT;
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mGeometry.getIndexBufferInfo().bufferHandle);
-            GLES20.glDrawElements(mDrawingMode, mGeometry.getNumIndices(), bufferType, 0);
-            GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+            drawElements(null);
 
             // Only need to undo face culling
             if (mDoubleSided) {
@@ -691,11 +892,11 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 
         for (int i = 0, j = getNumChildren(); i < j; i++) {
             Object3D child = getChildAt(i);
-            if (child.getGeometry() != null && child.getGeometry().getVertices() != null && child.isVisible()) {
+            if (child.getGeometry() != null && child.getGeometry().hasVertices() && child.isVisible()) {
                 if (child.getNumChildren() > 0) {
                     triangleCount += child.getNumTriangles();
                 } else {
-                    triangleCount += child.getGeometry().getVertices().limit() / 9;
+                    triangleCount += child.getGeometry().getNumTriangles();
                 }
             }
         }
@@ -712,7 +913,7 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
 
         for (int i = 0, j = getNumChildren(); i < j; i++) {
             Object3D child = getChildAt(i);
-            if (child.getGeometry() != null && child.getGeometry().getVertices() != null && child.isVisible()) {
+            if (child.getGeometry() != null && child.getGeometry().hasVertices() && child.isVisible()) {
                 if (child.getNumChildren() > 0) {
                     objectCount += child.getNumObjects() + 1;
                 } else {
@@ -782,7 +983,7 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
         if (copyMaterial) {
             clone.setMaterial(mMaterial);
         }
-        clone.mElementsBufferType = GLES20.GL_UNSIGNED_INT;
+        clone.mElementsBufferType = mGeometry.getIndexType();
         clone.mTransparent = this.mTransparent;
         clone.mEnableBlending = this.mEnableBlending;
         clone.mBlendFuncSFactor = this.mBlendFuncSFactor;
@@ -835,6 +1036,17 @@ public class Object3D extends ATransformable3D implements Comparable<Object3D>,
         mOverrideMaterialColor = true;
     }
 
+    /**
+     * Sets the color from normalized channels, without the 8 bit steps of {@link #setColor(int)}.
+     */
+    public void setColor(float red, float green, float blue, float alpha) {
+        mColor[RED] = red;
+        mColor[GREEN] = green;
+        mColor[BLUE] = blue;
+        mColor[ALPHA] = alpha;
+        mOverrideMaterialColor = true;
+    }
+
     public void setColor(Vector3 color) {
         setColor(Color.rgb((int) (color.x * 255), (int) (color.y * 255), (int) (color.z * 255)));
     }
@@ -0,0 +1,164 @@
+package org.rajawali3d;
+
+import android.opengl.GLES30;
+
+import org.rajawali3d.util.Capabilities;
+
+/**
+ * Vertex array objects of one geometry, one for every program it is drawn with. A vertex array records which buffers
+ * feed which attribute locations, with what layout, and the bound index buffer. Once recorded a draw restores all of
+ * that with a single bind instead of a bind, enable and pointer call per attribute.
+ *
+ * Entries are keyed by {@link org.rajawali3d.materials.Material#getProgramGeneration()}, which unlike a GL program
+ * handle is never reused when a program is rebuilt, and by a mask of the attributes set. Only a few entries are kept,
+ * the oldest is deleted to make room. The whole cache is invalidated by {@link Geometry3D} whenever a buffer handle or
+ * offset changes and forgotten on context loss, when the vertex arrays are gone already.
+ *
+ * Vertex arrays are core in OpenGL ES 3.0. The {@code OES_vertex_array_object} extension has no Java binding on
+ * Android, so ES 2 contexts keep setting attributes for every draw.
+ */
+public class VertexArrayCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 4;
+
+    private static boolean sEnabled = true;
+    private static Boolean sSupported;
+
+    private final int[] mPrograms;
+    private final int[] mMasks;
+    private final int[] mHandles;
+    private int         mCount;
+    private int         mGeneration;
+
+    public VertexArrayCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries {@code int} Number of vertex arrays kept before the oldest is deleted.
+     */
+    public VertexArrayCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("At least one entry has to be kept.");
+        }
+        mPrograms = new int[maxEntries];
+        mMasks = new int[maxEntries];
+        mHandles = new int[maxEntries];
+    }
+
+    /**
+     * Enables or disables the use of vertex arrays for all geometry. Enabled by default where supported.
+     *
+     * @param enabled {@code boolean} False to always set attributes per draw.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * @return {@code boolean} True if vertex arrays are enabled and supported by the current context.
+     */
+    public static boolean isAvailable() {
+        if (!sEnabled) {
+            return false;
+        }
+        if (sSupported == null) {
+            sSupported = Capabilities.getInstance().isVertexArrayObjectSupported();
+        }
+        return sSupported;
+    }
+
+    /**
+     * Looks up the vertex array recorded for a program.
+     *
+     * @param program {@code int} Generation of the program.
+     * @param mask    {@code int} Attributes set for the draw.
+     *
+     * @return {@code int} Handle of the vertex array or 0 if none was recorded.
+     */
+    public int find(int program, int mask) {
+        for (int i = 0; i < mCount; ++i) {
+            if (mPrograms[i] == program && mMasks[i] == mask) {
+                return mHandles[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Creates an empty vertex array for a program, deleting the oldest entry if the cache is full. The caller binds it
+     * and sets the attributes to record them.
+     *
+     * @param program {@code int} Generation of the program.
+     * @param mask    {@code int} Attributes set for the draw.
+     *
+     * @return {@code int} Handle of the new vertex array.
+     */
+    public int create(int program, int mask) {
+        if (mCount == mHandles.length) {
+            deleteVertexArray(mHandles[0]);
+            --mCount;
+            System.arraycopy(mPrograms, 1, mPrograms, 0, mCount);
+            System.arraycopy(mMasks, 1, mMasks, 0, mCount);
+            System.arraycopy(mHandles, 1, mHandles, 0, mCount);
+        }
+        final int handle = createVertexArray();
+        mPrograms[mCount] = program;
+        mMasks[mCount] = mask;
+        mHandles[mCount] = handle;
+        ++mCount;
+        return handle;
+    }
+
+    /**
+     * Deletes every vertex array, needed when the buffers they refer to changed. Must run on the GL thread.
+     */
+    public void invalidate() {
+        for (int i = 0; i < mCount; ++i) {
+            deleteVertexArray(mHandles[i]);
+        }
+        mCount = 0;
+        ++mGeneration;
+    }
+
+    /**
+     * Drops every entry without deleting anything, for when the context and with it the vertex arrays were lost.
+     */
+    public void forget() {
+        mCount = 0;
+        ++mGeneration;
+    }
+
+    /**
+     * @return {@code int} A counter which changes whenever the entries are invalidated or forgotten, so a draw can
+     * tell that the vertex array it bound was deleted while it set up.
+     */
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    protected int createVertexArray() {
+        final int[] handles = new int[1];
+        GLES30.glGenVertexArrays(1, handles, 0);
+        return handles[0];
+    }
+
+    protected void deleteVertexArray(int handle) {
+        GLES30.glDeleteVertexArrays(1, new int[]{ handle }, 0);
+    }
+
+    public static void bind(int handle) {
+        GLES30.glBindVertexArray(handle);
+    }
+
+    /**
+     * Restores the default vertex array, so later attribute and index buffer changes do not end up in a recorded one.
+     */
+    public static void unbind() {
+        GLES30.glBindVertexArray(0);
+    }
+}
@@ -0,0 +1,443 @@
+package org.rajawali3d;
+
+import android.opengl.GLES20;
+import androidx.annotation.NonNull;
+import org.rajawali3d.materials.Material;
+import org.rajawali3d.materials.plugins.VertexDecodeMaterialPlugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Describes an interleaved vertex layout, where several attributes of a vertex share a single VBO and sit next to
+ * each other in memory. Attributes are packed in the order they are given, each starting at a byte offset within the
+ * vertex and all sharing the same stride.
+ *
+ * Attributes which are not part of the format stay in their own buffer. Data which is updated at runtime, such as
+ * animated vertex colors, should be kept separate so updating it does not require re-uploading the whole vertex.
+ *
+ * Each attribute can also be stored in a compact {@link Encoding}. A quantized vertex with position, normal, texture
+ * coordinate and color takes 20 bytes instead of 48. Positions and texture coordinates stored as normalized shorts
+ * are mapped onto the range of the mesh and expanded again by a {@link VertexDecodeMaterialPlugin}.
+ *
+ * <pre><code>
+ * // Interleave everything but the colors
+ * geometry.setVertexFormat(VertexFormat.forGeometry(geometry, VertexFormat.Attribute.COLOR));
+ *
+ * // Interleave every mesh produced by a loader
+ * VertexFormat.interleave(loader.getParsedObject());
+ *
+ * // Quantize every mesh produced by a loader and add the decoding plugin to their materials
+ * VertexFormat.quantize(loader.getParsedObject());
+ * </code></pre>
+ *
+ * @see Geometry3D#setVertexFormat(VertexFormat)
+ */
+public class VertexFormat {
+
+    /**
+     * The vertex attributes a {@link Geometry3D} keeps, along with the buffer they are stored in.
+     */
+    public enum Attribute {
+        POSITION(Geometry3D.VERTEX_BUFFER_KEY, 3),
+        NORMAL(Geometry3D.NORMAL_BUFFER_KEY, 3),
+        TEXTURE_COORDINATE(Geometry3D.TEXTURE_BUFFER_KEY, 2),
+        COLOR(Geometry3D.COLOR_BUFFER_KEY, 4);
+
+        final int bufferKey;
+        final int components;
+
+        Attribute(int bufferKey, int components) {
+            this.bufferKey = bufferKey;
+            this.components = components;
+        }
+
+        public int getComponents() {
+            return components;
+        }
+
+        /**
+         * @return {@code boolean} True if the attribute can be stored with the provided encoding.
+         */
+        public boolean supports(@NonNull Encoding encoding) {
+            switch (encoding) {
+                case FLOAT:
+                    return true;
+                case NORMALIZED_SHORT:
+                    return this == POSITION || this == TEXTURE_COORDINATE;
+                case HALF_FLOAT:
+                    return this == TEXTURE_COORDINATE;
+                case OCTAHEDRAL:
+                    return this == NORMAL;
+                case UNSIGNED_BYTE:
+                    return this == COLOR;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * How the components of an attribute are stored. Every attribute is padded to a multiple of four bytes.
+     */
+    public enum Encoding {
+        /**
+         * 32 bit floats.
+         */
+        FLOAT(GLES20.GL_FLOAT, Geometry3D.FLOAT_SIZE_BYTES, false),
+        /**
+         * 16 bit integers mapped onto the range of the mesh, which the shader expands again.
+         */
+        NORMALIZED_SHORT(GLES20.GL_SHORT, Geometry3D.SHORT_SIZE_BYTES, true),
+        /**
+         * 16 bit floats. These require GL ES 3.0 or the {@code OES_vertex_half_float} extension.
+         */
+        HALF_FLOAT(0, Geometry3D.SHORT_SIZE_BYTES, false),
+        /**
+         * Unit vectors folded onto an octahedron and stored as two signed bytes.
+         */
+        OCTAHEDRAL(GLES20.GL_BYTE, Geometry3D.BYTE_SIZE_BYTES, true),
+        /**
+         * 8 bit integers mapped to [0, 1].
+         */
+        UNSIGNED_BYTE(GLES20.GL_UNSIGNED_BYTE, Geometry3D.BYTE_SIZE_BYTES, true);
+
+        final int     type;
+        final int     componentSize;
+        final boolean normalized;
+
+        Encoding(int type, int componentSize, boolean normalized) {
+            this.type = type;
+            this.componentSize = componentSize;
+            this.normalized = normalized;
+        }
+
+        /**
+         * @return {@code int} The number of bytes an attribute takes, including padding.
+         */
+        public int getSize(@NonNull Attribute attribute) {
+            final int components = this == OCTAHEDRAL ? 2 : attribute.components;
+            return (components * componentSize + 3) & ~3;
+        }
+    }
+
+    private final Attribute[] mAttributes;
+    private final Encoding[]  mEncodings;
+    private final int[]       mOffsets;
+    private final int         mStride;
+
+    /**
+     * Creates a format with the provided attributes stored as floats, in the given order.
+     *
+     * @param attributes {@link Attribute}s to interleave. At least one is required and each may only appear once.
+     */
+    public VertexFormat(@NonNull Attribute... attributes) {
+        this(attributes, filled(attributes.length, Encoding.FLOAT));
+    }
+
+    /**
+     * Creates a format with the provided attributes stored in the given encodings and order.
+     *
+     * @param attributes {@link Attribute}s to interleave. At least one is required and each may only appear once.
+     * @param encodings  {@link Encoding} of each attribute, which it must support.
+     */
+    public VertexFormat(@NonNull Attribute[] attributes, @NonNull Encoding[] encodings) {
+        if (attributes.length == 0) {
+            throw new IllegalArgumentException("A vertex format needs at least one attribute.");
+        }
+        if (attributes.length != encodings.length) {
+            throw new IllegalArgumentException("Every attribute needs exactly one encoding.");
+        }
+        mAttributes = attributes.clone();
+        mEncodings = new Encoding[Attribute.values().length];
+        mOffsets = new int[Attribute.values().length];
+        Arrays.fill(mOffsets, -1);
+        int offset = 0;
+        for (int i = 0; i < mAttributes.length; ++i) {
+            final Attribute attribute = mAttributes[i];
+            if (mOffsets[attribute.ordinal()] >= 0) {
+                throw new IllegalArgumentException("Attribute " + attribute + " is declared more than once.");
+            }
+            if (!attribute.supports(encodings[i])) {
+                throw new IllegalArgumentException("Attribute " + attribute + " cannot be stored as " + encodings[i]);
+            }
+            mOffsets[attribute.ordinal()] = offset;
+            mEncodings[attribute.ordinal()] = encodings[i];
+            offset += encodings[i].getSize(attribute);
+        }
+        mStride = offset;
+    }
+
+    private static Encoding[] filled(int length, Encoding encoding) {
+        final Encoding[] encodings = new Encoding[length];
+        Arrays.fill(encodings, encoding);
+        return encodings;
+    }
+
+    /**
+     * Creates a format interleaving every attribute the geometry currently holds data for.
+     *
+     * @param geometry {@link Geometry3D} to inspect.
+     * @param separate {@link Attribute}s to leave in their own buffer, typically those updated at runtime.
+     *
+     * @return {@link VertexFormat} for the geometry or null if there is nothing to interleave.
+     */
+    public static VertexFormat forGeometry(@NonNull Geometry3D geometry, @NonNull Attribute... separate) {
+        final List<Attribute> attributes = new ArrayList<>(4);
+        for (Attribute attribute : Attribute.values()) {
+            if (Arrays.asList(separate).contains(attribute)) {
+                continue;
+            }
+            final BufferInfo info = geometry.getBufferInfo(attribute.bufferKey);
+            if (info != null && info.buffer != null && info.buffer.capacity() > 0) {
+                attributes.add(attribute);
+            }
+        }
+        // A single attribute gains nothing from being interleaved
+        if (attributes.size() < 2) {
+            return null;
+        }
+        return new VertexFormat(attributes.toArray(new Attribute[attributes.size()]));
+    }
+
+    /**
+     * Switches the geometry of the provided object and all of its children to interleaved layouts. This is meant to
+     * be run on freshly loaded models before their buffers are created.
+     *
+     * @param object   {@link Object3D} root of the hierarchy to convert.
+     * @param separate {@link Attribute}s to leave in their own buffer.
+     */
+    public static void interleave(@NonNull Object3D object, @NonNull Attribute... separate) {
+        final Geometry3D geometry = object.getGeometry();
+        if (geometry != null && geometry.getNumVertices() > 0) {
+            final VertexFormat format = forGeometry(geometry, separate);
+            if (format != null) {
+                geometry.setVertexFormat(format);
+            }
+        }
+        for (int i = 0, j = object.getNumChildren(); i < j; ++i) {
+            interleave(object.getChildAt(i), separate);
+        }
+    }
+
+    /**
+     * Creates a format storing every attribute the geometry currently holds data for in its most compact encoding:
+     * normalized short positions and texture coordinates, octahedral normals and RGBA8 colors.
+     *
+     * @param geometry {@link Geometry3D} to inspect.
+     * @param separate {@link Attribute}s to leave in their own float buffer.
+     *
+     * @return {@link VertexFormat} for the geometry or null if there is nothing to quantize.
+     */
+    public static VertexFormat quantized(@NonNull Geometry3D geometry, @NonNull Attribute... separate) {
+        final List<Attribute> attributes = new ArrayList<>(4);
+        final List<Encoding> encodings = new ArrayList<>(4);
+        for (Attribute attribute : Attribute.values()) {
+            if (Arrays.asList(separate).contains(attribute)) {
+                continue;
+            }
+            final BufferInfo info = geometry.getBufferInfo(attribute.bufferKey);
+            if (info != null && info.buffer != null && info.buffer.capacity() > 0) {
+                attributes.add(attribute);
+                encodings.add(getCompactEncoding(attribute));
+            }
+        }
+        if (attributes.isEmpty()) {
+            return null;
+        }
+        return new VertexFormat(attributes.toArray(new Attribute[attributes.size()]),
+                                encodings.toArray(new Encoding[encodings.size()]));
+    }
+
+    private static Encoding getCompactEncoding(Attribute attribute) {
+        switch (attribute) {
+            case POSITION:
+            case TEXTURE_COORDINATE:
+                return Encoding.NORMALIZED_SHORT;
+            case NORMAL:
+                return Encoding.OCTAHEDRAL;
+            default:
+                return Encoding.UNSIGNED_BYTE;
+        }
+    }
+
+    /**
+     * Switches the geometry of the provided object and all of its children to quantized layouts and adds a
+     * {@link VertexDecodeMaterialPlugin} to their materials. Objects sharing a material should be quantized the same
+     * way, as the plugin decodes every attribute its material was created for.
+     *
+     * @param object   {@link Object3D} root of the hierarchy to convert.
+     * @param separate {@link Attribute}s to leave in their own float buffer.
+     */
+    public static void quantize(@NonNull Object3D object, @NonNull Attribute... separate) {
+        final Geometry3D geometry = object.getGeometry();
+        if (geometry != null && geometry.getNumVertices() > 0) {
+            final VertexFormat format = quantized(geometry, separate);
+            if (format != null) {
+                geometry.setVertexFormat(format);
+                final Material material = object.getMaterial();
+                if (material != null && format.needsDecoding()) {
+                    material.addPlugin(new VertexDecodeMaterialPlugin(format));
+                }
+            }
+        }
+        for (int i = 0, j = object.getNumChildren(); i < j; ++i) {
+            quantize(object.getChildAt(i), separate);
+        }
+    }
+
+    @NonNull
+    public Attribute[] getAttributes() {
+        return mAttributes.clone();
+    }
+
+    public boolean contains(@NonNull Attribute attribute) {
+        return mOffsets[attribute.ordinal()] >= 0;
+    }
+
+    /**
+     * @return {@link Encoding} of the attribute or null if it is not part of this format.
+     */
+    public Encoding getEncoding(@NonNull Attribute attribute) {
+        return mEncodings[attribute.ordinal()];
+    }
+
+    /**
+     * @return {@code boolean} True if any attribute is stored in something other than floats.
+     */
+    public boolean isQuantized() {
+        for (Encoding encoding : mEncodings) {
+            if (encoding != null && encoding != Encoding.FLOAT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return {@code boolean} True if the vertex shader has to expand positions, normals or texture coordinates.
+     */
+    public boolean needsDecoding() {
+        return getEncoding(Attribute.POSITION) == Encoding.NORMALIZED_SHORT
+               || getEncoding(Attribute.NORMAL) == Encoding.OCTAHEDRAL
+               || getEncoding(Attribute.TEXTURE_COORDINATE) == Encoding.NORMALIZED_SHORT;
+    }
+
+    /**
+     * @return {@code int} Byte offset of the attribute within a vertex or -1 if it is not part of this format.
+     */
+    public int getOffset(@NonNull Attribute attribute) {
+        return mOffsets[attribute.ordinal()];
+    }
+
+    /**
+     * @return {@code int} Size of a single vertex in bytes.
+     */
+    public int getStride() {
+        return mStride;
+    }
+
+    /**
+     * Maps a value in [-1, 1] onto a signed short, as read back by a normalized {@code GL_SHORT} attribute.
+     */
+    static short toNormalizedShort(double value) {
+        return (short) Math.round(Math.max(-1, Math.min(1, value)) * Short.MAX_VALUE);
+    }
+
+    /**
+     * Maps a value in [0, 1] onto an unsigned byte, as read back by a normalized {@code GL_UNSIGNED_BYTE} attribute.
+     */
+    static byte toUnsignedByte(float value) {
+        return (byte) Math.round(Math.max(0, Math.min(1, value)) * 255);
+    }
+
+    /**
+     * Converts a float to the bits of the nearest 16 bit float, rounding half to even.
+     */
+    static short toHalfFloat(float value) {
+        final int bits = Float.floatToRawIntBits(value);
+        final int sign = (bits >>> 16) & 0x8000;
+        final int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+        if (((bits >>> 23) & 0xFF) == 0xFF) {
+            // Infinity stays infinity, NaN stays NaN
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        if (exponent >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+        final int shift;
+        int half;
+        if (exponent <= 0) {
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            // Subnormal, the implicit leading bit becomes explicit
+            mantissa |= 0x800000;
+            shift = 14 - exponent;
+            half = mantissa >> shift;
+        } else {
+            shift = 13;
+            half = (exponent << 10) | (mantissa >> shift);
+        }
+        final int remainder = mantissa & ((1 << shift) - 1);
+        final int halfway = 1 << (shift - 1);
+        if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+            // May carry into the exponent, which is the correct result
+            ++half;
+        }
+        return (short) (sign | half);
+    }
+
+    /**
+     * Folds a unit vector onto an octahedron and stores its two coordinates as signed bytes.
+     *
+     * @return {@code short} The x coordinate in the high byte and the y coordinate in the low byte.
+     */
+    static short toOctahedral(float x, float y, float z) {
+        final float sum = Math.abs(x) + Math.abs(y) + Math.abs(z);
+        if (sum == 0) {
+            return 0;
+        }
+        float u = x / sum;
+        float v = y / sum;
+        if (z < 0) {
+            final float foldedU = (1 - Math.abs(v)) * (u >= 0 ? 1 : -1);
+            v = (1 - Math.abs(u)) * (v >= 0 ? 1 : -1);
+            u = foldedU;
+        }
+        final int encodedU = Math.round(Math.max(-1, Math.min(1, u)) * Byte.MAX_VALUE);
+        final int encodedV = Math.round(Math.max(-1, Math.min(1, v)) * Byte.MAX_VALUE);
+        return (short) ((encodedU << 8) | (encodedV & 0xFF));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof VertexFormat)) {
+            return false;
+        }
+        return Arrays.equals(mAttributes, ((VertexFormat) o).mAttributes)
+               && Arrays.equals(mEncodings, ((VertexFormat) o).mEncodings);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(mAttributes) + Arrays.hashCode(mEncodings);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("VertexFormat[");
+        for (int i = 0; i < mAttributes.length; ++i) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(mAttributes[i]).append(':').append(getEncoding(mAttributes[i]));
+        }
+        return sb.append("] stride: ").append(mStride).toString();
+    }
+}
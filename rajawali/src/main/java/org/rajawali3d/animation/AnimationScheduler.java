@@ -0,0 +1,606 @@
+package org.rajawali3d.animation;
+
+import android.view.animation.Interpolator;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.rajawali3d.ATransformable3D;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.animation.Animation.RepeatMode;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Drives large numbers of simple translate, scale and color tweens without an {@link Animation} object per tween.
+ *
+ * All tween state lives in primitive arrays indexed by slot, and the per frame work is a single loop over the
+ * active slots. Tweens with a start delay are parked in a hashed timing wheel so they cost nothing until they are
+ * due, and finished or cancelled tweens are dropped in one compaction pass at the end of each update. When an
+ * {@link Executor} is set, large active sets are split into chunks which are updated concurrently; tweens running
+ * at the same time must then target distinct objects.
+ *
+ * Tweens are identified by the {@code long} handle returned when they are added. A handle stays valid until its
+ * tween ends or is cancelled, after which the slot may be reused without the old handle aliasing the new tween.
+ *
+ * Durations and delays are given in milliseconds, {@link #update(double)} takes the frame delta in seconds like
+ * {@link Animation#update(double)}. All public methods are thread safe.
+ *
+ * Example usage:
+ *
+ * <pre><code>
+ * AnimationScheduler scheduler = getCurrentScene().getAnimationScheduler();
+ * long handle = scheduler.addTranslation(myObject, new Vector3(0, 2, 0), 500, 100);
+ * scheduler.setRepeat(handle, RepeatMode.REVERSE_INFINITE, 0);
+ * </code></pre>
+ */
+public class AnimationScheduler {
+
+    private static final byte TYPE_TRANSLATION = 0;
+    private static final byte TYPE_SCALE       = 1;
+    private static final byte TYPE_COLOR       = 2;
+
+    private static final byte STATE_FREE     = 0;
+    private static final byte STATE_PENDING  = 1;
+    private static final byte STATE_ACTIVE   = 2;
+    private static final byte STATE_FINISHED = 3;
+
+    private static final int COMPONENTS       = 4;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final int    DEFAULT_WHEEL_SIZE   = 256;
+    private static final double DEFAULT_TICK_SECONDS = 1.0 / 60.0;
+
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 2048;
+
+    private static final RepeatMode[] REPEAT_MODES = RepeatMode.values();
+
+    // Per slot tween state
+    private ATransformable3D[] mTargets;
+    private Interpolator[]     mInterpolators;
+    private byte[]             mTypes;
+    private byte[]             mStates;
+    private byte[]             mRepeatModes;
+    private boolean[]          mReversing;
+    private boolean[]          mFromCurrent;
+    private int[]              mRepeatCounts;
+    private int[]              mNumRepeats;
+    private int[]              mGenerations;
+    private double[]           mDurations;
+    private double[]           mElapsed;
+    private double[]           mFrom;
+    private double[]           mTo;
+
+    // Slot allocation
+    private int   mCapacity;
+    private int   mSlotCount;
+    private int[] mFreeSlots;
+    private int   mFreeCount;
+
+    // Dense list of active slots, updated in order
+    private int[] mActive;
+    private int   mActiveCount;
+
+    // Hashed timing wheel for delayed tweens, buckets are intrusive lists linked through mWheelNext
+    private final int[]  mWheelBuckets;
+    private final double mTickSeconds;
+    private int[]        mWheelNext;
+    private int[]        mWheelRounds;
+    private int          mWheelCursor;
+    private double       mWheelRemainder;
+    private int          mPendingCount;
+
+    // Optional concurrent update
+    private final Object mWorkLock = new Object();
+    private Executor     mExecutor;
+    private ChunkWorker[] mWorkers;
+    private int          mParallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private int          mPendingChunks;
+    private double       mDeltaTime;
+
+    public AnimationScheduler() {
+        this(DEFAULT_WHEEL_SIZE, DEFAULT_TICK_SECONDS);
+    }
+
+    /**
+     * Creates a scheduler with a custom timing wheel. Delays are rounded up to a whole number of ticks, delays
+     * longer than one revolution of the wheel simply take several revolutions.
+     *
+     * @param wheelSize   {@code int} Number of buckets in the timing wheel.
+     * @param tickSeconds {@code double} Time covered by a single bucket, in seconds.
+     */
+    public AnimationScheduler(int wheelSize, double tickSeconds) {
+        if (wheelSize < 1 || tickSeconds <= 0) {
+            throw new IllegalArgumentException("Wheel size and tick length must be positive.");
+        }
+        mTickSeconds = tickSeconds;
+        mWheelBuckets = new int[wheelSize];
+        Arrays.fill(mWheelBuckets, -1);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Updates tween chunks on the provided {@link Executor} whenever at least {@code parallelThreshold} tweens are
+     * active. The calling thread processes one chunk itself and waits for the others to complete.
+     *
+     * @param executor          {@link Executor} to run chunks on or null to always update on the calling thread.
+     * @param chunks            {@code int} Number of chunks to split the active tweens into.
+     * @param parallelThreshold {@code int} Minimum number of active tweens before the work is split.
+     */
+    public synchronized void setExecutor(@Nullable Executor executor, int chunks, int parallelThreshold) {
+        mExecutor = executor;
+        mParallelThreshold = parallelThreshold;
+        if (executor == null || chunks < 2) {
+            mExecutor = null;
+            mWorkers = null;
+            return;
+        }
+        mWorkers = new ChunkWorker[chunks];
+        for (int i = 0; i < chunks; ++i) {
+            mWorkers[i] = new ChunkWorker();
+        }
+    }
+
+    /**
+     * Tweens the position of the target from its position at start time to the provided position.
+     *
+     * @return {@code long} Handle of the new tween.
+     */
+    public long addTranslation(@NonNull ATransformable3D target, @NonNull Vector3 to, long durationMs, long delayMs) {
+        return add(TYPE_TRANSLATION, target, true, 0, 0, 0, 0, to.x, to.y, to.z, 0, durationMs, delayMs);
+    }
+
+    /**
+     * Tweens the position of the target between the provided positions.
+     *
+     * @return {@code long} Handle of the new tween.
+     */
+    public long addTranslation(@NonNull ATransformable3D target, @NonNull Vector3 from, @NonNull Vector3 to,
+                               long durationMs, long delayMs) {
+        return add(TYPE_TRANSLATION, target, false, from.x, from.y, from.z, 0, to.x, to.y, to.z, 0, durationMs,
+                   delayMs);
+    }
+
+    /**
+     * Tweens the scale of the target from its scale at start time to the provided scale.
+     *
+     * @return {@code long} Handle of the new tween.
+     */
+    public long addScale(@NonNull ATransformable3D target, @NonNull Vector3 to, long durationMs, long delayMs) {
+        return add(TYPE_SCALE, target, true, 0, 0, 0, 0, to.x, to.y, to.z, 0, durationMs, delayMs);
+    }
+
+    /**
+     * Tweens the scale of the target between the provided scales.
+     *
+     * @return {@code long} Handle of the new tween.
+     */
+    public long addScale(@NonNull ATransformable3D target, @NonNull Vector3 from, @NonNull Vector3 to,
+                         long durationMs, long delayMs) {
+        return add(TYPE_SCALE, target, false, from.x, from.y, from.z, 0, to.x, to.y, to.z, 0, durationMs, delayMs);
+    }
+
+    /**
+     * Tweens the color of the target between two ARGB colors. Channels are interpolated linearly and
+     * applied without rounding to 8 bits.
+     *
+     * @return {@code long} Handle of the new tween.
+     */
+    public long addColor(@NonNull Object3D target, int fromColor, int toColor, long durationMs, long delayMs) {
+        return add(TYPE_COLOR, target, false,
+                   (fromColor >>> 24), (fromColor >> 16) & 0xFF, (fromColor >> 8) & 0xFF, fromColor & 0xFF,
+                   (toColor >>> 24), (toColor >> 16) & 0xFF, (toColor >> 8) & 0xFF, toColor & 0xFF,
+                   durationMs, delayMs);
+    }
+
+    /**
+     * Sets the {@link Interpolator} of a scheduled tween. A null interpolator is linear and skips the virtual call.
+     */
+    public synchronized void setInterpolator(long handle, @Nullable Interpolator interpolator) {
+        final int slot = resolve(handle);
+        if (slot >= 0) {
+            mInterpolators[slot] = interpolator;
+        }
+    }
+
+    /**
+     * Sets the repeat behaviour of a scheduled tween, mirroring {@link Animation#setRepeatMode(RepeatMode)} and
+     * {@link Animation#setRepeatCount(int)}.
+     */
+    public synchronized void setRepeat(long handle, @NonNull RepeatMode repeatMode, int repeatCount) {
+        final int slot = resolve(handle);
+        if (slot >= 0) {
+            mRepeatModes[slot] = (byte) repeatMode.ordinal();
+            mRepeatCounts[slot] = repeatCount;
+        }
+    }
+
+    /**
+     * Stops a tween, leaving its target where it currently is. Unknown or expired handles are ignored.
+     *
+     * @return {@code boolean} True if the tween was still scheduled.
+     */
+    public synchronized boolean cancel(long handle) {
+        final int slot = resolve(handle);
+        if (slot < 0) {
+            return false;
+        }
+        // Active slots are compacted away on the next update, pending ones when their wheel bucket comes around
+        mStates[slot] = STATE_FINISHED;
+        return true;
+    }
+
+    /**
+     * Stops every tween animating the provided target.
+     */
+    public synchronized void cancelAll(@NonNull ATransformable3D target) {
+        for (int i = 0; i < mSlotCount; ++i) {
+            if (mTargets[i] == target && (mStates[i] == STATE_ACTIVE || mStates[i] == STATE_PENDING)) {
+                mStates[i] = STATE_FINISHED;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a tween is waiting for its delay or currently running.
+     */
+    public synchronized boolean isScheduled(long handle) {
+        return resolve(handle) >= 0;
+    }
+
+    /**
+     * @return {@code int} The number of tweens currently being updated.
+     */
+    public synchronized int getActiveCount() {
+        return mActiveCount;
+    }
+
+    /**
+     * @return {@code int} The number of tweens still waiting for their delay to elapse.
+     */
+    public synchronized int getPendingCount() {
+        return mPendingCount;
+    }
+
+    /**
+     * Removes every tween, leaving all targets where they currently are.
+     */
+    public synchronized void clear() {
+        Arrays.fill(mTargets, 0, mSlotCount, null);
+        Arrays.fill(mInterpolators, 0, mSlotCount, null);
+        for (int i = 0; i < mSlotCount; ++i) {
+            if (mStates[i] != STATE_FREE) {
+                ++mGenerations[i];
+            }
+        }
+        Arrays.fill(mStates, 0, mSlotCount, STATE_FREE);
+        Arrays.fill(mWheelBuckets, -1);
+        mSlotCount = 0;
+        mFreeCount = 0;
+        mActiveCount = 0;
+        mPendingCount = 0;
+        mWheelRemainder = 0;
+    }
+
+    /**
+     * Advances all tweens by the provided time step.
+     *
+     * @param deltaTime {@code double} Time since the last update, in seconds.
+     */
+    public synchronized void update(double deltaTime) {
+        // Like Animation, tweens whose delay completes this frame start advancing on the next one
+        final int running = mActiveCount;
+        if (mPendingCount > 0) {
+            advanceWheel(deltaTime);
+        } else {
+            mWheelRemainder = 0;
+        }
+        if (running == 0) {
+            return;
+        }
+
+        final ChunkWorker[] workers = mWorkers;
+        if (workers != null && running >= mParallelThreshold) {
+            updateConcurrently(workers, running, deltaTime);
+        } else {
+            updateRange(0, running, deltaTime);
+        }
+
+        removeFinished();
+    }
+
+    private long add(byte type, ATransformable3D target, boolean fromCurrent,
+                     double f0, double f1, double f2, double f3, double t0, double t1, double t2, double t3,
+                     long durationMs, long delayMs) {
+        if (durationMs <= 0) {
+            throw new IllegalArgumentException("Tween duration must be positive.");
+        }
+        if (delayMs < 0) {
+            throw new IllegalArgumentException("Tween delay must not be negative.");
+        }
+        synchronized (this) {
+            final int slot = obtainSlot();
+            mTargets[slot] = target;
+            mInterpolators[slot] = null;
+            mTypes[slot] = type;
+            mRepeatModes[slot] = (byte) RepeatMode.NONE.ordinal();
+            mReversing[slot] = false;
+            mFromCurrent[slot] = fromCurrent;
+            mRepeatCounts[slot] = 0;
+            mNumRepeats[slot] = 0;
+            mDurations[slot] = durationMs / 1000d;
+            mElapsed[slot] = 0;
+            final int offset = slot * COMPONENTS;
+            mFrom[offset] = f0;
+            mFrom[offset + 1] = f1;
+            mFrom[offset + 2] = f2;
+            mFrom[offset + 3] = f3;
+            mTo[offset] = t0;
+            mTo[offset + 1] = t1;
+            mTo[offset + 2] = t2;
+            mTo[offset + 3] = t3;
+
+            if (delayMs == 0) {
+                activate(slot);
+            } else {
+                schedule(slot, delayMs / 1000d);
+            }
+            return ((long) mGenerations[slot] << 32) | slot;
+        }
+    }
+
+    private int resolve(long handle) {
+        final int slot = (int) handle;
+        if (handle < 0 || slot >= mSlotCount || mGenerations[slot] != (int) (handle >>> 32)) {
+            return -1;
+        }
+        final byte state = mStates[slot];
+        return state == STATE_ACTIVE || state == STATE_PENDING ? slot : -1;
+    }
+
+    private int obtainSlot() {
+        if (mFreeCount > 0) {
+            return mFreeSlots[--mFreeCount];
+        }
+        if (mSlotCount == mCapacity) {
+            allocate(mCapacity * 2);
+        }
+        return mSlotCount++;
+    }
+
+    private void releaseSlot(int slot) {
+        mStates[slot] = STATE_FREE;
+        mTargets[slot] = null;
+        mInterpolators[slot] = null;
+        ++mGenerations[slot];
+        mFreeSlots[mFreeCount++] = slot;
+    }
+
+    private void allocate(int capacity) {
+        mTargets = mTargets == null ? new ATransformable3D[capacity] : Arrays.copyOf(mTargets, capacity);
+        mInterpolators = mInterpolators == null ? new Interpolator[capacity] : Arrays.copyOf(mInterpolators, capacity);
+        mTypes = mTypes == null ? new byte[capacity] : Arrays.copyOf(mTypes, capacity);
+        mStates = mStates == null ? new byte[capacity] : Arrays.copyOf(mStates, capacity);
+        mRepeatModes = mRepeatModes == null ? new byte[capacity] : Arrays.copyOf(mRepeatModes, capacity);
+        mReversing = mReversing == null ? new boolean[capacity] : Arrays.copyOf(mReversing, capacity);
+        mFromCurrent = mFromCurrent == null ? new boolean[capacity] : Arrays.copyOf(mFromCurrent, capacity);
+        mRepeatCounts = mRepeatCounts == null ? new int[capacity] : Arrays.copyOf(mRepeatCounts, capacity);
+        mNumRepeats = mNumRepeats == null ? new int[capacity] : Arrays.copyOf(mNumRepeats, capacity);
+        mGenerations = mGenerations == null ? new int[capacity] : Arrays.copyOf(mGenerations, capacity);
+        mDurations = mDurations == null ? new double[capacity] : Arrays.copyOf(mDurations, capacity);
+        mElapsed = mElapsed == null ? new double[capacity] : Arrays.copyOf(mElapsed, capacity);
+        mFrom = mFrom == null ? new double[capacity * COMPONENTS] : Arrays.copyOf(mFrom, capacity * COMPONENTS);
+        mTo = mTo == null ? new double[capacity * COMPONENTS] : Arrays.copyOf(mTo, capacity * COMPONENTS);
+        mFreeSlots = mFreeSlots == null ? new int[capacity] : Arrays.copyOf(mFreeSlots, capacity);
+        mActive = mActive == null ? new int[capacity] : Arrays.copyOf(mActive, capacity);
+        mWheelNext = mWheelNext == null ? new int[capacity] : Arrays.copyOf(mWheelNext, capacity);
+        mWheelRounds = mWheelRounds == null ? new int[capacity] : Arrays.copyOf(mWheelRounds, capacity);
+        mCapacity = capacity;
+    }
+
+    private void schedule(int slot, double delay) {
+        final int wheelSize = mWheelBuckets.length;
+        // Delays are measured from the current position inside the running tick and never fire early
+        final long ticks = Math.max(1, (long) Math.ceil((delay + mWheelRemainder) / mTickSeconds - 1e-9));
+        final int bucket = (int) ((mWheelCursor + ticks) % wheelSize);
+        mWheelRounds[slot] = (int) ((ticks - 1) / wheelSize);
+        mWheelNext[slot] = mWheelBuckets[bucket];
+        mWheelBuckets[bucket] = slot;
+        mStates[slot] = STATE_PENDING;
+        ++mPendingCount;
+    }
+
+    private void advanceWheel(double deltaTime) {
+        mWheelRemainder += deltaTime;
+        final int wheelSize = mWheelBuckets.length;
+        while (mWheelRemainder >= mTickSeconds && mPendingCount > 0) {
+            mWheelRemainder -= mTickSeconds;
+            mWheelCursor = (mWheelCursor + 1) % wheelSize;
+
+            int slot = mWheelBuckets[mWheelCursor];
+            int kept = -1;
+            while (slot >= 0) {
+                final int next = mWheelNext[slot];
+                if (mStates[slot] != STATE_PENDING) {
+                    // Cancelled while waiting
+                    --mPendingCount;
+                    releaseSlot(slot);
+                } else if (mWheelRounds[slot] > 0) {
+                    --mWheelRounds[slot];
+                    mWheelNext[slot] = kept;
+                    kept = slot;
+                } else {
+                    --mPendingCount;
+                    activate(slot);
+                }
+                slot = next;
+            }
+            mWheelBuckets[mWheelCursor] = kept;
+        }
+    }
+
+    private void activate(int slot) {
+        if (mFromCurrent[slot]) {
+            final Vector3 current = mTypes[slot] == TYPE_SCALE ? mTargets[slot].getScale()
+                    : mTargets[slot].getPosition();
+            final int offset = slot * COMPONENTS;
+            mFrom[offset] = current.x;
+            mFrom[offset + 1] = current.y;
+            mFrom[offset + 2] = current.z;
+        }
+        mStates[slot] = STATE_ACTIVE;
+        mActive[mActiveCount++] = slot;
+    }
+
+    private void updateConcurrently(ChunkWorker[] workers, int count, double deltaTime) {
+        final int chunks = workers.length;
+        final int chunkSize = (count + chunks - 1) / chunks;
+        mDeltaTime = deltaTime;
+        synchronized (mWorkLock) {
+            mPendingChunks = chunks - 1;
+        }
+        for (int i = 1; i < chunks; ++i) {
+            final ChunkWorker worker = workers[i];
+            worker.mStart = Math.min(i * chunkSize, count);
+            worker.mEnd = Math.min(worker.mStart + chunkSize, count);
+            mExecutor.execute(worker);
+        }
+        updateRange(0, Math.min(chunkSize, count), deltaTime);
+
+        boolean interrupted = false;
+        synchronized (mWorkLock) {
+            while (mPendingChunks > 0) {
+                try {
+                    mWorkLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void updateRange(int start, int end, double deltaTime) {
+        final int[] active = mActive;
+        for (int i = start; i < end; ++i) {
+            final int slot = active[i];
+            if (mStates[slot] != STATE_ACTIVE) {
+                continue;
+            }
+
+            final double duration = mDurations[slot];
+            double elapsed = mElapsed[slot] + deltaTime;
+            if (elapsed > duration) {
+                elapsed = duration;
+            }
+
+            double t = elapsed / duration;
+            final Interpolator interpolator = mInterpolators[slot];
+            if (interpolator != null) {
+                t = interpolator.getInterpolation((float) t);
+                t = t > 1 ? 1 : t < 0 ? 0 : t;
+            }
+            if (mReversing[slot]) {
+                t = 1 - t;
+            }
+            apply(slot, t);
+
+            if (elapsed >= duration) {
+                elapsed = repeat(slot, elapsed - duration);
+            }
+            mElapsed[slot] = elapsed;
+        }
+    }
+
+    private void apply(int slot, double t) {
+        final int offset = slot * COMPONENTS;
+        final double[] from = mFrom;
+        final double[] to = mTo;
+        final double x = from[offset] + (to[offset] - from[offset]) * t;
+        final double y = from[offset + 1] + (to[offset + 1] - from[offset + 1]) * t;
+        final double z = from[offset + 2] + (to[offset + 2] - from[offset + 2]) * t;
+        switch (mTypes[slot]) {
+            case TYPE_TRANSLATION:
+                mTargets[slot].setPosition(x, y, z);
+                break;
+            case TYPE_SCALE:
+                mTargets[slot].setScale(x, y, z);
+                break;
+            case TYPE_COLOR:
+                final double w = from[offset + 3] + (to[offset + 3] - from[offset + 3]) * t;
+                // Channels are stored as alpha, red, green and blue like the ARGB colors they came from
+                ((Object3D) mTargets[slot]).setColor((float) (y / 255), (float) (z / 255), (float) (w / 255),
+                                                     (float) (x / 255));
+                break;
+        }
+    }
+
+    /**
+     * Handles the end of a tween cycle the same way {@link Animation#update(double)} does.
+     *
+     * @return {@code double} The elapsed time to continue the next cycle from.
+     */
+    private double repeat(int slot, double overshoot) {
+        switch (REPEAT_MODES[mRepeatModes[slot]]) {
+            case REVERSE_INFINITE:
+                mReversing[slot] = !mReversing[slot];
+                return overshoot;
+            case INFINITE:
+                return overshoot;
+            case REVERSE:
+                if (mRepeatCounts[slot] > mNumRepeats[slot]) {
+                    mReversing[slot] = !mReversing[slot];
+                    ++mNumRepeats[slot];
+                    return 0;
+                }
+                break;
+            case RESTART:
+                if (mRepeatCounts[slot] > mNumRepeats[slot]) {
+                    ++mNumRepeats[slot];
+                    return 0;
+                }
+                break;
+            default:
+                break;
+        }
+        mStates[slot] = STATE_FINISHED;
+        return 0;
+    }
+
+    private void removeFinished() {
+        final int[] active = mActive;
+        int kept = 0;
+        for (int i = 0, j = mActiveCount; i < j; ++i) {
+            final int slot = active[i];
+            if (mStates[slot] == STATE_ACTIVE) {
+                active[kept++] = slot;
+            } else {
+                releaseSlot(slot);
+            }
+        }
+        mActiveCount = kept;
+    }
+
+    private final class ChunkWorker implements Runnable {
+
+        int mStart;
+        int mEnd;
+
+        @Override
+        public void run() {
+            try {
+                updateRange(mStart, mEnd, mDeltaTime);
+            } finally {
+                synchronized (mWorkLock) {
+                    if (--mPendingChunks == 0) {
+                        mWorkLock.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -229,7 +229,7 @@ public class EllipticalOrbitAnimation3D extends Animation3D {
 		}
 
 		// Translate normal vector to the center point.
-		Vector3 unitNormal = mNormal.clone();
+		Vector3 unitNormal = mScratch1.setAll(mNormal);
 		unitNormal.normalize();
 		double uNx = Math.round(unitNormal.x * 1e8) / 1e8;
 		double uNy = Math.round(unitNormal.y * 1e8) / 1e8;
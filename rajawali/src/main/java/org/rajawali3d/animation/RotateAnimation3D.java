@@ -23,6 +23,7 @@ public class RotateAnimation3D extends Animation3D {
 	protected double mRotateZ;
 	protected Quaternion mQuat;
 	protected Quaternion mQuatFrom;
+	protected final Quaternion mOrientation = new Quaternion();
 
 	public RotateAnimation3D(double xRotate, double yRotate, double zRotate) {
 		super();
@@ -53,8 +54,9 @@ public class RotateAnimation3D extends Animation3D {
 
 	@Override
 	protected void applyTransformation() {
-		Quaternion orientation = new Quaternion().slerp(mQuatFrom, mQuat, mInterpolatedTime, false);
-		mTransformable3D.setOrientation(orientation);
+		// Reset to identity first, slerp() is a no-op when the target already equals the destination
+		mOrientation.identity().slerp(mQuatFrom, mQuat, mInterpolatedTime, false);
+		mTransformable3D.setOrientation(mOrientation);
 	}
 
 }
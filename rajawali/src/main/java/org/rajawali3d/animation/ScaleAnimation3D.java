@@ -19,7 +19,7 @@ public class ScaleAnimation3D extends Animation3D {
 	protected final Vector3 mToScale;
 	protected final Vector3 mFromScale;
 	
-	protected Vector3 mDiffScale;
+	protected final Vector3 mDiffScale = new Vector3();
 	protected Vector3 mMultipliedScale = new Vector3();
 	protected Vector3 mAddedScale = new Vector3();
 	
@@ -32,17 +32,16 @@ public class ScaleAnimation3D extends Animation3D {
 	
 	@Override
 	protected void eventStart() {
-		if (isFirstStart())
+		if (isFirstStart()) {
 			mFromScale.setAll(mTransformable3D.getScale());
+			mDiffScale.subtractAndSet(mToScale, mFromScale);
+		}
 		
 		super.eventStart();
 	}
 
 	@Override
 	protected void applyTransformation() {
-		if (mDiffScale == null)
-			mDiffScale = Vector3.subtractAndCreate(mToScale, mFromScale);
-
 		mMultipliedScale.scaleAndSet(mDiffScale, mInterpolatedTime);
 		mAddedScale.addAndSet(mFromScale, mMultipliedScale);
 		mTransformable3D.setScale(mAddedScale);
@@ -20,14 +20,16 @@ public class TranslateAnimation3D extends Animation3D {
 	protected final Vector3 mAddedPosition;
 	protected final Vector3 mFromPosition;
 
+	protected final Vector3 mDiffPosition;
+
 	protected Vector3 mToPosition;
-	protected Vector3 mDiffPosition;
 
 	public TranslateAnimation3D(Vector3 toPosition) {
 		super();
 		mFromPosition = new Vector3();
 		mMultipliedPosition = new Vector3();
 		mAddedPosition = new Vector3();
+		mDiffPosition = new Vector3();
 		mToPosition = new Vector3(toPosition);
 	}
 
@@ -39,17 +41,16 @@ public class TranslateAnimation3D extends Animation3D {
 
 	@Override
 	protected void eventStart() {
-		if (isFirstStart())
+		if (isFirstStart()) {
 			mFromPosition.setAll(mTransformable3D.getPosition());
+			mDiffPosition.subtractAndSet(mToPosition, mFromPosition);
+		}
 
 		super.eventStart();
 	}
 
 	@Override
 	protected void applyTransformation() {
-		if (mDiffPosition == null)
-			mDiffPosition = Vector3.subtractAndCreate(mToPosition, mFromPosition);
-
 		mMultipliedPosition.scaleAndSet(mDiffPosition, mInterpolatedTime);
 		mAddedPosition.addAndSet(mFromPosition, mMultipliedPosition);
 		mTransformable3D.setPosition(mAddedPosition);
@@ -142,6 +142,26 @@ public class SkeletalAnimationChildObject3D extends AAnimationObject3D {
 		}
 	}
 
+	/**
+	 * Sets the joint indices and weights from buffers holding four of each per vertex, the layout formats like glTF
+	 * store them in. The direct buffers are used as they are, without creating an object per vertex and weight.
+	 *
+	 * @param numVertices	Number of vertices of the mesh.
+	 * @param boneIndexes	Four joint indices per vertex.
+	 * @param boneWeights	Four weights per vertex.
+	 */
+	public void setSkeletonMeshData(int numVertices, FloatBuffer boneIndexes, FloatBuffer boneWeights) {
+		mNumVertices = numVertices;
+		mVertices = null;
+		mWeights = null;
+		mboneIndexes1 = boneIndexes;
+		mboneWeights1 = boneWeights;
+		mboneIndexes1BufferInfo.buffer = mboneIndexes1;
+		mboneWeights1BufferInfo.buffer = mboneWeights1;
+		mGeometry.addBuffer(mboneIndexes1BufferInfo, BufferType.FLOAT_BUFFER, GLES20.GL_ARRAY_BUFFER);
+		mGeometry.addBuffer(mboneWeights1BufferInfo, BufferType.FLOAT_BUFFER, GLES20.GL_ARRAY_BUFFER);
+	}
+
 	private FloatBuffer alocateBuffer(FloatBuffer buffer, float[] data) {
 		if (buffer == null) {
 			buffer = ByteBuffer
@@ -268,7 +288,7 @@ public class SkeletalAnimationChildObject3D extends AAnimationObject3D {
 		clone.getGeometry().copyFromGeometry3D(mGeometry);
 		clone.isContainer(mIsContainerOnly);
 		clone.setMaterial(mMaterial);
-		clone.mElementsBufferType = GLES20.GL_UNSIGNED_INT;
+		clone.mElementsBufferType = mGeometry.getIndexType();
 		clone.mTransparent = this.mTransparent;
 		clone.mEnableBlending = this.mEnableBlending;
 		clone.mBlendFuncSFactor = this.mBlendFuncSFactor;
@@ -284,7 +304,10 @@ public class SkeletalAnimationChildObject3D extends AAnimationObject3D {
 		} catch (SkeletalAnimationException e) {
 			e.printStackTrace();
 		}
-		clone.setSkeletonMeshData(mNumVertices, mVertices, 0, mWeights);
+		if (mVertices == null)
+			clone.setSkeletonMeshData(mNumVertices, mboneIndexes1, mboneWeights1);
+		else
+			clone.setSkeletonMeshData(mNumVertices, mVertices, 0, mWeights);
 		clone.setInverseZScale(mInverseZScale);
 		return clone;
 	}
@@ -160,6 +160,8 @@ public class SkeletalAnimationObject3D extends AAnimationObject3D {
 
         mBoneMatricesBufferInfo.buffer = mBoneMatrices;
 		mGeometry.addBuffer(mBoneMatricesBufferInfo, BufferType.FLOAT_BUFFER, GLES20.GL_ARRAY_BUFFER);
+		// The bone matrices change every frame, let them stream
+		mGeometry.setStreaming(mBoneMatricesBufferInfo, true);
 	}
 
 	public SkeletonJoint getJoint(int index) {
@@ -175,6 +177,23 @@ public class SkeletalAnimationObject3D extends AAnimationObject3D {
 		mSequences = sequences;
 	}
 
+	/**
+	 * Bakes the skinning matrices of all sequences set on this object for its bind pose. See
+	 * {@link SkeletalAnimationSequence#bake(double[][])}.
+	 *
+	 * @throws SkeletalAnimationException If a sequence does not match the skeleton.
+	 */
+	public void bakeAnimationSequences() throws SkeletalAnimationException
+	{
+		if (mSequences != null)
+		{
+			for (SkeletalAnimationSequence sequence : mSequences)
+				sequence.bake(mInverseBindPoseMatrix);
+		}
+		if (mSequence != null && mSequence.getBakedMatrices() == null)
+			mSequence.bake(mInverseBindPoseMatrix);
+	}
+
 	/**
 	 * Sets a new {@link SkeletalAnimationSequence}. It will use this one immediately no
 	 * blending will be done.
@@ -343,48 +362,59 @@ public class SkeletalAnimationObject3D extends AAnimationObject3D {
 		if(isTransitioning)
 			transitionInterpolation = mTransitionInterpolator.getInterpolation((float) ((currentTime - mTransitionStartTime) / mTransitionDuration));
 
-		for (int i = 0; i < mJoints.length; ++i) {
-			SkeletonJoint joint = getJoint(i);
-			SkeletonJoint fromJoint = currentFrame.getSkeleton().getJoint(i);
-			SkeletonJoint toJoint = nextFrame.getSkeleton().getJoint(i);
-			joint.setParentIndex(fromJoint.getParentIndex());
-			joint.getPosition().lerpAndSet(fromJoint.getPosition(), toJoint.getPosition(), mInterpolation);
-			joint.getOrientation().slerp(fromJoint.getOrientation(), toJoint.getOrientation(), mInterpolation);
-
-			if(isTransitioning)
-			{
-				SkeletalAnimationFrame currentTransFrame = mNextSequence.getFrame(mCurrentTransitionFrameIndex % mNextSequence.getNumFrames());
-				SkeletalAnimationFrame nextTransFrame = mNextSequence.getFrame((mCurrentTransitionFrameIndex + 1) % mNextSequence.getNumFrames());
-
-				fromJoint = currentTransFrame.getSkeleton().getJoint(i);
-				toJoint = nextTransFrame.getSkeleton().getJoint(i);
-				mTmpJoint1.getPosition().lerpAndSet(fromJoint.getPosition(), toJoint.getPosition(), mInterpolation);
-				mTmpJoint1.getOrientation().slerp(fromJoint.getOrientation(), toJoint.getOrientation(), mInterpolation);
-
-				// blend the two animations
-				mTmpJoint2.getPosition().lerpAndSet(joint.getPosition(), mTmpJoint1.getPosition(), transitionInterpolation);
-				mTmpJoint2.getOrientation().slerp(joint.getOrientation(), mTmpJoint1.getOrientation(), transitionInterpolation);
-
-				joint.getPosition().setAll(mTmpJoint2.getPosition());
-				joint.getOrientation().setAll(mTmpJoint2.getOrientation());
-			}
-
-			Matrix.setIdentityM(mBoneTranslation, 0);
-			Matrix.setIdentityM(mBoneRotation, 0);
-			Matrix.setIdentityM(mBoneMatrix, 0);
-			Matrix.setIdentityM(mResultMatrix, 0);
-
-			Vector3 jointPos = joint.getPosition();
-			Matrix.translateM(mBoneTranslation, 0, jointPos.x, jointPos.y, jointPos.z);
-			joint.getOrientation().toRotationMatrix(mBoneRotation);
-			Matrix.multiplyMM(mBoneMatrix, 0, mBoneTranslation, 0, mBoneRotation, 0);
-			Matrix.multiplyMM(mResultMatrix, 0, mBoneMatrix, 0, mInverseBindPoseMatrix[i], 0);
-			joint.setMatrix(mResultMatrix);
-
-			int index = 16 * i;
-			for (int j = 0; j < 16; j++) {
-				uBoneMatrix[index + j] = mResultMatrix[j];
-				mBoneMatrices.put(mResultMatrix[j]);
+		final float[] baked = mSequence.getBakedMatrices();
+		if (baked != null && !isTransitioning && mSequence.getBakedJointCount() == mJoints.length) {
+			// One interpolation per matrix element between the precomputed skinning matrices
+			final int count = mJoints.length * 16;
+			final int from = mCurrentFrameIndex * count;
+			final int to = ((mCurrentFrameIndex + 1) % mSequence.getNumFrames()) * count;
+			for (int k = 0; k < count; k++)
+				uBoneMatrix[k] = baked[from + k] + (baked[to + k] - baked[from + k]) * mInterpolation;
+			mBoneMatrices.put(uBoneMatrix, 0, count);
+		} else {
+			for (int i = 0; i < mJoints.length; ++i) {
+				SkeletonJoint joint = getJoint(i);
+				SkeletonJoint fromJoint = currentFrame.getSkeleton().getJoint(i);
+				SkeletonJoint toJoint = nextFrame.getSkeleton().getJoint(i);
+				joint.setParentIndex(fromJoint.getParentIndex());
+				joint.getPosition().lerpAndSet(fromJoint.getPosition(), toJoint.getPosition(), mInterpolation);
+				joint.getOrientation().slerp(fromJoint.getOrientation(), toJoint.getOrientation(), mInterpolation);
+
+				if(isTransitioning)
+				{
+					SkeletalAnimationFrame currentTransFrame = mNextSequence.getFrame(mCurrentTransitionFrameIndex % mNextSequence.getNumFrames());
+					SkeletalAnimationFrame nextTransFrame = mNextSequence.getFrame((mCurrentTransitionFrameIndex + 1) % mNextSequence.getNumFrames());
+
+					fromJoint = currentTransFrame.getSkeleton().getJoint(i);
+					toJoint = nextTransFrame.getSkeleton().getJoint(i);
+					mTmpJoint1.getPosition().lerpAndSet(fromJoint.getPosition(), toJoint.getPosition(), mInterpolation);
+					mTmpJoint1.getOrientation().slerp(fromJoint.getOrientation(), toJoint.getOrientation(), mInterpolation);
+
+					// blend the two animations
+					mTmpJoint2.getPosition().lerpAndSet(joint.getPosition(), mTmpJoint1.getPosition(), transitionInterpolation);
+					mTmpJoint2.getOrientation().slerp(joint.getOrientation(), mTmpJoint1.getOrientation(), transitionInterpolation);
+
+					joint.getPosition().setAll(mTmpJoint2.getPosition());
+					joint.getOrientation().setAll(mTmpJoint2.getOrientation());
+				}
+
+				Matrix.setIdentityM(mBoneTranslation, 0);
+				Matrix.setIdentityM(mBoneRotation, 0);
+				Matrix.setIdentityM(mBoneMatrix, 0);
+				Matrix.setIdentityM(mResultMatrix, 0);
+
+				Vector3 jointPos = joint.getPosition();
+				Matrix.translateM(mBoneTranslation, 0, jointPos.x, jointPos.y, jointPos.z);
+				joint.getOrientation().toRotationMatrix(mBoneRotation);
+				Matrix.multiplyMM(mBoneMatrix, 0, mBoneTranslation, 0, mBoneRotation, 0);
+				Matrix.multiplyMM(mResultMatrix, 0, mBoneMatrix, 0, mInverseBindPoseMatrix[i], 0);
+				joint.setMatrix(mResultMatrix);
+
+				int index = 16 * i;
+				for (int j = 0; j < 16; j++) {
+					uBoneMatrix[index + j] = mResultMatrix[j];
+					mBoneMatrices.put(mResultMatrix[j]);
+				}
 			}
 		}
 
@@ -488,7 +518,7 @@ public class SkeletalAnimationObject3D extends AAnimationObject3D {
 		clone.getGeometry().copyFromGeometry3D(mGeometry);
 		clone.isContainer(mIsContainerOnly);
 		clone.setMaterial(mMaterial);
-		clone.mElementsBufferType = GLES20.GL_UNSIGNED_INT;
+		clone.mElementsBufferType = mGeometry.getIndexType();
 		clone.mTransparent = this.mTransparent;
 		clone.mEnableBlending = this.mEnableBlending;
 		clone.mBlendFuncSFactor = this.mBlendFuncSFactor;
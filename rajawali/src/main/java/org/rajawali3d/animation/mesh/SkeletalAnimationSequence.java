@@ -15,8 +15,12 @@ package org.rajawali3d.animation.mesh;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.rajawali3d.animation.mesh.SkeletalAnimationFrame.Skeleton;
 import org.rajawali3d.animation.mesh.SkeletalAnimationFrame.SkeletonJoint;
 import org.rajawali3d.animation.mesh.SkeletalAnimationObject3D.SkeletalAnimationException;
+import org.rajawali3d.math.Matrix;
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.vector.Vector3;
 
 public class SkeletalAnimationSequence implements IAnimationSequence {
 	private SkeletalAnimationFrame[] mFrames;
@@ -24,6 +28,8 @@ public class SkeletalAnimationSequence implements IAnimationSequence {
 	private String mName;
 	private int mNumFrames;
 	private int mFrameRate;
+	private float[] mBakedMatrices;
+	private int mBakedJoints;
 	
 	public SkeletalAnimationSequence(String name)
 	{
@@ -34,6 +40,7 @@ public class SkeletalAnimationSequence implements IAnimationSequence {
 	{
 		mFrames = frames;
 		mNumFrames = frames.length;
+		mBakedMatrices = null;
 	}
 	
 	public SkeletalAnimationFrame[] getFrames()
@@ -136,6 +143,67 @@ public class SkeletalAnimationSequence implements IAnimationSequence {
 		}
 		mFrames = newFrames.toArray(new SkeletalAnimationFrame[0]);
 		mNumFrames = newFrames.size();
+		mBakedMatrices = null;
 		newFrames.clear();
 	}
+
+	/**
+	 * Precomputes the skinning matrix of every joint in every frame: the joint's pose in that frame times its inverse
+	 * bind pose. While a baked sequence plays, {@link SkeletalAnimationObject3D} only interpolates between the
+	 * matrices of two frames per joint. The joints returned by {@link SkeletalAnimationObject3D#getJoint(int)} are not
+	 * updated then, and transitions between sequences still use the joints.
+	 * 
+	 * The matrices depend on the bind pose, so a sequence shared by skeletons with different bind poses should be
+	 * baked for each of them. Setting or blending frames drops the baked matrices.
+	 * 
+	 * @param inverseBindPoseMatrices	The inverse bind pose matrix of every joint.
+	 * @throws SkeletalAnimationException If a frame does not have a joint for every matrix.
+	 */
+	public void bake(double[][] inverseBindPoseMatrices) throws SkeletalAnimationException
+	{
+		int numJoints = inverseBindPoseMatrices.length;
+		float[] baked = new float[mFrames.length * numJoints * 16];
+		double[] pose = new double[16];
+		double[] result = new double[16];
+		
+		for(int i=0; i<mFrames.length; i++)
+		{
+			Skeleton skeleton = mFrames[i].getSkeleton();
+			if(skeleton.getJoints() == null || skeleton.getJoints().length != numJoints)
+				throw new SkeletalAnimationException("Frame " + i + " does not match the bind pose of " + numJoints + " joints.");
+			
+			for (int j = 0; j < numJoints; ++j) {
+				SkeletonJoint joint = skeleton.getJoint(j);
+				Vector3 position = joint.getPosition();
+				// The translation times the rotation is the rotation with the translation added
+				joint.getOrientation().toRotationMatrix(pose);
+				pose[Matrix4.M03] = position.x;
+				pose[Matrix4.M13] = position.y;
+				pose[Matrix4.M23] = position.z;
+				Matrix.multiplyMM(result, 0, pose, 0, inverseBindPoseMatrices[j], 0);
+				
+				int offset = (i * numJoints + j) * 16;
+				for (int k = 0; k < 16; k++)
+					baked[offset + k] = (float) result[k];
+			}
+		}
+		mBakedMatrices = baked;
+		mBakedJoints = numJoints;
+	}
+	
+	/**
+	 * Returns the matrices computed by {@link #bake(double[][])}, 16 per joint and frame, or null if the sequence has
+	 * not been baked.
+	 * 
+	 * @return
+	 */
+	public float[] getBakedMatrices()
+	{
+		return mBakedMatrices;
+	}
+	
+	public int getBakedJointCount()
+	{
+		return mBakedMatrices == null ? 0 : mBakedJoints;
+	}
 }
@@ -12,7 +12,6 @@
  */
 package org.rajawali3d.animation.mesh;
 
-import android.opengl.GLES20;
 import android.os.SystemClock;
 
 import org.rajawali3d.cameras.Camera;
@@ -114,7 +113,7 @@ public class VertexAnimationObject3D extends AAnimationObject3D {
 		clone.setRotation(getOrientation());
 		clone.setScale(getScale());
 		clone.setFps(mFps);
-		clone.mElementsBufferType = GLES20.GL_UNSIGNED_INT;
+		clone.mElementsBufferType = mGeometry.getIndexType();
 		return clone;
 	}
 
@@ -39,6 +39,8 @@ public class ArcballCamera extends Camera {
     private Object3D mTarget;
     private Matrix4 mScratchMatrix;
     private Vector3 mScratchVector;
+    private Vector3 mRotationAxis;
+    private Quaternion mRotatedOrientation;
     private double mStartFOV;
     @FloatRange(from = -1, to = 1)
     private float mScreenMapping = 1;
@@ -63,6 +65,8 @@ public class ArcballCamera extends Camera {
         mEmpty = new Object3D();
         mScratchMatrix = new Matrix4();
         mScratchVector = new Vector3();
+        mRotationAxis = new Vector3();
+        mRotatedOrientation = new Quaternion();
         mCameraStartPos = new Vector3();
         mPrevSphereCoord = new Vector3();
         mCurrSphereCoord = new Vector3();
@@ -126,15 +130,15 @@ public class ArcballCamera extends Camera {
             mapToSphere((float) mPrevScreenCoord.getX(), (float) mPrevScreenCoord.getY(), mPrevSphereCoord);
             mapToSphere((float) mCurrScreenCoord.getX(), (float) mCurrScreenCoord.getY(), mCurrSphereCoord);
 
-            Vector3 rotationAxis = mPrevSphereCoord.clone();
-            rotationAxis.cross(mCurrSphereCoord);
+            // Runs on every touch move, so work in preallocated members rather than temporaries
+            Vector3 rotationAxis = mRotationAxis.crossAndSet(mPrevSphereCoord, mCurrSphereCoord);
             rotationAxis.normalize();
 
             double rotationAngle = Math.acos(Math.min(1, mPrevSphereCoord.dot(mCurrSphereCoord)));
             mCurrentOrientation.fromAngleAxis(rotationAxis, MathUtil.radiansToDegrees(rotationAngle));
             mCurrentOrientation.normalize();
 
-            Quaternion q = new Quaternion(mStartOrientation);
+            Quaternion q = mRotatedOrientation.setAll(mStartOrientation);
             q.multiply(mCurrentOrientation);
 
             mEmpty.setOrientation(q);
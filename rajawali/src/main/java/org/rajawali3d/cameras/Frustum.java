@@ -59,14 +59,25 @@ public class Frustum {
 	}
 
 	public boolean boundsInFrustum(BoundingBox bounds) {
+		return boxInFrustum(bounds.getMin(), bounds.getMax());
+	}
+
+	/**
+	 * Tests an axis aligned box, for instance the transformed extents of a {@link BoundingBox}.
+	 *
+	 * @param min {@link Vector3} Minimum corner of the box.
+	 * @param max {@link Vector3} Maximum corner of the box.
+	 * @return {@code boolean} False if the box lies completely outside of one of the planes.
+	 */
+	public boolean boxInFrustum(Vector3 min, Vector3 max) {
 		for(int i=0; i<6; i++) {
 			Plane p = mPlanes[i];
-			mPoint1.x = p.getNormal().x > 0 ? bounds.getMin().x : bounds.getMax().x;
-			mPoint2.x = p.getNormal().x > 0 ? bounds.getMax().x : bounds.getMin().x;
-			mPoint1.y = p.getNormal().y > 0 ? bounds.getMin().y : bounds.getMax().y;
-			mPoint2.y = p.getNormal().y > 0 ? bounds.getMax().y : bounds.getMin().y;
-			mPoint1.z = p.getNormal().z > 0 ? bounds.getMin().z : bounds.getMax().z;
-			mPoint2.z = p.getNormal().z > 0 ? bounds.getMax().z : bounds.getMin().z;
+			mPoint1.x = p.getNormal().x > 0 ? min.x : max.x;
+			mPoint2.x = p.getNormal().x > 0 ? max.x : min.x;
+			mPoint1.y = p.getNormal().y > 0 ? min.y : max.y;
+			mPoint2.y = p.getNormal().y > 0 ? max.y : min.y;
+			mPoint1.z = p.getNormal().z > 0 ? min.z : max.z;
+			mPoint2.z = p.getNormal().z > 0 ? max.z : min.z;
 
 			double distance1 = p.getDistanceTo(mPoint1);
 			double distance2 = p.getDistanceTo(mPoint2);
@@ -13,10 +13,18 @@
 package org.rajawali3d.loader;
 
 import java.io.File;
+import java.util.Arrays;
 
+import org.rajawali3d.BufferInfo;
+import org.rajawali3d.Geometry3D;
 import org.rajawali3d.Object3D;
+import org.rajawali3d.VertexFormat;
 import org.rajawali3d.materials.textures.TextureManager;
 import org.rajawali3d.renderer.Renderer;
+import org.rajawali3d.util.MeshChunker;
+import org.rajawali3d.util.MeshOptimizer;
+import org.rajawali3d.util.RajLog;
+import org.rajawali3d.util.VertexWelder;
 
 import android.content.res.Resources;
 
@@ -26,6 +34,19 @@ public abstract class AMeshLoader extends ALoader implements IMeshLoader {
 
 	protected Object3D mRootObject;
 
+	protected VertexWelder mVertexWelder;
+	protected MeshOptimizer mMeshOptimizer;
+	protected MeshOptimizer.Statistics mOptimizationStatistics;
+	protected MeshChunker mMeshChunker;
+
+	protected boolean mQuantizeVertices;
+	protected VertexFormat.Attribute[] mSeparateAttributes;
+
+	protected Geometry3D.RetentionPolicy mRetentionPolicy = Geometry3D.RetentionPolicy.KEEP;
+	private Object3D mRestoredObject;
+	private int mPendingRestores;
+	private int mDroppedGeometries;
+
 	public AMeshLoader(File file) {
 		super(file);
 		mRootObject = new Object3D();
@@ -60,4 +81,226 @@ public abstract class AMeshLoader extends ALoader implements IMeshLoader {
 	public Object3D getParsedObject() {
 		return mRootObject;
 	}
+
+	/**
+	 * Stores the vertices of every parsed mesh in the compact encodings of {@link VertexFormat#quantized}, adding a
+	 * {@link org.rajawali3d.materials.plugins.VertexDecodeMaterialPlugin} to their materials. Applied by
+	 * {@link #postProcess()}.
+	 *
+	 * @param enabled {@code true} to quantize the parsed vertices.
+	 * @param separate Attributes which stay in their own float buffers, for instance because they will be updated.
+	 */
+	public void setVertexQuantization(boolean enabled, VertexFormat.Attribute... separate) {
+		mQuantizeVertices = enabled;
+		mSeparateAttributes = separate;
+	}
+
+	/**
+	 * Merges identical vertices of every parsed mesh, which most formats store once per face corner. Applied by
+	 * {@link #postProcess()} before any other step.
+	 *
+	 * @param welder {@link VertexWelder} to run or null to keep the vertices of the file.
+	 */
+	public void setVertexWelder(VertexWelder welder) {
+		mVertexWelder = welder;
+	}
+
+	/**
+	 * Reorders the triangles and vertices of every parsed mesh for the vertex cache, overdraw and vertex fetch.
+	 * Applied by {@link #postProcess()}.
+	 *
+	 * @param optimizer {@link MeshOptimizer} to run or null to keep the order of the file.
+	 */
+	public void setMeshOptimizer(MeshOptimizer optimizer) {
+		mMeshOptimizer = optimizer;
+	}
+
+	/**
+	 * Splits large parsed meshes into spatial clusters which are culled separately. Applied by {@link #postProcess()}
+	 * after the optimizer.
+	 *
+	 * @param chunker {@link MeshChunker} to run or null to draw every mesh whole.
+	 */
+	public void setMeshChunker(MeshChunker chunker) {
+		mMeshChunker = chunker;
+	}
+
+	/**
+	 * @return {@link MeshOptimizer.Statistics} of the last optimization or null if none ran.
+	 */
+	public MeshOptimizer.Statistics getOptimizationStatistics() {
+		return mOptimizationStatistics;
+	}
+
+	/**
+	 * Sets what happens to the CPU side data of every parsed mesh once it has been uploaded. With
+	 * {@link Geometry3D.RetentionPolicy#DROP} the file is parsed again when the data is needed after a context loss,
+	 * the materials created by that second parse are discarded. Applied by {@link #postProcess()}.
+	 *
+	 * @param policy {@link Geometry3D.RetentionPolicy} for the parsed meshes.
+	 */
+	public void setRetentionPolicy(Geometry3D.RetentionPolicy policy) {
+		mRetentionPolicy = policy;
+	}
+
+	/**
+	 * Describes the options of this loader which change the parsed object. {@link CachedMeshLoader} keeps a cache
+	 * for each description. The processing steps are not part of it since they run after the cache is read.
+	 *
+	 * @return The options, empty if the loader has none.
+	 */
+	protected String getParseOptions() {
+		return "";
+	}
+
+	/**
+	 * @return {@code true} if any of the processing steps of {@link #postProcess()} is enabled.
+	 */
+	boolean hasProcessingSteps() {
+		return mVertexWelder != null || mMeshOptimizer != null || mMeshChunker != null || mQuantizeVertices
+				|| mRetentionPolicy != Geometry3D.RetentionPolicy.KEEP;
+	}
+
+	/**
+	 * Runs the optional processing steps which were enabled on this loader over the parsed object. This is done by
+	 * the {@link Renderer} for asynchronously loaded models and has to be called after {@link #parse()} otherwise.
+	 * It does not need a GL context so it can run on the loading thread.
+	 *
+	 * @return This loader.
+	 */
+	public AMeshLoader postProcess() {
+		if (mVertexWelder != null) {
+			weld();
+		}
+		if (mMeshOptimizer != null) {
+			optimize();
+		}
+		if (mMeshChunker != null) {
+			chunk();
+		}
+		if (mQuantizeVertices) {
+			encode();
+		}
+		if (mRetentionPolicy != Geometry3D.RetentionPolicy.KEEP) {
+			mDroppedGeometries = 0;
+			applyRetentionPolicy(mRootObject, new int[0]);
+		}
+		return this;
+	}
+
+	/**
+	 * Welds the vertices of the parsed object.
+	 */
+	protected void weld() {
+		final int removed = mVertexWelder.weld(mRootObject);
+		RajLog.i(getClass().getSimpleName() + " welded away " + removed + " vertices.");
+	}
+
+	/**
+	 * Optimizes the index order of the parsed object.
+	 */
+	protected void optimize() {
+		mOptimizationStatistics = mMeshOptimizer.optimize(mRootObject);
+		RajLog.i(getClass().getSimpleName() + " optimized meshes: " + mOptimizationStatistics);
+	}
+
+	/**
+	 * Splits the meshes of the parsed object into spatial clusters.
+	 */
+	protected void chunk() {
+		final int clusters = mMeshChunker.chunk(mRootObject);
+		RajLog.i(getClass().getSimpleName() + " split meshes into " + clusters + " clusters.");
+	}
+
+	/**
+	 * Quantizes the vertex attributes of the parsed object.
+	 */
+	protected void encode() {
+		VertexFormat.quantize(mRootObject, mSeparateAttributes);
+	}
+
+	private void applyRetentionPolicy(Object3D object, int[] path) {
+		if (!object.isContainer()) {
+			if (mRetentionPolicy == Geometry3D.RetentionPolicy.DROP) {
+				object.getGeometry().setRetentionPolicy(mRetentionPolicy, new ReparsingRestorer(path));
+				++mDroppedGeometries;
+			} else {
+				object.getGeometry().setRetentionPolicy(mRetentionPolicy);
+			}
+		}
+		for (int i = 0, j = object.getNumChildren(); i < j; ++i) {
+			final int[] childPath = Arrays.copyOf(path, path.length + 1);
+			childPath[path.length] = i;
+			applyRetentionPolicy(object.getChildAt(i), childPath);
+		}
+	}
+
+	/**
+	 * Parses the file again into a new hierarchy and applies the steps which change vertex data. The result is kept
+	 * until every dropped geometry took its data from it.
+	 */
+	private synchronized Object3D getRestoredObject() {
+		if (mRestoredObject == null) {
+			final Object3D parsed = mRootObject;
+			mRootObject = new Object3D();
+			try {
+				parse();
+				if (mVertexWelder != null) {
+					mVertexWelder.weld(mRootObject);
+				}
+				if (mMeshOptimizer != null) {
+					mMeshOptimizer.optimize(mRootObject);
+				}
+				if (mMeshChunker != null) {
+					// Same triangle order as the clusters of the dropped geometry
+					mMeshChunker.chunk(mRootObject);
+				}
+				mRestoredObject = mRootObject;
+				mPendingRestores = mDroppedGeometries;
+			} catch (ParsingException e) {
+				throw new IllegalStateException("Unable to parse the model again to restore its geometry.", e);
+			} finally {
+				mRootObject = parsed;
+			}
+		}
+		return mRestoredObject;
+	}
+
+	private synchronized void onRestored() {
+		if (--mPendingRestores <= 0) {
+			mRestoredObject = null;
+		}
+	}
+
+	/**
+	 * Restores a dropped geometry from the object at the same place in a freshly parsed hierarchy.
+	 */
+	private final class ReparsingRestorer implements Geometry3D.DataRestorer {
+		private final int[] mPath;
+
+		ReparsingRestorer(int[] path) {
+			mPath = path;
+		}
+
+		@Override
+		public void restore(Geometry3D geometry) {
+			Object3D source = getRestoredObject();
+			for (int index : mPath) {
+				source = source.getChildAt(index);
+			}
+			final Geometry3D sourceGeometry = source.getGeometry();
+			// Every buffer was released, including those added by the parser such as bone indices and weights
+			for (int key = 0, count = geometry.getBufferCount(); key < count; ++key) {
+				final BufferInfo info = geometry.getBufferInfo(key);
+				if (info == null) {
+					continue;
+				}
+				if (key >= sourceGeometry.getBufferCount() || sourceGeometry.getBufferInfo(key) == null) {
+					throw new IllegalStateException("The model parsed again lacks buffer " + key + " of its geometry.");
+				}
+				info.buffer = sourceGeometry.getBufferInfo(key).buffer;
+			}
+			onRestored();
+		}
+	}
 }
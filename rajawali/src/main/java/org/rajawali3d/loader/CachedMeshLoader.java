@@ -0,0 +1,148 @@
+package org.rajawali3d.loader;
+
+import androidx.annotation.NonNull;
+
+import org.rajawali3d.Object3D;
+import org.rajawali3d.util.RajLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Loads a model through another {@link AMeshLoader} once and from a {@link MeshCache} file afterwards. Cache files
+ * are named after a hash of the model file, so a changed model is parsed again and never read from a stale cache.
+ * The options of the wrapped loader which change the parsed object, such as the normals of {@link LoaderSTL}, are
+ * part of the name as well. The processing steps of {@link AMeshLoader} run on every load, set them on this loader
+ * rather than on the wrapped one.
+ *
+ * <pre>
+ * final CachedMeshLoader loader = new CachedMeshLoader(new LoaderOBJ(this, R.raw.model), getContext().getCacheDir());
+ * loader.parse();
+ * </pre>
+ */
+public class CachedMeshLoader extends AMeshLoader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final AMeshLoader mSource;
+    private final File        mCacheDirectory;
+
+    private MeshCache.MaterialFactory mMaterialFactory = MeshCache.COLOR_MATERIALS;
+    private File                      mCacheFile;
+    private boolean                   mLoadedFromCache;
+
+    /**
+     * @param source         {@link AMeshLoader} which parses the model when there is no cache for it yet.
+     * @param cacheDirectory {@link File} directory for the cache files.
+     */
+    public CachedMeshLoader(@NonNull AMeshLoader source, @NonNull File cacheDirectory) {
+        super(source.mResources, source.mTextureManager, source.mResourceId);
+        mFile = source.mFile;
+        mFileOnSDCard = source.mFileOnSDCard;
+        mSource = source;
+        mCacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Sets how materials are created when the model is read from the cache. The default,
+     * {@link MeshCache#COLOR_MATERIALS}, only restores colors and lighting.
+     *
+     * @param factory {@link MeshCache.MaterialFactory} to create the materials with.
+     */
+    public void setMaterialFactory(@NonNull MeshCache.MaterialFactory factory) {
+        mMaterialFactory = factory;
+    }
+
+    /**
+     * @return {@code true} if the last {@link #parse()} read the model from the cache.
+     */
+    public boolean isLoadedFromCache() {
+        return mLoadedFromCache;
+    }
+
+    /**
+     * @return The cache {@link File} of the model, known after the first {@link #parse()}.
+     */
+    public File getCacheFile() {
+        return mCacheFile;
+    }
+
+    /**
+     * @throws IllegalStateException If processing steps are enabled on the wrapped loader, which would not apply them.
+     */
+    @Override
+    public CachedMeshLoader parse() throws ParsingException {
+        if (mSource.hasProcessingSteps()) {
+            throw new IllegalStateException("Enable the processing steps on the CachedMeshLoader, not the wrapped "
+                    + "loader.");
+        }
+        super.parse();
+        if (mCacheFile == null) {
+            try {
+                mCacheFile = new File(mCacheDirectory, hashSource() + MeshCache.EXTENSION);
+            } catch (IOException e) {
+                throw new ParsingException("Unable to read the model to find its cache.", e);
+            }
+        }
+        if (mCacheFile.isFile()) {
+            try {
+                mRootObject = MeshCache.read(mCacheFile, mMaterialFactory);
+                mLoadedFromCache = true;
+                return this;
+            } catch (IOException e) {
+                RajLog.w("Parsing the model again, its cache could not be read: " + e.getMessage());
+            }
+        }
+        mLoadedFromCache = false;
+        mSource.parse();
+        final Object3D parsed = mSource.getParsedObject();
+        mSource.mRootObject = new Object3D();
+        mRootObject = parsed;
+        try {
+            if (!mCacheDirectory.isDirectory() && !mCacheDirectory.mkdirs()) {
+                throw new IOException("Unable to create " + mCacheDirectory);
+            }
+            MeshCache.write(parsed, mCacheFile);
+        } catch (IOException e) {
+            RajLog.w("Unable to cache the model: " + e.getMessage());
+        }
+        return this;
+    }
+
+    /**
+     * Hashes the model file together with the type and options of the wrapped loader and the version of the cache
+     * format.
+     */
+    private String hashSource() throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(mSource.getClass().getName().getBytes(UTF_8));
+        digest.update((byte) 0);
+        digest.update(mSource.getParseOptions().getBytes(UTF_8));
+        digest.update((byte) 0);
+        digest.update((byte) MeshCache.VERSION);
+        final InputStream stream = getBufferedInputStream();
+        try {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            stream.close();
+        }
+        final StringBuilder name = new StringBuilder();
+        for (byte value : digest.digest()) {
+            name.append(Character.forDigit((value >> 4) & 0xf, 16)).append(Character.forDigit(value & 0xf, 16));
+        }
+        return name.toString();
+    }
+}
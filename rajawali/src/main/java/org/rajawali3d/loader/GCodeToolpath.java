@@ -0,0 +1,502 @@
+package org.rajawali3d.loader;
+
+import android.opengl.GLES20;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.rajawali3d.BufferInfo;
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.materials.Material;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The extruded paths of a G-code print, drawn as {@link GLES20#GL_LINES}. Every layer is a range of the indices, so
+ * layers are shown and hidden by changing the draw range rather than the data.
+ * <p>
+ * The vertices are split into parts of at most 65536, so every part is drawn with 16 bit indices and a print shows up
+ * on devices without OES_element_index_uint as well. The parts are children of the toolpath and take its material; a
+ * path crossing into a new part repeats its last vertex there.
+ * <p>
+ * {@link LoaderGCode} appends to the buffers while it reads and publishes every layer it completes. A toolpath can
+ * be added to the scene as soon as its first layer is published; each frame uploads whatever was published since the
+ * last one. Like {@link org.rajawali3d.primitives.Line3D} it needs a material to be set before it is drawn.
+ */
+public class GCodeToolpath extends Object3D {
+
+    /**
+     * Notified on the loading thread whenever a layer has been read completely.
+     */
+    public interface OnLayerListener {
+
+        /**
+         * @param toolpath {@link GCodeToolpath} the layer belongs to.
+         * @param layer    {@code int} Index of the layer, which can be drawn from now on.
+         */
+        void onLayerLoaded(@NonNull GCodeToolpath toolpath, int layer);
+    }
+
+    /**
+     * The most vertices a part can have to be drawn with 16 bit indices.
+     */
+    static final int MAX_PART_VERTICES = 65536;
+
+    private static final int INITIAL_VERTICES = 4096;
+    private static final int INITIAL_LAYERS   = 64;
+
+    private final Object mLock = new Object();
+
+    @Nullable
+    private OnLayerListener mOnLayerListener;
+
+    // Appended to by the loading thread, only the published part is read by others
+    private final List<Part> mParts = new ArrayList<>();
+    private Part  mPart;
+    private int   mVertexCount;
+    private int   mIndexCount;
+    private int   mLayerCount;
+    // First index of every layer, the entry after the last published layer is where it ends
+    private int[]   mLayerStarts  = new int[INITIAL_LAYERS + 1];
+    private float[] mLayerHeights = new float[INITIAL_LAYERS];
+
+    // Guarded by mLock
+    private Part[]  mPublishedParts = new Part[0];
+    private int     mPublishedLayers;
+    private boolean mLoaded;
+    private int     mFirstVisibleLayer;
+    private int     mLastVisibleLayer = Integer.MAX_VALUE;
+
+    // Used on the GL thread only
+    private int   mAttachedParts;
+    private float mLineThickness = 1;
+
+    public GCodeToolpath() {
+        super();
+        mPart = new Part(0, 0);
+        mParts.add(mPart);
+    }
+
+    /**
+     * @param listener {@link OnLayerListener} to notify of loaded layers, or null.
+     */
+    public void setOnLayerListener(@Nullable OnLayerListener listener) {
+        mOnLayerListener = listener;
+    }
+
+    /**
+     * @return {@code int} The number of layers which can be drawn.
+     */
+    public int getNumLayers() {
+        synchronized (mLock) {
+            return mPublishedLayers;
+        }
+    }
+
+    /**
+     * @return {@code boolean} True once every layer of the file has been published.
+     */
+    public boolean isLoaded() {
+        synchronized (mLock) {
+            return mLoaded;
+        }
+    }
+
+    /**
+     * @param layer {@code int} Index of a published layer.
+     *
+     * @return {@code float} The height the layer was printed at.
+     */
+    public float getLayerHeight(int layer) {
+        synchronized (mLock) {
+            checkLayer(layer);
+            return mLayerHeights[layer];
+        }
+    }
+
+    /**
+     * @param layer {@code int} Index of a published layer.
+     *
+     * @return {@code int} The first index of the layer's segments.
+     */
+    public int getLayerIndexOffset(int layer) {
+        synchronized (mLock) {
+            checkLayer(layer);
+            return mLayerStarts[layer];
+        }
+    }
+
+    /**
+     * @param layer {@code int} Index of a published layer.
+     *
+     * @return {@code int} The number of indices of the layer's segments, two per segment.
+     */
+    public int getLayerIndexCount(int layer) {
+        synchronized (mLock) {
+            checkLayer(layer);
+            return mLayerStarts[layer + 1] - mLayerStarts[layer];
+        }
+    }
+
+    /**
+     * Draws only the given layers, for instance to look at the print up to a height. Layers which are published
+     * later are drawn if they fall in the range.
+     *
+     * @param firstLayer {@code int} First layer to draw.
+     * @param lastLayer  {@code int} Last layer to draw.
+     */
+    public void setVisibleLayers(int firstLayer, int lastLayer) {
+        if (firstLayer < 0 || lastLayer < firstLayer) {
+            throw new IllegalArgumentException("Invalid layer range " + firstLayer + " to " + lastLayer + ".");
+        }
+        synchronized (mLock) {
+            mFirstVisibleLayer = firstLayer;
+            mLastVisibleLayer = lastLayer;
+        }
+    }
+
+    /**
+     * Draws every layer again after {@link #setVisibleLayers(int, int)}.
+     */
+    public void showAllLayers() {
+        synchronized (mLock) {
+            mFirstVisibleLayer = 0;
+            mLastVisibleLayer = Integer.MAX_VALUE;
+        }
+    }
+
+    public void setLineThickness(float lineThickness) {
+        mLineThickness = lineThickness;
+    }
+
+    public float getLineThickness() {
+        return mLineThickness;
+    }
+
+    @Override
+    public void setMaterial(Material material) {
+        super.setMaterial(material);
+        for (int i = 0, j = getNumChildren(); i < j; ++i) {
+            final Object3D child = getChildAt(i);
+            if (child instanceof Part) {
+                child.setMaterial(material);
+            }
+        }
+    }
+
+    /**
+     * Appends a vertex, starting a new part once the open one is full. Only called by the loading thread.
+     *
+     * @return {@code int} Index of the vertex.
+     */
+    int addVertex(float x, float y, float z) {
+        if (mPart.mVertexCount == MAX_PART_VERTICES) {
+            mPart = new Part(mVertexCount, mIndexCount);
+            mParts.add(mPart);
+        }
+        mPart.addVertex(x, y, z);
+        return mVertexCount++;
+    }
+
+    /**
+     * Appends a segment to the open layer. Only called by the loading thread.
+     *
+     * @param from {@code int} Index of a vertex of the open part, or of an earlier part if {@code to} is the first
+     *             vertex of the open one.
+     * @param to   {@code int} Index of a vertex of the open part.
+     */
+    void addSegment(int from, int to) {
+        final Part part = mPart;
+        int first = from - part.mFirstVertex;
+        int second = to - part.mFirstVertex;
+        if (second < 0 || second >= part.mVertexCount) {
+            throw new IllegalArgumentException("Vertex " + to + " is not part of the open part.");
+        }
+        if (first < 0) {
+            if (part.mVertexCount != 1 || from < 0) {
+                throw new IllegalArgumentException("Only the first vertex of a part joins a vertex of an earlier one.");
+            }
+            // The path crosses into the new part, which starts with a copy of the vertex it continues from
+            final Part previous = mParts.get(mParts.size() - 2);
+            part.insertFirst(previous.mVertices, (from - previous.mFirstVertex) * 3);
+            first = 0;
+            ++second;
+        }
+        part.addSegment(first, second);
+        mIndexCount += 2;
+    }
+
+    /**
+     * Completes and publishes the open layer, if any, and opens a new one. Only called by the loading thread.
+     *
+     * @param height {@code float} Height of the new layer.
+     */
+    void beginLayer(float height) {
+        final int completed = mLayerCount;
+        synchronized (mLock) {
+            if (mLayerCount == mLayerHeights.length) {
+                mLayerHeights = Arrays.copyOf(mLayerHeights, mLayerCount * 2);
+                mLayerStarts = Arrays.copyOf(mLayerStarts, mLayerCount * 2 + 1);
+            }
+            mLayerStarts[mLayerCount] = mIndexCount;
+            mLayerHeights[mLayerCount] = height;
+            publish(mLayerCount);
+            ++mLayerCount;
+        }
+        if (completed > 0) {
+            notifyLayer(completed - 1);
+        }
+    }
+
+    /**
+     * Completes and publishes the last layer. Only called by the loading thread.
+     */
+    void finish() {
+        synchronized (mLock) {
+            mLayerStarts[mLayerCount] = mIndexCount;
+            publish(mLayerCount);
+            mLoaded = true;
+        }
+        if (mLayerCount > 0) {
+            notifyLayer(mLayerCount - 1);
+        }
+    }
+
+    /**
+     * @return {@code List} The parts written so far. Only called by the loading thread.
+     */
+    @NonNull
+    List<Part> getParts() {
+        return mParts;
+    }
+
+    private void publish(int layers) {
+        // Parts before the last published one were complete when they were published
+        for (int i = Math.max(0, mPublishedParts.length - 1), j = mParts.size(); i < j; ++i) {
+            mParts.get(i).publish();
+        }
+        if (mPublishedParts.length != mParts.size()) {
+            mPublishedParts = mParts.toArray(new Part[mParts.size()]);
+        }
+        mPublishedLayers = layers;
+    }
+
+    private void notifyLayer(int layer) {
+        final OnLayerListener listener = mOnLayerListener;
+        if (listener != null) {
+            listener.onLayerLoaded(this, layer);
+        }
+    }
+
+    private void checkLayer(int layer) {
+        if (layer < 0 || layer >= mPublishedLayers) {
+            throw new IndexOutOfBoundsException("Layer " + layer + " of " + mPublishedLayers + " published layers.");
+        }
+    }
+
+    @Override
+    protected void preRender() {
+        final Part[] parts;
+        final int drawStart;
+        final int drawEnd;
+        synchronized (mLock) {
+            parts = mPublishedParts;
+            for (Part part : parts) {
+                part.takePublished();
+            }
+            final int first = Math.min(mFirstVisibleLayer, mPublishedLayers);
+            final int end = (int) Math.min((long) mLastVisibleLayer + 1, mPublishedLayers);
+            drawStart = mLayerStarts[first];
+            drawEnd = Math.max(drawStart, mLayerStarts[end]);
+        }
+        for (; mAttachedParts < parts.length; ++mAttachedParts) {
+            final Part part = parts[mAttachedParts];
+            part.setMaterial(getMaterial());
+            addChild(part);
+        }
+        for (Part part : parts) {
+            part.update(drawStart, drawEnd);
+        }
+        GLES20.glLineWidth(mLineThickness);
+    }
+
+    /**
+     * Up to {@link #MAX_PART_VERTICES} vertices of a toolpath with the segments between them, drawn as a child of the
+     * toolpath.
+     */
+    static final class Part extends Object3D {
+
+        // Appended to by the loading thread
+        private int         mFirstVertex;
+        private final int   mFirstIndex;
+        private FloatBuffer mVertices;
+        private ShortBuffer mIndices;
+        private int         mVertexCount;
+        private int         mIndexCount;
+
+        // Guarded by the toolpath's lock
+        private FloatBuffer mPublishedVertices;
+        private ShortBuffer mPublishedIndices;
+        private int         mPublishedVertexCount;
+        private int         mPublishedIndexCount;
+
+        // Used on the GL thread only
+        private FloatBuffer mFrameVertices;
+        private ShortBuffer mFrameIndices;
+        private int         mFrameVertexCount;
+        private int         mFrameIndexCount;
+        private int         mUploadedVertexCount;
+        private int         mUploadedIndexCount;
+
+        Part(int firstVertex, int firstIndex) {
+            super();
+            setDoubleSided(true);
+            setDrawingMode(GLES20.GL_LINES);
+            mFirstVertex = firstVertex;
+            mFirstIndex = firstIndex;
+            mVertices = ByteBuffer.allocateDirect(INITIAL_VERTICES * 3 * Geometry3D.FLOAT_SIZE_BYTES)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            mIndices = ByteBuffer.allocateDirect(INITIAL_VERTICES * 2 * Geometry3D.SHORT_SIZE_BYTES)
+                    .order(ByteOrder.nativeOrder()).asShortBuffer();
+        }
+
+        /**
+         * @return {@code int} Index of the first of the toolpath's indices stored in this part.
+         */
+        int getFirstIndex() {
+            return mFirstIndex;
+        }
+
+        int getVertexCount() {
+            return mVertexCount;
+        }
+
+        int getIndexCount() {
+            return mIndexCount;
+        }
+
+        /**
+         * @param index {@code int} Position in this part's indices.
+         *
+         * @return {@code int} Index of a vertex of this part.
+         */
+        int getIndex(int index) {
+            return mIndices.get(index) & 0xFFFF;
+        }
+
+        /**
+         * @param vertex {@code int} Index of a vertex of this part.
+         * @param axis   {@code int} 0 for x, 1 for y and 2 for z.
+         *
+         * @return {@code float} The coordinate.
+         */
+        float getCoordinate(int vertex, int axis) {
+            return mVertices.get(vertex * 3 + axis);
+        }
+
+        private void addVertex(float x, float y, float z) {
+            if ((mVertexCount + 1) * 3 > mVertices.capacity()) {
+                final FloatBuffer grown = ByteBuffer
+                        .allocateDirect(mVertices.capacity() * 2 * Geometry3D.FLOAT_SIZE_BYTES)
+                        .order(ByteOrder.nativeOrder()).asFloatBuffer();
+                final FloatBuffer used = mVertices.duplicate();
+                used.position(0).limit(mVertexCount * 3);
+                grown.put(used).position(0);
+                mVertices = grown;
+            }
+            // Absolute puts, the GL thread moves the position of published buffers while uploading
+            final int offset = mVertexCount * 3;
+            mVertices.put(offset, x);
+            mVertices.put(offset + 1, y);
+            mVertices.put(offset + 2, z);
+            ++mVertexCount;
+        }
+
+        /**
+         * Moves the only vertex to the second place and copies a vertex in front of it, which shifts the part's
+         * vertices to start one toolpath vertex earlier.
+         */
+        private void insertFirst(FloatBuffer vertices, int offset) {
+            addVertex(mVertices.get(0), mVertices.get(1), mVertices.get(2));
+            mVertices.put(0, vertices.get(offset));
+            mVertices.put(1, vertices.get(offset + 1));
+            mVertices.put(2, vertices.get(offset + 2));
+            --mFirstVertex;
+        }
+
+        private void addSegment(int from, int to) {
+            if (mIndexCount + 2 > mIndices.capacity()) {
+                final ShortBuffer grown = ByteBuffer
+                        .allocateDirect(mIndices.capacity() * 2 * Geometry3D.SHORT_SIZE_BYTES)
+                        .order(ByteOrder.nativeOrder()).asShortBuffer();
+                final ShortBuffer used = mIndices.duplicate();
+                used.position(0).limit(mIndexCount);
+                grown.put(used).position(0);
+                mIndices = grown;
+            }
+            mIndices.put(mIndexCount++, (short) from);
+            mIndices.put(mIndexCount++, (short) to);
+        }
+
+        private void publish() {
+            mPublishedVertices = mVertices;
+            mPublishedIndices = mIndices;
+            mPublishedVertexCount = mVertexCount;
+            mPublishedIndexCount = mIndexCount;
+        }
+
+        private void takePublished() {
+            mFrameVertices = mPublishedVertices;
+            mFrameIndices = mPublishedIndices;
+            mFrameVertexCount = mPublishedVertexCount;
+            mFrameIndexCount = mPublishedIndexCount;
+        }
+
+        /**
+         * Uploads what was published since the last frame and draws the part of the toolpath's visible indices which
+         * falls into this part.
+         */
+        private void update(int drawStart, int drawEnd) {
+            final Geometry3D geometry = mGeometry;
+            if (mIsContainerOnly) {
+                // First layers published, the buffers are created with everything so far
+                setData(mFrameVertices, null, null, mFrameIndices, false);
+                geometry.setStreaming(geometry.getVertexBufferInfo(), true);
+                geometry.setStreaming(geometry.getIndexBufferInfo(), true);
+            } else {
+                updateBuffer(geometry, geometry.getVertexBufferInfo(), mFrameVertices, mUploadedVertexCount * 3,
+                             mFrameVertexCount * 3);
+                updateBuffer(geometry, geometry.getIndexBufferInfo(), mFrameIndices, mUploadedIndexCount,
+                             mFrameIndexCount);
+            }
+            mUploadedVertexCount = mFrameVertexCount;
+            mUploadedIndexCount = mFrameIndexCount;
+            geometry.setNumVertices(mFrameVertexCount);
+            final int start = Math.min(Math.max(drawStart - mFirstIndex, 0), mFrameIndexCount);
+            final int end = Math.min(Math.max(drawEnd - mFirstIndex, start), mFrameIndexCount);
+            geometry.setDrawRange(start, end - start);
+        }
+
+        private static void updateBuffer(Geometry3D geometry, BufferInfo info, Buffer published, int uploaded,
+                                         int count) {
+            if (info.buffer != published) {
+                // The loader grew the buffer, specify the new storage as a whole
+                if (info.bufferHandle > 0) {
+                    geometry.changeBufferData(info, published, 0, published.capacity(), true);
+                } else {
+                    info.buffer = published;
+                }
+            } else if (count > uploaded) {
+                geometry.markDirty(info, uploaded, count - uploaded);
+            }
+        }
+    }
+}
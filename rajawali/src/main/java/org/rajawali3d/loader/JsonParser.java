@@ -0,0 +1,229 @@
+package org.rajawali3d.loader;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Small reader for the JSON part of formats like glTF. Objects become {@link Map}s, arrays {@link List}s, numbers
+ * {@link Double}s and the literals {@link Boolean}s or null.
+ */
+final class JsonParser {
+
+    private final String mText;
+    private       int    mPosition;
+
+    private JsonParser(String text) {
+        mText = text;
+    }
+
+    /**
+     * Parses a complete JSON document.
+     *
+     * @param text {@link String} holding the document.
+     *
+     * @return The value of the document.
+     *
+     * @throws ParsingException If the text is not valid JSON.
+     */
+    @Nullable
+    static Object parse(String text) throws ParsingException {
+        final JsonParser parser = new JsonParser(text);
+        final Object value = parser.readValue();
+        parser.skipWhitespace();
+        if (parser.mPosition != text.length()) {
+            throw parser.error("Unexpected content after the document");
+        }
+        return value;
+    }
+
+    @Nullable
+    private Object readValue() throws ParsingException {
+        skipWhitespace();
+        if (mPosition >= mText.length()) {
+            throw error("Unexpected end of the document");
+        }
+        final char c = mText.charAt(mPosition);
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                expect("true");
+                return Boolean.TRUE;
+            case 'f':
+                expect("false");
+                return Boolean.FALSE;
+            case 'n':
+                expect("null");
+                return null;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber();
+                }
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() throws ParsingException {
+        final Map<String, Object> object = new HashMap<>();
+        ++mPosition;
+        skipWhitespace();
+        if (peek() == '}') {
+            ++mPosition;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected a member name");
+            }
+            final String name = readString();
+            skipWhitespace();
+            if (peek() != ':') {
+                throw error("Expected ':'");
+            }
+            ++mPosition;
+            object.put(name, readValue());
+            skipWhitespace();
+            final char c = peek();
+            ++mPosition;
+            if (c == '}') {
+                return object;
+            } else if (c != ',') {
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private List<Object> readArray() throws ParsingException {
+        final List<Object> array = new ArrayList<>();
+        ++mPosition;
+        skipWhitespace();
+        if (peek() == ']') {
+            ++mPosition;
+            return array;
+        }
+        while (true) {
+            array.add(readValue());
+            skipWhitespace();
+            final char c = peek();
+            ++mPosition;
+            if (c == ']') {
+                return array;
+            } else if (c != ',') {
+                throw error("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private String readString() throws ParsingException {
+        final int start = ++mPosition;
+        // Strings without escapes, nearly all of them, are taken straight from the text
+        while (mPosition < mText.length()) {
+            final char c = mText.charAt(mPosition);
+            if (c == '"') {
+                return mText.substring(start, mPosition++);
+            } else if (c == '\\') {
+                break;
+            }
+            ++mPosition;
+        }
+        final StringBuilder builder = new StringBuilder(mText.substring(start, mPosition));
+        while (mPosition < mText.length()) {
+            char c = mText.charAt(mPosition++);
+            if (c == '"') {
+                return builder.toString();
+            } else if (c == '\\') {
+                if (mPosition >= mText.length()) {
+                    break;
+                }
+                c = mText.charAt(mPosition++);
+                switch (c) {
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        if (mPosition + 4 > mText.length()) {
+                            throw error("Incomplete unicode escape");
+                        }
+                        try {
+                            builder.append((char) Integer.parseInt(mText.substring(mPosition, mPosition + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        mPosition += 4;
+                        break;
+                    default:
+                        builder.append(c);
+                }
+            } else {
+                builder.append(c);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Double readNumber() throws ParsingException {
+        final int start = mPosition;
+        while (mPosition < mText.length()) {
+            final char c = mText.charAt(mPosition);
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                ++mPosition;
+            } else {
+                break;
+            }
+        }
+        try {
+            return Double.valueOf(mText.substring(start, mPosition));
+        } catch (NumberFormatException e) {
+            throw error("Invalid number");
+        }
+    }
+
+    private void expect(String literal) throws ParsingException {
+        if (!mText.startsWith(literal, mPosition)) {
+            throw error("Expected " + literal);
+        }
+        mPosition += literal.length();
+    }
+
+    private char peek() throws ParsingException {
+        if (mPosition >= mText.length()) {
+            throw error("Unexpected end of the document");
+        }
+        return mText.charAt(mPosition);
+    }
+
+    private void skipWhitespace() {
+        while (mPosition < mText.length()) {
+            final char c = mText.charAt(mPosition);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+            ++mPosition;
+        }
+    }
+
+    private ParsingException error(String message) {
+        return new ParsingException(message + " at offset " + mPosition + ".");
+    }
+}
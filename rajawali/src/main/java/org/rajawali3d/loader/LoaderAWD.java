@@ -41,23 +41,33 @@ import org.rajawali3d.math.vector.Vector3;
 import org.rajawali3d.renderer.Renderer;
 import org.rajawali3d.scene.Scene;
 import org.rajawali3d.util.LittleEndianDataInputStream;
+import org.rajawali3d.util.LzmaInputStream;
 import org.rajawali3d.util.RajLog;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.InflaterInputStream;
 
 /**
  * AWD File parser written using the AWD File Format specification. All future additions to the
  * format should adhere to all specification requirements for maximum forward and backward
  * compatibility.
  * <p/>
- * Currently compression is not supported, files will need to be formatted with compression off.
- * This is an option in MAX and should be an option using other exporters.
+ * Bodies compressed with ZLIB or LZMA are decompressed while the blocks are read, so compressed
+ * files are never held in memory as a whole.
  * <p/>
  * <p/>
  * <b>Example AWD parsing</b>
@@ -65,8 +75,8 @@ import java.util.List;
  * <code><pre>
  * final AWDParser parser = new AWDParser(this, new File(Environment.getExternalStorageDirectory(),
  * "cube.awd"));
- * parser.parse();
  * parser.setAlwaysUseContainer(false);
+ * parser.parse();
  * final BaseObject3D obj = parser.getParsedObject();
  * </pre></code>
  *
@@ -100,6 +110,7 @@ public class LoaderAWD extends AMeshLoader {
     protected final SparseArray<BlockHeader> blockDataList = new SparseArray<BlockHeader>();
 
     private final List<IBlockParser> blockParsers = new ArrayList<IBlockParser>();
+    private final SparseArray<BlockParserFactory> blockParserFactories = new SparseArray<BlockParserFactory>();
     private final SparseArray<Class<? extends ABlockParser>> blockParserClassesMap = new SparseArray<Class<? extends ABlockParser>>();
 
     protected int awdHeaderVersion;
@@ -111,6 +122,7 @@ public class LoaderAWD extends AMeshLoader {
     protected boolean awdHeaderAccuracyGeo;
     protected boolean awdHeaderAccuracyProps;
     protected boolean mAlwaysUseContainer;
+    private int mParallelism = 1;
 
     public LoaderAWD(Renderer renderer, File file) {
         super(renderer, file);
@@ -129,32 +141,208 @@ public class LoaderAWD extends AMeshLoader {
 
     protected void init() {
         // Blocks are identified in the AWD documentation under the title 'Block Types'
-        blockParserClassesMap.put(getClassID(NS_AWD, 1), BlockTriangleGeometry.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 11), BlockPrimitiveGeometry.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 21), BlockScene.class); // Not yet supported in the specification.
-        blockParserClassesMap.put(getClassID(NS_AWD, 22), BlockContainer.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 23), BlockMeshInstance.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 31), BlockSkybox.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 41), BlockLight.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 42), BlockCamera.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 43), BlockTextureProjector.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 51), BlockLightPicker.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 81), BlockSimpleMaterial.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 82), BlockBitmapTexture.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 83), BlockCubeTexture.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 91), BlockSharedMethod.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 92), BlockShadowMethod.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 101), BlockSkeleton.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 102), BlockSkeletonPose.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 103), BlockSkeletonAnimation.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 111), BlockMeshPose.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 112), BlockMeshPoseAnimation.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 113), BlockAnimationSet.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 121), BlockUVAnimation.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 122), BlockAnimator.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 253), BlockCommand.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 254), BlockNamespace.class);
-        blockParserClassesMap.put(getClassID(NS_AWD, 255), BlockMetaData.class);
+        registerBlockParser(NS_AWD, 1, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockTriangleGeometry();
+            }
+        });
+        registerBlockParser(NS_AWD, 11, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockPrimitiveGeometry();
+            }
+        });
+        // Not yet supported in the specification.
+        registerBlockParser(NS_AWD, 21, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockScene();
+            }
+        });
+        registerBlockParser(NS_AWD, 22, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockContainer();
+            }
+        });
+        registerBlockParser(NS_AWD, 23, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockMeshInstance();
+            }
+        });
+        registerBlockParser(NS_AWD, 31, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockSkybox();
+            }
+        });
+        registerBlockParser(NS_AWD, 41, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockLight();
+            }
+        });
+        registerBlockParser(NS_AWD, 42, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockCamera();
+            }
+        });
+        registerBlockParser(NS_AWD, 43, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockTextureProjector();
+            }
+        });
+        registerBlockParser(NS_AWD, 51, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockLightPicker();
+            }
+        });
+        registerBlockParser(NS_AWD, 81, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockSimpleMaterial();
+            }
+        });
+        registerBlockParser(NS_AWD, 82, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockBitmapTexture();
+            }
+        });
+        registerBlockParser(NS_AWD, 83, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockCubeTexture();
+            }
+        });
+        registerBlockParser(NS_AWD, 91, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockSharedMethod();
+            }
+        });
+        registerBlockParser(NS_AWD, 92, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockShadowMethod();
+            }
+        });
+        registerBlockParser(NS_AWD, 101, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockSkeleton();
+            }
+        });
+        registerBlockParser(NS_AWD, 102, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockSkeletonPose();
+            }
+        });
+        registerBlockParser(NS_AWD, 103, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockSkeletonAnimation();
+            }
+        });
+        registerBlockParser(NS_AWD, 111, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockMeshPose();
+            }
+        });
+        registerBlockParser(NS_AWD, 112, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockMeshPoseAnimation();
+            }
+        });
+        registerBlockParser(NS_AWD, 113, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockAnimationSet();
+            }
+        });
+        registerBlockParser(NS_AWD, 121, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockUVAnimation();
+            }
+        });
+        registerBlockParser(NS_AWD, 122, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockAnimator();
+            }
+        });
+        registerBlockParser(NS_AWD, 253, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockCommand();
+            }
+        });
+        registerBlockParser(NS_AWD, 254, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockNamespace();
+            }
+        });
+        registerBlockParser(NS_AWD, 255, new BlockParserFactory() {
+            @Override
+            public ABlockParser createBlockParser() {
+                return new BlockMetaData();
+            }
+        });
+    }
+
+    /**
+     * Register the factory creating the parsers for a block type, replacing any factory registered
+     * for it before.
+     *
+     * @param namespace
+     * @param type
+     * @param factory
+     */
+    protected void registerBlockParser(int namespace, int type, BlockParserFactory factory) {
+        blockParserFactories.put(getClassID(namespace, type), factory);
+    }
+
+    /**
+     * Set the number of threads blocks are parsed on. With more than one thread, geometry and
+     * skeleton pose blocks, which are large and refer to no other blocks, are read into memory
+     * and decoded concurrently while the blocks following them are read. Every other block is
+     * parsed in file order once all blocks before it are complete, so the blocks it refers to
+     * are always available and the parsed objects are the same either way.
+     *
+     * @param threads Number of threads, 1 to parse every block in order while reading. The default.
+     * @return
+     */
+    public LoaderAWD setParallelism(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is needed.");
+        mParallelism = threads;
+        return this;
+    }
+
+    @Override
+    protected String getParseOptions() {
+        return "threads=" + mParallelism + " container=" + mAlwaysUseContainer;
+    }
+
+    /**
+     * Determine if a block refers to no other blocks and can therefore be decoded concurrently
+     * with the blocks around it.
+     *
+     * @param blockHeader
+     * @return
+     */
+    protected boolean isSelfContained(BlockHeader blockHeader) {
+        return blockHeader.namespace == NS_AWD && (blockHeader.type == 1 || blockHeader.type == 102);
     }
 
     @Override
@@ -163,11 +351,16 @@ public class LoaderAWD extends AMeshLoader {
 
         onRegisterBlockClasses(blockParserClassesMap);
 
-        long startTime = SystemClock.elapsedRealtime();
+        // The file is parsed again to restore dropped geometry
+        baseObjects.clear();
+        blockDataList.clear();
+        blockParsers.clear();
+
+        final long startTime = RajLog.isDebugEnabled() ? SystemClock.elapsedRealtime() : 0;
 
         // Open the file or resource for reading
         // TODO Compare parsing speeds at different buffer sizes.
-        final AWDLittleEndianDataInputStream dis;
+        AWDLittleEndianDataInputStream dis;
         try {
             dis = getLittleEndianInputStream(8192);
         } catch (Exception e) {
@@ -219,12 +412,14 @@ public class LoaderAWD extends AMeshLoader {
                 throw new ParsingException(
                         "AWD Body length not provided which indicates model is streaming or corrupt.");
 
-            // Compression is not supported as this is unnecessary overhead given the limited resources on mobile
-            if (getCompression() != Compression.NONE)
-                throw new ParsingException("Compression is not currently supported. Document compressed as: "
-                        + getCompression());
+            // A compressed body is decompressed as it is read, positions then count decompressed bytes
+            final boolean compressed = getCompression() != Compression.NONE;
+            if (compressed)
+                dis = dis.decompress(getCompression());
 
             // Read file blocks
+            final ExecutorService executor = mParallelism > 1 ? Executors.newFixedThreadPool(mParallelism) : null;
+            final List<Future<Void>> pendingBlocks = new ArrayList<Future<Void>>();
             try {
                 do {
                     // Read header data
@@ -240,7 +435,8 @@ public class LoaderAWD extends AMeshLoader {
                     blockHeader.globalPrecisionGeo = (blockHeader.flags & BlockHeader.FLAG_ACCURACY_GEO) == BlockHeader.FLAG_ACCURACY_GEO;
                     blockHeader.globalPrecisionMatrix = (blockHeader.flags & BlockHeader.FLAG_ACCURACY_MATRIX) == BlockHeader.FLAG_ACCURACY_MATRIX;
                     blockHeader.globalPrecisionProps = (blockHeader.flags & BlockHeader.FLAG_ACCURACY_PROPS) == BlockHeader.FLAG_ACCURACY_PROPS;
-                    blockHeader.blockEnd = dis.getPosition() + blockHeader.dataLength;
+                    blockHeader.dataStart = dis.getPosition();
+                    blockHeader.blockEnd = blockHeader.dataStart + blockHeader.dataLength;
 
                     // Flag the input stream with the correct property precision flag
                     dis.setPropertyPrecision(blockHeader.globalPrecisionProps);
@@ -254,23 +450,16 @@ public class LoaderAWD extends AMeshLoader {
                     if (RajLog.isDebugEnabled())
                         RajLog.d(blockHeader.toString());
 
-                    // Look for the Block Parser class.
-                    final Class<? extends ABlockParser> blockClass = blockParserClassesMap
-                            .get(getClassID(
-                                    blockHeader.namespace, blockHeader.type));
+                    final ABlockParser parser = createBlockParser(blockHeader);
 
                     // Skip unknown blocks
-                    if (blockClass == null) {
+                    if (parser == null) {
                         if (RajLog.isDebugEnabled())
                             RajLog.d(" Skipping unknown block " + blockHeader.namespace + " " + blockHeader.type);
                         dis.skip(blockHeader.dataLength);
                         continue;
                     }
 
-                    // Instantiate the block parser
-                    final ABlockParser parser = (ABlockParser) Class.forName(blockClass.getName()).getConstructor()
-                            .newInstance();
-
                     if (blockHeader.id != 0)
                         blockHeader.parser = parser;
 
@@ -282,59 +471,136 @@ public class LoaderAWD extends AMeshLoader {
                         RajLog.d(" Starting at position: " + dis.getPosition());
                     }
 
-                    // Begin parsing
-                    try {
-                        parser.parseBlock(dis, blockHeader);
-                    } catch (NotImplementedParsingException e) {
-                        if (RajLog.isDebugEnabled())
-                            RajLog.d(" Skipping block as not implemented.");
-                        dis.skip(blockHeader.blockEnd - dis.getPosition());
+                    if (executor != null && isSelfContained(blockHeader)) {
+                        // Read the block now and decode it while the following blocks are read
+                        final byte[] data = new byte[(int) blockHeader.dataLength];
+                        dis.readFully(data);
+                        pendingBlocks.add(executor.submit(new BlockTask(parser, blockHeader, data)));
+                        continue;
                     }
 
+                    // Blocks may refer to any block before them, which have to be complete by now
+                    awaitBlocks(pendingBlocks);
+
+                    // Begin parsing
+                    parseBlock(parser, dis, blockHeader);
+
                     // Validate block end
                     if (blockHeader.blockEnd != dis.getPosition())
                         throw new ParsingException("Block did not end in the correct location. Expected : "
                                 + blockHeader.blockEnd
                                 + " Ended : " + dis.getPosition());
 
-                } while (dis.getPosition() < endOfFile);
+                } while (compressed ? dis.hasMoreData() : dis.getPosition() < endOfFile);
+
+                awaitBlocks(pendingBlocks);
 
                 // End of blocks reached
                 if (RajLog.isDebugEnabled())
                     RajLog.d("End of blocks reached.");
             } catch (IOException e) {
                 throw new ParsingException("Buffer overrun; unexpected end of file.", e);
+            } finally {
+                if (executor != null)
+                    executor.shutdownNow();
             }
 
         } catch (Exception e) {
             e.printStackTrace();
             throw new ParsingException("Unexpected error. File is not in a supported AWD format.", e);
+        } finally {
+            try {
+                dis.close();
+            } catch (IOException e) {
+                RajLog.e("Unable to close the AWD file: " + e.getMessage());
+            }
         }
 
         onBlockParsingFinished(blockParsers);
 
-        RajLog.d("Finished Parsing in " + (SystemClock.elapsedRealtime() - startTime));
+        // The processing steps of postProcess() run on the root object
+        if (!mAlwaysUseContainer && baseObjects.size() == 1) {
+            mRootObject = baseObjects.get(0);
+        } else {
+            mRootObject.isContainer(true);
+            for (int i = 0, j = baseObjects.size(); i < j; i++)
+                mRootObject.addChild(baseObjects.get(i));
+        }
+
+        if (RajLog.isDebugEnabled())
+            RajLog.d("Finished Parsing in " + (SystemClock.elapsedRealtime() - startTime));
 
         return this;
     }
 
     /**
-     * Get the parsed object or objects. This is returns each model independent of a scene
-     * regardless of if a scene exists or not.
+     * Create the parser for a block, null for unknown blocks. Classes registered through
+     * {@link #onRegisterBlockClasses(SparseArray)} take precedence over the registered factories.
      *
+     * @param blockHeader
      * @return
+     * @throws Exception
      */
-    @Override
-    public Object3D getParsedObject() {
-        // If only one object
-        if (!mAlwaysUseContainer && baseObjects.size() == 1)
-            return baseObjects.get(0);
+    protected ABlockParser createBlockParser(BlockHeader blockHeader) throws Exception {
+        final int classID = getClassID(blockHeader.namespace, blockHeader.type);
+        final Class<? extends ABlockParser> blockClass = blockParserClassesMap.get(classID);
+        if (blockClass != null)
+            return blockClass.getConstructor().newInstance();
+
+        final BlockParserFactory factory = blockParserFactories.get(classID);
+        return factory == null ? null : factory.createBlockParser();
+    }
+
+    private static void parseBlock(ABlockParser parser, AWDLittleEndianDataInputStream dis, BlockHeader blockHeader)
+            throws Exception {
+        try {
+            parser.parseBlock(dis, blockHeader);
+        } catch (NotImplementedParsingException e) {
+            if (RajLog.isDebugEnabled())
+                RajLog.d(" Skipping block as not implemented.");
+            dis.skip(blockHeader.blockEnd - dis.getPosition());
+        }
+    }
+
+    private static void awaitBlocks(List<Future<Void>> pendingBlocks) throws Exception {
+        try {
+            for (int i = 0, j = pendingBlocks.size(); i < j; i++)
+                pendingBlocks.get(i).get();
+        } catch (ExecutionException e) {
+            throw new ParsingException("Block parsing failed.", e.getCause());
+        } finally {
+            pendingBlocks.clear();
+        }
+    }
+
+    /**
+     * Decodes a block read into memory. Positions continue from the start of the block in the
+     * file, so blocks read the same either way.
+     */
+    private static final class BlockTask implements Callable<Void> {
+
+        private final ABlockParser parser;
+        private final BlockHeader blockHeader;
+        private final byte[] data;
 
-        mRootObject.isContainer(true);
-        for (int i = 0, j = baseObjects.size(); i < j; i++)
-            mRootObject.addChild(baseObjects.get(i));
+        BlockTask(ABlockParser parser, BlockHeader blockHeader, byte[] data) {
+            this.parser = parser;
+            this.blockHeader = blockHeader;
+            this.data = data;
+        }
 
-        return mRootObject;
+        @Override
+        public Void call() throws Exception {
+            final AWDLittleEndianDataInputStream dis = new AWDLittleEndianDataInputStream(
+                    new ByteArrayInputStream(data), blockHeader.dataStart);
+            dis.setPropertyPrecision(blockHeader.globalPrecisionProps);
+            parseBlock(parser, dis, blockHeader);
+            if (blockHeader.blockEnd != dis.getPosition())
+                throw new ParsingException("Block did not end in the correct location. Expected : "
+                        + blockHeader.blockEnd
+                        + " Ended : " + dis.getPosition());
+            return null;
+        }
     }
 
     @Override
@@ -391,7 +657,8 @@ public class LoaderAWD extends AMeshLoader {
     /**
      * Determine if {@link #getParsedObject()} will force the model to use a container. When more
      * than one model is in an AWD file, the models will be wrapped in a container, this flag can
-     * force single containers to be wrapped in a container as well.
+     * force single containers to be wrapped in a container as well. Has to be set before
+     * {@link #parse()}.
      *
      * @param flag
      */
@@ -412,13 +679,22 @@ public class LoaderAWD extends AMeshLoader {
     }
 
     /**
-     * If necessary, register additional {@link ABlockParser} classes here.
+     * If necessary, register additional {@link ABlockParser} classes here. These are created
+     * through reflection, {@link #registerBlockParser(int, int, BlockParserFactory)} avoids that.
      *
      * @param blockParserClassesMap
      */
     protected void onRegisterBlockClasses(SparseArray<Class<? extends ABlockParser>> blockParserClassesMap) {
     }
 
+    /**
+     * Creates a new parser for each block of the type it is registered for.
+     */
+    public interface BlockParserFactory {
+
+        ABlockParser createBlockParser();
+    }
+
     /**
      * Interface implemented by {@link ABlockParser}. This interface should not be implemented
      * directly, instead extend {@link ABlockParser}.
@@ -451,6 +727,7 @@ public class LoaderAWD extends AMeshLoader {
         public int type;
         public int flags;
         public long dataLength;
+        public long dataStart;
         public long blockEnd;
 
         public boolean globalPrecisionGeo;
@@ -518,11 +795,66 @@ public class LoaderAWD extends AMeshLoader {
 
         private final Vector3 mTempVector3;
         private final Quaternion mTempQuaternion;
+        private final PushbackInputStream mBody;
 
         public AWDLittleEndianDataInputStream(InputStream in) {
+            this(in, null);
+        }
+
+        AWDLittleEndianDataInputStream(InputStream in, long position) {
+            this(in, null);
+            mPosition = position;
+        }
+
+        private AWDLittleEndianDataInputStream(InputStream in, PushbackInputStream body) {
             super(in);
             mTempVector3 = new Vector3();
             mTempQuaternion = new Quaternion();
+            mBody = body;
+        }
+
+        /**
+         * Get a stream reading the remaining data, a body compressed as a whole, through the given
+         * decompression. Data is decompressed as it is read and positions count decompressed bytes
+         * from the start of the body.
+         *
+         * @param compression
+         * @return
+         * @throws IOException
+         */
+        AWDLittleEndianDataInputStream decompress(Compression compression) throws IOException {
+            final InputStream decompressed;
+            switch (compression) {
+                case ZLIB:
+                    decompressed = new InflaterInputStream(in);
+                    break;
+                case LZMA:
+                    decompressed = new LzmaInputStream(in);
+                    break;
+                default:
+                    return this;
+            }
+            // Values are read a few bytes at a time, which should not reach the decompressor each time
+            final PushbackInputStream body = new PushbackInputStream(new BufferedInputStream(decompressed, 8192));
+            return new AWDLittleEndianDataInputStream(body, body);
+        }
+
+        /**
+         * Determine if a decompressed body has data left by reading ahead one byte.
+         *
+         * @return
+         * @throws IOException
+         */
+        boolean hasMoreData() throws IOException {
+            if (mBody == null)
+                throw new IllegalStateException("Only decompressed bodies can be read ahead.");
+
+            final int next = mBody.read();
+            if (next < 0)
+                return false;
+
+            mBody.unread(next);
+            return true;
         }
 
         public void setPropertyPrecision(boolean flag) {
@@ -17,6 +17,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Stack;
@@ -25,12 +26,11 @@ import org.rajawali3d.Object3D;
 import org.rajawali3d.materials.textures.TextureManager;
 import org.rajawali3d.math.vector.Vector3;
 import org.rajawali3d.loader.LoaderSTL.StlParseException;
-import org.rajawali3d.primitives.Line3D;
 import org.rajawali3d.renderer.Renderer;
+import org.rajawali3d.util.AsciiNumberParser;
 import org.rajawali3d.util.RajLog;
 import android.content.res.Resources;
 import android.content.res.Resources.NotFoundException;
-import android.graphics.Color;
 import android.util.Log;
 
 /**
@@ -450,6 +450,39 @@ public class LoaderGCode extends AMeshLoader {
 	 */
 	private HashMap<String, String> metaData;
 
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final float MILLIMETERS_PER_INCH = 25.4F;
+
+	private static final int X = 0;
+	private static final int Y = 1;
+	private static final int Z = 2;
+	private static final int E = 3;
+	private static final int AXIS_X = 1 << X;
+	private static final int AXIS_Y = 1 << Y;
+	private static final int AXIS_Z = 1 << Z;
+	private static final int AXIS_E = 1 << E;
+	/**
+	 * Flag of an axis given without a value, shifted by the axis.
+	 */
+	private static final int HOMED_AXIS = 1 << 4;
+
+	private GCodeToolpath.OnLayerListener mOnLayerListener;
+	private boolean mReadMetaData;
+
+	// Machine state while reading, positions are in millimeters
+	private GCodeToolpath mToolpath;
+	private final float[] mWords = new float[4];
+	private float mX, mY, mZ, mE;
+	private float mUnits;
+	private boolean mRelative;
+	private boolean mRelativeExtrusion;
+	private boolean mHasLayer;
+	private float mLayerZ;
+	/**
+	 * Toolpath vertex at the current position, or -1 if the last move was not drawn.
+	 */
+	private int mVertex;
+
 	public LoaderGCode(String filename) {
 		super(filename);
 		init();
@@ -517,46 +550,61 @@ public class LoaderGCode extends AMeshLoader {
 	@Override
 	public AMeshLoader parse() throws ParsingException {
 		super.parse();
+		BufferedInputStream buffer = null;
 		try {
 			// Open the file
-			BufferedInputStream buffer = null;
 			buffer = getBufferedInputStream();
 			GCodeFlavor type = tasteFlavor(buffer);
 			switch (type) {
 			case SLIC3R:
-				metaData = readSlic3rComments(buffer);
-				mRootObject = readGCode(buffer);
+				// Slic3r writes its settings as comments, they are collected while reading
+				metaData = new HashMap<String, String>();
+				mReadMetaData = true;
 				break;
 			case SKEINFORGE:
 				metaData = readSkeinforgeComments(buffer);
-				mRootObject = readGCode(buffer);
+				mReadMetaData = false;
+				break;
 			case UNKNOWN:
 			default:
-				mRootObject = readGCode(buffer);
+				mReadMetaData = false;
 				break;
 			}
-			// Cleanup
-			if (buffer != null) {
-				buffer.close();
-			}
+			mRootObject = readGCode(buffer);
 		} catch (FileNotFoundException e) {
 			RajLog.e(new StringBuilder().append("[").append(getClass().getCanonicalName())
 					.append("] Could not find file.").toString());
 			throw new ParsingException("File not found.", e);
-		} catch (NumberFormatException e) {
-			RajLog.e(Log.getStackTraceString(e));
-			throw new ParsingException("Unexpected value.", e);
 		} catch (IOException e) {
 			RajLog.e(Log.getStackTraceString(e));
 			throw new ParsingException("File reading failed.", e);
 		} catch (Exception e) {
 			RajLog.e(Log.getStackTraceString(e));
 			throw new ParsingException("Unexpected exception occured.", e);
+		} finally {
+			// Cleanup
+			if (buffer != null) {
+				try {
+					buffer.close();
+				} catch (IOException e) {
+					RajLog.e("Could not close the G-code file.");
+				}
+			}
 		}
 
 		return this;
 	}
 
+	/**
+	 * Sets the listener the {@link GCodeToolpath} created by the next {@link #parse()} notifies of every layer it
+	 * publishes, so a print can be shown while the rest of the file is still being read.
+	 *
+	 * @param listener
+	 */
+	public void setOnLayerListener(GCodeToolpath.OnLayerListener listener) {
+		mOnLayerListener = listener;
+	}
+
 	/**
 	 * Open a BufferedReader for the current resource or file with a buffer size of 8192 bytes.
 	 *
@@ -568,42 +616,6 @@ public class LoaderGCode extends AMeshLoader {
 		return super.getBufferedInputStream(512);
 	}
 
-	/**
-	 * @param buffer
-	 * @return
-	 * @throws IOException
-	 */
-	protected HashMap<String, String> readSlic3rComments(BufferedInputStream buffer) throws IOException {
-		buffer.mark(4096);
-		HashMap<String, String> ret = new HashMap<String, String>();
-		String line;
-		StringBuilder lnBuilder = new StringBuilder(1024);
-		int i = 0;
-		while (buffer.available() > 0 && i < 4096) {
-			byte b = (byte) buffer.read();
-			i++;
-			if (b != '\n') {
-				lnBuilder.append((char) b);
-				continue;
-			} else {
-				line = lnBuilder.toString();
-				lnBuilder.delete(0, (lnBuilder.length() > 0 ? lnBuilder.length() - 1 : 0));
-			}
-			if (!line.startsWith(";")) {
-				break;
-			}
-			String[] parts = line.split("=");
-			if (parts.length < 2) {
-				continue;
-			}
-			String key = parts[0].trim();
-			String value = parts[1].trim();
-			ret.put(key, value);
-		}
-		buffer.reset();
-		return ret;
-	}
-
 	/**
 	 * @param buffer
 	 * @return
@@ -614,137 +626,278 @@ public class LoaderGCode extends AMeshLoader {
 	}
 
 	/**
+	 * Streams the file through one read buffer, line by line, without creating objects per line or per move. The
+	 * extruded segments are appended to a single {@link GCodeToolpath} which publishes every completed layer.
+	 *
 	 * @param buffer
 	 * @return
 	 * @throws IOException
 	 */
-	protected Object3D readGCode(BufferedInputStream buffer) throws IOException {
-		RajLog.i("GCodePaser: reading file");
-		Object3D ret = new Object3D();
-		String codeLine;
-		// Read the facet
-		SupportedCommands cmd = null;
-		GCodeLine motion = null, prevMotion = null;
-		GCodeLayer currentLayer = new GCodeLayer();
-		float lastZPos = 0, lastExtrudeZ = 0, x, y;
-		@SuppressWarnings("unused")
-		float units = 1F; // default for millis
-		boolean relative = false;
-		prevMotion = new GCodeLine();
-		prevMotion.setX(0.0f);
-		prevMotion.setY(0.0f);
-		prevMotion.setZ(0.0f);
-		prevMotion.setE(0.0f);
-		prevMotion.setF(0.0f);
-		StringBuilder lnBuilder = new StringBuilder(1024);
-		int lineNum = 0;
-		while (buffer.available() > 0) {
-			byte b = (byte) buffer.read();
-			if (b != '\n') {
-				lnBuilder.append((char) b);
-				continue;
-			} else {
-				codeLine = lnBuilder.toString();
-				lnBuilder.delete(0, lnBuilder.length());
+	protected GCodeToolpath readGCode(BufferedInputStream buffer) throws IOException {
+		if (RajLog.isDebugEnabled())
+			RajLog.d("GCodeParser: reading file");
+		final GCodeToolpath toolpath = new GCodeToolpath();
+		toolpath.setOnLayerListener(mOnLayerListener);
+		mToolpath = toolpath;
+		mX = mY = mZ = mE = 0;
+		mUnits = 1F; // default for millis
+		mRelative = mRelativeExtrusion = false;
+		mVertex = -1;
+		mHasLayer = false;
+
+		byte[] data = new byte[READ_BUFFER_SIZE];
+		int count = 0;
+		int scanned = 0;
+		int read;
+		while ((read = buffer.read(data, count, data.length - count)) >= 0) {
+			count += read;
+			int lineStart = 0;
+			for (int i = scanned; i < count; ++i) {
+				if (data[i] == '\n') {
+					readLine(data, lineStart, i);
+					lineStart = i + 1;
+				}
 			}
-			// while ((codeline = buffer.readLine()) != null) {
-			if (codeLine.startsWith(";")) {
-				continue;
+			// Keep the incomplete last line for the next read
+			count -= lineStart;
+			System.arraycopy(data, lineStart, data, 0, count);
+			scanned = count;
+			if (count == data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
 			}
-			String[] tokens = codeLine.split(" ");
-			if (null == tokens || tokens.length == 0) {
-				continue;
+		}
+		if (count > 0) {
+			readLine(data, 0, count);
+		}
+		toolpath.finish();
+		mToolpath = null;
+		return toolpath;
+	}
+
+	private void readLine(byte[] data, int start, int end) {
+		int i = skipWhitespace(data, start, end);
+		if (i == end) {
+			return;
+		}
+		if (data[i] == ';') {
+			if (mReadMetaData) {
+				readMetaData(data, i + 1, end);
 			}
-			try {
-				cmd = SupportedCommands.fromString(tokens[0]);
-			} catch (IllegalArgumentException e) {
-				RajLog.w("encountered unsupported gcode:" + tokens[0]);
-				continue;
+			return;
+		}
+		int letter = data[i] & ~0x20;
+		if (letter == 'N') {
+			// Line number
+			i = skipWhitespace(data, scanNumber(data, i + 1, end), end);
+			if (i == end) {
+				return;
 			}
-			switch (cmd) {
-			case G1:
-				motion = new GCodeLine(codeLine);
-				motion.setOrigin(prevMotion);
-				// TODO color lines based on travel and speed
-				if (motion.getX() == 0xFFFFFFFF && motion.getY() == 0xFFFFFFFF && motion.getZ() == 0xFFFFFFFF) {
-					// extrusion or speed setting
-					continue;
-				}
-				x = motion.getX() == 0xFFFFFFFF ? 0 : motion.getX();
-				y = motion.getY() == 0xFFFFFFFF ? 0 : motion.getY();
-				if (motion.getZ() != 0xFFFFFFFF) {
-					lastZPos = motion.getZ();
-					if (x == 0 && y == 0) {
-						continue;
-					}
-				}
-				currentLayer.getPoints().add(new Vector3(x, y, lastZPos));
-				if (motion.getE() != 0xFFFFFFFF) {
-					float delta;
-					if (relative) {
-						delta = motion.getE() - prevMotion.getE();
-					} else {
-						delta = motion.getE();
-						if (delta == 0xFFFFFFFF) {
-							delta = 0;
-						}
-					}
-					if (delta > 0) {
-						// current motion is extruding
-						// check if extruding at new Z
-						if (lastZPos > lastExtrudeZ) { // || layers.empty()
-							lastExtrudeZ = lastZPos;
-							ret.addChild(new Line3D(currentLayer.getPoints(), 1f, Color.argb(255, 0x55, 0x11, 0xEF)));
-							currentLayer = new GCodeLayer();
-						}
-					}
+			letter = data[i] & ~0x20;
+		}
+		if (letter != 'G' && letter != 'M') {
+			return;
+		}
+		final int codeEnd = scanNumber(data, i + 1, end);
+		final int code;
+		try {
+			code = AsciiNumberParser.parseInt(data, i + 1, codeEnd);
+		} catch (NumberFormatException e) {
+			return;
+		}
+
+		if (letter == 'M') {
+			if (code == 82) {
+				// M82: Set extruder to absolute mode
+				mRelativeExtrusion = false;
+			} else if (code == 83) {
+				// M83: Set extruder to relative mode
+				mRelativeExtrusion = true;
+			}
+			return;
+		}
+		switch (code) {
+		case 0:
+		case 1:
+			// G0/G1: Move
+			// Example: G1 X99.9948 Y80.0611 Z15.0 F1500.0 E981.64869
+			move(readWords(data, codeEnd, end));
+			break;
+		case 20:
+			// G20: Set Units to Inches
+			mUnits = MILLIMETERS_PER_INCH;
+			break;
+		case 21:
+			// G21: Set Units to Millimeters
+			mUnits = 1F;
+			break;
+		case 28:
+			// G28: Move to Origin (Home)
+			// Example: G28 X Z
+			final int axes = readWords(data, codeEnd, end) & ~(AXIS_E | HOMED_AXIS << E);
+			if (axes == 0 || (axes & (AXIS_X | HOMED_AXIS << X)) != 0) {
+				mX = 0;
+			}
+			if (axes == 0 || (axes & (AXIS_Y | HOMED_AXIS << Y)) != 0) {
+				mY = 0;
+			}
+			if (axes == 0 || (axes & (AXIS_Z | HOMED_AXIS << Z)) != 0) {
+				mZ = 0;
+			}
+			mVertex = -1;
+			break;
+		case 90:
+			// G90: Set to Absolute Positioning
+			mRelative = mRelativeExtrusion = false;
+			break;
+		case 91:
+			// G91: Set to Relative Positioning
+			mRelative = mRelativeExtrusion = true;
+			break;
+		case 92:
+			// G92: Set Position
+			// Example: G92 E0
+			final int words = readWords(data, codeEnd, end);
+			if ((words & AXIS_X) != 0) {
+				mX = mWords[X] * mUnits;
+			}
+			if ((words & AXIS_Y) != 0) {
+				mY = mWords[Y] * mUnits;
+			}
+			if ((words & AXIS_Z) != 0) {
+				mZ = mWords[Z] * mUnits;
+			}
+			if ((words & AXIS_E) != 0) {
+				mE = mWords[E] * mUnits;
+			}
+			if ((words & (AXIS_X | AXIS_Y | AXIS_Z)) != 0) {
+				mVertex = -1;
+			}
+			break;
+		default:
+			// Unsupported commands do not change the toolpath
+			break;
+		}
+	}
+
+	private void move(int words) {
+		final float x = (words & AXIS_X) == 0 ? mX : (mRelative ? mX : 0) + mWords[X] * mUnits;
+		final float y = (words & AXIS_Y) == 0 ? mY : (mRelative ? mY : 0) + mWords[Y] * mUnits;
+		final float z = (words & AXIS_Z) == 0 ? mZ : (mRelative ? mZ : 0) + mWords[Z] * mUnits;
+		boolean extruding = false;
+		if ((words & AXIS_E) != 0) {
+			final float e = mWords[E] * mUnits;
+			extruding = mRelativeExtrusion ? e > 0 : e > mE;
+			mE = mRelativeExtrusion ? mE + e : e;
+		}
+		if (x == mX && y == mY && z == mZ) {
+			// Retraction or speed setting
+			return;
+		}
+		if (extruding) {
+			// A new layer starts with the first extrusion at a greater height
+			if (!mHasLayer || z > mLayerZ) {
+				mToolpath.beginLayer(z);
+				mLayerZ = z;
+				mHasLayer = true;
+			}
+			if (mVertex < 0) {
+				mVertex = mToolpath.addVertex(mX, mY, mZ);
+			}
+			final int next = mToolpath.addVertex(x, y, z);
+			mToolpath.addSegment(mVertex, next);
+			mVertex = next;
+		} else {
+			// Travel moves are not drawn
+			mVertex = -1;
+		}
+		mX = x;
+		mY = y;
+		mZ = z;
+	}
+
+	/**
+	 * Reads the X, Y, Z and E words of a line into {@link #mWords}. Axes given without a value, as G28 does, are
+	 * flagged separately.
+	 *
+	 * @return The flags of the axes which were given.
+	 */
+	private int readWords(byte[] data, int i, int end) {
+		int words = 0;
+		while (i < end) {
+			final int c = data[i];
+			if (c == ';' || c == '*') {
+				// Comment or checksum
+				break;
+			} else if (c == '(') {
+				while (i < end && data[i] != ')') {
+					++i;
 				}
-				prevMotion = motion;
+				++i;
+				continue;
+			} else if ((c & 0xff) <= ' ') {
+				++i;
+				continue;
+			}
+			final int axis;
+			switch (c & ~0x20) {
+			case 'X':
+				axis = X;
 				break;
-			case G21:
-				// G21: Set Units to Millimeters
-				// Example: G21
-				units = 1F;
+			case 'Y':
+				axis = Y;
 				break;
-			case G90:
-				// G90: Set to Absolute Positioning
-				// Example: G90
-				relative = false;
+			case 'Z':
+				axis = Z;
 				break;
-			case G91:
-				// G91: Set to Relative Positioning
-				// Example: G91
-				relative = true;
+			case 'E':
+				axis = E;
 				break;
-			case G92:
-				// G92: Set Position
-				// Example: G92 E0
-				motion = new GCodeLine(codeLine);
-				if (motion.getX() != -0xFFFFFFFF) {
-					prevMotion.setX(motion.getX());
-				}
-				if (motion.getY() != -0xFFFFFFFF) {
-					prevMotion.setY(motion.getY());
-				}
-				if (motion.getZ() != -0xFFFFFFFF) {
-					prevMotion.setZ(motion.getZ());
-				}
-				if (motion.getE() != -0xFFFFFFFF) {
-					prevMotion.setE(motion.getE());
+			default:
+				axis = -1;
+			}
+			final int valueEnd = scanNumber(data, i + 1, end);
+			if (axis >= 0 && valueEnd == i + 1) {
+				words |= HOMED_AXIS << axis;
+			} else if (axis >= 0) {
+				try {
+					mWords[axis] = AsciiNumberParser.parseFloat(data, i + 1, valueEnd);
+					words |= 1 << axis;
+				} catch (NumberFormatException e) {
+					RajLog.w("Ignoring the malformed G-code word " + new String(data, i, valueEnd - i));
 				}
-				break;
-			case M82:
-				// no-op, so long as M83 is not supported.
-				break;
-			case M84:
-				// M84: Stop idle hold
-				// Example: M84
-				// no-op
-				break;
 			}
-			// RajLog.d("gcode parser parsed line #" + lineNum++);
+			i = valueEnd;
 		}
-		return ret;
+		return words;
+	}
+
+	private void readMetaData(byte[] data, int start, int end) {
+		int separator = start;
+		while (separator < end && data[separator] != '=') {
+			++separator;
+		}
+		if (separator == end) {
+			return;
+		}
+		final String key = new String(data, start, separator - start).trim();
+		final String value = new String(data, separator + 1, end - separator - 1).trim();
+		if (key.length() > 0) {
+			metaData.put(key, value);
+		}
+	}
+
+	private static int scanNumber(byte[] data, int i, int end) {
+		while (i < end && ((data[i] >= '0' && data[i] <= '9') || data[i] == '.' || data[i] == '-' || data[i] == '+')) {
+			++i;
+		}
+		return i;
+	}
+
+	private static int skipWhitespace(byte[] data, int i, int end) {
+		while (i < end && (data[i] & 0xff) <= ' ') {
+			++i;
+		}
+		return i;
 	}
 
 	/**
@@ -0,0 +1,858 @@
+package org.rajawali3d.loader;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Base64;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.animation.mesh.SkeletalAnimationChildObject3D;
+import org.rajawali3d.animation.mesh.SkeletalAnimationFrame.SkeletonJoint;
+import org.rajawali3d.animation.mesh.SkeletalAnimationObject3D;
+import org.rajawali3d.animation.mesh.SkeletalAnimationObject3D.SkeletalAnimationException;
+import org.rajawali3d.bounds.BoundingBox;
+import org.rajawali3d.materials.Material;
+import org.rajawali3d.materials.methods.DiffuseMethod;
+import org.rajawali3d.materials.plugins.SkeletalAnimationMaterialPlugin;
+import org.rajawali3d.materials.textures.ATexture;
+import org.rajawali3d.materials.textures.ATexture.TextureException;
+import org.rajawali3d.materials.textures.NormalMapTexture;
+import org.rajawali3d.materials.textures.Texture;
+import org.rajawali3d.materials.textures.TextureManager;
+import org.rajawali3d.math.Matrix;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+import org.rajawali3d.renderer.Renderer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads glTF 2.0 models, both {@code .gltf} files with their buffers beside them or embedded as data URIs and
+ * binary {@code .glb} files. The node hierarchy with its transforms, the triangle, line and point primitives of the
+ * meshes, skins and the base color and normal textures of the metallic roughness materials are read. Animations,
+ * cameras, lights and morph targets are not.
+ * <p>
+ * Files are memory mapped where possible. Accessors holding tightly packed floats, {@code unsigned short} and
+ * {@code unsigned int} indices, which is what exporters write for static meshes, become views of the mapping handed
+ * to the {@link Geometry3D} as they are. Interleaved, strided and integer attributes and {@code unsigned byte}
+ * indices are converted into a buffer of their own, since a geometry keeps one tightly packed float buffer per
+ * attribute. The mapping is private, so processing the meshes never changes the file.
+ */
+public class LoaderGLTF extends AMeshLoader {
+
+    /**
+     * "glTF" read as a little endian int.
+     */
+    static final int GLB_MAGIC      = 0x46546c67;
+    static final int GLB_CHUNK_JSON = 0x4e4f534a;
+    static final int GLB_CHUNK_BIN  = 0x004e4942;
+
+    static final int BYTE           = 5120;
+    static final int UNSIGNED_BYTE  = 5121;
+    static final int SHORT          = 5122;
+    static final int UNSIGNED_SHORT = 5123;
+    static final int UNSIGNED_INT   = 5125;
+    static final int FLOAT          = 5126;
+
+    private static final String UNLIT = "KHR_materials_unlit";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Map<String, Object> mDocument;
+    private ByteBuffer[]        mBuffers;
+    private ByteBuffer          mBinaryChunk;
+    private int[]               mParents;
+    private Object3D[]          mNodeObjects;
+    private Geometry3D[][]      mGeometries;
+    private Material[]          mMaterials;
+    private ATexture[]          mTextures;
+
+    public LoaderGLTF(Renderer renderer, File file) {
+        super(renderer, file);
+    }
+
+    public LoaderGLTF(Renderer renderer, String fileOnSDCard) {
+        super(renderer, fileOnSDCard);
+    }
+
+    public LoaderGLTF(Renderer renderer, int resourceId) {
+        this(renderer.getContext().getResources(), renderer.getTextureManager(), resourceId);
+    }
+
+    public LoaderGLTF(Resources resources, TextureManager textureManager, int resourceId) {
+        super(resources, textureManager, resourceId);
+    }
+
+    public LoaderGLTF(File file) {
+        super(file);
+    }
+
+    @Override
+    public LoaderGLTF parse() throws ParsingException {
+        super.parse();
+        try {
+            final ByteBuffer data = mFile == null ? readResource(mResourceId) : mapFile(mFile);
+            readDocument(data);
+            buildScene();
+        } catch (IOException e) {
+            throw new ParsingException("Unable to read the glTF model.", e);
+        } catch (ClassCastException | IndexOutOfBoundsException | NullPointerException e) {
+            throw new ParsingException("Invalid glTF model.", e);
+        } finally {
+            mDocument = null;
+            mBuffers = null;
+            mBinaryChunk = null;
+            mParents = null;
+            mNodeObjects = null;
+            mGeometries = null;
+            mMaterials = null;
+            mTextures = null;
+        }
+        return this;
+    }
+
+    /**
+     * Splits a binary file into its JSON and binary chunks or takes the data as JSON, and loads the buffers.
+     */
+    private void readDocument(ByteBuffer data) throws ParsingException, IOException {
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        final String json;
+        if (data.remaining() >= 12 && data.getInt(data.position()) == GLB_MAGIC) {
+            final int start = data.position();
+            final int version = data.getInt(start + 4);
+            if (version != 2) {
+                throw new ParsingException("Unsupported binary glTF version " + version + ".");
+            }
+            final int end = start + Math.min(data.getInt(start + 8), data.remaining());
+            String text = null;
+            int position = start + 12;
+            while (position + 8 <= end) {
+                final int length = data.getInt(position);
+                final int type = data.getInt(position + 4);
+                if (length < 0 || position + 8 + length > end) {
+                    throw new ParsingException("Truncated binary glTF chunk.");
+                }
+                final ByteBuffer chunk = slice(data, position + 8, length);
+                if (type == GLB_CHUNK_JSON && text == null) {
+                    text = decode(chunk);
+                } else if (type == GLB_CHUNK_BIN && mBinaryChunk == null) {
+                    mBinaryChunk = chunk;
+                }
+                position += 8 + ((length + 3) & ~3);
+            }
+            if (text == null) {
+                throw new ParsingException("The binary glTF has no JSON chunk.");
+            }
+            json = text;
+        } else {
+            json = decode(data);
+        }
+
+        final Object document = JsonParser.parse(json);
+        if (!(document instanceof Map)) {
+            throw new ParsingException("The glTF document is not an object.");
+        }
+        mDocument = getMap(document);
+        final String version = (String) getMap(mDocument.get("asset")).get("version");
+        if (version == null || !version.startsWith("2.")) {
+            throw new ParsingException("Unsupported glTF version " + version + ".");
+        }
+        for (Object extension : getList(mDocument, "extensionsRequired")) {
+            if (!UNLIT.equals(extension)) {
+                throw new ParsingException("The model requires the unsupported extension " + extension + ".");
+            }
+        }
+
+        final List<Object> buffers = getList(mDocument, "buffers");
+        mBuffers = new ByteBuffer[buffers.size()];
+        for (int i = 0; i < mBuffers.length; ++i) {
+            final String uri = (String) getMap(buffers.get(i)).get("uri");
+            if (uri == null) {
+                if (i != 0 || mBinaryChunk == null) {
+                    throw new ParsingException("Buffer " + i + " has no data.");
+                }
+                mBuffers[i] = mBinaryChunk;
+            } else if (uri.startsWith("data:")) {
+                mBuffers[i] = toDirect(decodeDataUri(uri));
+            } else {
+                mBuffers[i] = readExternal(uri);
+            }
+            mBuffers[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private void buildScene() throws ParsingException {
+        final List<Object> nodes = getList(mDocument, "nodes");
+        mParents = new int[nodes.size()];
+        Arrays.fill(mParents, -1);
+        for (int i = 0; i < nodes.size(); ++i) {
+            for (Object child : getList(getMap(nodes.get(i)), "children")) {
+                mParents[toInt(child)] = i;
+            }
+        }
+        mNodeObjects = new Object3D[nodes.size()];
+        mGeometries = new Geometry3D[getList(mDocument, "meshes").size()][];
+        mMaterials = new Material[getList(mDocument, "materials").size()];
+        mTextures = new ATexture[getList(mDocument, "textures").size() * 2];
+
+        final List<Object> scenes = getList(mDocument, "scenes");
+        if (scenes.isEmpty()) {
+            for (int i = 0; i < mParents.length; ++i) {
+                if (mParents[i] < 0) {
+                    mRootObject.addChild(buildNode(i));
+                }
+            }
+        } else {
+            final Map<String, Object> scene = getMap(scenes.get(getInt(mDocument, "scene", 0)));
+            for (Object node : getList(scene, "nodes")) {
+                mRootObject.addChild(buildNode(toInt(node)));
+            }
+        }
+        mRootObject.isContainer(true);
+    }
+
+    private Object3D buildNode(int index) throws ParsingException {
+        if (mNodeObjects[index] != null) {
+            throw new ParsingException("Node " + index + " appears twice in the hierarchy.");
+        }
+        final Map<String, Object> node = getMap(getList(mDocument, "nodes").get(index));
+        final int mesh = getInt(node, "mesh", -1);
+        final Object3D object;
+        if (mesh < 0) {
+            object = new Object3D();
+            object.isContainer(true);
+        } else if (node.containsKey("skin")) {
+            object = buildSkinnedMesh(mesh, getInt(node, "skin", 0));
+        } else {
+            final List<Object> primitives = getList(getMap(getList(mDocument, "meshes").get(mesh)), "primitives");
+            if (primitives.size() == 1) {
+                object = buildPrimitive(mesh, 0);
+            } else {
+                object = new Object3D();
+                object.isContainer(true);
+                for (int i = 0; i < primitives.size(); ++i) {
+                    object.addChild(buildPrimitive(mesh, i));
+                }
+            }
+        }
+        mNodeObjects[index] = object;
+        object.setName((String) node.get("name"));
+
+        final List<Object> matrix = getList(node, "matrix");
+        if (matrix.size() == 16) {
+            final double[] values = new double[16];
+            for (int i = 0; i < 16; ++i) {
+                values[i] = toDouble(matrix.get(i));
+            }
+            final Vector3 position = new Vector3();
+            final Quaternion orientation = new Quaternion();
+            final Vector3 scale = new Vector3();
+            decompose(values, position, orientation, scale);
+            object.setPosition(position);
+            object.setOrientation(orientation);
+            object.setScale(scale);
+        } else {
+            final List<Object> translation = getList(node, "translation");
+            if (translation.size() == 3) {
+                object.setPosition(toDouble(translation.get(0)), toDouble(translation.get(1)),
+                                   toDouble(translation.get(2)));
+            }
+            final List<Object> rotation = getList(node, "rotation");
+            if (rotation.size() == 4) {
+                // Orientations turn the other way than glTF rotations, see Matrix4.setAll()
+                object.setOrientation(new Quaternion(toDouble(rotation.get(3)), -toDouble(rotation.get(0)),
+                                                     -toDouble(rotation.get(1)), -toDouble(rotation.get(2))));
+            }
+            final List<Object> scale = getList(node, "scale");
+            if (scale.size() == 3) {
+                object.setScale(toDouble(scale.get(0)), toDouble(scale.get(1)), toDouble(scale.get(2)));
+            }
+        }
+
+        for (Object child : getList(node, "children")) {
+            object.addChild(buildNode(toInt(child)));
+        }
+        return object;
+    }
+
+    /**
+     * Creates an object for a primitive. Meshes used by several nodes share the buffers of their first use.
+     */
+    private Object3D buildPrimitive(int mesh, int index) throws ParsingException {
+        final Map<String, Object> primitive = getPrimitive(mesh, index);
+        final Object3D object = new Object3D();
+        if (mGeometries[mesh] == null) {
+            mGeometries[mesh] = new Geometry3D[getList(getMap(getList(mDocument, "meshes").get(mesh)), "primitives")
+                    .size()];
+        }
+        if (mGeometries[mesh][index] == null) {
+            setPrimitiveData(object, primitive);
+            mGeometries[mesh][index] = object.getGeometry();
+        } else {
+            object.getGeometry().copyFromGeometry3D(mGeometries[mesh][index]);
+            object.isContainer(false);
+        }
+        applyMaterial(object, primitive, getInt(primitive, "material", -1), false);
+        return object;
+    }
+
+    private Map<String, Object> getPrimitive(int mesh, int index) {
+        return getMap(getList(getMap(getList(mDocument, "meshes").get(mesh)), "primitives").get(index));
+    }
+
+    private void setPrimitiveData(Object3D object, Map<String, Object> primitive) throws ParsingException {
+        final Map<String, Object> attributes = getMap(primitive.get("attributes"));
+        if (!attributes.containsKey("POSITION")) {
+            throw new ParsingException("A primitive has no positions.");
+        }
+        final Accessor positions = getAccessor(getInt(attributes, "POSITION", 0));
+        final FloatBuffer vertices = positions.toFloats(3);
+        final FloatBuffer normals = attributes.containsKey("NORMAL")
+                                    ? getAccessor(getInt(attributes, "NORMAL", 0)).toFloats(3) : null;
+        final FloatBuffer textureCoords = attributes.containsKey("TEXCOORD_0")
+                                          ? getAccessor(getInt(attributes, "TEXCOORD_0", 0)).toFloats(2) : null;
+        final Buffer indices = primitive.containsKey("indices")
+                               ? getAccessor(getInt(primitive, "indices", 0)).toIndices()
+                               : LoaderSTL.createSequentialIndices(positions.count);
+        object.setData(vertices, normals, textureCoords, indices, false);
+        if (attributes.containsKey("COLOR_0")) {
+            object.getGeometry().getBufferInfo(Geometry3D.COLOR_BUFFER_KEY).buffer =
+                    getAccessor(getInt(attributes, "COLOR_0", 0)).toFloats(4);
+        }
+        if (positions.min != null && positions.max != null) {
+            // Positions have to state their bounds, which saves a pass over the vertices
+            object.getGeometry().setBoundingBox(new BoundingBox(positions.min, positions.max));
+        }
+        object.setDrawingMode(getInt(primitive, "mode", 4));
+    }
+
+    private Object3D buildSkinnedMesh(int mesh, int skinIndex) throws ParsingException {
+        final Map<String, Object> skin = getMap(getList(mDocument, "skins").get(skinIndex));
+        final List<Object> jointNodes = getList(skin, "joints");
+        final int numJoints = jointNodes.size();
+        final FloatBuffer inverseBindMatrices = skin.containsKey("inverseBindMatrices")
+                                                ? getAccessor(getInt(skin, "inverseBindMatrices", 0)).toFloats(16)
+                                                : null;
+        final SkeletonJoint[] joints = new SkeletonJoint[numJoints];
+        final double[] bindPose = new double[16];
+        for (int i = 0; i < numJoints; ++i) {
+            final int node = toInt(jointNodes.get(i));
+            final SkeletonJoint joint = new SkeletonJoint();
+            joint.setName((String) getMap(getList(mDocument, "nodes").get(node)).get("name"));
+            joint.setIndex(i);
+            int parent = mParents[node];
+            while (parent >= 0 && !jointNodes.contains(Double.valueOf(parent))) {
+                parent = mParents[parent];
+            }
+            joint.setParentIndex(parent < 0 ? -1 : jointNodes.indexOf(Double.valueOf(parent)));
+            final double[] inverse = new double[16];
+            if (inverseBindMatrices == null) {
+                Matrix.setIdentityM(inverse, 0);
+            } else {
+                for (int j = 0; j < 16; ++j) {
+                    inverse[j] = inverseBindMatrices.get(i * 16 + j);
+                }
+            }
+            joint.setMatrix(inverse);
+            Matrix.invertM(bindPose, 0, inverse, 0);
+            decompose(bindPose, joint.getPosition(), joint.getOrientation(), new Vector3());
+            joints[i] = joint;
+        }
+
+        final SkeletalAnimationObject3D skeleton = new SkeletalAnimationObject3D();
+        skeleton.setJointsWithInverseBindPoseMatrices(joints);
+        final List<Object> primitives = getList(getMap(getList(mDocument, "meshes").get(mesh)), "primitives");
+        for (int i = 0; i < primitives.size(); ++i) {
+            final Map<String, Object> primitive = getMap(primitives.get(i));
+            final Map<String, Object> attributes = getMap(primitive.get("attributes"));
+            if (!attributes.containsKey("JOINTS_0") || !attributes.containsKey("WEIGHTS_0")) {
+                throw new ParsingException("A skinned primitive has no joints or weights.");
+            }
+            final SkeletalAnimationChildObject3D child = new SkeletalAnimationChildObject3D();
+            setPrimitiveData(child, primitive);
+            try {
+                child.setMaxBoneWeightsPerVertex(4);
+            } catch (SkeletalAnimationException e) {
+                throw new ParsingException(e);
+            }
+            child.setSkeletonMeshData(child.getGeometry().getNumVertices(),
+                                      getAccessor(getInt(attributes, "JOINTS_0", 0)).toFloats(4),
+                                      getAccessor(getInt(attributes, "WEIGHTS_0", 0)).toFloats(4));
+            child.setSkeleton(skeleton);
+            applyMaterial(child, primitive, getInt(primitive, "material", -1), true);
+            final Material material = child.getMaterial();
+            if (material != null) {
+                material.addPlugin(new SkeletalAnimationMaterialPlugin(numJoints, 4));
+            }
+            skeleton.addChild(child);
+        }
+        return skeleton;
+    }
+
+    private void applyMaterial(Object3D object, Map<String, Object> primitive, int index, boolean skinned)
+            throws ParsingException {
+        if (index >= 0) {
+            final Map<String, Object> definition = getMap(getList(mDocument, "materials").get(index));
+            object.setDoubleSided(Boolean.TRUE.equals(definition.get("doubleSided")));
+            if ("BLEND".equals(definition.get("alphaMode"))) {
+                object.setTransparent(true);
+            }
+        }
+        if (skinned) {
+            // Skinned meshes add a plugin of their own to the material
+            object.setMaterial(createMaterial(index));
+        } else if (index < 0) {
+            object.setMaterial(createMaterial(-1));
+        } else {
+            if (mMaterials[index] == null) {
+                mMaterials[index] = createMaterial(index);
+            }
+            object.setMaterial(mMaterials[index]);
+        }
+    }
+
+    /**
+     * Creates the material with the given index of the file: a color, a base color texture, a normal map and
+     * lighting unless the material is unlit. Override this to create materials of your own.
+     *
+     * @param index Index of the material in the file or -1 for primitives without one.
+     *
+     * @return The {@link Material} for the primitives using the index, null to leave them without one.
+     *
+     * @throws ParsingException If a texture can not be loaded.
+     */
+    @Nullable
+    protected Material createMaterial(int index) throws ParsingException {
+        final Material material = new Material();
+        if (index < 0) {
+            material.enableLighting(true);
+            material.setDiffuseMethod(new DiffuseMethod.Lambert());
+            material.setColor(0xffffffff);
+            return material;
+        }
+        final Map<String, Object> definition = getMap(getList(mDocument, "materials").get(index));
+        if (!getMap(definition.get("extensions")).containsKey(UNLIT)) {
+            material.enableLighting(true);
+            material.setDiffuseMethod(new DiffuseMethod.Lambert());
+        }
+        final Map<String, Object> pbr = getMap(definition.get("pbrMetallicRoughness"));
+        final List<Object> baseColor = getList(pbr, "baseColorFactor");
+        if (baseColor.size() == 4) {
+            material.setColor(new float[]{ (float) toDouble(baseColor.get(0)), (float) toDouble(baseColor.get(1)),
+                                           (float) toDouble(baseColor.get(2)), (float) toDouble(baseColor.get(3)) });
+        } else {
+            material.setColor(0xffffffff);
+        }
+        try {
+            if (pbr.containsKey("baseColorTexture")) {
+                material.addTexture(getTexture(getInt(getMap(pbr.get("baseColorTexture")), "index", 0), false));
+                material.setColorInfluence(0);
+            }
+            if (definition.containsKey("normalTexture")) {
+                material.addTexture(getTexture(getInt(getMap(definition.get("normalTexture")), "index", 0), true));
+            }
+        } catch (TextureException e) {
+            throw new ParsingException(e);
+        }
+        return material;
+    }
+
+    private ATexture getTexture(int index, boolean normalMap) throws ParsingException {
+        final int slot = index * 2 + (normalMap ? 1 : 0);
+        if (mTextures[slot] != null) {
+            return mTextures[slot];
+        }
+        final int source = getInt(getMap(getList(mDocument, "textures").get(index)), "source", -1);
+        if (source < 0) {
+            throw new ParsingException("Texture " + index + " has no image.");
+        }
+        final Map<String, Object> image = getMap(getList(mDocument, "images").get(source));
+        final String uri = (String) image.get("uri");
+        final Bitmap bitmap;
+        if (uri == null) {
+            final ByteBuffer view = getBufferView(getInt(image, "bufferView", 0));
+            final byte[] bytes = new byte[view.remaining()];
+            view.get(bytes);
+            bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+        } else if (uri.startsWith("data:")) {
+            final byte[] bytes = decodeDataUri(uri);
+            bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+        } else {
+            bitmap = findBitmap(uri);
+        }
+        if (bitmap == null) {
+            throw new ParsingException("Unable to load image " + source + ".");
+        }
+        // Texture names end up in the shaders, so they have to be identifiers
+        final String name = (normalMap ? "gltfNormalMap" : "gltfTexture") + index;
+        mTextures[slot] = normalMap ? new NormalMapTexture(name, bitmap) : new Texture(name, bitmap);
+        return mTextures[slot];
+    }
+
+    private ByteBuffer getBufferView(int index) throws ParsingException {
+        final Map<String, Object> view = getMap(getList(mDocument, "bufferViews").get(index));
+        final ByteBuffer buffer = mBuffers[getInt(view, "buffer", 0)];
+        final int offset = getInt(view, "byteOffset", 0);
+        final int length = getInt(view, "byteLength", 0);
+        if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+            throw new ParsingException("Buffer view " + index + " lies outside of its buffer.");
+        }
+        return slice(buffer, offset, length);
+    }
+
+    private Accessor getAccessor(int index) throws ParsingException {
+        final Map<String, Object> accessor = getMap(getList(mDocument, "accessors").get(index));
+        if (accessor.containsKey("sparse")) {
+            throw new ParsingException("Sparse accessors are not supported.");
+        }
+        final int componentType = getInt(accessor, "componentType", 0);
+        final int count = getInt(accessor, "count", 0);
+        final int components = getComponents((String) accessor.get("type"));
+        final boolean normalized = Boolean.TRUE.equals(accessor.get("normalized"));
+        final Vector3 min = toVector(getList(accessor, "min"));
+        final Vector3 max = toVector(getList(accessor, "max"));
+        if (!accessor.containsKey("bufferView")) {
+            // No data means zeros
+            final ByteBuffer zeros = ByteBuffer.allocateDirect(count * components * getComponentSize(componentType));
+            return new Accessor(zeros, 0, 0, componentType, normalized, count, components, min, max);
+        }
+        final int viewIndex = getInt(accessor, "bufferView", 0);
+        final int stride = getInt(getMap(getList(mDocument, "bufferViews").get(viewIndex)), "byteStride", 0);
+        return new Accessor(getBufferView(viewIndex), getInt(accessor, "byteOffset", 0), stride, componentType,
+                            normalized, count, components, min, max);
+    }
+
+    /**
+     * Loads a buffer stored beside the model, from the same directory or from a raw resource of the same name.
+     */
+    private ByteBuffer readExternal(String uri) throws IOException {
+        if (mFile != null) {
+            return mapFile(new File(mFile.getParentFile(), uri));
+        }
+        final String resourcePackage = mResources.getResourcePackageName(mResourceId);
+        final int identifier = mResources.getIdentifier(getFileNameWithoutExtension(uri), "raw", resourcePackage);
+        if (identifier == 0) {
+            throw new FileNotFoundException("No raw resource for the buffer " + uri);
+        }
+        return readResource(identifier);
+    }
+
+    private ByteBuffer readResource(int identifier) throws IOException {
+        final InputStream stream = mResources.openRawResource(identifier);
+        try {
+            return read(Channels.newChannel(stream), stream.available());
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Maps a file privately, so its buffers can be changed in place without touching the file. Files which can not
+     * be opened for writing, which private mappings require, are read into a direct buffer instead.
+     */
+    static ByteBuffer mapFile(File file) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        if (file.canWrite()) {
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                final FileChannel channel = randomAccessFile.getChannel();
+                return channel.map(FileChannel.MapMode.PRIVATE, 0, channel.size());
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+        final FileInputStream stream = new FileInputStream(file);
+        try {
+            return read(stream.getChannel(), (int) stream.getChannel().size());
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static ByteBuffer read(ReadableByteChannel channel, int expectedSize) throws IOException {
+        ByteBuffer data = ByteBuffer.allocateDirect(Math.max(expectedSize, 4096));
+        while (channel.read(data) >= 0) {
+            if (!data.hasRemaining()) {
+                final ByteBuffer larger = ByteBuffer.allocateDirect(data.capacity() * 2);
+                data.flip();
+                larger.put(data);
+                data = larger;
+            }
+        }
+        data.flip();
+        return data;
+    }
+
+    private static ByteBuffer toDirect(byte[] bytes) {
+        final ByteBuffer data = ByteBuffer.allocateDirect(bytes.length);
+        data.put(bytes).flip();
+        return data;
+    }
+
+    private static byte[] decodeDataUri(String uri) throws ParsingException {
+        final int comma = uri.indexOf(',');
+        if (comma < 0 || !uri.substring(0, comma).endsWith(";base64")) {
+            throw new ParsingException("Only base64 data URIs are supported.");
+        }
+        return Base64.decode(uri.substring(comma + 1), Base64.DEFAULT);
+    }
+
+    private static String decode(ByteBuffer data) {
+        final byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        // A byte order mark is allowed but not part of the JSON
+        final int start = bytes.length >= 3 && bytes[0] == (byte) 0xef && bytes[1] == (byte) 0xbb
+                          && bytes[2] == (byte) 0xbf ? 3 : 0;
+        return new String(bytes, start, bytes.length - start, UTF_8);
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, int offset, int length) {
+        final ByteBuffer slice = data.duplicate();
+        slice.limit(offset + length).position(offset);
+        return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Splits a column major transform into translation, orientation and scale. Shears and rotations combined with
+     * non uniform scales can not be expressed by an {@link Object3D} and come out approximated.
+     */
+    static void decompose(double[] matrix, Vector3 position, Quaternion orientation, Vector3 scale) {
+        position.setAll(matrix[12], matrix[13], matrix[14]);
+        double scaleX = Math.sqrt(matrix[0] * matrix[0] + matrix[1] * matrix[1] + matrix[2] * matrix[2]);
+        final double scaleY = Math.sqrt(matrix[4] * matrix[4] + matrix[5] * matrix[5] + matrix[6] * matrix[6]);
+        final double scaleZ = Math.sqrt(matrix[8] * matrix[8] + matrix[9] * matrix[9] + matrix[10] * matrix[10]);
+        final double determinant = matrix[0] * (matrix[5] * matrix[10] - matrix[6] * matrix[9])
+                                   - matrix[4] * (matrix[1] * matrix[10] - matrix[2] * matrix[9])
+                                   + matrix[8] * (matrix[1] * matrix[6] - matrix[2] * matrix[5]);
+        if (determinant < 0) {
+            scaleX = -scaleX;
+        }
+        scale.setAll(scaleX, scaleY, scaleZ);
+        final double[] rotation = new double[16];
+        for (int i = 0; i < 3; ++i) {
+            rotation[i] = scaleX == 0 ? 0 : matrix[i] / scaleX;
+            rotation[4 + i] = scaleY == 0 ? 0 : matrix[4 + i] / scaleY;
+            rotation[8 + i] = scaleZ == 0 ? 0 : matrix[8 + i] / scaleZ;
+        }
+        rotation[15] = 1;
+        orientation.fromMatrix(rotation);
+        orientation.normalize();
+    }
+
+    static int getComponents(String type) throws ParsingException {
+        if ("SCALAR".equals(type)) {
+            return 1;
+        } else if ("VEC2".equals(type)) {
+            return 2;
+        } else if ("VEC3".equals(type)) {
+            return 3;
+        } else if ("VEC4".equals(type) || "MAT2".equals(type)) {
+            return 4;
+        } else if ("MAT3".equals(type)) {
+            return 9;
+        } else if ("MAT4".equals(type)) {
+            return 16;
+        }
+        throw new ParsingException("Unknown accessor type " + type + ".");
+    }
+
+    static int getComponentSize(int componentType) throws ParsingException {
+        switch (componentType) {
+            case BYTE:
+            case UNSIGNED_BYTE:
+                return 1;
+            case SHORT:
+            case UNSIGNED_SHORT:
+                return 2;
+            case UNSIGNED_INT:
+            case FLOAT:
+                return 4;
+            default:
+                throw new ParsingException("Unknown component type " + componentType + ".");
+        }
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getMap(@Nullable Object value) {
+        return value == null ? Collections.<String, Object>emptyMap() : (Map<String, Object>) value;
+    }
+
+    @NonNull
+    @SuppressWarnings("unchecked")
+    private static List<Object> getList(Map<String, Object> object, String name) {
+        final Object value = object.get(name);
+        return value == null ? Collections.emptyList() : (List<Object>) value;
+    }
+
+    private static int getInt(Map<String, Object> object, String name, int fallback) {
+        final Object value = object.get(name);
+        return value == null ? fallback : toInt(value);
+    }
+
+    private static int toInt(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    private static double toDouble(Object value) {
+        return ((Number) value).doubleValue();
+    }
+
+    @Nullable
+    private static Vector3 toVector(List<Object> values) {
+        return values.size() == 3 ? new Vector3(toDouble(values.get(0)), toDouble(values.get(1)),
+                                                toDouble(values.get(2))) : null;
+    }
+
+    /**
+     * Typed elements in a buffer view.
+     */
+    static final class Accessor {
+
+        final ByteBuffer data;
+        final int        offset;
+        final int        stride;
+        final int        componentType;
+        final boolean    normalized;
+        final int        count;
+        final int        components;
+        @Nullable
+        final Vector3    min;
+        @Nullable
+        final Vector3    max;
+
+        private final int mComponentSize;
+
+        Accessor(ByteBuffer data, int offset, int stride, int componentType, boolean normalized, int count,
+                 int components, @Nullable Vector3 min, @Nullable Vector3 max) throws ParsingException {
+            this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+            this.offset = offset;
+            this.componentType = componentType;
+            this.normalized = normalized;
+            this.count = count;
+            this.components = components;
+            this.min = min;
+            this.max = max;
+            mComponentSize = getComponentSize(componentType);
+            this.stride = stride == 0 ? mComponentSize * components : stride;
+            if (offset < 0 || count < 0
+                || (count > 0 && offset + (long) (count - 1) * this.stride + mComponentSize * components
+                                 > data.limit())) {
+                throw new ParsingException("Accessor lies outside of its buffer view.");
+            }
+        }
+
+        private boolean isTight() {
+            return stride == mComponentSize * components && data.isDirect()
+                   && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+        }
+
+        private ByteBuffer view(int elementSize) {
+            return slice(data, offset, count * elementSize);
+        }
+
+        /**
+         * Returns the elements as floats with the given number of components per element, missing components are 0
+         * except for the fourth which is 1. Tightly packed float data is returned as a view, anything else converted
+         * into a new direct buffer.
+         */
+        FloatBuffer toFloats(int targetComponents) {
+            if (componentType == FLOAT && components == targetComponents && isTight()) {
+                return view(components * 4).asFloatBuffer();
+            }
+            final FloatBuffer result = ByteBuffer.allocateDirect(count * targetComponents * 4)
+                                                 .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            final int shared = Math.min(components, targetComponents);
+            for (int i = 0; i < count; ++i) {
+                final int element = offset + i * stride;
+                final int target = i * targetComponents;
+                for (int c = 0; c < shared; ++c) {
+                    result.put(target + c, getComponent(element + c * mComponentSize));
+                }
+                for (int c = shared; c < targetComponents; ++c) {
+                    result.put(target + c, c == 3 ? 1 : 0);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the elements as indices, a view for tightly packed short and int indices and widened bytes
+         * otherwise.
+         */
+        Buffer toIndices() throws ParsingException {
+            if (components != 1) {
+                throw new ParsingException("Indices have to be scalars.");
+            }
+            switch (componentType) {
+                case UNSIGNED_INT:
+                    if (isTight()) {
+                        return view(4).asIntBuffer();
+                    }
+                    final IntBuffer ints = ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder())
+                                                     .asIntBuffer();
+                    for (int i = 0; i < count; ++i) {
+                        ints.put(i, data.getInt(offset + i * stride));
+                    }
+                    return ints;
+                case UNSIGNED_SHORT:
+                    if (isTight()) {
+                        return view(2).asShortBuffer();
+                    }
+                    // Fall through to copy them
+                case UNSIGNED_BYTE:
+                    final ShortBuffer shorts = ByteBuffer.allocateDirect(count * 2).order(ByteOrder.nativeOrder())
+                                                         .asShortBuffer();
+                    for (int i = 0; i < count; ++i) {
+                        final int position = offset + i * stride;
+                        shorts.put(i, componentType == UNSIGNED_BYTE ? (short) (data.get(position) & 0xff)
+                                                                     : data.getShort(position));
+                    }
+                    return shorts;
+                default:
+                    throw new ParsingException("Indices have to be unsigned integers.");
+            }
+        }
+
+        private float getComponent(int position) {
+            switch (componentType) {
+                case FLOAT:
+                    return data.getFloat(position);
+                case BYTE:
+                    return normalized ? Math.max(data.get(position) / 127f, -1f) : data.get(position);
+                case UNSIGNED_BYTE:
+                    return normalized ? (data.get(position) & 0xff) / 255f : data.get(position) & 0xff;
+                case SHORT:
+                    return normalized ? Math.max(data.getShort(position) / 32767f, -1f) : data.getShort(position);
+                case UNSIGNED_SHORT:
+                    return normalized ? (data.getShort(position) & 0xffff) / 65535f : data.getShort(position) & 0xffff;
+                default:
+                    return data.getInt(position) & 0xffffffffL;
+            }
+        }
+    }
+}
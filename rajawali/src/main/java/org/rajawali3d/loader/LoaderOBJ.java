@@ -28,17 +28,24 @@ import org.rajawali3d.materials.textures.SpecularMapTexture;
 import org.rajawali3d.materials.textures.Texture;
 import org.rajawali3d.materials.textures.TextureManager;
 import org.rajawali3d.renderer.Renderer;
+import org.rajawali3d.util.FloatArrayList;
+import org.rajawali3d.util.IntArrayList;
 import org.rajawali3d.util.RajLog;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Stack;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -93,6 +100,7 @@ public class LoaderOBJ extends AMeshLoader {
 
     private boolean mNeedToRenameMtl = true;
     static AtomicInteger mUniqueInstanceId = new AtomicInteger(1000);
+    private int mParallelism = 1;
 
     public LoaderOBJ(Renderer renderer, String fileOnSDCard) {
     	super(renderer, fileOnSDCard);
@@ -112,6 +120,25 @@ public class LoaderOBJ extends AMeshLoader {
 		super(renderer, file);
 	}
 
+	/**
+	 * Sets the number of threads the file is parsed on. Files large enough are then read into memory, split into
+	 * chunks at line breaks and the chunks parsed concurrently. The parsed objects are identical either way.
+	 *
+	 * @param threads Number of threads, 1 to parse sequentially while reading. The default.
+	 * @return this loader
+	 */
+	public LoaderOBJ setParallelism(int threads) {
+		if(threads < 1)
+			throw new IllegalArgumentException("At least one thread is needed.");
+		mParallelism = threads;
+		return this;
+	}
+
+	@Override
+	protected String getParseOptions() {
+		return "threads=" + mParallelism;
+	}
+
 	@Override
 	public LoaderOBJ parse() throws ParsingException {
 		return parse(false);
@@ -120,186 +147,44 @@ public class LoaderOBJ extends AMeshLoader {
 	public LoaderOBJ parse(boolean offsetCentroids) throws ParsingException {
 		super.parse();
 
-		BufferedReader buffer = null;
+		InputStream stream = null;
 		try {
-			buffer = getBufferedReader();
+			stream = getBufferedInputStream();
 		} catch (Exception e) {
 			RajLog.e("["+getClass().getCanonicalName()+"] Could not find file.");
 			e.printStackTrace();
 			return this;
 		}
 
-		String line;
-		ObjIndexData currObjIndexData = new ObjIndexData(new Object3D(generateObjectName()));
-		ArrayList<ObjIndexData> objIndices = new ArrayList<ObjIndexData>();
-
-		ArrayList<Float> vertices = new ArrayList<Float>();
-		ArrayList<Float> texCoords = new ArrayList<Float>();
-		ArrayList<Float> normals = new ArrayList<Float>();
-		MaterialLib matLib = new MaterialLib();
-
-		String currentMaterialName=null;
-		boolean currentObjHasFaces=false;
-		Object3D currentGroup = mRootObject;
 		mRootObject.setName("default");
-		Map<String, Object3D> groups = new HashMap<String, Object3D>();
+		ObjStatements statements = new ObjStatements();
+		ObjParser parser = new ObjParser(statements);
+		statements.parser = parser;
+		statements.setCurrent(new ObjIndexData(new Object3D(generateObjectName())));
 
 		try {
-			while((line = buffer.readLine()) != null) {
-				// Skip comments and empty lines.
-				if(line.length() == 0 || line.charAt(0) == '#')
-					continue;
-				if(line.endsWith("\\")) {
-					line = line.substring(0, line.length()-1) + buffer.readLine();
-				}
-				StringTokenizer parts = new StringTokenizer(line, " ");
-				int numTokens = parts.countTokens();
-
-				if(numTokens == 0)
-					continue;
-				String type = parts.nextToken();
-
-				if(type.equals(VERTEX)) {
-					vertices.add(Float.parseFloat(parts.nextToken()));
-					vertices.add(Float.parseFloat(parts.nextToken()));
-					vertices.add(Float.parseFloat(parts.nextToken()));
-				} else if(type.equals(FACE)) {
-					currentObjHasFaces=true;
-					boolean isQuad = numTokens == 5;
-					int[] quadvids = new int[4];
-					int[] quadtids = new int[4];
-					int[] quadnids = new int[4];
-
-                    boolean emptyVt = line.indexOf("//") > -1;
-                    if(emptyVt) line = line.replace("//", "/");
-
-                    parts = new StringTokenizer(line);
-
-                    parts.nextToken();
-                    StringTokenizer subParts = new StringTokenizer(parts.nextToken(), "/");
-                    int partLength = subParts.countTokens();
-
-                    boolean hasuv = partLength >= 2 && !emptyVt;
-                    boolean hasn = partLength == 3 || (partLength == 2 && emptyVt);
-                    int idx;
-
-                    for (int i = 1; i < numTokens; i++) {
-                    	if(i > 1)
-                    		subParts = new StringTokenizer(parts.nextToken(), "/");
-                    	idx = Integer.parseInt(subParts.nextToken());
-
-                    	if(idx < 0) idx = (vertices.size() / 3) + idx;
-                    	else idx -= 1;
-                        if(!isQuad)
-                        	currObjIndexData.vertexIndices.add(idx);
-                        else
-                        	quadvids[i-1] = idx;
-                        if (hasuv)
-                        {
-                        	idx = Integer.parseInt(subParts.nextToken());
-                        	if(idx < 0) idx = (texCoords.size() / 2) + idx;
-                        	else idx -= 1;
-                        	if(!isQuad)
-                        		currObjIndexData.texCoordIndices.add(idx);
-                        	else
-                            	quadtids[i-1] = idx;
-                        }
-                        if (hasn)
-                        {
-                        	idx = Integer.parseInt(subParts.nextToken());
-                        	if(idx < 0) idx = (normals.size() / 3) + idx;
-                        	else idx -= 1;
-                        	if(!isQuad)
-                        		currObjIndexData.normalIndices.add(idx);
-                        	else
-                            	quadnids[i-1] = idx;
-                        }
-                    }
-
-                    if(isQuad) {
-                    	int[] indices = new int[] { 0, 1, 2, 0, 2, 3 };
-
-                    	for(int i=0; i<6; ++i) {
-                    		int index = indices[i];
-                        	currObjIndexData.vertexIndices.add(quadvids[index]);
-                        	currObjIndexData.texCoordIndices.add(quadtids[index]);
-                        	currObjIndexData.normalIndices.add(quadnids[index]);
-                    	}
-                    }
-				} else if(type.equals(TEXCOORD)) {
-					texCoords.add(Float.parseFloat(parts.nextToken()));
-                    texCoords.add(1f - Float.parseFloat(parts.nextToken()));
-				} else if(type.equals(NORMAL)) {
-					normals.add(Float.parseFloat(parts.nextToken()));
-                    normals.add(Float.parseFloat(parts.nextToken()));
-                    normals.add(Float.parseFloat(parts.nextToken()));
-				} else if(type.equals(GROUP)) {
-					int numGroups = parts.countTokens();
-					Object3D previousGroup = null;
-					for(int i=0; i<numGroups; i++) {
-						String groupName = parts.nextToken();
-						if(!groups.containsKey(groupName)) {
-							groups.put(groupName, new Object3D(groupName));
-						}
-						Object3D group = groups.get(groupName);
-						if(previousGroup!=null) {
-							addChildSetParent(group, previousGroup);
-						} else {
-							currentGroup = group;
-						}
-						previousGroup = group;
-					}
-					RajLog.i("Parsing group: " + currentGroup.getName());
-					if (currentObjHasFaces) {
-						objIndices.add(currObjIndexData);
-						currObjIndexData = new ObjIndexData(new Object3D(generateObjectName()));
-						RajLog.i("Parsing object: " + currObjIndexData.targetObj.getName());
-						currObjIndexData.materialName = currentMaterialName;
-						currentObjHasFaces = false;
-					}
-					addChildSetParent(currentGroup, currObjIndexData.targetObj);
-				} else if(type.equals(OBJECT)) {
-					String objName = parts.hasMoreTokens() ? parts.nextToken() : generateObjectName();
-
-					if (currentObjHasFaces) {
-						objIndices.add(currObjIndexData);
-						currObjIndexData = new ObjIndexData(new Object3D(currObjIndexData.targetObj.getName()));
-						currObjIndexData.materialName = currentMaterialName;
-						addChildSetParent(currentGroup, currObjIndexData.targetObj);
-						RajLog.i("Parsing object: " + currObjIndexData.targetObj.getName());
-						currentObjHasFaces = false;
-					}
-					currObjIndexData.targetObj.setName(objName);
-				} else if(type.equals(MATERIAL_LIB)) {
-					if(!parts.hasMoreTokens()) continue;
-                    String materialLibPath = mNeedToRenameMtl ? parts.nextToken().replace(".", "_") : parts.nextToken();
-
-					RajLog.d("Found Material Lib: " + materialLibPath);
-					matLib.parse(materialLibPath);
-				} else if(type.equals(USE_MATERIAL)) {
-					currentMaterialName = parts.nextToken();
-					if(currentObjHasFaces) {
-						objIndices.add(currObjIndexData);
-						currObjIndexData = new ObjIndexData(new Object3D(generateObjectName(currentMaterialName)));
-						RajLog.i("Parsing object: " + currObjIndexData.targetObj.getName());
-						addChildSetParent(currentGroup, currObjIndexData.targetObj);
-						currentObjHasFaces = false;
-					}
-					currObjIndexData.materialName = currentMaterialName;
-				}
+			if(mParallelism > 1) {
+				parseParallel(parser, stream);
+			} else {
+				parser.parse(stream);
 			}
-			buffer.close();
+			stream.close();
 
-			if(currentObjHasFaces) {
-				RajLog.i("Parsing object: " + currObjIndexData.targetObj.getName());
-				objIndices.add(currObjIndexData);
+			if(statements.hasFaces()) {
+				RajLog.i("Parsing object: " + statements.currObjIndexData.targetObj.getName());
+				statements.objIndices.add(statements.currObjIndexData);
 			}
-
-
 		} catch (Exception e) {
 			throw new ParsingException(e);
 		}
 
+		ArrayList<ObjIndexData> objIndices = statements.objIndices;
+		FloatArrayList vertices = parser.getVertices();
+		FloatArrayList texCoords = parser.getTexCoords();
+		FloatArrayList normals = parser.getNormals();
+		MaterialLib matLib = statements.matLib;
+		Map<String, Object3D> groups = statements.groups;
+
 		int numObjects = objIndices.size();
 
 		for(int j=0; j<numObjects; ++j) {
@@ -377,7 +262,26 @@ public class LoaderOBJ extends AMeshLoader {
 		return this;
 	}
 
-	float[] getCentroid(ArrayList<Integer> vertexIndices, ArrayList<Float> vertices) {
+	private void parseParallel(ObjParser parser, InputStream stream) throws IOException, ParsingException,
+			InterruptedException {
+		byte[] data = new byte[mFile != null ? (int) mFile.length() + 1 : 1024 * 1024];
+		int length = 0;
+		int read;
+		while((read = stream.read(data, length, data.length - length)) >= 0) {
+			length += read;
+			if(length == data.length)
+				data = Arrays.copyOf(data, data.length * 2);
+		}
+		// A few chunks per thread even out lines which take longer to parse than others
+		ExecutorService executor = Executors.newFixedThreadPool(mParallelism);
+		try {
+			parser.parse(data, length, executor, mParallelism * 4);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	float[] getCentroid(IntArrayList vertexIndices, FloatArrayList vertices) {
 		float[] centroid = new float[] { 0,0,0 };
 		for(int i=0; i<vertexIndices.size(); ++i) {
 			int faceIndex = vertexIndices.get(i) * 3;
@@ -468,22 +372,103 @@ public class LoaderOBJ extends AMeshLoader {
 		}
 	}
 
+	/**
+	 * Object, group and material state, changed by the statements the {@link ObjParser} passes on.
+	 */
+	private class ObjStatements implements ObjParser.StatementListener {
+		ObjParser parser;
+		ObjIndexData currObjIndexData;
+		final ArrayList<ObjIndexData> objIndices = new ArrayList<ObjIndexData>();
+		final MaterialLib matLib = new MaterialLib();
+		final Map<String, Object3D> groups = new HashMap<String, Object3D>();
+		String currentMaterialName = null;
+		Object3D currentGroup = mRootObject;
+
+		void setCurrent(ObjIndexData objIndexData) {
+			currObjIndexData = objIndexData;
+			parser.setFaceTarget(objIndexData.vertexIndices, objIndexData.texCoordIndices, objIndexData.normalIndices);
+		}
+
+		boolean hasFaces() {
+			// Every face adds at least one corner
+			return currObjIndexData.vertexIndices.size() > 0;
+		}
+
+		@Override
+		public void onStatement(String line) {
+			StringTokenizer parts = new StringTokenizer(line, " ");
+			String type = parts.nextToken();
+
+			if(type.equals(GROUP)) {
+				int numGroups = parts.countTokens();
+				Object3D previousGroup = null;
+				for(int i=0; i<numGroups; i++) {
+					String groupName = parts.nextToken();
+					if(!groups.containsKey(groupName)) {
+						groups.put(groupName, new Object3D(groupName));
+					}
+					Object3D group = groups.get(groupName);
+					if(previousGroup!=null) {
+						addChildSetParent(group, previousGroup);
+					} else {
+						currentGroup = group;
+					}
+					previousGroup = group;
+				}
+				RajLog.i("Parsing group: " + currentGroup.getName());
+				if (hasFaces()) {
+					objIndices.add(currObjIndexData);
+					setCurrent(new ObjIndexData(new Object3D(generateObjectName())));
+					RajLog.i("Parsing object: " + currObjIndexData.targetObj.getName());
+					currObjIndexData.materialName = currentMaterialName;
+				}
+				addChildSetParent(currentGroup, currObjIndexData.targetObj);
+			} else if(type.equals(OBJECT)) {
+				String objName = parts.hasMoreTokens() ? parts.nextToken() : generateObjectName();
+
+				if (hasFaces()) {
+					objIndices.add(currObjIndexData);
+					setCurrent(new ObjIndexData(new Object3D(currObjIndexData.targetObj.getName())));
+					currObjIndexData.materialName = currentMaterialName;
+					addChildSetParent(currentGroup, currObjIndexData.targetObj);
+					RajLog.i("Parsing object: " + currObjIndexData.targetObj.getName());
+				}
+				currObjIndexData.targetObj.setName(objName);
+			} else if(type.equals(MATERIAL_LIB)) {
+				if(!parts.hasMoreTokens()) return;
+				String materialLibPath = mNeedToRenameMtl ? parts.nextToken().replace(".", "_") : parts.nextToken();
+
+				RajLog.d("Found Material Lib: " + materialLibPath);
+				matLib.parse(materialLibPath);
+			} else if(type.equals(USE_MATERIAL)) {
+				currentMaterialName = parts.nextToken();
+				if(hasFaces()) {
+					objIndices.add(currObjIndexData);
+					setCurrent(new ObjIndexData(new Object3D(generateObjectName(currentMaterialName))));
+					RajLog.i("Parsing object: " + currObjIndexData.targetObj.getName());
+					addChildSetParent(currentGroup, currObjIndexData.targetObj);
+				}
+				currObjIndexData.materialName = currentMaterialName;
+			}
+		}
+	}
+
 	protected class ObjIndexData {
 		public Object3D targetObj;
 
-		public ArrayList<Integer> vertexIndices;
-		public ArrayList<Integer> texCoordIndices;
-		public ArrayList<Integer> colorIndices;
-		public ArrayList<Integer> normalIndices;
+		public IntArrayList vertexIndices;
+		public IntArrayList texCoordIndices;
+		public IntArrayList colorIndices;
+		public IntArrayList normalIndices;
 
 		public String materialName;
 
 		public ObjIndexData(Object3D targetObj) {
 			this.targetObj = targetObj;
-			vertexIndices = new ArrayList<Integer>();
-			texCoordIndices = new ArrayList<Integer>();
-			colorIndices = new ArrayList<Integer>();
-			normalIndices = new ArrayList<Integer>();
+			vertexIndices = new IntArrayList();
+			texCoordIndices = new IntArrayList();
+			colorIndices = new IntArrayList();
+			normalIndices = new IntArrayList();
 		}
 	}
 
@@ -15,19 +15,35 @@ package org.rajawali3d.loader;
 import android.content.res.Resources;
 import android.content.res.Resources.NotFoundException;
 
+import org.rajawali3d.Geometry3D;
 import org.rajawali3d.materials.textures.TextureManager;
 import org.rajawali3d.renderer.Renderer;
-import org.rajawali3d.util.LittleEndianDataInputStream;
 import org.rajawali3d.util.RajLog;
+import org.rajawali3d.util.VertexWelder;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * STL Parser written using the ASCII format as describe on Wikipedia.
@@ -50,6 +66,41 @@ public class LoaderSTL extends AMeshLoader {
 		BINARY
 	}
 
+	/**
+	 * Where the normals of a binary STL come from.
+	 */
+	public enum StlNormals {
+		/**
+		 * The facet normals stored in the file, replaced by zero if not finite.
+		 */
+		FILE,
+		/**
+		 * Facet normals computed from the vertices while reading, for files whose stored normals are unreliable.
+		 */
+		FACE,
+		/**
+		 * No normals are read. Vertices are welded by position into indexed geometry and every vertex gets the area
+		 * weighted average normal of the facets sharing it.
+		 */
+		SMOOTH
+	}
+
+	/**
+	 * Bytes of the header and the facet count.
+	 */
+	static final int HEADER_SIZE = 84;
+	/**
+	 * Bytes of a facet record: normal, three vertices and the attribute byte count.
+	 */
+	static final int FACET_SIZE = 50;
+	/**
+	 * Fewer facets are read on a single thread.
+	 */
+	private static final int MIN_PARALLEL_FACETS = 64 * 1024;
+
+	private StlNormals mNormals = StlNormals.FILE;
+	private int mParallelism = 1;
+
 	public LoaderSTL(Renderer renderer, File file) {
 		super(renderer, file);
 	}
@@ -62,6 +113,29 @@ public class LoaderSTL extends AMeshLoader {
         super(renderer, fileOnSDCard);
     }
 
+	/**
+	 * Sets where the normals of binary files come from, {@link StlNormals#FILE} by default.
+	 */
+	public LoaderSTL setNormals(StlNormals normals) {
+		mNormals = normals;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads the facets of large binary files are read on, 1 by default.
+	 */
+	public LoaderSTL setParallelism(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("At least one thread is needed.");
+		mParallelism = threads;
+		return this;
+	}
+
+	@Override
+	protected String getParseOptions() {
+		return "normals=" + mNormals + " threads=" + mParallelism;
+	}
+
 	@Override
 	public AMeshLoader parse() throws ParsingException {
 		return parse(StlType.UNKNOWN);
@@ -73,7 +147,6 @@ public class LoaderSTL extends AMeshLoader {
 
 			// Open the file
 			BufferedReader buffer = null;
-			LittleEndianDataInputStream dis = null;
 
 			switch (type) {
 			case UNKNOWN:
@@ -86,10 +159,9 @@ public class LoaderSTL extends AMeshLoader {
 					readASCII(buffer);
 				} else {
 
-					// Switch to a LittleEndianDataInputStream (all values in binary are stored in little endian format)
 					buffer.close();
-					dis = getLittleEndianInputStream();
-					readBinary(dis);
+					buffer = null;
+					readBinary(mapInput());
 				}
 				break;
 			case ASCII:
@@ -97,16 +169,13 @@ public class LoaderSTL extends AMeshLoader {
 				readASCII(buffer);
 				break;
 			case BINARY:
-				dis = getLittleEndianInputStream();
-				readBinary(dis);
+				readBinary(mapInput());
 				break;
 			}
 
 			// Cleanup
 			if (buffer != null)
 				buffer.close();
-			if (dis != null)
-				dis.close();
 
 		} catch (FileNotFoundException e) {
 			RajLog.e("[" + getClass().getCanonicalName() + "] Could not find file.");
@@ -208,59 +277,224 @@ public class LoaderSTL extends AMeshLoader {
 	}
 
 	/**
-	 * Read stream as binary STL. This is significantly faster than ASCII parsing. Additionally binary files are much
-	 * more compressed allowing smaller file sizes for larger models compared to ASCII.
+	 * Maps the file into memory, so facets are read straight from the page cache. Raw resources may be compressed
+	 * within the APK and can not be mapped, they are read into a heap buffer instead.
+	 */
+	private ByteBuffer mapInput() throws IOException {
+		if (mFile != null) {
+			final FileInputStream stream = new FileInputStream(mFile);
+			try {
+				// The mapping stays valid once the channel is closed
+				return stream.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, stream.getChannel().size());
+			} finally {
+				stream.close();
+			}
+		}
+		final InputStream stream = mResources.openRawResource(mResourceId);
+		try {
+			byte[] data = new byte[Math.max(stream.available(), HEADER_SIZE)];
+			int length = 0;
+			int read;
+			while ((read = stream.read(data, length, data.length - length)) >= 0) {
+				length += read;
+				if (length == data.length)
+					data = Arrays.copyOf(data, data.length * 2);
+			}
+			return ByteBuffer.wrap(data, 0, length).slice();
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Read binary STL. This is significantly faster than ASCII parsing. Additionally binary files are much more
+	 * compressed allowing smaller file sizes for larger models compared to ASCII.
+	 * <p>
+	 * Facet records are read straight into direct buffers which the geometry keeps, so apart from the index buffer
+	 * nothing is copied and nothing of the size of the mesh is allocated on the Java heap.
 	 *
-	 * @param dis
+	 * @param data
 	 * @throws IOException
+	 * @throws ParsingException
 	 */
-	private void readBinary(final LittleEndianDataInputStream dis) throws IOException {
+	private void readBinary(final ByteBuffer data) throws IOException, ParsingException, InterruptedException {
 		RajLog.i("StlPaser: Reading Binary");
 
-		// Skip the header
-		dis.skip(80);
-
-		// Read the number of facets (have to convert the uint to a long
-		int facetCount = dis.readInt();
+		data.order(ByteOrder.LITTLE_ENDIAN);
+		if (data.limit() < HEADER_SIZE)
+			throw new StlParseException("File is too short for a binary STL header.");
+
+		// The facet count is an unsigned int, a file cut short holds fewer facets than it claims
+		final long declaredCount = data.getInt(80) & 0xFFFFFFFFL;
+		final int facetCount = (int) Math.min(declaredCount, (data.limit() - HEADER_SIZE) / FACET_SIZE);
+		if (facetCount < declaredCount)
+			RajLog.w("STL declares " + declaredCount + " facets but only holds " + facetCount + ".");
+
+		final FloatBuffer vertices = allocateFloats(facetCount * 9);
+		final FloatBuffer normals = mNormals == StlNormals.SMOOTH ? null : allocateFloats(facetCount * 9);
+		final int badNormals = readFacets(data, facetCount, vertices, normals, mNormals == StlNormals.FACE,
+				facetCount < MIN_PARALLEL_FACETS ? 1 : mParallelism);
+		if (badNormals > 0)
+			RajLog.w("STL contains " + badNormals + " bad normals of NaN or Infinite!");
+
+		mRootObject.setData(vertices, normals, null, createSequentialIndices(facetCount * 3), false);
+
+		if (mNormals == StlNormals.SMOOTH) {
+			final Geometry3D geometry = mRootObject.getGeometry();
+			final int removed = (mVertexWelder != null ? mVertexWelder : new VertexWelder()).weld(geometry);
+			RajLog.i("StlPaser: Welded away " + removed + " vertices.");
+			geometry.setNormals(computeSmoothNormals(geometry.getVertices(),
+					Geometry3D.getIntArrayFromBuffer(geometry.getIndices()), geometry.getNumVertices()), true);
+		}
+	}
 
-		float[] verticesArr = new float[facetCount * 9];
-		float[] normalsArr = new float[facetCount * 9];
-		int[] indicesArr = new int[facetCount * 3];
-		float[] tempNorms = new float[3];
-		int vertPos = 0, normPos = 0;
+	/**
+	 * Reads every facet of binary STL data, split into slices read on separate threads.
+	 *
+	 * @return The number of normals which were replaced because they were not finite.
+	 */
+	static int readFacets(final ByteBuffer data, int facetCount, final FloatBuffer vertices,
+						  final FloatBuffer normals, final boolean computeNormals, int threads)
+			throws InterruptedException, ParsingException {
+		if (threads <= 1)
+			return readFacets(data, 0, facetCount, vertices, normals, computeNormals);
 
-		for (int i = 0; i < indicesArr.length; i++)
-			indicesArr[i] = i;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<Integer>> slices = new ArrayList<Future<Integer>>(threads);
+			for (int i = 0; i < threads; i++) {
+				final int first = (int) ((long) facetCount * i / threads);
+				final int end = (int) ((long) facetCount * (i + 1) / threads);
+				slices.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						return readFacets(data, first, end, vertices, normals, computeNormals);
+					}
+				}));
+			}
+			int badNormals = 0;
+			for (int i = 0; i < slices.size(); i++)
+				badNormals += slices.get(i).get();
+			return badNormals;
+		} catch (ExecutionException e) {
+			throw new ParsingException("Reading facets failed.", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 
-		// Read all the facets
-		while (dis.available() > 0) {
-
-			// Read normals
-			for (int j = 0; j < 3; j++) {
-				tempNorms[j] = dis.readFloat();
-				if (Float.isNaN(tempNorms[j]) || Float.isInfinite(tempNorms[j])) {
-					RajLog.w("STL contains bad normals of NaN or Infinite!");
-					tempNorms[0] = 0;
-					tempNorms[1] = 0;
-					tempNorms[2] = 0;
-					break;
+	/**
+	 * Reads a range of facets. Only absolute gets and puts are used, so slices can be read concurrently from and into
+	 * the same buffers.
+	 *
+	 * @return The number of normals which were replaced because they were not finite.
+	 */
+	static int readFacets(ByteBuffer data, int first, int end, FloatBuffer vertices, FloatBuffer normals,
+						  boolean computeNormals) {
+		int badNormals = 0;
+		for (int facet = first; facet < end; facet++) {
+			final int offset = HEADER_SIZE + facet * FACET_SIZE;
+			final int vertex = facet * 9;
+			for (int j = 0; j < 9; j++)
+				vertices.put(vertex + j, data.getFloat(offset + 12 + j * 4));
+			if (normals == null)
+				continue;
+
+			float nx, ny, nz;
+			if (computeNormals) {
+				final float ax = vertices.get(vertex + 3) - vertices.get(vertex);
+				final float ay = vertices.get(vertex + 4) - vertices.get(vertex + 1);
+				final float az = vertices.get(vertex + 5) - vertices.get(vertex + 2);
+				final float bx = vertices.get(vertex + 6) - vertices.get(vertex);
+				final float by = vertices.get(vertex + 7) - vertices.get(vertex + 1);
+				final float bz = vertices.get(vertex + 8) - vertices.get(vertex + 2);
+				nx = ay * bz - az * by;
+				ny = az * bx - ax * bz;
+				nz = ax * by - ay * bx;
+				final float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+				if (length > 0) {
+					nx /= length;
+					ny /= length;
+					nz /= length;
 				}
+			} else {
+				nx = data.getFloat(offset);
+				ny = data.getFloat(offset + 4);
+				nz = data.getFloat(offset + 8);
+				if (!isFinite(nx) || !isFinite(ny) || !isFinite(nz)) {
+					nx = ny = nz = 0;
+					badNormals++;
+				}
+			}
+			// Need to duplicate the normal for each vertex of the triangle
+			for (int j = 0; j < 9; j += 3) {
+				normals.put(vertex + j, nx);
+				normals.put(vertex + j + 1, ny);
+				normals.put(vertex + j + 2, nz);
 			}
+		}
+		return badNormals;
+	}
 
-			for (int j = 0; j < 3; j++) {
-				normalsArr[normPos++] = tempNorms[0];
-				normalsArr[normPos++] = tempNorms[1];
-				normalsArr[normPos++] = tempNorms[2];
+	/**
+	 * Averages the normals of the facets sharing each vertex, weighted by their area.
+	 */
+	static float[] computeSmoothNormals(FloatBuffer vertices, int[] indices, int vertexCount) {
+		final float[] normals = new float[vertexCount * 3];
+		for (int i = 0; i + 2 < indices.length; i += 3) {
+			final int a = indices[i] * 3, b = indices[i + 1] * 3, c = indices[i + 2] * 3;
+			final float abx = vertices.get(b) - vertices.get(a);
+			final float aby = vertices.get(b + 1) - vertices.get(a + 1);
+			final float abz = vertices.get(b + 2) - vertices.get(a + 2);
+			final float acx = vertices.get(c) - vertices.get(a);
+			final float acy = vertices.get(c + 1) - vertices.get(a + 1);
+			final float acz = vertices.get(c + 2) - vertices.get(a + 2);
+			// The length of the unnormalized cross product is twice the area
+			final float nx = aby * acz - abz * acy;
+			final float ny = abz * acx - abx * acz;
+			final float nz = abx * acy - aby * acx;
+			for (int corner = 0; corner < 3; corner++) {
+				final int n = indices[i + corner] * 3;
+				normals[n] += nx;
+				normals[n + 1] += ny;
+				normals[n + 2] += nz;
 			}
+		}
+		for (int n = 0; n < normals.length; n += 3) {
+			final float length = (float) Math.sqrt(normals[n] * normals[n] + normals[n + 1] * normals[n + 1]
+					+ normals[n + 2] * normals[n + 2]);
+			if (length > 0) {
+				normals[n] /= length;
+				normals[n + 1] /= length;
+				normals[n + 2] /= length;
+			}
+		}
+		return normals;
+	}
 
-			// Read vertices
-			for (int j = 0; j < 9; j++)
-				verticesArr[vertPos++] = dis.readFloat();
+	private static boolean isFinite(float value) {
+		return !Float.isNaN(value) && !Float.isInfinite(value);
+	}
 
-			dis.skip(2);
-		}
+	private static FloatBuffer allocateFloats(int count) {
+		return ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
 
-		mRootObject.setData(verticesArr, normalsArr, null, null, indicesArr, false);
+	/**
+	 * Indices 0 to count - 1, as short indices if they fit.
+	 */
+	static Buffer createSequentialIndices(int count) {
+		if (count <= Geometry3D.MAX_SHORT_INDEX_VERTICES) {
+			final ShortBuffer indices = ByteBuffer.allocateDirect(count * 2).order(ByteOrder.nativeOrder())
+					.asShortBuffer();
+			for (int i = 0; i < count; i++)
+				indices.put(i, (short) i);
+			return indices;
+		}
+		final IntBuffer indices = ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		for (int i = 0; i < count; i++)
+			indices.put(i, i);
+		return indices;
 	}
 
 	/**
@@ -38,26 +38,18 @@ import org.rajawali3d.primitives.NPrism;
 import org.rajawali3d.primitives.Plane;
 import org.rajawali3d.primitives.RectangularPrism;
 import org.rajawali3d.primitives.Sphere;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Stack;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
+/**
+ * Loads X3D scenes. The file is streamed by {@link X3DReader}, which parses coordinates and indices straight into
+ * primitive arrays instead of building a DOM, so the memory needed stays proportional to the geometry.
+ */
 public class LoaderX3D extends AMeshLoader {
-    static XPathFactory xPathfactory  = XPathFactory.newInstance();
-    Document mDoc;
+    X3DNode mDoc;
 
     public LoaderX3D(Resources resources, TextureManager textureManager, int resourceId) {
         super(resources, textureManager, resourceId);
@@ -65,64 +57,55 @@ public class LoaderX3D extends AMeshLoader {
 
     public AMeshLoader parse() throws ParsingException {
         super.parse();
+        InputStream is = null;
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            InputStream is = mResources.openRawResource(mResourceId);
-            mDoc = builder.parse(is);
-
-            Element scene = (Element) mDoc.getDocumentElement().getElementsByTagName("Scene").item(0);
-            NodeList children = scene.getChildNodes();
-            for(int i=0; i<children.getLength(); i++) {
-                if(children.item(i).getNodeName().equals("Transform")) {
-                    parseTransform(mRootObject, (Element) children.item(i));
+            is = mResources.openRawResource(mResourceId);
+            mDoc = new X3DReader(is).read();
+
+            X3DNode scene = getScene();
+            if(scene == null) throw new ParsingException("The document has no Scene.");
+            for(X3DNode child : scene.mChildren) {
+                if(child.mName.equals("Transform")) {
+                    parseTransform(mRootObject, child);
                 }
-                if(children.item(i).getNodeName().equals("Shape")) {
-                    parseShape(mRootObject, (Element) children.item(i));
+                if(child.mName.equals("Shape")) {
+                    parseShape(mRootObject, child);
                 }
-                if(children.item(i).getNodeName().equals("Group")) {
-                    parseGroup(mRootObject, (Element) children.item(i));
+                if(child.mName.equals("Group")) {
+                    parseGroup(mRootObject, child);
                 }
             }
+        } catch (ParsingException e) {
+            throw e;
         } catch (Exception e) {
-            throw new ParsingException(e.getMessage());
+            throw new ParsingException(e.getMessage(), e);
+        } finally {
+            if(is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    // Nothing left to read
+                }
+            }
         }
         return this;
     }
 
+    X3DNode getScene() {
+        return mDoc.findFirst("Scene");
+    }
+
     public List<ALight> getParsedLights() {
         Stack<ALight> lights = new Stack<>();
-        Element scene = (Element) mDoc.getDocumentElement().getElementsByTagName("Scene").item(0);
-
-        NodeList directionalLights = scene.getElementsByTagName("DirectionalLight");
-        for(int i=0; i<directionalLights.getLength(); i++) {
-            Node tag;
-            tag = directionalLights.item(i).getAttributes().getNamedItem("intensity");
-            float intensity = tag==null ? 1 : Float.parseFloat(tag.getNodeValue());
-            tag = directionalLights.item(i).getAttributes().getNamedItem("color");
-            float[] rgb = { 1,1,1 };
-            if(tag!=null) {
-                String[] colorChannels = tag.getNodeValue().split("\\s+");
-                rgb[0] = Float.parseFloat(colorChannels[0]);
-                rgb[1] = Float.parseFloat(colorChannels[1]);
-                rgb[2] = Float.parseFloat(colorChannels[2]);
-            }
-            tag = directionalLights.item(i).getAttributes().getNamedItem("location");
-            Vector3 location = new Vector3();
-            if(tag!=null) {
-                String[] axes = tag.getNodeValue().split("\\s+");
-                location.x = Float.parseFloat(axes[0]);
-                location.y = Float.parseFloat(axes[1]);
-                location.z = Float.parseFloat(axes[2]);
-            }
-            tag = directionalLights.item(i).getAttributes().getNamedItem("direction");
-            Vector3 direction = new Vector3();
-            if(tag!=null) {
-                String[] axes = tag.getNodeValue().split("\\s+");
-                direction.x = Float.parseFloat(axes[0]);
-                direction.y = Float.parseFloat(axes[1]);
-                direction.z = Float.parseFloat(axes[2]);
-            }
+        X3DNode scene = getScene();
+
+        for(X3DNode light : scene.findAll("DirectionalLight")) {
+            float intensity = getFloat(light, "intensity", 1);
+            float[] rgb = getFloats(light, "color", 1,1,1);
+            float[] axes = getFloats(light, "location", 0,0,0);
+            Vector3 location = new Vector3(axes[0], axes[1], axes[2]);
+            axes = getFloats(light, "direction", 0,0,0);
+            Vector3 direction = new Vector3(axes[0], axes[1], axes[2]);
 
             DirectionalLight directionalLight = new DirectionalLight();
             directionalLight.setPower(intensity);
@@ -132,27 +115,11 @@ public class LoaderX3D extends AMeshLoader {
             lights.add(directionalLight);
         }
 
-        NodeList pointLights = scene.getElementsByTagName("PointLight");
-        for(int i=0; i<pointLights.getLength(); i++) {
-            Node tag;
-            tag = pointLights.item(i).getAttributes().getNamedItem("intensity");
-            float intensity = tag==null ? 1 : Float.parseFloat(tag.getNodeValue());
-            tag = pointLights.item(i).getAttributes().getNamedItem("color");
-            float[] rgb = { 1,1,1 };
-            if(tag!=null) {
-                String[] colorChannels = tag.getNodeValue().split("\\s+");
-                rgb[0] = Float.parseFloat(colorChannels[0]);
-                rgb[1] = Float.parseFloat(colorChannels[1]);
-                rgb[2] = Float.parseFloat(colorChannels[2]);
-            }
-            tag = pointLights.item(i).getAttributes().getNamedItem("location");
-            Vector3 location = new Vector3();
-            if(tag!=null) {
-                String[] axes = tag.getNodeValue().split("\\s+");
-                location.x = Float.parseFloat(axes[0]);
-                location.y = Float.parseFloat(axes[1]);
-                location.z = Float.parseFloat(axes[2]);
-            }
+        for(X3DNode light : scene.findAll("PointLight")) {
+            float intensity = getFloat(light, "intensity", 1);
+            float[] rgb = getFloats(light, "color", 1,1,1);
+            float[] axes = getFloats(light, "location", 0,0,0);
+            Vector3 location = new Vector3(axes[0], axes[1], axes[2]);
 
             PointLight pointLight = new PointLight();
             pointLight.setPower(intensity);
@@ -161,27 +128,11 @@ public class LoaderX3D extends AMeshLoader {
             lights.add(pointLight);
         }
 
-        NodeList spotLights = scene.getElementsByTagName("SpotLight");
-        for(int i=0; i<spotLights.getLength(); i++) {
-            Node tag;
-            tag = spotLights.item(i).getAttributes().getNamedItem("intensity");
-            float intensity = tag==null ? 1 : Float.parseFloat(tag.getNodeValue());
-            tag = spotLights.item(i).getAttributes().getNamedItem("color");
-            float[] rgb = { 1,1,1 };
-            if(tag!=null) {
-                String[] colorChannels = tag.getNodeValue().split("\\s+");
-                rgb[0] = Float.parseFloat(colorChannels[0]);
-                rgb[1] = Float.parseFloat(colorChannels[1]);
-                rgb[2] = Float.parseFloat(colorChannels[2]);
-            }
-            tag = spotLights.item(i).getAttributes().getNamedItem("location");
-            Vector3 location = new Vector3();
-            if(tag!=null) {
-                String[] axes = tag.getNodeValue().split("\\s+");
-                location.x = Float.parseFloat(axes[0]);
-                location.y = Float.parseFloat(axes[1]);
-                location.z = Float.parseFloat(axes[2]);
-            }
+        for(X3DNode light : scene.findAll("SpotLight")) {
+            float intensity = getFloat(light, "intensity", 1);
+            float[] rgb = getFloats(light, "color", 1,1,1);
+            float[] axes = getFloats(light, "location", 0,0,0);
+            Vector3 location = new Vector3(axes[0], axes[1], axes[2]);
 
             SpotLight spotlight = new SpotLight();
             spotlight.setPower(intensity);
@@ -193,32 +144,22 @@ public class LoaderX3D extends AMeshLoader {
     }
 
     public Camera getParsedCamera() {
-        String value;
+        float[] values;
         Camera camera = new Camera();
         camera.setUpAxis(Vector3.Axis.Z);
 
-        Element viewpoint = (Element) mDoc.getDocumentElement().getElementsByTagName("Viewpoint").item(0);
+        X3DNode viewpoint = mDoc.findFirst("Viewpoint");
         if(viewpoint == null) return null;
 
-        value = viewpoint.getAttribute("position").trim();
-        if(value.length()>0) {
-            String[] translation = value.split("\\s+");
-            camera.setPosition(new Vector3(
-                    Float.parseFloat(translation[0]),
-                    Float.parseFloat(translation[1]),
-                    Float.parseFloat(translation[2])
-            ));
-        }
-
-        value = viewpoint.getAttribute("orientation").trim();
-        if(value.length()>0) {
-            String[] rotation = value.split("\\s+");
-            Vector3 axis = new Vector3(
-                    Double.parseDouble(rotation[0]),
-                    Double.parseDouble(rotation[1]),
-                    Double.parseDouble(rotation[2])
-            );
-            double angle = Math.toDegrees(Double.parseDouble(rotation[3]));
+        values = viewpoint.getFloats("position");
+        if(values != null && values.length > 0) {
+            camera.setPosition(new Vector3(values[0], values[1], values[2]));
+        }
+
+        values = viewpoint.getFloats("orientation");
+        if(values != null && values.length > 0) {
+            Vector3 axis = new Vector3(values[0], values[1], values[2]);
+            double angle = Math.toDegrees(values[3]);
             Quaternion q = new Quaternion(axis,-angle);
             q.normalize();
             camera.setOrientation(q);
@@ -226,112 +167,43 @@ public class LoaderX3D extends AMeshLoader {
         return camera;
     }
 
-    public List<Animation3D> getParsedAnimations() throws XPathExpressionException {
+    public List<Animation3D> getParsedAnimations() {
         Stack<Animation3D> animations = new Stack<>();
-        Element scene = (Element) mDoc.getDocumentElement().getElementsByTagName("Scene").item(0);
-        XPath xpath = xPathfactory.newXPath();
-
-        NodeList orientationInterpolator = scene.getElementsByTagName("OrientationInterpolator");
-        for(int i=0; i<orientationInterpolator.getLength(); i++) {
-            Node tag;
-            Node node;
-            NodeList nodes;
-            XPathExpression expr;
-
-            tag = orientationInterpolator.item(i).getAttributes().getNamedItem("DEF");
-            String id = tag.getNodeValue();
-            tag = orientationInterpolator.item(i).getAttributes().getNamedItem("keyValue");
-            ICurve4D path = parseAxisAngleTo4D(tag.getNodeValue().trim());
-
-            expr = xpath.compile("//ROUTE[@fromNode=\"" + id + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            String target = node.getAttributes().getNamedItem("toNode").getNodeValue().trim();
-
-            expr = xpath.compile("//ROUTE[@toNode=\"" + id + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            String source = node.getAttributes().getNamedItem("fromNode").getNodeValue().trim();
-
-            expr = xpath.compile("//TimeSensor[@DEF=\"" + source + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            double cycleInterval = Double.parseDouble(node.getAttributes().getNamedItem("cycleInterval").getNodeValue().trim());
-            boolean loop = Boolean.parseBoolean(node.getAttributes().getNamedItem("loop").getNodeValue().trim());
+        X3DNode scene = getScene();
+
+        for(X3DNode interpolator : scene.findAll("OrientationInterpolator")) {
+            String id = interpolator.getAttribute("DEF");
+            ICurve4D path = parseAxisAngleTo4D(interpolator.getFloats("keyValue"));
+            String target = findRoute("fromNode", id).getAttribute("toNode").trim();
+            X3DNode timeSensor = findTimeSensor(id);
 
             Animation3D anim = new SplineOrientationAnimation3D(path);
-            anim.setDurationDelta(cycleInterval);
+            anim.setDurationDelta(getCycleInterval(timeSensor));
             anim.setTransformable3D(findObjectByName(mRootObject, target));
-            if(loop) anim.setRepeatMode(Animation.RepeatMode.INFINITE);
+            if(isLoop(timeSensor)) anim.setRepeatMode(Animation.RepeatMode.INFINITE);
             animations.add(anim);
         }
 
-        NodeList positionInterpolator = scene.getElementsByTagName("PositionInterpolator");
-        for(int i=0; i<positionInterpolator.getLength(); i++) {
-            Node tag;
-            Node node;
-            NodeList nodes;
-            XPathExpression expr;
-
-            tag = positionInterpolator.item(i).getAttributes().getNamedItem("DEF");
-            String id = tag.getNodeValue();
-            tag = positionInterpolator.item(i).getAttributes().getNamedItem("keyValue");
-            ICurve3D path = parseEulerTo3D(tag.getNodeValue().trim());
-
-            expr = xpath.compile("//ROUTE[@fromNode=\"" + id + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            String target = node.getAttributes().getNamedItem("toNode").getNodeValue().trim();
-
-            expr = xpath.compile("//ROUTE[@toNode=\"" + id + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            String source = node.getAttributes().getNamedItem("fromNode").getNodeValue().trim();
-
-            expr = xpath.compile("//TimeSensor[@DEF=\"" + source + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            double cycleInterval = Double.parseDouble(node.getAttributes().getNamedItem("cycleInterval").getNodeValue().trim());
-            boolean loop = Boolean.parseBoolean(node.getAttributes().getNamedItem("loop").getNodeValue().trim());
+        for(X3DNode interpolator : scene.findAll("PositionInterpolator")) {
+            String id = interpolator.getAttribute("DEF");
+            ICurve3D path = parseEulerTo3D(interpolator.getFloats("keyValue"));
+            String target = findRoute("fromNode", id).getAttribute("toNode").trim();
+            X3DNode timeSensor = findTimeSensor(id);
 
             Animation3D anim = new SplineTranslateAnimation3D(path);
-            anim.setDurationDelta(cycleInterval);
+            anim.setDurationDelta(getCycleInterval(timeSensor));
             anim.setTransformable3D(findObjectByName(mRootObject, target));
             anim.setInterpolator(new LinearInterpolator());
-            if(loop) anim.setRepeatMode(Animation.RepeatMode.INFINITE);
+            if(isLoop(timeSensor)) anim.setRepeatMode(Animation.RepeatMode.INFINITE);
             animations.add(anim);
         }
 
-        NodeList normalInterpolator = scene.getElementsByTagName("NormalInterpolator");
-        for(int i=0; i<normalInterpolator.getLength(); i++) {
-            Node tag;
-            Node node;
-            NodeList nodes;
-            XPathExpression expr;
-
-            tag = normalInterpolator.item(i).getAttributes().getNamedItem("DEF");
-            String id = tag.getNodeValue();
-
-            expr = xpath.compile("//ROUTE[@fromNode=\"" + id + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            String targetLabel = node.getAttributes().getNamedItem("toNode").getNodeValue().trim();
-
-            expr = xpath.compile("//Normal[@DEF=\"" + targetLabel + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            String parent = node.getParentNode().getAttributes().getNamedItem("DEF").getNodeValue();
-
-            expr = xpath.compile("//ROUTE[@toNode=\"" + id + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            String source = node.getAttributes().getNamedItem("fromNode").getNodeValue().trim();
-
-            expr = xpath.compile("//TimeSensor[@DEF=\"" + source + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            double cycleInterval = Double.parseDouble(node.getAttributes().getNamedItem("cycleInterval").getNodeValue().trim());
-            boolean loop = Boolean.parseBoolean(node.getAttributes().getNamedItem("loop").getNodeValue().trim());
+        for(X3DNode interpolator : scene.findAll("NormalInterpolator")) {
+            String id = interpolator.getAttribute("DEF");
+            String targetLabel = findRoute("fromNode", id).getAttribute("toNode").trim();
+            X3DNode normal = mDoc.findFirst("Normal", "DEF", targetLabel);
+            String parent = normal.mParent.getAttribute("DEF");
+            X3DNode timeSensor = findTimeSensor(id);
 
             Object3D target = findObjectByName(mRootObject, parent);
             IKeyframes<Double, Vector3[]> keyframes = parseNormalKeyframes(id);
@@ -340,52 +212,60 @@ public class LoaderX3D extends AMeshLoader {
             }
 
             Animation3D anim = new KeyframeAnimation3D(NormalOverrideMaterialPlugin.class);
-            anim.setDurationDelta(cycleInterval);
+            anim.setDurationDelta(getCycleInterval(timeSensor));
             anim.setTransformable3D(target);
             anim.setInterpolator(new LinearInterpolator());
-            if(loop) anim.setRepeatMode(Animation.RepeatMode.INFINITE);
+            if(isLoop(timeSensor)) anim.setRepeatMode(Animation.RepeatMode.INFINITE);
             animations.add(anim);
         }
 
-        NodeList colorInterpolator = scene.getElementsByTagName("ColorInterpolator");
-        for(int i=0; i<colorInterpolator.getLength(); i++) {
-            Node tag;
-            Node node;
-            NodeList nodes;
-            XPathExpression expr;
-
-            tag = colorInterpolator.item(i).getAttributes().getNamedItem("DEF");
-            String id = tag.getNodeValue();
-            tag = colorInterpolator.item(i).getAttributes().getNamedItem("keyValue");
-            ICurve1D path = parseRGBToColor(tag.getNodeValue().trim());
-
-            expr = xpath.compile("//ROUTE[@fromNode=\"" + id + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            String target = node.getAttributes().getNamedItem("toNode").getNodeValue().trim();
-
-            expr = xpath.compile("//ROUTE[@toNode=\"" + id + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            String source = node.getAttributes().getNamedItem("fromNode").getNodeValue().trim();
-
-            expr = xpath.compile("//TimeSensor[@DEF=\"" + source + "\"]");
-            nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-            node = nodes.item(0);
-            double cycleInterval = Double.parseDouble(node.getAttributes().getNamedItem("cycleInterval").getNodeValue().trim());
-            boolean loop = Boolean.parseBoolean(node.getAttributes().getNamedItem("loop").getNodeValue().trim());
+        for(X3DNode interpolator : scene.findAll("ColorInterpolator")) {
+            String id = interpolator.getAttribute("DEF");
+            ICurve1D path = parseRGBToColor(interpolator.getFloats("keyValue"));
+            String target = findRoute("fromNode", id).getAttribute("toNode").trim();
+            X3DNode timeSensor = findTimeSensor(id);
 
             Animation3D anim = new SplineColorAnimation3D(path);
-            anim.setDurationDelta(cycleInterval);
+            anim.setDurationDelta(getCycleInterval(timeSensor));
             anim.setTransformable3D(findObjectByName(mRootObject, target));
             anim.setInterpolator(new LinearInterpolator());
-            if(loop) anim.setRepeatMode(Animation.RepeatMode.INFINITE);
+            if(isLoop(timeSensor)) anim.setRepeatMode(Animation.RepeatMode.INFINITE);
             animations.add(anim);
         }
 
         return animations;
     }
 
+    X3DNode findRoute(String end, String id) {
+        return mDoc.findFirst("ROUTE", end, id);
+    }
+
+    /**
+     * Follows the route into an interpolator back to the TimeSensor driving it.
+     */
+    X3DNode findTimeSensor(String interpolator) {
+        String source = findRoute("toNode", interpolator).getAttribute("fromNode").trim();
+        return mDoc.findFirst("TimeSensor", "DEF", source);
+    }
+
+    static double getCycleInterval(X3DNode timeSensor) {
+        return Double.parseDouble(timeSensor.getAttribute("cycleInterval").trim());
+    }
+
+    static boolean isLoop(X3DNode timeSensor) {
+        return Boolean.parseBoolean(timeSensor.getAttribute("loop").trim());
+    }
+
+    static float getFloat(X3DNode node, String name, float defaultValue) {
+        String value = node.getAttribute(name);
+        return value == null ? defaultValue : Float.parseFloat(value);
+    }
+
+    static float[] getFloats(X3DNode node, String name, float... defaultValues) {
+        float[] values = node.getFloats(name);
+        return values == null ? defaultValues : values;
+    }
+
     public Object3D findObjectByName(@NotNull Object3D obj, String name) {
         for (int i = 0, j = obj.getNumChildren(); i < j; i++) {
             Object3D found;
@@ -401,16 +281,11 @@ public class LoaderX3D extends AMeshLoader {
         return null;
     }
 
-    Path4D parseAxisAngleTo4D(@NotNull String keyValue) {
+    Path4D parseAxisAngleTo4D(@NotNull float[] values) {
         Path4D path = new Path4D();
-        String[] values = keyValue.split("\\s+");
         for(int i=0; i<values.length; i+=4) {
-            Vector3 axis = new Vector3(
-                    Double.parseDouble(values[i+0]),
-                    Double.parseDouble(values[i+1]),
-                    Double.parseDouble(values[i+2])
-            );
-            double angle = Math.toDegrees(Double.parseDouble(values[i+3]));
+            Vector3 axis = new Vector3(values[i+0], values[i+1], values[i+2]);
+            double angle = Math.toDegrees(values[i+3]);
             Quaternion point = new Quaternion(axis,-angle);
             point.normalize();
             path.addPoint(point);
@@ -418,113 +293,85 @@ public class LoaderX3D extends AMeshLoader {
         return path;
     }
 
-    Path3D parseEulerTo3D(@NotNull String keyValue) {
+    Path3D parseEulerTo3D(@NotNull float[] values) {
         Path3D path = new Path3D();
-        String[] values = keyValue.split("\\s+");
         for(int i=0; i<values.length; i+=3) {
-            Vector3 point = new Vector3(
-                    Double.parseDouble(values[i+0]),
-                    Double.parseDouble(values[i+1]),
-                    Double.parseDouble(values[i+2])
-            );
+            Vector3 point = new Vector3(values[i+0], values[i+1], values[i+2]);
             path.addPoint(point);
         }
         return path;
     }
 
-    ColorPath1D parseRGBToColor(@NotNull String keyValue) {
+    ColorPath1D parseRGBToColor(@NotNull float[] values) {
         ColorPath1D path = new ColorPath1D();
-        String[] values = keyValue.split("\\s+");
         for(int i=0; i<values.length; i+=3) {
             int point = Color.rgb(
-                    Math.round(Float.parseFloat(values[i+0]) * 255),
-                    Math.round(Float.parseFloat(values[i+1]) * 255),
-                    Math.round(Float.parseFloat(values[i+2]) * 255)
+                    Math.round(values[i+0] * 255),
+                    Math.round(values[i+1] * 255),
+                    Math.round(values[i+2] * 255)
             );
             path.addPoint(point);
         }
         return path;
     }
 
-    void parseTransform(Object3D parent, @NotNull Element transform) throws XPathExpressionException {
+    void parseTransform(Object3D parent, @NotNull X3DNode transform) {
         String value;
+        float[] values;
         Object3D object = new Object3D();
 
-        value = transform.getAttribute("DEF").trim();
-        if(value.length()>0) {
-            object.setName(value);
-        }
-
-        value = transform.getAttribute("scale").trim();
-        if(value.length()>0) {
-            String[] scale = value.split("\\s+");
-            object.setScale(new Vector3(
-                    Float.parseFloat(scale[0]),
-                    Float.parseFloat(scale[1]),
-                    Float.parseFloat(scale[2])
-            ));
-        }
-
-        value = transform.getAttribute("rotation").trim();
-        if(value.length()>0) {
-            String[] rotation = value.split("\\s+");
-            Quaternion q = new Quaternion(
-                    Float.parseFloat(rotation[0]),
-                    Float.parseFloat(rotation[1]),
-                    Float.parseFloat(rotation[2]),
-                    Float.parseFloat(rotation[2])
-            );
+        value = transform.getAttribute("DEF");
+        if(value != null && value.trim().length()>0) {
+            object.setName(value.trim());
+        }
+
+        values = transform.getFloats("scale");
+        if(values != null && values.length>0) {
+            object.setScale(new Vector3(values[0], values[1], values[2]));
+        }
+
+        values = transform.getFloats("rotation");
+        if(values != null && values.length>0) {
+            Quaternion q = new Quaternion(values[0], values[1], values[2], values[2]);
             q.normalize();
             object.rotate(q);
         }
 
-        value = transform.getAttribute("translation").trim();
-        if(value.length()>0) {
-            String[] translation = value.split("\\s+");
-            object.setPosition(new Vector3(
-                    Float.parseFloat(translation[0]),
-                    Float.parseFloat(translation[1]),
-                    Float.parseFloat(translation[2])
-            ));
+        values = transform.getFloats("translation");
+        if(values != null && values.length>0) {
+            object.setPosition(new Vector3(values[0], values[1], values[2]));
         }
         parent.addChild(object);
 
-        NodeList children = transform.getChildNodes();
-        for(int i=0; i<children.getLength(); i++) {
-            if(children.item(i).getNodeName().equals("Transform")) {
-                parseTransform(object, (Element) children.item(i));
+        for(X3DNode child : transform.mChildren) {
+            if(child.mName.equals("Transform")) {
+                parseTransform(object, child);
             }
-            if(children.item(i).getNodeName().equals("Shape")) {
-                parseShape(object, (Element) children.item(i));
+            if(child.mName.equals("Shape")) {
+                parseShape(object, child);
             }
-            if(children.item(i).getNodeName().equals("Group")) {
-                parseGroup(object, (Element) children.item(i));
+            if(child.mName.equals("Group")) {
+                parseGroup(object, child);
             }
         }
     }
 
-    void parseShape(Object3D parent, Element shape) throws XPathExpressionException {
-        Node node;
-        NodeList nodes;
-        XPathExpression expr;
-        XPath xpath = xPathfactory.newXPath();
+    void parseShape(Object3D parent, X3DNode shape) {
+        X3DNode node;
 
-        expr = xpath.compile(".//*[@DEF]");
-        nodes = (NodeList) expr.evaluate(shape, XPathConstants.NODESET);
-        node = nodes.item(0);
-        String name = (node==null) ? "" : node.getAttributes().getNamedItem("DEF").getNodeValue().trim();
+        node = shape.findFirst(null, "DEF", null);
+        String name = (node==null) ? "" : node.getAttribute("DEF").trim();
 
-        expr = xpath.compile(".//*[@solid]");
-        nodes = (NodeList) expr.evaluate(shape, XPathConstants.NODESET);
-        node = nodes.item(0);
+        node = shape.findFirst(null, "solid", null);
         boolean solid = false;
         if(node != null) {
-            String value = node.getAttributes().getNamedItem("solid").getNodeValue();
-            solid = Boolean.parseBoolean(value.trim());
+            solid = Boolean.parseBoolean(node.getAttribute("solid").trim());
         }
 
         Object3D obj = parseGeometry(shape);
         Material material = parseMaterial(shape);
+        // The geometry has been copied into the buffers of the object
+        shape.releaseArrays();
         if((obj != null) && (material != null)) {
             obj.setName(name);
             obj.setDoubleSided(solid);
@@ -533,36 +380,29 @@ public class LoaderX3D extends AMeshLoader {
         }
     }
 
-    void parseGroup(Object3D parent, @NotNull Element transform) throws XPathExpressionException {
-        NodeList children = transform.getChildNodes();
-        for(int i=0; i<children.getLength(); i++) {
-            if(children.item(i).getNodeName().equals("Transform")) {
-                parseTransform(parent, (Element) children.item(i));
+    void parseGroup(Object3D parent, @NotNull X3DNode group) {
+        for(X3DNode child : group.mChildren) {
+            if(child.mName.equals("Transform")) {
+                parseTransform(parent, child);
             }
-            if(children.item(i).getNodeName().equals("Shape")) {
-                parseShape(parent, (Element) children.item(i));
+            if(child.mName.equals("Shape")) {
+                parseShape(parent, child);
             }
         }
     }
 
-    Material parseMaterial(Element shape) {
+    Material parseMaterial(X3DNode shape) {
         Material material = new Material();
-        Node diffuseColor = null;
-        Node mat = shape.getElementsByTagName("Material").item(0);
+        float[] diffuseColor = null;
+        X3DNode mat = shape.findFirst("Material");
         if(mat != null) {
-            diffuseColor = mat.getAttributes().getNamedItem("diffuseColor");
+            diffuseColor = mat.getFloats("diffuseColor");
         }
 
         if(diffuseColor == null) {
             material.setColor(Color.WHITE);
         } else {
-            String[] colorChannels = diffuseColor.getNodeValue().split("\\s+");
-            float[] rgba = {
-                    Float.parseFloat(colorChannels[0]),
-                    Float.parseFloat(colorChannels[1]),
-                    Float.parseFloat(colorChannels[2]),
-                    1
-            };
+            float[] rgba = { diffuseColor[0], diffuseColor[1], diffuseColor[2], 1 };
             material.setColor(rgba);
             material.setDiffuseMethod(new DiffuseMethod.Lambert());
             material.enableLighting(true);
@@ -570,190 +410,126 @@ public class LoaderX3D extends AMeshLoader {
         return material;
     }
 
-    IKeyframes<Double, Vector3[]> parseNormalKeyframes(@NotNull String DEF) throws XPathExpressionException {
-        Node tag;
-        Node node;
-        NodeList nodes;
-        XPathExpression expr;
-        XPath xpath = xPathfactory.newXPath();
-        Element scene = (Element) mDoc.getDocumentElement().getElementsByTagName("Scene").item(0);
-        expr = xpath.compile("//NormalInterpolator[@DEF=\"" + DEF + "\"]");
-        nodes = (NodeList) expr.evaluate(scene, XPathConstants.NODESET);
-        node = nodes.item(0);
+    IKeyframes<Double, Vector3[]> parseNormalKeyframes(@NotNull String DEF) {
+        X3DNode node = mDoc.findFirst("NormalInterpolator", "DEF", DEF);
 
         Keyframes3D keyframes = new Keyframes3D();
-        tag = node.getAttributes().getNamedItem("key");
-        String[] keys = tag.getNodeValue().split("\\s+");
-        tag = node.getAttributes().getNamedItem("keyValue");
-        String[] values = tag.getNodeValue().split("\\s+");
+        float[] keys = node.getFloats("key");
+        float[] values = node.getFloats("keyValue");
+        if(keys == null || values == null) return null;
         if(keys.length < 1) return null;
         if(values.length < keys.length) return null;
 
         for(int i=0; i<keys.length; i++) {
             int framelength = values.length/keys.length;
-            double k = Double.parseDouble(keys[i]);
+            double k = keys[i];
             Vector3[] v = new Vector3[framelength/3];
             for(int j=0;j<v.length;j++) {
                 int offset = i * framelength + j * 3;
-                double x = Double.parseDouble(values[offset+0]);
-                double y = Double.parseDouble(values[offset+1]);
-                double z = Double.parseDouble(values[offset+2]);
-                v[j] = new Vector3(x,y,z);
+                v[j] = new Vector3(values[offset+0], values[offset+1], values[offset+2]);
             }
             keyframes.addPoint(k, v);
         }
         return keyframes;
     }
 
-    static Object3D parseGeometry(Element shape) {
+    static Object3D parseGeometry(X3DNode shape) {
         Object3D obj = null;
-        Node node;
+        X3DNode node;
 
-        node = shape.getElementsByTagName("Box").item(0);
+        node = shape.findFirst("Box");
         if(node != null) {
             obj =  parseBox(node);
         }
 
-        node = shape.getElementsByTagName("Cone").item(0);
+        node = shape.findFirst("Cone");
         if(node != null) {
             obj =  parseCone(node);
         }
 
-        node = shape.getElementsByTagName("Cylinder").item(0);
+        node = shape.findFirst("Cylinder");
         if(node != null) {
             obj =  parseCylinder(node);
         }
 
-        node = shape.getElementsByTagName("Sphere").item(0);
+        node = shape.findFirst("Sphere");
         if(node != null) {
             obj =  parseSphere(node);
         }
 
-        node = shape.getElementsByTagName("Plane").item(0);
+        node = shape.findFirst("Plane");
         if(node != null) {
             obj =  parsePlane(node);
         }
 
-        node = shape.getElementsByTagName("TriangleSet").item(0);
-        if(node instanceof Element) {
-            obj =  parseTriangleSet((Element) node);
+        node = shape.findFirst("TriangleSet");
+        if(node != null) {
+            obj =  parseTriangleSet(node);
         }
 
-        node = shape.getElementsByTagName("IndexedTriangleSet").item(0);
-        if(node instanceof Element) {
-            obj =  parseIndexedTriangleSet((Element) node);
+        node = shape.findFirst("IndexedTriangleSet");
+        if(node != null) {
+            obj =  parseIndexedTriangleSet(node);
         }
 
         return obj;
     }
 
-    static Object3D parseBox(Node box) {
+    static Object3D parseBox(X3DNode box) {
         Object3D obj = null;
         if (box != null) {
-            Node tag;
-            tag = box.getAttributes().getNamedItem("size");
-            if (tag == null) {
-                obj = new RectangularPrism(1, 1, 1);
-            } else {
-                String[] dimensions = tag.getNodeValue().split("\\s+");
-                float width = Float.parseFloat(dimensions[0]);
-                float height = Float.parseFloat(dimensions[1]);
-                float depth = Float.parseFloat(dimensions[2]);
-                obj = new RectangularPrism(width, height, depth);
-            }
+            float[] dimensions = getFloats(box, "size", 1, 1, 1);
+            obj = new RectangularPrism(dimensions[0], dimensions[1], dimensions[2]);
         }
         return obj;
     }
 
-    static Object3D parseCone(Node cone) {
+    static Object3D parseCone(X3DNode cone) {
         Object3D obj = null;
         if(cone != null) {
-            Node tag;
-            tag = cone.getAttributes().getNamedItem("height");
-            float height = tag==null ? 1 : Float.parseFloat(tag.getNodeValue());
-            tag = cone.getAttributes().getNamedItem("bottomRadius");
-            float radiusBottom = tag==null ? 1 : Float.parseFloat(tag.getNodeValue());
+            float height = getFloat(cone, "height", 1);
+            float radiusBottom = getFloat(cone, "bottomRadius", 1);
             obj = new NPrism(16,0,radiusBottom,height);
         }
         return obj;
     }
 
-    static Object3D parseCylinder(Node cylinder) {
+    static Object3D parseCylinder(X3DNode cylinder) {
         Object3D obj = null;
         if(cylinder != null) {
-            Node tag;
-            tag = cylinder.getAttributes().getNamedItem("height");
-            float length = tag==null ? 1 : Float.parseFloat(tag.getNodeValue());
-            tag = cylinder.getAttributes().getNamedItem("radius");
-            float radius = tag==null ? 1 : Float.parseFloat(tag.getNodeValue());
+            float length = getFloat(cylinder, "height", 1);
+            float radius = getFloat(cylinder, "radius", 1);
             obj = new Cylinder(length,radius,1,16);
         }
         return obj;
     }
 
-    static Object3D parseSphere(Node sphere) {
+    static Object3D parseSphere(X3DNode sphere) {
         Object3D obj = null;
         if(sphere != null) {
-            Node tag;
-            tag = sphere.getAttributes().getNamedItem("radius");
-            float radius = tag==null ? 1 : Float.parseFloat(tag.getNodeValue());
+            float radius = getFloat(sphere, "radius", 1);
             obj = new Sphere(radius,32,16);
         }
         return obj;
     }
 
-    static Object3D parsePlane(Node plane) {
+    static Object3D parsePlane(X3DNode plane) {
         Object3D obj = null;
         if(plane != null) {
-            Node tag;
-            tag = plane.getAttributes().getNamedItem("size");
-            String[] dimensions = tag.getNodeValue().split("\\s+");
-            float width  = Float.parseFloat(dimensions[0]);
-            float height = Float.parseFloat(dimensions[1]);
-            obj = new Plane(width, height, 1,1);
+            float[] dimensions = plane.getFloats("size");
+            obj = new Plane(dimensions[0], dimensions[1], 1,1);
         }
         return obj;
     }
 
 
-    static Object3D parseTriangleSet(Element triangleSet) {
+    static Object3D parseTriangleSet(X3DNode triangleSet) {
         Object3D obj = null;
         if(triangleSet != null) {
-            Node tag;
-            String[] values;
-
-            Node coordinate = triangleSet.getElementsByTagName("Coordinate").item(0);
-            tag = coordinate.getAttributes().getNamedItem("point");
-            values = tag.getNodeValue().trim().split("\\s+");
-            float[] vertices = new float[values.length];
-            for(int i=0; i<values.length; i++) vertices[i] = Float.parseFloat(values[i]);
-
-            float[] normals = null;
-            Node normal = triangleSet.getElementsByTagName("Normal").item(0);
-            if(normal!=null) {
-                tag = normal.getAttributes().getNamedItem("vector");
-                values = tag.getNodeValue().trim().split("\\s+");
-                normals = new float[values.length];
-                for(int i=0; i<values.length; i++) normals[i] = Float.parseFloat(values[i]);
-            }
-
-            float[] texcoords = null;
-            Node texcoord = triangleSet.getElementsByTagName("TextureCoordinate").item(0);
-            if(texcoord!=null) {
-                tag = texcoord.getAttributes().getNamedItem("point");
-                values = tag.getNodeValue().trim().split("\\s+");
-                texcoords = new float[values.length];
-                for(int i=0; i<values.length; i++) texcoords[i] = Float.parseFloat(values[i]);
-            }
-
-            float[] colors = null;
-            Node color = triangleSet.getElementsByTagName("Color").item(0);
-            if(color!=null) {
-                tag = color.getAttributes().getNamedItem("color");
-                values = tag.getNodeValue().trim().split("\\s+");
-                colors = new float[values.length];
-                for(int i=0; i<values.length; i++) colors[i] = Float.parseFloat(values[i]);
-            }
+            float[] vertices = triangleSet.findFirst("Coordinate").getFloats("point");
+            float[] normals = getArray(triangleSet, "Normal", "vector");
+            float[] texcoords = getArray(triangleSet, "TextureCoordinate", "point");
+            float[] colors = getArray(triangleSet, "Color", "color");
 
             obj = new TriangleSet(vertices, normals, texcoords, colors, true);
         }
@@ -761,49 +537,14 @@ public class LoaderX3D extends AMeshLoader {
         return obj;
     }
 
-    static Object3D parseIndexedTriangleSet(Element indexedTriangleSet) {
+    static Object3D parseIndexedTriangleSet(X3DNode indexedTriangleSet) {
         Object3D obj = null;
         if(indexedTriangleSet != null) {
-            Node tag;
-            String[] values;
-
-            tag = indexedTriangleSet.getAttributes().getNamedItem("index");
-            values = tag.getNodeValue().trim().split("\\s+");
-            int[] indices = new int[values.length];
-            for(int i=0; i<values.length; i++) indices[i] = Integer.parseInt(values[i]);
-
-            Node coordinate = indexedTriangleSet.getElementsByTagName("Coordinate").item(0);
-            tag = coordinate.getAttributes().getNamedItem("point");
-            values = tag.getNodeValue().trim().split("\\s+");
-            float[] vertices = new float[values.length];
-            for(int i=0; i<values.length; i++) vertices[i] = Float.parseFloat(values[i]);
-
-            float[] normals = null;
-            Node normal = indexedTriangleSet.getElementsByTagName("Normal").item(0);
-            if(normal!=null) {
-                tag = normal.getAttributes().getNamedItem("vector");
-                values = tag.getNodeValue().trim().split("\\s+");
-                normals = new float[values.length];
-                for(int i=0; i<values.length; i++) normals[i] = Float.parseFloat(values[i]);
-            }
-
-            float[] texcoords = null;
-            Node texcoord = indexedTriangleSet.getElementsByTagName("TextureCoordinate").item(0);
-            if(texcoord!=null) {
-                tag = texcoord.getAttributes().getNamedItem("point");
-                values = tag.getNodeValue().trim().split("\\s+");
-                texcoords = new float[values.length];
-                for(int i=0; i<values.length; i++) texcoords[i] = Float.parseFloat(values[i]);
-            }
-
-            float[] colors = null;
-            Node color = indexedTriangleSet.getElementsByTagName("Color").item(0);
-            if(color!=null) {
-                tag = color.getAttributes().getNamedItem("color");
-                values = tag.getNodeValue().trim().split("\\s+");
-                colors = new float[values.length];
-                for(int i=0; i<values.length; i++) colors[i] = Float.parseFloat(values[i]);
-            }
+            int[] indices = indexedTriangleSet.getInts("index");
+            float[] vertices = indexedTriangleSet.findFirst("Coordinate").getFloats("point");
+            float[] normals = getArray(indexedTriangleSet, "Normal", "vector");
+            float[] texcoords = getArray(indexedTriangleSet, "TextureCoordinate", "point");
+            float[] colors = getArray(indexedTriangleSet, "Color", "color");
 
             obj = new IndexedTriangleSet(vertices, normals, texcoords, colors, indices, true);
         }
@@ -811,6 +552,14 @@ public class LoaderX3D extends AMeshLoader {
         return obj;
     }
 
+    /**
+     * @return The values of an attribute of the first child element with the given name, or null if there is none.
+     */
+    static float[] getArray(X3DNode geometry, String element, String attribute) {
+        X3DNode node = geometry.findFirst(element);
+        return node == null ? null : node.getFloats(attribute);
+    }
+
     static class TriangleSet extends Object3D {
 
         public TriangleSet(        float[] vertices,
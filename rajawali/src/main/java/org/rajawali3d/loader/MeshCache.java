@@ -0,0 +1,574 @@
+package org.rajawali3d.loader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.bounds.BoundingBox;
+import org.rajawali3d.materials.Material;
+import org.rajawali3d.materials.methods.DiffuseMethod;
+import org.rajawali3d.materials.textures.ATexture;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary form of a parsed {@link Object3D} hierarchy which is read back without any parsing. Everything is little
+ * endian and every vertex and index section starts at a multiple of four bytes, so a memory mapped cache is handed to
+ * {@link Geometry3D#setData(FloatBuffer, FloatBuffer, FloatBuffer, Buffer, boolean)} as views of the mapping instead
+ * of being copied element by element. The file holds:
+ * <ul>
+ * <li>A header with {@link #MAGIC}, {@link #VERSION}, the number of materials and the number of nodes.</li>
+ * <li>One record per distinct material: color, color influence, lighting and the names of its textures. Materials
+ * themselves are not stored, a {@link MaterialFactory} creates them again from these references.</li>
+ * <li>One record per node in depth first order: parent, name, flags, drawing mode, material, position, orientation
+ * and scale. Meshes follow with their counts, bounds, vertices, optional normals, texture coordinates and colors and
+ * their short or int indices.</li>
+ * </ul>
+ * Geometries are written as the loaders create them, before quantization into a {@link org.rajawali3d.VertexFormat}.
+ */
+public final class MeshCache {
+
+    /**
+     * File name extension of cache files.
+     */
+    public static final String EXTENSION = ".rmc";
+
+    /**
+     * "RJMC" read as a little endian int.
+     */
+    static final int MAGIC   = 0x434d4a52;
+    static final int VERSION = 1;
+
+    private static final int NODE_CONTAINER    = 1;
+    private static final int NODE_VISIBLE      = 1 << 1;
+    private static final int NODE_DOUBLE_SIDED = 1 << 2;
+    private static final int NODE_BACK_SIDED   = 1 << 3;
+    private static final int NODE_TRANSPARENT  = 1 << 4;
+    private static final int NODE_GEOMETRY     = 1 << 5;
+
+    private static final int GEOMETRY_NORMALS        = 1;
+    private static final int GEOMETRY_TEXTURE_COORDS = 1 << 1;
+    private static final int GEOMETRY_COLORS         = 1 << 2;
+    private static final int GEOMETRY_INT_INDICES    = 1 << 3;
+
+    private static final int MATERIAL_LIGHTING = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * What the cache knows about the material of a node.
+     */
+    public static final class MaterialReference {
+
+        /**
+         * Index of the material in the cache, nodes which shared a material share the index.
+         */
+        public final int      index;
+        public final int      color;
+        public final float    colorInfluence;
+        public final boolean  lighting;
+        /**
+         * {@link ATexture#getTextureName()} of every texture of the material, in order.
+         */
+        @NonNull
+        public final String[] textureNames;
+
+        MaterialReference(int index, int color, float colorInfluence, boolean lighting,
+                          @NonNull String[] textureNames) {
+            this.index = index;
+            this.color = color;
+            this.colorInfluence = colorInfluence;
+            this.lighting = lighting;
+            this.textureNames = textureNames;
+        }
+    }
+
+    /**
+     * Creates the materials of a cached hierarchy, once per {@link MaterialReference}.
+     */
+    public interface MaterialFactory {
+        @NonNull
+        Material createMaterial(@NonNull MaterialReference reference);
+    }
+
+    /**
+     * Creates materials with the stored color and lighting. Textures are only known by name, so models with textures
+     * need a factory which loads them.
+     */
+    public static final MaterialFactory COLOR_MATERIALS = new MaterialFactory() {
+        @NonNull
+        @Override
+        public Material createMaterial(@NonNull MaterialReference reference) {
+            final Material material = new Material();
+            material.setColor(reference.color);
+            material.setColorInfluence(reference.colorInfluence);
+            if (reference.lighting) {
+                material.enableLighting(true);
+                material.setDiffuseMethod(new DiffuseMethod.Lambert());
+            }
+            return material;
+        }
+    };
+
+    private MeshCache() {
+    }
+
+    /**
+     * Writes a hierarchy to a file. The data goes to a temporary file first which is then renamed, so an interrupted
+     * write never leaves a partial cache behind.
+     *
+     * @param root {@link Object3D} to write with all its children.
+     * @param file {@link File} to write to.
+     *
+     * @throws IOException If the file can not be written.
+     * @throws IllegalStateException If a mesh has been quantized, interleaved or has released its data.
+     */
+    public static void write(@NonNull Object3D root, @NonNull File file) throws IOException {
+        final File temporary = new File(file.getPath() + ".tmp");
+        final FileOutputStream stream = new FileOutputStream(temporary);
+        try {
+            write(root, stream.getChannel());
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            temporary.delete();
+            throw e;
+        }
+        stream.close();
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Unable to move the mesh cache to " + file);
+        }
+    }
+
+    /**
+     * Writes a hierarchy to a channel.
+     *
+     * @param root    {@link Object3D} to write with all its children.
+     * @param channel {@link WritableByteChannel} to write to.
+     *
+     * @throws IOException If the channel can not be written.
+     * @throws IllegalStateException If a mesh has been quantized, interleaved or has released its data.
+     */
+    public static void write(@NonNull Object3D root, @NonNull WritableByteChannel channel) throws IOException {
+        final List<Object3D> nodes = new ArrayList<>();
+        final List<Integer> parents = new ArrayList<>();
+        collect(root, -1, nodes, parents);
+        final Map<Material, Integer> materialIndices = new IdentityHashMap<>();
+        final List<Material> materials = new ArrayList<>();
+        for (Object3D node : nodes) {
+            final Material material = node.getMaterial();
+            if (material != null && !materialIndices.containsKey(material)) {
+                materialIndices.put(material, materials.size());
+                materials.add(material);
+            }
+        }
+
+        final Output output = new Output(channel);
+        output.putInt(MAGIC);
+        output.putInt(VERSION);
+        output.putInt(materials.size());
+        output.putInt(nodes.size());
+        for (Material material : materials) {
+            output.putInt(material.getColor());
+            output.putFloat(material.getColorInfluence());
+            output.putInt(material.lightingEnabled() ? MATERIAL_LIGHTING : 0);
+            final List<ATexture> textures = material.getTextureList();
+            output.putInt(textures.size());
+            for (ATexture texture : textures) {
+                output.putString(texture.getTextureName());
+            }
+        }
+        for (int i = 0; i < nodes.size(); ++i) {
+            final Object3D node = nodes.get(i);
+            final Material material = node.getMaterial();
+            final boolean hasGeometry = !node.isContainer() && node.getGeometry().getNumIndices() > 0;
+            output.putInt(parents.get(i));
+            output.putString(node.getName());
+            output.putInt((node.isContainer() ? NODE_CONTAINER : 0) | (node.isVisible() ? NODE_VISIBLE : 0)
+                          | (node.isDoubleSided() ? NODE_DOUBLE_SIDED : 0)
+                          | (node.isBackSided() ? NODE_BACK_SIDED : 0)
+                          | (node.isTransparent() ? NODE_TRANSPARENT : 0) | (hasGeometry ? NODE_GEOMETRY : 0));
+            output.putInt(node.getDrawingMode());
+            output.putInt(material == null ? -1 : materialIndices.get(material));
+            final Vector3 position = node.getPosition();
+            final Quaternion orientation = node.getOrientation();
+            final Vector3 scale = node.getScale();
+            output.putDouble(position.x);
+            output.putDouble(position.y);
+            output.putDouble(position.z);
+            output.putDouble(orientation.w);
+            output.putDouble(orientation.x);
+            output.putDouble(orientation.y);
+            output.putDouble(orientation.z);
+            output.putDouble(scale.x);
+            output.putDouble(scale.y);
+            output.putDouble(scale.z);
+            if (hasGeometry) {
+                writeGeometry(node.getGeometry(), output);
+            }
+        }
+        output.flush();
+    }
+
+    private static void collect(Object3D node, int parent, List<Object3D> nodes, List<Integer> parents) {
+        final int index = nodes.size();
+        nodes.add(node);
+        parents.add(parent);
+        for (int i = 0, j = node.getNumChildren(); i < j; ++i) {
+            collect(node.getChildAt(i), index, nodes, parents);
+        }
+    }
+
+    private static void writeGeometry(Geometry3D geometry, Output output) throws IOException {
+        if (geometry.getVertexFormat() != null) {
+            throw new IllegalStateException("Quantized or interleaved geometries can not be cached.");
+        }
+        final FloatBuffer vertices = geometry.getVertices();
+        final Buffer indices = geometry.getIndices();
+        if (vertices == null || indices == null) {
+            throw new IllegalStateException("Geometries which released their data can not be cached.");
+        }
+        final int numVertices = geometry.getNumVertices();
+        final FloatBuffer normals = geometry.hasNormals() ? geometry.getNormals() : null;
+        final FloatBuffer textureCoords = geometry.hasTextureCoordinates() ? geometry.getTextureCoords() : null;
+        final FloatBuffer colors = geometry.getColors();
+        final boolean intIndices = indices instanceof IntBuffer;
+        output.putInt(numVertices);
+        output.putInt(geometry.getNumIndices());
+        output.putInt((normals != null ? GEOMETRY_NORMALS : 0) | (textureCoords != null ? GEOMETRY_TEXTURE_COORDS : 0)
+                      | (colors != null ? GEOMETRY_COLORS : 0) | (intIndices ? GEOMETRY_INT_INDICES : 0));
+        final BoundingBox bounds = geometry.getBoundingBox();
+        final Vector3 min = bounds.getMin();
+        final Vector3 max = bounds.getMax();
+        output.putFloat((float) min.x);
+        output.putFloat((float) min.y);
+        output.putFloat((float) min.z);
+        output.putFloat((float) max.x);
+        output.putFloat((float) max.y);
+        output.putFloat((float) max.z);
+        output.putFloats(vertices, numVertices * 3);
+        if (normals != null) {
+            output.putFloats(normals, numVertices * 3);
+        }
+        if (textureCoords != null) {
+            output.putFloats(textureCoords, numVertices * 2);
+        }
+        if (colors != null) {
+            output.putFloats(colors, numVertices * 4);
+        }
+        if (intIndices) {
+            output.putInts((IntBuffer) indices, geometry.getNumIndices());
+        } else {
+            output.putShorts((ShortBuffer) indices, geometry.getNumIndices());
+        }
+    }
+
+    /**
+     * Maps a cache file and reads the hierarchy it holds. The vertex and index buffers of the meshes are views of the
+     * mapping on little endian devices. The mapping is private, so changing a buffer never changes the file.
+     *
+     * @param file      {@link File} written by {@link #write(Object3D, File)}.
+     * @param materials {@link MaterialFactory} for the materials of the nodes.
+     *
+     * @return The root {@link Object3D}.
+     *
+     * @throws IOException If the file can not be read or is not a valid cache.
+     */
+    @NonNull
+    public static Object3D read(@NonNull File file, @NonNull MaterialFactory materials) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            return read(channel.map(FileChannel.MapMode.PRIVATE, 0, channel.size()), materials);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Reads a hierarchy from a buffer holding a cache. Sections are sliced out of direct buffers in little endian
+     * byte order and copied otherwise.
+     *
+     * @param data      {@link ByteBuffer} holding the cache from its position on.
+     * @param materials {@link MaterialFactory} for the materials of the nodes.
+     *
+     * @return The root {@link Object3D}.
+     *
+     * @throws IOException If the data is not a valid cache.
+     */
+    @NonNull
+    public static Object3D read(@NonNull ByteBuffer data, @NonNull MaterialFactory materials) throws IOException {
+        final ByteBuffer input = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (input.getInt() != MAGIC) {
+                throw new IOException("Not a mesh cache.");
+            }
+            final int version = input.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported mesh cache version " + version + ".");
+            }
+            final Material[] materialTable = new Material[input.getInt()];
+            final Object3D[] nodes = new Object3D[input.getInt()];
+            if (nodes.length == 0) {
+                throw new IOException("The mesh cache is empty.");
+            }
+            for (int i = 0; i < materialTable.length; ++i) {
+                final int color = input.getInt();
+                final float colorInfluence = input.getFloat();
+                final boolean lighting = (input.getInt() & MATERIAL_LIGHTING) != 0;
+                final String[] textureNames = new String[input.getInt()];
+                for (int j = 0; j < textureNames.length; ++j) {
+                    textureNames[j] = getString(input);
+                }
+                materialTable[i] = materials.createMaterial(
+                        new MaterialReference(i, color, colorInfluence, lighting, textureNames));
+            }
+            for (int i = 0; i < nodes.length; ++i) {
+                final int parent = input.getInt();
+                if (parent >= i || (parent < 0) != (i == 0)) {
+                    throw new IOException("Invalid parent " + parent + " of node " + i + ".");
+                }
+                final Object3D node = new Object3D(getString(input));
+                final int flags = input.getInt();
+                node.setDrawingMode(input.getInt());
+                final int material = input.getInt();
+                if (material >= 0) {
+                    node.setMaterial(materialTable[material]);
+                }
+                node.setPosition(input.getDouble(), input.getDouble(), input.getDouble());
+                node.setOrientation(new Quaternion(input.getDouble(), input.getDouble(), input.getDouble(),
+                                                   input.getDouble()));
+                node.setScale(input.getDouble(), input.getDouble(), input.getDouble());
+                if ((flags & NODE_GEOMETRY) != 0) {
+                    readGeometry(node.getGeometry(), input);
+                }
+                node.isContainer((flags & NODE_CONTAINER) != 0);
+                node.setVisible((flags & NODE_VISIBLE) != 0);
+                node.setDoubleSided((flags & NODE_DOUBLE_SIDED) != 0);
+                node.setBackSided((flags & NODE_BACK_SIDED) != 0);
+                if ((flags & NODE_TRANSPARENT) != 0) {
+                    node.setTransparent(true);
+                }
+                nodes[i] = node;
+                if (parent >= 0) {
+                    nodes[parent].addChild(node);
+                }
+            }
+            return nodes[0];
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("The mesh cache is truncated or corrupt.", e);
+        }
+    }
+
+    private static void readGeometry(Geometry3D geometry, ByteBuffer input) {
+        final int numVertices = input.getInt();
+        final int numIndices = input.getInt();
+        final int flags = input.getInt();
+        final Vector3 min = new Vector3(input.getFloat(), input.getFloat(), input.getFloat());
+        final Vector3 max = new Vector3(input.getFloat(), input.getFloat(), input.getFloat());
+        final FloatBuffer vertices = getFloats(input, numVertices * 3);
+        final FloatBuffer normals = (flags & GEOMETRY_NORMALS) != 0 ? getFloats(input, numVertices * 3) : null;
+        final FloatBuffer textureCoords = (flags & GEOMETRY_TEXTURE_COORDS) != 0
+                                          ? getFloats(input, numVertices * 2) : null;
+        final FloatBuffer colors = (flags & GEOMETRY_COLORS) != 0 ? getFloats(input, numVertices * 4) : null;
+        final Buffer indices = (flags & GEOMETRY_INT_INDICES) != 0
+                               ? getInts(input, numIndices) : getShorts(input, numIndices);
+        geometry.setData(vertices, normals, textureCoords, indices, false);
+        if (colors != null) {
+            geometry.getBufferInfo(Geometry3D.COLOR_BUFFER_KEY).buffer = colors;
+        }
+        geometry.setBoundingBox(new BoundingBox(min, max));
+    }
+
+    @Nullable
+    private static String getString(ByteBuffer input) {
+        final int length = input.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        input.get(bytes);
+        input.position(align(input.position()));
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Returns the next {@code length} bytes as a little endian buffer and moves past them and their padding.
+     */
+    private static ByteBuffer getSection(ByteBuffer input, int length) {
+        if (length < 0 || length > input.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final ByteBuffer section = input.duplicate();
+        section.limit(input.position() + length);
+        input.position(Math.min(align(input.position() + length), input.limit()));
+        return section.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static boolean isUsable(Buffer view, ByteOrder order) {
+        return view.isDirect() && order == ByteOrder.nativeOrder();
+    }
+
+    private static FloatBuffer getFloats(ByteBuffer input, int count) {
+        final FloatBuffer view = getSection(input, count * 4).asFloatBuffer();
+        if (isUsable(view, view.order())) {
+            return view;
+        }
+        final FloatBuffer copy = ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        copy.put(view).position(0);
+        return copy;
+    }
+
+    private static ShortBuffer getShorts(ByteBuffer input, int count) {
+        final ShortBuffer view = getSection(input, count * 2).asShortBuffer();
+        if (isUsable(view, view.order())) {
+            return view;
+        }
+        final ShortBuffer copy = ByteBuffer.allocateDirect(count * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        copy.put(view).position(0);
+        return copy;
+    }
+
+    private static IntBuffer getInts(ByteBuffer input, int count) {
+        final IntBuffer view = getSection(input, count * 4).asIntBuffer();
+        if (isUsable(view, view.order())) {
+            return view;
+        }
+        final IntBuffer copy = ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        copy.put(view).position(0);
+        return copy;
+    }
+
+    private static int align(int position) {
+        return (position + 3) & ~3;
+    }
+
+    /**
+     * Little endian writer which stages values in a heap buffer and keeps track of the alignment of the file.
+     */
+    private static final class Output {
+
+        private final WritableByteChannel mChannel;
+        private final ByteBuffer          mStaging = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        private       long                mWritten;
+
+        Output(WritableByteChannel channel) {
+            mChannel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            mStaging.putInt(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            ensure(4);
+            mStaging.putFloat(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            mStaging.putDouble(value);
+        }
+
+        void putString(@Nullable String value) throws IOException {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            final byte[] bytes = value.getBytes(UTF_8);
+            putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                final int count = Math.min(mStaging.remaining(), bytes.length - offset);
+                mStaging.put(bytes, offset, count);
+                offset += count;
+            }
+            pad();
+        }
+
+        void putFloats(FloatBuffer values, int count) throws IOException {
+            final FloatBuffer source = values.duplicate();
+            source.position(0).limit(count);
+            while (source.hasRemaining()) {
+                ensure(4);
+                final int run = Math.min(mStaging.remaining() / 4, source.remaining());
+                final int limit = source.limit();
+                source.limit(source.position() + run);
+                mStaging.asFloatBuffer().put(source);
+                source.limit(limit);
+                mStaging.position(mStaging.position() + run * 4);
+            }
+        }
+
+        void putInts(IntBuffer values, int count) throws IOException {
+            final IntBuffer source = values.duplicate();
+            source.position(0).limit(count);
+            while (source.hasRemaining()) {
+                ensure(4);
+                final int run = Math.min(mStaging.remaining() / 4, source.remaining());
+                final int limit = source.limit();
+                source.limit(source.position() + run);
+                mStaging.asIntBuffer().put(source);
+                source.limit(limit);
+                mStaging.position(mStaging.position() + run * 4);
+            }
+        }
+
+        void putShorts(ShortBuffer values, int count) throws IOException {
+            final ShortBuffer source = values.duplicate();
+            source.position(0).limit(count);
+            while (source.hasRemaining()) {
+                ensure(2);
+                final int run = Math.min(mStaging.remaining() / 2, source.remaining());
+                final int limit = source.limit();
+                source.limit(source.position() + run);
+                mStaging.asShortBuffer().put(source);
+                source.limit(limit);
+                mStaging.position(mStaging.position() + run * 2);
+            }
+            pad();
+        }
+
+        void flush() throws IOException {
+            mStaging.flip();
+            while (mStaging.hasRemaining()) {
+                mWritten += mChannel.write(mStaging);
+            }
+            mStaging.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (mStaging.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void pad() throws IOException {
+            while (((mWritten + mStaging.position()) & 3) != 0) {
+                ensure(1);
+                mStaging.put((byte) 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,583 @@
+package org.rajawali3d.loader;
+
+import androidx.annotation.NonNull;
+
+import org.rajawali3d.util.AsciiNumberParser;
+import org.rajawali3d.util.FloatArrayList;
+import org.rajawali3d.util.IntArrayList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the geometry of Wavefront OBJ data straight from bytes. Vertex, texture coordinate and normal statements are
+ * parsed into primitive lists and face statements into the index lists given by
+ * {@link #setFaceTarget(IntArrayList, IntArrayList, IntArrayList)}, neither creating a {@link String} nor boxing a
+ * single value. The few remaining statements, such as {@code g}, {@code o} or {@code usemtl}, are passed on as
+ * strings to a {@link StatementListener}.
+ *
+ * Tokens are split exactly as {@link LoaderOBJ} always did, so parsed data is identical: texture coordinates are
+ * flipped vertically, quads are split into two triangles, negative indices count back from the last element read and
+ * every index is made zero based.
+ *
+ * Data held in memory can also be parsed on several threads with
+ * {@link #parse(byte[], int, ExecutorService, int)}, which gives the same result.
+ */
+public class ObjParser {
+
+    /**
+     * Receives every statement which is not a {@code v}, {@code vt}, {@code vn} or {@code f}.
+     */
+    public interface StatementListener {
+
+        void onStatement(@NonNull String line) throws ParsingException;
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Smallest chunk worth parsing on a thread of its own.
+     */
+    static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * Corners of the two triangles a quad is split into.
+     */
+    private static final int[] QUAD_TRIANGLES = { 0, 1, 2, 0, 2, 3 };
+
+    private final StatementListener mListener;
+    private final FloatArrayList    mVertices  = new FloatArrayList(1024);
+    private final FloatArrayList    mTexCoords = new FloatArrayList(1024);
+    private final FloatArrayList    mNormals   = new FloatArrayList(1024);
+    private final int[]             mQuadVertexIndices   = new int[4];
+    private final int[]             mQuadTexCoordIndices = new int[4];
+    private final int[]             mQuadNormalIndices   = new int[4];
+    private IntArrayList            mVertexIndices;
+    private IntArrayList            mTexCoordIndices;
+    private IntArrayList            mNormalIndices;
+
+    /**
+     * Positions of the indices which were given relative to the end of their list. Only recorded for a chunk, whose
+     * indices are made absolute once the number of elements read before it is known.
+     */
+    private IntArrayList mRelativeVertexIndices;
+    private IntArrayList mRelativeTexCoordIndices;
+    private IntArrayList mRelativeNormalIndices;
+
+    /**
+     * A line ending in a backslash, waiting to be joined with the next one. Its length is -1 while there is none.
+     */
+    private byte[] mContinuedLine = new byte[256];
+    private int    mContinuedLength = -1;
+
+    public ObjParser(@NonNull StatementListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Sets the lists the indices of following faces are added to.
+     */
+    public void setFaceTarget(@NonNull IntArrayList vertexIndices, @NonNull IntArrayList texCoordIndices,
+                              @NonNull IntArrayList normalIndices) {
+        mVertexIndices = vertexIndices;
+        mTexCoordIndices = texCoordIndices;
+        mNormalIndices = normalIndices;
+    }
+
+    /**
+     * Parses a whole stream. Lines end at {@code \n}, {@code \r} or {@code \r\n} like those read by
+     * {@link java.io.BufferedReader#readLine()}. The stream is not closed.
+     */
+    public void parse(@NonNull InputStream stream) throws IOException, ParsingException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int filled = 0;
+        boolean skipLineFeed = false;
+        int read;
+        while ((read = stream.read(buffer, filled, buffer.length - filled)) >= 0) {
+            int start = 0;
+            int i = filled;
+            final int end = filled + read;
+            if (skipLineFeed && read > 0) {
+                // The previous read ended between a \r and its \n
+                skipLineFeed = false;
+                if (buffer[i] == '\n') {
+                    start = ++i;
+                }
+            }
+            for (; i < end; ++i) {
+                final byte b = buffer[i];
+                if (b != '\n' && b != '\r') {
+                    continue;
+                }
+                onLine(buffer, start, i);
+                if (b == '\r') {
+                    if (i + 1 < end) {
+                        if (buffer[i + 1] == '\n') {
+                            ++i;
+                        }
+                    } else {
+                        skipLineFeed = true;
+                    }
+                }
+                start = i + 1;
+            }
+            filled = end - start;
+            if (start == 0 && filled == buffer.length) {
+                // A single line fills the whole buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            } else {
+                System.arraycopy(buffer, start, buffer, 0, filled);
+            }
+        }
+        if (filled > 0) {
+            onLine(buffer, 0, filled);
+        }
+        finish();
+    }
+
+    /**
+     * Parses data on several threads, with the same result as {@link #parse(InputStream)}. The data is split into
+     * chunks at line breaks, every chunk is parsed into lists of its own with its statements recorded. The chunks are
+     * then merged in order: elements are appended, relative indices made absolute and every statement is passed to
+     * the listener right between the faces before and after it, so face targets change at the same faces they would
+     * sequentially.
+     *
+     * @param data       {@code byte[]} OBJ data.
+     * @param length     {@code int} Number of valid bytes.
+     * @param executor   {@link ExecutorService} the chunks are parsed on. The calling thread only waits and merges, so
+     *                   this must not be an executor whose threads could all be waiting for this call.
+     * @param chunkCount {@code int} Number of chunks to split into. Fewer are used for small data.
+     */
+    public void parse(@NonNull byte[] data, int length, @NonNull ExecutorService executor, int chunkCount)
+            throws ParsingException, InterruptedException {
+        final int[] bounds = split(data, length, chunkCount);
+        final List<Future<Chunk>> futures = new ArrayList<>(bounds.length - 1);
+        for (int i = 0; i < bounds.length - 1; ++i) {
+            final int start = bounds[i];
+            final int end = bounds[i + 1];
+            futures.add(executor.submit(new Callable<Chunk>() {
+                @Override
+                public Chunk call() throws Exception {
+                    final Chunk chunk = new Chunk();
+                    chunk.parser.parseLines(data, start, end);
+                    chunk.parser.finish();
+                    return chunk;
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < futures.size(); ++i) {
+                merge(futures.get(i).get());
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ParsingException) {
+                throw (ParsingException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ParsingException(cause);
+        } finally {
+            for (int i = 0; i < futures.size(); ++i) {
+                futures.get(i).cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Picks chunk boundaries right after a line feed. A boundary after a line ending in a backslash would tear apart
+     * a continued line, so it is moved on by a line.
+     *
+     * @return {@code int[]} Start of every chunk, followed by the length.
+     */
+    static int[] split(@NonNull byte[] data, int length, int chunkCount) {
+        chunkCount = Math.max(1, Math.min(chunkCount, length / MIN_CHUNK_SIZE));
+        final int[] bounds = new int[chunkCount + 1];
+        int count = 1;
+        for (int i = 1; i < chunkCount; ++i) {
+            int position = Math.max((int) ((long) length * i / chunkCount), bounds[count - 1]);
+            while (position < length) {
+                if (data[position++] != '\n') {
+                    continue;
+                }
+                int last = position - 2;
+                if (last >= 0 && data[last] == '\r') {
+                    --last;
+                }
+                if (last < 0 || data[last] != '\\') {
+                    break;
+                }
+            }
+            if (position >= length) {
+                break;
+            }
+            bounds[count++] = position;
+        }
+        bounds[count++] = length;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Splits lines of data which is all in memory.
+     */
+    private void parseLines(byte[] data, int start, int end) throws ParsingException {
+        for (int i = start; i < end; ++i) {
+            final byte b = data[i];
+            if (b != '\n' && b != '\r') {
+                continue;
+            }
+            onLine(data, start, i);
+            if (b == '\r' && i + 1 < end && data[i + 1] == '\n') {
+                ++i;
+            }
+            start = i + 1;
+        }
+        if (start < end) {
+            onLine(data, start, end);
+        }
+    }
+
+    /**
+     * Parses a line still waiting for its continuation at the end of the data.
+     */
+    private void finish() throws ParsingException {
+        if (mContinuedLength >= 0) {
+            final int length = mContinuedLength;
+            mContinuedLength = -1;
+            parseLine(mContinuedLine, 0, length);
+        }
+    }
+
+    private void merge(Chunk chunk) throws ParsingException {
+        final int vertexBase = mVertices.size() / 3;
+        final int texCoordBase = mTexCoords.size() / 2;
+        final int normalBase = mNormals.size() / 3;
+        final ObjParser parser = chunk.parser;
+        mVertices.addAll(parser.mVertices);
+        mTexCoords.addAll(parser.mTexCoords);
+        mNormals.addAll(parser.mNormals);
+
+        int vertexPosition = 0;
+        int texCoordPosition = 0;
+        int normalPosition = 0;
+        for (int i = 0, j = chunk.statements.size(); i <= j; ++i) {
+            final boolean last = i == j;
+            final int vertexEnd = last ? parser.mVertexIndices.size() : chunk.statementPositions.get(i * 3);
+            final int texCoordEnd = last ? parser.mTexCoordIndices.size() : chunk.statementPositions.get(i * 3 + 1);
+            final int normalEnd = last ? parser.mNormalIndices.size() : chunk.statementPositions.get(i * 3 + 2);
+            if (vertexEnd > vertexPosition && mVertexIndices == null) {
+                throw new IllegalStateException("No face target set.");
+            }
+            if (vertexEnd > vertexPosition) {
+                copyIndices(parser.mVertexIndices, parser.mRelativeVertexIndices, vertexPosition, vertexEnd,
+                            vertexBase, mVertexIndices);
+            }
+            if (texCoordEnd > texCoordPosition) {
+                copyIndices(parser.mTexCoordIndices, parser.mRelativeTexCoordIndices, texCoordPosition, texCoordEnd,
+                            texCoordBase, mTexCoordIndices);
+            }
+            if (normalEnd > normalPosition) {
+                copyIndices(parser.mNormalIndices, parser.mRelativeNormalIndices, normalPosition, normalEnd,
+                            normalBase, mNormalIndices);
+            }
+            vertexPosition = vertexEnd;
+            texCoordPosition = texCoordEnd;
+            normalPosition = normalEnd;
+            if (!last) {
+                mListener.onStatement(chunk.statements.get(i));
+            }
+        }
+    }
+
+    private static void copyIndices(IntArrayList source, IntArrayList relative, int start, int end, int base,
+                                    IntArrayList target) {
+        final int[] indices = source.getArray();
+        final int[] positions = relative.getArray();
+        // Relative positions are ascending, find the first one in range
+        int next = Arrays.binarySearch(positions, 0, relative.size(), start);
+        if (next < 0) {
+            next = -next - 1;
+        }
+        target.ensureCapacity(target.size() + end - start);
+        for (int i = start; i < end; ++i) {
+            if (next < relative.size() && positions[next] == i) {
+                target.add(indices[i] + base);
+                ++next;
+            } else {
+                target.add(indices[i]);
+            }
+        }
+    }
+
+    private void onLine(byte[] data, int start, int end) throws ParsingException {
+        if (mContinuedLength >= 0) {
+            // Only a single line is joined, as LoaderOBJ always did
+            final int length = mContinuedLength;
+            mContinuedLength = -1;
+            mContinuedLine = append(mContinuedLine, length, data, start, end);
+            parseLine(mContinuedLine, 0, length + end - start);
+            return;
+        }
+        // Skip comments and empty lines
+        if (start == end || data[start] == '#') {
+            return;
+        }
+        if (data[end - 1] == '\\') {
+            mContinuedLine = append(mContinuedLine, 0, data, start, end - 1);
+            mContinuedLength = end - 1 - start;
+            return;
+        }
+        parseLine(data, start, end);
+    }
+
+    /**
+     * Parses a single line, without its line terminator.
+     */
+    public void parseLine(@NonNull byte[] data, int start, int end) throws ParsingException {
+        // Statements are split at spaces only
+        final int typeStart = skip(data, start, end, false);
+        if (typeStart == end) {
+            return;
+        }
+        final int typeEnd = next(data, typeStart, end, false);
+        final int typeLength = typeEnd - typeStart;
+        final byte type = data[typeStart];
+        if (type == 'v' && typeLength == 1) {
+            int position = parseFloat(data, typeEnd, end, mVertices, false);
+            position = parseFloat(data, position, end, mVertices, false);
+            parseFloat(data, position, end, mVertices, false);
+        } else if (type == 'v' && typeLength == 2 && data[typeStart + 1] == 't') {
+            final int position = parseFloat(data, typeEnd, end, mTexCoords, false);
+            parseFloat(data, position, end, mTexCoords, true);
+        } else if (type == 'v' && typeLength == 2 && data[typeStart + 1] == 'n') {
+            int position = parseFloat(data, typeEnd, end, mNormals, false);
+            position = parseFloat(data, position, end, mNormals, false);
+            parseFloat(data, position, end, mNormals, false);
+        } else if (type == 'f' && typeLength == 1) {
+            parseFace(data, start, typeEnd, end);
+        } else {
+            mListener.onStatement(new String(data, start, end - start, Charset.defaultCharset()));
+        }
+    }
+
+    private void parseFace(byte[] data, int start, int typeEnd, int end) throws ParsingException {
+        if (mVertexIndices == null) {
+            throw new IllegalStateException("No face target set.");
+        }
+        int numTokens = 0;
+        for (int i = skip(data, start, end, false); i < end; i = skip(data, next(data, i, end, false), end, false)) {
+            ++numTokens;
+        }
+        final boolean isQuad = numTokens == 5;
+        // A texture coordinate left out anywhere on the line means it is left out for every corner
+        boolean emptyVt = false;
+        for (int i = start; i + 1 < end; ++i) {
+            if (data[i] == '/' && data[i + 1] == '/') {
+                emptyVt = true;
+                break;
+            }
+        }
+
+        // Corners are split at any whitespace, but only as many are read as there are space separated tokens
+        int cornerStart = skip(data, typeEnd, end, true);
+        if (cornerStart == end) {
+            throw new ParsingException("Face without corners.");
+        }
+        int partLength = 0;
+        for (int i = skipSlashes(data, cornerStart, end); i < end && !isWhitespace(data[i]);
+             i = skipSlashes(data, nextSlash(data, i, end), end)) {
+            ++partLength;
+        }
+        final boolean hasuv = partLength >= 2 && !emptyVt;
+        final boolean hasn = partLength == 3 || (partLength == 2 && emptyVt);
+
+        for (int i = 1; i < numTokens; ++i) {
+            if (i > 1) {
+                cornerStart = skip(data, cornerStart, end, true);
+                if (cornerStart == end) {
+                    throw new ParsingException("Face with fewer corners than tokens.");
+                }
+            }
+            final int cornerEnd = next(data, cornerStart, end, true);
+            int partStart = skipSlashes(data, cornerStart, cornerEnd);
+            int partEnd = nextSlash(data, partStart, cornerEnd);
+            int idx = parseIndex(data, partStart, partEnd);
+            if (!isQuad) {
+                addIndex(mVertexIndices, mRelativeVertexIndices, idx, mVertices.size() / 3);
+            } else {
+                mQuadVertexIndices[i - 1] = idx;
+                // Indices left out of a quad become 0 once made zero based
+                mQuadTexCoordIndices[i - 1] = 1;
+                mQuadNormalIndices[i - 1] = 1;
+            }
+            if (hasuv) {
+                partStart = skipSlashes(data, partEnd, cornerEnd);
+                partEnd = nextSlash(data, partStart, cornerEnd);
+                idx = parseIndex(data, partStart, partEnd);
+                if (!isQuad) {
+                    addIndex(mTexCoordIndices, mRelativeTexCoordIndices, idx, mTexCoords.size() / 2);
+                } else {
+                    mQuadTexCoordIndices[i - 1] = idx;
+                }
+            }
+            if (hasn) {
+                partStart = skipSlashes(data, partEnd, cornerEnd);
+                partEnd = nextSlash(data, partStart, cornerEnd);
+                idx = parseIndex(data, partStart, partEnd);
+                if (!isQuad) {
+                    addIndex(mNormalIndices, mRelativeNormalIndices, idx, mNormals.size() / 3);
+                } else {
+                    mQuadNormalIndices[i - 1] = idx;
+                }
+            }
+            cornerStart = cornerEnd;
+        }
+
+        if (isQuad) {
+            for (int i = 0; i < 6; ++i) {
+                final int index = QUAD_TRIANGLES[i];
+                addIndex(mVertexIndices, mRelativeVertexIndices, mQuadVertexIndices[index], mVertices.size() / 3);
+                addIndex(mTexCoordIndices, mRelativeTexCoordIndices, mQuadTexCoordIndices[index],
+                         mTexCoords.size() / 2);
+                addIndex(mNormalIndices, mRelativeNormalIndices, mQuadNormalIndices[index], mNormals.size() / 3);
+            }
+        }
+    }
+
+    /**
+     * Parses the next space separated token as a float and adds it to a list.
+     *
+     * @return {@code int} Position after the token.
+     */
+    private static int parseFloat(byte[] data, int position, int end, FloatArrayList target, boolean flip)
+            throws ParsingException {
+        final int tokenStart = skip(data, position, end, false);
+        if (tokenStart == end) {
+            throw new ParsingException("Missing value.");
+        }
+        final int tokenEnd = next(data, tokenStart, end, false);
+        final float value = AsciiNumberParser.parseFloat(data, tokenStart, tokenEnd);
+        target.add(flip ? 1f - value : value);
+        return tokenEnd;
+    }
+
+    private static int parseIndex(byte[] data, int start, int end) throws ParsingException {
+        if (start == end) {
+            throw new ParsingException("Missing index.");
+        }
+        return AsciiNumberParser.parseInt(data, start, end);
+    }
+
+    /**
+     * Adds an index as given in the file, made zero based.
+     *
+     * @param count {@code int} Number of elements read so far, which negative indices count back from.
+     */
+    private static void addIndex(IntArrayList target, IntArrayList relativePositions, int idx, int count) {
+        if (idx < 0) {
+            if (relativePositions != null) {
+                relativePositions.add(target.size());
+            }
+            target.add(count + idx);
+        } else {
+            target.add(idx - 1);
+        }
+    }
+
+    /**
+     * @return {@code int} Position of the first byte which is not a delimiter.
+     */
+    private static int skip(byte[] data, int position, int end, boolean anyWhitespace) {
+        while (position < end && (data[position] == ' ' || (anyWhitespace && isWhitespace(data[position])))) {
+            ++position;
+        }
+        return position;
+    }
+
+    /**
+     * @return {@code int} Position of the first delimiter.
+     */
+    private static int next(byte[] data, int position, int end, boolean anyWhitespace) {
+        while (position < end && data[position] != ' ' && !(anyWhitespace && isWhitespace(data[position]))) {
+            ++position;
+        }
+        return position;
+    }
+
+    private static int skipSlashes(byte[] data, int position, int end) {
+        while (position < end && data[position] == '/') {
+            ++position;
+        }
+        return position;
+    }
+
+    private static int nextSlash(byte[] data, int position, int end) {
+        while (position < end && data[position] != '/' && !isWhitespace(data[position])) {
+            ++position;
+        }
+        return position;
+    }
+
+    /**
+     * The delimiters of a default {@link java.util.StringTokenizer}.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    /**
+     * Lists a chunk parses into, along with its statements and the face positions they were found at.
+     */
+    private static final class Chunk implements StatementListener {
+
+        final ObjParser         parser             = new ObjParser(this);
+        final ArrayList<String> statements         = new ArrayList<>();
+        final IntArrayList      statementPositions = new IntArrayList();
+
+        Chunk() {
+            parser.setFaceTarget(new IntArrayList(), new IntArrayList(), new IntArrayList());
+            parser.mRelativeVertexIndices = new IntArrayList();
+            parser.mRelativeTexCoordIndices = new IntArrayList();
+            parser.mRelativeNormalIndices = new IntArrayList();
+        }
+
+        @Override
+        public void onStatement(@NonNull String line) {
+            statements.add(line);
+            statementPositions.add(parser.mVertexIndices.size());
+            statementPositions.add(parser.mTexCoordIndices.size());
+            statementPositions.add(parser.mNormalIndices.size());
+        }
+    }
+
+    private static byte[] append(byte[] target, int length, byte[] data, int start, int end) {
+        if (length + end - start > target.length) {
+            target = Arrays.copyOf(target, Math.max(target.length * 2, length + end - start));
+        }
+        System.arraycopy(data, start, target, length, end - start);
+        return target;
+    }
+
+    @NonNull
+    public FloatArrayList getVertices() {
+        return mVertices;
+    }
+
+    @NonNull
+    public FloatArrayList getTexCoords() {
+        return mTexCoords;
+    }
+
+    @NonNull
+    public FloatArrayList getNormals() {
+        return mNormals;
+    }
+}
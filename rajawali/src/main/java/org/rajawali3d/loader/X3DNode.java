@@ -0,0 +1,175 @@
+package org.rajawali3d.loader;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An element of an X3D document as read by {@link X3DReader}. Attributes holding numbers, such as coordinates and
+ * indices, are kept as primitive arrays; all others as {@link String}s.
+ */
+final class X3DNode {
+
+    final String mName;
+    @Nullable
+    X3DNode mParent;
+    List<X3DNode> mChildren = Collections.emptyList();
+
+    private final List<String> mAttributeNames  = new ArrayList<>(4);
+    private final List<Object> mAttributeValues = new ArrayList<>(4);
+
+    X3DNode(@NonNull String name) {
+        mName = name;
+    }
+
+    void addChild(@NonNull X3DNode child) {
+        if (mChildren.isEmpty()) {
+            mChildren = new ArrayList<>();
+        }
+        child.mParent = this;
+        mChildren.add(child);
+    }
+
+    void setAttribute(@NonNull String name, @NonNull Object value) {
+        final int index = mAttributeNames.indexOf(name);
+        if (index < 0) {
+            mAttributeNames.add(name);
+            mAttributeValues.add(value);
+        } else {
+            mAttributeValues.set(index, value);
+        }
+    }
+
+    boolean hasAttribute(@NonNull String name) {
+        return mAttributeNames.contains(name);
+    }
+
+    /**
+     * @return The value of a text attribute, or null if it is missing or numeric.
+     */
+    @Nullable
+    String getAttribute(@NonNull String name) {
+        final Object value = getValue(name);
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * @return The values of a numeric attribute, or null if it is missing.
+     */
+    @Nullable
+    float[] getFloats(@NonNull String name) {
+        final Object value = getValue(name);
+        if (value instanceof float[]) {
+            return (float[]) value;
+        } else if (value instanceof int[]) {
+            final int[] ints = (int[]) value;
+            final float[] floats = new float[ints.length];
+            for (int i = 0; i < ints.length; ++i) {
+                floats[i] = ints[i];
+            }
+            return floats;
+        }
+        return null;
+    }
+
+    /**
+     * @return The values of an index attribute, or null if it is missing.
+     */
+    @Nullable
+    int[] getInts(@NonNull String name) {
+        final Object value = getValue(name);
+        return value instanceof int[] ? (int[]) value : null;
+    }
+
+    /**
+     * Drops the numeric attributes of this node and its descendants once their values have been copied elsewhere,
+     * such as into the buffers of a mesh.
+     */
+    void releaseArrays() {
+        for (int i = mAttributeValues.size() - 1; i >= 0; --i) {
+            final Object value = mAttributeValues.get(i);
+            if (value instanceof float[] || value instanceof int[]) {
+                mAttributeNames.remove(i);
+                mAttributeValues.remove(i);
+            }
+        }
+        for (int i = 0, j = mChildren.size(); i < j; ++i) {
+            mChildren.get(i).releaseArrays();
+        }
+    }
+
+    /**
+     * Finds the first descendant, in document order, matching all the given conditions.
+     *
+     * @param name      {@link String} Element name, or null for any element.
+     * @param attribute {@link String} Attribute the element must have, or null.
+     * @param value     {@link String} Text the attribute must equal, or null for any value.
+     */
+    @Nullable
+    X3DNode findFirst(@Nullable String name, @Nullable String attribute, @Nullable String value) {
+        for (int i = 0, j = mChildren.size(); i < j; ++i) {
+            final X3DNode child = mChildren.get(i);
+            if (child.matches(name, attribute, value)) {
+                return child;
+            }
+            final X3DNode found = child.findFirst(name, attribute, value);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The first descendant with the given name, in document order.
+     */
+    @Nullable
+    X3DNode findFirst(@NonNull String name) {
+        return findFirst(name, null, null);
+    }
+
+    /**
+     * Collects all descendants with the given name in document order.
+     */
+    @NonNull
+    List<X3DNode> findAll(@NonNull String name) {
+        final List<X3DNode> found = new ArrayList<>();
+        findAll(name, found);
+        return found;
+    }
+
+    private void findAll(String name, List<X3DNode> found) {
+        for (int i = 0, j = mChildren.size(); i < j; ++i) {
+            final X3DNode child = mChildren.get(i);
+            if (child.mName.equals(name)) {
+                found.add(child);
+            }
+            child.findAll(name, found);
+        }
+    }
+
+    private boolean matches(String name, String attribute, String value) {
+        if (name != null && !mName.equals(name)) {
+            return false;
+        }
+        if (attribute == null) {
+            return true;
+        }
+        final int index = mAttributeNames.indexOf(attribute);
+        return index >= 0 && (value == null || value.equals(mAttributeValues.get(index)));
+    }
+
+    @Nullable
+    private Object getValue(String name) {
+        final int index = mAttributeNames.indexOf(name);
+        return index < 0 ? null : mAttributeValues.get(index);
+    }
+
+    @Override
+    public String toString() {
+        return mName + mAttributeNames;
+    }
+}
@@ -0,0 +1,360 @@
+package org.rajawali3d.loader;
+
+import androidx.annotation.NonNull;
+
+import org.rajawali3d.util.AsciiNumberParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Streams an X3D XML file into a tree of {@link X3DNode}s. Coordinates, vectors, colors, keys and indices are parsed
+ * straight from the read buffer into primitive arrays, so no document object model and no {@link String} per value
+ * is ever created. Text content, comments, processing instructions and the document type are skipped.
+ */
+final class X3DReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int EOF = -1;
+
+    private static final Set<String> INDEX_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "index", "coordIndex", "normalIndex", "texCoordIndex", "colorIndex"));
+
+    private static final Set<String> NUMERIC_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "point", "vector", "color", "key", "keyValue", "diffuseColor", "location", "direction", "position",
+            "orientation", "scale", "rotation", "translation", "size"));
+
+    private final InputStream mStream;
+    private final byte[]      mBuffer = new byte[64 * 1024];
+    private int mPosition;
+    private int mLimit;
+    private int mLine = 1;
+
+    // Bytes of the name, text or number being read
+    private byte[] mToken = new byte[64];
+    private int    mTokenLength;
+
+    private float[] mFloats = new float[256];
+    private int[]   mInts   = new int[256];
+
+    /**
+     * @param stream {@link InputStream} positioned at the start of the file.
+     */
+    X3DReader(@NonNull InputStream stream) {
+        mStream = stream;
+    }
+
+    /**
+     * Reads the whole file.
+     *
+     * @return An unnamed {@link X3DNode} holding the document element.
+     */
+    @NonNull
+    X3DNode read() throws IOException, ParsingException {
+        final X3DNode document = new X3DNode("");
+        X3DNode current = document;
+        int c;
+        while ((c = next()) != EOF) {
+            if (c != '<') {
+                // Text content
+                continue;
+            }
+            c = next();
+            if (c == '?') {
+                skipPast("?>");
+            } else if (c == '!') {
+                skipDeclaration();
+            } else if (c == '/') {
+                final String name = readName(next());
+                skipWhitespace();
+                expect('>');
+                if (current == document || !current.mName.equals(name)) {
+                    throw error("Unexpected closing tag </" + name + ">");
+                }
+                current = current.mParent;
+            } else {
+                final X3DNode node = new X3DNode(readName(c));
+                current.addChild(node);
+                if (readAttributes(node)) {
+                    current = node;
+                }
+            }
+        }
+        if (current != document) {
+            throw error("Unclosed element <" + current.mName + ">");
+        }
+        if (document.mChildren.isEmpty()) {
+            throw error("No document element");
+        }
+        return document;
+    }
+
+    /**
+     * @return {@code false} if the element closed itself.
+     */
+    private boolean readAttributes(X3DNode node) throws IOException, ParsingException {
+        while (true) {
+            skipWhitespace();
+            final int c = next();
+            if (c == '>') {
+                return true;
+            } else if (c == '/') {
+                expect('>');
+                return false;
+            }
+            final String name = readName(c);
+            skipWhitespace();
+            expect('=');
+            skipWhitespace();
+            final int quote = next();
+            if (quote != '"' && quote != '\'') {
+                throw error("Expected a quoted value for " + name);
+            }
+            if (INDEX_ATTRIBUTES.contains(name)) {
+                node.setAttribute(name, readInts(quote, name));
+            } else if (NUMERIC_ATTRIBUTES.contains(name)) {
+                node.setAttribute(name, readFloats(quote, name));
+            } else {
+                node.setAttribute(name, readText(quote));
+            }
+        }
+    }
+
+    private String readName(int c) throws IOException, ParsingException {
+        mTokenLength = 0;
+        while (c != EOF && c > ' ' && c != '/' && c != '>' && c != '=' && c != '<') {
+            append(c);
+            if (isNameEnd(peek())) {
+                break;
+            }
+            c = next();
+        }
+        if (mTokenLength == 0) {
+            throw error("Expected a name");
+        }
+        return new String(mToken, 0, mTokenLength, UTF_8);
+    }
+
+    private static boolean isNameEnd(int c) {
+        return c == EOF || c <= ' ' || c == '/' || c == '>' || c == '=' || c == '<';
+    }
+
+    private float[] readFloats(int quote, String name) throws IOException, ParsingException {
+        int count = 0;
+        mTokenLength = 0;
+        while (true) {
+            final int c = next();
+            if (c == EOF) {
+                throw error("Unterminated value of " + name);
+            }
+            if (c == quote || c <= ' ' || c == ',') {
+                if (mTokenLength > 0) {
+                    if (count == mFloats.length) {
+                        mFloats = Arrays.copyOf(mFloats, count * 2);
+                    }
+                    try {
+                        mFloats[count++] = AsciiNumberParser.parseFloat(mToken, 0, mTokenLength);
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid number in " + name);
+                    }
+                    mTokenLength = 0;
+                }
+                if (c == quote) {
+                    return Arrays.copyOf(mFloats, count);
+                }
+            } else {
+                append(c);
+            }
+        }
+    }
+
+    private int[] readInts(int quote, String name) throws IOException, ParsingException {
+        int count = 0;
+        mTokenLength = 0;
+        while (true) {
+            final int c = next();
+            if (c == EOF) {
+                throw error("Unterminated value of " + name);
+            }
+            if (c == quote || c <= ' ' || c == ',') {
+                if (mTokenLength > 0) {
+                    if (count == mInts.length) {
+                        mInts = Arrays.copyOf(mInts, count * 2);
+                    }
+                    try {
+                        mInts[count++] = AsciiNumberParser.parseInt(mToken, 0, mTokenLength);
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid index in " + name);
+                    }
+                    mTokenLength = 0;
+                }
+                if (c == quote) {
+                    return Arrays.copyOf(mInts, count);
+                }
+            } else {
+                append(c);
+            }
+        }
+    }
+
+    private String readText(int quote) throws IOException, ParsingException {
+        mTokenLength = 0;
+        boolean entities = false;
+        int c;
+        while ((c = next()) != quote) {
+            if (c == EOF) {
+                throw error("Unterminated attribute value");
+            }
+            entities |= c == '&';
+            append(c);
+        }
+        final String text = new String(mToken, 0, mTokenLength, UTF_8);
+        return entities ? decodeEntities(text) : text;
+    }
+
+    private String decodeEntities(String text) throws ParsingException {
+        final StringBuilder decoded = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            final char c = text.charAt(i);
+            if (c != '&') {
+                decoded.append(c);
+                ++i;
+                continue;
+            }
+            final int end = text.indexOf(';', i);
+            if (end < 0) {
+                throw error("Unterminated entity");
+            }
+            final String entity = text.substring(i + 1, end);
+            if (entity.equals("amp")) {
+                decoded.append('&');
+            } else if (entity.equals("lt")) {
+                decoded.append('<');
+            } else if (entity.equals("gt")) {
+                decoded.append('>');
+            } else if (entity.equals("quot")) {
+                decoded.append('"');
+            } else if (entity.equals("apos")) {
+                decoded.append('\'');
+            } else if (entity.startsWith("#")) {
+                try {
+                    final int codePoint = entity.startsWith("#x") ? Integer.parseInt(entity.substring(2), 16)
+                                                                  : Integer.parseInt(entity.substring(1));
+                    decoded.appendCodePoint(codePoint);
+                } catch (IllegalArgumentException e) {
+                    throw error("Invalid character reference &" + entity + ";");
+                }
+            } else {
+                throw error("Unknown entity &" + entity + ";");
+            }
+            i = end + 1;
+        }
+        return decoded.toString();
+    }
+
+    /**
+     * Skips a comment, CDATA section or document type declaration following {@code <!}.
+     */
+    private void skipDeclaration() throws IOException, ParsingException {
+        if (peek() == '-') {
+            next();
+            expect('-');
+            skipPast("-->");
+        } else if (peek() == '[') {
+            skipPast("]]>");
+        } else {
+            // The internal subset of a document type may hold further declarations
+            int depth = 0;
+            int c;
+            while ((c = next()) != '>' || depth > 0) {
+                if (c == EOF) {
+                    throw error("Unterminated declaration");
+                } else if (c == '[') {
+                    ++depth;
+                } else if (c == ']') {
+                    --depth;
+                }
+            }
+        }
+    }
+
+    private void skipPast(String terminator) throws IOException, ParsingException {
+        final int length = terminator.length();
+        final int[] last = new int[length];
+        while (true) {
+            final int c = next();
+            if (c == EOF) {
+                throw error("Missing " + terminator);
+            }
+            System.arraycopy(last, 1, last, 0, length - 1);
+            last[length - 1] = c;
+            boolean matched = true;
+            for (int i = 0; i < length && matched; ++i) {
+                matched = last[i] == terminator.charAt(i);
+            }
+            if (matched) {
+                return;
+            }
+        }
+    }
+
+    private void skipWhitespace() throws IOException {
+        int c;
+        while ((c = peek()) != EOF && c <= ' ') {
+            next();
+        }
+    }
+
+    private void expect(int expected) throws IOException, ParsingException {
+        final int c = next();
+        if (c != expected) {
+            throw error("Expected '" + (char) expected + "'" + (c == EOF ? " before the end of the file"
+                                                                         : " but found '" + (char) c + "'"));
+        }
+    }
+
+    private void append(int c) {
+        if (mTokenLength == mToken.length) {
+            mToken = Arrays.copyOf(mToken, mTokenLength * 2);
+        }
+        mToken[mTokenLength++] = (byte) c;
+    }
+
+    private int peek() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return EOF;
+        }
+        return mBuffer[mPosition] & 0xff;
+    }
+
+    private int next() throws IOException {
+        if (mPosition == mLimit && !fill()) {
+            return EOF;
+        }
+        final int c = mBuffer[mPosition++] & 0xff;
+        if (c == '\n') {
+            ++mLine;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        final int count = mStream.read(mBuffer, 0, mBuffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        mPosition = 0;
+        mLimit = count;
+        return true;
+    }
+
+    private ParsingException error(String message) {
+        return new ParsingException(message + " on line " + mLine + ".");
+    }
+}
@@ -1,6 +1,8 @@
 package org.rajawali3d.loader.awd;
 
+import android.opengl.GLES20;
 import android.util.SparseArray;
+import org.rajawali3d.Geometry3D;
 import org.rajawali3d.Object3D;
 import org.rajawali3d.animation.mesh.SkeletalAnimationChildObject3D;
 import org.rajawali3d.animation.mesh.SkeletalAnimationChildObject3D.BoneVertex;
@@ -11,6 +13,10 @@ import org.rajawali3d.loader.LoaderAWD.BlockHeader;
 import org.rajawali3d.loader.ParsingException;
 import org.rajawali3d.util.RajLog;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 
 /**
@@ -104,11 +110,11 @@ public class BlockTriangleGeometry extends ABaseObjectBlockParser {
 		for (int parsedSub = 0; parsedSub < mSubGeometryCount; ++parsedSub) {
 			long subMeshEnd = dis.getPosition() + dis.readUnsignedInt();
 
-			// Geometry
-			float[] vertices = null;
-			int[] indices = null;
-			float[] uvs = null;
-			float[] normals = null;
+			// Geometry, decoded straight into the buffers the meshes use
+			FloatBuffer vertices = null;
+			ShortBuffer indices = null;
+			FloatBuffer uvs = null;
+			FloatBuffer normals = null;
 
 			int[] joints = null;
 			float[] weights = null;
@@ -130,35 +136,32 @@ public class BlockTriangleGeometry extends ABaseObjectBlockParser {
 				// Process the mesh data by type
 				switch (type) {
 				case 1: // Vertex positions
-					vertices = new float[(int) (subLength / geoPrecisionSize)];
-					while (idx < vertices.length) {
+					vertices = createFloatBuffer((int) (subLength / geoPrecisionSize));
+					while (idx < vertices.limit()) {
 						// X, Y, Z
-						vertices[idx++] = (float) dis.readPrecisionNumber(blockHeader.globalPrecisionGeo);
-						vertices[idx++] = (float) dis.readPrecisionNumber(blockHeader.globalPrecisionGeo);
-						vertices[idx++] = (float) -dis.readPrecisionNumber(blockHeader.globalPrecisionGeo);
+						vertices.put(idx++, (float) dis.readPrecisionNumber(blockHeader.globalPrecisionGeo));
+						vertices.put(idx++, (float) dis.readPrecisionNumber(blockHeader.globalPrecisionGeo));
+						vertices.put(idx++, (float) -dis.readPrecisionNumber(blockHeader.globalPrecisionGeo));
 					}
 					break;
 				case 2: // Face indices
-					indices = new int[(int) (subLength / 2)];
-					while (idx < indices.length) {
-                        indices[idx+2] = dis.readUnsignedShort();
-                        indices[idx+1] = dis.readUnsignedShort();
-                        indices[idx] = dis.readUnsignedShort();
-                        idx += 3;
-                    }
+					indices = createShortBuffer((int) (subLength / 2));
+					while (idx < indices.limit()) {
+						indices.put(idx + 2, (short) dis.readUnsignedShort());
+						indices.put(idx + 1, (short) dis.readUnsignedShort());
+						indices.put(idx, (short) dis.readUnsignedShort());
+						idx += 3;
+					}
 					break;
 				case 3: // UV coordinates
-					uvs = new float[(int) (subLength / geoPrecisionSize)];
-					while (idx < uvs.length)
-						uvs[idx++] = (float) dis.readPrecisionNumber(blockHeader.globalPrecisionGeo);
+					uvs = createFloatBuffer((int) (subLength / geoPrecisionSize));
+					while (idx < uvs.limit())
+						uvs.put(idx++, (float) dis.readPrecisionNumber(blockHeader.globalPrecisionGeo));
 					break;
 				case 4: // Vertex normals
-					normals = new float[(int) (subLength / geoPrecisionSize)];
-					while (idx < normals.length) {
-						normals[idx++] = (float) dis.readPrecisionNumber(blockHeader.globalPrecisionGeo);
-                        normals[idx++] = (float) dis.readPrecisionNumber(blockHeader.globalPrecisionGeo);
-                        normals[idx++] = (float) dis.readPrecisionNumber(blockHeader.globalPrecisionGeo);
-					}
+					normals = createFloatBuffer((int) (subLength / geoPrecisionSize));
+					while (idx < normals.limit())
+						normals.put(idx++, (float) dis.readPrecisionNumber(blockHeader.globalPrecisionGeo));
 					break;
 				case 6: // Joint index
 					joints = new int[(int) (subLength / 2)];
@@ -183,15 +186,13 @@ public class BlockTriangleGeometry extends ABaseObjectBlockParser {
 
 			dis.readUserAttributes(null);
 
-			// Verify the arrays
+			// Verify the buffers, meshes without texture coordinates get zeroed ones
 			if (vertices == null)
-				vertices = new float[0];
-			if (normals == null)
-				normals = new float[0];
+				vertices = createFloatBuffer(0);
 			if (uvs == null)
-				uvs = new float[0];
+				uvs = createFloatBuffer(vertices.limit() / 3 * 2);
 			if (indices == null)
-				indices = new int[0];
+				indices = createShortBuffer(0);
 
 			// FIXME This should be combining sub geometry not creating objects
 			if(joints != null && joints.length > 0)
@@ -202,9 +203,11 @@ public class BlockTriangleGeometry extends ABaseObjectBlockParser {
 				 * skeleton applied to it.
 				 */
 				SkeletalAnimationChildObject3D obj = new SkeletalAnimationChildObject3D();
-				obj.setData(vertices, normals, uvs, null, indices, false);
+				obj.getGeometry().getBufferInfo(Geometry3D.VERTEX_BUFFER_KEY).usage = GLES20.GL_STREAM_DRAW;
+				obj.getGeometry().getBufferInfo(Geometry3D.NORMAL_BUFFER_KEY).usage = GLES20.GL_STREAM_DRAW;
+				obj.setData(vertices, normals, uvs, indices, false);
 
-				int numVertices = vertices.length/3;
+				int numVertices = vertices.limit()/3;
 
 				// AWD stipulates all vertices have same # bindings, possibly 0 weighted
 				int weightsPerVertex = weights.length/numVertices;
@@ -264,10 +267,18 @@ public class BlockTriangleGeometry extends ABaseObjectBlockParser {
 			else
 			{
 				mBaseObjects[parsedSub] = new Object3D();
-				mBaseObjects[parsedSub].setData(vertices, normals, uvs, null, indices, false);
+				mBaseObjects[parsedSub].setData(vertices, normals, uvs, indices, false);
 			}
 		}
 
 		dis.readUserAttributes(null);
 	}
+
+	private static FloatBuffer createFloatBuffer(int count) {
+		return ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	private static ShortBuffer createShortBuffer(int count) {
+		return ByteBuffer.allocateDirect(count * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+	}
 }
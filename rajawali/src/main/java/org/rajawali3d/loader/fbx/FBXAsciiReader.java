@@ -0,0 +1,337 @@
+package org.rajawali3d.loader.fbx;
+
+import androidx.annotation.NonNull;
+
+import org.rajawali3d.loader.ParsingException;
+import org.rajawali3d.util.AsciiNumberParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads ASCII FBX files into a tree of {@link FBXNode}s. The text is tokenized straight from a byte buffer, numbers
+ * are parsed without creating {@link String}s and nodes holding only numbers keep them as one primitive array.
+ */
+final class FBXAsciiReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int EOF = -1;
+
+    private final InputStream mStream;
+
+    private byte[] mBuffer = new byte[64 * 1024];
+    private int    mPosition;
+    private int    mLimit;
+    private int    mTokenStart;
+    private int    mLine = 1;
+
+    // Values of the node being read, its children are only read after them
+    private int      mValueCount;
+    private float[]  mFloats   = new float[256];
+    private long[]   mIntegers = new long[256];
+    private Object[] mOthers   = new Object[256];
+
+    /**
+     * @param stream {@link InputStream} positioned at the start of the file.
+     */
+    FBXAsciiReader(@NonNull InputStream stream) {
+        mStream = stream;
+    }
+
+    /**
+     * Reads the whole file.
+     *
+     * @return An unnamed {@link FBXNode} holding the top level nodes.
+     */
+    @NonNull
+    FBXNode read() throws IOException, ParsingException {
+        final FBXNode root = new FBXNode("");
+        readChildren(root, false);
+        return root;
+    }
+
+    private void readChildren(FBXNode parent, boolean inBlock) throws IOException, ParsingException {
+        while (true) {
+            skipWhitespace();
+            final int c = peek();
+            if (c == EOF) {
+                if (inBlock) {
+                    throw error("Unexpected end of the file");
+                }
+                return;
+            } else if (c == '}') {
+                if (!inBlock) {
+                    throw error("Unexpected '}'");
+                }
+                ++mPosition;
+                return;
+            }
+            parent.addChild(readNode());
+        }
+    }
+
+    private FBXNode readNode() throws IOException, ParsingException {
+        final int nameEnd = scan(false);
+        final FBXNode node = new FBXNode(new String(mBuffer, mTokenStart, nameEnd - mTokenStart, UTF_8));
+        if (nameEnd == mTokenStart || peek() != ':') {
+            throw error("Expected a node name");
+        }
+        ++mPosition;
+
+        mValueCount = 0;
+        skipSpaces();
+        int c = peek();
+        if (c != '\n' && c != '\r' && c != '{' && c != '}' && c != ';' && c != EOF) {
+            while (true) {
+                readValue();
+                skipSpaces();
+                c = peek();
+                if (c == ',') {
+                    ++mPosition;
+                    skipWhitespace();
+                    continue;
+                }
+                // Long arrays continue on the next line with a leading comma
+                skipWhitespace();
+                if (peek() == ',') {
+                    ++mPosition;
+                    skipWhitespace();
+                    continue;
+                }
+                break;
+            }
+        }
+        storeValues(node);
+
+        skipWhitespace();
+        if (peek() == '{') {
+            ++mPosition;
+            readChildren(node, true);
+        }
+        return node;
+    }
+
+    private void readValue() throws IOException, ParsingException {
+        final int c = peek();
+        if (c == ',') {
+            // Empty value
+            return;
+        } else if (c == '"') {
+            ++mPosition;
+            mTokenStart = mPosition;
+            while (true) {
+                if (mPosition == mLimit && !fill()) {
+                    throw error("Unterminated string");
+                }
+                if (mBuffer[mPosition] == '"') {
+                    break;
+                }
+                if (mBuffer[mPosition] == '\n') {
+                    ++mLine;
+                }
+                ++mPosition;
+            }
+            addValue(new String(mBuffer, mTokenStart, mPosition - mTokenStart, UTF_8));
+            ++mPosition;
+        } else if (c == '*') {
+            // Element count of an FBX 7 array, the values follow in an "a" child
+            ++mPosition;
+            scan(true);
+        } else if (c == '-' || c == '+' || c == '.' || (c >= '0' && c <= '9')) {
+            final int end = scan(true);
+            addNumber(mTokenStart, end);
+        } else {
+            final int end = scan(false);
+            if (end == mTokenStart) {
+                throw error("Unexpected character '" + (char) c + "'");
+            }
+            addValue(new String(mBuffer, mTokenStart, end - mTokenStart, UTF_8));
+        }
+    }
+
+    private void addNumber(int start, int end) throws ParsingException {
+        ensureValueCapacity();
+        boolean integer = true;
+        int i = start;
+        if (mBuffer[i] == '-' || mBuffer[i] == '+') {
+            ++i;
+        }
+        if (i == end || end - i > 18) {
+            integer = false;
+        }
+        long value = 0;
+        for (; integer && i < end; ++i) {
+            final int digit = mBuffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                integer = false;
+            } else {
+                value = value * 10 + digit;
+            }
+        }
+        try {
+            if (integer) {
+                if (mBuffer[start] == '-') {
+                    value = -value;
+                }
+                mIntegers[mValueCount] = value;
+                mFloats[mValueCount] = value;
+            } else {
+                mFloats[mValueCount] = AsciiNumberParser.parseFloat(mBuffer, start, end);
+            }
+        } catch (NumberFormatException e) {
+            throw error("Invalid number");
+        }
+        mOthers[mValueCount] = integer ? Boolean.TRUE : null;
+        ++mValueCount;
+    }
+
+    private void addValue(Object value) {
+        ensureValueCapacity();
+        mOthers[mValueCount++] = value;
+    }
+
+    private void ensureValueCapacity() {
+        if (mValueCount == mFloats.length) {
+            final int capacity = mFloats.length * 2;
+            mFloats = Arrays.copyOf(mFloats, capacity);
+            mIntegers = Arrays.copyOf(mIntegers, capacity);
+            mOthers = Arrays.copyOf(mOthers, capacity);
+        }
+    }
+
+    /**
+     * Numbers are marked in {@link #mOthers} with null for decimals and {@link Boolean#TRUE} for integers, anything
+     * else is a {@link String}.
+     */
+    private void storeValues(FBXNode node) {
+        final int count = mValueCount;
+        boolean numbers = count > 1;
+        boolean integers = true;
+        for (int i = 0; i < count && numbers; ++i) {
+            final Object other = mOthers[i];
+            if (other == null) {
+                integers = false;
+            } else if (other != Boolean.TRUE) {
+                numbers = false;
+            } else if (mIntegers[i] != (int) mIntegers[i]) {
+                integers = false;
+            }
+        }
+        if (numbers) {
+            if (integers) {
+                final int[] values = new int[count];
+                for (int i = 0; i < count; ++i) {
+                    values[i] = (int) mIntegers[i];
+                }
+                node.mProperties.add(values);
+            } else {
+                node.mProperties.add(Arrays.copyOf(mFloats, count));
+            }
+        } else {
+            for (int i = 0; i < count; ++i) {
+                final Object other = mOthers[i];
+                if (other == null) {
+                    node.mProperties.add((double) mFloats[i]);
+                } else if (other == Boolean.TRUE) {
+                    node.mProperties.add(mIntegers[i]);
+                } else {
+                    node.mProperties.add(other);
+                }
+            }
+        }
+        Arrays.fill(mOthers, 0, count, null);
+        mValueCount = 0;
+    }
+
+    /**
+     * Scans a name, identifier or number starting at the current position.
+     *
+     * @return The index after the token, which starts at {@link #mTokenStart}.
+     */
+    private int scan(boolean number) throws IOException {
+        mTokenStart = mPosition;
+        while (mPosition < mLimit || fill()) {
+            final byte c = mBuffer[mPosition];
+            final boolean accepted = number ? (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e'
+                                              || c == 'E'
+                                            : c > ' ' && c != ':' && c != ',' && c != '{' && c != '}' && c != '"'
+                                              && c != ';';
+            if (!accepted) {
+                break;
+            }
+            ++mPosition;
+        }
+        return mPosition;
+    }
+
+    private void skipSpaces() throws IOException {
+        while (mPosition < mLimit || fillAfterToken()) {
+            final byte c = mBuffer[mPosition];
+            if (c != ' ' && c != '\t') {
+                return;
+            }
+            ++mPosition;
+        }
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (mPosition < mLimit || fillAfterToken()) {
+            final byte c = mBuffer[mPosition];
+            if (c == ';') {
+                // Comments run to the end of the line
+                while ((mPosition < mLimit || fillAfterToken()) && mBuffer[mPosition] != '\n') {
+                    ++mPosition;
+                }
+                continue;
+            }
+            if (c == '\n') {
+                ++mLine;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                return;
+            }
+            ++mPosition;
+        }
+    }
+
+    private int peek() throws IOException {
+        if (mPosition == mLimit && !fillAfterToken()) {
+            return EOF;
+        }
+        return mBuffer[mPosition] & 0xff;
+    }
+
+    private boolean fillAfterToken() throws IOException {
+        mTokenStart = mPosition;
+        return fill();
+    }
+
+    /**
+     * Reads more of the file, keeping the bytes of the current token.
+     *
+     * @return {@code false} at the end of the file.
+     */
+    private boolean fill() throws IOException {
+        final int kept = mLimit - mTokenStart;
+        if (mTokenStart > 0) {
+            System.arraycopy(mBuffer, mTokenStart, mBuffer, 0, kept);
+        } else if (kept == mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, mBuffer.length * 2);
+        }
+        mPosition -= mTokenStart;
+        mTokenStart = 0;
+        mLimit = kept;
+        final int count = mStream.read(mBuffer, mLimit, mBuffer.length - mLimit);
+        if (count <= 0) {
+            return false;
+        }
+        mLimit += count;
+        return true;
+    }
+
+    private ParsingException error(String message) {
+        return new ParsingException(message + " on line " + mLine + ".");
+    }
+}
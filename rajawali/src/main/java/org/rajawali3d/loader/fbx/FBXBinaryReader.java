@@ -0,0 +1,301 @@
+package org.rajawali3d.loader.fbx;
+
+import androidx.annotation.NonNull;
+
+import org.rajawali3d.loader.ParsingException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads binary FBX files into a tree of {@link FBXNode}s. The file is streamed, array properties are decoded, and
+ * inflated when compressed, straight into primitive arrays.
+ */
+final class FBXBinaryReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Start of every binary FBX file, followed by two more bytes and the version.
+     */
+    static final byte[] MAGIC = "Kaydara FBX Binary  \0".getBytes(Charset.forName("US-ASCII"));
+
+    /**
+     * First version which stores record offsets and counts as 64 bit values.
+     */
+    private static final int VERSION_64_BIT_RECORDS = 7500;
+
+    private static final int ENCODING_ZLIB = 1;
+
+    private final InputStream mStream;
+    private final Inflater    mInflater = new Inflater();
+    private final byte[]      mScratch  = new byte[8];
+
+    private byte[] mArrayData  = new byte[0];
+    private byte[] mCompressed = new byte[0];
+    private long   mPosition;
+    private int    mVersion;
+
+    /**
+     * @param stream {@link InputStream} positioned at the start of the file. It should be buffered.
+     */
+    FBXBinaryReader(@NonNull InputStream stream) {
+        mStream = stream;
+    }
+
+    /**
+     * Checks for the binary header without consuming it.
+     *
+     * @param stream {@link InputStream} which supports {@link InputStream#mark(int)}.
+     *
+     * @return {@code true} if the stream holds a binary FBX file.
+     */
+    static boolean isBinary(@NonNull InputStream stream) throws IOException {
+        stream.mark(MAGIC.length);
+        try {
+            for (byte expected : MAGIC) {
+                if (stream.read() != expected) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            stream.reset();
+        }
+    }
+
+    /**
+     * @return The file version, such as 7400, once the file has been read.
+     */
+    int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Reads the whole file.
+     *
+     * @return An unnamed {@link FBXNode} holding the top level records.
+     */
+    @NonNull
+    FBXNode read() throws IOException, ParsingException {
+        try {
+            final byte[] header = new byte[MAGIC.length + 2];
+            readFully(header, header.length);
+            for (int i = 0; i < MAGIC.length; ++i) {
+                if (header[i] != MAGIC[i]) {
+                    throw new ParsingException("Not a binary FBX file.");
+                }
+            }
+            mVersion = readInt();
+            final FBXNode root = new FBXNode("");
+            FBXNode node;
+            while ((node = readNode()) != null) {
+                root.addChild(node);
+            }
+            return root;
+        } finally {
+            mInflater.end();
+        }
+    }
+
+    private FBXNode readNode() throws IOException, ParsingException {
+        final boolean is64Bit = mVersion >= VERSION_64_BIT_RECORDS;
+        final long endOffset = is64Bit ? readLong() : readInt() & 0xffffffffL;
+        final long numProperties = is64Bit ? readLong() : readInt() & 0xffffffffL;
+        // The length of the property list is not needed, properties are read one by one
+        if (is64Bit) {
+            readLong();
+        } else {
+            readInt();
+        }
+        final int nameLength = readByte() & 0xff;
+        if (endOffset == 0) {
+            // Null record closing a list of children, or the top level
+            return null;
+        }
+        final FBXNode node = new FBXNode(readString(nameLength));
+        for (long i = 0; i < numProperties; ++i) {
+            node.mProperties.add(readProperty());
+        }
+        while (mPosition < endOffset) {
+            final FBXNode child = readNode();
+            if (child == null) {
+                break;
+            }
+            node.addChild(child);
+        }
+        if (mPosition != endOffset) {
+            throw new ParsingException("Record " + node.mName + " should end at " + endOffset + " but ends at "
+                                       + mPosition + ".");
+        }
+        return node;
+    }
+
+    private Object readProperty() throws IOException, ParsingException {
+        final int type = readByte();
+        switch (type) {
+            case 'Y':
+                readFully(mScratch, 2);
+                return (long) (short) ((mScratch[0] & 0xff) | (mScratch[1] << 8));
+            case 'C':
+                return readByte() != 0;
+            case 'I':
+                return (long) readInt();
+            case 'F':
+                return (double) Float.intBitsToFloat(readInt());
+            case 'D':
+                return Double.longBitsToDouble(readLong());
+            case 'L':
+                return readLong();
+            case 'S':
+                return toObjectName(readString(readLength()));
+            case 'R':
+                final byte[] raw = new byte[readLength()];
+                readFully(raw, raw.length);
+                return raw;
+            case 'f':
+            case 'd':
+            case 'l':
+            case 'i':
+            case 'b':
+                return readArray(type);
+            default:
+                throw new ParsingException("Unknown property type " + type + " at " + (mPosition - 1) + ".");
+        }
+    }
+
+    private Object readArray(int type) throws IOException, ParsingException {
+        final int length = readLength();
+        final int encoding = readInt();
+        final int compressedLength = readLength();
+        final int elementSize = type == 'd' || type == 'l' ? 8 : type == 'b' ? 1 : 4;
+        if (length > Integer.MAX_VALUE / elementSize) {
+            throw new ParsingException("Array of " + length + " elements is too large.");
+        }
+        final int byteLength = length * elementSize;
+        if (mArrayData.length < byteLength) {
+            mArrayData = new byte[byteLength];
+        }
+        if (encoding == ENCODING_ZLIB) {
+            if (mCompressed.length < compressedLength) {
+                mCompressed = new byte[compressedLength];
+            }
+            readFully(mCompressed, compressedLength);
+            inflate(compressedLength, byteLength);
+        } else if (encoding == 0) {
+            readFully(mArrayData, byteLength);
+        } else {
+            throw new ParsingException("Unknown array encoding " + encoding + ".");
+        }
+
+        final ByteBuffer data = ByteBuffer.wrap(mArrayData, 0, byteLength).order(ByteOrder.LITTLE_ENDIAN);
+        switch (type) {
+            case 'f':
+                final float[] floats = new float[length];
+                data.asFloatBuffer().get(floats);
+                return floats;
+            case 'd':
+                final double[] doubles = new double[length];
+                data.asDoubleBuffer().get(doubles);
+                return doubles;
+            case 'l':
+                final long[] longs = new long[length];
+                data.asLongBuffer().get(longs);
+                return longs;
+            case 'i':
+                final int[] ints = new int[length];
+                data.asIntBuffer().get(ints);
+                return ints;
+            default:
+                final boolean[] booleans = new boolean[length];
+                for (int i = 0; i < length; ++i) {
+                    booleans[i] = mArrayData[i] != 0;
+                }
+                return booleans;
+        }
+    }
+
+    private void inflate(int compressedLength, int byteLength) throws ParsingException {
+        mInflater.reset();
+        mInflater.setInput(mCompressed, 0, compressedLength);
+        int inflated = 0;
+        try {
+            while (inflated < byteLength) {
+                final int count = mInflater.inflate(mArrayData, inflated, byteLength - inflated);
+                if (count == 0 && (mInflater.finished() || mInflater.needsInput() || mInflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+        } catch (DataFormatException e) {
+            throw new ParsingException("Invalid compressed array.", e);
+        }
+        if (inflated != byteLength) {
+            throw new ParsingException("Compressed array holds " + inflated + " bytes instead of " + byteLength
+                                       + ".");
+        }
+    }
+
+    /**
+     * Binary files write object names as {@code name\0\1Class}, ASCII ones as {@code Class::name}.
+     */
+    private static String toObjectName(String value) {
+        final int separator = value.indexOf("\0\1");
+        if (separator < 0) {
+            return value;
+        }
+        return value.substring(separator + 2) + "::" + value.substring(0, separator);
+    }
+
+    private String readString(int length) throws IOException {
+        final byte[] bytes = length <= mScratch.length ? mScratch : new byte[length];
+        readFully(bytes, length);
+        return new String(bytes, 0, length, UTF_8);
+    }
+
+    private int readLength() throws IOException, ParsingException {
+        final int length = readInt();
+        if (length < 0) {
+            throw new ParsingException("Negative length at " + (mPosition - 4) + ".");
+        }
+        return length;
+    }
+
+    private int readByte() throws IOException {
+        final int value = mStream.read();
+        if (value < 0) {
+            throw new EOFException();
+        }
+        ++mPosition;
+        return value;
+    }
+
+    private int readInt() throws IOException {
+        readFully(mScratch, 4);
+        return (mScratch[0] & 0xff) | (mScratch[1] & 0xff) << 8 | (mScratch[2] & 0xff) << 16
+               | (mScratch[3] & 0xff) << 24;
+    }
+
+    private long readLong() throws IOException {
+        final long low = readInt() & 0xffffffffL;
+        return low | (long) readInt() << 32;
+    }
+
+    private void readFully(byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            final int count = mStream.read(buffer, offset, length - offset);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            offset += count;
+        }
+        mPosition += length;
+    }
+}
@@ -0,0 +1,228 @@
+package org.rajawali3d.loader.fbx;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node of an FBX document as read by {@link FBXBinaryReader} or {@link FBXAsciiReader}. Both formats produce the
+ * same tree: scalar properties are {@link String}s, {@link Boolean}s, {@link Long}s and {@link Double}s, array
+ * properties stay primitive arrays and object names read as {@code "Class::name"}.
+ */
+final class FBXNode {
+
+    final String       mName;
+    final List<Object> mProperties = new ArrayList<>();
+    List<FBXNode> mChildren = Collections.emptyList();
+
+    FBXNode(@NonNull String name) {
+        mName = name;
+    }
+
+    void addChild(@NonNull FBXNode child) {
+        if (mChildren.isEmpty()) {
+            mChildren = new ArrayList<>();
+        }
+        mChildren.add(child);
+    }
+
+    @NonNull
+    String getName() {
+        return mName;
+    }
+
+    @NonNull
+    List<FBXNode> getChildren() {
+        return mChildren;
+    }
+
+    @Nullable
+    FBXNode getChild(@NonNull String name) {
+        for (int i = 0, j = mChildren.size(); i < j; ++i) {
+            final FBXNode child = mChildren.get(i);
+            if (child.mName.equals(name)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    int getPropertyCount() {
+        final Object array = getSingleArray();
+        return array == null ? mProperties.size() : getLength(array);
+    }
+
+    @Nullable
+    String getString(int index) {
+        if (index >= mProperties.size()) {
+            return null;
+        }
+        final Object value = mProperties.get(index);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Reads a property as a number. Nodes which only hold numbers may keep them as one array, which is indexed the
+     * same way.
+     */
+    double getDouble(int index) {
+        final Object array = getSingleArray();
+        if (array instanceof double[]) {
+            return ((double[]) array)[index];
+        } else if (array instanceof float[]) {
+            return ((float[]) array)[index];
+        } else if (array instanceof int[]) {
+            return ((int[]) array)[index];
+        } else if (array instanceof long[]) {
+            return ((long[]) array)[index];
+        }
+        final Object value = mProperties.get(index);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } else if (value instanceof String) {
+            // ASCII files write some flags as quoted strings
+            return Double.parseDouble((String) value);
+        }
+        throw new NumberFormatException("Property " + index + " of " + mName + " is not a number.");
+    }
+
+    long getLong(int index) {
+        final Object array = getSingleArray();
+        if (array == null && mProperties.get(index) instanceof Long) {
+            return (Long) mProperties.get(index);
+        }
+        return (long) getDouble(index);
+    }
+
+    /**
+     * Reads the values of an array node. FBX 7 keeps them in an {@code a} child, earlier versions in the node
+     * itself.
+     *
+     * @return The values, or null if the node holds no numbers.
+     */
+    @Nullable
+    float[] getFloats() {
+        final Object array = getArray();
+        if (array == null) {
+            return null;
+        } else if (array instanceof float[]) {
+            return (float[]) array;
+        }
+        final int length = getLength(array);
+        final float[] floats = new float[length];
+        if (array instanceof double[]) {
+            final double[] doubles = (double[]) array;
+            for (int i = 0; i < length; ++i) {
+                floats[i] = (float) doubles[i];
+            }
+        } else if (array instanceof int[]) {
+            final int[] ints = (int[]) array;
+            for (int i = 0; i < length; ++i) {
+                floats[i] = ints[i];
+            }
+        } else if (array instanceof long[]) {
+            final long[] longs = (long[]) array;
+            for (int i = 0; i < length; ++i) {
+                floats[i] = longs[i];
+            }
+        } else {
+            return null;
+        }
+        return floats;
+    }
+
+    /**
+     * Reads the values of an array node as integers.
+     *
+     * @return The values, or null if the node holds no numbers.
+     */
+    @Nullable
+    int[] getInts() {
+        final Object array = getArray();
+        if (array == null) {
+            return null;
+        } else if (array instanceof int[]) {
+            return (int[]) array;
+        }
+        final int length = getLength(array);
+        final int[] ints = new int[length];
+        if (array instanceof double[]) {
+            final double[] doubles = (double[]) array;
+            for (int i = 0; i < length; ++i) {
+                ints[i] = (int) doubles[i];
+            }
+        } else if (array instanceof float[]) {
+            final float[] floats = (float[]) array;
+            for (int i = 0; i < length; ++i) {
+                ints[i] = (int) floats[i];
+            }
+        } else if (array instanceof long[]) {
+            final long[] longs = (long[]) array;
+            for (int i = 0; i < length; ++i) {
+                ints[i] = (int) longs[i];
+            }
+        } else {
+            return null;
+        }
+        return ints;
+    }
+
+    @Nullable
+    private Object getArray() {
+        final Object array = getSingleArray();
+        if (array != null) {
+            return array;
+        }
+        final FBXNode values = getChild("a");
+        if (values != null) {
+            return values.getArray();
+        }
+        if (mProperties.isEmpty()) {
+            return null;
+        }
+        // A single number written without an array
+        final double[] doubles = new double[mProperties.size()];
+        for (int i = 0; i < doubles.length; ++i) {
+            final Object value = mProperties.get(i);
+            if (!(value instanceof Number)) {
+                return null;
+            }
+            doubles[i] = ((Number) value).doubleValue();
+        }
+        return doubles;
+    }
+
+    @Nullable
+    private Object getSingleArray() {
+        if (mProperties.size() != 1) {
+            return null;
+        }
+        final Object value = mProperties.get(0);
+        return value != null && value.getClass().isArray() && !(value instanceof byte[]) ? value : null;
+    }
+
+    private static int getLength(Object array) {
+        if (array instanceof double[]) {
+            return ((double[]) array).length;
+        } else if (array instanceof float[]) {
+            return ((float[]) array).length;
+        } else if (array instanceof int[]) {
+            return ((int[]) array).length;
+        } else if (array instanceof long[]) {
+            return ((long[]) array).length;
+        } else if (array instanceof boolean[]) {
+            return ((boolean[]) array).length;
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return mName + mProperties;
+    }
+}
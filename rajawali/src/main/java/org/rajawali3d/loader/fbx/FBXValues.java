@@ -433,6 +433,10 @@ public class FBXValues {
 	public static class FBXFloatBuffer {
 		public float[] data;
 		
+		public FBXFloatBuffer(float[] data) {
+			this.data = data;
+		}
+		
 		public FBXFloatBuffer(String floats) {
 			String[] values = floats.split(",");
 			int num = values.length;
@@ -446,6 +450,10 @@ public class FBXValues {
 	public static class FBXIntBuffer {
 		public int[] data;
 		
+		public FBXIntBuffer(int[] data) {
+			this.data = data;
+		}
+		
 		public FBXIntBuffer(String ints) {
 			String[] values = ints.split(",");
 			int num = values.length;
@@ -17,6 +17,8 @@ import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.opengl.GLES20;
 
+import androidx.annotation.Nullable;
+
 import org.rajawali3d.cameras.Camera;
 import org.rajawali3d.Object3D;
 import org.rajawali3d.debug.NormalsObject3D;
@@ -27,10 +29,8 @@ import org.rajawali3d.lights.SpotLight;
 import org.rajawali3d.loader.AMeshLoader;
 import org.rajawali3d.loader.ParsingException;
 import org.rajawali3d.loader.fbx.FBXValues.Connections.Connect;
-import org.rajawali3d.loader.fbx.FBXValues.FBXColor4;
 import org.rajawali3d.loader.fbx.FBXValues.FBXFloatBuffer;
 import org.rajawali3d.loader.fbx.FBXValues.FBXIntBuffer;
-import org.rajawali3d.loader.fbx.FBXValues.FBXMatrix;
 import org.rajawali3d.loader.fbx.FBXValues.Objects.FBXMaterial;
 import org.rajawali3d.loader.fbx.FBXValues.Objects.Model;
 import org.rajawali3d.materials.Material;
@@ -38,111 +38,86 @@ import org.rajawali3d.materials.methods.DiffuseMethod;
 import org.rajawali3d.materials.methods.SpecularMethod;
 import org.rajawali3d.materials.textures.ATexture.TextureException;
 import org.rajawali3d.materials.textures.Texture;
-import org.rajawali3d.math.vector.Vector2;
 import org.rajawali3d.math.vector.Vector3;
 import org.rajawali3d.renderer.Renderer;
 import org.rajawali3d.util.RajLog;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Stack;
+
+/**
+ * Loads binary and ASCII FBX files. Both are read into the same tree of nodes, binary files with their compressed
+ * arrays inflated straight into primitive arrays and ASCII files through a streaming tokenizer, from which the
+ * {@link FBXValues} of FBX 6 and FBX 7 documents are filled.
+ */
 public class LoaderFBX extends AMeshLoader {
-	private static final char COMMENT = ';';
-	private static final String OBJECT_TYPE = "ObjectType:";
-	private static final String MODEL = "Model:";
-	private static final String PROPERTIES = "Properties";
-	private static final String LAYER_ELEMENT = "LayerElement";
-	private static final String LAYER = "Layer:";
-	private static final String PROPERTY = "Property:";
-	private static final String TYPE_VECTOR3D = "Vector3D";
-	private static final String TYPE_VECTOR = "Vector";
-	private static final String TYPE_COLOR = "Color";
-	private static final String TYPE_COLOR_RGB = "ColorRGB";
-	private static final String TYPE_LCL_TRANSLATION = "LclTranslation";
-	private static final String TYPE_LCL_ROTATION = "LclRotation";
-	private static final String TYPE_LCL_SCALING = "LclScaling";
-	private static final String MATERIAL = "Material:";
-	private static final String POSE = "Pose:";
-	private static final String POSE_NODE = "PoseNode:";
-	private static final String CONNECT = "Connect:";
-	private static final String TEXTURE = "Texture:";
-	private static final String FBX_U = "FBX";
-	private static final String FBX_L = FBX_U.toLowerCase(Locale.US);
-
-	private static final String REGEX_CLEAN = "\\s|\\t|\\n";
-	private static final String REGEX_NO_SPACE_NO_QUOTE = "\\\"|\\s";
-	private static final String REGEX_NO_QUOTE = "\\\"";
-	private static final String REGEX_NO_FUNNY_CHARS = "\\W";
-	private static final String REPLACE_EMPTY = "";
+	/**
+	 * First version written with object ids and {@code Properties70}.
+	 */
+	private static final int VERSION_7 = 7000;
 
 	private FBXValues     mFbx;
-	private Stack<Object> mObjStack;
 	private Renderer      mRenderer;
 
 	public LoaderFBX(Renderer renderer, String fileOnSDCard) {
 		super(renderer, fileOnSDCard);
 		mRenderer = renderer;
-		mObjStack = new Stack<Object>();
 		mFbx = new FBXValues();
-		mObjStack.add(mFbx);
 	}
 
 	public LoaderFBX(Renderer renderer, File file) {
 		super(renderer, file);
 		mRenderer = renderer;
-		mObjStack = new Stack<Object>();
 		mFbx = new FBXValues();
-		mObjStack.add(mFbx);
 	}
 
 	public LoaderFBX(Renderer renderer, int resourceId) {
 		super(renderer.getContext().getResources(), renderer.getTextureManager(), resourceId);
 		mRenderer = renderer;
-		mObjStack = new Stack<Object>();
 		mFbx = new FBXValues();
-		mObjStack.add(mFbx);
 	}
 
 	@Override
 	public LoaderFBX parse() throws ParsingException {
 		super.parse();
-		BufferedReader buffer = null;
-		if(mFile == null) {
-			InputStream fileIn = mResources.openRawResource(mResourceId);
-			buffer = new BufferedReader(new InputStreamReader(fileIn));
-		} else {
-			try {
-				buffer = new BufferedReader(new FileReader(mFile));
-			} catch (FileNotFoundException e) {
-				RajLog.e("["+getClass().getCanonicalName()+"] Could not find file.");
-				throw new ParsingException(e);
-			}
-		}
-		String line;
+		FBXNode document;
+		BufferedInputStream stream = null;
 		try {
-			while((line = buffer.readLine()) != null) {
-				if (line.startsWith("Kaydara FBX Binary  ")) {
-					throw new ParsingException("Kaydara FBX Binary file format not supported.");
-				}
-				String repl = line.replaceAll(REGEX_CLEAN, REPLACE_EMPTY);
-				if(repl.length() == 0 || repl.charAt(0) == COMMENT)
-					continue;
-
-				readLine(buffer, line);
+			stream = getBufferedInputStream();
+			if (FBXBinaryReader.isBinary(stream)) {
+				document = new FBXBinaryReader(stream).read();
+			} else {
+				document = new FBXAsciiReader(stream).read();
 			}
-			buffer.close();
-		} catch(Exception e) {
+		} catch (FileNotFoundException e) {
+			RajLog.e("["+getClass().getCanonicalName()+"] Could not find file.");
+			throw new ParsingException(e);
+		} catch (IOException e) {
 			throw new ParsingException(e);
+		} finally {
+			if (stream != null) {
+				try {
+					stream.close();
+				} catch (IOException e) {
+					RajLog.e("["+getClass().getCanonicalName()+"] Could not close file.");
+				}
+			}
+		}
+
+		FBXNode objects = document.getChild("Objects");
+		if (objects != null) {
+			if (isVersion7(document, objects))
+				readObjects7(objects, document.getChild("Connections"));
+			else
+				readObjects6(objects, document.getChild("Connections"));
 		}
 
 		// -- get lights
@@ -217,15 +192,18 @@ public class LoaderFBX extends AMeshLoader {
 
 		if(camera != null) { //TODO: FIX
 			Camera cam = mRenderer.getCurrentCamera();
-			cam.setPosition(camera.position);
+			cam.setPosition(camera.position != null ? camera.position : camera.properties.lclTranslation);
 			cam.setRotation(
 					-(camera.properties.lclRotation.z + 90),//done
 					camera.properties.lclRotation.x + 90,
 					90 - camera.properties.lclRotation.y//done
 			);
-			cam.setNearPlane(camera.properties.nearPlane);
-			cam.setFarPlane(camera.properties.farPlane);
-			cam.setFieldOfView(camera.properties.fieldOfView);
+			if(camera.properties.nearPlane != null)
+				cam.setNearPlane(camera.properties.nearPlane);
+			if(camera.properties.farPlane != null)
+				cam.setFarPlane(camera.properties.farPlane);
+			if(camera.properties.fieldOfView != null)
+				cam.setFieldOfView(camera.properties.fieldOfView);
 		}
 
 		return this;
@@ -284,14 +262,19 @@ public class LoaderFBX extends AMeshLoader {
 
 	//https://banexdevblog.wordpress.com/2014/06/23/a-quick-tutorial-about-the-fbx-ascii-format/
 	private void buildMesh(Model model, Stack<ALight> lights) throws TextureException, ParsingException {
+		if(model.vertices == null || model.polygonVertexIndex == null) {
+			buildNull(model);
+			return;
+		}
 		Object3D o = new Object3D(model.name);
 		boolean hasUVs = model.layerElementUV.uVIndex != null;
+		boolean hasNormals = model.layerElementNormal.normals != null;
 
 		int[]   modelUVIdx = null;
 		float[] modelUv = null;
 		int[]   modelIdx 	= model.polygonVertexIndex.data;
 		float[] modelVerts 	= model.vertices.data;
-		float[] modelNorm	= model.layerElementNormal.normals.data;
+		float[] modelNorm	= hasNormals ? model.layerElementNormal.normals.data : null;
 		if(hasUVs){
 				modelUVIdx 	= model.layerElementUV.uVIndex.data;
 				modelUv 	= model.layerElementUV.uV.data;
@@ -313,7 +296,7 @@ public class LoaderFBX extends AMeshLoader {
 
 		float[] uvs = null;
 		if(hasUVs) uvs  = new float[newTrigsCount*3*2];
-		float[] normals = new float[newTrigsCount*3*3];
+		float[] normals = hasNormals ? new float[newTrigsCount*3*3] : null;
 		float[] vertexes = new float[newTrigsCount*3*3];
 		int[] indices = new int[newTrigsCount*3];
 
@@ -325,7 +308,6 @@ public class LoaderFBX extends AMeshLoader {
 			while (modelIdx[i2]>=0){
 				++i2;
 			}
-			modelIdx[i2] = ~modelIdx[i2];
 
 			//triangulate
 			int[][] triangulation = null;
@@ -339,14 +321,17 @@ public class LoaderFBX extends AMeshLoader {
 			for (int[] trig: triangulation) {
 				for (int v: trig){
 					int tidx_old = modelIdx[i+v];//index of current vertex in FBX order
+					if(tidx_old < 0) tidx_old = ~tidx_old;//last vertex of the polygon
 					int nidx_old = i+v;//index of current normal in FBX order
 					indices[iNext] = iNext;//the correct modelIdx for this vertex
 					vertexes[3*iNext+0] = modelVerts[3*tidx_old+0];//x
 					vertexes[3*iNext+1] = modelVerts[3*tidx_old+1];//y
 					vertexes[3*iNext+2] = modelVerts[3*tidx_old+2];//z
-					normals[3*iNext+0] = modelNorm[3*nidx_old+0];//nx
-					normals[3*iNext+1] = modelNorm[3*nidx_old+1];//ny
-					normals[3*iNext+2] = modelNorm[3*nidx_old+2];//nz
+					if(hasNormals) {
+						normals[3*iNext+0] = modelNorm[3*nidx_old+0];//nx
+						normals[3*iNext+1] = modelNorm[3*nidx_old+1];//ny
+						normals[3*iNext+2] = modelNorm[3*nidx_old+2];//nz
+					}
 					if(hasUVs) {
 						int uvidx_old = modelUVIdx[i+v];//index of current normal in FBX order
 						uvs[2*iNext] = modelUv[2*uvidx_old];
@@ -477,7 +462,7 @@ public class LoaderFBX extends AMeshLoader {
 			float intensity = material.properties.ambientFactor.floatValue();
 			mat.setAmbientIntensity(intensity, intensity, intensity);
 
-			if(material.shadingModel.equals("phong"))
+			if("phong".equalsIgnoreCase(material.shadingModel))
 			{
 				SpecularMethod.Phong method = new SpecularMethod.Phong();
 				if(material.properties.specularColor != null)
@@ -496,200 +481,299 @@ public class LoaderFBX extends AMeshLoader {
 		return mat;
 	}
 
-	private void readLine(BufferedReader buffer, String line) throws IllegalArgumentException, SecurityException, IllegalAccessException, InvocationTargetException, NoSuchMethodException, IOException {
-		if(line.replaceAll(REGEX_CLEAN, REPLACE_EMPTY).length() == 0) return;
-		if(line.contains("{")) {
+	private static boolean isVersion7(FBXNode document, FBXNode objects) {
+		FBXNode header = document.getChild("FBXHeaderExtension");
+		FBXNode version = header != null ? header.getChild("FBXVersion") : null;
+		if(version != null && version.getPropertyCount() > 0)
+			return version.getLong(0) >= VERSION_7;
+		return objects.getChild("Geometry") != null;
+	}
 
-			// -- found new object
+	/**
+	 * FBX 6 names objects in their nodes and connections and keeps the geometry inside the models.
+	 */
+	private void readObjects6(FBXNode objects, @Nullable FBXNode connections) {
+		for(FBXNode node : objects.getChildren()) {
+			String name = node.getName();
+			if(name.equals("Model")) {
+				if(node.getPropertyCount() < 2) {
+					// TODO add model object for Take
+					continue;
+				}
+				Model model = mFbx.objects.addModel(node.getString(0), node.getString(1));
+				readModelProperties(model, node.getChild("Properties60"), 3);
+				FBXNode hidden = node.getChild("Hidden");
+				if(hidden != null)
+					model.hidden = hidden.getString(0);
+				FBXNode position = node.getChild("Position");
+				if(position != null && position.getPropertyCount() >= 3)
+					model.position = getVector(position, 0);
+				readGeometry(model, node);
+				setModelDefaults(model);
+			} else if(name.equals("Material")) {
+				readMaterial(mFbx.objects.addMaterial(node.getString(0)), node, node.getChild("Properties60"), 3);
+			} else if(name.equals("Texture")) {
+				readTexture(node, node.getString(0), node.getString(1));
+			}
+		}
 
-			Object last = mObjStack.peek();
+		if(connections == null) return;
+		for(FBXNode connect : connections.getChildren()) {
+			if(connect.getName().equals("Connect") && connect.getPropertyCount() >= 3)
+				mFbx.connections.addConnection(connect.getString(0), connect.getString(1), connect.getString(2));
+		}
+	}
 
-			if(line.contains(":")) {
-				if(line.contains(OBJECT_TYPE)) {
-					String val = line.split(":")[1].replaceAll(REGEX_NO_FUNNY_CHARS, REPLACE_EMPTY);
-					Object ot = last.getClass().getDeclaredMethod("addObjectType", String.class).invoke(last, val);
-					mObjStack.push(ot);
-					return;
-				} else if(line.contains(MODEL)) {
-					String[] vals = line.split(",");
-					if(vals.length < 2) {
-						// TODO add model object for Take
-						mObjStack.push(new Object());
-						return;
-					}
-					vals[0] = vals[0].split(": ")[1].replaceAll(REGEX_NO_QUOTE, REPLACE_EMPTY);
-					vals[1] = vals[1].replaceAll(REGEX_NO_FUNNY_CHARS, REPLACE_EMPTY);
+	/**
+	 * FBX 7 links objects by id. Geometries and node attributes are merged into their models, and materials and
+	 * textures get the connections to their models which FBX 6 files have.
+	 */
+	private void readObjects7(FBXNode objects, @Nullable FBXNode connections) {
+		Map<Long, FBXNode> nodes = new HashMap<>();
+		Map<Long, Model> models = new HashMap<>();
+		Map<Long, FBXMaterial> materials = new HashMap<>();
+		Map<Long, FBXValues.Objects.Texture> textures = new HashMap<>();
+
+		for(FBXNode node : objects.getChildren()) {
+			if(node.getPropertyCount() < 3) continue;
+			long id = node.getLong(0);
+			nodes.put(id, node);
+			String name = node.getName();
+			if(name.equals("Model")) {
+				Model model = mFbx.objects.addModel(node.getString(1), node.getString(2));
+				readModelProperties(model, node.getChild("Properties70"), 4);
+				models.put(id, model);
+			} else if(name.equals("Material")) {
+				FBXMaterial material = mFbx.objects.addMaterial(node.getString(1));
+				readMaterial(material, node, node.getChild("Properties70"), 4);
+				materials.put(id, material);
+			} else if(name.equals("Texture")) {
+				textures.put(id, readTexture(node, node.getString(1), node.getString(2)));
+			}
+		}
 
-					Object mo = last.getClass().getDeclaredMethod("addModel", String.class, String.class).invoke(last, vals[0], vals[1]);
-					mObjStack.push(mo);
-					return;
-				} else if(line.contains(MATERIAL) && !line.contains(LAYER_ELEMENT)) {
-					String[] vals = line.split(": ")[1].split(",");
-					vals[0] = vals[0].replaceAll(REGEX_NO_SPACE_NO_QUOTE, REPLACE_EMPTY);
+		List<FBXNode> links = connections != null ? connections.getChildren() : Collections.<FBXNode>emptyList();
+		for(FBXNode link : links) {
+			if(!link.getName().equals("C") || link.getPropertyCount() < 3) continue;
+			Model model = models.get(link.getLong(2));
+			FBXNode child = nodes.get(link.getLong(1));
+			if(model == null || child == null) continue;
+
+			String name = child.getName();
+			if(name.equals("Geometry")) {
+				readGeometry(model, child);
+			} else if(name.equals("NodeAttribute")) {
+				readModelProperties(model, child.getChild("Properties70"), 4);
+			} else if(name.equals("Material")) {
+				mFbx.connections.addConnection("OO", child.getString(1), model.name);
+			}
+		}
 
-					Object ma = last.getClass().getDeclaredMethod("addMaterial", String.class).invoke(last, vals[0]);
-					mObjStack.push(ma);
-					return;
-				} else if(line.contains(POSE_NODE)) {
-					Object pn = last.getClass().getDeclaredMethod("addPoseNode").invoke(last);
-					mObjStack.push(pn);
-					return;
-				} else if(line.contains(PROPERTIES)) {
-					line = "Properties";
-				} else if(line.contains(LAYER_ELEMENT)) {
-					line = line.replaceAll("\\W|\\d", REPLACE_EMPTY);
-				} else if(line.contains(LAYER)) {
-					line = LAYER;
-				} else if(line.contains(POSE)) {
-					String val = line.split(":")[1];
-					String[] vals = val.split(",");
-					last.getClass().getDeclaredMethod("setPoseName", String.class).invoke(last, vals[0].replaceAll(REGEX_NO_FUNNY_CHARS, REPLACE_EMPTY));
-					line = POSE;
-				} else if(line.contains(TEXTURE)) {
-					String val = line.split(": ")[1];
-					String[] vals = val.split(",");
-					Object te = last.getClass().getDeclaredMethod("addTexture", String.class, String.class).invoke(last, vals[0].replaceAll(REGEX_NO_QUOTE, REPLACE_EMPTY), vals[1].replace(REGEX_NO_QUOTE, REPLACE_EMPTY));
-					mObjStack.push(te);
-					return;
+		// -- textures are connected to materials, which are connected to models
+		for(FBXNode link : links) {
+			if(!link.getName().equals("C") || link.getPropertyCount() < 3) continue;
+			FBXValues.Objects.Texture texture = textures.get(link.getLong(1));
+			long materialId = link.getLong(2);
+			if(texture == null || !materials.containsKey(materialId)) continue;
+
+			for(FBXNode materialLink : links) {
+				if(materialLink.getName().equals("C") && materialLink.getPropertyCount() >= 3
+						&& materialLink.getLong(1) == materialId) {
+					Model model = models.get(materialLink.getLong(2));
+					if(model != null)
+						mFbx.connections.addConnection("OO", texture.textureName, model.name);
 				}
 			}
+		}
 
-			line = line.replaceAll(REGEX_NO_FUNNY_CHARS, REPLACE_EMPTY);
-			line = line.replaceAll(FBX_U, FBX_L);
-			line = line.substring(0,1).toLowerCase(Locale.US) + line.substring(1);
-
-			try {
-				Field field = last.getClass().getField(line);
-				mObjStack.push(field.get(last));
-			} catch(NoSuchFieldException e) {
-				// -- create a generic object
-				mObjStack.push(new Object());
-				return;
-			}
-		} else if(line.contains("}")) {
+		for(Model model : models.values())
+			setModelDefaults(model);
+	}
 
-			// -- end of object
+	private void readModelProperties(Model model, @Nullable FBXNode properties, int first) {
+		if(properties == null) return;
+		for(FBXNode property : properties.getChildren()) {
+			String name = property.getString(0);
+			if(name == null || property.getPropertyCount() <= first) continue;
+			boolean vector = property.getPropertyCount() >= first + 3;
+
+			if(name.equals("Lcl Translation") && vector)
+				model.properties.lclTranslation = getVector(property, first);
+			else if(name.equals("Lcl Rotation") && vector)
+				model.properties.lclRotation = getVector(property, first);
+			else if(name.equals("Lcl Scaling") && vector)
+				model.properties.lclScaling = getVector(property, first);
+			else if(name.equals("Color") && vector)
+				model.properties.color = getVector(property, first);
+			else if(name.equals("Position") && vector)
+				model.position = getVector(property, first);
+			else if(name.equals("Intensity"))
+				model.properties.intensity = (float) property.getDouble(first);
+			else if(name.equals("FieldOfView"))
+				model.properties.fieldOfView = (float) property.getDouble(first);
+			else if(name.equals("NearPlane"))
+				model.properties.nearPlane = (float) property.getDouble(first);
+			else if(name.equals("FarPlane"))
+				model.properties.farPlane = (float) property.getDouble(first);
+			else if(name.equals("LightType"))
+				model.properties.lightType = (int) property.getLong(first);
+			else if(name.equals("Cone angle") || name.equals("OuterAngle"))
+				model.properties.coneangle = (float) property.getDouble(first);
+		}
+	}
 
-			mObjStack.pop();
-		} else {
+	private static void setModelDefaults(Model model) {
+		if(model.properties.lclTranslation == null)
+			model.properties.lclTranslation = new Vector3();
+		if(model.properties.lclRotation == null)
+			model.properties.lclRotation = new Vector3();
+		if(model.properties.lclScaling == null)
+			model.properties.lclScaling = new Vector3(1, 1, 1);
+		if(model.properties.color == null)
+			model.properties.color = new Vector3(1, 1, 1);
+		if(model.properties.intensity == null)
+			model.properties.intensity = 100f;
+		if(model.properties.coneangle == null)
+			model.properties.coneangle = 45f;
+	}
 
-			// -- found property
+	private static void readMaterial(FBXMaterial material, FBXNode node, @Nullable FBXNode properties, int first) {
+		FBXNode shadingModel = node.getChild("ShadingModel");
+		material.shadingModel = shadingModel != null ? shadingModel.getString(0) : "lambert";
+
+		if(properties != null) {
+			for(FBXNode property : properties.getChildren()) {
+				String name = property.getString(0);
+				if(name == null || property.getPropertyCount() <= first) continue;
+				boolean vector = property.getPropertyCount() >= first + 3;
+
+				if(name.equals("DiffuseColor") && vector)
+					material.properties.diffuseColor = getVector(property, first);
+				else if(name.equals("Diffuse") && vector)
+					material.properties.diffuse = getVector(property, first);
+				else if(name.equals("AmbientColor") && vector)
+					material.properties.ambientColor = getVector(property, first);
+				else if(name.equals("Ambient") && vector)
+					material.properties.ambient = getVector(property, first);
+				else if(name.equals("AmbientFactor"))
+					material.properties.ambientFactor = (float) property.getDouble(first);
+				else if(name.equals("SpecularColor") && vector)
+					material.properties.specularColor = getVector(property, first);
+				else if(name.equals("Specular") && vector)
+					material.properties.specular = getVector(property, first);
+				else if(name.equals("Shininess"))
+					material.properties.shininess = (float) property.getDouble(first);
+				else if(name.equals("ShininessExponent"))
+					material.properties.shininessExponent = (float) property.getDouble(first);
+			}
+		}
 
-			Object last = mObjStack.peek();
-			String[] spl = line.split(": ");
-			if(spl.length == 0) return;
-			String prop = spl[0].replaceAll(REGEX_NO_FUNNY_CHARS, REPLACE_EMPTY);
-			prop = prop.replaceAll(FBX_U, FBX_L);
-			prop = prop.substring(0,1).toLowerCase(Locale.US) + prop.substring(1);
-			boolean processNextLine = false;
+		if(material.properties.diffuseColor == null)
+			material.properties.diffuseColor = material.properties.diffuse != null
+					? material.properties.diffuse : new Vector3(0.8, 0.8, 0.8);
+		if(material.properties.ambientColor == null)
+			material.properties.ambientColor = material.properties.ambient != null
+					? material.properties.ambient : new Vector3(0.2, 0.2, 0.2);
+		if(material.properties.ambientFactor == null)
+			material.properties.ambientFactor = 1f;
+		if(material.properties.specularColor == null)
+			material.properties.specularColor = material.properties.specular;
+		if(material.properties.shininess == null)
+			material.properties.shininess = material.properties.shininessExponent;
+	}
 
-			Object obj = mObjStack.peek();
-			try {
-				if(spl.length < 2) return;
-				String val = spl[1];
+	private FBXValues.Objects.Texture readTexture(FBXNode node, String name, String type) {
+		FBXValues.Objects.Texture texture = mFbx.objects.addTexture(name, type);
+		FBXNode fileName = node.getChild("FileName");
+		if(fileName != null)
+			texture.fileName = fileName.getString(0);
+		FBXNode relativeFilename = node.getChild("RelativeFilename");
+		if(relativeFilename != null)
+			texture.relativeFilename = relativeFilename.getString(0);
+		if(texture.fileName == null || texture.fileName.length() == 0)
+			texture.fileName = texture.relativeFilename;
+		return texture;
+	}
 
-				if(line.contains(PROPERTY)) {
-					String[] vals = val.split(",");
-					prop = vals[0].replaceAll(REGEX_NO_FUNNY_CHARS, REPLACE_EMPTY);
-					prop = prop.substring(0,1).toLowerCase(Locale.US) + prop.substring(1);
-					String type = vals[1].replaceAll(REGEX_NO_FUNNY_CHARS, REPLACE_EMPTY);
+	/**
+	 * Reads the vertices, polygons, normals and texture coordinates of a mesh. Normals and texture coordinates
+	 * are stored per polygon vertex, whatever mapping the file uses.
+	 */
+	private static void readGeometry(Model model, FBXNode geometry) {
+		FBXNode verticesNode = geometry.getChild("Vertices");
+		FBXNode indicesNode = geometry.getChild("PolygonVertexIndex");
+		if(verticesNode == null || indicesNode == null) return;
+		float[] vertices = verticesNode.getFloats();
+		int[] indices = indicesNode.getInts();
+		if(vertices == null || indices == null) return;
+		model.vertices = new FBXFloatBuffer(vertices);
+		model.polygonVertexIndex = new FBXIntBuffer(indices);
+
+		FBXNode normalLayer = geometry.getChild("LayerElementNormal");
+		FBXNode normalsNode = normalLayer != null ? normalLayer.getChild("Normals") : null;
+		float[] normals = normalsNode != null ? normalsNode.getFloats() : null;
+		if(normals != null) {
+			if(!isPolygonVertexDirect(normalLayer)) {
+				int[] normalIndices = getPolygonVertexIndices(normalLayer, "NormalsIndex", indices);
+				float[] expanded = new float[normalIndices.length * 3];
+				for(int i=0; i<normalIndices.length; ++i)
+					System.arraycopy(normals, normalIndices[i] * 3, expanded, i * 3, 3);
+				normals = expanded;
+			}
+			model.layerElementNormal.normals = new FBXFloatBuffer(normals);
+		}
 
-					if(type.equals(TYPE_VECTOR3D) || type.equals(TYPE_COLOR) || type.equals(TYPE_COLOR_RGB) || type.equals(TYPE_LCL_ROTATION)
-							|| type.equals(TYPE_LCL_SCALING) || type.equals(TYPE_LCL_TRANSLATION) || type.equals(TYPE_VECTOR)) {
-						val = vals[3] +","+vals[4]+","+vals[5];
-					} else {
-						if(vals.length < 4)
-							return;
-						val = vals[3].replaceAll(REGEX_NO_QUOTE, REPLACE_EMPTY);
-					}
-				} else if(line.contains(CONNECT)) {
-					String[] vals = line.substring(line.indexOf(':')).split(",");
+		FBXNode uvLayer = geometry.getChild("LayerElementUV");
+		FBXNode uvsNode = uvLayer != null ? uvLayer.getChild("UV") : null;
+		float[] uvs = uvsNode != null ? uvsNode.getFloats() : null;
+		if(uvs != null) {
+			model.layerElementUV.uV = new FBXFloatBuffer(uvs);
+			model.layerElementUV.uVIndex = new FBXIntBuffer(getPolygonVertexIndices(uvLayer, "UVIndex", indices));
+		}
+	}
 
-					last.getClass().getDeclaredMethod("addConnection", String.class, String.class, String.class)
-					.invoke(last, vals[0].replaceAll(REGEX_NO_SPACE_NO_QUOTE, REPLACE_EMPTY), vals[1].replaceAll(REGEX_NO_SPACE_NO_QUOTE, REPLACE_EMPTY), vals[2].replaceAll(REGEX_NO_SPACE_NO_QUOTE, REPLACE_EMPTY));
-					return;
-				}
+	private static boolean isPolygonVertexDirect(FBXNode layer) {
+		return getString(layer, "MappingInformationType", "ByPolygonVertex").equals("ByPolygonVertex")
+				&& getString(layer, "ReferenceInformationType", "Direct").equals("Direct");
+	}
 
-				Field field = obj.getClass().getField(prop);
-				Class<?> clazz = field.getType();
+	/**
+	 * Maps every polygon vertex to the index of its value in a layer element.
+	 */
+	private static int[] getPolygonVertexIndices(FBXNode layer, String indexName, int[] polygonVertexIndex) {
+		String mapping = getString(layer, "MappingInformationType", "ByPolygonVertex");
+		boolean direct = getString(layer, "ReferenceInformationType", "Direct").equals("Direct");
+		FBXNode indexNode = layer.getChild(indexName);
+		int[] index = !direct && indexNode != null ? indexNode.getInts() : null;
+		if(index != null && mapping.equals("ByPolygonVertex"))
+			return index;
+
+		int[] result = new int[polygonVertexIndex.length];
+		int polygon = 0;
+		for(int i=0; i<result.length; ++i) {
+			int vertex = polygonVertexIndex[i];
+			int value;
+			if(mapping.equals("ByVertice") || mapping.equals("ByVertex") || mapping.equals("ByControlPoint"))
+				value = vertex < 0 ? ~vertex : vertex;
+			else if(mapping.equals("ByPolygon"))
+				value = polygon;
+			else if(mapping.equals("AllSame"))
+				value = 0;
+			else
+				value = i;
+			result[i] = index != null ? index[value] : value;
+			if(vertex < 0) ++polygon;
+		}
+		return result;
+	}
 
-				if(clazz.equals(Integer.class))
-				{
-					// TODO investigate why there are multiple values in TextureId sometimes
-					if(val.split(",").length > 0) val = val.split(",")[0];
-					field.set(obj, Integer.valueOf(val.replaceAll(REGEX_NO_SPACE_NO_QUOTE, REPLACE_EMPTY)));
-				}
-				else if(clazz.equals(String.class))
-					field.set(obj, val.replaceAll(REGEX_NO_QUOTE, REPLACE_EMPTY));
-				else if(clazz.equals(Long.class))
-					field.set(obj, Long.valueOf(val.replaceAll(REGEX_NO_SPACE_NO_QUOTE, REPLACE_EMPTY)));
-				else if(clazz.equals(Float.class))
-					field.set(obj, Float.valueOf(val.replaceAll(REGEX_NO_SPACE_NO_QUOTE, REPLACE_EMPTY)));
-				else if(clazz.equals(Vector3.class)) {
-					field.set(obj, new Vector3(val.split(",")));
-				}
-				else if(clazz.equals(FBXFloatBuffer.class))
-				{
-					StringBuffer sb = new StringBuffer(val);
-					String noSpace;
-					while((line = buffer.readLine()) != null) {
-						noSpace = line.replaceAll("\\s", REPLACE_EMPTY);
-						if(noSpace.length() > 0 && noSpace.charAt(0) == ',')
-							sb.append(noSpace);
-						else
-						{
-							processNextLine = true;
-							break;
-						}
-					}
-					field.set(obj, new FBXFloatBuffer(sb.toString()));
-				}
-				else if(clazz.equals(FBXIntBuffer.class))
-				{
-					StringBuffer sb = new StringBuffer(val);
-					String noSpace;
-					while((line = buffer.readLine()) != null) {
-						noSpace = line.replaceAll("\\s", REPLACE_EMPTY);
-						if(noSpace.length() > 0 && noSpace.charAt(0) == ',')
-							sb.append(noSpace);
-						else
-						{
-							processNextLine = true;
-							break;
-						}
-					}
-					field.set(obj, new FBXIntBuffer(sb.toString()));
-				}
-				else if(clazz.equals(FBXMatrix.class))
-				{
-					StringBuffer sb = new StringBuffer(val);
-					String noSpace;
-					while((line = buffer.readLine()) != null) {
-						noSpace = line.replaceAll(REGEX_CLEAN, REPLACE_EMPTY);
-						if(noSpace.length() > 0 && noSpace.charAt(0) == ',')
-							sb.append(noSpace);
-						else
-						{
-							processNextLine = true;
-							break;
-						}
-					}
-					field.set(obj, new FBXMatrix(sb.toString()));
-				}
-				else if(clazz.equals(FBXColor4.class))
-				{
-					field.set(obj, new FBXColor4(val));
-				}
-				else if(clazz.equals(Vector2.class))
-				{
-					field.set(obj, new Vector2(val.replaceAll("\\s", REPLACE_EMPTY).split(",")));
-				}
+	private static String getString(FBXNode node, String childName, String defaultValue) {
+		FBXNode child = node.getChild(childName);
+		String value = child != null ? child.getString(0) : null;
+		return value != null ? value : defaultValue;
+	}
 
-				if(processNextLine && line.replaceAll(REGEX_CLEAN, REPLACE_EMPTY).length() > 0)
-					readLine(buffer, line);
-			} catch(NoSuchFieldException e) {
-				return;
-			}
-		}
+	private static Vector3 getVector(FBXNode node, int first) {
+		return new Vector3(node.getDouble(first), node.getDouble(first + 1), node.getDouble(first + 2));
 	}
 }
@@ -12,12 +12,9 @@
  */
 package org.rajawali3d.loader.md5;
 
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.StringTokenizer;
 
 import org.rajawali3d.animation.mesh.IAnimationSequence;
 import org.rajawali3d.animation.mesh.SkeletalAnimationFrame;
@@ -66,158 +63,157 @@ public class LoaderMD5Anim extends ALoader implements IAnimationSequenceLoader {
 	public LoaderMD5Anim parse() throws ParsingException {
 		super.parse();
 
-		BufferedReader buffer = null;
-		if(mFile == null) {
-			InputStream fileIn = mResources.openRawResource(mResourceId);
-			buffer = new BufferedReader(new InputStreamReader(fileIn));
-		} else {
-			try {
-				buffer = new BufferedReader(new FileReader(mFile));
-			} catch (FileNotFoundException e) {
-				RajLog.e("["+getClass().getCanonicalName()+"] Could not find file.");
-				e.printStackTrace();
+		mSequence = new SkeletalAnimationSequence(mAnimationName);
+		InputStream stream = null;
+		try {
+			stream = getBufferedInputStream();
+			parse(new MD5Tokenizer(stream));
+		} catch (FileNotFoundException e) {
+			RajLog.e("["+getClass().getCanonicalName()+"] Could not find file.");
+			throw new ParsingException(e);
+		} catch (IOException e) {
+			throw new ParsingException(e);
+		} finally {
+			if(stream != null) {
+				try {
+					stream.close();
+				} catch (IOException e) {}
 			}
 		}
 
-		mSequence = new SkeletalAnimationSequence(mAnimationName);
-		SkeletalAnimationFrame[] frames = null;
-		String line;
+		return this;
+	}
 
-		try {
-			while((line = buffer.readLine()) != null) {
-				line = line.replace("\t", " ");
-				StringTokenizer parts = new StringTokenizer(line, " ");
-				int numTokens = parts.countTokens();
-
-				if(numTokens == 0)
-					continue;
-				String type = parts.nextToken();
-
-				if(type.equalsIgnoreCase(MD5_VERSION)) {
-				} else if(type.equalsIgnoreCase(COMMAND_LINE)) {
-				} else if(type.equalsIgnoreCase(NUM_JOINTS)) {
-					mNumJoints = Integer.parseInt(parts.nextToken());
-					mJoints = new SkeletonJoint[mNumJoints];
-				} else if(type.equalsIgnoreCase(NUM_FRAMES)) {
-					mSequence.setNumFrames(Integer.parseInt(parts.nextToken()));
-					frames = new SkeletalAnimationFrame[mSequence.getNumFrames()];
-				} else if(type.equalsIgnoreCase(FRAME_RATE)) {
-					mSequence.setFrameRate(Integer.parseInt(parts.nextToken()));
-				} else if(type.equalsIgnoreCase(NUM_ANIMATED_COMPONENTS)) {
-					mNumAnimatedComponents = Integer.parseInt(parts.nextToken());
-				} else if(type.equalsIgnoreCase(HIERARCHY)) {
-					parseHierarchy(buffer);
-				} else if(type.equalsIgnoreCase(BOUNDS)) {
-					parseBounds(frames, buffer);
-				} else if(type.equalsIgnoreCase(FRAME)) {
-					parseFrame(frames, Integer.parseInt(parts.nextToken()), buffer);
-				} else if(type.equalsIgnoreCase(BASEFRAME)) {
-					mBaseFrame = new SkeletonJoint[mNumJoints];
-					parseBaseFrame(buffer);
-				}
+	/**
+	 * Reads the hierarchy, base frame and frames of the file into the sequence.
+	 *
+	 * @param tokenizer
+	 * @throws IOException
+	 * @throws ParsingException
+	 */
+	void parse(MD5Tokenizer tokenizer) throws IOException, ParsingException {
+		SkeletalAnimationFrame[] frames = null;
+		float[] frameData = null;
+		int type;
+
+		while((type = tokenizer.next()) != MD5Tokenizer.EOF) {
+			if(tokenizer.is(MD5_VERSION)) {
+				tokenizer.nextInt();
+			} else if(tokenizer.is(COMMAND_LINE)) {
+				tokenizer.nextString();
+			} else if(tokenizer.is(NUM_JOINTS)) {
+				mNumJoints = tokenizer.nextInt();
+				mJoints = new SkeletonJoint[mNumJoints];
+			} else if(tokenizer.is(NUM_FRAMES)) {
+				mSequence.setNumFrames(tokenizer.nextInt());
+				frames = new SkeletalAnimationFrame[mSequence.getNumFrames()];
+			} else if(tokenizer.is(FRAME_RATE)) {
+				mSequence.setFrameRate(tokenizer.nextInt());
+			} else if(tokenizer.is(NUM_ANIMATED_COMPONENTS)) {
+				mNumAnimatedComponents = tokenizer.nextInt();
+				frameData = new float[mNumAnimatedComponents];
+			} else if(tokenizer.is(HIERARCHY)) {
+				tokenizer.expect('{');
+				parseHierarchy(tokenizer);
+			} else if(tokenizer.is(BOUNDS)) {
+				tokenizer.expect('{');
+				parseBounds(frames, tokenizer);
+			} else if(tokenizer.is(FRAME)) {
+				final int frameIndex = tokenizer.nextInt();
+				if(frames == null || frameIndex < 0 || frameIndex >= frames.length)
+					throw tokenizer.error("Frame " + frameIndex + " is out of range");
+				if(frameData == null || mBaseFrame == null)
+					throw tokenizer.error("Frame " + frameIndex + " comes before the base frame");
+				tokenizer.expect('{');
+				parseFrame(frames, frameIndex, frameData, tokenizer);
+			} else if(tokenizer.is(BASEFRAME)) {
+				mBaseFrame = new SkeletonJoint[mNumJoints];
+				tokenizer.expect('{');
+				parseBaseFrame(tokenizer);
+			} else if(type == '{') {
+				tokenizer.skipBlock();
 			}
-			buffer.close();
-		} catch(Exception e) {
-			e.printStackTrace();
 		}
 
+		if(frames == null)
+			throw new ParsingException("The file declares no frames.");
+		for(int i=0; i<frames.length; ++i) {
+			if(frames[i] == null || frames[i].getSkeleton().getJoints() == null)
+				throw new ParsingException("Frame " + i + " is missing.");
+		}
 		mSequence.setFrames(frames);
-
-		return this;
 	}
 
 	public IAnimationSequence getParsedAnimationSequence() {
 		return mSequence;
 	}
 
-	private void parseHierarchy(BufferedReader buffer) {
-		try {
-			String line;
-			int index = 0;
-
-			while((line = buffer.readLine()) != null) {
-				line = line.replace("\t", " ");
-				StringTokenizer parts = new StringTokenizer(line, " ");
+	private void parseHierarchy(MD5Tokenizer tokenizer) throws IOException, ParsingException {
+		if(mJoints == null)
+			throw tokenizer.error("The hierarchy comes before numJoints");
+		int index = 0;
 
-				int numTokens = parts.countTokens();
+		while(tokenizer.next() != '}') {
+			if(tokenizer.getType() != MD5Tokenizer.STRING)
+				throw tokenizer.error("Expected a joint name");
+			if(index == mNumJoints)
+				throw tokenizer.error("More joints than numJoints");
 
-				if(line.indexOf('}') > -1) return;
-				if(numTokens == 0) continue;
+			SkeletonJoint joint = new SkeletonJoint();
 
-				SkeletonJoint joint = new SkeletonJoint();
+			joint.setIndex(index);
+			joint.setName(tokenizer.getText());
+			joint.setParentIndex(tokenizer.nextInt());
+			joint.setFlags(tokenizer.nextInt());
+			joint.setStartIndex(tokenizer.nextInt());
 
-				joint.setIndex(index);
-				joint.setName(parts.nextToken());
-				joint.setParentIndex(Integer.parseInt(parts.nextToken()));
-				joint.setFlags(Integer.parseInt(parts.nextToken()));
-				joint.setStartIndex(Integer.parseInt(parts.nextToken()));
-
-				mJoints[index++] = joint;
-			}
-		} catch(Exception e) {
-			e.printStackTrace();
+			mJoints[index++] = joint;
 		}
 	}
 
-	private void parseBounds(SkeletalAnimationFrame[] frames, BufferedReader buffer) {
-		try {
-			String line;
-			int index = 0;
-
-			while((line = buffer.readLine()) != null) {
-				StringTokenizer parts = new StringTokenizer(line, " ");
-				int numTokens = parts.countTokens();
-				if(line.indexOf('}') > -1) return;
-				if(numTokens == 0) continue;
-
-				SkeletalAnimationFrame frame = new SkeletalAnimationFrame();
-				frames[index++] = frame;
-				// discard (
-				parts.nextToken();
-
-				Vector3 min = new Vector3(Float.parseFloat(parts.nextToken()), Float.parseFloat(parts.nextToken()), Float.parseFloat(parts.nextToken()));
-				// discard )
-				parts.nextToken();
-				// discard (
-				parts.nextToken();
-
-				Vector3 max = new Vector3(Float.parseFloat(parts.nextToken()), Float.parseFloat(parts.nextToken()), Float.parseFloat(parts.nextToken()));
-
-				frame.setBounds(min, max);
-			}
-		} catch(Exception e) {
-			e.printStackTrace();
+	private void parseBounds(SkeletalAnimationFrame[] frames, MD5Tokenizer tokenizer) throws IOException, ParsingException {
+		if(frames == null)
+			throw tokenizer.error("The bounds come before numFrames");
+		final float[] min = new float[3];
+		final float[] max = new float[3];
+		int index = 0;
+
+		while(tokenizer.next() != '}') {
+			if(tokenizer.getType() != '(')
+				throw tokenizer.error("Expected '('");
+			if(index == frames.length)
+				throw tokenizer.error("More bounds than numFrames");
+
+			SkeletalAnimationFrame frame = getFrame(frames, index++);
+			for(int i=0; i<3; ++i) min[i] = tokenizer.nextFloat();
+			tokenizer.expect(')');
+			tokenizer.nextVector(max);
+
+			frame.setBounds(new Vector3(min[0], min[1], min[2]), new Vector3(max[0], max[1], max[2]));
 		}
 	}
 
-	private void parseFrame(SkeletalAnimationFrame[] frames, int frameIndex, BufferedReader buffer) {
-		try {
-			String line;
-			SkeletalAnimationFrame frame = frames[frameIndex];
-			frame.setFrameIndex(frameIndex);
-			Skeleton skeleton = frame.getSkeleton();
-			SkeletonJoint[] joints = new SkeletonJoint[mNumJoints];
-			float[] frameData = new float[mNumAnimatedComponents];
-			int index = 0;
-
-			while((line = buffer.readLine()) != null) {
-				line = line.replace("\t", " ");
-
-				StringTokenizer parts = new StringTokenizer(line, " ");
-
-				if(line.indexOf('}') > -1) {
-					skeleton.setJoints(joints);
-					buildFrameSkeleton(frameData, skeleton);
-					return;
-				}
-				while(parts.hasMoreTokens())
-				{
-					frameData[index++] = Float.parseFloat(parts.nextToken());
-				}
-			}
-		} catch(Exception e) {
-			e.printStackTrace();
+	private static SkeletalAnimationFrame getFrame(SkeletalAnimationFrame[] frames, int index) {
+		if(frames[index] == null) frames[index] = new SkeletalAnimationFrame();
+		return frames[index];
+	}
+
+	private void parseFrame(SkeletalAnimationFrame[] frames, int frameIndex, float[] frameData, MD5Tokenizer tokenizer)
+			throws IOException, ParsingException {
+		SkeletalAnimationFrame frame = getFrame(frames, frameIndex);
+		frame.setFrameIndex(frameIndex);
+		Skeleton skeleton = frame.getSkeleton();
+		int index = 0;
+
+		while(tokenizer.next() != '}') {
+			if(tokenizer.getType() != MD5Tokenizer.WORD)
+				throw tokenizer.error("Expected a number");
+			if(index == frameData.length)
+				throw tokenizer.error("More values than numAnimatedComponents");
+			frameData[index++] = tokenizer.getFloat();
 		}
+		skeleton.setJoints(new SkeletonJoint[mNumJoints]);
+		buildFrameSkeleton(frameData, skeleton);
 	}
 
 	private void buildFrameSkeleton(float[] frameData, Skeleton skeleton) {
@@ -251,41 +247,26 @@ public class LoaderMD5Anim extends ALoader implements IAnimationSequenceLoader {
 		}
 	}
 
-	private void parseBaseFrame(BufferedReader buffer) {
-		try {
-			String line;
-			int index = 0;
-
-			while((line = buffer.readLine()) != null) {
-				line = line.replace("\t", " ");
-				StringTokenizer parts = new StringTokenizer(line, " ");
-				int numTokens = parts.countTokens();
-				if(line.indexOf('}') > -1) return;
-				if(numTokens == 0) continue;
-
-				SkeletonJoint joint = new SkeletonJoint();
-				mBaseFrame[index++] = joint;
-
-				// ignore "("
-				parts.nextToken();
-				float x = Float.parseFloat(parts.nextToken());
-				float y = Float.parseFloat(parts.nextToken());
-				float z = Float.parseFloat(parts.nextToken());
-				joint.setPosition(x, z, y);
-
-				// ignore ")"
-				parts.nextToken();
-				// ignore "("
-				parts.nextToken();
-
-				x = Float.parseFloat(parts.nextToken());
-				y = Float.parseFloat(parts.nextToken());
-				z = Float.parseFloat(parts.nextToken());
-				joint.setOrientation(x, z, y);
-				joint.getOrientation().computeW();
-			}
-		} catch(Exception e) {
-			e.printStackTrace();
+	private void parseBaseFrame(MD5Tokenizer tokenizer) throws IOException, ParsingException {
+		final float[] vector = new float[3];
+		int index = 0;
+
+		while(tokenizer.next() != '}') {
+			if(tokenizer.getType() != '(')
+				throw tokenizer.error("Expected '('");
+			if(index == mNumJoints)
+				throw tokenizer.error("More joints than numJoints");
+
+			SkeletonJoint joint = new SkeletonJoint();
+			mBaseFrame[index++] = joint;
+
+			for(int i=0; i<3; ++i) vector[i] = tokenizer.nextFloat();
+			tokenizer.expect(')');
+			joint.setPosition(vector[0], vector[2], vector[1]);
+
+			tokenizer.nextVector(vector);
+			joint.setOrientation(vector[0], vector[2], vector[1]);
+			joint.getOrientation().computeW();
 		}
 	}
 }
@@ -15,12 +15,9 @@ package org.rajawali3d.loader.md5;
 import android.content.res.Resources;
 import android.opengl.GLES20;
 
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.StringTokenizer;
 
 import org.rajawali3d.animation.mesh.AAnimationObject3D;
 import org.rajawali3d.animation.mesh.SkeletalAnimationChildObject3D;
@@ -91,56 +88,30 @@ public class LoaderMD5Mesh extends AMeshLoader implements IAnimatedMeshLoader {
 	public LoaderMD5Mesh parse() throws ParsingException {
 		super.parse();
 
-		BufferedReader buffer = null;
-		if (mFile == null) {
-			InputStream fileIn = mResources.openRawResource(mResourceId);
-			buffer = new BufferedReader(new InputStreamReader(fileIn));
-		} else {
-			try {
-				buffer = new BufferedReader(new FileReader(mFile));
-			} catch (FileNotFoundException e) {
-				RajLog.e("[" + getClass().getCanonicalName() + "] Could not find file.");
-				throw new ParsingException(e);
-			}
-		}
-		String line;
-
+		InputStream stream = null;
 		try {
-			while ((line = buffer.readLine()) != null) {
-				StringTokenizer parts = new StringTokenizer(line, " ");
-				int numTokens = parts.countTokens();
-
-				if (numTokens == 0)
-					continue;
-				String type = parts.nextToken();
-
-				if (type.equalsIgnoreCase(MD5_VERSION)) {
-                    if (RajLog.isDebugEnabled())
-					    RajLog.d("MD5 Version: " + parts.nextToken());
-				} else if (type.equalsIgnoreCase(COMMAND_LINE)) {} else if (type.equalsIgnoreCase(NUM_JOINTS)) {
-					mNumJoints = Integer.parseInt(parts.nextToken());
-					mJoints = new SkeletonJoint[mNumJoints];
-				} else if (type.equalsIgnoreCase(NUM_MESHES)) {
-					mNumMeshes = Integer.parseInt(parts.nextToken());
-					mMeshes = new SkeletonMeshData[mNumMeshes];
-				} else if (type.equalsIgnoreCase(JOINTS)) {
-					parseJoints(buffer);
-				} else if (type.equals(MESH)) {
-					parseMesh(buffer);
-				}
-			}
-			buffer.close();
+			stream = getBufferedInputStream();
+			parse(new MD5Tokenizer(stream));
+			stream.close();
+			stream = null;
 
 			buildBindPose();
 			buildMeshes();
 			calculateNormals();
 			createObjects();
+		} catch (FileNotFoundException e) {
+			RajLog.e("[" + getClass().getCanonicalName() + "] Could not find file.");
+			throw new ParsingException(e);
+		} catch (ParsingException e) {
+			throw e;
 		} catch (Exception tme) {
-			try {
-				buffer.close();
-			} catch (Exception ex) {}
 			throw new ParsingException(tme);
 		} finally {
+			if (stream != null) {
+				try {
+					stream.close();
+				} catch (Exception ex) {}
+			}
 			mMeshes = null;
 			mJoints = null;
 
@@ -151,130 +122,154 @@ public class LoaderMD5Mesh extends AMeshLoader implements IAnimatedMeshLoader {
 		return this;
 	}
 
-	private void parseJoints(BufferedReader buffer) {
-		try {
-			String line;
-			int count = 0;
-
-			while ((line = buffer.readLine()) != null) {
-				SkeletonJoint joint = new SkeletonJoint();
-				if (line.length() == 0)
-					continue;
-
-				if (line.indexOf('}') > -1) {
-					return;
-				}
-				line = line.replace('\t', ' ');
-
-				// -- Bone Name
-				int offset = line.lastIndexOf('"');
-				joint.setName(line.substring(line.indexOf('"') + 1, offset));
-
-				// -- Parent Index
-				offset += 2;
-				joint.setParentIndex(Integer.parseInt(line.substring(offset, line.indexOf(' ', offset))));
-
-				// -- position
-				offset = line.indexOf(')');
-				String[] p = line.substring(line.indexOf('(') + 2, offset).split(" ");
-				joint.setPosition(Float.parseFloat(p[0]), Float.parseFloat(p[2]), Float.parseFloat(p[1]));
-				// -- orientation
-				p = line.substring(line.indexOf('(', offset) + 2, line.lastIndexOf(')')).split(" ");
-				joint.setOrientation(Float.parseFloat(p[0]), Float.parseFloat(p[2]), Float.parseFloat(p[1]));
-				joint.getOrientation().computeW();
-
-				mJoints[count++] = joint;
+	/**
+	 * Reads the joints and meshes of the file.
+	 *
+	 * @param tokenizer
+	 * @throws IOException
+	 * @throws ParsingException
+	 */
+	void parse(MD5Tokenizer tokenizer) throws IOException, ParsingException {
+		mMeshIndex = 0;
+		int type;
+		while ((type = tokenizer.next()) != MD5Tokenizer.EOF) {
+			if (tokenizer.is(MD5_VERSION)) {
+				final int version = tokenizer.nextInt();
+				if (RajLog.isDebugEnabled())
+					RajLog.d("MD5 Version: " + version);
+			} else if (tokenizer.is(COMMAND_LINE)) {
+				tokenizer.nextString();
+			} else if (tokenizer.is(NUM_JOINTS)) {
+				mNumJoints = tokenizer.nextInt();
+				mJoints = new SkeletonJoint[mNumJoints];
+			} else if (tokenizer.is(NUM_MESHES)) {
+				mNumMeshes = tokenizer.nextInt();
+				mMeshes = new SkeletonMeshData[mNumMeshes];
+			} else if (tokenizer.is(JOINTS)) {
+				tokenizer.expect('{');
+				parseJoints(tokenizer);
+			} else if (tokenizer.is(MESH)) {
+				tokenizer.expect('{');
+				parseMesh(tokenizer);
+			} else if (type == '{') {
+				tokenizer.skipBlock();
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
+		}
+		if (mJoints == null || mMeshes == null) {
+			throw new ParsingException("The file declares no joints or meshes.");
+		}
+		for (int i = 0; i < mNumJoints; ++i) {
+			if (mJoints[i] == null)
+				throw new ParsingException("Joint " + i + " is missing.");
+		}
+		if (mMeshIndex != mNumMeshes) {
+			throw new ParsingException("Found " + mMeshIndex + " of " + mNumMeshes + " meshes.");
 		}
 	}
 
-	private void parseMesh(BufferedReader buffer) {
-		try {
-			String line;
-			SkeletonMeshData mesh = new SkeletonMeshData();
-
-			while ((line = buffer.readLine()) != null) {
-				line = line.replace("\t", "");
-				StringTokenizer parts = new StringTokenizer(line, " ");
-				int numTokens = parts.countTokens();
-				if (line.indexOf('}') > -1) {
-					mMeshes[mMeshIndex++] = mesh;
-					return;
-				}
-				if (numTokens == 0 || line.indexOf('}') > -1)
+	private void parseJoints(MD5Tokenizer tokenizer) throws IOException, ParsingException {
+		if (mJoints == null)
+			throw tokenizer.error("The joints come before numJoints");
+		final float[] vector = new float[3];
+		int count = 0;
+
+		while (tokenizer.next() != '}') {
+			if (tokenizer.getType() != MD5Tokenizer.STRING)
+				throw tokenizer.error("Expected a joint name");
+			if (count == mNumJoints)
+				throw tokenizer.error("More joints than numJoints");
+			SkeletonJoint joint = new SkeletonJoint();
+
+			// -- Bone Name
+			joint.setName(tokenizer.getText());
+
+			// -- Parent Index
+			joint.setParentIndex(tokenizer.nextInt());
+
+			// -- position
+			tokenizer.nextVector(vector);
+			joint.setPosition(vector[0], vector[2], vector[1]);
+			// -- orientation
+			tokenizer.nextVector(vector);
+			joint.setOrientation(vector[0], vector[2], vector[1]);
+			joint.getOrientation().computeW();
+
+			mJoints[count++] = joint;
+		}
+	}
+
+	private void parseMesh(MD5Tokenizer tokenizer) throws IOException, ParsingException {
+		if (mMeshes == null || mMeshIndex == mNumMeshes)
+			throw tokenizer.error("More meshes than numMeshes");
+		final float[] vector = new float[3];
+		final float[] uv = new float[2];
+		SkeletonMeshData mesh = new SkeletonMeshData();
+
+		int type;
+		while ((type = tokenizer.next()) != '}') {
+			if (type == MD5Tokenizer.EOF) {
+				throw tokenizer.error("Unterminated mesh");
+			} else if (tokenizer.is(SHADER)) {
+				String shader = tokenizer.nextString();
+				mesh.textureName = shader;
+				if (shader.length() == 0)
 					continue;
 
-				String type = parts.nextToken();
-
-				if (type.equalsIgnoreCase(SHADER)) {
-					String shader = parts.nextToken();
-					shader = shader.replace("\"", "");
-					mesh.textureName = shader;
-					if (shader.length() == 0)
-						continue;
-
-					int lastDelim = shader.lastIndexOf("/");
-					if (lastDelim == -1)
-						lastDelim = shader.lastIndexOf("\\");
-					if (lastDelim > -1)
-						mesh.textureName = shader.substring(lastDelim + 1, shader.length());
-
-					int dot = shader.lastIndexOf(".");
-					if (dot > -1)
-						mesh.textureName = shader.substring(0, dot);
-				} else if (type.equalsIgnoreCase(NUM_VERTS)) {
-					mesh.numVertices = Integer.parseInt(parts.nextToken());
-					mesh.boneVertices = new BoneVertex[mesh.numVertices];
-				} else if (type.equalsIgnoreCase(VERT)) {
-					int index = Integer.parseInt(parts.nextToken());
-					BoneVertex vert = new BoneVertex();
-
-					// -- ignore '('
-					parts.nextToken();
-					vert.textureCoordinate.setAll(Float.parseFloat(parts.nextToken()),
-							Float.parseFloat(parts.nextToken()));
-
-					// -- ignore ')'
-					parts.nextToken();
-					vert.weightIndex = Integer.parseInt(parts.nextToken());
-					vert.numWeights = Integer.parseInt(parts.nextToken());
-					mesh.numWeights += vert.numWeights;
-
-					mesh.maxBoneWeightsPerVertex = Math.max(mesh.maxBoneWeightsPerVertex, vert.numWeights);
-
-					mesh.boneVertices[index] = vert;
-				} else if (type.equalsIgnoreCase(NUM_TRIS)) {
-					mesh.numTriangles = Integer.parseInt(parts.nextToken());
-					mesh.triangles = new int[mesh.numTriangles][];
-				} else if (type.equalsIgnoreCase(TRI)) {
-					int index = Integer.parseInt(parts.nextToken());
-					mesh.triangles[index] = new int[] { Integer.parseInt(parts.nextToken()),
-							Integer.parseInt(parts.nextToken()), Integer.parseInt(parts.nextToken()) };
-				} else if (type.equalsIgnoreCase(NUM_WEIGHTS)) {
-					mesh.numWeights = Integer.parseInt(parts.nextToken());
-					mesh.boneWeights = new BoneWeight[mesh.numWeights];
-				} else if (type.equalsIgnoreCase(WEIGHT)) {
-					int index = Integer.parseInt(parts.nextToken());
-
-					BoneWeight weight = new BoneWeight();
-					weight.jointIndex = Integer.parseInt(parts.nextToken());
-					weight.weightValue = Float.parseFloat(parts.nextToken());
-
-					mesh.boneWeights[index] = weight;
-
-					// -- ignore '('
-					parts.nextToken();
-					float x = Float.parseFloat(parts.nextToken());
-					float z = Float.parseFloat(parts.nextToken());
-					float y = Float.parseFloat(parts.nextToken());
-					weight.position.setAll(x, y, z);
-				}
+				int lastDelim = shader.lastIndexOf("/");
+				if (lastDelim == -1)
+					lastDelim = shader.lastIndexOf("\\");
+				if (lastDelim > -1)
+					mesh.textureName = shader.substring(lastDelim + 1, shader.length());
+
+				int dot = mesh.textureName.lastIndexOf(".");
+				if (dot > -1)
+					mesh.textureName = mesh.textureName.substring(0, dot);
+			} else if (tokenizer.is(NUM_VERTS)) {
+				mesh.numVertices = tokenizer.nextInt();
+				mesh.boneVertices = new BoneVertex[mesh.numVertices];
+			} else if (tokenizer.is(VERT)) {
+				int index = checkIndex(tokenizer, tokenizer.nextInt(), mesh.boneVertices);
+				BoneVertex vert = new BoneVertex();
+
+				tokenizer.nextVector(uv);
+				vert.textureCoordinate.setAll(uv[0], uv[1]);
+
+				vert.weightIndex = tokenizer.nextInt();
+				vert.numWeights = tokenizer.nextInt();
+				mesh.numWeights += vert.numWeights;
+
+				mesh.maxBoneWeightsPerVertex = Math.max(mesh.maxBoneWeightsPerVertex, vert.numWeights);
+
+				mesh.boneVertices[index] = vert;
+			} else if (tokenizer.is(NUM_TRIS)) {
+				mesh.numTriangles = tokenizer.nextInt();
+				mesh.triangles = new int[mesh.numTriangles][];
+			} else if (tokenizer.is(TRI)) {
+				int index = checkIndex(tokenizer, tokenizer.nextInt(), mesh.triangles);
+				mesh.triangles[index] = new int[] { tokenizer.nextInt(), tokenizer.nextInt(), tokenizer.nextInt() };
+			} else if (tokenizer.is(NUM_WEIGHTS)) {
+				mesh.numWeights = tokenizer.nextInt();
+				mesh.boneWeights = new BoneWeight[mesh.numWeights];
+			} else if (tokenizer.is(WEIGHT)) {
+				int index = checkIndex(tokenizer, tokenizer.nextInt(), mesh.boneWeights);
+
+				BoneWeight weight = new BoneWeight();
+				weight.jointIndex = tokenizer.nextInt();
+				weight.weightValue = tokenizer.nextFloat();
+
+				mesh.boneWeights[index] = weight;
+
+				tokenizer.nextVector(vector);
+				weight.position.setAll(vector[0], vector[2], vector[1]);
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
 		}
+		mMeshes[mMeshIndex++] = mesh;
+	}
+
+	private static int checkIndex(MD5Tokenizer tokenizer, int index, Object[] array) throws ParsingException {
+		if (array == null || index < 0 || index >= array.length)
+			throw tokenizer.error("Index " + index + " is out of range or comes before its count");
+		return index;
 	}
 
 	private void buildMeshes() {
@@ -406,7 +401,7 @@ public class LoaderMD5Mesh extends AMeshLoader implements IAnimatedMeshLoader {
 			Matrix.invertM(inverseBoneMatrix, 0, boneMatrix, 0);
 
 			for (int j = 0; j < 16; j++) {
-				mBindPoseMatrix[i + j] = boneMatrix[j];
+				mBindPoseMatrix[i * 16 + j] = boneMatrix[j];
 			}
 			mInverseBindPoseMatrix[i] = inverseBoneMatrix;
 		}
@@ -0,0 +1,247 @@
+package org.rajawali3d.loader.md5;
+
+import androidx.annotation.NonNull;
+
+import org.rajawali3d.loader.ParsingException;
+import org.rajawali3d.util.AsciiNumberParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Splits MD5 mesh and animation files into tokens straight from a byte buffer. Keywords are compared and numbers
+ * parsed in place, only names and quoted strings become {@link String}s. Parentheses and braces are tokens of their
+ * own and {@code //} comments are skipped.
+ */
+final class MD5Tokenizer {
+
+    static final int EOF    = -1;
+    static final int WORD   = 'w';
+    static final int STRING = '"';
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final InputStream mStream;
+
+    private byte[] mBuffer = new byte[64 * 1024];
+    private int    mPosition;
+    private int    mLimit;
+    private int    mLine = 1;
+
+    private int mType;
+    private int mTokenStart;
+    private int mTokenEnd;
+
+    /**
+     * @param stream {@link InputStream} positioned at the start of the file.
+     */
+    MD5Tokenizer(@NonNull InputStream stream) {
+        mStream = stream;
+    }
+
+    /**
+     * Moves to the next token.
+     *
+     * @return The token type: {@link #WORD}, {@link #STRING}, one of {@code ( ) { }} or {@link #EOF}.
+     */
+    int next() throws IOException, ParsingException {
+        skipWhitespace();
+        mTokenStart = mPosition;
+        if (mPosition == mLimit) {
+            mTokenEnd = mPosition;
+            return mType = EOF;
+        }
+        final byte c = mBuffer[mPosition];
+        if (c == '(' || c == ')' || c == '{' || c == '}') {
+            mTokenEnd = ++mPosition;
+            return mType = c;
+        } else if (c == '"') {
+            ++mPosition;
+            mTokenStart = mPosition;
+            while (true) {
+                if (mPosition == mLimit && !fill()) {
+                    throw error("Unterminated string");
+                }
+                final byte b = mBuffer[mPosition];
+                if (b == '"') {
+                    break;
+                } else if (b == '\n') {
+                    throw error("Unterminated string");
+                }
+                ++mPosition;
+            }
+            mTokenEnd = mPosition++;
+            return mType = STRING;
+        }
+        while (mPosition < mLimit || fill()) {
+            final byte b = mBuffer[mPosition];
+            if (b <= ' ' || b == '(' || b == ')' || b == '{' || b == '}' || b == '"' || (b == '/' && isComment())) {
+                break;
+            }
+            ++mPosition;
+        }
+        mTokenEnd = mPosition;
+        return mType = WORD;
+    }
+
+    int getType() {
+        return mType;
+    }
+
+    /**
+     * @return {@code true} if the current token is the given word, ignoring case.
+     */
+    boolean is(@NonNull String word) {
+        if (mType != WORD || mTokenEnd - mTokenStart != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); ++i) {
+            final int a = mBuffer[mTokenStart + i];
+            final int b = word.charAt(i);
+            if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The text of the current word or string.
+     */
+    @NonNull
+    String getText() {
+        return new String(mBuffer, mTokenStart, mTokenEnd - mTokenStart, UTF_8);
+    }
+
+    @NonNull
+    String nextString() throws IOException, ParsingException {
+        if (next() != STRING) {
+            throw error("Expected a quoted string");
+        }
+        return getText();
+    }
+
+    int nextInt() throws IOException, ParsingException {
+        if (next() != WORD) {
+            throw error("Expected an integer");
+        }
+        try {
+            return AsciiNumberParser.parseInt(mBuffer, mTokenStart, mTokenEnd);
+        } catch (NumberFormatException e) {
+            throw error("Invalid integer " + getText());
+        }
+    }
+
+    float nextFloat() throws IOException, ParsingException {
+        if (next() != WORD) {
+            throw error("Expected a number");
+        }
+        return getFloat();
+    }
+
+    /**
+     * @return The current word as a number.
+     */
+    float getFloat() throws ParsingException {
+        try {
+            return AsciiNumberParser.parseFloat(mBuffer, mTokenStart, mTokenEnd);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number " + getText());
+        }
+    }
+
+    /**
+     * Reads numbers in parentheses, as many as the array holds.
+     */
+    void nextVector(@NonNull float[] vector) throws IOException, ParsingException {
+        expect('(');
+        for (int i = 0; i < vector.length; ++i) {
+            vector[i] = nextFloat();
+        }
+        expect(')');
+    }
+
+    void expect(int type) throws IOException, ParsingException {
+        if (next() != type) {
+            throw error("Expected '" + (char) type + "'");
+        }
+    }
+
+    /**
+     * Skips to the brace closing the current block, including any nested blocks.
+     */
+    void skipBlock() throws IOException, ParsingException {
+        int depth = 1;
+        while (depth > 0) {
+            final int type = next();
+            if (type == EOF) {
+                throw error("Unterminated block");
+            } else if (type == '{') {
+                ++depth;
+            } else if (type == '}') {
+                --depth;
+            }
+        }
+    }
+
+    @NonNull
+    ParsingException error(@NonNull String message) {
+        return new ParsingException(message + " on line " + mLine + ".");
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (true) {
+            // Nothing before the position needs to be kept
+            mTokenStart = mPosition;
+            if (mPosition == mLimit && !fill()) {
+                return;
+            }
+            final byte c = mBuffer[mPosition];
+            if (c == '/' && isComment()) {
+                while ((mPosition < mLimit || fill()) && mBuffer[mPosition] != '\n') {
+                    mTokenStart = ++mPosition;
+                }
+                continue;
+            }
+            if (c == '\n') {
+                ++mLine;
+            } else if (c > ' ') {
+                return;
+            }
+            ++mPosition;
+        }
+    }
+
+    private boolean isComment() throws IOException {
+        if (mPosition + 1 == mLimit) {
+            fill();
+        }
+        return mPosition + 1 < mLimit && mBuffer[mPosition + 1] == '/';
+    }
+
+    /**
+     * Reads more of the file, keeping the bytes from {@link #mTokenStart} on.
+     *
+     * @return {@code false} at the end of the file.
+     */
+    private boolean fill() throws IOException {
+        final int start = mTokenStart;
+        final int kept = mLimit - start;
+        if (start > 0) {
+            System.arraycopy(mBuffer, start, mBuffer, 0, kept);
+        } else if (kept == mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, mBuffer.length * 2);
+        }
+        mPosition -= start;
+        mTokenStart -= start;
+        mLimit = kept;
+        final int count = mStream.read(mBuffer, mLimit, mBuffer.length - mLimit);
+        if (count <= 0) {
+            return false;
+        }
+        mLimit += count;
+        return true;
+    }
+}
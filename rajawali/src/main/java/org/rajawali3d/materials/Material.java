@@ -24,6 +24,7 @@ import org.rajawali3d.materials.methods.IDiffuseMethod;
 import org.rajawali3d.materials.methods.ISpecularMethod;
 import org.rajawali3d.materials.methods.SpecularMethod;
 import org.rajawali3d.materials.plugins.IMaterialPlugin;
+import org.rajawali3d.materials.plugins.VertexDecodeMaterialPlugin;
 import org.rajawali3d.materials.shaders.FragmentShader;
 import org.rajawali3d.materials.shaders.IShaderFragment;
 import org.rajawali3d.materials.shaders.VertexShader;
@@ -143,6 +144,15 @@ public class Material {
      * Holds a reference to the shader program
      */
     private int mProgramHandle = -1;
+    /**
+     * Identifies the linked program. Unlike the handle it changes every time the program is rebuilt, GL may hand out
+     * the handle of a deleted program again.
+     */
+    private int mProgramGeneration;
+    /**
+     * Source of program generations.
+     */
+    private static int sNextProgramGeneration = 1;
     /**
      * Holds a reference to the vertex shader
      */
@@ -725,6 +735,7 @@ public class Material {
             return;
         }
 
+        mProgramGeneration = sNextProgramGeneration++;
         mVertexShader.setLocations(mProgramHandle);
         mFragmentShader.setLocations(mProgramHandle);
 
@@ -837,6 +848,14 @@ public class Material {
         GLES20.glUseProgram(mProgramHandle);
     }
 
+    /**
+     * @return {@code int} Identifier of the linked program which, unlike its GL handle, is never reused once the
+     * program is rebuilt.
+     */
+    public int getProgramGeneration() {
+        return mProgramGeneration;
+    }
+
     /**
      * Applies parameters that should be set on the shaders. These are parameters
      * like time, color, buffer handles, etc.
@@ -1008,7 +1027,8 @@ public class Material {
      * @param bufferInfo
      */
     public void setVertices(BufferInfo bufferInfo) {
-        mVertexShader.setVertices(bufferInfo.bufferHandle, bufferInfo.type, bufferInfo.stride, bufferInfo.offset);
+        mVertexShader.setVertices(bufferInfo.bufferHandle, bufferInfo.type, bufferInfo.stride, bufferInfo.offset,
+                                  bufferInfo.normalized);
     }
 
     /**
@@ -1026,7 +1046,8 @@ public class Material {
      * @param bufferInfo
      */
     public void setTextureCoords(BufferInfo bufferInfo) {
-        mVertexShader.setTextureCoords(bufferInfo.bufferHandle, bufferInfo.type, bufferInfo.stride, bufferInfo.offset);
+        mVertexShader.setTextureCoords(bufferInfo.bufferHandle, bufferInfo.type, bufferInfo.stride, bufferInfo.offset,
+                                       bufferInfo.normalized);
     }
 
     /**
@@ -1044,7 +1065,8 @@ public class Material {
      * @param bufferInfo
      */
     public void setNormals(BufferInfo bufferInfo) {
-        mVertexShader.setNormals(bufferInfo.bufferHandle, bufferInfo.type, bufferInfo.stride, bufferInfo.offset);
+        mVertexShader.setNormals(bufferInfo.bufferHandle, bufferInfo.type, bufferInfo.stride, bufferInfo.offset,
+                                 bufferInfo.normalized);
     }
 
     /**
@@ -1062,7 +1084,8 @@ public class Material {
      * @param bufferInfo
      */
     public void setVertexColors(BufferInfo bufferInfo) {
-        mVertexShader.setVertexColors(bufferInfo.bufferHandle, bufferInfo.type, bufferInfo.stride, bufferInfo.offset);
+        mVertexShader.setVertexColors(bufferInfo.bufferHandle, bufferInfo.type, bufferInfo.stride, bufferInfo.offset,
+                                      bufferInfo.normalized);
     }
 
     /**
@@ -1368,6 +1391,14 @@ public class Material {
     }
 
     public void setCurrentObject(Object3D currentObject) {
+        if (mPlugins != null) {
+            for (int i = 0, j = mPlugins.size(); i < j; ++i) {
+                final IMaterialPlugin plugin = mPlugins.get(i);
+                if (plugin instanceof VertexDecodeMaterialPlugin) {
+                    ((VertexDecodeMaterialPlugin) plugin).setGeometry(currentObject.getGeometry());
+                }
+            }
+        }
     }
 
     public void unsetCurrentObject(Object3D currentObject) {
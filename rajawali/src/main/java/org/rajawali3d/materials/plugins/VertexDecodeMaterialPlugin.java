@@ -0,0 +1,214 @@
+package org.rajawali3d.materials.plugins;
+
+import android.opengl.GLES20;
+
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.VertexFormat;
+import org.rajawali3d.materials.Material;
+import org.rajawali3d.materials.shaders.AShader;
+import org.rajawali3d.materials.shaders.AShaderBase;
+import org.rajawali3d.materials.shaders.IShaderFragment;
+import org.rajawali3d.math.Matrix4;
+
+/**
+ * Expands vertex attributes stored in the compact encodings of a {@link VertexFormat} before anything else in the
+ * vertex shader uses them. Positions and texture coordinates stored as normalized shorts are mapped back onto the
+ * range of the mesh being drawn and octahedral normals are unfolded. Colors need no decoding as the GL normalizes
+ * them.
+ *
+ * The decode ranges are taken from the {@link Geometry3D} of the object currently being rendered, so one material
+ * can be shared by several quantized meshes. Scene wide materials such as shadow maps do not decode vertices.
+ *
+ * <pre><code>
+ * geometry.setVertexFormat(VertexFormat.quantized(geometry));
+ * material.addPlugin(new VertexDecodeMaterialPlugin(geometry.getVertexFormat()));
+ * </code></pre>
+ */
+public class VertexDecodeMaterialPlugin implements IMaterialPlugin {
+    private final VertexDecodeShaderFragment mVertexShader;
+
+    /**
+     * Decodes whatever the provided format quantizes.
+     *
+     * @param format {@link VertexFormat} of the meshes using the material.
+     */
+    public VertexDecodeMaterialPlugin(VertexFormat format) {
+        this(format.getEncoding(VertexFormat.Attribute.POSITION) == VertexFormat.Encoding.NORMALIZED_SHORT,
+             format.getEncoding(VertexFormat.Attribute.NORMAL) == VertexFormat.Encoding.OCTAHEDRAL,
+             format.getEncoding(VertexFormat.Attribute.TEXTURE_COORDINATE) == VertexFormat.Encoding.NORMALIZED_SHORT);
+    }
+
+    public VertexDecodeMaterialPlugin(boolean positions, boolean normals, boolean textureCoords) {
+        mVertexShader = new VertexDecodeShaderFragment(positions, normals, textureCoords);
+    }
+
+    /**
+     * Sets the geometry whose decode ranges are used for the next draw call. {@link Material} does this for every
+     * object it renders.
+     *
+     * @param geometry {@link Geometry3D} about to be drawn.
+     */
+    public void setGeometry(Geometry3D geometry) {
+        mVertexShader.mGeometry = geometry;
+    }
+
+    @Override
+    public Material.PluginInsertLocation getInsertLocation() {
+        // The earliest location, every other vertex shader fragment sees decoded values
+        return Material.PluginInsertLocation.PRE_TEXTURE;
+    }
+
+    @Override
+    public IShaderFragment getVertexShaderFragment() {
+        return mVertexShader;
+    }
+
+    @Override
+    public IShaderFragment getFragmentShaderFragment() {
+        return null;
+    }
+
+    @Override
+    public void bindTextures(int nextIndex) {
+
+    }
+
+    @Override
+    public void unbindTextures() {
+
+    }
+
+    static class VertexDecodeShaderFragment extends AShader implements IShaderFragment {
+        static final String SHADER_ID = "VERTEX_DECODE_SHADER_FRAGMENT";
+
+        private static final String OCTAHEDRAL_DECODE = "decodeOctahedral";
+        private static final float[] IDENTITY = new Matrix4().getFloatValues();
+        private static final float[] NO_TEXTURE_COORD_DECODE = new float[]{ 1, 1, 0, 0 };
+
+        private final boolean mDecodePositions;
+        private final boolean mDecodeNormals;
+        private final boolean mDecodeTextureCoords;
+
+        Geometry3D mGeometry;
+
+        private RMat4 muPositionDecodeMatrix;
+        private RVec4 muTextureCoordDecode;
+        private int   muPositionDecodeMatrixHandle;
+        private int   muTextureCoordDecodeHandle;
+
+        VertexDecodeShaderFragment(boolean positions, boolean normals, boolean textureCoords) {
+            super(ShaderType.VERTEX_SHADER_FRAGMENT);
+            mDecodePositions = positions;
+            mDecodeNormals = normals;
+            mDecodeTextureCoords = textureCoords;
+            initialize();
+        }
+
+        @Override
+        public String getShaderId() {
+            return SHADER_ID;
+        }
+
+        @Override
+        public void initialize() {
+            super.initialize();
+            if (mDecodePositions) {
+                muPositionDecodeMatrix = (RMat4) addUniform(VertexDecodeShaderVar.U_POSITION_DECODE_MATRIX);
+            }
+            if (mDecodeTextureCoords) {
+                muTextureCoordDecode = (RVec4) addUniform(VertexDecodeShaderVar.U_TEXTURE_COORD_DECODE);
+            }
+            if (mDecodeNormals) {
+                // The encoded vector lives in the x and y components, unfolding the lower hemisphere moves it back
+                addFunction("vec3 " + OCTAHEDRAL_DECODE + "(vec2 e)",
+                            "vec3 n = vec3(e, 1.0 - abs(e.x) - abs(e.y));\n"
+                            + "float t = max(-n.z, 0.0);\n"
+                            + "n.x += n.x >= 0.0 ? -t : t;\n"
+                            + "n.y += n.y >= 0.0 ? -t : t;\n"
+                            + "return normalize(n);");
+            }
+        }
+
+        @Override
+        public Material.PluginInsertLocation getInsertLocation() {
+            return null;
+        }
+
+        @Override
+        public void applyParams() {
+            super.applyParams();
+            final Geometry3D geometry = mGeometry;
+            if (mDecodePositions) {
+                final Matrix4 decode = geometry != null ? geometry.getPositionDecodeMatrix() : null;
+                GLES20.glUniformMatrix4fv(muPositionDecodeMatrixHandle, 1, false,
+                                          decode != null ? decode.getFloatValues() : IDENTITY, 0);
+            }
+            if (mDecodeTextureCoords) {
+                final float[] decode = geometry != null ? geometry.getTextureCoordDecode() : null;
+                GLES20.glUniform4fv(muTextureCoordDecodeHandle, 1,
+                                    decode != null ? decode : NO_TEXTURE_COORD_DECODE, 0);
+            }
+        }
+
+        @Override
+        public void setLocations(int programHandle) {
+            super.setLocations(programHandle);
+            if (mDecodePositions) {
+                muPositionDecodeMatrixHandle = getUniformLocation(programHandle,
+                                                                  VertexDecodeShaderVar.U_POSITION_DECODE_MATRIX);
+            }
+            if (mDecodeTextureCoords) {
+                muTextureCoordDecodeHandle = getUniformLocation(programHandle,
+                                                                VertexDecodeShaderVar.U_TEXTURE_COORD_DECODE);
+            }
+        }
+
+        @Override
+        public void bindTextures(int nextIndex) {
+
+        }
+
+        @Override
+        public void unbindTextures() {
+
+        }
+
+        @Override
+        public void main() {
+            if (mDecodePositions) {
+                final RVec4 position = (RVec4) getGlobal(DefaultShaderVar.G_POSITION);
+                position.assign(muPositionDecodeMatrix.multiply(position));
+            }
+            if (mDecodeNormals) {
+                final RVec3 normal = (RVec3) getGlobal(DefaultShaderVar.G_NORMAL);
+                normal.assign(OCTAHEDRAL_DECODE + "(" + normal.getName() + ".xy)");
+            }
+            if (mDecodeTextureCoords) {
+                final RVec2 textureCoord = (RVec2) getGlobal(DefaultShaderVar.G_TEXTURE_COORD);
+                textureCoord.assign(textureCoord.getName() + " * " + muTextureCoordDecode.getName() + ".xy + "
+                                    + muTextureCoordDecode.getName() + ".zw");
+            }
+        }
+    }
+
+    public enum VertexDecodeShaderVar implements AShaderBase.IGlobalShaderVar {
+        U_POSITION_DECODE_MATRIX("uPositionDecodeMatrix", AShaderBase.DataType.MAT4),
+        U_TEXTURE_COORD_DECODE("uTextureCoordDecode", AShaderBase.DataType.VEC4);
+
+        private String mVarString;
+        private AShaderBase.DataType mDataType;
+
+        VertexDecodeShaderVar(String varString, AShaderBase.DataType dataType) {
+            mVarString = varString;
+            mDataType = dataType;
+        }
+
+        public String getVarString() {
+            return mVarString;
+        }
+
+        public AShaderBase.DataType getDataType() {
+            return mDataType;
+        }
+    }
+}
@@ -168,7 +168,8 @@ public class VertexShader extends AShader {
 
         mvTextureCoord.assign(mgTextureCoord);
         if (mHasCubeMaps) {
-            mvCubeTextureCoord.assign(castVec3(maPosition));
+            // The position after the plugins, quantized positions are only decoded there
+            mvCubeTextureCoord.assign(castVec3(mgPosition));
             if (mHasSkyTexture) {
                 mvCubeTextureCoord.x().assignMultiply(-1);
             }
@@ -217,9 +218,14 @@ public class VertexShader extends AShader {
     }
 
     public void setVertices(final int vertexBufferHandle, final int type, final int stride, final int offset) {
+        setVertices(vertexBufferHandle, type, stride, offset, false);
+    }
+
+    public void setVertices(final int vertexBufferHandle, final int type, final int stride, final int offset,
+                            final boolean normalized) {
         GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBufferHandle);
         GLES20.glEnableVertexAttribArray(maPositionHandle);
-        GLES20.glVertexAttribPointer(maPositionHandle, 3, type, false, stride, offset);
+        GLES20.glVertexAttribPointer(maPositionHandle, 3, type, normalized, stride, offset);
     }
 
     public void setTextureCoords(final int textureCoordBufferHandle) {
@@ -228,12 +234,17 @@ public class VertexShader extends AShader {
 
     public void setTextureCoords(final int textureCoordBufferHandle, final int type, final int stride,
                                  final int offset) {
+        setTextureCoords(textureCoordBufferHandle, type, stride, offset, false);
+    }
+
+    public void setTextureCoords(final int textureCoordBufferHandle, final int type, final int stride, final int offset,
+                                 final boolean normalized) {
         if (maTextureCoordHandle < 0) {
             return;
         }
         GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, textureCoordBufferHandle);
         GLES20.glEnableVertexAttribArray(maTextureCoordHandle);
-        GLES20.glVertexAttribPointer(maTextureCoordHandle, 2, type, false, stride, offset);
+        GLES20.glVertexAttribPointer(maTextureCoordHandle, 2, type, normalized, stride, offset);
     }
 
     public void setNormals(final int normalBufferHandle) {
@@ -241,12 +252,17 @@ public class VertexShader extends AShader {
     }
 
     public void setNormals(final int normalBufferHandle, final int type, final int stride, final int offset) {
+        setNormals(normalBufferHandle, type, stride, offset, false);
+    }
+
+    public void setNormals(final int normalBufferHandle, final int type, final int stride, final int offset,
+                           final boolean normalized) {
         if (maNormalHandle < 0) {
             return;
         }
         GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, normalBufferHandle);
         GLES20.glEnableVertexAttribArray(maNormalHandle);
-        GLES20.glVertexAttribPointer(maNormalHandle, 3, type, false, stride, offset);
+        GLES20.glVertexAttribPointer(maNormalHandle, 3, type, normalized, stride, offset);
     }
 
     public void setVertexColors(final int vertexColorBufferHandle) {
@@ -254,12 +270,17 @@ public class VertexShader extends AShader {
     }
 
     public void setVertexColors(final int vertexColorBufferHandle, final int type, final int stride, final int offset) {
+        setVertexColors(vertexColorBufferHandle, type, stride, offset, false);
+    }
+
+    public void setVertexColors(final int vertexColorBufferHandle, final int type, final int stride, final int offset,
+                                final boolean normalized) {
         if (maVertexColorBufferHandle < 0) {
             return;
         }
         GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexColorBufferHandle);
         GLES20.glEnableVertexAttribArray(maVertexColorBufferHandle);
-        GLES20.glVertexAttribPointer(maVertexColorBufferHandle, 4, type, false, stride, offset);
+        GLES20.glVertexAttribPointer(maVertexColorBufferHandle, 4, type, normalized, stride, offset);
     }
 
     public void setMVPMatrix(float[] mvpMatrix) {
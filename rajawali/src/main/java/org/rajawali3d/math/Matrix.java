@@ -16,8 +16,6 @@
 
 package org.rajawali3d.math;
 
-import java.util.Arrays;
-
 /**
  * NOTE: This class taken from Android Open Source Project source code
  * and modified to support double precision matrices. 
@@ -42,12 +40,11 @@ import java.util.Arrays;
  * v[offset + 3]
  * </pre>
  *
+ * None of these methods keep any static scratch memory, so they are reentrant and
+ * may be used concurrently from worker threads on distinct output arrays.
  */
 public class Matrix {
 
-    /** Temporary memory for operations that need temporary matrix data. */
-    private final static double[] sTemp = new double[32];
-
     /**
      * Multiply two 4x4 matrices together and store the result in a third 4x4
      * matrix. In matrix notation: result = lhs x rhs. Due to the way
@@ -55,9 +52,10 @@ public class Matrix {
      * effect as first multiplying by the rhs matrix, then multiplying by
      * the lhs matrix. This is the opposite of what you might expect.
      *
-     * The same double array may be passed for result, lhs, and/or rhs. However,
-     * the result element values are undefined if the result elements overlap
-     * either the lhs or rhs elements.
+     * The same double array may be passed for result, lhs, and/or rhs, and the
+     * result may be the same array region as lhs or rhs, at the same offset.
+     * Regions which only partly overlap are not supported. No shared state is
+     * used, so this method may be called concurrently from multiple threads.
      *
      * @param result The double array that holds the result.
      * @param resultOffset The offset into the result array where the result is
@@ -91,15 +89,20 @@ public class Matrix {
     		throw new IllegalArgumentException(message);
     	}
     	
-    	double sum = 0;
-    	for (int i = 0; i < 4; ++i) { //Row
-    		for (int j = 0; j < 4; ++j) { //Column
-    			sum = 0;
-    			for (int k = 0; k < 4; ++k) {
-    				sum += lhs[i+4*k+lhsOffset] * rhs[4*j+k+rhsOffset];
-    			}
-    			result[i+4*j+resultOffset] = sum;
-    		}
+    	// Load the whole lhs up front and each rhs column before its result column is
+    	// written so that result may alias either operand.
+    	final double l00 = lhs[lhsOffset     ], l10 = lhs[lhsOffset +  1], l20 = lhs[lhsOffset +  2], l30 = lhs[lhsOffset +  3];
+    	final double l01 = lhs[lhsOffset +  4], l11 = lhs[lhsOffset +  5], l21 = lhs[lhsOffset +  6], l31 = lhs[lhsOffset +  7];
+    	final double l02 = lhs[lhsOffset +  8], l12 = lhs[lhsOffset +  9], l22 = lhs[lhsOffset + 10], l32 = lhs[lhsOffset + 11];
+    	final double l03 = lhs[lhsOffset + 12], l13 = lhs[lhsOffset + 13], l23 = lhs[lhsOffset + 14], l33 = lhs[lhsOffset + 15];
+    	for (int j = 0; j < 4; ++j) { //Column
+    		final int r = rhsOffset + 4 * j;
+    		final double r0 = rhs[r], r1 = rhs[r + 1], r2 = rhs[r + 2], r3 = rhs[r + 3];
+    		final int o = resultOffset + 4 * j;
+    		result[o    ] = l00 * r0 + l01 * r1 + l02 * r2 + l03 * r3;
+    		result[o + 1] = l10 * r0 + l11 * r1 + l12 * r2 + l13 * r3;
+    		result[o + 2] = l20 * r0 + l21 * r1 + l22 * r2 + l23 * r3;
+    		result[o + 3] = l30 * r0 + l31 * r1 + l32 * r2 + l33 * r3;
     	}
     }
 
@@ -107,9 +110,9 @@ public class Matrix {
      * Multiply a 4 element vector by a 4x4 matrix and store the result in a 4
      * element column vector. In matrix notation: result = lhs x rhs
      *
-     * The same double array may be passed for resultVec, lhsMat, and/or rhsVec.
-     * However, the resultVec element values are undefined if the resultVec
-     * elements overlap either the lhsMat or rhsVec elements.
+     * The same double array may be passed for resultVec, lhsMat, and/or rhsVec,
+     * and the resultVec elements may overlap the rhsVec elements. The resultVec
+     * element values are undefined if they overlap the lhsMat elements.
      *
      * @param resultVec The double array that holds the result vector.
      * @param resultVecOffset The offset into the result array where the result
@@ -145,16 +148,16 @@ public class Matrix {
     		throw new IllegalArgumentException(message);
     	}
     	
-       // matrix-vector multiplication (y = A * x)
-        int m = 4;
-        int n = 4;
-	Arrays.fill(resultVec,resultVecOffset,resultVecOffset+m,0);
-        double[] y = resultVec;
-        double[] a = Arrays.copyOfRange(lhsMat, lhsMatOffset, lhsMatOffset+16);
-        double[] x = Arrays.copyOfRange(rhsVec, rhsVecOffset, rhsVecOffset+4);
-        for (int i = 0; i < m; i++)
-            for (int j = 0; j < n; j++)
-                y[i+resultVecOffset] += a[j*n+i] * x[j];
+        // matrix-vector multiplication (y = A * x)
+        final double x0 = rhsVec[rhsVecOffset];
+        final double x1 = rhsVec[rhsVecOffset + 1];
+        final double x2 = rhsVec[rhsVecOffset + 2];
+        final double x3 = rhsVec[rhsVecOffset + 3];
+        for (int i = 0; i < 4; i++) {
+            final int a = lhsMatOffset + i;
+            resultVec[resultVecOffset + i] = lhsMat[a] * x0 + lhsMat[a + 4] * x1
+                                             + lhsMat[a + 8] * x2 + lhsMat[a + 12] * x3;
+        }
     }
 
     /**
@@ -186,6 +189,8 @@ public class Matrix {
      * @param m the input array
      * @param mOffset an offset into m where the matrix is stored.
      * @return true if the matrix could be inverted, false if it could not.
+     *         mInv may be the same array region as m; it is left untouched
+     *         when the matrix is singular.
      */
     public static boolean invertM(double[] mInv, int mInvOffset, double[] m,
             int mOffset) {
@@ -578,10 +583,10 @@ public class Matrix {
     public static void rotateM(double[] rm, int rmOffset,
             double[] m, int mOffset,
             double a, double x, double y, double z) {
-        synchronized(sTemp) {
-            setRotateM(sTemp, 0, a, x, y, z);
-            multiplyMM(rm, rmOffset, m, mOffset, sTemp, 0);
+        if (rm != m || rmOffset != mOffset) {
+            System.arraycopy(m, mOffset + 12, rm, rmOffset + 12, 4);
         }
+        postRotateM(rm, rmOffset, m, mOffset, a, x, y, z);
     }
 
     /**
@@ -596,10 +601,45 @@ public class Matrix {
      */
     public static void rotateM(double[] m, int mOffset,
             double a, double x, double y, double z) {
-        synchronized(sTemp) {
-            setRotateM(sTemp, 0, a, x, y, z);
-            multiplyMM(sTemp, 16, m, mOffset, sTemp, 0);
-            System.arraycopy(sTemp, 16, m, mOffset, 16);
+        postRotateM(m, mOffset, m, mOffset, a, x, y, z);
+    }
+
+    /**
+     * Post multiplies the upper 3x3 of m by the rotation of angle a (in degrees) around
+     * the axis (x, y, z), writing the upper 3x3 of rm. The rotation is kept in locals so
+     * no scratch matrix is needed and rm may alias m.
+     */
+    private static void postRotateM(double[] rm, int rmOffset, double[] m, int mOffset,
+            double a, double x, double y, double z) {
+        a *= Math.PI / 180.0f;
+        final double s = Math.sin(a);
+        final double c = Math.cos(a);
+        final double len = length(x, y, z);
+        if (1.0f != len) {
+            final double recipLen = 1.0f / len;
+            x *= recipLen;
+            y *= recipLen;
+            z *= recipLen;
+        }
+        final double nc = 1.0f - c;
+        final double xy = x * y;
+        final double yz = y * z;
+        final double zx = z * x;
+        final double xs = x * s;
+        final double ys = y * s;
+        final double zs = z * s;
+        final double r00 = x*x*nc +  c, r01 =  xy*nc - zs, r02 =  zx*nc + ys;
+        final double r10 =  xy*nc + zs, r11 = y*y*nc +  c, r12 =  yz*nc - xs;
+        final double r20 =  zx*nc - ys, r21 =  yz*nc + xs, r22 = z*z*nc +  c;
+        for (int i = 0; i < 4; i++) {
+            final int mi = mOffset + i;
+            final int rmi = rmOffset + i;
+            final double m0 = m[mi];
+            final double m1 = m[mi + 4];
+            final double m2 = m[mi + 8];
+            rm[rmi]     = m0 * r00 + m1 * r10 + m2 * r20;
+            rm[rmi + 4] = m0 * r01 + m1 * r11 + m2 * r21;
+            rm[rmi + 8] = m0 * r02 + m1 * r12 + m2 * r22;
         }
     }
 
@@ -25,7 +25,8 @@ import java.util.Arrays;
  * Encapsulates a column major 4x4 Matrix.
  *
  * This class is not thread safe and must be confined to a single thread or protected by
- * some external locking mechanism if necessary. All static methods are thread safe.
+ * some external locking mechanism if necessary. All static methods are thread safe. Instances
+ * share no scratch state with each other, so distinct instances may be updated concurrently.
  *
  * Rewritten August 8, 2013 by Jared Woolston (jwoolston@tenkiv.com) with heavy influence from libGDX
  *
@@ -64,17 +65,12 @@ public final class Matrix4 implements Cloneable {
     @Size(16)
     private double[] m = new double[16]; //The matrix values
 
-    //The following scratch variables are intentionally left as members
-    //and not static to ensure that this class can be utilized by multiple threads
-    //in a safe manner without the overhead of synchronization. This is a tradeoff of
-    //speed for memory and it is considered a small enough memory increase to be acceptable.
-    @NonNull @Size(16) private double[]   mTmp   = new double[16]; //A scratch matrix
-    @NonNull @Size(16) private float[]    mFloat = new float[16]; //A float copy of the values, used for sending to GL.
-    @NonNull private final     Quaternion mQuat  = new Quaternion(); //A scratch quaternion.
-    @NonNull private final     Vector3    mVec1  = new Vector3(); //A scratch Vector3
-    @NonNull private final     Vector3    mVec2  = new Vector3(); //A scratch Vector3
-    @NonNull private final     Vector3    mVec3  = new Vector3(); //A scratch Vector3
-    @Nullable private Matrix4 mMatrix; //A scratch Matrix4
+    //Most operations work on locals so that instances stay small. The few which need a
+    //scratch object create it lazily and per instance, so that this class can be utilized by
+    //multiple threads in a safe manner without the overhead of synchronization.
+    @Nullable @Size(16) private float[] mFloat; //A float copy of the values, used for sending to GL.
+    @Nullable private Quaternion mQuat; //A scratch quaternion.
+    @Nullable private Vector3    mVec; //A scratch Vector3
 
     /**
      * Constructs a default identity {@link Matrix4}.
@@ -190,7 +186,9 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 setAll(double w, double x, double y, double z) {
-        return setAll(mQuat.setAll(w, x, y, z));
+        identity();
+        setRotation(w, x, y, z);
+        return this;
     }
 
     /**
@@ -343,11 +341,10 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 inverse() throws IllegalStateException {
-        boolean success = Matrix.invertM(mTmp, 0, m, 0);
+        boolean success = Matrix.invertM(m, 0, m, 0);
         if (!success) {
             throw new IllegalStateException("Matrix is singular and cannot be inverted.");
         }
-        System.arraycopy(mTmp, 0, m, 0, 16);
         return this;
     }
 
@@ -358,8 +355,15 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 transpose() {
-        Matrix.transposeM(mTmp, 0, m, 0);
-        System.arraycopy(mTmp, 0, m, 0, 16);
+        double tmp;
+        // @formatter:off
+        tmp = m[M01]; m[M01] = m[M10]; m[M10] = tmp;
+        tmp = m[M02]; m[M02] = m[M20]; m[M20] = tmp;
+        tmp = m[M03]; m[M03] = m[M30]; m[M30] = tmp;
+        tmp = m[M12]; m[M12] = m[M21]; m[M21] = tmp;
+        tmp = m[M13]; m[M13] = m[M31]; m[M31] = tmp;
+        tmp = m[M23]; m[M23] = m[M32]; m[M32] = tmp;
+        // @formatter:on
         return this;
     }
 
@@ -373,11 +377,11 @@ public final class Matrix4 implements Cloneable {
     @NonNull
     public Matrix4 add(@NonNull Matrix4 matrix) {
         // @formatter:off
-		matrix.toArray(mTmp);
-	    m[0] += mTmp[0]; m[1] += mTmp[1]; m[2] += mTmp[2]; m[3] += mTmp[3];
-	    m[4] += mTmp[4]; m[5] += mTmp[5]; m[6] += mTmp[6]; m[7] += mTmp[7];
-	    m[8] += mTmp[8]; m[9] += mTmp[9]; m[10] += mTmp[10]; m[11] += mTmp[11];
-	    m[12] += mTmp[12]; m[13] += mTmp[13]; m[14] += mTmp[14]; m[15] += mTmp[15];
+		final double[] o = matrix.m;
+	    m[0] += o[0]; m[1] += o[1]; m[2] += o[2]; m[3] += o[3];
+	    m[4] += o[4]; m[5] += o[5]; m[6] += o[6]; m[7] += o[7];
+	    m[8] += o[8]; m[9] += o[9]; m[10] += o[10]; m[11] += o[11];
+	    m[12] += o[12]; m[13] += o[13]; m[14] += o[14]; m[15] += o[15];
 	    return this;
         // @formatter:on
     }
@@ -392,11 +396,11 @@ public final class Matrix4 implements Cloneable {
     @NonNull
     public Matrix4 subtract(@NonNull Matrix4 matrix) {
         // @formatter:off
-		matrix.toArray(mTmp);
-	    m[0] -= mTmp[0]; m[1] -= mTmp[1]; m[2] -= mTmp[2]; m[3] -= mTmp[3];
-	    m[4] -= mTmp[4]; m[5] -= mTmp[5]; m[6] -= mTmp[6]; m[7] -= mTmp[7];
-	    m[8] -= mTmp[8]; m[9] -= mTmp[9]; m[10] -= mTmp[10]; m[11] -= mTmp[11];
-	    m[12] -= mTmp[12]; m[13] -= mTmp[13]; m[14] -= mTmp[14]; m[15] -= mTmp[15];
+		final double[] o = matrix.m;
+	    m[0] -= o[0]; m[1] -= o[1]; m[2] -= o[2]; m[3] -= o[3];
+	    m[4] -= o[4]; m[5] -= o[5]; m[6] -= o[6]; m[7] -= o[7];
+	    m[8] -= o[8]; m[9] -= o[9]; m[10] -= o[10]; m[11] -= o[11];
+	    m[12] -= o[12]; m[13] -= o[13]; m[14] -= o[14]; m[15] -= o[15];
 	    return this;
         // @formatter:on
     }
@@ -413,8 +417,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 multiply(@NonNull Matrix4 matrix) {
-        System.arraycopy(m, 0, mTmp, 0, 16);
-        Matrix.multiplyMM(m, 0, mTmp, 0, matrix.getDoubleValues(), 0);
+        Matrix.multiplyMM(m, 0, m, 0, matrix.m, 0);
         return this;
     }
 
@@ -430,8 +433,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 leftMultiply(@NonNull Matrix4 matrix) {
-        System.arraycopy(m, 0, mTmp, 0, 16);
-        Matrix.multiplyMM(m, 0, matrix.getDoubleValues(), 0, mTmp, 0);
+        Matrix.multiplyMM(m, 0, matrix.m, 0, m, 0);
         return this;
     }
 
@@ -542,12 +544,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 rotate(@NonNull Quaternion quat) {
-        if (mMatrix == null) {
-            mMatrix = quat.toRotationMatrix();
-        } else {
-            quat.toRotationMatrix(mMatrix);
-        }
-        return multiply(mMatrix);
+        return rotateQuaternion(quat.w, quat.x, quat.y, quat.z);
     }
 
     /**
@@ -561,7 +558,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 rotate(@NonNull Vector3 axis, double angle) {
-        return angle == 0 ? this : rotate(mQuat.fromAngleAxis(axis, angle));
+        return angle == 0 ? this : rotateAngleAxis(axis.x, axis.y, axis.z, angle);
     }
 
     /**
@@ -575,7 +572,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 rotate(@NonNull Axis axis, double angle) {
-        return angle == 0 ? this : rotate(mQuat.fromAngleAxis(axis, angle));
+        return angle == 0 ? this : rotate(Vector3.getAxisVector(axis), angle);
     }
 
     /**
@@ -591,7 +588,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 rotate(double x, double y, double z, double angle) {
-        return angle == 0 ? this : rotate(mQuat.fromAngleAxis(x, y, z, angle));
+        return angle == 0 ? this : rotateAngleAxis(x, y, z, angle);
     }
 
     /**
@@ -605,7 +602,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 rotate(@NonNull Vector3 v1, @NonNull Vector3 v2) {
-        return rotate(mQuat.fromRotationBetween(v1, v2));
+        return rotate(getScratchQuaternion().fromRotationBetween(v1, v2));
     }
 
     /**
@@ -706,9 +703,9 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 lerp(@NonNull Matrix4 matrix, double t) {
-        matrix.toArray(mTmp);
+        final double[] o = matrix.m;
         for (int i = 0; i < 16; ++i) {
-            m[i] = m[i] * (1.0 - t) + t * mTmp[i];
+            m[i] = m[i] * (1.0 - t) + t * o[i];
         }
         return this;
     }
@@ -917,7 +914,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 setToRotation(@NonNull Vector3 axis, double angle) {
-        return angle == 0 ? identity() : setAll(mQuat.fromAngleAxis(axis, angle));
+        return angle == 0 ? identity() : identity().rotateAngleAxis(axis.x, axis.y, axis.z, angle);
     }
 
     /**
@@ -930,7 +927,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 setToRotation(@NonNull Axis axis, double angle) {
-        return angle == 0 ? identity() : setAll(mQuat.fromAngleAxis(axis, angle));
+        return angle == 0 ? identity() : setToRotation(Vector3.getAxisVector(axis), angle);
     }
 
     /**
@@ -945,7 +942,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 setToRotation(double x, double y, double z, double angle) {
-        return angle == 0 ? identity() : setAll(mQuat.fromAngleAxis(x, y, z, angle));
+        return angle == 0 ? identity() : identity().rotateAngleAxis(x, y, z, angle);
     }
 
     /**
@@ -958,7 +955,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 setToRotation(@NonNull Vector3 v1, @NonNull Vector3 v2) {
-        return setAll(mQuat.fromRotationBetween(v1, v2));
+        return setAll(getScratchQuaternion().fromRotationBetween(v1, v2));
     }
 
     /**
@@ -976,7 +973,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 setToRotation(double x1, double y1, double z1, double x2, double y2, double z2) {
-        return setAll(mQuat.fromRotationBetween(x1, y1, z1, x2, y2, z2));
+        return setAll(getScratchQuaternion().fromRotationBetween(x1, y1, z1, x2, y2, z2));
     }
 
     /**
@@ -990,7 +987,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 setToRotation(double yaw, double pitch, double roll) {
-        return setAll(mQuat.fromEuler(yaw, pitch, roll));
+        return setAll(getScratchQuaternion().fromEuler(yaw, pitch, roll));
     }
 
     /**
@@ -1004,8 +1001,7 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 setToLookAt(@NonNull Vector3 direction, @NonNull Vector3 up) {
-        mQuat.lookAt(direction, up);
-        return setAll(mQuat);
+        return setAll(getScratchQuaternion().lookAt(direction, up));
     }
 
     /**
@@ -1019,8 +1015,10 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 setToLookAt(@NonNull Vector3 position, @NonNull Vector3 target, @NonNull Vector3 up) {
-        mVec1.subtractAndSet(target, position);
-        return setToLookAt(mVec1, up);
+        if (mVec == null) {
+            mVec = new Vector3();
+        }
+        return setToLookAt(mVec.subtractAndSet(target, position), up);
     }
 
     /**
@@ -1035,10 +1033,112 @@ public final class Matrix4 implements Cloneable {
      */
     @NonNull
     public Matrix4 setToWorld(@NonNull Vector3 position, @NonNull Vector3 forward, @NonNull Vector3 up) {
-        mVec1.setAll(forward).normalize(); // Forward
-        mVec2.setAll(mVec1).cross(up).normalize(); // Right
-        mVec3.setAll(mVec2).cross(mVec1).normalize(); // Up
-        return setAll(mVec2, mVec3, mVec1.multiply(-1d), position);
+        // Forward
+        double len = Math.sqrt(forward.x * forward.x + forward.y * forward.y + forward.z * forward.z);
+        final double fx = forward.x / len, fy = forward.y / len, fz = forward.z / len;
+        // Right
+        double rx = fy * up.z - fz * up.y, ry = fz * up.x - fx * up.z, rz = fx * up.y - fy * up.x;
+        len = Math.sqrt(rx * rx + ry * ry + rz * rz);
+        rx /= len;
+        ry /= len;
+        rz /= len;
+        // Up
+        double ux = ry * fz - rz * fy, uy = rz * fx - rx * fz, uz = rx * fy - ry * fx;
+        len = Math.sqrt(ux * ux + uy * uy + uz * uz);
+        ux /= len;
+        uy /= len;
+        uz /= len;
+        // @formatter:off
+		m[M00] = rx;	m[M01] = ux;	m[M02] = -fx;	m[M03] = position.x;
+		m[M10] = ry; 	m[M11] = uy;	m[M12] = -fy;	m[M13] = position.y;
+		m[M20] = rz;	m[M21] = uz;	m[M22] = -fz;	m[M23] = position.z;
+		m[M30] = 0;		m[M31] = 0;		m[M32] = 0;		m[M33] = 1;
+		return this;
+        // @formatter:on
+    }
+
+    /**
+     * Post multiplies this {@link Matrix4} with the rotation described by the given unit quaternion
+     * components. The rotation is built in locals so no scratch matrix is required.
+     */
+    @NonNull
+    private Matrix4 rotateQuaternion(double w, double x, double y, double z) {
+        final double x2 = x * x;
+        final double y2 = y * y;
+        final double z2 = z * z;
+        final double xy = x * y;
+        final double xz = x * z;
+        final double yz = y * z;
+        final double wx = w * x;
+        final double wy = w * y;
+        final double wz = w * z;
+        // Same layout as Quaternion#toRotationMatrix(double[])
+        final double r00 = 1.0 - 2.0 * (y2 + z2), r01 = 2.0 * (xy + wz), r02 = 2.0 * (xz - wy);
+        final double r10 = 2.0 * (xy - wz), r11 = 1.0 - 2.0 * (x2 + z2), r12 = 2.0 * (yz + wx);
+        final double r20 = 2.0 * (xz + wy), r21 = 2.0 * (yz - wx), r22 = 1.0 - 2.0 * (x2 + y2);
+        for (int i = 0; i < 4; ++i) {
+            final double m0 = m[i];
+            final double m1 = m[i + 4];
+            final double m2 = m[i + 8];
+            m[i] = m0 * r00 + m1 * r10 + m2 * r20;
+            m[i + 4] = m0 * r01 + m1 * r11 + m2 * r21;
+            m[i + 8] = m0 * r02 + m1 * r12 + m2 * r22;
+        }
+        return this;
+    }
+
+    /**
+     * Post multiplies this {@link Matrix4} with the rotation around the given axis, matching
+     * {@link Quaternion#fromAngleAxis(Vector3, double)}.
+     */
+    @NonNull
+    private Matrix4 rotateAngleAxis(double x, double y, double z, double angle) {
+        if (x == 0 && y == 0 && z == 0) {
+            return this;
+        }
+        final double length2 = x * x + y * y + z * z;
+        if (Math.abs(length2 - 1) >= 1e-16) {
+            final double length = Math.sqrt(length2);
+            x /= length;
+            y /= length;
+            z /= length;
+        }
+        final double halfAngle = MathUtil.degreesToRadians(angle) * .5;
+        final double halfAngleSin = Math.sin(halfAngle);
+        return rotateQuaternion(Math.cos(halfAngle), halfAngleSin * x, halfAngleSin * y, halfAngleSin * z);
+    }
+
+    /**
+     * Sets the upper 3x3 of this {@link Matrix4} to the rotation described by the given unit quaternion
+     * components, matching {@link Quaternion#toRotationMatrix(double[])}.
+     */
+    private void setRotation(double w, double x, double y, double z) {
+        final double x2 = x * x;
+        final double y2 = y * y;
+        final double z2 = z * z;
+        final double xy = x * y;
+        final double xz = x * z;
+        final double yz = y * z;
+        final double wx = w * x;
+        final double wy = w * y;
+        final double wz = w * z;
+        m[M00] = 1.0 - 2.0 * (y2 + z2);
+        m[M10] = 2.0 * (xy - wz);
+        m[M20] = 2.0 * (xz + wy);
+        m[M01] = 2.0 * (xy + wz);
+        m[M11] = 1.0 - 2.0 * (x2 + z2);
+        m[M21] = 2.0 * (yz - wx);
+        m[M02] = 2.0 * (xz - wy);
+        m[M12] = 2.0 * (yz + wx);
+        m[M22] = 1.0 - 2.0 * (x2 + y2);
+    }
+
+    @NonNull
+    private Quaternion getScratchQuaternion() {
+        if (mQuat == null) {
+            mQuat = new Quaternion();
+        }
+        return mQuat;
     }
 
     /**
@@ -1215,6 +1315,9 @@ public final class Matrix4 implements Cloneable {
     @NonNull
     @Size(16)
     public float[] getFloatValues() {
+        if (mFloat == null) {
+            mFloat = new float[16];
+        }
         ArrayUtils.convertDoublesToFloats(m, mFloat);
         return mFloat;
     }
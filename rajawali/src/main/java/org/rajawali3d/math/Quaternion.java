@@ -47,8 +47,6 @@ public final class Quaternion implements Cloneable {
     @NonNull private              Vector3    mTmpVec1 = new Vector3();
     @NonNull private              Vector3    mTmpVec2 = new Vector3();
     @NonNull private              Vector3    mTmpVec3 = new Vector3();
-    @NonNull private static final Quaternion sTmp1    = new Quaternion(0, 0, 0, 0);
-    @NonNull private static final Quaternion sTmp2    = new Quaternion(0, 0, 0, 0);
 
     /**
      * Default constructor. Creates an identity {@link Quaternion}.
@@ -911,23 +909,20 @@ public final class Quaternion implements Cloneable {
                                   @FloatRange(from = 0, to = 1) double t, boolean shortestPath) {
         // Check for equality and skip operation.
         if (start.equals(end)) {
-            return sTmp1.setAll(end);
+            return new Quaternion(end);
         }
-        // TODO: Thread safety issue here
-        sTmp1.setAll(start);
-        sTmp2.setAll(end);
-        double fCos = sTmp1.dot(sTmp2);
+        // The result is built in a new instance so this method is reentrant
+        double ew = end.w, ex = end.x, ey = end.y, ez = end.z;
+        double fCos = start.dot(end);
         if (fCos < 0.0f && shortestPath) {
-            sTmp2.inverse();
-            sTmp2.subtract(sTmp1);
-            sTmp2.multiply(t);
-            sTmp1.add(sTmp2);
-        } else {
-            sTmp2.subtract(sTmp1);
-            sTmp2.multiply(t);
-            sTmp1.add(sTmp2);
+            final double invNorm = 1.0 / end.length2();
+            ew *= invNorm;
+            ex *= -invNorm;
+            ey *= -invNorm;
+            ez *= -invNorm;
         }
-        return sTmp1;
+        return new Quaternion(start.w + (ew - start.w) * t, start.x + (ex - start.x) * t,
+                              start.y + (ey - start.y) * t, start.z + (ez - start.z) * t);
     }
 
     /**
@@ -651,7 +651,11 @@ public class Vector3 implements Cloneable {
      */
     public static void orthoNormalize(@NonNull Vector3 v1, @NonNull Vector3 v2) {
         v1.normalize();
-        v2.subtract(Vector3.projectAndCreate(v2, v1));
+        // Subtract the projection of v2 onto v1 in place, this is on the look at path so avoid temporaries
+        final double d = v2.dot(v1) / v1.length2();
+        v2.x -= v1.x * d;
+        v2.y -= v1.y * d;
+        v2.z -= v1.z * d;
         v2.normalize();
     }
 
@@ -26,9 +26,11 @@ import android.view.WindowManager;
 
 import androidx.annotation.NonNull;
 
+import org.rajawali3d.BufferArena;
 import org.rajawali3d.BuildConfig;
 import org.rajawali3d.cameras.Camera;
 import org.rajawali3d.loader.ALoader;
+import org.rajawali3d.loader.AMeshLoader;
 import org.rajawali3d.loader.async.IAsyncLoaderCallback;
 import org.rajawali3d.materials.Material;
 import org.rajawali3d.materials.MaterialManager;
@@ -303,6 +305,8 @@ public abstract class Renderer implements ISurfaceRenderer {
     @Override
     public void onRenderSurfaceCreated(EGLConfig config, GL10 gl, int width, int height) {
         Capabilities.getInstance();
+        // Buffers of a previous context are gone, even though their handles may be valid again
+        BufferArena.onContextCreated();
 
         String[] versionString = (GLES20.glGetString(GLES20.GL_VERSION)).split(" ");
         RajLog.d("Open GL ES Version String: " + GLES20.glGetString(GLES20.GL_VERSION));
@@ -376,6 +380,8 @@ public abstract class Renderer implements ISurfaceRenderer {
 
     @Override
     public void onRenderFrame(GL10 gl) {
+        // Bindings may have been changed outside of the engine since the last frame
+        BufferArena.invalidateBindings();
         performFrameTasks(); //Execute any pending frame tasks
         synchronized (mNextSceneLock) {
             //Check if we need to switch the scene, and if so, do it.
@@ -1126,6 +1132,9 @@ public abstract class Renderer implements ISurfaceRenderer {
 
             try {
                 mLoader.parse();
+                if (mLoader instanceof AMeshLoader) {
+                    ((AMeshLoader) mLoader).postProcess();
+                }
                 msg.arg1 = 1;
             } catch (Exception e) {
                 e.printStackTrace();
@@ -13,6 +13,7 @@
 package org.rajawali3d.renderer.plugins;
 
 import android.opengl.GLES20;
+import org.rajawali3d.BufferArena;
 import org.rajawali3d.cameras.Camera;
 import org.rajawali3d.extras.LensFlare;
 import org.rajawali3d.extras.LensFlare.FlareInfo;
@@ -324,7 +325,7 @@ public final class LensFlarePlugin extends Plugin {
 		GLES20.glVertexAttribPointer(maTextureCoordHandle, 2, GLES20.GL_FLOAT, false, 0, 0);
 
 		// Push vertex element indices to the GPU.
-		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mGeometry.getIndexBufferInfo().bufferHandle);
+		BufferArena.bindElementBuffer(mGeometry.getIndexBufferInfo().bufferHandle);
 
 		// Set up texture locations.
 		GLES20.glUniform1i(muOcclusionMapTextureHandle, 0);
@@ -380,7 +381,7 @@ public final class LensFlarePlugin extends Plugin {
 					GLES20.glDisable(GLES20.GL_BLEND);
 					GLES20.glEnable(GLES20.GL_DEPTH_TEST);
 
-					GLES20.glDrawElements(GLES20.GL_TRIANGLES, 6, GLES20.GL_UNSIGNED_INT, 0);
+					GLES20.glDrawElements(GLES20.GL_TRIANGLES, 6, mGeometry.getIndexType(), 0);
 
 					// Copy result to occlusion map.
 					GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
@@ -394,7 +395,7 @@ public final class LensFlarePlugin extends Plugin {
 
 					GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
 					GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mMapTexture.getTextureId());
-					GLES20.glDrawElements(GLES20.GL_TRIANGLES, 6, GLES20.GL_UNSIGNED_INT, 0);
+					GLES20.glDrawElements(GLES20.GL_TRIANGLES, 6, mGeometry.getIndexType(), 0);
 
 					// Update the flare's screen positions.
 					lensFlare.setPositionScreen(screenPosition);
@@ -457,7 +458,7 @@ public final class LensFlarePlugin extends Plugin {
 
 							// Draw the elements.
 							GLES20.glDrawElements(GLES20.GL_TRIANGLES, mGeometry.getNumIndices(),
-												  GLES20.GL_UNSIGNED_INT, 0);
+												  mGeometry.getIndexType(), 0);
 
 							// Unbind texture.
 							GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
@@ -468,7 +469,7 @@ public final class LensFlarePlugin extends Plugin {
 			}
 		}
 		// Unbind element array.
-		GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+		BufferArena.bindElementBuffer(0);
 		GLES20.glEnable(GLES20.GL_CULL_FACE);
 		GLES20.glEnable(GLES20.GL_DEPTH_TEST);
 		GLES20.glDepthMask(true);
@@ -20,6 +20,7 @@ import androidx.annotation.NonNull;
 import org.rajawali3d.cameras.Camera;
 import org.rajawali3d.Object3D;
 import org.rajawali3d.animation.Animation;
+import org.rajawali3d.animation.AnimationScheduler;
 import org.rajawali3d.lights.ALight;
 import org.rajawali3d.materials.Material;
 import org.rajawali3d.materials.plugins.FogMaterialPlugin;
@@ -103,6 +104,7 @@ public class Scene {
     private final List<ASceneFrameCallback> mPreDrawCallbacks;
     private final List<ASceneFrameCallback> mPostCallbacks;
 	private final List<Animation> mAnimations;
+	private final AnimationScheduler mAnimationScheduler;
 	private final List<IRendererPlugin> mPlugins;
 	private final List<ALight> mLights;
 
@@ -141,6 +143,7 @@ public class Scene {
 		mRenderer = renderer;
 		mAlpha = 0;
 		mAnimations = Collections.synchronizedList(new CopyOnWriteArrayList<Animation>());
+		mAnimationScheduler = new AnimationScheduler();
         mPreCallbacks = Collections.synchronizedList(new CopyOnWriteArrayList<ASceneFrameCallback>());
         mPreDrawCallbacks = Collections.synchronizedList(new CopyOnWriteArrayList<ASceneFrameCallback>());
         mPostCallbacks = Collections.synchronizedList(new CopyOnWriteArrayList<ASceneFrameCallback>());
@@ -752,7 +755,17 @@ public class Scene {
 	}
 
 	/**
-	 * Removes all {@link Animation} objects from the scene.
+	 * Retrieves the {@link AnimationScheduler} which is updated by this scene every frame. Tweens added to it do not
+	 * need to be registered and may be added from any thread.
+	 *
+	 * @return {@link AnimationScheduler} The scheduler for this scene.
+	 */
+	public AnimationScheduler getAnimationScheduler() {
+		return mAnimationScheduler;
+	}
+
+	/**
+	 * Removes all {@link Animation} objects and scheduled tweens from the scene.
 	 *
 	 * @return boolean True if the clear task was queued successfully.
 	 */
@@ -761,6 +774,7 @@ public class Scene {
             @Override
             protected void doTask() {
                 mAnimations.clear();
+                mAnimationScheduler.clear();
             }
         };
         return internalOfferTask(task);
@@ -1086,6 +1100,7 @@ public class Scene {
                     anim.update(deltaTime);
             }
         }
+        mAnimationScheduler.update(deltaTime);
 
         // We are beginning the render process so we need to update the camera matrix before fetching its values
         mCamera.onRecalculateModelMatrix(null);
@@ -1525,11 +1540,11 @@ public class Scene {
 
 		for (int i = 0, j = children.size(); i < j; i++) {
 			Object3D child = children.get(i);
-			if (child.getGeometry() != null && child.getGeometry().getVertices() != null && child.isVisible())
+			if (child.getGeometry() != null && child.getGeometry().hasVertices() && child.isVisible())
 				if (child.getNumChildren() > 0) {
 					triangleCount += child.getNumTriangles();
 				} else {
-					triangleCount += child.getGeometry().getVertices().limit() / 9;
+					triangleCount += child.getGeometry().getNumTriangles();
 				}
 		}
 		return triangleCount;
@@ -1547,7 +1562,7 @@ public class Scene {
 
 		for (int i = 0, j = children.size(); i < j; i++) {
 			Object3D child = children.get(i);
-			if (child.getGeometry() != null && child.getGeometry().getVertices() != null && child.isVisible())
+			if (child.getGeometry() != null && child.getGeometry().hasVertices() && child.isVisible())
 				if (child.getNumChildren() > 0) {
 					objectCount += child.getNumObjects() + 1;
 				} else {
@@ -199,7 +199,8 @@ public class ArrayUtils {
 			} else if (buffer instanceof ShortBuffer) {
 				int count = 0;
 				while (buffer.hasRemaining()) {
-					array[count] = (int) (((ShortBuffer) buffer).get());
+					// Indices are unsigned
+					array[count] = ((ShortBuffer) buffer).get() & 0xFFFF;
 					++count;
 				}
 			}
@@ -0,0 +1,185 @@
+package org.rajawali3d.util;
+
+import androidx.annotation.NonNull;
+
+import java.nio.charset.Charset;
+
+/**
+ * Parses numbers straight out of ASCII text in a byte array, without creating a {@link String} for every token.
+ *
+ * Results are identical to {@link Float#parseFloat(String)} and {@link Integer#parseInt(String)}, including the
+ * exceptions thrown. Plain decimals with few enough digits are converted with a single correctly rounded float or
+ * double operation. Anything else, such as hexadecimal floats, {@code NaN} or values needing more precision, is
+ * handed to the JDK parser.
+ */
+public final class AsciiNumberParser {
+
+    /**
+     * Largest mantissa a float holds exactly.
+     */
+    private static final long MAX_FLOAT_MANTISSA = 1L << 24;
+
+    /**
+     * Largest mantissa a double holds exactly.
+     */
+    private static final long MAX_DOUBLE_MANTISSA = 1L << 53;
+
+    /**
+     * More significant digits than this may overflow the long mantissa.
+     */
+    private static final int MAX_DIGITS = 18;
+
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18,
+            1e19, 1e20, 1e21, 1e22
+    };
+
+    private AsciiNumberParser() {
+    }
+
+    /**
+     * Parses a float like {@link Float#parseFloat(String)}, which also ignores leading and trailing whitespace.
+     *
+     * @param data  {@code byte[]} Text.
+     * @param start {@code int} Index of the first byte of the number.
+     * @param end   {@code int} Index after the last byte of the number.
+     *
+     * @return {@code float} The parsed value.
+     *
+     * @throws NumberFormatException If the text is not a number.
+     */
+    public static float parseFloat(@NonNull byte[] data, int start, int end) {
+        while (start < end && (data[start] & 0xff) <= ' ') {
+            ++start;
+        }
+        while (end > start && (data[end - 1] & 0xff) <= ' ') {
+            --end;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i] == '-';
+            ++i;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        while (i < end && data[i] >= '0' && data[i] <= '9') {
+            hasDigits = true;
+            if (mantissa != 0 || data[i] != '0') {
+                mantissa = mantissa * 10 + (data[i] - '0');
+                ++digits;
+            }
+            ++i;
+        }
+        if (i < end && data[i] == '.') {
+            ++i;
+            while (i < end && data[i] >= '0' && data[i] <= '9') {
+                hasDigits = true;
+                if (mantissa != 0 || data[i] != '0') {
+                    mantissa = mantissa * 10 + (data[i] - '0');
+                    ++digits;
+                }
+                --exponent;
+                ++i;
+            }
+        }
+        if (hasDigits && i < end && (data[i] == 'e' || data[i] == 'E')) {
+            ++i;
+            boolean negativeExponent = false;
+            if (i < end && (data[i] == '-' || data[i] == '+')) {
+                negativeExponent = data[i] == '-';
+                ++i;
+            }
+            final int exponentStart = i;
+            int value = 0;
+            while (i < end && data[i] >= '0' && data[i] <= '9' && i - exponentStart < 4) {
+                value = value * 10 + (data[i] - '0');
+                ++i;
+            }
+            exponent += negativeExponent ? -value : value;
+            if (i == exponentStart) {
+                hasDigits = false;
+            }
+        }
+        if (!hasDigits || i != end || digits > MAX_DIGITS) {
+            return slowParseFloat(data, start, end);
+        }
+        if (mantissa == 0) {
+            return negative ? -0f : 0f;
+        }
+        float value;
+        if (mantissa <= MAX_FLOAT_MANTISSA && exponent >= -10 && exponent <= 10) {
+            // Both operands are exact, so the one rounding step of the float operation gives the nearest float
+            value = exponent < 0 ? mantissa / FLOAT_POWERS_OF_TEN[-exponent]
+                                 : mantissa * FLOAT_POWERS_OF_TEN[exponent];
+        } else if (mantissa <= MAX_DOUBLE_MANTISSA && exponent >= -22 && exponent <= 22) {
+            final double nearest = exponent < 0 ? mantissa / DOUBLE_POWERS_OF_TEN[-exponent]
+                                                : mantissa * DOUBLE_POWERS_OF_TEN[exponent];
+            if (nearest < Float.MIN_NORMAL || isFloatMidpoint(nearest)) {
+                // Rounding the double again could land on the wrong side of the midpoint
+                return slowParseFloat(data, start, end);
+            }
+            value = (float) nearest;
+        } else {
+            return slowParseFloat(data, start, end);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses an int like {@link Integer#parseInt(String)}, which does not allow any whitespace.
+     *
+     * @param data  {@code byte[]} Text.
+     * @param start {@code int} Index of the first byte of the number.
+     * @param end   {@code int} Index after the last byte of the number.
+     *
+     * @return {@code int} The parsed value.
+     *
+     * @throws NumberFormatException If the text is not an int.
+     */
+    public static int parseInt(@NonNull byte[] data, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i] == '-';
+            ++i;
+        }
+        if (i == end) {
+            throw invalidNumber(data, start, end);
+        }
+        // Accumulated negatively, since the negative range is one larger
+        final long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        long result = 0;
+        while (i < end) {
+            final int digit = data[i++] - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalidNumber(data, start, end);
+            }
+            result = result * 10 - digit;
+            if (result < limit) {
+                throw invalidNumber(data, start, end);
+            }
+        }
+        return (int) (negative ? result : -result);
+    }
+
+    private static boolean isFloatMidpoint(double value) {
+        // A double exactly between two floats has only the highest of the 29 bits dropped by the cast set
+        return (Double.doubleToRawLongBits(value) & 0x1fffffffL) == 0x10000000L;
+    }
+
+    private static float slowParseFloat(byte[] data, int start, int end) {
+        return Float.parseFloat(new String(data, start, end - start, Charset.defaultCharset()));
+    }
+
+    private static NumberFormatException invalidNumber(byte[] data, int start, int end) {
+        return new NumberFormatException("For input string: \""
+                                         + new String(data, start, end - start, Charset.defaultCharset()) + "\"");
+    }
+}
@@ -124,6 +124,27 @@ class Capabilities private constructor() {
     var extensions = arrayOf<String>()
         private set
 
+    /**
+     * Whether 32 bit element indices can be drawn. They are core in GL ES 3.0 and need the
+     * `GL_OES_element_index_uint` extension on GL ES 2.0.
+     */
+    var isUnsignedIntIndexSupported = false
+        private set
+
+    /**
+     * The type to submit 16 bit float vertex attributes with. This is `GL_HALF_FLOAT` on GL ES 3.0,
+     * `GL_HALF_FLOAT_OES` on GL ES 2.0 with the `GL_OES_vertex_half_float` extension and 0 when unsupported.
+     */
+    var halfFloatVertexType = 0
+        private set
+
+    /**
+     * Whether vertex array objects can be used. They are core in GL ES 3.0, the `GL_OES_vertex_array_object`
+     * extension of GL ES 2.0 is not exposed by the Android framework.
+     */
+    var isVertexArrayObjectSupported = false
+        private set
+
     init {
         mParam = IntArray(1)
         readValues()
@@ -152,6 +173,14 @@ class Capabilities private constructor() {
             maxAliasedPointSize = getInt(GLES20.GL_ALIASED_POINT_SIZE_RANGE, 2, 1)
             val extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS)
             this.extensions = extensions.split(" ".toRegex()).toTypedArray()
+            isUnsignedIntIndexSupported = !version.startsWith("OpenGL ES 2")
+                    || this.extensions.contains("GL_OES_element_index_uint")
+            halfFloatVertexType = when {
+                !version.startsWith("OpenGL ES 2") -> GL_HALF_FLOAT
+                this.extensions.contains("GL_OES_vertex_half_float") -> GL_HALF_FLOAT_OES
+                else -> 0
+            }
+            isVertexArrayObjectSupported = !version.startsWith("OpenGL ES 2")
         }
     }
 
@@ -241,6 +270,9 @@ class Capabilities private constructor() {
     }
 
     companion object {
+        private const val GL_HALF_FLOAT = 0x140B
+        private const val GL_HALF_FLOAT_OES = 0x8D61
+
         @JvmStatic
         var instance: Capabilities? = null
             get() {
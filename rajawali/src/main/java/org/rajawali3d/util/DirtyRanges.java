@@ -0,0 +1,124 @@
+package org.rajawali3d.util;
+
+/**
+ * Sorted set of half open element ranges which were modified since the last upload. Overlapping and adjacent ranges
+ * are merged as they are added, as are ranges separated by no more than the merge gap since one larger upload is
+ * cheaper than several small ones. Once more than the maximum number of ranges would be needed everything collapses
+ * into a single range.
+ *
+ * Adding a range takes time linear in the number of ranges held, which the maximum keeps small. Nothing is allocated
+ * after construction.
+ */
+public class DirtyRanges {
+
+    public static final int DEFAULT_MAX_RANGES = 8;
+
+    private final int[] mStarts;
+    private final int[] mEnds;
+    private final int   mMergeGap;
+    private int         mCount;
+
+    public DirtyRanges() {
+        this(DEFAULT_MAX_RANGES, 0);
+    }
+
+    /**
+     * @param maxRanges {@code int} Number of separate ranges tracked before collapsing them into one.
+     * @param mergeGap  {@code int} Ranges this many elements apart or closer are merged.
+     */
+    public DirtyRanges(int maxRanges, int mergeGap) {
+        if (maxRanges < 1) {
+            throw new IllegalArgumentException("At least one range has to be tracked.");
+        }
+        if (mergeGap < 0) {
+            throw new IllegalArgumentException("The merge gap can not be negative.");
+        }
+        mStarts = new int[maxRanges];
+        mEnds = new int[maxRanges];
+        mMergeGap = mergeGap;
+    }
+
+    /**
+     * Marks elements as modified.
+     *
+     * @param start {@code int} First modified element.
+     * @param end   {@code int} Element after the last modified one.
+     */
+    public void add(int start, int end) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid range [" + start + ", " + end + ").");
+        }
+        if (start == end) {
+            return;
+        }
+        // First range which ends at or after the new start, once the gap is allowed for
+        int first = 0;
+        while (first < mCount && mEnds[first] + mMergeGap < start) {
+            ++first;
+        }
+        // Ranges from first up to last overlap or touch the new one
+        int last = first;
+        while (last < mCount && mStarts[last] <= end + mMergeGap) {
+            ++last;
+        }
+        if (last > first) {
+            start = Math.min(start, mStarts[first]);
+            end = Math.max(end, mEnds[last - 1]);
+            mStarts[first] = start;
+            mEnds[first] = end;
+            final int removed = last - first - 1;
+            if (removed > 0) {
+                System.arraycopy(mStarts, last, mStarts, first + 1, mCount - last);
+                System.arraycopy(mEnds, last, mEnds, first + 1, mCount - last);
+                mCount -= removed;
+            }
+            return;
+        }
+        if (mCount == mStarts.length) {
+            // Out of ranges, cover everything instead
+            mStarts[0] = Math.min(start, mStarts[0]);
+            mEnds[0] = Math.max(end, mEnds[mCount - 1]);
+            mCount = 1;
+            return;
+        }
+        System.arraycopy(mStarts, first, mStarts, first + 1, mCount - first);
+        System.arraycopy(mEnds, first, mEnds, first + 1, mCount - first);
+        mStarts[first] = start;
+        mEnds[first] = end;
+        ++mCount;
+    }
+
+    public void clear() {
+        mCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * @return {@code int} The number of separate ranges.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    public int getStart(int range) {
+        return mStarts[range];
+    }
+
+    public int getEnd(int range) {
+        return mEnds[range];
+    }
+
+    /**
+     * @return {@code int} The number of elements covered by all ranges.
+     */
+    public int getElementCount() {
+        int count = 0;
+        for (int i = 0; i < mCount; ++i) {
+            count += mEnds[i] - mStarts[i];
+        }
+        return count;
+    }
+}
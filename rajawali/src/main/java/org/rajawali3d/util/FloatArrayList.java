@@ -0,0 +1,85 @@
+package org.rajawali3d.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive floats, for loaders which would otherwise box every coordinate into an
+ * {@code ArrayList<Float>}.
+ */
+public class FloatArrayList {
+
+    private float[] mData;
+    private int     mSize;
+
+    public FloatArrayList() {
+        this(16);
+    }
+
+    public FloatArrayList(int capacity) {
+        mData = new float[Math.max(capacity, 1)];
+    }
+
+    public void add(float value) {
+        if (mSize == mData.length) {
+            mData = Arrays.copyOf(mData, mSize * 2);
+        }
+        mData[mSize++] = value;
+    }
+
+    public void addAll(@NonNull FloatArrayList values) {
+        ensureCapacity(mSize + values.mSize);
+        System.arraycopy(values.mData, 0, mData, mSize, values.mSize);
+        mSize += values.mSize;
+    }
+
+    /**
+     * Same contract as {@link java.util.ArrayList#get(int)}: an index past the end throws an
+     * {@link IndexOutOfBoundsException}, a negative one an {@link ArrayIndexOutOfBoundsException}.
+     */
+    public float get(int index) {
+        if (index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+        return mData[index];
+    }
+
+    public void set(int index, float value) {
+        if (index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+        mData[index] = value;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > mData.length) {
+            mData = Arrays.copyOf(mData, Math.max(capacity, mData.length * 2));
+        }
+    }
+
+    /**
+     * @return {@code float[]} The backing array, valid up to {@link #size()} and replaced when the list grows.
+     */
+    @NonNull
+    public float[] getArray() {
+        return mData;
+    }
+
+    @NonNull
+    public float[] toArray() {
+        return Arrays.copyOf(mData, mSize);
+    }
+}
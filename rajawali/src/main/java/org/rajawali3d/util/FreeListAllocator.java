@@ -0,0 +1,138 @@
+package org.rajawali3d.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hands out aligned ranges of a fixed size address space, such as one large GL buffer shared by many small
+ * geometries. Free space is kept as a sorted list of blocks which is searched first fit, freed ranges are merged with
+ * their free neighbours so the space does not fragment into ever smaller pieces.
+ *
+ * Only offsets are managed, no memory is touched, so the bookkeeping works without a GL context.
+ */
+public class FreeListAllocator {
+
+    private final int                       mCapacity;
+    private final TreeMap<Integer, Integer> mFreeBlocks  = new TreeMap<>();
+    private final Map<Integer, Integer>     mAllocations = new HashMap<>();
+    private int                             mUsed;
+
+    /**
+     * @param capacity {@code int} Size of the managed space.
+     */
+    public FreeListAllocator(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity has to be positive.");
+        }
+        mCapacity = capacity;
+        mFreeBlocks.put(0, capacity);
+    }
+
+    /**
+     * Reserves a range.
+     *
+     * @param size      {@code int} Size of the range.
+     * @param alignment {@code int} Power of two the offset has to be a multiple of.
+     *
+     * @return {@code int} Offset of the range or -1 if no free block is large enough.
+     */
+    public int allocate(int size, int alignment) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The size has to be positive.");
+        }
+        if (alignment <= 0 || (alignment & (alignment - 1)) != 0) {
+            throw new IllegalArgumentException("The alignment has to be a power of two.");
+        }
+        for (Map.Entry<Integer, Integer> block : mFreeBlocks.entrySet()) {
+            final int start = block.getKey();
+            final int blockSize = block.getValue();
+            final int offset = (start + alignment - 1) & -alignment;
+            final int end = offset + size;
+            if (end > start + blockSize) {
+                continue;
+            }
+            mFreeBlocks.remove(start);
+            if (offset > start) {
+                // Keep the padding in front of the range free
+                mFreeBlocks.put(start, offset - start);
+            }
+            if (end < start + blockSize) {
+                mFreeBlocks.put(end, start + blockSize - end);
+            }
+            mAllocations.put(offset, size);
+            mUsed += size;
+            return offset;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a range reserved by {@link #allocate(int, int)}.
+     *
+     * @param offset {@code int} Offset of the range.
+     */
+    public void free(int offset) {
+        final Integer size = mAllocations.remove(offset);
+        if (size == null) {
+            throw new IllegalArgumentException("No range is allocated at " + offset + ".");
+        }
+        mUsed -= size;
+        int start = offset;
+        int end = offset + size;
+        final Map.Entry<Integer, Integer> previous = mFreeBlocks.floorEntry(offset);
+        if (previous != null && previous.getKey() + previous.getValue() == start) {
+            start = previous.getKey();
+            mFreeBlocks.remove(start);
+        }
+        final Integer next = mFreeBlocks.get(end);
+        if (next != null) {
+            mFreeBlocks.remove(end);
+            end += next;
+        }
+        mFreeBlocks.put(start, end - start);
+    }
+
+    /**
+     * Frees every range at once.
+     */
+    public void clear() {
+        mAllocations.clear();
+        mFreeBlocks.clear();
+        mFreeBlocks.put(0, mCapacity);
+        mUsed = 0;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * @return {@code int} Combined size of all allocated ranges, not counting alignment padding.
+     */
+    public int getUsed() {
+        return mUsed;
+    }
+
+    public int getAllocationCount() {
+        return mAllocations.size();
+    }
+
+    /**
+     * @return {@code int} The number of separate free blocks, a measure of fragmentation.
+     */
+    public int getFreeBlockCount() {
+        return mFreeBlocks.size();
+    }
+
+    /**
+     * @return {@code int} Size of the largest range which could still be allocated without padding.
+     */
+    public int getLargestFreeBlock() {
+        int largest = 0;
+        for (int size : mFreeBlocks.values()) {
+            largest = Math.max(largest, size);
+        }
+        return largest;
+    }
+}
@@ -0,0 +1,85 @@
+package org.rajawali3d.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, for loaders which would otherwise box every index into an
+ * {@code ArrayList<Integer>}.
+ */
+public class IntArrayList {
+
+    private int[] mData;
+    private int   mSize;
+
+    public IntArrayList() {
+        this(16);
+    }
+
+    public IntArrayList(int capacity) {
+        mData = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int value) {
+        if (mSize == mData.length) {
+            mData = Arrays.copyOf(mData, mSize * 2);
+        }
+        mData[mSize++] = value;
+    }
+
+    public void addAll(@NonNull IntArrayList values) {
+        ensureCapacity(mSize + values.mSize);
+        System.arraycopy(values.mData, 0, mData, mSize, values.mSize);
+        mSize += values.mSize;
+    }
+
+    /**
+     * Same contract as {@link java.util.ArrayList#get(int)}: an index past the end throws an
+     * {@link IndexOutOfBoundsException}, a negative one an {@link ArrayIndexOutOfBoundsException}.
+     */
+    public int get(int index) {
+        if (index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+        return mData[index];
+    }
+
+    public void set(int index, int value) {
+        if (index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+        }
+        mData[index] = value;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > mData.length) {
+            mData = Arrays.copyOf(mData, Math.max(capacity, mData.length * 2));
+        }
+    }
+
+    /**
+     * @return {@code int[]} The backing array, valid up to {@link #size()} and replaced when the list grows.
+     */
+    @NonNull
+    public int[] getArray() {
+        return mData;
+    }
+
+    @NonNull
+    public int[] toArray() {
+        return Arrays.copyOf(mData, mSize);
+    }
+}
@@ -0,0 +1,429 @@
+package org.rajawali3d.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decompresses LZMA data in the format of the LZMA SDK and of {@code .lzma} files: a byte with the literal context,
+ * literal position and position bits, the dictionary size and the uncompressed size or -1 if the data ends with an
+ * end marker instead, followed by the compressed data.
+ *
+ * The data is decoded as it is read. Apart from the dictionary, which holds the last decoded bytes matches can refer
+ * to and is never larger than the uncompressed data, nothing is buffered or allocated while reading.
+ */
+public class LzmaInputStream extends InputStream {
+
+    private static final int HEADER_SIZE = 13;
+    private static final int MIN_DICTIONARY_SIZE = 4096;
+
+    private static final int NUM_STATES = 12;
+    private static final int POS_BITS_MAX = 4;
+    private static final int MATCH_LENGTH_MIN = 2;
+    private static final int NUM_LENGTH_TO_POS_STATES = 4;
+    private static final int NUM_POS_SLOT_BITS = 6;
+    private static final int START_POS_MODEL_INDEX = 4;
+    private static final int END_POS_MODEL_INDEX = 14;
+    private static final int NUM_FULL_DISTANCES = 1 << (END_POS_MODEL_INDEX >>> 1);
+    private static final int NUM_ALIGN_BITS = 4;
+
+    private static final int BIT_MODEL_TOTAL_BITS = 11;
+    private static final int BIT_MODEL_TOTAL = 1 << BIT_MODEL_TOTAL_BITS;
+    private static final int MOVE_BITS = 5;
+    private static final int TOP_MASK = 0xff000000;
+
+    private final InputStream mIn;
+    private final byte[]      mSingle = new byte[1];
+
+    private final int mLiteralContextBits;
+    private final int mLiteralPosMask;
+    private final int mPosMask;
+
+    private final short[]       mIsMatch     = new short[NUM_STATES << POS_BITS_MAX];
+    private final short[]       mIsRep       = new short[NUM_STATES];
+    private final short[]       mIsRepG0     = new short[NUM_STATES];
+    private final short[]       mIsRepG1     = new short[NUM_STATES];
+    private final short[]       mIsRepG2     = new short[NUM_STATES];
+    private final short[]       mIsRep0Long  = new short[NUM_STATES << POS_BITS_MAX];
+    private final short[]       mPosSlot     = new short[NUM_LENGTH_TO_POS_STATES << NUM_POS_SLOT_BITS];
+    private final short[]       mPosDecoders = new short[1 + NUM_FULL_DISTANCES - END_POS_MODEL_INDEX];
+    private final short[]       mAlign       = new short[1 << NUM_ALIGN_BITS];
+    private final short[]       mLiterals;
+    private final LengthDecoder mMatchLength = new LengthDecoder();
+    private final LengthDecoder mRepLength   = new LengthDecoder();
+
+    private final byte[] mDictionary;
+    private int          mDictionaryPosition;
+    private boolean      mDictionaryFull;
+
+    private int  mRange = 0xffffffff;
+    private int  mCode;
+    private int  mState;
+    private int  mRep0;
+    private int  mRep1;
+    private int  mRep2;
+    private int  mRep3;
+    private int  mPendingLength;
+    private long mTotal;
+    private long mRemaining;
+    private boolean mEnd;
+
+    /**
+     * Reads the header from the stream, the data is decoded as it is read.
+     *
+     * @param in {@link InputStream} positioned at the header.
+     *
+     * @throws IOException If the header can not be read or is invalid.
+     */
+    public LzmaInputStream(InputStream in) throws IOException {
+        mIn = in;
+        final byte[] header = new byte[HEADER_SIZE];
+        readFully(header);
+        int properties = header[0] & 0xff;
+        if (properties >= 9 * 5 * 5) {
+            throw new IOException("Invalid LZMA properties.");
+        }
+        mLiteralContextBits = properties % 9;
+        properties /= 9;
+        final int literalPosBits = properties % 5;
+        final int posBits = properties / 5;
+        mLiteralPosMask = (1 << literalPosBits) - 1;
+        mPosMask = (1 << posBits) - 1;
+
+        final long dictionarySize = readLittleEndian(header, 1, 4);
+        mRemaining = readLittleEndian(header, 5, 8);
+        long size = Math.max(dictionarySize, MIN_DICTIONARY_SIZE);
+        if (mRemaining >= 0) {
+            // There is no point in remembering more than the whole data
+            size = Math.min(size, Math.max(mRemaining, MIN_DICTIONARY_SIZE));
+        }
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("LZMA dictionary of " + dictionarySize + " bytes is too large.");
+        }
+        mDictionary = new byte[(int) size];
+        mLiterals = new short[0x300 << (mLiteralContextBits + literalPosBits)];
+
+        initializeProbabilities(mIsMatch);
+        initializeProbabilities(mIsRep);
+        initializeProbabilities(mIsRepG0);
+        initializeProbabilities(mIsRepG1);
+        initializeProbabilities(mIsRepG2);
+        initializeProbabilities(mIsRep0Long);
+        initializeProbabilities(mPosSlot);
+        initializeProbabilities(mPosDecoders);
+        initializeProbabilities(mAlign);
+        initializeProbabilities(mLiterals);
+
+        if (readByte() != 0) {
+            throw new IOException("Invalid LZMA data.");
+        }
+        for (int i = 0; i < 4; ++i) {
+            mCode = (mCode << 8) | readByte();
+        }
+        mEnd = mRemaining == 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(mSingle, 0, 1) == -1 ? -1 : mSingle[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length == 0) {
+            return 0;
+        }
+        int count = 0;
+        while (count < length) {
+            if (mPendingLength > 0) {
+                final int copy = Math.min(mPendingLength, length - count);
+                copyMatch(buffer, offset + count, copy);
+                mPendingLength -= copy;
+                count += copy;
+            } else if (mEnd || mRemaining == 0) {
+                mEnd = true;
+                break;
+            } else {
+                decodeSymbol(buffer, offset + count);
+                if (mPendingLength < 0) {
+                    // A literal was written
+                    mPendingLength = 0;
+                    ++count;
+                }
+            }
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public int available() {
+        return mPendingLength;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIn.close();
+    }
+
+    /**
+     * Decodes a literal into the buffer, signalled by setting the pending length to -1, or a match whose length is
+     * left pending.
+     */
+    private void decodeSymbol(byte[] buffer, int offset) throws IOException {
+        final int posState = (int) mTotal & mPosMask;
+        if (decodeBit(mIsMatch, (mState << POS_BITS_MAX) + posState) == 0) {
+            final byte literal = decodeLiteral();
+            put(literal);
+            buffer[offset] = literal;
+            mState = mState < 4 ? 0 : mState < 10 ? mState - 3 : mState - 6;
+            mPendingLength = -1;
+            return;
+        }
+
+        final int length;
+        if (decodeBit(mIsRep, mState) == 0) {
+            mRep3 = mRep2;
+            mRep2 = mRep1;
+            mRep1 = mRep0;
+            length = mMatchLength.decode(posState);
+            mState = mState < 7 ? 7 : 10;
+            mRep0 = decodeDistance(length);
+            if (mRep0 == -1) {
+                // End marker
+                if (mRemaining > 0) {
+                    throw new EOFException("LZMA data ended early.");
+                }
+                mEnd = true;
+                return;
+            }
+        } else {
+            if (decodeBit(mIsRepG0, mState) == 0) {
+                if (decodeBit(mIsRep0Long, (mState << POS_BITS_MAX) + posState) == 0) {
+                    mState = mState < 7 ? 9 : 11;
+                    startMatch(1);
+                    return;
+                }
+            } else {
+                final int distance;
+                if (decodeBit(mIsRepG1, mState) == 0) {
+                    distance = mRep1;
+                } else {
+                    if (decodeBit(mIsRepG2, mState) == 0) {
+                        distance = mRep2;
+                    } else {
+                        distance = mRep3;
+                        mRep3 = mRep2;
+                    }
+                    mRep2 = mRep1;
+                }
+                mRep1 = mRep0;
+                mRep0 = distance;
+            }
+            length = mRepLength.decode(posState);
+            mState = mState < 7 ? 8 : 11;
+        }
+        startMatch(length);
+    }
+
+    private void startMatch(int length) throws IOException {
+        if ((mRep0 & 0xffffffffL) >= (mDictionaryFull ? mDictionary.length : mDictionaryPosition)) {
+            throw new IOException("Invalid LZMA data, a match refers to data before the start.");
+        }
+        if (mRemaining >= 0 && length > mRemaining) {
+            throw new IOException("Invalid LZMA data, a match exceeds the uncompressed size.");
+        }
+        mPendingLength = length;
+    }
+
+    private void copyMatch(byte[] buffer, int offset, int length) {
+        int source = mDictionaryPosition - mRep0 - 1;
+        if (source < 0) {
+            source += mDictionary.length;
+        }
+        for (int i = 0; i < length; ++i) {
+            final byte value = mDictionary[source];
+            if (++source == mDictionary.length) {
+                source = 0;
+            }
+            put(value);
+            buffer[offset + i] = value;
+        }
+    }
+
+    private void put(byte value) {
+        mDictionary[mDictionaryPosition] = value;
+        if (++mDictionaryPosition == mDictionary.length) {
+            mDictionaryPosition = 0;
+            mDictionaryFull = true;
+        }
+        ++mTotal;
+        if (mRemaining > 0) {
+            --mRemaining;
+        }
+    }
+
+    private int getByte(int distance) {
+        int position = mDictionaryPosition - distance - 1;
+        if (position < 0) {
+            position += mDictionary.length;
+        }
+        return mDictionary[position] & 0xff;
+    }
+
+    private byte decodeLiteral() throws IOException {
+        final int previous = mTotal == 0 ? 0 : getByte(0);
+        final int offset = 0x300 * ((((int) mTotal & mLiteralPosMask) << mLiteralContextBits)
+                                    + (previous >>> (8 - mLiteralContextBits)));
+        int symbol = 1;
+        if (mState < 7) {
+            do {
+                symbol = (symbol << 1) | decodeBit(mLiterals, offset + symbol);
+            } while (symbol < 0x100);
+        } else {
+            // After a match the byte at the match distance predicts the literal
+            int matchByte = getByte(mRep0);
+            int matchOffset = 0x100;
+            do {
+                matchByte <<= 1;
+                final int matchBit = matchByte & matchOffset;
+                final int bit = decodeBit(mLiterals, offset + matchOffset + matchBit + symbol);
+                symbol = (symbol << 1) | bit;
+                matchOffset &= (0 - bit) ^ ~matchBit;
+            } while (symbol < 0x100);
+        }
+        return (byte) symbol;
+    }
+
+    private int decodeDistance(int length) throws IOException {
+        final int lengthState = Math.min(length - MATCH_LENGTH_MIN, NUM_LENGTH_TO_POS_STATES - 1);
+        final int posSlot = decodeBitTree(mPosSlot, lengthState << NUM_POS_SLOT_BITS, NUM_POS_SLOT_BITS);
+        if (posSlot < START_POS_MODEL_INDEX) {
+            return posSlot;
+        }
+        final int directBits = (posSlot >>> 1) - 1;
+        int distance = (2 | (posSlot & 1)) << directBits;
+        if (posSlot < END_POS_MODEL_INDEX) {
+            distance |= decodeReverseBitTree(mPosDecoders, distance - posSlot, directBits);
+        } else {
+            distance |= decodeDirectBits(directBits - NUM_ALIGN_BITS) << NUM_ALIGN_BITS;
+            distance |= decodeReverseBitTree(mAlign, 0, NUM_ALIGN_BITS);
+        }
+        return distance;
+    }
+
+    private void normalize() throws IOException {
+        if ((mRange & TOP_MASK) == 0) {
+            mRange <<= 8;
+            mCode = (mCode << 8) | readByte();
+        }
+    }
+
+    private int decodeBit(short[] probabilities, int index) throws IOException {
+        normalize();
+        final int probability = probabilities[index];
+        final int bound = (mRange >>> BIT_MODEL_TOTAL_BITS) * probability;
+        // Unsigned comparison of the code with the bound
+        if ((mCode ^ 0x80000000) < (bound ^ 0x80000000)) {
+            mRange = bound;
+            probabilities[index] = (short) (probability + ((BIT_MODEL_TOTAL - probability) >>> MOVE_BITS));
+            return 0;
+        } else {
+            mRange -= bound;
+            mCode -= bound;
+            probabilities[index] = (short) (probability - (probability >>> MOVE_BITS));
+            return 1;
+        }
+    }
+
+    private int decodeBitTree(short[] probabilities, int offset, int bits) throws IOException {
+        int symbol = 1;
+        for (int i = 0; i < bits; ++i) {
+            symbol = (symbol << 1) | decodeBit(probabilities, offset + symbol);
+        }
+        return symbol - (1 << bits);
+    }
+
+    private int decodeReverseBitTree(short[] probabilities, int offset, int bits) throws IOException {
+        int index = 1;
+        int symbol = 0;
+        for (int i = 0; i < bits; ++i) {
+            final int bit = decodeBit(probabilities, offset + index);
+            index = (index << 1) | bit;
+            symbol |= bit << i;
+        }
+        return symbol;
+    }
+
+    private int decodeDirectBits(int bits) throws IOException {
+        int result = 0;
+        for (int i = 0; i < bits; ++i) {
+            normalize();
+            mRange >>>= 1;
+            final int bit = (mCode - mRange) >>> 31;
+            mCode -= mRange & (bit - 1);
+            result = (result << 1) | (1 - bit);
+        }
+        return result;
+    }
+
+    private int readByte() throws IOException {
+        final int value = mIn.read();
+        if (value < 0) {
+            throw new EOFException("LZMA data ended early.");
+        }
+        return value;
+    }
+
+    private void readFully(byte[] buffer) throws IOException {
+        int read = 0;
+        while (read < buffer.length) {
+            final int count = mIn.read(buffer, read, buffer.length - read);
+            if (count < 0) {
+                throw new EOFException("LZMA header ended early.");
+            }
+            read += count;
+        }
+    }
+
+    private static long readLittleEndian(byte[] buffer, int offset, int length) {
+        long value = 0;
+        for (int i = length - 1; i >= 0; --i) {
+            value = (value << 8) | (buffer[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void initializeProbabilities(short[] probabilities) {
+        for (int i = 0; i < probabilities.length; ++i) {
+            probabilities[i] = BIT_MODEL_TOTAL >>> 1;
+        }
+    }
+
+    private final class LengthDecoder {
+
+        private final short[] mChoice = new short[2];
+        private final short[] mLow    = new short[(1 << POS_BITS_MAX) << 3];
+        private final short[] mMid    = new short[(1 << POS_BITS_MAX) << 3];
+        private final short[] mHigh   = new short[1 << 8];
+
+        LengthDecoder() {
+            initializeProbabilities(mChoice);
+            initializeProbabilities(mLow);
+            initializeProbabilities(mMid);
+            initializeProbabilities(mHigh);
+        }
+
+        int decode(int posState) throws IOException {
+            if (decodeBit(mChoice, 0) == 0) {
+                return MATCH_LENGTH_MIN + decodeBitTree(mLow, posState << 3, 3);
+            }
+            if (decodeBit(mChoice, 1) == 0) {
+                return MATCH_LENGTH_MIN + 8 + decodeBitTree(mMid, posState << 3, 3);
+            }
+            return MATCH_LENGTH_MIN + 16 + decodeBitTree(mHigh, 0, 8);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.rajawali3d.util;
+
+import android.opengl.GLES20;
+import androidx.annotation.NonNull;
+
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.bounds.BoundingBox;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits large triangle meshes into spatial clusters which are culled one by one. A mesh of millions of triangles is
+ * otherwise drawn whole as soon as any part of its bounding box is visible, which with the camera inside a model is
+ * always the case.
+ *
+ * Triangles are sorted into the leaves of a k-d tree over their centroids, each node split at the middle of its
+ * longest axis until a leaf holds at most the configured number of triangles. The index buffer is rewritten so the
+ * triangles of every cluster are contiguous, the vertex buffers stay shared. Each cluster records its index range
+ * and the bounding box of its triangles with {@link Geometry3D#setClusters(int[], BoundingBox[])}, which
+ * {@link Object3D} tests against the frustum before drawing the visible ranges.
+ *
+ * Partitioning is stable, so triangles keep their relative order within a cluster and most of the vertex cache
+ * locality established by {@link MeshOptimizer} survives. No GL context is needed, chunking has to happen before the
+ * buffers of the geometry are created.
+ */
+public class MeshChunker {
+
+    /**
+     * Maximum number of triangles per cluster. Small enough to cull finely, large enough to keep the number of draw
+     * calls and bounding box tests low.
+     */
+    public static final int DEFAULT_MAX_TRIANGLES = 4096;
+
+    private int mMaxTriangles = DEFAULT_MAX_TRIANGLES;
+
+    public MeshChunker setMaxTriangles(int maxTriangles) {
+        if (maxTriangles < 1) {
+            throw new IllegalArgumentException("A cluster has to hold at least one triangle.");
+        }
+        mMaxTriangles = maxTriangles;
+        return this;
+    }
+
+    public int getMaxTriangles() {
+        return mMaxTriangles;
+    }
+
+    /**
+     * Chunks every triangle mesh in the hierarchy which has more triangles than a cluster holds.
+     *
+     * @param object {@link Object3D} root of the hierarchy.
+     *
+     * @return {@code int} The number of clusters created.
+     */
+    public int chunk(@NonNull Object3D object) {
+        int clusters = 0;
+        if (!object.isContainer() && object.getDrawingMode() == GLES20.GL_TRIANGLES) {
+            clusters += chunk(object.getGeometry());
+        }
+        for (int i = 0, j = object.getNumChildren(); i < j; ++i) {
+            clusters += chunk(object.getChildAt(i));
+        }
+        return clusters;
+    }
+
+    /**
+     * Chunks a geometry drawn as {@code GL_TRIANGLES}, rewriting its index buffer.
+     *
+     * @param geometry {@link Geometry3D} to chunk.
+     *
+     * @return {@code int} The number of clusters created, 0 if the geometry is small enough to stay whole.
+     */
+    public int chunk(@NonNull Geometry3D geometry) {
+        final FloatBuffer positions = geometry.getVertices();
+        final int vertexCount = geometry.getNumVertices();
+        if (positions == null || geometry.getIndices() == null || geometry.getNumIndices() % 3 != 0) {
+            return 0;
+        }
+        final int triangleCount = geometry.getNumIndices() / 3;
+        if (triangleCount <= mMaxTriangles) {
+            return 0;
+        }
+        final int[] indices = Geometry3D.getIntArrayFromBuffer(geometry.getIndices());
+        for (int index : indices) {
+            if (index >= vertexCount) {
+                RajLog.w("Not chunking a mesh with indices beyond its " + vertexCount + " vertices.");
+                return 0;
+            }
+        }
+        final float[] vertices = new float[vertexCount * 3];
+        positions.position(0);
+        positions.get(vertices);
+        positions.position(0);
+
+        final int[] order = new int[triangleCount];
+        for (int t = 0; t < triangleCount; ++t) {
+            order[t] = t;
+        }
+        final int[] leafStarts = buildClusters(indices, vertices, order, mMaxTriangles);
+        final int clusterCount = leafStarts.length - 1;
+
+        final int[] sorted = new int[indices.length];
+        final int[] indexOffsets = new int[clusterCount + 1];
+        final BoundingBox[] bounds = new BoundingBox[clusterCount];
+        final Vector3 min = new Vector3();
+        final Vector3 max = new Vector3();
+        for (int c = 0; c < clusterCount; ++c) {
+            min.setAll(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+            max.setAll(-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE);
+            for (int i = leafStarts[c]; i < leafStarts[c + 1]; ++i) {
+                for (int k = 0; k < 3; ++k) {
+                    final int vertex = indices[order[i] * 3 + k];
+                    sorted[i * 3 + k] = vertex;
+                    final int v = vertex * 3;
+                    min.x = Math.min(min.x, vertices[v]);
+                    min.y = Math.min(min.y, vertices[v + 1]);
+                    min.z = Math.min(min.z, vertices[v + 2]);
+                    max.x = Math.max(max.x, vertices[v]);
+                    max.y = Math.max(max.y, vertices[v + 1]);
+                    max.z = Math.max(max.z, vertices[v + 2]);
+                }
+            }
+            indexOffsets[c] = leafStarts[c] * 3;
+            bounds[c] = new BoundingBox(min, max);
+        }
+        indexOffsets[clusterCount] = indices.length;
+
+        geometry.setIndices(sorted, true);
+        geometry.setClusters(indexOffsets, bounds);
+        return clusterCount;
+    }
+
+    /**
+     * Sorts the triangle order into k-d tree leaves.
+     *
+     * @param order {@code int[]} Triangle numbers, reordered in place so every leaf is contiguous.
+     *
+     * @return {@code int[]} Position of the first triangle of every leaf in the order, followed by the triangle count.
+     */
+    static int[] buildClusters(@NonNull int[] indices, @NonNull float[] vertices, @NonNull int[] order,
+                               int maxTriangles) {
+        final int triangleCount = order.length;
+        final float[] centroids = new float[triangleCount * 3];
+        for (int t = 0; t < triangleCount; ++t) {
+            for (int k = 0; k < 3; ++k) {
+                final int v = indices[t * 3 + k] * 3;
+                centroids[t * 3] += vertices[v] / 3f;
+                centroids[t * 3 + 1] += vertices[v + 1] / 3f;
+                centroids[t * 3 + 2] += vertices[v + 2] / 3f;
+            }
+        }
+
+        final int[] scratch = new int[triangleCount];
+        int[] leafStarts = new int[16];
+        int leafCount = 0;
+        // Ranges still to split, processed depth first so leaves come out in tree order
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = triangleCount;
+        while (top > 0) {
+            final int end = stack[--top];
+            final int start = stack[--top];
+            if (end - start <= maxTriangles) {
+                if (leafCount + 1 == leafStarts.length) {
+                    leafStarts = Arrays.copyOf(leafStarts, leafStarts.length * 2);
+                }
+                leafStarts[leafCount++] = start;
+                continue;
+            }
+            int split = partition(centroids, order, scratch, start, end);
+            if (split == start || split == end) {
+                // Every centroid lies on one side, fall back to halving by count
+                split = (start + end) >>> 1;
+            }
+            if (top + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            // Push the upper half first so the lower one is handled next
+            stack[top++] = split;
+            stack[top++] = end;
+            stack[top++] = start;
+            stack[top++] = split;
+        }
+        leafStarts[leafCount++] = triangleCount;
+        return Arrays.copyOf(leafStarts, leafCount);
+    }
+
+    /**
+     * Stable partition of a range of the order at the middle of the longest axis of its centroid bounds.
+     *
+     * @return {@code int} Position of the first triangle above the middle.
+     */
+    private static int partition(float[] centroids, int[] order, int[] scratch, int start, int end) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (int i = start; i < end; ++i) {
+            final int c = order[i] * 3;
+            minX = Math.min(minX, centroids[c]);
+            minY = Math.min(minY, centroids[c + 1]);
+            minZ = Math.min(minZ, centroids[c + 2]);
+            maxX = Math.max(maxX, centroids[c]);
+            maxY = Math.max(maxY, centroids[c + 1]);
+            maxZ = Math.max(maxZ, centroids[c + 2]);
+        }
+        final float extentX = maxX - minX;
+        final float extentY = maxY - minY;
+        final float extentZ = maxZ - minZ;
+        final int axis;
+        final float middle;
+        if (extentX >= extentY && extentX >= extentZ) {
+            axis = 0;
+            middle = minX + extentX * 0.5f;
+        } else if (extentY >= extentZ) {
+            axis = 1;
+            middle = minY + extentY * 0.5f;
+        } else {
+            axis = 2;
+            middle = minZ + extentZ * 0.5f;
+        }
+
+        int lower = start;
+        int upper = 0;
+        for (int i = start; i < end; ++i) {
+            final int triangle = order[i];
+            if (centroids[triangle * 3 + axis] <= middle) {
+                order[lower++] = triangle;
+            } else {
+                scratch[upper++] = triangle;
+            }
+        }
+        System.arraycopy(scratch, 0, order, lower, upper);
+        return lower;
+    }
+}
@@ -0,0 +1,564 @@
+package org.rajawali3d.util;
+
+import android.opengl.GLES20;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.rajawali3d.BufferInfo;
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.Object3D;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Reorders indexed triangle meshes for faster drawing. Three passes run in order:
+ * <ol>
+ * <li>Triangles are reordered for the post transform vertex cache with Tipsify (Sander, Nehab and Barczak, "Fast
+ * Triangle Reordering for Vertex Locality and Reduced Overdraw"), so fewer vertices are shaded more than once.</li>
+ * <li>The resulting runs of triangles are split into clusters and the clusters sorted so those facing away from the
+ * mesh center, which are likely to occlude the others, are drawn first.</li>
+ * <li>Vertices are renumbered in the order the triangles first use them, so vertex fetches walk memory linearly.
+ * Buffers added to the geometry, such as bone indices and weights, are renumbered along when they hold float values
+ * for every vertex. With any other added buffer the vertex order is kept.</li>
+ * </ol>
+ * The rendered result is unchanged. Only the order of triangles and vertices differs, with each triangle keeping its
+ * winding. No GL context is needed so meshes can be optimized on the thread loading them, before their buffers are
+ * created. Geometry shared by clones should be optimized before it is cloned.
+ *
+ * <pre><code>
+ * final MeshOptimizer.Statistics statistics = new MeshOptimizer().optimize(object);
+ * RajLog.i(statistics.toString());
+ * </code></pre>
+ */
+public class MeshOptimizer {
+
+    /**
+     * Number of vertices the simulated FIFO cache holds. Desktop and mobile GPUs land between 16 and 32 entries and
+     * optimizing for a smaller cache degrades gracefully on larger ones.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 16;
+
+    /**
+     * How much worse than its enclosing run the cache efficiency of an overdraw cluster may get.
+     */
+    public static final float DEFAULT_OVERDRAW_THRESHOLD = 1.05f;
+
+    private int     mCacheSize         = DEFAULT_CACHE_SIZE;
+    private float   mOverdrawThreshold = DEFAULT_OVERDRAW_THRESHOLD;
+    private boolean mReduceOverdraw    = true;
+    private boolean mOptimizeFetch     = true;
+
+    /**
+     * Cache efficiency of the meshes passed to an optimizer, before and after optimizing them.
+     */
+    public static final class Statistics {
+        private int  mTriangles;
+        private int  mVertices;
+        private long mMissesBefore;
+        private long mMissesAfter;
+
+        public int getTriangleCount() {
+            return mTriangles;
+        }
+
+        public int getVertexCount() {
+            return mVertices;
+        }
+
+        /**
+         * @return Average cache miss ratio, the number of vertices shaded per triangle, before optimizing. Ranges from
+         * 3 down to about 0.5 for a regular grid.
+         */
+        public double getAcmrBefore() {
+            return mTriangles == 0 ? 0 : (double) mMissesBefore / mTriangles;
+        }
+
+        public double getAcmrAfter() {
+            return mTriangles == 0 ? 0 : (double) mMissesAfter / mTriangles;
+        }
+
+        /**
+         * @return Average transformed vertex ratio, the number of times each vertex is shaded, before optimizing. 1 is
+         * optimal.
+         */
+        public double getAtvrBefore() {
+            return mVertices == 0 ? 0 : (double) mMissesBefore / mVertices;
+        }
+
+        public double getAtvrAfter() {
+            return mVertices == 0 ? 0 : (double) mMissesAfter / mVertices;
+        }
+
+        void add(int triangles, int vertices, long missesBefore, long missesAfter) {
+            mTriangles += triangles;
+            mVertices += vertices;
+            mMissesBefore += missesBefore;
+            mMissesAfter += missesAfter;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "ACMR %.3f -> %.3f, ATVR %.3f -> %.3f over %d triangles",
+                                 getAcmrBefore(), getAcmrAfter(), getAtvrBefore(), getAtvrAfter(), mTriangles);
+        }
+    }
+
+    public MeshOptimizer setCacheSize(int cacheSize) {
+        if (cacheSize < 3) {
+            throw new IllegalArgumentException("The vertex cache has to hold at least one triangle.");
+        }
+        mCacheSize = cacheSize;
+        return this;
+    }
+
+    public int getCacheSize() {
+        return mCacheSize;
+    }
+
+    /**
+     * @param threshold Values above 1 trade some vertex cache efficiency for smaller clusters, which sort better.
+     *                  1 keeps the cache efficiency of the vertex cache pass.
+     */
+    public MeshOptimizer setOverdrawThreshold(float threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("The overdraw threshold can not be below 1.");
+        }
+        mOverdrawThreshold = threshold;
+        return this;
+    }
+
+    public MeshOptimizer setReduceOverdraw(boolean reduceOverdraw) {
+        mReduceOverdraw = reduceOverdraw;
+        return this;
+    }
+
+    public MeshOptimizer setOptimizeVertexFetch(boolean optimizeFetch) {
+        mOptimizeFetch = optimizeFetch;
+        return this;
+    }
+
+    /**
+     * Optimizes every triangle mesh in the hierarchy. Lines, points, strips and fans are left alone.
+     *
+     * @param object {@link Object3D} root of the hierarchy.
+     *
+     * @return {@link Statistics} over all optimized meshes.
+     */
+    @NonNull
+    public Statistics optimize(@NonNull Object3D object) {
+        final Statistics statistics = new Statistics();
+        optimize(object, statistics);
+        return statistics;
+    }
+
+    private void optimize(Object3D object, Statistics statistics) {
+        if (!object.isContainer() && object.getDrawingMode() == GLES20.GL_TRIANGLES) {
+            optimize(object.getGeometry(), statistics);
+        }
+        for (int i = 0, j = object.getNumChildren(); i < j; ++i) {
+            optimize(object.getChildAt(i), statistics);
+        }
+    }
+
+    /**
+     * Optimizes a geometry drawn as {@code GL_TRIANGLES}. Its buffers are rewritten in place, so this has to happen
+     * before they are uploaded.
+     *
+     * @param geometry {@link Geometry3D} to optimize.
+     *
+     * @return {@link Statistics} for the geometry.
+     */
+    @NonNull
+    public Statistics optimize(@NonNull Geometry3D geometry) {
+        final Statistics statistics = new Statistics();
+        optimize(geometry, statistics);
+        return statistics;
+    }
+
+    private void optimize(Geometry3D geometry, Statistics statistics) {
+        final int vertexCount = geometry.getNumVertices();
+        if (geometry.getIndices() == null || geometry.getNumIndices() < 3 || geometry.getNumIndices() % 3 != 0) {
+            return;
+        }
+        final int[] indices = Geometry3D.getIntArrayFromBuffer(geometry.getIndices());
+        for (int index : indices) {
+            if (index >= vertexCount) {
+                RajLog.w("Not optimizing a mesh with indices beyond its " + vertexCount + " vertices.");
+                return;
+            }
+        }
+        final long missesBefore = countCacheMisses(indices, vertexCount, mCacheSize);
+
+        int[] optimized = optimizeVertexCache(indices, vertexCount, mCacheSize);
+        if (mReduceOverdraw) {
+            optimized = optimizeOverdraw(optimized, geometry.getVertices(), vertexCount, mCacheSize,
+                                         mOverdrawThreshold);
+        }
+        if (mOptimizeFetch && canRemapAddedBuffers(geometry, vertexCount)) {
+            final int[] remap = optimizeVertexFetch(optimized, vertexCount);
+            remapAttribute(geometry.getVertices(), 3, remap, vertexCount);
+            remapAttribute(geometry.getNormals(), 3, remap, vertexCount);
+            remapAttribute(geometry.getTextureCoords(), 2, remap, vertexCount);
+            remapAttribute(geometry.getColors(), 4, remap, vertexCount);
+            for (int key = Geometry3D.INDEX_BUFFER_KEY + 1, j = geometry.getBufferCount(); key < j; ++key) {
+                final BufferInfo info = geometry.getBufferInfo(key);
+                if (info != null && info.buffer != null) {
+                    remapAttribute((FloatBuffer) info.buffer, VertexWelder.getVertexComponents(info, vertexCount),
+                                   remap, vertexCount);
+                }
+            }
+        }
+        geometry.setIndices(optimized, true);
+
+        statistics.add(indices.length / 3, vertexCount, missesBefore,
+                       countCacheMisses(optimized, vertexCount, mCacheSize));
+    }
+
+    /**
+     * Checks that the buffers added to the geometry, such as the bone indices and weights of skinned meshes, hold
+     * float values for every vertex and can be renumbered with the others.
+     */
+    private static boolean canRemapAddedBuffers(Geometry3D geometry, int vertexCount) {
+        for (int key = Geometry3D.INDEX_BUFFER_KEY + 1, j = geometry.getBufferCount(); key < j; ++key) {
+            final BufferInfo info = geometry.getBufferInfo(key);
+            if (info != null && info.buffer != null && VertexWelder.getVertexComponents(info, vertexCount) == 0) {
+                RajLog.w("Keeping the vertex order of a mesh with an added buffer which does not hold floats per "
+                         + "vertex.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void remapAttribute(@Nullable FloatBuffer buffer, int components, int[] remap, int vertexCount) {
+        if (buffer == null) {
+            return;
+        }
+        final int count = Math.min(vertexCount, buffer.limit() / components);
+        final float[] source = new float[count * components];
+        buffer.position(0);
+        buffer.get(source);
+        for (int i = 0; i < count; ++i) {
+            final int target = remap[i] * components;
+            if (target + components > source.length) {
+                // Attribute streams shorter than the vertex count keep their unmapped tail
+                continue;
+            }
+            for (int c = 0; c < components; ++c) {
+                buffer.put(target + c, source[i * components + c]);
+            }
+        }
+        buffer.position(0);
+    }
+
+    /**
+     * Counts the vertices a FIFO post transform cache of the given size has to shade for the indices.
+     *
+     * @param indices     {@code int[]} Triangle list indices.
+     * @param vertexCount {@code int} Number of vertices referenced.
+     * @param cacheSize   {@code int} Number of cache entries.
+     *
+     * @return {@code long} The number of cache misses.
+     */
+    public static long countCacheMisses(@NonNull int[] indices, int vertexCount, int cacheSize) {
+        // A vertex is cached while fewer than cacheSize others were inserted after it
+        final int[] timestamps = new int[vertexCount];
+        int time = cacheSize + 1;
+        long misses = 0;
+        for (int index : indices) {
+            if (time - timestamps[index] > cacheSize) {
+                timestamps[index] = time++;
+                ++misses;
+            }
+        }
+        return misses;
+    }
+
+    /**
+     * Reorders triangles for the post transform vertex cache using Tipsify. Runs in time linear in the number of
+     * indices.
+     *
+     * @param indices     {@code int[]} Triangle list indices, left unchanged.
+     * @param vertexCount {@code int} Number of vertices referenced.
+     * @param cacheSize   {@code int} Number of cache entries to optimize for.
+     *
+     * @return {@code int[]} The reordered indices.
+     */
+    @NonNull
+    public static int[] optimizeVertexCache(@NonNull int[] indices, int vertexCount, int cacheSize) {
+        final int triangleCount = indices.length / 3;
+        final int[] result = new int[triangleCount * 3];
+        if (triangleCount == 0) {
+            return result;
+        }
+
+        // Triangles using each vertex, stored as ranges of one array
+        final int[] live = new int[vertexCount];
+        for (int i = 0, j = triangleCount * 3; i < j; ++i) {
+            ++live[indices[i]];
+        }
+        final int[] offsets = new int[vertexCount + 1];
+        int maxValence = 0;
+        for (int v = 0; v < vertexCount; ++v) {
+            offsets[v + 1] = offsets[v] + live[v];
+            maxValence = Math.max(maxValence, live[v]);
+        }
+        final int[] adjacency = new int[triangleCount * 3];
+        final int[] fill = Arrays.copyOf(offsets, vertexCount);
+        for (int t = 0; t < triangleCount; ++t) {
+            for (int k = 0; k < 3; ++k) {
+                final int v = indices[t * 3 + k];
+                adjacency[fill[v]++] = t;
+            }
+        }
+
+        final int[] timestamps = new int[vertexCount];
+        final boolean[] emitted = new boolean[triangleCount];
+        final int[] deadEnd = new int[triangleCount * 3];
+        final int[] candidates = new int[maxValence * 3];
+        int deadEndSize = 0;
+        int time = cacheSize + 1;
+        int cursor = 0;
+        int written = 0;
+        int fanning = indices[0];
+
+        while (fanning >= 0) {
+            int candidateCount = 0;
+            for (int a = offsets[fanning], end = offsets[fanning + 1]; a < end; ++a) {
+                final int t = adjacency[a];
+                if (emitted[t]) {
+                    continue;
+                }
+                emitted[t] = true;
+                for (int k = 0; k < 3; ++k) {
+                    final int v = indices[t * 3 + k];
+                    result[written++] = v;
+                    deadEnd[deadEndSize++] = v;
+                    candidates[candidateCount++] = v;
+                    --live[v];
+                    if (time - timestamps[v] > cacheSize) {
+                        timestamps[v] = time++;
+                    }
+                }
+            }
+
+            // Prefer the oldest candidate which will still be cached after its remaining triangles are emitted
+            int next = -1;
+            int bestPriority = -1;
+            for (int c = 0; c < candidateCount; ++c) {
+                final int v = candidates[c];
+                if (live[v] > 0) {
+                    int priority = 0;
+                    if (time - timestamps[v] + 2 * live[v] <= cacheSize) {
+                        priority = time - timestamps[v];
+                    }
+                    if (priority > bestPriority) {
+                        bestPriority = priority;
+                        next = v;
+                    }
+                }
+            }
+            if (next < 0) {
+                // Dead end, fall back to recently used vertices and then to the input order
+                while (deadEndSize > 0 && next < 0) {
+                    final int v = deadEnd[--deadEndSize];
+                    if (live[v] > 0) {
+                        next = v;
+                    }
+                }
+                while (next < 0 && cursor < vertexCount) {
+                    if (live[cursor] > 0) {
+                        next = cursor;
+                    }
+                    ++cursor;
+                }
+            }
+            fanning = next;
+        }
+        return result;
+    }
+
+    /**
+     * Splits cache optimized indices into clusters and sorts the clusters front to back as seen from outside the
+     * mesh, which reduces overdraw from any direction. A run of triangles starting on a cache flush is split further
+     * wherever the cache efficiency of the part so far comes within {@code threshold} of the whole run.
+     *
+     * @param indices     {@code int[]} Triangle list indices, typically from {@link #optimizeVertexCache}.
+     * @param positions   {@link FloatBuffer} Vertex positions, 3 per vertex.
+     * @param vertexCount {@code int} Number of vertices referenced.
+     * @param cacheSize   {@code int} Number of cache entries.
+     * @param threshold   {@code float} Allowed cache efficiency loss, 1 or more.
+     *
+     * @return {@code int[]} The reordered indices.
+     */
+    @NonNull
+    public static int[] optimizeOverdraw(@NonNull int[] indices, @NonNull FloatBuffer positions, int vertexCount,
+                                         int cacheSize, float threshold) {
+        final int triangleCount = indices.length / 3;
+        if (triangleCount < 2) {
+            return Arrays.copyOf(indices, indices.length);
+        }
+
+        // Runs start where the cache had to be refilled completely
+        final int[] timestamps = new int[vertexCount];
+        final int[] misses = new int[triangleCount];
+        int time = cacheSize + 1;
+        final int[] hardBoundaries = new int[triangleCount + 1];
+        int hardCount = 0;
+        for (int t = 0; t < triangleCount; ++t) {
+            for (int k = 0; k < 3; ++k) {
+                final int v = indices[t * 3 + k];
+                if (time - timestamps[v] > cacheSize) {
+                    timestamps[v] = time++;
+                    ++misses[t];
+                }
+            }
+            if (t == 0 || misses[t] == 3) {
+                hardBoundaries[hardCount++] = t;
+            }
+        }
+        hardBoundaries[hardCount] = triangleCount;
+
+        // Split runs further, simulating each cluster with a cold cache as it may be drawn after any other
+        final int[] boundaries = new int[triangleCount + 1];
+        int clusterCount = 0;
+        Arrays.fill(timestamps, 0);
+        time = cacheSize + 1;
+        for (int h = 0; h < hardCount; ++h) {
+            final int start = hardBoundaries[h];
+            final int end = hardBoundaries[h + 1];
+            int runMisses = 0;
+            for (int t = start; t < end; ++t) {
+                runMisses += misses[t];
+            }
+            final float limit = threshold * runMisses / (end - start);
+
+            boundaries[clusterCount++] = start;
+            time += cacheSize + 1;
+            int clusterMisses = 0;
+            int clusterTriangles = 0;
+            for (int t = start; t < end; ++t) {
+                for (int k = 0; k < 3; ++k) {
+                    final int v = indices[t * 3 + k];
+                    if (time - timestamps[v] > cacheSize) {
+                        timestamps[v] = time++;
+                        ++clusterMisses;
+                    }
+                }
+                ++clusterTriangles;
+                if (t + 1 < end && (float) clusterMisses / clusterTriangles <= limit) {
+                    boundaries[clusterCount++] = t + 1;
+                    time += cacheSize + 1;
+                    clusterMisses = 0;
+                    clusterTriangles = 0;
+                }
+            }
+        }
+        boundaries[clusterCount] = triangleCount;
+
+        // Area weighted centroid and normal of every cluster and of the whole mesh
+        final double[] clusterData = new double[clusterCount * 6];
+        final double[] clusterArea = new double[clusterCount];
+        double meshX = 0, meshY = 0, meshZ = 0, meshArea = 0;
+        for (int c = 0; c < clusterCount; ++c) {
+            for (int t = boundaries[c]; t < boundaries[c + 1]; ++t) {
+                final int a = indices[t * 3] * 3;
+                final int b = indices[t * 3 + 1] * 3;
+                final int d = indices[t * 3 + 2] * 3;
+                final double ax = positions.get(a), ay = positions.get(a + 1), az = positions.get(a + 2);
+                final double e1x = positions.get(b) - ax, e1y = positions.get(b + 1) - ay,
+                        e1z = positions.get(b + 2) - az;
+                final double e2x = positions.get(d) - ax, e2y = positions.get(d + 1) - ay,
+                        e2z = positions.get(d + 2) - az;
+                final double nx = e1y * e2z - e1z * e2y;
+                final double ny = e1z * e2x - e1x * e2z;
+                final double nz = e1x * e2y - e1y * e2x;
+                final double area = Math.sqrt(nx * nx + ny * ny + nz * nz);
+                final double cx = (ax * 3 + e1x + e2x) / 3;
+                final double cy = (ay * 3 + e1y + e2y) / 3;
+                final double cz = (az * 3 + e1z + e2z) / 3;
+                clusterData[c * 6] += cx * area;
+                clusterData[c * 6 + 1] += cy * area;
+                clusterData[c * 6 + 2] += cz * area;
+                clusterData[c * 6 + 3] += nx;
+                clusterData[c * 6 + 4] += ny;
+                clusterData[c * 6 + 5] += nz;
+                clusterArea[c] += area;
+            }
+            meshX += clusterData[c * 6];
+            meshY += clusterData[c * 6 + 1];
+            meshZ += clusterData[c * 6 + 2];
+            meshArea += clusterArea[c];
+        }
+        if (meshArea > 0) {
+            meshX /= meshArea;
+            meshY /= meshArea;
+            meshZ /= meshArea;
+        }
+
+        final double[] keys = new double[clusterCount];
+        final Integer[] order = new Integer[clusterCount];
+        for (int c = 0; c < clusterCount; ++c) {
+            order[c] = c;
+            final double area = clusterArea[c];
+            final double nx = clusterData[c * 6 + 3];
+            final double ny = clusterData[c * 6 + 4];
+            final double nz = clusterData[c * 6 + 5];
+            final double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (area > 0 && length > 0) {
+                keys[c] = ((clusterData[c * 6] / area - meshX) * nx
+                           + (clusterData[c * 6 + 1] / area - meshY) * ny
+                           + (clusterData[c * 6 + 2] / area - meshZ) * nz) / length;
+            }
+        }
+        // Stable, so clusters which tie keep their cache friendly order
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return Double.compare(keys[rhs], keys[lhs]);
+            }
+        });
+
+        final int[] result = new int[triangleCount * 3];
+        int written = 0;
+        for (int c : order) {
+            final int from = boundaries[c] * 3;
+            final int length = boundaries[c + 1] * 3 - from;
+            System.arraycopy(indices, from, result, written, length);
+            written += length;
+        }
+        return result;
+    }
+
+    /**
+     * Renumbers vertices in the order the indices first reference them, rewriting the indices in place. Vertices
+     * which are not referenced move to the end.
+     *
+     * @param indices     {@code int[]} Indices to rewrite.
+     * @param vertexCount {@code int} Number of vertices.
+     *
+     * @return {@code int[]} The new position of every vertex.
+     */
+    @NonNull
+    public static int[] optimizeVertexFetch(@NonNull int[] indices, int vertexCount) {
+        final int[] remap = new int[vertexCount];
+        Arrays.fill(remap, -1);
+        int next = 0;
+        for (int i = 0, j = indices.length; i < j; ++i) {
+            final int v = indices[i];
+            if (remap[v] < 0) {
+                remap[v] = next++;
+            }
+            indices[i] = remap[v];
+        }
+        for (int v = 0; v < vertexCount; ++v) {
+            if (remap[v] < 0) {
+                remap[v] = next++;
+            }
+        }
+        return remap;
+    }
+}
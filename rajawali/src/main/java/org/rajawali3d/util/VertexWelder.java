@@ -0,0 +1,286 @@
+package org.rajawali3d.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.rajawali3d.BufferInfo;
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.Object3D;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Merges vertices whose position, normal, texture coordinate and color are identical and rewrites the indices to
+ * share them. Formats such as OBJ and STL are loaded with one vertex per face corner, welding them restores the
+ * sharing the index buffer was meant to provide and is a prerequisite for {@link MeshOptimizer} to find any reuse.
+ *
+ * Vertices are looked up in an open addressing hash table, so welding runs in time linear in the number of vertices.
+ * With an epsilon every component is snapped to a grid of that size before hashing. Values closer than the epsilon
+ * which straddle a grid line are not merged, which in practice only leaves the odd seam unwelded. The merged vertex
+ * keeps the exact values of its first occurrence.
+ *
+ * Buffers added with {@link Geometry3D#addBuffer}, such as the bone indices and weights of skinned meshes, are welded
+ * along when they hold a float value or more per vertex. Their values are compared exactly, so vertices bound to
+ * different joints are never merged. Geometries with other added buffers are left alone.
+ *
+ * No GL context is needed, welding has to happen before the buffers of the geometry are created.
+ */
+public class VertexWelder {
+
+    private float mPositionEpsilon;
+    private float mAttributeEpsilon;
+
+    /**
+     * @param epsilon Distance below which position components are considered equal, 0 to only merge exact copies.
+     */
+    public VertexWelder setPositionEpsilon(float epsilon) {
+        if (epsilon < 0) {
+            throw new IllegalArgumentException("The epsilon can not be negative.");
+        }
+        mPositionEpsilon = epsilon;
+        return this;
+    }
+
+    public float getPositionEpsilon() {
+        return mPositionEpsilon;
+    }
+
+    /**
+     * @param epsilon Difference below which normal, texture coordinate and color components are considered equal, 0
+     *                to only merge exact copies.
+     */
+    public VertexWelder setAttributeEpsilon(float epsilon) {
+        if (epsilon < 0) {
+            throw new IllegalArgumentException("The epsilon can not be negative.");
+        }
+        mAttributeEpsilon = epsilon;
+        return this;
+    }
+
+    public float getAttributeEpsilon() {
+        return mAttributeEpsilon;
+    }
+
+    /**
+     * Welds the geometry of every object in the hierarchy.
+     *
+     * @param object {@link Object3D} root of the hierarchy.
+     *
+     * @return {@code int} The number of vertices removed.
+     */
+    public int weld(@NonNull Object3D object) {
+        int removed = 0;
+        if (!object.isContainer()) {
+            removed += weld(object.getGeometry());
+        }
+        for (int i = 0, j = object.getNumChildren(); i < j; ++i) {
+            removed += weld(object.getChildAt(i));
+        }
+        return removed;
+    }
+
+    /**
+     * Welds the vertices of the geometry, replacing its vertex and index buffers with compact ones.
+     *
+     * @param geometry {@link Geometry3D} to weld.
+     *
+     * @return {@code int} The number of vertices removed.
+     */
+    public int weld(@NonNull Geometry3D geometry) {
+        final int vertexCount = geometry.getNumVertices();
+        if (vertexCount < 2 || geometry.getIndices() == null || geometry.getNumIndices() == 0) {
+            return 0;
+        }
+        final float[] vertices = readAttribute(geometry.getVertices(), 3, vertexCount);
+        final float[] normals = geometry.hasNormals() ? readAttribute(geometry.getNormals(), 3, vertexCount) : null;
+        final float[] textureCoords = readAttribute(geometry.getTextureCoords(), 2, vertexCount);
+        final float[] colors = readAttribute(geometry.getColors(), 4, vertexCount);
+        if (vertices == null) {
+            return 0;
+        }
+        final int extraCount = geometry.getBufferCount() - Geometry3D.INDEX_BUFFER_KEY - 1;
+        final float[][] extras = new float[extraCount][];
+        final int[] extraComponents = new int[extraCount];
+        for (int i = 0; i < extraCount; ++i) {
+            final BufferInfo info = geometry.getBufferInfo(Geometry3D.INDEX_BUFFER_KEY + 1 + i);
+            if (info == null || info.buffer == null) {
+                continue;
+            }
+            extraComponents[i] = getVertexComponents(info, vertexCount);
+            if (extraComponents[i] == 0) {
+                RajLog.w("Not welding a mesh with an added buffer which does not hold floats per vertex.");
+                return 0;
+            }
+            extras[i] = readAttribute((FloatBuffer) info.buffer, extraComponents[i], vertexCount);
+        }
+
+        final int[] remap = new int[vertexCount];
+        final int uniqueCount = buildRemap(remap, vertexCount, vertices, normals, textureCoords, colors, extras,
+                                           extraComponents);
+        if (uniqueCount == vertexCount) {
+            return 0;
+        }
+
+        final int[] indices = Geometry3D.getIntArrayFromBuffer(geometry.getIndices());
+        for (int i = 0, j = indices.length; i < j; ++i) {
+            if (indices[i] < vertexCount) {
+                indices[i] = remap[indices[i]];
+            }
+        }
+        geometry.setVertices(compact(vertices, 3, remap, uniqueCount), true);
+        if (normals != null) {
+            geometry.setNormals(compact(normals, 3, remap, uniqueCount), true);
+        }
+        if (textureCoords != null) {
+            geometry.setTextureCoords(compact(textureCoords, 2, remap, uniqueCount), true);
+        }
+        if (colors != null) {
+            geometry.setColors(compact(colors, 4, remap, uniqueCount), true);
+        }
+        for (int i = 0; i < extraCount; ++i) {
+            if (extras[i] != null) {
+                // Written in place, the objects which added the buffers keep references to them
+                final FloatBuffer buffer = (FloatBuffer) geometry.getBufferInfo(Geometry3D.INDEX_BUFFER_KEY + 1 + i)
+                        .buffer;
+                buffer.position(0);
+                buffer.put(compact(extras[i], extraComponents[i], remap, uniqueCount));
+                buffer.position(0);
+            }
+        }
+        geometry.setIndices(indices, true);
+        return vertexCount - uniqueCount;
+    }
+
+    /**
+     * Determines how many float values per vertex an added buffer holds.
+     *
+     * @return {@code int} The number of components or 0 if the buffer does not hold floats for every vertex.
+     */
+    static int getVertexComponents(@NonNull BufferInfo info, int vertexCount) {
+        if (!(info.buffer instanceof FloatBuffer) || vertexCount == 0) {
+            return 0;
+        }
+        final int limit = info.buffer.limit();
+        return limit >= vertexCount && limit % vertexCount == 0 ? limit / vertexCount : 0;
+    }
+
+    /**
+     * Assigns every vertex the index of the first identical vertex, counted in order of first occurrence. Values of
+     * the added buffers are compared exactly.
+     *
+     * @return {@code int} The number of unique vertices.
+     */
+    int buildRemap(@NonNull int[] remap, int vertexCount, @NonNull float[] vertices, @Nullable float[] normals,
+                   @Nullable float[] textureCoords, @Nullable float[] colors, @NonNull float[][] extras,
+                   @NonNull int[] extraComponents) {
+        // Snapped components of every vertex, compared instead of the floats themselves
+        int stride = 3 + (normals != null ? 3 : 0) + (textureCoords != null ? 2 : 0) + (colors != null ? 4 : 0);
+        for (int i = 0; i < extras.length; ++i) {
+            if (extras[i] != null) {
+                stride += extraComponents[i];
+            }
+        }
+        final long[] keys = new long[vertexCount * stride];
+        int offset = 0;
+        for (int v = 0; v < vertexCount; ++v) {
+            offset = snap(vertices, v * 3, 3, mPositionEpsilon, keys, offset);
+            if (normals != null) {
+                offset = snap(normals, v * 3, 3, mAttributeEpsilon, keys, offset);
+            }
+            if (textureCoords != null) {
+                offset = snap(textureCoords, v * 2, 2, mAttributeEpsilon, keys, offset);
+            }
+            if (colors != null) {
+                offset = snap(colors, v * 4, 4, mAttributeEpsilon, keys, offset);
+            }
+            for (int i = 0; i < extras.length; ++i) {
+                if (extras[i] != null) {
+                    offset = snap(extras[i], v * extraComponents[i], extraComponents[i], 0, keys, offset);
+                }
+            }
+        }
+
+        // Open addressing with linear probing, kept at most half full
+        final int capacity = Integer.highestOneBit(Math.max(vertexCount, 2) * 2 - 1) << 1;
+        final int mask = capacity - 1;
+        final int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+        int uniqueCount = 0;
+        for (int v = 0; v < vertexCount; ++v) {
+            final int start = v * stride;
+            int hash = 0;
+            for (int i = start, j = start + stride; i < j; ++i) {
+                hash = hash * 31 + (int) (keys[i] ^ (keys[i] >>> 32));
+            }
+            // Spread the bits as the low ones are used for the slot
+            hash ^= hash >>> 16;
+            hash *= 0x85EBCA6B;
+            hash ^= hash >>> 13;
+            int slot = hash & mask;
+            while (true) {
+                final int existing = table[slot];
+                if (existing < 0) {
+                    table[slot] = v;
+                    remap[v] = uniqueCount++;
+                    break;
+                }
+                if (equalKeys(keys, existing * stride, start, stride)) {
+                    remap[v] = remap[existing];
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return uniqueCount;
+    }
+
+    private static int snap(float[] source, int from, int components, float epsilon, long[] keys, int offset) {
+        for (int c = 0; c < components; ++c) {
+            final float value = source[from + c];
+            if (epsilon > 0) {
+                // Grid cells are counted in a long and computed in double, CAD sized coordinates over a fine epsilon
+                // overflow an int and lose whole cells to float rounding
+                keys[offset++] = (long) Math.floor((double) value / epsilon + 0.5);
+            } else {
+                // Adding 0 turns -0 into 0, so both hash alike
+                keys[offset++] = Float.floatToIntBits(value + 0.0f);
+            }
+        }
+        return offset;
+    }
+
+    private static boolean equalKeys(long[] keys, int a, int b, int length) {
+        for (int i = 0; i < length; ++i) {
+            if (keys[a + i] != keys[b + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private static float[] readAttribute(@Nullable FloatBuffer buffer, int components, int vertexCount) {
+        if (buffer == null || buffer.limit() < vertexCount * components) {
+            return null;
+        }
+        final float[] values = new float[vertexCount * components];
+        buffer.position(0);
+        buffer.get(values);
+        buffer.position(0);
+        return values;
+    }
+
+    private static float[] compact(float[] source, int components, int[] remap, int uniqueCount) {
+        final float[] result = new float[uniqueCount * components];
+        int next = 0;
+        for (int v = 0, j = remap.length; v < j && next < uniqueCount; ++v) {
+            // Unique vertices are numbered in order of first occurrence, later duplicates are skipped
+            if (remap[v] == next) {
+                System.arraycopy(source, v * components, result, next * components, components);
+                ++next;
+            }
+        }
+        return result;
+    }
+}
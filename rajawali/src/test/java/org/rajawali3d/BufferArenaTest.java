@@ -0,0 +1,112 @@
+package org.rajawali3d;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class BufferArenaTest {
+
+    /**
+     * Hands out fake handles instead of creating GL buffers.
+     */
+    private static class TestArena extends BufferArena {
+
+        final Set<Integer> mLive = new HashSet<>();
+        int mNextHandle = 1;
+
+        TestArena(int pageSize) {
+            super(pageSize, GLES20.GL_STATIC_DRAW);
+        }
+
+        @Override
+        protected int createPageBuffer(int target, int size) {
+            mLive.add(mNextHandle);
+            return mNextHandle++;
+        }
+
+        @Override
+        protected void deletePageBuffer(int handle) {
+            mLive.remove(handle);
+        }
+    }
+
+    @Test
+    public void testSharesPages() {
+        final TestArena arena = new TestArena(1024);
+        final BufferArena.Allocation a = arena.allocate(GLES20.GL_ARRAY_BUFFER, 100);
+        final BufferArena.Allocation b = arena.allocate(GLES20.GL_ARRAY_BUFFER, 102);
+        final BufferArena.Allocation c = arena.allocate(GLES20.GL_ARRAY_BUFFER, 8);
+        assertEquals(a.getHandle(), b.getHandle());
+        assertEquals(0, a.getOffset());
+        assertEquals(100, b.getOffset());
+        // Offsets stay 4 byte aligned
+        assertEquals(204, c.getOffset());
+        assertEquals(1, arena.getPageCount());
+        assertEquals(210, arena.getUsedBytes());
+    }
+
+    @Test
+    public void testSeparatesTargets() {
+        final TestArena arena = new TestArena(1024);
+        final BufferArena.Allocation vertices = arena.allocate(GLES20.GL_ARRAY_BUFFER, 100);
+        final BufferArena.Allocation indices = arena.allocate(GLES20.GL_ELEMENT_ARRAY_BUFFER, 100);
+        assertNotEquals(vertices.getHandle(), indices.getHandle());
+        assertEquals(0, indices.getOffset());
+    }
+
+    @Test
+    public void testAddsPagesWhenFull() {
+        final TestArena arena = new TestArena(256);
+        final BufferArena.Allocation a = arena.allocate(GLES20.GL_ARRAY_BUFFER, 200);
+        final BufferArena.Allocation b = arena.allocate(GLES20.GL_ARRAY_BUFFER, 200);
+        assertNotEquals(a.getHandle(), b.getHandle());
+        final BufferArena.Allocation large = arena.allocate(GLES20.GL_ARRAY_BUFFER, 1000);
+        assertEquals(3, arena.getPageCount());
+        assertEquals(256 + 256 + 1000, arena.getReservedBytes());
+        assertEquals(0, large.getOffset());
+
+        arena.free(a);
+        assertEquals(a.getHandle(), arena.allocate(GLES20.GL_ARRAY_BUFFER, 50).getHandle());
+    }
+
+    @Test
+    public void testFreeIsIdempotent() {
+        final TestArena arena = new TestArena(256);
+        final BufferArena.Allocation a = arena.allocate(GLES20.GL_ARRAY_BUFFER, 64);
+        arena.free(a);
+        arena.free(a);
+        assertEquals(0, arena.getUsedBytes());
+    }
+
+    @Test
+    public void testStartsOverAfterContextLoss() {
+        final TestArena arena = new TestArena(256);
+        final BufferArena.Allocation stale = arena.allocate(GLES20.GL_ARRAY_BUFFER, 64);
+        // The new context hands out the same handles again, which must not make the old pages look alive
+        arena.mLive.clear();
+        arena.mNextHandle = 1;
+        BufferArena.onContextCreated();
+        final BufferArena.Allocation fresh = arena.allocate(GLES20.GL_ARRAY_BUFFER, 64);
+        assertEquals(0, fresh.getOffset());
+        assertEquals(1, arena.getPageCount());
+        // Ranges of lost pages are ignored
+        arena.free(stale);
+        assertEquals(64, arena.getUsedBytes());
+    }
+
+    @Test
+    public void testDestroyDeletesPages() {
+        final TestArena arena = new TestArena(256);
+        arena.allocate(GLES20.GL_ARRAY_BUFFER, 64);
+        arena.allocate(GLES20.GL_ELEMENT_ARRAY_BUFFER, 64);
+        arena.destroy();
+        assertEquals(0, arena.mLive.size());
+        assertEquals(0, arena.getPageCount());
+    }
+}
@@ -4,10 +4,26 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import android.opengl.GLES20;
+
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.io.File;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author Jared Woolston (jwoolston@keywcorp.com)
@@ -61,4 +77,425 @@ public class Geometry3Dtest {
         assertTrue(geometry.hasBoundingSphere());
     }
 
+    @Test
+    public void testBuildInterleavedData() {
+        geometry.setData(new float[]{ 0, 1, 2, 3, 4, 5 }, new float[]{ 0, 0, 1, 0, 1, 0 },
+                         new float[]{ 0.25f, 0.5f, 0.75f, 1 }, new float[]{ 1, 0, 0, 1, 0, 1, 0, 1 },
+                         new int[]{ 0, 1, 0 }, false);
+        geometry.setVertexFormat(VertexFormat.forGeometry(geometry, VertexFormat.Attribute.COLOR));
+
+        final VertexFormat format = geometry.getVertexFormat();
+        assertEquals(32, format.getStride());
+        assertTrue(geometry.isInterleaved(geometry.getVertexBufferInfo()));
+        assertTrue(geometry.isInterleaved(geometry.getNormalBufferInfo()));
+        assertTrue(geometry.isInterleaved(geometry.getTexCoordBufferInfo()));
+        assertFalse(geometry.isInterleaved(geometry.getColorBufferInfo()));
+
+        final ByteBuffer data = geometry.buildInterleavedData();
+        assertEquals(64, data.capacity());
+        final float[] expected = new float[]{
+            0, 1, 2, 0, 0, 1, 0.25f, 0.5f,
+            3, 4, 5, 0, 1, 0, 0.75f, 1
+        };
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(expected[i], data.getFloat(i * 4), 0);
+        }
+
+        // CPU side streams are still available unchanged
+        assertEquals(6, geometry.getVertices().capacity());
+        assertEquals(4f, geometry.getVertices().get(4), 0);
+    }
+
+    @Test
+    public void testClearVertexFormat() {
+        geometry.setData(new float[]{ 0, 1, 2 }, new float[]{ 0, 0, 1 }, null, null, new int[]{ 0 }, false);
+        geometry.setVertexFormat(VertexFormat.forGeometry(geometry));
+        assertTrue(geometry.isInterleaved(geometry.getVertexBufferInfo()));
+        geometry.setVertexFormat(null);
+        assertNull(geometry.getVertexFormat());
+        assertFalse(geometry.isInterleaved(geometry.getVertexBufferInfo()));
+        assertEquals(0, geometry.getVertexBufferInfo().stride);
+    }
+
+    @Test
+    public void testBuildQuantizedData() {
+        final float[] vertices = new float[]{ -2, 1, 10, 4, 3, 10, 1, -5, 10 };
+        final float[] textureCoords = new float[]{ 0, 0.5f, 1, 0.25f, 0.5f, 1 };
+        final float[] colors = new float[]{ 1, 0, 0.5f, 1, 0, 1, 0, 1, 0, 0, 1, 0 };
+        geometry.setData(vertices, new float[]{ 0, 0, 1, 0, 1, 0, -1, 0, 0 }, textureCoords, colors,
+                         new int[]{ 0, 1, 2 }, false);
+        geometry.setVertexFormat(VertexFormat.quantized(geometry));
+        final VertexFormat format = geometry.getVertexFormat();
+
+        final Matrix4 decode = geometry.getPositionDecodeMatrix();
+        assertNotNull(decode);
+        final double[] m = decode.getDoubleValues();
+        assertEquals(3, m[Matrix4.M00], 1e-9);
+        assertEquals(4, m[Matrix4.M11], 1e-9);
+        // The flat z axis keeps a unit extent
+        assertEquals(1, m[Matrix4.M22], 1e-9);
+        assertEquals(1, m[Matrix4.M03], 1e-9);
+        assertEquals(-1, m[Matrix4.M13], 1e-9);
+        assertEquals(10, m[Matrix4.M23], 1e-9);
+        assertArrayEquals(new float[]{ 0.5f, 0.375f, 0.5f, 0.625f }, geometry.getTextureCoordDecode(), 1e-6f);
+
+        final ByteBuffer data = geometry.buildInterleavedData();
+        assertEquals(3 * format.getStride(), data.capacity());
+        final Vector3 position = new Vector3();
+        for (int i = 0; i < 3; ++i) {
+            final int base = i * format.getStride();
+            final int offset = base + format.getOffset(VertexFormat.Attribute.POSITION);
+            position.setAll(data.getShort(offset) / 32767.0, data.getShort(offset + 2) / 32767.0,
+                            data.getShort(offset + 4) / 32767.0);
+            position.multiply(decode);
+            assertEquals(vertices[i * 3], position.x, 1e-3);
+            assertEquals(vertices[i * 3 + 1], position.y, 1e-3);
+            assertEquals(vertices[i * 3 + 2], position.z, 1e-3);
+
+            final float[] uv = geometry.getTextureCoordDecode();
+            final int uvOffset = base + format.getOffset(VertexFormat.Attribute.TEXTURE_COORDINATE);
+            assertEquals(textureCoords[i * 2], data.getShort(uvOffset) / 32767f * uv[0] + uv[2], 1e-4);
+            assertEquals(textureCoords[i * 2 + 1], data.getShort(uvOffset + 2) / 32767f * uv[1] + uv[3], 1e-4);
+
+            final int colorOffset = base + format.getOffset(VertexFormat.Attribute.COLOR);
+            for (int c = 0; c < 4; ++c) {
+                assertEquals(colors[i * 4 + c], (data.get(colorOffset + c) & 0xFF) / 255f, 1f / 255);
+            }
+        }
+    }
+
+    @Test
+    public void testClearQuantizedFormat() {
+        geometry.setData(new float[]{ 0, 1, 2 }, new float[]{ 0, 0, 1 }, null, null, new int[]{ 0 }, false);
+        geometry.setVertexFormat(VertexFormat.quantized(geometry));
+        geometry.setVertexFormat(null);
+        assertNull(geometry.getPositionDecodeMatrix());
+        assertEquals(GLES20.GL_FLOAT, geometry.getVertexBufferInfo().type);
+        assertFalse(geometry.getVertexBufferInfo().normalized);
+    }
+
+    @Test
+    public void testSpillAndRestore() throws Exception {
+        final float[] vertices = new float[]{ -1, 0, 2, 3, 4, 5, 1, 1, 1 };
+        final float[] colors = new float[]{ 1, 0, 0, 1, 0, 1, 0, 1, 0, 0, 1, 1 };
+        geometry.setData(vertices, new float[]{ 0, 0, 1, 0, 1, 0, 1, 0, 0 }, null, colors, new int[]{ 0, 1, 2 },
+                         false);
+        final File file = File.createTempFile("geometry", ".bin");
+        try {
+            geometry.setSpillFile(file);
+            geometry.setRetentionPolicy(Geometry3D.RetentionPolicy.SPILL);
+            geometry.releaseData();
+
+            assertTrue(geometry.isDataReleased());
+            assertNull(geometry.getVertices());
+            assertNull(geometry.getIndices());
+            assertTrue(geometry.hasVertices());
+            assertEquals(3, geometry.getNumVertices());
+            assertEquals(1, geometry.getNumTriangles());
+            // Bounds were summarized before the data went away
+            assertEquals(-1, geometry.getBoundingBox().getMin().x, 0);
+            assertEquals(5, geometry.getBoundingBox().getMax().z, 0);
+            assertTrue(geometry.hasBoundingSphere());
+            assertTrue(file.length() > 0);
+
+            geometry.restoreData();
+            assertFalse(geometry.isDataReleased());
+            final float[] restored = new float[vertices.length];
+            geometry.getVertices().get(restored);
+            assertArrayEquals(vertices, restored, 0);
+            final float[] restoredColors = new float[colors.length];
+            geometry.getColors().get(restoredColors);
+            assertArrayEquals(colors, restoredColors, 0);
+            assertTrue(geometry.getIndices() instanceof ShortBuffer);
+            assertArrayEquals(new int[]{ 0, 1, 2 }, Geometry3D.getIntArrayFromBuffer(geometry.getIndices()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDropAndRestore() {
+        final float[] vertices = new float[]{ 0, 0, 0, 1, 0, 0, 0, 1, 0 };
+        geometry.setData(vertices, null, null, null, new int[]{ 0, 1, 2 }, false);
+        final int[] restores = new int[1];
+        geometry.setRetentionPolicy(Geometry3D.RetentionPolicy.DROP, new Geometry3D.DataRestorer() {
+            @Override
+            public void restore(Geometry3D target) {
+                ++restores[0];
+                target.setVertices(vertices, true);
+                target.setIndices(new int[]{ 0, 1, 2 }, true);
+            }
+        });
+        geometry.releaseData();
+        assertNull(geometry.getVertices());
+        assertEquals(0, restores[0]);
+        geometry.restoreData();
+        assertEquals(1, restores[0]);
+        assertEquals(9, geometry.getVertices().capacity());
+
+        // Keeping the data brings it back
+        geometry.releaseData();
+        geometry.setRetentionPolicy(Geometry3D.RetentionPolicy.KEEP);
+        assertEquals(2, restores[0]);
+        geometry.releaseData();
+        assertFalse(geometry.isDataReleased());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDropRequiresRestorer() {
+        geometry.setRetentionPolicy(Geometry3D.RetentionPolicy.DROP);
+    }
+
+    @Test
+    public void testStreamingChangesAreDeferred() {
+        geometry.setData(new float[]{ 0, 0, 0, 1, 1, 1, 2, 2, 2 }, null, null, null, new int[]{ 0, 1, 2 }, false);
+        final BufferInfo info = geometry.getVertexBufferInfo();
+        geometry.setStreaming(info, true);
+        assertTrue(geometry.isStreaming(info));
+        assertEquals(GLES20.GL_STREAM_DRAW, info.usage);
+
+        final FloatBuffer update = FloatBuffer.wrap(new float[]{ 5, 6, 7 });
+        geometry.changeBufferData(info, update, 3);
+        geometry.markDirty(info, 6, 2);
+        assertEquals(5, geometry.getVertices().get(3), 0);
+        assertEquals(7, geometry.getVertices().get(5), 0);
+        assertEquals(1, info.dirtyRanges.size());
+        assertEquals(3, info.dirtyRanges.getStart(0));
+        assertEquals(8, info.dirtyRanges.getEnd(0));
+        assertEquals(0, geometry.getUploadedBytes());
+
+        // Streaming buffers keep their data when the rest is released
+        geometry.setRetentionPolicy(Geometry3D.RetentionPolicy.DROP, new Geometry3D.DataRestorer() {
+            @Override
+            public void restore(Geometry3D target) {
+            }
+        });
+        geometry.releaseData();
+        assertNotNull(geometry.getVertices());
+        assertNull(geometry.getIndices());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMarkDirtyRequiresStreaming() {
+        geometry.setData(new float[]{ 0, 0, 0 }, null, null, null, new int[]{ 0 }, false);
+        geometry.markDirty(geometry.getVertexBufferInfo(), 0, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVertexFormatRequiresData() {
+        geometry.setData(new float[]{ 0, 1, 2 }, null, null, null, new int[]{ 0 }, false);
+        geometry.setVertexFormat(new VertexFormat(VertexFormat.Attribute.POSITION, VertexFormat.Attribute.COLOR));
+    }
+
+    @Test
+    public void testSmallMeshUsesShortIndices() {
+        geometry.setData(new float[]{ 0, 0, 0, 1, 0, 0, 0, 1, 0 }, null, null, null, new int[]{ 0, 1, 2 }, false);
+        assertTrue(geometry.getIndices() instanceof ShortBuffer);
+        assertEquals(Geometry3D.BufferType.SHORT_BUFFER, geometry.getIndexBufferInfo().bufferType);
+        assertEquals(GLES20.GL_UNSIGNED_SHORT, geometry.getIndexType());
+        assertFalse(geometry.hasIntIndices());
+        assertEquals(3, geometry.getNumIndices());
+    }
+
+    @Test
+    public void testLargeIndicesUseIntBuffer() {
+        geometry.setIndices(new int[]{ 0, 65535, 65536 });
+        assertTrue(geometry.getIndices() instanceof IntBuffer);
+        assertEquals(GLES20.GL_UNSIGNED_INT, geometry.getIndexType());
+        assertTrue(geometry.hasIntIndices());
+    }
+
+    @Test
+    public void testShortIndicesAreUnsigned() {
+        geometry.setIndices(new int[]{ 0, 40000, 65535 });
+        assertTrue(geometry.getIndices() instanceof ShortBuffer);
+        assertArrayEquals(new int[]{ 0, 40000, 65535 }, Geometry3D.getIntArrayFromBuffer(geometry.getIndices()));
+    }
+
+    @Test
+    public void testShortIndicesWidenWhenNeeded() {
+        geometry.setIndices(new int[]{ 0, 1, 2, 3 });
+        geometry.getIndices().position(2);
+        geometry.setIndices(new int[]{ 70000, 70001 });
+        assertTrue(geometry.getIndices() instanceof IntBuffer);
+        assertArrayEquals(new int[]{ 0, 1, 70000, 70001 }, Geometry3D.getIntArrayFromBuffer(geometry.getIndices()));
+    }
+
+    @Test
+    public void testSplitKeepsPrimitives() {
+        // A strip of 8 triangles over 10 vertices, split into pieces of at most 4 vertices
+        final int columns = 5;
+        final float[] vertices = new float[columns * 2 * 3];
+        final float[] normals = new float[vertices.length];
+        for (int i = 0; i < columns * 2; ++i) {
+            vertices[i * 3] = i / 2;
+            vertices[i * 3 + 1] = i % 2;
+            normals[i * 3 + 2] = 1;
+        }
+        final int[] indices = new int[(columns - 1) * 6];
+        for (int i = 0; i < columns - 1; ++i) {
+            final int a = i * 2;
+            indices[i * 6] = a;
+            indices[i * 6 + 1] = a + 2;
+            indices[i * 6 + 2] = a + 1;
+            indices[i * 6 + 3] = a + 1;
+            indices[i * 6 + 4] = a + 2;
+            indices[i * 6 + 5] = a + 3;
+        }
+        geometry.setData(vertices, normals, null, null, indices, false);
+
+        final List<Geometry3D> pieces = geometry.split(3, 4);
+        assertEquals(4, pieces.size());
+        int triangles = 0;
+        for (Geometry3D piece : pieces) {
+            assertTrue(piece.getNumVertices() <= 4);
+            assertTrue(piece.hasNormals());
+            final int[] pieceIndices = Geometry3D.getIntArrayFromBuffer(piece.getIndices());
+            final float[] pieceVertices = Geometry3D.getFloatArrayFromBuffer(piece.getVertices());
+            // Every triangle must reference the same positions as the one it came from
+            for (int i = 0; i < pieceIndices.length; ++i) {
+                final int original = indices[triangles * 3 + i];
+                for (int k = 0; k < 3; ++k) {
+                    assertEquals(vertices[original * 3 + k], pieceVertices[pieceIndices[i] * 3 + k], 0);
+                }
+            }
+            triangles += pieceIndices.length / 3;
+        }
+        assertEquals(indices.length / 3, triangles);
+    }
+
+    @Test
+    public void testSplitLargeMeshFitsShortIndices() {
+        // Points spanning more vertices than 16 bit indices can address
+        final int count = Geometry3D.MAX_SHORT_INDEX_VERTICES + 100;
+        final float[] vertices = new float[count * 3];
+        final int[] indices = new int[count];
+        for (int i = 0; i < count; ++i) {
+            vertices[i * 3] = i;
+            indices[i] = count - 1 - i;
+        }
+        geometry.setData(vertices, null, null, null, indices, false);
+        assertTrue(geometry.hasIntIndices());
+
+        final List<Geometry3D> pieces = geometry.split(1, Geometry3D.MAX_SHORT_INDEX_VERTICES);
+        assertEquals(2, pieces.size());
+        assertEquals(Geometry3D.MAX_SHORT_INDEX_VERTICES, pieces.get(0).getNumVertices());
+        assertEquals(100, pieces.get(1).getNumVertices());
+        for (Geometry3D piece : pieces) {
+            assertEquals(GLES20.GL_UNSIGNED_SHORT, piece.getIndexType());
+        }
+        assertEquals(count - 1, pieces.get(0).getVertices().get(0), 0);
+        assertEquals(99, pieces.get(1).getVertices().get(0), 0);
+    }
+
+    @Test
+    public void testChangeSpilledData() throws Exception {
+        final UploadRecorder recorder = new UploadRecorder();
+        recorder.setData(new float[]{ 0, 0, 0, 1, 0, 0, 0, 1, 0 }, null, null, null, new int[]{ 0, 1, 2 }, false);
+        final File file = File.createTempFile("geometry", ".bin");
+        try {
+            recorder.setSpillFile(file);
+            recorder.setRetentionPolicy(Geometry3D.RetentionPolicy.SPILL);
+            recorder.releaseData();
+
+            // Set when the buffer is created
+            recorder.getVertexBufferInfo().byteSize = Geometry3D.FLOAT_SIZE_BYTES;
+            recorder.changeBufferData(recorder.getVertexBufferInfo(), FloatBuffer.wrap(new float[]{ 7, 8, 9 }), 3, 3);
+            assertEquals(1, recorder.mUploads.size());
+            assertEquals(12, (int) recorder.mUploads.get(0));
+            // Spilled again including the change
+            assertTrue(recorder.isDataReleased());
+            recorder.restoreData();
+            final float[] restored = new float[9];
+            recorder.getVertices().get(restored);
+            assertArrayEquals(new float[]{ 0, 0, 0, 7, 8, 9, 0, 1, 0 }, restored, 0);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testChangeDroppedData() {
+        final UploadRecorder recorder = new UploadRecorder();
+        final float[] vertices = new float[]{ 0, 0, 0, 1, 0, 0, 0, 1, 0 };
+        recorder.setData(vertices, null, null, null, new int[]{ 0, 1, 2 }, false);
+        recorder.setRetentionPolicy(Geometry3D.RetentionPolicy.DROP, new Geometry3D.DataRestorer() {
+            @Override
+            public void restore(Geometry3D target) {
+                target.setVertices(vertices, true);
+                target.setIndices(new int[]{ 0, 1, 2 }, true);
+            }
+        });
+        recorder.releaseData();
+
+        recorder.changeBufferData(recorder.getVertexBufferInfo(), FloatBuffer.wrap(new float[]{ 7, 8, 9 }), 6, 3);
+        assertEquals(1, recorder.mUploads.size());
+        // The restorer would bring back the old data, so the changed data is kept
+        assertFalse(recorder.isDataReleased());
+        assertEquals(Geometry3D.RetentionPolicy.KEEP, recorder.getRetentionPolicy());
+        assertEquals(9, recorder.getVertices().get(8), 0);
+    }
+
+    @Test
+    public void testSetColorOnReleasedData() throws Exception {
+        final UploadRecorder recorder = new UploadRecorder();
+        recorder.setData(new float[]{ 0, 0, 0, 1, 0, 0, 0, 1, 0 }, null, null, new float[12], new int[]{ 0, 1, 2 },
+                         false);
+        final BufferInfo colorInfo = recorder.getColorBufferInfo();
+        final BufferInfo indexInfo = recorder.getIndexBufferInfo();
+        final File file = File.createTempFile("geometry", ".bin");
+        try {
+            recorder.setSpillFile(file);
+            recorder.setRetentionPolicy(Geometry3D.RetentionPolicy.SPILL);
+            recorder.releaseData();
+
+            recorder.setColor(0.5f, 0.25f, 0, 1);
+            assertEquals(1, recorder.mUploads.size());
+            assertEquals(48, (int) recorder.mUploads.get(0));
+            // The colors are set in place, no buffer is inserted in front of the indices
+            assertTrue(colorInfo == recorder.getColorBufferInfo());
+            assertTrue(indexInfo == recorder.getIndexBufferInfo());
+            assertTrue(recorder.isDataReleased());
+
+            recorder.restoreData();
+            final float[] colors = new float[12];
+            recorder.getColors().get(colors);
+            for (int i = 0; i < 3; ++i) {
+                assertEquals(0.5f, colors[i * 4], 0);
+                assertEquals(0.25f, colors[i * 4 + 1], 0);
+                assertEquals(1, colors[i * 4 + 3], 0);
+            }
+            assertArrayEquals(new int[]{ 0, 1, 2 }, Geometry3D.getIntArrayFromBuffer(recorder.getIndices()));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInterleavingReleasedDataFails() {
+        geometry.setData(new float[]{ 0, 1, 2, 3, 4, 5 }, new float[]{ 0, 0, 1, 0, 1, 0 }, null, null,
+                         new int[]{ 0, 1, 0 }, false);
+        geometry.setVertexFormat(VertexFormat.forGeometry(geometry));
+        geometry.setRetentionPolicy(Geometry3D.RetentionPolicy.DROP, new Geometry3D.DataRestorer() {
+            @Override
+            public void restore(Geometry3D target) {
+            }
+        });
+        geometry.releaseData();
+        geometry.buildInterleavedData();
+    }
+
+    /**
+     * Records uploads instead of talking to GL.
+     */
+    private static class UploadRecorder extends Geometry3D {
+
+        final List<Integer> mUploads = new ArrayList<>();
+
+        @Override
+        protected void uploadBufferData(BufferInfo bufferInfo, Buffer data, int byteOffset, int byteCount,
+                                        boolean respecify) {
+            mUploads.add(byteCount);
+        }
+    }
 }
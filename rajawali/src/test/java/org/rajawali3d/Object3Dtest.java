@@ -3,9 +3,19 @@ package org.rajawali3d;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.rajawali3d.cameras.Camera;
+import org.rajawali3d.materials.Material;
+import org.rajawali3d.materials.Material.PluginInsertLocation;
+import org.rajawali3d.materials.plugins.IMaterialPlugin;
+import org.rajawali3d.materials.shaders.IShaderFragment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 
@@ -38,4 +48,190 @@ public class Object3Dtest {
         assertNotNull(obj.getTransformedBoundingVolume());
         assertTrue(obj.hasBoundingVolume());
     }
+
+    @Test
+    public void testSplitGeometry() {
+        // Triangles spanning more vertices than 16 bit indices can address
+        final int count = Geometry3D.MAX_SHORT_INDEX_VERTICES * 2 + 4;
+        final float[] vertices = new float[count * 3];
+        final int[] indices = new int[count];
+        for (int i = 0; i < count; ++i) {
+            vertices[i * 3 + 1] = i;
+            indices[i] = i;
+        }
+        obj.setData(vertices, null, null, null, indices, false);
+        obj.setDoubleSided(true);
+        assertTrue(obj.getGeometry().hasIntIndices());
+
+        assertTrue(obj.splitGeometry());
+        assertTrue(obj.isContainer());
+        assertEquals(0, obj.getGeometry().getNumIndices());
+        assertEquals(3, obj.getNumChildren());
+        for (int i = 0; i < 3; ++i) {
+            final Object3D child = obj.getChildAt(i);
+            assertFalse(child.isContainer());
+            assertTrue(child.isDoubleSided());
+            assertFalse(child.getGeometry().hasIntIndices());
+        }
+        assertEquals(count - 1, obj.getBoundingBox().getMax().y, 0);
+        assertFalse(obj.splitGeometry());
+    }
+
+    @Test
+    public void testSplitDestroysUploadedGeometry() {
+        final boolean[] destroyed = new boolean[1];
+        obj.mGeometry = new Geometry3D() {
+            @Override
+            public void destroy() {
+                destroyed[0] = true;
+            }
+        };
+        final int count = Geometry3D.MAX_SHORT_INDEX_VERTICES + 2;
+        final int[] indices = new int[count];
+        for (int i = 0; i < count; ++i) {
+            indices[i] = i;
+        }
+        obj.setData(new float[count * 3], null, null, null, indices, false);
+        obj.mGeometry.mHaveCreatedBuffers = true;
+
+        assertTrue(obj.splitGeometry());
+        assertTrue(destroyed[0]);
+    }
+
+    @Test
+    public void testBindsVertexArrayBeforePluginAttributes() {
+        final List<String> calls = new ArrayList<>();
+        final RecordingObject object = new RecordingObject(calls);
+        final RecordingMaterial material = new RecordingMaterial(calls);
+        material.addPlugin(new AttributePlugin(calls));
+        object.mMaterial = material;
+
+        // First draw records the vertex array, everything set after binding it ends up in there
+        object.setAttributes(null, material);
+        assertEquals(Arrays.asList("bind vertex array", "shader params", "plugin attribute", "vertices"), calls);
+        assertTrue(object.mVertexArrayBound);
+
+        // Later draws still set the attributes of animations and plugins, which change per draw
+        calls.clear();
+        object.mRecorded = true;
+        object.setAttributes(null, material);
+        assertEquals(Arrays.asList("bind vertex array", "shader params", "plugin attribute"), calls);
+        assertTrue(object.mVertexArrayBound);
+
+        // Swapping a buffer while setting up deletes the bound vertex array, the draw falls back to the default one
+        calls.clear();
+        object.mSwapBuffer = true;
+        object.setAttributes(null, material);
+        assertEquals(Arrays.asList("bind vertex array", "shader params", "plugin attribute", "vertices"), calls);
+        assertFalse(object.mVertexArrayBound);
+    }
+
+    @Test
+    public void testSwappingBuffersInvalidatesVertexArrays() {
+        final Geometry3D geometry = obj.getGeometry();
+        final VertexArrayCache vertexArrays = geometry.getVertexArrays();
+        int generation = vertexArrays.getGeneration();
+        final BufferInfo[] infos = new BufferInfo[5];
+        for (int i = 0; i < infos.length; ++i) {
+            infos[i] = new BufferInfo();
+        }
+        geometry.setVertexBufferInfo(infos[Geometry3D.VERTEX_BUFFER_KEY]);
+        assertNotEquals(generation, generation = vertexArrays.getGeneration());
+        geometry.setNormalBufferInfo(infos[Geometry3D.NORMAL_BUFFER_KEY]);
+        assertNotEquals(generation, generation = vertexArrays.getGeneration());
+        geometry.setTexCoordBufferInfo(infos[Geometry3D.TEXTURE_BUFFER_KEY]);
+        assertNotEquals(generation, generation = vertexArrays.getGeneration());
+        geometry.setColorBufferInfo(infos[Geometry3D.COLOR_BUFFER_KEY]);
+        assertNotEquals(generation, generation = vertexArrays.getGeneration());
+        geometry.setIndexBufferInfo(infos[Geometry3D.INDEX_BUFFER_KEY]);
+        assertNotEquals(generation, vertexArrays.getGeneration());
+
+        // Each buffer replaces the one under its key instead of shifting the others
+        assertTrue(infos[Geometry3D.VERTEX_BUFFER_KEY] == geometry.getVertexBufferInfo());
+        assertTrue(infos[Geometry3D.NORMAL_BUFFER_KEY] == geometry.getNormalBufferInfo());
+        assertTrue(infos[Geometry3D.TEXTURE_BUFFER_KEY] == geometry.getTexCoordBufferInfo());
+        assertTrue(infos[Geometry3D.COLOR_BUFFER_KEY] == geometry.getColorBufferInfo());
+        assertTrue(infos[Geometry3D.INDEX_BUFFER_KEY] == geometry.getIndexBufferInfo());
+    }
+
+    /**
+     * Records the draw setup instead of talking to GL, binding a vertex array is pretended.
+     */
+    private static class RecordingObject extends Object3D {
+
+        final List<String> mCalls;
+        boolean mRecorded;
+        boolean mSwapBuffer;
+
+        RecordingObject(List<String> calls) {
+            mCalls = calls;
+        }
+
+        @Override
+        boolean bindVertexArray(Material material) {
+            mCalls.add("bind vertex array");
+            mVertexArrayBound = true;
+            return mRecorded;
+        }
+
+        @Override
+        protected void setShaderParams(Camera camera) {
+            mCalls.add("shader params");
+            if (mSwapBuffer) {
+                // Like a vertex animation moving to its next frame
+                mGeometry.setVertexBufferInfo(new BufferInfo());
+            }
+        }
+    }
+
+    private static class RecordingMaterial extends Material {
+
+        final List<String> mCalls;
+
+        RecordingMaterial(List<String> calls) {
+            super(true);
+            mCalls = calls;
+        }
+
+        @Override
+        public void setVertices(BufferInfo bufferInfo) {
+            mCalls.add("vertices");
+        }
+    }
+
+    /**
+     * Sets an attribute of its own, like the skeletal animation or point sprite plugins.
+     */
+    private static class AttributePlugin implements IMaterialPlugin {
+
+        final List<String> mCalls;
+
+        AttributePlugin(List<String> calls) {
+            mCalls = calls;
+        }
+
+        @Override
+        public PluginInsertLocation getInsertLocation() {
+            return PluginInsertLocation.PRE_LIGHTING;
+        }
+
+        @Override
+        public IShaderFragment getVertexShaderFragment() {
+            return null;
+        }
+
+        @Override
+        public IShaderFragment getFragmentShaderFragment() {
+            return null;
+        }
+
+        @Override
+        public void bindTextures(int nextIndex) {
+            mCalls.add("plugin attribute");
+        }
+
+        @Override
+        public void unbindTextures() {
+        }
+    }
 }
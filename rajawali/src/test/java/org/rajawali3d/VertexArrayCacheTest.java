@@ -0,0 +1,79 @@
+package org.rajawali3d;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VertexArrayCacheTest {
+
+    /**
+     * Hands out fake handles instead of creating vertex arrays.
+     */
+    private static class TestCache extends VertexArrayCache {
+
+        final List<Integer> mDeleted = new ArrayList<>();
+        int mNextHandle = 1;
+
+        TestCache(int maxEntries) {
+            super(maxEntries);
+        }
+
+        @Override
+        protected int createVertexArray() {
+            return mNextHandle++;
+        }
+
+        @Override
+        protected void deleteVertexArray(int handle) {
+            mDeleted.add(handle);
+        }
+    }
+
+    @Test
+    public void testFindsRecordedEntries() {
+        final TestCache cache = new TestCache(4);
+        assertEquals(0, cache.find(1, 3));
+        final int handle = cache.create(1, 3);
+        assertEquals(handle, cache.find(1, 3));
+        assertEquals(0, cache.find(1, 1));
+        assertEquals(0, cache.find(2, 3));
+    }
+
+    @Test
+    public void testEvictsOldestEntry() {
+        final TestCache cache = new TestCache(2);
+        final int first = cache.create(1, 0);
+        final int second = cache.create(2, 0);
+        final int third = cache.create(3, 0);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.mDeleted.size());
+        assertEquals(first, (int) cache.mDeleted.get(0));
+        assertEquals(0, cache.find(1, 0));
+        assertEquals(second, cache.find(2, 0));
+        assertEquals(third, cache.find(3, 0));
+    }
+
+    @Test
+    public void testInvalidateDeletesEntries() {
+        final TestCache cache = new TestCache(4);
+        cache.create(1, 0);
+        cache.create(2, 0);
+        cache.invalidate();
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.mDeleted.size());
+    }
+
+    @Test
+    public void testForgetDeletesNothing() {
+        final TestCache cache = new TestCache(4);
+        cache.create(1, 0);
+        cache.forget();
+        assertEquals(0, cache.size());
+        assertTrue(cache.mDeleted.isEmpty());
+        assertEquals(0, cache.find(1, 0));
+    }
+}
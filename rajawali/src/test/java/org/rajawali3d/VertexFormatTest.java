@@ -0,0 +1,174 @@
+package org.rajawali3d;
+
+import org.junit.Test;
+import org.rajawali3d.VertexFormat.Attribute;
+import org.rajawali3d.VertexFormat.Encoding;
+import org.rajawali3d.materials.plugins.VertexDecodeMaterialPlugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VertexFormatTest {
+
+    @Test
+    public void testOffsetsFollowDeclarationOrder() {
+        final VertexFormat format = new VertexFormat(Attribute.TEXTURE_COORDINATE, Attribute.POSITION,
+                                                     Attribute.COLOR);
+        assertEquals(0, format.getOffset(Attribute.TEXTURE_COORDINATE));
+        assertEquals(8, format.getOffset(Attribute.POSITION));
+        assertEquals(20, format.getOffset(Attribute.COLOR));
+        assertEquals(-1, format.getOffset(Attribute.NORMAL));
+        assertEquals(36, format.getStride());
+        assertTrue(format.contains(Attribute.COLOR));
+        assertFalse(format.contains(Attribute.NORMAL));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateAttribute() {
+        new VertexFormat(Attribute.POSITION, Attribute.NORMAL, Attribute.POSITION);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmpty() {
+        new VertexFormat();
+    }
+
+    @Test
+    public void testEquality() {
+        assertEquals(new VertexFormat(Attribute.POSITION, Attribute.NORMAL),
+                     new VertexFormat(Attribute.POSITION, Attribute.NORMAL));
+        assertNotEquals(new VertexFormat(Attribute.POSITION, Attribute.NORMAL),
+                        new VertexFormat(Attribute.NORMAL, Attribute.POSITION));
+    }
+
+    @Test
+    public void testForGeometry() {
+        final Geometry3D geometry = new Geometry3D();
+        geometry.setData(new float[]{ 0, 1, 2, 3, 4, 5 }, new float[]{ 0, 0, 1, 0, 1, 0 }, null,
+                         new float[]{ 1, 0, 0, 1, 0, 1, 0, 1 }, new int[]{ 0, 1, 0 }, false);
+        final VertexFormat all = VertexFormat.forGeometry(geometry);
+        assertEquals(new VertexFormat(Attribute.POSITION, Attribute.NORMAL, Attribute.TEXTURE_COORDINATE,
+                                      Attribute.COLOR), all);
+
+        final VertexFormat withoutColor = VertexFormat.forGeometry(geometry, Attribute.COLOR);
+        assertFalse(withoutColor.contains(Attribute.COLOR));
+        assertEquals(32, withoutColor.getStride());
+
+        assertNull(VertexFormat.forGeometry(geometry, Attribute.NORMAL, Attribute.TEXTURE_COORDINATE,
+                                            Attribute.COLOR));
+    }
+
+    @Test
+    public void testInterleaveHierarchy() {
+        final Object3D root = new Object3D();
+        final Object3D child = new Object3D();
+        child.getGeometry().setData(new float[]{ 0, 1, 2 }, new float[]{ 0, 0, 1 }, null, null, new int[]{ 0 },
+                                    false);
+        root.addChild(child);
+        VertexFormat.interleave(root, Attribute.COLOR);
+        assertNull(root.getGeometry().getVertexFormat());
+        assertEquals(new VertexFormat(Attribute.POSITION, Attribute.NORMAL, Attribute.TEXTURE_COORDINATE),
+                     child.getGeometry().getVertexFormat());
+    }
+
+    @Test
+    public void testQuantizedSizes() {
+        final Geometry3D geometry = new Geometry3D();
+        geometry.setData(new float[]{ 0, 1, 2, 3, 4, 5 }, new float[]{ 0, 0, 1, 0, 1, 0 },
+                         new float[]{ 0.25f, 0.5f, 0.75f, 1 }, new float[]{ 1, 0, 0, 1, 0, 1, 0, 1 },
+                         new int[]{ 0, 1, 0 }, false);
+        final VertexFormat format = VertexFormat.quantized(geometry);
+        assertEquals(Encoding.NORMALIZED_SHORT, format.getEncoding(Attribute.POSITION));
+        assertEquals(Encoding.OCTAHEDRAL, format.getEncoding(Attribute.NORMAL));
+        assertEquals(Encoding.NORMALIZED_SHORT, format.getEncoding(Attribute.TEXTURE_COORDINATE));
+        assertEquals(Encoding.UNSIGNED_BYTE, format.getEncoding(Attribute.COLOR));
+        // 8 bytes of padded position, 4 of normal, 4 of texture coordinates and 4 of color
+        assertEquals(8, format.getOffset(Attribute.NORMAL));
+        assertEquals(12, format.getOffset(Attribute.TEXTURE_COORDINATE));
+        assertEquals(16, format.getOffset(Attribute.COLOR));
+        assertEquals(20, format.getStride());
+        assertTrue(format.isQuantized());
+        assertTrue(format.needsDecoding());
+        assertNotEquals(VertexFormat.forGeometry(geometry), format);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedEncoding() {
+        new VertexFormat(new Attribute[]{ Attribute.POSITION, Attribute.NORMAL },
+                         new Encoding[]{ Encoding.FLOAT, Encoding.UNSIGNED_BYTE });
+    }
+
+    @Test
+    public void testQuantizeHierarchy() {
+        final Object3D root = new Object3D();
+        final Object3D child = new Object3D();
+        child.getGeometry().setData(new float[]{ 0, 1, 2 }, new float[]{ 0, 0, 1 }, null, null, new int[]{ 0 },
+                                    false);
+        root.addChild(child);
+        VertexFormat.quantize(root, Attribute.NORMAL);
+        assertNull(root.getGeometry().getVertexFormat());
+        final VertexFormat format = child.getGeometry().getVertexFormat();
+        assertTrue(format.isQuantized());
+        assertFalse(format.contains(Attribute.NORMAL));
+        assertNotNull(child.getGeometry().getPositionDecodeMatrix());
+    }
+
+    @Test
+    public void testToHalfFloat() {
+        assertEquals(0x3C00, VertexFormat.toHalfFloat(1f) & 0xFFFF);
+        assertEquals(0x3800, VertexFormat.toHalfFloat(0.5f) & 0xFFFF);
+        assertEquals(0xC000, VertexFormat.toHalfFloat(-2f) & 0xFFFF);
+        assertEquals(0x7BFF, VertexFormat.toHalfFloat(65504f) & 0xFFFF);
+        assertEquals(0x7C00, VertexFormat.toHalfFloat(1e6f) & 0xFFFF);
+        assertEquals(0x0001, VertexFormat.toHalfFloat(5.9604645e-8f) & 0xFFFF);
+        assertEquals(0x0000, VertexFormat.toHalfFloat(1e-9f) & 0xFFFF);
+        // 1 + 2^-11 lies exactly between two halves and rounds to the even one
+        assertEquals(0x3C00, VertexFormat.toHalfFloat(1 + 1f / 2048) & 0xFFFF);
+        assertTrue(Float.isNaN(halfToFloat(VertexFormat.toHalfFloat(Float.NaN))));
+    }
+
+    @Test
+    public void testOctahedralRoundTrip() {
+        final float[][] normals = new float[][]{
+            { 0, 0, 1 }, { 0, 0, -1 }, { 1, 0, 0 }, { 0, -1, 0 }, { 0.3f, -0.5f, 0.81f }, { -0.6f, 0.2f, -0.77f }
+        };
+        for (float[] n : normals) {
+            final double length = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+            final short packed = VertexFormat.toOctahedral(n[0], n[1], n[2]);
+            final double[] decoded = decodeOctahedral((byte) (packed >> 8) / 127.0, (byte) packed / 127.0);
+            for (int c = 0; c < 3; ++c) {
+                assertEquals(n[c] / length, decoded[c], 0.02);
+            }
+        }
+    }
+
+    /**
+     * Mirror of the GLSL in {@link VertexDecodeMaterialPlugin}.
+     */
+    private static double[] decodeOctahedral(double x, double y) {
+        final double[] n = new double[]{ x, y, 1 - Math.abs(x) - Math.abs(y) };
+        final double t = Math.max(-n[2], 0);
+        n[0] += n[0] >= 0 ? -t : t;
+        n[1] += n[1] >= 0 ? -t : t;
+        final double length = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+        return new double[]{ n[0] / length, n[1] / length, n[2] / length };
+    }
+
+    private static float halfToFloat(short half) {
+        final int bits = half & 0xFFFF;
+        final int exponent = (bits >> 10) & 0x1F;
+        final int mantissa = bits & 0x3FF;
+        final float sign = (bits & 0x8000) != 0 ? -1 : 1;
+        if (exponent == 0x1F) {
+            return mantissa != 0 ? Float.NaN : sign * Float.POSITIVE_INFINITY;
+        }
+        if (exponent == 0) {
+            return sign * mantissa * (float) Math.pow(2, -24);
+        }
+        return sign * (1 + mantissa / 1024f) * (float) Math.pow(2, exponent - 15);
+    }
+}
@@ -0,0 +1,153 @@
+package org.rajawali3d.animation;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.rajawali3d.Transformable3D;
+import org.rajawali3d.curves.CatmullRomCurve3D;
+import org.rajawali3d.curves.Path4D;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+import org.rajawali3d.math.vector.Vector3.Axis;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs every {@link Animation3D} that can be driven without a GL context for a number of frames and fails if the
+ * update path allocated anything on the heap.
+ */
+public class AnimationAllocationTest {
+
+    private static final int    WARMUP_FRAMES = 2000;
+    private static final int    FRAMES        = 1000;
+    private static final int    ROUNDS        = 3;
+    private static final double FRAME_DELTA   = 1.0 / 60.0;
+
+    private com.sun.management.ThreadMXBean threadBean;
+
+    @Before
+    public void setup() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue("Allocation counters unsupported on this VM", bean instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue("Allocation counters unsupported on this VM", threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private long allocatedBytes() {
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private void assertNoAllocation(Animation animation) {
+        animation.setDurationMilliseconds(1000);
+        animation.setRepeatMode(Animation.RepeatMode.REVERSE_INFINITE);
+        animation.play();
+        for (int i = 0; i < WARMUP_FRAMES; ++i) {
+            animation.update(FRAME_DELTA);
+        }
+
+        // Calibrate for whatever the counter itself costs
+        final long overheadStart = allocatedBytes();
+        final long overhead = allocatedBytes() - overheadStart;
+
+        // One-off VM activity such as a deoptimization can be charged to this thread, a real per frame allocation
+        // shows up in every round so only the best round counts
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; ++round) {
+            final long start = allocatedBytes();
+            for (int i = 0; i < FRAMES; ++i) {
+                animation.update(FRAME_DELTA);
+            }
+            allocated = Math.min(allocated, allocatedBytes() - start - overhead);
+        }
+        assertEquals(animation.getClass().getSimpleName() + " allocated during update", 0L, allocated);
+    }
+
+    private static Animation3D attach(Animation3D animation) {
+        animation.setTransformable3D(new Transformable3D());
+        return animation;
+    }
+
+    private static CatmullRomCurve3D createCurve() {
+        final CatmullRomCurve3D curve = new CatmullRomCurve3D();
+        curve.addPoint(new Vector3(0, 0, 0));
+        curve.addPoint(new Vector3(1, 2, 0));
+        curve.addPoint(new Vector3(2, 0, 1));
+        curve.addPoint(new Vector3(3, 1, 2));
+        curve.addPoint(new Vector3(4, 0, 0));
+        curve.addPoint(new Vector3(5, 3, 1));
+        return curve;
+    }
+
+    @Test
+    public void testRotateAnimation3D() {
+        assertNoAllocation(attach(new RotateAnimation3D(45, 90, 30)));
+    }
+
+    @Test
+    public void testSlerpAnimation3D() {
+        assertNoAllocation(attach(new SlerpAnimation3D(new Vector3(1, 0, 0), new Vector3(0, 1, 1))));
+    }
+
+    @Test
+    public void testTranslateAnimation3D() {
+        assertNoAllocation(attach(new TranslateAnimation3D(new Vector3(1, 2, 3), new Vector3(-4, 5, 6))));
+    }
+
+    @Test
+    public void testScaleAnimation3D() {
+        assertNoAllocation(attach(new ScaleAnimation3D(new Vector3(2, 3, 4))));
+    }
+
+    @Test
+    public void testEllipticalOrbitAnimation3D() {
+        assertNoAllocation(attach(new EllipticalOrbitAnimation3D(new Vector3(), new Vector3(0, 0, 5), 0.5, 360)));
+    }
+
+    @Test
+    public void testRotateOnAxisAnimation() {
+        assertNoAllocation(attach(new RotateOnAxisAnimation(Axis.Y, 0, 360)));
+    }
+
+    @Test
+    public void testRotateAroundAnimation3D() {
+        assertNoAllocation(attach(new RotateAroundAnimation3D(new Vector3(1, 1, 1), Axis.Z, 3)));
+    }
+
+    @Test
+    public void testSplineTranslateAnimation3D() {
+        assertNoAllocation(attach(new SplineTranslateAnimation3D(createCurve())));
+    }
+
+    @Test
+    public void testSplineTranslateAnimation3DOrientToPath() {
+        final SplineTranslateAnimation3D animation = new SplineTranslateAnimation3D(createCurve());
+        animation.setOrientToPath(true);
+        assertNoAllocation(attach(animation));
+    }
+
+    @Test
+    public void testSplineScalingAnimation3D() {
+        assertNoAllocation(attach(new SplineScalingAnimation3D(createCurve())));
+    }
+
+    @Test
+    public void testSplineOrientationAnimation3D() {
+        final Path4D path = new Path4D();
+        path.addPoint(new Quaternion());
+        path.addPoint(new Quaternion().fromAngleAxis(Axis.Y, 90));
+        path.addPoint(new Quaternion().fromAngleAxis(Axis.X, 45));
+        assertNoAllocation(attach(new SplineOrientationAnimation3D(path)));
+    }
+
+    @Test
+    public void testAnimationGroup() {
+        final AnimationGroup group = new AnimationGroup();
+        group.addAnimation(attach(new RotateAnimation3D(0, 180, 0)));
+        group.addAnimation(attach(new TranslateAnimation3D(new Vector3(1, 1, 1))));
+        group.addAnimation(attach(new ScaleAnimation3D(new Vector3(2, 2, 2))));
+        assertNoAllocation(group);
+    }
+}
@@ -0,0 +1,235 @@
+package org.rajawali3d.animation;
+
+import org.junit.Test;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.Transformable3D;
+import org.rajawali3d.animation.Animation.RepeatMode;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AnimationSchedulerTest {
+
+    private static final double FRAME = 1.0 / 60.0;
+
+    private static void run(AnimationScheduler scheduler, int frames) {
+        for (int i = 0; i < frames; ++i) {
+            scheduler.update(FRAME);
+        }
+    }
+
+    @Test
+    public void testTranslationReachesTarget() {
+        final AnimationScheduler scheduler = new AnimationScheduler();
+        final Transformable3D target = new Transformable3D();
+        target.setPosition(1, 1, 1);
+        scheduler.addTranslation(target, new Vector3(3, 5, -1), 1000, 0);
+        assertEquals(1, scheduler.getActiveCount());
+
+        run(scheduler, 30);
+        assertEquals(2, target.getX(), 1e-9);
+        assertEquals(3, target.getY(), 1e-9);
+        assertEquals(0, target.getZ(), 1e-9);
+
+        run(scheduler, 31);
+        assertEquals(3, target.getX(), 1e-9);
+        assertEquals(5, target.getY(), 1e-9);
+        assertEquals(-1, target.getZ(), 1e-9);
+        assertEquals(0, scheduler.getActiveCount());
+    }
+
+    @Test
+    public void testScaleFromTo() {
+        final AnimationScheduler scheduler = new AnimationScheduler();
+        final Transformable3D target = new Transformable3D();
+        scheduler.addScale(target, new Vector3(2, 2, 2), new Vector3(4, 6, 8), 500, 0);
+        scheduler.update(0.25);
+        assertEquals(3, target.getScaleX(), 1e-9);
+        assertEquals(4, target.getScaleY(), 1e-9);
+        assertEquals(5, target.getScaleZ(), 1e-9);
+    }
+
+    @Test
+    public void testColor() {
+        final AnimationScheduler scheduler = new AnimationScheduler();
+        class ColoredObject extends Object3D {
+            float[] getColor() {
+                return mColor;
+            }
+        }
+        final ColoredObject target = new ColoredObject();
+        scheduler.addColor(target, 0xFF000000, 0xFFFF8000, 1000, 0);
+        scheduler.update(0.5);
+        final float[] color = target.getColor();
+        assertEquals(127.5f / 255f, color[0], 1e-6);
+        assertEquals(64 / 255f, color[1], 1e-6);
+        assertEquals(0, color[2], 1e-6);
+        assertEquals(1, color[3], 1e-6);
+    }
+
+    @Test
+    public void testDelayUsesTimingWheel() {
+        // A wheel of 8 ticks forces the 500 ms delay to take several revolutions
+        final AnimationScheduler scheduler = new AnimationScheduler(8, FRAME);
+        final Transformable3D target = new Transformable3D();
+        final long handle = scheduler.addTranslation(target, new Vector3(10, 0, 0), 1000, 500);
+        assertEquals(1, scheduler.getPendingCount());
+        assertEquals(0, scheduler.getActiveCount());
+        assertTrue(scheduler.isScheduled(handle));
+
+        run(scheduler, 29);
+        assertEquals(0, target.getX(), 0);
+        assertEquals(1, scheduler.getPendingCount());
+
+        run(scheduler, 1);
+        assertEquals(0, scheduler.getPendingCount());
+        assertEquals(1, scheduler.getActiveCount());
+
+        run(scheduler, 60);
+        assertEquals(10, target.getX(), 1e-9);
+        assertFalse(scheduler.isScheduled(handle));
+    }
+
+    @Test
+    public void testDelayedTranslationStartsFromPositionAtActivation() {
+        final AnimationScheduler scheduler = new AnimationScheduler();
+        final Transformable3D target = new Transformable3D();
+        scheduler.addTranslation(target, new Vector3(10, 0, 0), 1000, 100);
+        target.setX(4);
+        // Like Animation, the frame which completes the delay does not advance the tween yet
+        run(scheduler, 6);
+        assertEquals(4, target.getX(), 0);
+        scheduler.update(0.5);
+        assertEquals(7, target.getX(), 1e-9);
+    }
+
+    @Test
+    public void testCancelAndHandleReuse() {
+        final AnimationScheduler scheduler = new AnimationScheduler();
+        final Transformable3D first = new Transformable3D();
+        final Transformable3D second = new Transformable3D();
+        final long handle = scheduler.addTranslation(first, new Vector3(1, 0, 0), 1000, 0);
+        assertTrue(scheduler.cancel(handle));
+        assertFalse(scheduler.cancel(handle));
+        scheduler.update(FRAME);
+        assertEquals(0, first.getX(), 0);
+        assertEquals(0, scheduler.getActiveCount());
+
+        // The freed slot is reused but the stale handle must not reach the new tween
+        final long reused = scheduler.addTranslation(second, new Vector3(1, 0, 0), 1000, 0);
+        assertEquals((int) handle, (int) reused);
+        assertNotEquals(handle, reused);
+        assertFalse(scheduler.cancel(handle));
+        assertTrue(scheduler.isScheduled(reused));
+    }
+
+    @Test
+    public void testCancelPending() {
+        final AnimationScheduler scheduler = new AnimationScheduler();
+        final Transformable3D target = new Transformable3D();
+        final long handle = scheduler.addTranslation(target, new Vector3(1, 0, 0), 1000, 200);
+        assertTrue(scheduler.cancel(handle));
+        run(scheduler, 60);
+        assertEquals(0, target.getX(), 0);
+        assertEquals(0, scheduler.getPendingCount());
+        assertEquals(0, scheduler.getActiveCount());
+    }
+
+    @Test
+    public void testBulkRemovalKeepsRunningTweens() {
+        final AnimationScheduler scheduler = new AnimationScheduler();
+        final Transformable3D[] targets = new Transformable3D[1000];
+        for (int i = 0; i < targets.length; ++i) {
+            targets[i] = new Transformable3D();
+            // Every other tween ends after a single frame
+            scheduler.addTranslation(targets[i], new Vector3(1, 0, 0), i % 2 == 0 ? 10 : 1000, 0);
+        }
+        scheduler.update(FRAME);
+        assertEquals(500, scheduler.getActiveCount());
+        scheduler.update(1);
+        assertEquals(0, scheduler.getActiveCount());
+        for (Transformable3D target : targets) {
+            assertEquals(1, target.getX(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testRepeatReverse() {
+        final AnimationScheduler scheduler = new AnimationScheduler();
+        final Transformable3D target = new Transformable3D();
+        final long handle = scheduler.addTranslation(target, new Vector3(), new Vector3(4, 0, 0), 1000, 0);
+        scheduler.setRepeat(handle, RepeatMode.REVERSE, 1);
+        scheduler.update(1);
+        assertEquals(4, target.getX(), 1e-9);
+        scheduler.update(0.25);
+        assertEquals(3, target.getX(), 1e-9);
+        scheduler.update(0.75);
+        assertEquals(0, target.getX(), 1e-9);
+        assertFalse(scheduler.isScheduled(handle));
+    }
+
+    @Test
+    public void testRepeatReverseInfinite() {
+        final AnimationScheduler scheduler = new AnimationScheduler();
+        final Transformable3D target = new Transformable3D();
+        final long handle = scheduler.addTranslation(target, new Vector3(), new Vector3(4, 0, 0), 1000, 0);
+        scheduler.setRepeat(handle, RepeatMode.REVERSE_INFINITE, 0);
+        for (int i = 0; i < 8; ++i) {
+            scheduler.update(0.5);
+        }
+        assertTrue(scheduler.isScheduled(handle));
+        assertEquals(0, target.getX(), 1e-9);
+    }
+
+    @Test
+    public void testConcurrentUpdateMatchesSerial() throws Exception {
+        final int count = 5000;
+        final AnimationScheduler serial = new AnimationScheduler();
+        final AnimationScheduler concurrent = new AnimationScheduler();
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            concurrent.setExecutor(executor, 4, 100);
+            final Transformable3D[] serialTargets = new Transformable3D[count];
+            final Transformable3D[] concurrentTargets = new Transformable3D[count];
+            for (int i = 0; i < count; ++i) {
+                serialTargets[i] = new Transformable3D();
+                concurrentTargets[i] = new Transformable3D();
+                final Vector3 to = new Vector3(i, -i, i * 0.5);
+                final long duration = 100 + (i % 17) * 50;
+                serial.addTranslation(serialTargets[i], to, duration, (i % 5) * 20);
+                concurrent.addTranslation(concurrentTargets[i], to, duration, (i % 5) * 20);
+            }
+            for (int frame = 0; frame < 40; ++frame) {
+                serial.update(FRAME);
+                concurrent.update(FRAME);
+                assertEquals(serial.getActiveCount(), concurrent.getActiveCount());
+            }
+            for (int i = 0; i < count; ++i) {
+                assertEquals(serialTargets[i].getX(), concurrentTargets[i].getX(), 0);
+                assertEquals(serialTargets[i].getY(), concurrentTargets[i].getY(), 0);
+                assertEquals(serialTargets[i].getZ(), concurrentTargets[i].getZ(), 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testClear() {
+        final AnimationScheduler scheduler = new AnimationScheduler();
+        final long active = scheduler.addScale(new Transformable3D(), new Vector3(2, 2, 2), 1000, 0);
+        final long pending = scheduler.addScale(new Transformable3D(), new Vector3(2, 2, 2), 1000, 1000);
+        scheduler.clear();
+        assertFalse(scheduler.isScheduled(active));
+        assertFalse(scheduler.isScheduled(pending));
+        assertEquals(0, scheduler.getActiveCount());
+        assertEquals(0, scheduler.getPendingCount());
+        run(scheduler, 120);
+    }
+}
@@ -0,0 +1,82 @@
+package org.rajawali3d.animation.mesh;
+
+import org.junit.Test;
+import org.rajawali3d.animation.mesh.SkeletalAnimationFrame.SkeletonJoint;
+import org.rajawali3d.animation.mesh.SkeletalAnimationObject3D.SkeletalAnimationException;
+import org.rajawali3d.math.Matrix;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class SkeletalAnimationSequenceTest {
+
+    private static SkeletalAnimationFrame createFrame(double angle, double x) {
+        final SkeletalAnimationFrame frame = new SkeletalAnimationFrame();
+        final SkeletonJoint[] joints = new SkeletonJoint[2];
+        joints[0] = new SkeletonJoint();
+        joints[0].setPosition(x, 0, 0);
+        joints[0].getOrientation().fromAngleAxis(Vector3.Axis.Z, angle);
+        joints[1] = new SkeletonJoint();
+        joints[1].setPosition(0, x, 1);
+        joints[1].getOrientation().fromAngleAxis(Vector3.Axis.X, -angle);
+        frame.getSkeleton().setJoints(joints);
+        return frame;
+    }
+
+    private static double[][] createInverseBindPose() {
+        final double[][] inverseBindPose = new double[2][16];
+        Matrix.setIdentityM(inverseBindPose[0], 0);
+        Matrix.setIdentityM(inverseBindPose[1], 0);
+        Matrix.translateM(inverseBindPose[1], 0, 0, 0, -1);
+        return inverseBindPose;
+    }
+
+    @Test
+    public void testBakesSkinningMatrices() throws Exception {
+        final SkeletalAnimationSequence sequence = new SkeletalAnimationSequence("wave");
+        sequence.setFrames(new SkeletalAnimationFrame[]{ createFrame(0, 0), createFrame(30, 2), createFrame(90, 4) });
+        final double[][] inverseBindPose = createInverseBindPose();
+        sequence.bake(inverseBindPose);
+        final float[] baked = sequence.getBakedMatrices();
+        assertEquals(3 * 2 * 16, baked.length);
+        assertEquals(2, sequence.getBakedJointCount());
+
+        // Same as the matrices built per joint at runtime
+        final double[] translation = new double[16];
+        final double[] rotation = new double[16];
+        final double[] bone = new double[16];
+        final double[] result = new double[16];
+        for (int frame = 0; frame < 3; ++frame) {
+            for (int joint = 0; joint < 2; ++joint) {
+                final SkeletonJoint skeletonJoint = sequence.getFrame(frame).getSkeleton().getJoint(joint);
+                final Vector3 position = skeletonJoint.getPosition();
+                final Quaternion orientation = skeletonJoint.getOrientation();
+                Matrix.setIdentityM(translation, 0);
+                Matrix.translateM(translation, 0, position.x, position.y, position.z);
+                orientation.toRotationMatrix(rotation);
+                Matrix.multiplyMM(bone, 0, translation, 0, rotation, 0);
+                Matrix.multiplyMM(result, 0, bone, 0, inverseBindPose[joint], 0);
+                for (int k = 0; k < 16; ++k) {
+                    assertEquals(result[k], baked[(frame * 2 + joint) * 16 + k], 1e-6);
+                }
+            }
+        }
+
+        sequence.setFrames(sequence.getFrames());
+        assertNull(sequence.getBakedMatrices());
+    }
+
+    @Test
+    public void testRejectsMismatchingSkeletons() {
+        final SkeletalAnimationSequence sequence = new SkeletalAnimationSequence("wave");
+        sequence.setFrames(new SkeletalAnimationFrame[]{ createFrame(0, 0) });
+        try {
+            sequence.bake(new double[3][16]);
+            fail();
+        } catch (SkeletalAnimationException expected) {
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.rajawali3d.animation.mesh;
+
+import org.rajawali3d.BufferInfo;
+import org.rajawali3d.Geometry3D;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Skinned mesh whose buffers are never created on the GPU, so its bone buffers can be added without a GL context.
+ */
+public class SkinnedTestChild extends SkeletalAnimationChildObject3D {
+
+    /**
+     * Key of the bone index buffer, the first buffer after the standard ones.
+     */
+    public static final int BONE_INDEX_KEY = Geometry3D.INDEX_BUFFER_KEY + 1;
+    public static final int BONE_WEIGHT_KEY = BONE_INDEX_KEY + 1;
+
+    public SkinnedTestChild() {
+        mGeometry = new Geometry3D() {
+            @Override
+            public void createBuffer(BufferInfo bufferInfo, BufferType type, int target, int usage) {
+                bufferInfo.bufferType = type;
+                bufferInfo.target = target;
+                bufferInfo.usage = usage;
+            }
+        };
+    }
+
+    /**
+     * Binds every vertex to a single joint with full weight.
+     *
+     * @param joints Joint of each vertex.
+     */
+    public void setJoints(float... joints) {
+        final FloatBuffer indexes = createBuffer(joints.length * 4);
+        final FloatBuffer weights = createBuffer(joints.length * 4);
+        for (int i = 0; i < joints.length; ++i) {
+            indexes.put(i * 4, joints[i]);
+            weights.put(i * 4, 1);
+        }
+        setSkeletonMeshData(joints.length, indexes, weights);
+    }
+
+    /**
+     * @return The joint of each vertex, read from the bone index buffer of the geometry.
+     */
+    public float[] getJoints(int vertexCount) {
+        final FloatBuffer indexes = (FloatBuffer) mGeometry.getBufferInfo(BONE_INDEX_KEY).buffer;
+        final float[] joints = new float[vertexCount];
+        for (int i = 0; i < vertexCount; ++i) {
+            joints[i] = indexes.get(i * 4);
+        }
+        return joints;
+    }
+
+    private static FloatBuffer createBuffer(int count) {
+        return ByteBuffer.allocateDirect(count * Geometry3D.FLOAT_SIZE_BYTES).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
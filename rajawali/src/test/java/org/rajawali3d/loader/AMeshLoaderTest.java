@@ -0,0 +1,57 @@
+package org.rajawali3d.loader;
+
+import org.junit.Test;
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.animation.mesh.SkinnedTestChild;
+
+import java.io.File;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AMeshLoaderTest {
+
+    /**
+     * Parses a skinned triangle.
+     */
+    private static final class SkinnedLoader extends AMeshLoader {
+
+        int parses;
+
+        SkinnedLoader() {
+            super(new File("skinned.md5mesh"));
+        }
+
+        @Override
+        public AMeshLoader parse() throws ParsingException {
+            ++parses;
+            final SkinnedTestChild child = new SkinnedTestChild();
+            child.setData(new float[]{ 0, 0, 0, 1, 0, 0, 0, 1, 0 }, null, null, null, new int[]{ 0, 1, 2 }, false);
+            child.setJoints(2, 0, 1);
+            mRootObject.addChild(child);
+            return this;
+        }
+    }
+
+    @Test
+    public void testDropRestoresBoneBuffers() throws Exception {
+        final SkinnedLoader loader = new SkinnedLoader();
+        loader.parse();
+        loader.setRetentionPolicy(Geometry3D.RetentionPolicy.DROP);
+        loader.postProcess();
+
+        final SkinnedTestChild child = (SkinnedTestChild) loader.getParsedObject().getChildAt(0);
+        final Geometry3D geometry = child.getGeometry();
+        geometry.releaseData();
+        assertNull(geometry.getBufferInfo(SkinnedTestChild.BONE_INDEX_KEY).buffer);
+        assertNull(geometry.getBufferInfo(SkinnedTestChild.BONE_WEIGHT_KEY).buffer);
+
+        geometry.restoreData();
+        assertEquals(2, loader.parses);
+        assertArrayEquals(new float[]{ 2, 0, 1 }, child.getJoints(3), 0);
+        assertEquals(1, ((FloatBuffer) geometry.getBufferInfo(SkinnedTestChild.BONE_WEIGHT_KEY).buffer)
+                .get(0), 0);
+    }
+}
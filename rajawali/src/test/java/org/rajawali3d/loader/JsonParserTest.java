@@ -0,0 +1,42 @@
+package org.rajawali3d.loader;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonParserTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testParsesValues() throws Exception {
+        final Map<String, Object> document = (Map<String, Object>) JsonParser.parse(
+                " { \"a\" : [1, -2.5e1, true, false, null], \"b\": {\"c\": \"x\\\"y\\u0041\\n\"}, \"d\": [] }\n");
+        final List<Object> a = (List<Object>) document.get("a");
+        assertEquals(5, a.size());
+        assertEquals(1.0, a.get(0));
+        assertEquals(-25.0, a.get(1));
+        assertEquals(Boolean.TRUE, a.get(2));
+        assertEquals(Boolean.FALSE, a.get(3));
+        assertNull(a.get(4));
+        assertEquals("x\"yA\n", ((Map<String, Object>) document.get("b")).get("c"));
+        assertTrue(((List<Object>) document.get("d")).isEmpty());
+    }
+
+    @Test
+    public void testRejectsInvalidDocuments() {
+        final String[] documents = { "", "{", "{\"a\" 1}", "[1,]", "[1] 2", "\"open", "tru", "[1 2]" };
+        for (String document : documents) {
+            try {
+                JsonParser.parse(document);
+                fail("Parsed " + document);
+            } catch (ParsingException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.rajawali3d.loader;
+
+import org.junit.Test;
+import org.rajawali3d.loader.LoaderAWD.AWDLittleEndianDataInputStream;
+import org.rajawali3d.util.LzmaInputStreamTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoaderAWDTest {
+
+    @Test
+    public void testDecompressesZlibBodies() throws Exception {
+        final byte[] expected = LzmaInputStreamTest.createData();
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final DeflaterOutputStream deflater = new DeflaterOutputStream(compressed);
+        deflater.write(expected);
+        deflater.close();
+
+        final AWDLittleEndianDataInputStream dis = new AWDLittleEndianDataInputStream(
+                new ByteArrayInputStream(compressed.toByteArray())).decompress(LoaderAWD.Compression.ZLIB);
+        assertTrue(dis.hasMoreData());
+        assertEquals(expected[0], dis.readByte());
+        final byte[] actual = new byte[expected.length - 1];
+        dis.readFully(actual);
+        assertArrayEquals(Arrays.copyOfRange(expected, 1, expected.length), actual);
+        assertEquals(expected.length, dis.getPosition());
+        assertFalse(dis.hasMoreData());
+    }
+
+    @Test
+    public void testDecompressesLzmaBodies() throws Exception {
+        final byte[] expected = LzmaInputStreamTest.createData();
+        final AWDLittleEndianDataInputStream dis = new AWDLittleEndianDataInputStream(
+                new ByteArrayInputStream(LzmaInputStreamTest.getCompressed())).decompress(LoaderAWD.Compression.LZMA);
+        final byte[] actual = new byte[expected.length];
+        dis.readFully(actual);
+        assertArrayEquals(expected, actual);
+        assertFalse(dis.hasMoreData());
+    }
+}
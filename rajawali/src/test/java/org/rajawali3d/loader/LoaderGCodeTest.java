@@ -0,0 +1,162 @@
+package org.rajawali3d.loader;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoaderGCodeTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static GCodeToolpath read(LoaderGCode loader, String gcode) throws IOException {
+        return loader.readGCode(new BufferedInputStream(
+                new ByteArrayInputStream(gcode.getBytes(Charset.forName("US-ASCII")))));
+    }
+
+    @Test
+    public void testRecordsLayerRanges() throws Exception {
+        final LoaderGCode loader = new LoaderGCode("unused");
+        final List<Integer> published = new ArrayList<>();
+        loader.setOnLayerListener(new GCodeToolpath.OnLayerListener() {
+            @Override
+            public void onLayerLoaded(@NonNull GCodeToolpath toolpath, int layer) {
+                // Layers are drawable by the time they are announced
+                assertTrue(layer < toolpath.getNumLayers());
+                published.add(layer);
+            }
+        });
+        final GCodeToolpath toolpath = read(loader, "G21 ; millimeters\r\n"
+                                                    + "G90\n"
+                                                    + "M82\n"
+                                                    + "G28\n"
+                                                    + "G1 Z0.3 F3000\n"
+                                                    + "G1 X10 Y0 E1 ; first segment\n"
+                                                    + "G1 X10 Y10 E2\n"
+                                                    + "G1 E1.5 ; retract\n"
+                                                    + "G0 X20 Y20\n"
+                                                    + "G1 X30 E3\n"
+                                                    + "G1 Z0.6\n"
+                                                    + "N12 G1 X0 Y0 E4*57\n"
+                                                    + "g1 x5 e5 (comment) y5");
+        assertTrue(toolpath.isLoaded());
+        assertEquals(2, toolpath.getNumLayers());
+        assertEquals(0.3f, toolpath.getLayerHeight(0), 1e-6f);
+        assertEquals(0.6f, toolpath.getLayerHeight(1), 1e-6f);
+        // Three segments on the first layer, the travel move breaks the path
+        assertEquals(0, toolpath.getLayerIndexOffset(0));
+        assertEquals(6, toolpath.getLayerIndexCount(0));
+        assertEquals(6, toolpath.getLayerIndexOffset(1));
+        assertEquals(4, toolpath.getLayerIndexCount(1));
+        assertEquals(2, published.size());
+        assertEquals(0, (int) published.get(0));
+        assertEquals(1, (int) published.get(1));
+    }
+
+    @Test
+    public void testFollowsRelativeMovesAndUnits() throws Exception {
+        final GCodeToolpath toolpath = read(new LoaderGCode("unused"), "G20\n"
+                                                                      + "G91\n"
+                                                                      + "G1 Z0.01\n"
+                                                                      + "G1 X1 E0.1\n"
+                                                                      + "G1 Z0.01\n"
+                                                                      + "G1 Y1 E0.1\n"
+                                                                      + "G1 Y1 E-0.1\n"
+                                                                      + "G90\n"
+                                                                      + "G92 Z0 E0\n"
+                                                                      + "G1 Z0.03 X2 E1\n"
+                                                                      + "G1 X3 E0.5\n");
+        assertEquals(3, toolpath.getNumLayers());
+        assertEquals(0.254f, toolpath.getLayerHeight(0), 1e-5f);
+        assertEquals(0.508f, toolpath.getLayerHeight(1), 1e-5f);
+        // G92 moved the origin, the next layer is higher than the last one only because of its own move
+        assertEquals(0.762f, toolpath.getLayerHeight(2), 1e-5f);
+        assertEquals(2, toolpath.getLayerIndexCount(0));
+        assertEquals(2, toolpath.getLayerIndexCount(1));
+        // The move retracting in absolute mode does not extrude
+        assertEquals(2, toolpath.getLayerIndexCount(2));
+    }
+
+    @Test
+    public void testSplitsLongPathsIntoShortIndexedParts() throws Exception {
+        final GCodeToolpath toolpath = new GCodeToolpath();
+        final int count = GCodeToolpath.MAX_PART_VERTICES + 100;
+        toolpath.beginLayer(0.2f);
+        int previous = toolpath.addVertex(0, 0, 0.2f);
+        for (int i = 1; i < count; ++i) {
+            final int next = toolpath.addVertex(i, 0, 0.2f);
+            toolpath.addSegment(previous, next);
+            previous = next;
+        }
+        toolpath.finish();
+        assertEquals(1, toolpath.getNumLayers());
+        assertEquals(2 * (count - 1), toolpath.getLayerIndexCount(0));
+
+        final List<GCodeToolpath.Part> parts = toolpath.getParts();
+        assertEquals(2, parts.size());
+        final GCodeToolpath.Part first = parts.get(0);
+        assertEquals(GCodeToolpath.MAX_PART_VERTICES, first.getVertexCount());
+        assertEquals(2 * (GCodeToolpath.MAX_PART_VERTICES - 1), first.getIndexCount());
+        assertEquals(GCodeToolpath.MAX_PART_VERTICES - 1, first.getIndex(first.getIndexCount() - 1));
+        // The second part continues the path from a copy of the last vertex of the first one
+        final GCodeToolpath.Part second = parts.get(1);
+        assertEquals(first.getIndexCount(), second.getFirstIndex());
+        assertEquals(101, second.getVertexCount());
+        assertEquals(200, second.getIndexCount());
+        assertEquals(0, second.getIndex(0));
+        assertEquals(1, second.getIndex(1));
+        assertEquals(GCodeToolpath.MAX_PART_VERTICES - 1, second.getCoordinate(0, 0), 0);
+        assertEquals(GCodeToolpath.MAX_PART_VERTICES, second.getCoordinate(1, 0), 0);
+        for (int i = 2; i < second.getIndexCount(); i += 2) {
+            assertEquals(second.getCoordinate(second.getIndex(i), 0) + 1,
+                         second.getCoordinate(second.getIndex(i + 1), 0), 0);
+        }
+        assertEquals(count - 1, second.getCoordinate(second.getIndex(second.getIndexCount() - 1), 0), 0);
+    }
+
+    @Test
+    public void testReadsSlic3rSettings() throws Exception {
+        final File file = mFolder.newFile("part.gcode");
+        final StringBuilder gcode = new StringBuilder("; generated by Slic3r 1.2.9 on 2015-10-01 at 12:00:00\n\n"
+                                                      + "; layer_height = 0.2\n");
+        for (int layer = 1; layer <= 300; ++layer) {
+            gcode.append("G1 Z").append(layer * 0.2f).append('\n');
+            for (int i = 0; i < 40; ++i) {
+                gcode.append("G1 X").append(i % 2 * 50).append(" Y").append(i + 1).append(" E")
+                     .append(layer * 40 + i).append(".12345\n");
+            }
+        }
+        gcode.append("; fill_density = 20%");
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(gcode.toString().getBytes(Charset.forName("US-ASCII")));
+        } finally {
+            stream.close();
+        }
+
+        final LoaderGCode loader = new LoaderGCode(file);
+        loader.parse();
+        final GCodeToolpath toolpath = (GCodeToolpath) loader.getParsedObject();
+        assertEquals("0.2", loader.getMetaData().get("layer_height"));
+        assertEquals("20%", loader.getMetaData().get("fill_density"));
+        assertEquals(300, toolpath.getNumLayers());
+        for (int layer = 0; layer < 300; ++layer) {
+            assertEquals(layer * 80, toolpath.getLayerIndexOffset(layer));
+            assertEquals(80, toolpath.getLayerIndexCount(layer));
+        }
+    }
+}
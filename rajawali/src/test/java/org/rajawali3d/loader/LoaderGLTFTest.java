@@ -0,0 +1,178 @@
+package org.rajawali3d.loader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.materials.Material;
+import org.rajawali3d.math.Matrix4;
+import org.rajawali3d.math.Quaternion;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LoaderGLTFTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static final String JSON = "{"
+            + "\"asset\": {\"version\": \"2.0\"},"
+            + "\"scene\": 0, \"scenes\": [{\"nodes\": [0]}],"
+            + "\"nodes\": ["
+            + "  {\"name\": \"parent\", \"mesh\": 0, \"translation\": [1, 2, 3],"
+            + "   \"rotation\": [0, 0, 0.7071067811865476, 0.7071067811865476], \"children\": [1]},"
+            + "  {\"name\": \"child\", \"mesh\": 0,"
+            + "   \"matrix\": [2, 0, 0, 0, 0, 2, 0, 0, 0, 0, 2, 0, 4, 5, 6, 1]}],"
+            + "\"meshes\": [{\"primitives\": [{\"attributes\": {\"POSITION\": 0, \"NORMAL\": 1, \"TEXCOORD_0\": 2},"
+            + "  \"indices\": 3}]}],"
+            + "\"accessors\": ["
+            + "  {\"bufferView\": 0, \"componentType\": 5126, \"count\": 3, \"type\": \"VEC3\","
+            + "   \"min\": [0, 0, 0], \"max\": [1, 1, 0]},"
+            + "  {\"bufferView\": 1, \"componentType\": 5126, \"count\": 3, \"type\": \"VEC3\"},"
+            + "  {\"bufferView\": 1, \"byteOffset\": 12, \"componentType\": 5126, \"count\": 3, \"type\": \"VEC2\"},"
+            + "  {\"bufferView\": 2, \"componentType\": 5121, \"count\": 3, \"type\": \"SCALAR\"}],"
+            + "\"bufferViews\": ["
+            + "  {\"buffer\": 0, \"byteOffset\": 0, \"byteLength\": 36},"
+            + "  {\"buffer\": 0, \"byteOffset\": 36, \"byteLength\": 60, \"byteStride\": 20},"
+            + "  {\"buffer\": 0, \"byteOffset\": 96, \"byteLength\": 3}],"
+            + "\"buffers\": [{\"byteLength\": 100}]"
+            + "}";
+
+    private static final class TestLoader extends LoaderGLTF {
+
+        TestLoader(File file) {
+            super(file);
+        }
+
+        @Override
+        protected Material createMaterial(int index) {
+            return null;
+        }
+    }
+
+    private File writeModel() throws Exception {
+        final ByteBuffer binary = ByteBuffer.allocate(100).order(ByteOrder.LITTLE_ENDIAN);
+        binary.putFloat(0).putFloat(0).putFloat(0);
+        binary.putFloat(1).putFloat(0).putFloat(0);
+        binary.putFloat(0).putFloat(1).putFloat(0);
+        for (int i = 0; i < 3; ++i) {
+            binary.putFloat(0).putFloat(0).putFloat(1).putFloat(i * 0.5f).putFloat(1 - i * 0.5f);
+        }
+        binary.put((byte) 2).put((byte) 1).put((byte) 0);
+
+        byte[] json = JSON.getBytes(Charset.forName("UTF-8"));
+        final int jsonLength = (json.length + 3) & ~3;
+        final ByteBuffer glb = ByteBuffer.allocate(12 + 8 + jsonLength + 8 + 100).order(ByteOrder.LITTLE_ENDIAN);
+        glb.putInt(LoaderGLTF.GLB_MAGIC).putInt(2).putInt(glb.capacity());
+        glb.putInt(jsonLength).putInt(LoaderGLTF.GLB_CHUNK_JSON).put(json);
+        for (int i = json.length; i < jsonLength; ++i) {
+            glb.put((byte) ' ');
+        }
+        glb.putInt(100).putInt(LoaderGLTF.GLB_CHUNK_BIN).put(binary.array());
+
+        final File file = mFolder.newFile("model.glb");
+        final FileOutputStream stream = new FileOutputStream(file);
+        stream.write(glb.array());
+        stream.close();
+        return file;
+    }
+
+    @Test
+    public void testLoadsBinaryModel() throws Exception {
+        final Object3D root = new TestLoader(writeModel()).parse().getParsedObject();
+        assertEquals(1, root.getNumChildren());
+
+        final Object3D parent = root.getChildAt(0);
+        assertEquals("parent", parent.getName());
+        assertFalse(parent.isContainer());
+        assertEquals(new Vector3(1, 2, 3), parent.getPosition());
+        // The file turns x to y, so must the orientation
+        assertTrue(new Vector3(0, 1, 0).equals(new Vector3(1, 0, 0).multiply(
+                new Matrix4().setAll(new Vector3(), new Vector3(1, 1, 1), parent.getOrientation())), 1e-9));
+
+        final Geometry3D geometry = parent.getGeometry();
+        assertEquals(3, geometry.getNumVertices());
+        final FloatBuffer vertices = geometry.getVertices();
+        assertTrue(vertices.isDirect());
+        assertEquals(1, vertices.get(3), 0);
+        assertEquals(1, vertices.get(7), 0);
+        // The interleaved attributes were split into buffers of their own
+        assertEquals(1, geometry.getNormals().get(8), 0);
+        assertEquals(0.5f, geometry.getTextureCoords().get(2), 0);
+        assertEquals(0, geometry.getTextureCoords().get(5), 0);
+        assertTrue(geometry.getIndices() instanceof ShortBuffer);
+        assertEquals(2, ((ShortBuffer) geometry.getIndices()).get(0));
+        assertEquals(1, geometry.getBoundingBox().getMax().y, 0);
+
+        final Object3D child = parent.getChildAt(0);
+        assertEquals("child", child.getName());
+        assertEquals(new Vector3(4, 5, 6), child.getPosition());
+        assertEquals(new Vector3(2, 2, 2), child.getScale());
+        assertNotSame(geometry, child.getGeometry());
+        assertSame(vertices, child.getGeometry().getVertices());
+    }
+
+    @Test
+    public void testMapsTightAccessors() throws Exception {
+        final File file = writeModel();
+        final Object3D parent = new TestLoader(file).parse().getParsedObject().getChildAt(0);
+        // Views of the private mapping, changing them leaves the file alone
+        parent.getGeometry().getVertices().put(3, 42);
+        final Object3D reloaded = new TestLoader(file).parse().getParsedObject().getChildAt(0);
+        assertEquals(1, reloaded.getGeometry().getVertices().get(3), 0);
+    }
+
+    @Test
+    public void testRejectsInvalidModels() throws Exception {
+        final String[] documents = {
+                "{\"asset\": {\"version\": \"1.0\"}}",
+                "{\"asset\": {\"version\": \"2.0\"}, \"extensionsRequired\": [\"KHR_draco_mesh_compression\"]}",
+                "{\"asset\": {\"version\": \"2.0\"}, \"nodes\": [{\"mesh\": 0}],"
+                + " \"meshes\": [{\"primitives\": [{\"attributes\": {\"POSITION\": 0}}]}],"
+                + " \"accessors\": [{\"bufferView\": 0, \"componentType\": 5126, \"count\": 3, \"type\": \"VEC3\"}],"
+                + " \"bufferViews\": [{\"buffer\": 0, \"byteLength\": 12}], \"buffers\": [{\"byteLength\": 12}]}"
+        };
+        for (int i = 0; i < documents.length; ++i) {
+            final File file = mFolder.newFile("invalid" + i + ".gltf");
+            final FileOutputStream stream = new FileOutputStream(file);
+            stream.write(documents[i].getBytes(Charset.forName("UTF-8")));
+            stream.close();
+            try {
+                new TestLoader(file).parse();
+                fail("Parsed " + documents[i]);
+            } catch (ParsingException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testDecomposesTransforms() {
+        final Vector3 position = new Vector3(1, -2, 3);
+        final Vector3 scale = new Vector3(3, 3, 3);
+        final Quaternion rotation = new Quaternion().fromAngleAxis(new Vector3(1, 2, 3), 40);
+        final Matrix4 matrix = new Matrix4().setAll(position, scale, rotation);
+
+        final Vector3 outPosition = new Vector3();
+        final Quaternion outRotation = new Quaternion();
+        final Vector3 outScale = new Vector3();
+        LoaderGLTF.decompose(matrix.getDoubleValues(), outPosition, outRotation, outScale);
+        assertTrue(position.equals(outPosition, 1e-9));
+        assertTrue(scale.equals(outScale, 1e-9));
+        assertTrue(rotation.equals(outRotation, 1e-9));
+    }
+}
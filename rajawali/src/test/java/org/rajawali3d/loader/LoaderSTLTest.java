@@ -0,0 +1,128 @@
+package org.rajawali3d.loader;
+
+import org.junit.Test;
+import org.rajawali3d.Geometry3D;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoaderSTLTest {
+
+    private static ByteBuffer createBinaryStl(int facetCount, Random random) {
+        final ByteBuffer data = ByteBuffer.allocate(LoaderSTL.HEADER_SIZE + facetCount * LoaderSTL.FACET_SIZE)
+                                          .order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(80, facetCount);
+        for (int facet = 0; facet < facetCount; ++facet) {
+            final int offset = LoaderSTL.HEADER_SIZE + facet * LoaderSTL.FACET_SIZE;
+            for (int j = 0; j < 12; ++j) {
+                data.putFloat(offset + j * 4, random.nextFloat() * 2 - 1);
+            }
+            data.putShort(offset + 48, (short) 0x7fff);
+        }
+        return data;
+    }
+
+    private static FloatBuffer allocateFloats(int count) {
+        return ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    @Test
+    public void testReadsFacetsInParallelLikeSequentially() throws Exception {
+        final int facetCount = 10007;
+        final ByteBuffer data = createBinaryStl(facetCount, new Random(3));
+        final FloatBuffer vertices = allocateFloats(facetCount * 9);
+        final FloatBuffer normals = allocateFloats(facetCount * 9);
+        final FloatBuffer parallelVertices = allocateFloats(facetCount * 9);
+        final FloatBuffer parallelNormals = allocateFloats(facetCount * 9);
+        assertEquals(0, LoaderSTL.readFacets(data, facetCount, vertices, normals, false, 1));
+        assertEquals(0, LoaderSTL.readFacets(data, facetCount, parallelVertices, parallelNormals, false, 3));
+        assertEquals(vertices, parallelVertices);
+        assertEquals(normals, parallelNormals);
+
+        // Vertices follow the stored normal, which is repeated for every corner
+        final int offset = LoaderSTL.HEADER_SIZE + 42 * LoaderSTL.FACET_SIZE;
+        assertEquals(data.getFloat(offset + 12), vertices.get(42 * 9), 0);
+        assertEquals(data.getFloat(offset + 44), vertices.get(42 * 9 + 8), 0);
+        for (int corner = 0; corner < 3; ++corner) {
+            assertEquals(data.getFloat(offset), normals.get(42 * 9 + corner * 3), 0);
+            assertEquals(data.getFloat(offset + 8), normals.get(42 * 9 + corner * 3 + 2), 0);
+        }
+    }
+
+    @Test
+    public void testReplacesBadNormals() {
+        final ByteBuffer data = createBinaryStl(2, new Random(5));
+        data.putFloat(LoaderSTL.HEADER_SIZE + LoaderSTL.FACET_SIZE + 4, Float.NaN);
+        final FloatBuffer normals = allocateFloats(18);
+        assertEquals(1, LoaderSTL.readFacets(data, 0, 2, allocateFloats(18), normals, false));
+        for (int i = 9; i < 18; ++i) {
+            assertEquals(0, normals.get(i), 0);
+        }
+    }
+
+    @Test
+    public void testComputesFaceNormals() {
+        final ByteBuffer data = createBinaryStl(1, new Random(7));
+        final float[] corners = { 0, 0, 0, 2, 0, 0, 0, 3, 0 };
+        for (int j = 0; j < 9; ++j) {
+            data.putFloat(LoaderSTL.HEADER_SIZE + 12 + j * 4, corners[j]);
+        }
+        final FloatBuffer normals = allocateFloats(9);
+        LoaderSTL.readFacets(data, 0, 1, allocateFloats(9), normals, true);
+        for (int corner = 0; corner < 3; ++corner) {
+            assertEquals(0, normals.get(corner * 3), 0);
+            assertEquals(0, normals.get(corner * 3 + 1), 0);
+            assertEquals(1, normals.get(corner * 3 + 2), 1e-6);
+        }
+    }
+
+    @Test
+    public void testComputesSmoothNormals() {
+        // Two facets folded along the x axis, one facing +z and one facing +y
+        final FloatBuffer vertices = allocateFloats(12);
+        vertices.put(new float[]{ 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, -1 }).position(0);
+        final float[] normals = LoaderSTL.computeSmoothNormals(vertices, new int[]{ 0, 1, 2, 0, 1, 3 }, 4);
+        final float diagonal = (float) Math.sqrt(0.5);
+        // Shared vertices average both facets
+        assertEquals(0, normals[0], 1e-6);
+        assertEquals(diagonal, normals[1], 1e-6);
+        assertEquals(diagonal, normals[2], 1e-6);
+        // The others only belong to one facet
+        assertEquals(1, normals[8], 1e-6);
+        assertEquals(1, normals[10], 1e-6);
+    }
+
+    @Test
+    public void testCreatesSequentialIndices() {
+        final Buffer shorts = LoaderSTL.createSequentialIndices(Geometry3D.MAX_SHORT_INDEX_VERTICES);
+        assertTrue(shorts instanceof ShortBuffer);
+        assertTrue(shorts.isDirect());
+        assertEquals(Geometry3D.MAX_SHORT_INDEX_VERTICES - 1, ((ShortBuffer) shorts).get(65535) & 0xffff);
+        final Buffer ints = LoaderSTL.createSequentialIndices(Geometry3D.MAX_SHORT_INDEX_VERTICES + 3);
+        assertTrue(ints instanceof IntBuffer);
+        assertEquals(65538, ((IntBuffer) ints).get(65538));
+    }
+
+    @Test
+    public void testGeometryKeepsDirectBuffers() {
+        final FloatBuffer vertices = allocateFloats(9);
+        final FloatBuffer normals = allocateFloats(9);
+        final Buffer indices = LoaderSTL.createSequentialIndices(3);
+        final Geometry3D geometry = new Geometry3D();
+        geometry.setData(vertices, normals, null, indices, false);
+        assertTrue(vertices == geometry.getVertices());
+        assertTrue(normals == geometry.getNormals());
+        assertTrue(indices == geometry.getIndices());
+        assertEquals(3, geometry.getNumVertices());
+        assertEquals(3, geometry.getNumIndices());
+        assertTrue(geometry.hasNormals());
+    }
+}
@@ -0,0 +1,225 @@
+package org.rajawali3d.loader;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.materials.Material;
+import org.rajawali3d.math.Quaternion;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MeshCacheTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static final MeshCache.MaterialFactory NO_MATERIALS = new MeshCache.MaterialFactory() {
+        @NonNull
+        @Override
+        public Material createMaterial(@NonNull MeshCache.MaterialReference reference) {
+            throw new AssertionError("The hierarchy has no materials.");
+        }
+    };
+
+    private static Object3D createHierarchy() {
+        final Object3D root = new Object3D("root");
+        final Object3D quad = new Object3D("quad");
+        quad.setData(new float[]{ 0, 0, 0, 1, 0, 0, 1, 2, 0, 0, 2, 0 },
+                     new float[]{ 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1 },
+                     new float[]{ 0, 0, 1, 0, 1, 1, 0, 1 }, null, new int[]{ 0, 1, 2, 0, 2, 3 }, false);
+        quad.setPosition(1, 2, 3);
+        quad.setDoubleSided(true);
+        root.addChild(quad);
+
+        final Object3D group = new Object3D("group");
+        group.setScale(2, 3, 4);
+        group.setOrientation(new Quaternion(0, 1, 0, 0));
+        root.addChild(group);
+
+        final Object3D triangle = new Object3D();
+        final FloatBuffer vertices = ByteBuffer.allocateDirect(36).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        vertices.put(new float[]{ -1, 0, 5, 1, 0, 5, 0, 7, 5 }).position(0);
+        final IntBuffer indices = ByteBuffer.allocateDirect(12).order(ByteOrder.nativeOrder()).asIntBuffer();
+        indices.put(new int[]{ 2, 1, 0 }).position(0);
+        triangle.setData(vertices, null, null, indices, false);
+        triangle.getGeometry().setColors(new float[]{ 1, 0, 0, 1, 0, 1, 0, 1, 0, 0, 1, 0.5f });
+        triangle.setVisible(false);
+        group.addChild(triangle);
+        return root;
+    }
+
+    @Test
+    public void testReadsWhatWasWritten() throws Exception {
+        final File file = mFolder.newFile("model" + MeshCache.EXTENSION);
+        MeshCache.write(createHierarchy(), file);
+        assertEquals(0, file.length() % 4);
+        final Object3D root = MeshCache.read(file, NO_MATERIALS);
+
+        assertEquals("root", root.getName());
+        assertTrue(root.isContainer());
+        assertEquals(2, root.getNumChildren());
+
+        final Object3D quad = root.getChildAt(0);
+        assertEquals("quad", quad.getName());
+        assertFalse(quad.isContainer());
+        assertTrue(quad.isDoubleSided());
+        assertEquals(3, quad.getPosition().z, 0);
+        final Geometry3D quadGeometry = quad.getGeometry();
+        assertEquals(4, quadGeometry.getNumVertices());
+        assertEquals(6, quadGeometry.getNumIndices());
+        assertTrue(quadGeometry.getVertices().isDirect());
+        assertEquals(2, quadGeometry.getVertices().get(7), 0);
+        assertEquals(1, quadGeometry.getNormals().get(11), 0);
+        assertEquals(1, quadGeometry.getTextureCoords().get(5), 0);
+        assertTrue(quadGeometry.getIndices() instanceof ShortBuffer);
+        assertEquals(3, ((ShortBuffer) quadGeometry.getIndices()).get(5));
+        assertTrue(quadGeometry.hasBoundingBox());
+        assertEquals(2, quadGeometry.getBoundingBox().getMax().y, 0);
+
+        final Object3D group = root.getChildAt(1);
+        assertTrue(group.isContainer());
+        assertEquals(4, group.getScale().z, 0);
+        assertEquals(1, group.getOrientation().x, 0);
+        final Object3D triangle = group.getChildAt(0);
+        assertNull(triangle.getName());
+        assertFalse(triangle.isVisible());
+        final Geometry3D triangleGeometry = triangle.getGeometry();
+        assertFalse(triangleGeometry.hasNormals());
+        assertTrue(triangleGeometry.getIndices() instanceof IntBuffer);
+        assertEquals(2, ((IntBuffer) triangleGeometry.getIndices()).get(0));
+        assertEquals(0.5f, triangleGeometry.getColors().get(11), 0);
+        assertEquals(-1, triangleGeometry.getBoundingBox().getMin().x, 0);
+
+        // Buffers are private views of the file
+        triangleGeometry.getVertices().put(0, 42);
+        assertEquals(-1, MeshCache.read(file, NO_MATERIALS).getChildAt(1).getChildAt(0).getGeometry()
+                                  .getVertices().get(0), 0);
+    }
+
+    @Test
+    public void testRejectsInvalidData() throws Exception {
+        final File file = mFolder.newFile("model" + MeshCache.EXTENSION);
+        MeshCache.write(createHierarchy(), file);
+        final RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(file.length() - 10);
+        truncated.close();
+        try {
+            MeshCache.read(file, NO_MATERIALS);
+            fail("Read a truncated cache.");
+        } catch (IOException expected) {
+        }
+        try {
+            MeshCache.read(ByteBuffer.wrap(new byte[]{ 'O', 'B', 'J', ' ', 1, 0, 0, 0 }), NO_MATERIALS);
+            fail("Read a file which is not a cache.");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static final class CountingLoader extends AMeshLoader {
+
+        int parses;
+        String options = "";
+
+        CountingLoader(File file) {
+            super(file);
+        }
+
+        @Override
+        protected String getParseOptions() {
+            return options;
+        }
+
+        @Override
+        public AMeshLoader parse() throws ParsingException {
+            ++parses;
+            mRootObject.addChild(createHierarchy());
+            return this;
+        }
+    }
+
+    @Test
+    public void testParsesOnceAndReadsFromCache() throws Exception {
+        final File model = mFolder.newFile("model.obj");
+        final FileOutputStream stream = new FileOutputStream(model);
+        stream.write(new byte[]{ 'v', ' ', '1' });
+        stream.close();
+        final File cacheDirectory = new File(mFolder.getRoot(), "cache");
+        final CountingLoader source = new CountingLoader(model);
+
+        final CachedMeshLoader first = new CachedMeshLoader(source, cacheDirectory);
+        first.parse();
+        assertFalse(first.isLoadedFromCache());
+        assertTrue(first.getCacheFile().isFile());
+        assertEquals("quad", first.getParsedObject().getChildAt(0).getChildAt(0).getName());
+
+        final CachedMeshLoader second = new CachedMeshLoader(source, cacheDirectory);
+        second.parse();
+        assertTrue(second.isLoadedFromCache());
+        assertEquals(1, source.parses);
+        assertEquals(first.getCacheFile(), second.getCacheFile());
+        assertEquals("quad", second.getParsedObject().getChildAt(0).getChildAt(0).getName());
+
+        // A changed model gets a cache of its own
+        final FileOutputStream changed = new FileOutputStream(model, true);
+        changed.write('0');
+        changed.close();
+        final CachedMeshLoader third = new CachedMeshLoader(source, cacheDirectory);
+        third.parse();
+        assertFalse(third.isLoadedFromCache());
+        assertEquals(2, source.parses);
+        assertFalse(first.getCacheFile().equals(third.getCacheFile()));
+    }
+
+    @Test
+    public void testWrappedLoaderOptionsGetCachesOfTheirOwn() throws Exception {
+        final File model = mFolder.newFile("model.stl");
+        final File cacheDirectory = new File(mFolder.getRoot(), "cache");
+        final CountingLoader source = new CountingLoader(model);
+        source.options = "normals=FACE";
+
+        final CachedMeshLoader first = new CachedMeshLoader(source, cacheDirectory);
+        first.parse();
+        source.options = "normals=SMOOTH";
+        final CachedMeshLoader second = new CachedMeshLoader(source, cacheDirectory);
+        second.parse();
+        assertFalse(second.isLoadedFromCache());
+        assertEquals(2, source.parses);
+        assertFalse(first.getCacheFile().equals(second.getCacheFile()));
+
+        source.options = "normals=FACE";
+        final CachedMeshLoader third = new CachedMeshLoader(source, cacheDirectory);
+        third.parse();
+        assertTrue(third.isLoadedFromCache());
+        assertEquals(first.getCacheFile(), third.getCacheFile());
+    }
+
+    @Test
+    public void testRejectsProcessingStepsOnWrappedLoader() throws Exception {
+        final CountingLoader source = new CountingLoader(mFolder.newFile("model.obj"));
+        source.setVertexQuantization(true);
+        try {
+            new CachedMeshLoader(source, new File(mFolder.getRoot(), "cache")).parse();
+            fail("Cached a model the wrapped loader would have processed.");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(0, source.parses);
+    }
+}
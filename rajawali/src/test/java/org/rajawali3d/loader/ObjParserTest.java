@@ -0,0 +1,225 @@
+package org.rajawali3d.loader;
+
+import org.junit.Test;
+import org.rajawali3d.util.IntArrayList;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ObjParserTest {
+
+    private final List<String>  mStatements      = new ArrayList<>();
+    private final IntArrayList  mVertexIndices   = new IntArrayList();
+    private final IntArrayList  mTexCoordIndices = new IntArrayList();
+    private final IntArrayList  mNormalIndices   = new IntArrayList();
+
+    private ObjParser parse(String text) throws Exception {
+        return parse(new ByteArrayInputStream(text.getBytes(Charset.defaultCharset())));
+    }
+
+    private ObjParser parse(InputStream stream) throws Exception {
+        final ObjParser parser = new ObjParser(new ObjParser.StatementListener() {
+            @Override
+            public void onStatement(String line) {
+                mStatements.add(line);
+            }
+        });
+        parser.setFaceTarget(mVertexIndices, mTexCoordIndices, mNormalIndices);
+        parser.parse(stream);
+        return parser;
+    }
+
+    private static final String TRIANGLE = "# triangle\n"
+                                           + "o tri\n"
+                                           + "v 0.0 0.0 0.0\n"
+                                           + "v 1.0 0.0 0.0\n"
+                                           + "v 0.0 1.0 0.0\n"
+                                           + "vt 0.0 0.25\n"
+                                           + "vt 1.0 0.25\n"
+                                           + "vt 0.0 1.0\n"
+                                           + "vn 0 0 1\n"
+                                           + "usemtl red\n"
+                                           + "f 1/1/1 2/2/1 3/3/1\n";
+
+    @Test
+    public void testParsesTriangle() throws Exception {
+        final ObjParser parser = parse(TRIANGLE);
+        assertArrayEquals(new float[]{ 0, 0, 0, 1, 0, 0, 0, 1, 0 }, parser.getVertices().toArray(), 0);
+        // Texture coordinates are flipped vertically
+        assertArrayEquals(new float[]{ 0, 0.75f, 1, 0.75f, 0, 0 }, parser.getTexCoords().toArray(), 0);
+        assertArrayEquals(new float[]{ 0, 0, 1 }, parser.getNormals().toArray(), 0);
+        assertArrayEquals(new int[]{ 0, 1, 2 }, mVertexIndices.toArray());
+        assertArrayEquals(new int[]{ 0, 1, 2 }, mTexCoordIndices.toArray());
+        assertArrayEquals(new int[]{ 0, 0, 0 }, mNormalIndices.toArray());
+        assertEquals(2, mStatements.size());
+        assertEquals("o tri", mStatements.get(0));
+        assertEquals("usemtl red", mStatements.get(1));
+    }
+
+    @Test
+    public void testSplitsQuadsWithoutTexCoords() throws Exception {
+        parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nv 0 1 0\nvn 0 0 1\nf 1//1 2//1 3//1 4//1\n");
+        assertArrayEquals(new int[]{ 0, 1, 2, 0, 2, 3 }, mVertexIndices.toArray());
+        // Quads always add texture coordinate indices, even when there are none
+        assertArrayEquals(new int[]{ 0, 0, 0, 0, 0, 0 }, mTexCoordIndices.toArray());
+        assertArrayEquals(new int[]{ 0, 0, 0, 0, 0, 0 }, mNormalIndices.toArray());
+    }
+
+    @Test
+    public void testResolvesNegativeIndices() throws Exception {
+        parse("v 0 0 0\nv 1 0 0\nv 1 1 0\nvt 0 0\nf -3/-1 -2/-1 -1/-1\nv 0 1 0\nf 1 3 -1\n");
+        assertArrayEquals(new int[]{ 0, 1, 2, 0, 2, 3 }, mVertexIndices.toArray());
+        assertArrayEquals(new int[]{ 0, 0, 0 }, mTexCoordIndices.toArray());
+        assertEquals(0, mNormalIndices.size());
+    }
+
+    @Test
+    public void testHandlesLineEndingsAndContinuations() throws Exception {
+        final ObjParser parser = parse("v 1 2 \\\n3\r\nv 4 5 6\rv 7 8 9\r\n\r\ng a b\\\n c");
+        assertArrayEquals(new float[]{ 1, 2, 3, 4, 5, 6, 7, 8, 9 }, parser.getVertices().toArray(), 0);
+        assertEquals(1, mStatements.size());
+        assertEquals("g a b c", mStatements.get(0));
+    }
+
+    @Test
+    public void testParsesAcrossReadBoundaries() throws Exception {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20000; ++i) {
+            builder.append("v ").append(i).append(".5 -").append(i).append(" 1e-3\r\n");
+        }
+        final byte[] data = builder.toString().getBytes(Charset.defaultCharset());
+        // Hands out odd sized pieces so lines and \r\n pairs are split between reads
+        final InputStream stream = new ByteArrayInputStream(data) {
+            private int mRead;
+
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1 + (mRead++ * 7919) % 4093));
+            }
+        };
+        final float[] vertices = parse(stream).getVertices().toArray();
+        assertEquals(60000, vertices.length);
+        for (int i = 0; i < 20000; ++i) {
+            assertEquals(i + 0.5f, vertices[i * 3], 0);
+            assertEquals(-i, vertices[i * 3 + 1], 0);
+            assertEquals(1e-3f, vertices[i * 3 + 2], 0);
+        }
+    }
+
+    /**
+     * Starts new index lists at every statement, as LoaderOBJ does for objects, groups and materials.
+     */
+    private static final class Recorder implements ObjParser.StatementListener {
+
+        final List<String>       statements = new ArrayList<>();
+        final List<IntArrayList> indices    = new ArrayList<>();
+        ObjParser parser;
+
+        void startTarget() {
+            final IntArrayList vertexIndices = new IntArrayList();
+            final IntArrayList texCoordIndices = new IntArrayList();
+            final IntArrayList normalIndices = new IntArrayList();
+            indices.add(vertexIndices);
+            indices.add(texCoordIndices);
+            indices.add(normalIndices);
+            parser.setFaceTarget(vertexIndices, texCoordIndices, normalIndices);
+        }
+
+        @Override
+        public void onStatement(String line) {
+            statements.add(line);
+            startTarget();
+        }
+    }
+
+    private static byte[] createLargeObj() {
+        final StringBuilder builder = new StringBuilder("mtllib scene.mtl\n");
+        for (int object = 0; object < 40; ++object) {
+            builder.append("o part").append(object).append('\n');
+            for (int i = 0; i < 600; ++i) {
+                builder.append("v ").append(i * 0.001f).append(' ').append(object).append(" -").append(i).append(".25\n");
+                builder.append("vt 0.").append(i).append(" 0.5\r\n");
+                builder.append("vn 0 1 0\n");
+            }
+            builder.append("g group").append(object % 3).append(" \\\n").append("shared\n");
+            for (int i = 0; i < 200; ++i) {
+                builder.append("usemtl mat").append(i % 2).append('\n');
+                builder.append("f -3/-3/-3 -2/-2/-2 -1/-1/-1\n");
+                final int a = object * 600 + i + 1;
+                builder.append("f ").append(a).append("//").append(a).append(' ').append(a + 1).append("//")
+                       .append(a + 1).append(' ').append(a + 2).append("//").append(a + 2).append(' ')
+                       .append(a + 3).append("//").append(a + 3).append('\n');
+                builder.append("# comment \\\n");
+                builder.append("f ").append(a).append('/').append(a).append(' ').append(a + 1).append('/')
+                       .append(a + 1).append(" \\\n").append(a + 2).append('/').append(a + 2).append('\n');
+            }
+        }
+        return builder.toString().getBytes(Charset.defaultCharset());
+    }
+
+    @Test
+    public void testParsesInParallelLikeSequentially() throws Exception {
+        final byte[] data = createLargeObj();
+        assertTrue(ObjParser.split(data, data.length, 16).length > 8);
+
+        final Recorder sequential = new Recorder();
+        final ObjParser sequentialParser = new ObjParser(sequential);
+        sequential.parser = sequentialParser;
+        sequential.startTarget();
+        sequentialParser.parse(new ByteArrayInputStream(data));
+
+        final Recorder parallel = new Recorder();
+        final ObjParser parallelParser = new ObjParser(parallel);
+        parallel.parser = parallelParser;
+        parallel.startTarget();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            parallelParser.parse(data, data.length, executor, 16);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertArrayEquals(sequentialParser.getVertices().toArray(), parallelParser.getVertices().toArray(), 0);
+        assertArrayEquals(sequentialParser.getTexCoords().toArray(), parallelParser.getTexCoords().toArray(), 0);
+        assertArrayEquals(sequentialParser.getNormals().toArray(), parallelParser.getNormals().toArray(), 0);
+        assertEquals(sequential.statements, parallel.statements);
+        assertEquals(sequential.indices.size(), parallel.indices.size());
+        for (int i = 0; i < sequential.indices.size(); ++i) {
+            assertArrayEquals(sequential.indices.get(i).toArray(), parallel.indices.get(i).toArray());
+        }
+    }
+
+    @Test
+    public void testSplitsAfterCompleteLines() {
+        final byte[] data = createLargeObj();
+        final int[] bounds = ObjParser.split(data, data.length, 64);
+        assertEquals(0, bounds[0]);
+        assertEquals(data.length, bounds[bounds.length - 1]);
+        for (int i = 1; i < bounds.length - 1; ++i) {
+            assertTrue(bounds[i] > bounds[i - 1]);
+            assertEquals('\n', data[bounds[i] - 1]);
+            assertTrue(data[bounds[i] - 2] != '\\');
+        }
+    }
+
+    @Test
+    public void testRejectsMissingValues() throws Exception {
+        for (String text : new String[]{ "v 1 2\n", "vt 1\n", "f\n", "f 1/1 2\n", "v 1 x 2\n" }) {
+            try {
+                parse(text);
+                fail("Parsed " + text);
+            } catch (ParsingException | NumberFormatException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.rajawali3d.loader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class X3DReaderTest {
+
+    private static final String SCENE = "﻿<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                                        + "<!DOCTYPE X3D PUBLIC \"ISO//Web3D//DTD X3D 3.3//EN\" "
+                                        + "\"http://www.web3d.org/specifications/x3d-3.3.dtd\" "
+                                        + "[ <!ENTITY x \"y\"> ]>\n"
+                                        + "<X3D profile='Interchange' version='3.3'>\n"
+                                        + "  <head><meta name=\"title\" content=\"a &amp; b &#65;&#x42;\"/></head>\n"
+                                        + "  <Scene>\n"
+                                        + "    <!-- <Shape> in a comment -- is ignored -->\n"
+                                        + "    <Transform DEF=\"Root\" translation=\"1 2 3\">\n"
+                                        + "      <Shape>\n"
+                                        + "        <IndexedTriangleSet DEF='Mesh' solid=\"false\" index=\"0 1 2, 2 1 3\">\n"
+                                        + "          <Coordinate point=\"0 0 0, 1 0 0, 0 1 0,\n"
+                                        + "                             1.5e0 1 -0.25\"/>\n"
+                                        + "          <Normal DEF=\"Normals\" vector=\"0 0 1 0 0 1 0 0 1 0 0 1\" />\n"
+                                        + "        </IndexedTriangleSet>\n"
+                                        + "      </Shape>\n"
+                                        + "    </Transform>\n"
+                                        + "    <ROUTE fromNode=\"Timer\" toNode=\"Mover\"/>\n"
+                                        + "    <Script><![CDATA[ if (a < b) { } ]]></Script>\n"
+                                        + "  </Scene>\n"
+                                        + "</X3D>\n";
+
+    private static X3DNode read(String document) throws Exception {
+        return new X3DReader(new ByteArrayInputStream(document.getBytes(Charset.forName("UTF-8")))).read();
+    }
+
+    @Test
+    public void testReadsElementsAndAttributes() throws Exception {
+        final X3DNode document = read(SCENE);
+        assertEquals(1, document.mChildren.size());
+        final X3DNode x3d = document.mChildren.get(0);
+        assertEquals("X3D", x3d.mName);
+        assertEquals("Interchange", x3d.getAttribute("profile"));
+        assertEquals("a & b AB", x3d.findFirst("meta").getAttribute("content"));
+
+        final X3DNode transform = x3d.findFirst("Transform");
+        assertEquals("Root", transform.getAttribute("DEF"));
+        assertArrayEquals(new float[]{ 1, 2, 3 }, transform.getFloats("translation"), 0);
+
+        final X3DNode mesh = transform.findFirst(null, "solid", null);
+        assertEquals("IndexedTriangleSet", mesh.mName);
+        assertArrayEquals(new int[]{ 0, 1, 2, 2, 1, 3 }, mesh.getInts("index"));
+        assertArrayEquals(new float[]{ 0, 0, 0, 1, 0, 0, 0, 1, 0, 1.5f, 1, -0.25f },
+                          mesh.findFirst("Coordinate").getFloats("point"), 0);
+        assertEquals(mesh, x3d.findFirst("Normal", "DEF", "Normals").mParent);
+        assertNull(x3d.findFirst("Normal", "DEF", "Other"));
+
+        // The comment and the CDATA section hold no elements
+        final X3DNode scene = x3d.findFirst("Scene");
+        assertEquals(3, scene.mChildren.size());
+        assertEquals("Mover", scene.findFirst("ROUTE", "fromNode", "Timer").getAttribute("toNode"));
+        assertEquals(1, scene.findAll("Shape").size());
+    }
+
+    @Test
+    public void testReleasesArrays() throws Exception {
+        final X3DNode shape = read(SCENE).findFirst("Shape");
+        assertNotNull(LoaderX3D.getArray(shape, "Normal", "vector"));
+        shape.releaseArrays();
+        assertNull(LoaderX3D.getArray(shape, "Normal", "vector"));
+        assertNull(shape.findFirst("IndexedTriangleSet").getInts("index"));
+        final X3DNode coordinate = shape.findFirst("Coordinate");
+        assertFalse(coordinate.hasAttribute("point"));
+        assertEquals("Normals", shape.findFirst("Normal").getAttribute("DEF"));
+    }
+
+    @Test
+    public void testReadsLargeAttributesAcrossBuffers() throws Exception {
+        final int count = 50000;
+        final StringBuilder document = new StringBuilder("<X3D><Coordinate point=\"");
+        for (int i = 0; i < count; ++i) {
+            document.append(i).append(".5 ");
+        }
+        document.append("\"/></X3D>");
+        final float[] points = read(document.toString()).findFirst("Coordinate").getFloats("point");
+        assertEquals(count, points.length);
+        for (int i = 0; i < count; ++i) {
+            assertEquals(i + 0.5f, points[i], 0);
+        }
+    }
+
+    @Test
+    public void testRejectsMalformedDocuments() {
+        final String[] documents = { "", "<X3D>", "<X3D></Scene>", "<X3D a=1/>", "<X3D point=\"1 x\"/>",
+                                     "<X3D a=\"&unknown;\"/>", "<X3D><!-- open </X3D>" };
+        for (String document : documents) {
+            try {
+                read(document);
+                fail("Read " + document);
+            } catch (ParsingException expected) {
+            } catch (Exception e) {
+                fail("Unexpected " + e + " for " + document);
+            }
+        }
+    }
+}
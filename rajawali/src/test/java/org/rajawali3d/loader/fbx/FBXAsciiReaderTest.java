@@ -0,0 +1,124 @@
+package org.rajawali3d.loader.fbx;
+
+import org.junit.Test;
+import org.rajawali3d.loader.ParsingException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class FBXAsciiReaderTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static FBXNode read(String text) throws Exception {
+        return new FBXAsciiReader(new ByteArrayInputStream(text.getBytes(UTF_8))).read();
+    }
+
+    @Test
+    public void testReadsVersion6Nodes() throws Exception {
+        final FBXNode document = read("; FBX 6.1.0 project file\n"
+                                      + "; ----------------------------------------------------\n"
+                                      + "\n"
+                                      + "Objects:  {\n"
+                                      + "\tModel: \"Model::Cube\", \"Mesh\" {\n"
+                                      + "\t\tProperties60:  {\n"
+                                      + "\t\t\tProperty: \"Lcl Translation\", \"Lcl Translation\", \"A+\",1,2.5,-3\n"
+                                      + "\t\t}\n"
+                                      + "\t\tShading: Y\n"
+                                      + "\t\tVertices: 1,1,-1,1,-1,-1\n"
+                                      + ",-1,-1.5e1,-1\n"
+                                      + "\t\tPolygonVertexIndex: 0,1,\n"
+                                      + "\t\t-3\n"
+                                      + "\t\tName: \"\"\n"
+                                      + "\t}\n"
+                                      + "}\n"
+                                      + "Connections:  {\n"
+                                      + "\tConnect: \"OO\", \"Model::Cube\", \"Model::Scene\" ; to the root\n"
+                                      + "}\n");
+        assertEquals(2, document.getChildren().size());
+        final FBXNode model = document.getChild("Objects").getChild("Model");
+        assertEquals("Model::Cube", model.getString(0));
+        assertEquals("Mesh", model.getString(1));
+
+        final FBXNode property = model.getChild("Properties60").getChild("Property");
+        assertEquals(6, property.getPropertyCount());
+        assertEquals("Lcl Translation", property.getString(0));
+        assertEquals(1, property.getLong(3));
+        assertEquals(2.5, property.getDouble(4), 0);
+        assertEquals(-3, property.getDouble(5), 0);
+
+        assertEquals("Y", model.getChild("Shading").getString(0));
+        assertArrayEquals(new float[]{ 1, 1, -1, 1, -1, -1, -1, -15, -1 }, model.getChild("Vertices").getFloats(), 0);
+        assertArrayEquals(new int[]{ 0, 1, -3 }, model.getChild("PolygonVertexIndex").getInts());
+        assertEquals("", model.getChild("Name").getString(0));
+
+        final FBXNode connect = document.getChild("Connections").getChild("Connect");
+        assertEquals(3, connect.getPropertyCount());
+        assertEquals("Model::Scene", connect.getString(2));
+    }
+
+    @Test
+    public void testReadsVersion7Arrays() throws Exception {
+        final FBXNode document = read("FBXHeaderExtension:  {\n"
+                                      + "\tFBXVersion: 7400\n"
+                                      + "}\n"
+                                      + "Objects:  {\n"
+                                      + "\tGeometry: 140234567890123, \"Geometry::Cube\", \"Mesh\" {\n"
+                                      + "\t\tVertices: *6 {\n"
+                                      + "\t\t\ta: 0.5,1,2,3,4,5\n"
+                                      + "\t\t} \n"
+                                      + "\t\tPolygonVertexIndex: *3 {\n"
+                                      + "\t\t\ta: 0,1,-3\n"
+                                      + "\t\t}\n"
+                                      + "\t}\n"
+                                      + "}\n");
+        assertEquals(7400, document.getChild("FBXHeaderExtension").getChild("FBXVersion").getLong(0));
+        final FBXNode geometry = document.getChild("Objects").getChild("Geometry");
+        assertEquals(140234567890123L, geometry.getLong(0));
+        assertEquals("Geometry::Cube", geometry.getString(1));
+        assertArrayEquals(new float[]{ 0.5f, 1, 2, 3, 4, 5 }, geometry.getChild("Vertices").getFloats(), 0);
+        assertArrayEquals(new int[]{ 0, 1, -3 }, geometry.getChild("PolygonVertexIndex").getInts());
+    }
+
+    @Test
+    public void testReadsTokensAcrossBufferBoundaries() throws Exception {
+        final StringBuilder text = new StringBuilder("Vertices: ");
+        final int count = 40000;
+        for (int i = 0; i < count; ++i) {
+            text.append(i).append(".25,");
+            if (i % 10 == 9) {
+                text.append('\n');
+            }
+        }
+        text.append("0\n");
+        final byte[] bytes = text.toString().getBytes(UTF_8);
+        // Hands out a few bytes at a time, so tokens are split between reads
+        final InputStream stream = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        final FBXNode vertices = new FBXAsciiReader(stream).read().getChild("Vertices");
+        assertNotNull(vertices);
+        final float[] values = vertices.getFloats();
+        assertEquals(count + 1, values.length);
+        assertEquals(12345.25f, values[12345], 0);
+        assertEquals(0, values[count], 0);
+    }
+
+    @Test
+    public void testRejectsUnbalancedBlocks() throws Exception {
+        try {
+            read("Objects:  {\n\tModel: \"Model::Cube\", \"Mesh\" {\n");
+            fail("Read an unterminated block.");
+        } catch (ParsingException expected) {
+        }
+    }
+}
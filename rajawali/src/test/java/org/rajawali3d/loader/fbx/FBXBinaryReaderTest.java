@@ -0,0 +1,201 @@
+package org.rajawali3d.loader.fbx;
+
+import org.junit.Test;
+import org.rajawali3d.loader.ParsingException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FBXBinaryReaderTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Writes records of a binary FBX file with 32 or 64 bit offsets.
+     */
+    private static final class Writer {
+
+        final ByteArrayOutputStream mOut = new ByteArrayOutputStream();
+        final boolean mIs64Bit;
+
+        Writer(int version) {
+            mIs64Bit = version >= 7500;
+            mOut.write(FBXBinaryReader.MAGIC, 0, FBXBinaryReader.MAGIC.length);
+            mOut.write(0x1a);
+            mOut.write(0);
+            writeInt(version);
+        }
+
+        private Writer(boolean is64Bit) {
+            mIs64Bit = is64Bit;
+        }
+
+        void writeInt(int value) {
+            mOut.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array(), 0, 4);
+        }
+
+        void writeOffset(long value) {
+            if (mIs64Bit) {
+                mOut.write(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(value).array(), 0, 8);
+            } else {
+                writeInt((int) value);
+            }
+        }
+
+        /**
+         * @param properties Encoded properties.
+         * @param children   Encoded child records, each followed by the null record when not empty.
+         */
+        byte[] record(String name, int numProperties, byte[] properties, byte[] children, long start) {
+            final int headerSize = mIs64Bit ? 25 : 13;
+            final byte[] nameBytes = name.getBytes(UTF_8);
+            final int nullRecord = children.length > 0 ? headerSize : 0;
+            final long end = start + headerSize + nameBytes.length + properties.length + children.length + nullRecord;
+            final Writer header = new Writer(mIs64Bit);
+            header.writeOffset(end);
+            header.writeOffset(numProperties);
+            header.writeOffset(properties.length);
+            header.mOut.write(nameBytes.length);
+            header.mOut.write(nameBytes, 0, nameBytes.length);
+            header.mOut.write(properties, 0, properties.length);
+            header.mOut.write(children, 0, children.length);
+            header.mOut.write(new byte[nullRecord], 0, nullRecord);
+            return header.mOut.toByteArray();
+        }
+
+        int headerLength(String name, byte[] properties) {
+            return (mIs64Bit ? 25 : 13) + name.length() + properties.length;
+        }
+    }
+
+    private static byte[] stringProperty(String value) {
+        final byte[] bytes = value.getBytes(UTF_8);
+        return ByteBuffer.allocate(5 + bytes.length).order(ByteOrder.LITTLE_ENDIAN).put((byte) 'S')
+                .putInt(bytes.length).put(bytes).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] compressedDoubles(double[] values) {
+        final ByteBuffer raw = ByteBuffer.allocate(values.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (double value : values) {
+            raw.putDouble(value);
+        }
+        final Deflater deflater = new Deflater();
+        deflater.setInput(raw.array());
+        deflater.finish();
+        final byte[] compressed = new byte[1024];
+        final int length = deflater.deflate(compressed);
+        deflater.end();
+        return ByteBuffer.allocate(13 + length).order(ByteOrder.LITTLE_ENDIAN).put((byte) 'd')
+                .putInt(values.length).putInt(1).putInt(length).put(compressed, 0, length).array();
+    }
+
+    private static byte[] createFile(int version) {
+        final Writer file = new Writer(version);
+        final int start = file.mOut.size();
+
+        final byte[] modelProperties = concat(
+                ByteBuffer.allocate(9).order(ByteOrder.LITTLE_ENDIAN).put((byte) 'L').putLong(1234567890123L).array(),
+                stringProperty("Cube\0\1Model"), stringProperty("Mesh"));
+        final String modelName = "Model";
+        final long childStart = start + file.headerLength(modelName, modelProperties);
+
+        final double[] vertices = new double[300];
+        for (int i = 0; i < vertices.length; ++i) {
+            vertices[i] = i * 0.5;
+        }
+        final byte[] verticesRecord = file.record("Vertices", 1, compressedDoubles(vertices), new byte[0],
+                                                  childStart);
+        final byte[] indexProperties = ByteBuffer.allocate(25).order(ByteOrder.LITTLE_ENDIAN).put((byte) 'i')
+                .putInt(3).putInt(0).putInt(12).putInt(0).putInt(1).putInt(~2).array();
+        final byte[] indicesRecord = file.record("PolygonVertexIndex", 1, indexProperties, new byte[0],
+                                                 childStart + verticesRecord.length);
+        final byte[] model = file.record(modelName, 3, modelProperties, concat(verticesRecord, indicesRecord), start);
+
+        final byte[] flagProperties = concat(new byte[]{ 'C', 1, 'Y', (byte) 0xfe, (byte) 0xff },
+                ByteBuffer.allocate(5).order(ByteOrder.LITTLE_ENDIAN).put((byte) 'F').putFloat(1.5f).array());
+        final byte[] flags = file.record("Flags", 3, flagProperties, new byte[0], start + model.length);
+
+        file.mOut.write(model, 0, model.length);
+        file.mOut.write(flags, 0, flags.length);
+        final int nullRecord = file.mIs64Bit ? 25 : 13;
+        file.mOut.write(new byte[nullRecord], 0, nullRecord);
+        return file.mOut.toByteArray();
+    }
+
+    private static FBXNode read(byte[] file) throws IOException, ParsingException {
+        final BufferedInputStream stream = new BufferedInputStream(new ByteArrayInputStream(file));
+        assertTrue(FBXBinaryReader.isBinary(stream));
+        return new FBXBinaryReader(stream).read();
+    }
+
+    private static void assertDocument(FBXNode document) {
+        assertEquals(2, document.getChildren().size());
+        final FBXNode model = document.getChild("Model");
+        assertNotNull(model);
+        assertEquals(1234567890123L, model.getLong(0));
+        assertEquals("Model::Cube", model.getString(1));
+        assertEquals("Mesh", model.getString(2));
+
+        final float[] vertices = model.getChild("Vertices").getFloats();
+        assertEquals(300, vertices.length);
+        assertEquals(149.5f, vertices[299], 0);
+        assertArrayEquals(new int[]{ 0, 1, ~2 }, model.getChild("PolygonVertexIndex").getInts());
+
+        final FBXNode flags = document.getChild("Flags");
+        assertEquals(Boolean.TRUE, flags.mProperties.get(0));
+        assertEquals(-2, flags.getLong(1));
+        assertEquals(1.5, flags.getDouble(2), 0);
+    }
+
+    @Test
+    public void testReadsRecordsAndCompressedArrays() throws Exception {
+        assertDocument(read(createFile(7400)));
+    }
+
+    @Test
+    public void testReads64BitRecords() throws Exception {
+        assertDocument(read(createFile(7500)));
+    }
+
+    @Test
+    public void testDetectsAsciiFiles() throws Exception {
+        final BufferedInputStream stream = new BufferedInputStream(
+                new ByteArrayInputStream("; FBX 7.4.0 project file\n".getBytes(UTF_8)));
+        assertFalse(FBXBinaryReader.isBinary(stream));
+        assertEquals(';', stream.read());
+    }
+
+    @Test
+    public void testRejectsTruncatedFiles() throws Exception {
+        final byte[] file = createFile(7400);
+        final byte[] truncated = new byte[file.length - 40];
+        System.arraycopy(file, 0, truncated, 0, truncated.length);
+        try {
+            read(truncated);
+            fail("Read a truncated file.");
+        } catch (IOException expected) {
+        } catch (ParsingException expected) {
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.rajawali3d.loader.md5;
+
+import org.junit.Test;
+import org.rajawali3d.loader.ParsingException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MD5TokenizerTest {
+
+    private static final String MESH = "MD5Version 10 // Parameters used during export: reorient 0\n"
+                                       + "commandline \"mesh models/cube.mb\"\n\n"
+                                       + "numJoints 2\nnumMeshes 1\n\n"
+                                       + "joints {\n"
+                                       + "\t\"origin\"\t-1 ( 0 0 0 ) ( -0.5 -0.5 -0.5 )\t\t// \n"
+                                       + "\t\"child\"\t0 ( 1.5 2 3 ) ( 0 0 0 )\t\t// origin\n"
+                                       + "}\n\n"
+                                       + "mesh {\n"
+                                       + "\t// meshes: cube\n"
+                                       + "\tshader \"textures/cube.png\"\n\n"
+                                       + "\tnumverts 3\n"
+                                       + "\tvert 0 ( 0 0 ) 0 1\n"
+                                       + "\tvert 1 ( 1 0 ) 1 1\n"
+                                       + "\tvert 2 ( 0 1 ) 2 2\n\n"
+                                       + "\tnumtris 1\n"
+                                       + "\ttri 0 0 1 2\n\n"
+                                       + "\tnumweights 4\n"
+                                       + "\tweight 0 0 1.000000 ( 1 0 0 )\n"
+                                       + "\tweight 1 1 1.000000 ( 0 1 0 )\n"
+                                       + "\tweight 2 0 0.500000 ( 0 0 1 )\n"
+                                       + "\tweight 3 1 0.500000 ( 0 0 1 )\n"
+                                       + "}\n";
+
+    private static MD5Tokenizer tokenize(String text) {
+        return new MD5Tokenizer(new ByteArrayInputStream(text.getBytes(Charset.forName("UTF-8"))));
+    }
+
+    @Test
+    public void testSplitsTokens() throws Exception {
+        final MD5Tokenizer tokenizer = tokenize("numJoints 33 // comment ( {\n\"a name\"\t-1(0.5 -2e1)}{x//y\n");
+        assertEquals(MD5Tokenizer.WORD, tokenizer.next());
+        assertTrue(tokenizer.is("numjoints"));
+        assertFalse(tokenizer.is("numJoint"));
+        assertEquals(33, tokenizer.nextInt());
+        assertEquals("a name", tokenizer.nextString());
+        assertEquals(-1, tokenizer.nextInt());
+        final float[] vector = new float[2];
+        tokenizer.nextVector(vector);
+        assertEquals(0.5f, vector[0], 0);
+        assertEquals(-20f, vector[1], 0);
+        assertEquals('}', tokenizer.next());
+        assertEquals('{', tokenizer.next());
+        assertEquals(MD5Tokenizer.WORD, tokenizer.next());
+        assertEquals("x", tokenizer.getText());
+        assertEquals(MD5Tokenizer.EOF, tokenizer.next());
+    }
+
+    @Test
+    public void testKeepsTokensAcrossReads() throws Exception {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 30000; ++i) {
+            text.append(i).append(".25 // ").append(i).append('\n');
+        }
+        // Hands out a few bytes at a time so tokens and comments straddle reads
+        final byte[] bytes = text.toString().getBytes(Charset.forName("US-ASCII"));
+        final MD5Tokenizer tokenizer = new MD5Tokenizer(new InputStream() {
+            private int mPosition;
+
+            @Override
+            public int read() {
+                return mPosition < bytes.length ? bytes[mPosition++] : -1;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (mPosition == bytes.length) {
+                    return -1;
+                }
+                final int count = Math.min(Math.min(length, 7), bytes.length - mPosition);
+                System.arraycopy(bytes, mPosition, buffer, offset, count);
+                mPosition += count;
+                return count;
+            }
+        });
+        for (int i = 0; i < 30000; ++i) {
+            assertEquals(i + 0.25f, tokenizer.nextFloat(), 0);
+        }
+        assertEquals(MD5Tokenizer.EOF, tokenizer.next());
+    }
+
+    @Test
+    public void testParsesMesh() throws Exception {
+        final LoaderMD5Mesh loader = new LoaderMD5Mesh(null, null, 0);
+        loader.parse(tokenize(MESH));
+    }
+
+    @Test
+    public void testRejectsMalformedMeshes() throws Exception {
+        final String[] meshes = {
+                "",
+                MESH.replace("numMeshes 1", "numMeshes 2"),
+                MESH.replace("\"child\"\t0 ( 1.5 2 3 )", "\"child\"\t0 ( 1.5 2 )"),
+                MESH.replace("vert 2 (", "vert 3 ("),
+                MESH.replace("tri 0 0 1 2", "tri 0 0 1 x"),
+                MESH.replace("\"textures/cube.png\"", "\"textures/cube.png"),
+                MESH.substring(0, MESH.length() - 2)
+        };
+        for (String mesh : meshes) {
+            try {
+                new LoaderMD5Mesh(null, null, 0).parse(tokenize(mesh));
+                fail("Parsed " + mesh);
+            } catch (ParsingException expected) {
+            }
+        }
+    }
+}
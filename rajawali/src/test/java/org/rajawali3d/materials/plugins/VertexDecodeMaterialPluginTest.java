@@ -0,0 +1,51 @@
+package org.rajawali3d.materials.plugins;
+
+import org.junit.Test;
+import org.rajawali3d.materials.shaders.AShader;
+import org.rajawali3d.materials.shaders.VertexShader;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VertexDecodeMaterialPluginTest {
+
+    private static String buildShader(VertexDecodeMaterialPlugin plugin) {
+        final AShader shader = (AShader) plugin.getVertexShaderFragment();
+        shader.buildShader();
+        return shader.getShaderString();
+    }
+
+    @Test
+    public void testDecodesEverything() {
+        final String shader = buildShader(new VertexDecodeMaterialPlugin(true, true, true));
+        assertTrue(shader.contains("uniform mat4 uPositionDecodeMatrix;"));
+        assertTrue(shader.contains("uniform vec4 uTextureCoordDecode;"));
+        assertTrue(shader.contains("gPosition = uPositionDecodeMatrix * gPosition;"));
+        assertTrue(shader.contains("vec3 decodeOctahedral(vec2 e)"));
+        assertTrue(shader.contains("gNormal = decodeOctahedral(gNormal.xy);"));
+        assertTrue(shader.contains("gTextureCoord = gTextureCoord * uTextureCoordDecode.xy + uTextureCoordDecode.zw;"));
+    }
+
+    @Test
+    public void testDecodesOnlyRequestedAttributes() {
+        final VertexDecodeMaterialPlugin plugin = new VertexDecodeMaterialPlugin(false, true, false);
+        final String shader = buildShader(plugin);
+        assertFalse(shader.contains("uPositionDecodeMatrix"));
+        assertFalse(shader.contains("uTextureCoordDecode"));
+        assertTrue(shader.contains("decodeOctahedral"));
+        assertNull(plugin.getFragmentShaderFragment());
+    }
+
+    @Test
+    public void testCubeMapCoordinatesUseDecodedPositions() {
+        final VertexShader shader = new VertexShader();
+        shader.hasCubeMaps(true);
+        shader.initialize();
+        shader.addShaderFragment(new VertexDecodeMaterialPlugin(true, false, false).getVertexShaderFragment());
+        shader.buildShader();
+        final String source = shader.getShaderString();
+        assertTrue(source.indexOf("vCubeTextureCoord = vec3(gPosition);")
+                   > source.indexOf("gPosition = uPositionDecodeMatrix * gPosition;"));
+    }
+}
@@ -0,0 +1,84 @@
+package org.rajawali3d.math;
+
+import org.junit.Test;
+import org.rajawali3d.math.vector.Vector3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Hammers the static {@link Matrix} helpers and independent {@link Matrix4} instances from a worker
+ * pool and checks every result against the same computation done on a single thread.
+ */
+public class MatrixConcurrencyTest {
+
+    private static final int THREADS    = 8;
+    private static final int ITERATIONS = 20000;
+
+    private static double[] compute(int seed) {
+        final double[] lhs = new double[16];
+        final double[] rhs = new double[16];
+        final double[] result = new double[16];
+        final double[] vec = new double[]{seed, seed + 1, seed + 2, 1};
+        Matrix.setRotateEulerM(lhs, 0, seed, seed * 2, seed * 3);
+        Matrix.translateM(lhs, 0, seed, -seed, seed * 0.5);
+        Matrix.setIdentityM(rhs, 0);
+        Matrix.scaleM(rhs, 0, 1 + seed % 3, 2, 3);
+        Matrix.rotateM(rhs, 0, seed * 7, 1, 2, 3);
+        Matrix.rotateM(result, 0, rhs, 0, seed * 11, 0, 1, 0);
+        Matrix.multiplyMM(result, 0, lhs, 0, result, 0);
+        Matrix.invertM(result, 0, result, 0);
+        Matrix.multiplyMV(vec, 0, result, 0, vec, 0);
+
+        final Matrix4 matrix = new Matrix4(result);
+        matrix.rotate(Vector3.Axis.Z, seed * 13).multiply(new Matrix4(lhs)).inverse().transpose();
+        matrix.setToWorld(new Vector3(seed, 0, 0), new Vector3(0, 0, 1), Vector3.Y).multiply(matrix);
+
+        final double[] out = new double[36];
+        System.arraycopy(result, 0, out, 0, 16);
+        System.arraycopy(matrix.getDoubleValues(), 0, out, 16, 16);
+        System.arraycopy(vec, 0, out, 32, 4);
+        return out;
+    }
+
+    @Test
+    public void testConcurrentStaticHelpersMatchSingleThreaded() throws Exception {
+        final double[][] expected = new double[64][];
+        for (int i = 0; i < expected.length; ++i) {
+            expected[i] = compute(i);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Boolean>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; ++t) {
+            final int offset = t;
+            futures.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < ITERATIONS; ++i) {
+                        final int seed = (i + offset) % expected.length;
+                        assertArrayEquals(expected[seed], compute(seed), 0);
+                    }
+                    return true;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get());
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
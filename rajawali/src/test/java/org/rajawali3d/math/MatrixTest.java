@@ -52,6 +52,30 @@ public class MatrixTest {
         assertTrue(Arrays.equals(expected, result));
     }
 
+    @Test
+    public void testMultiplyMMInPlace() {
+	double[] left = new double[]{
+		1, 2, 3, 4,
+		5, 6, 7, 8,
+		9, 10, 11, 12,
+		13, 14, 15, 16
+	};
+	double[] right = new double[]{
+		16, 15, 14, 13,
+		12, 11, 10, 9,
+		8, 7, 6, 5,
+		4, 3, 2, 1
+	};
+	double[] expected = new double[16];
+	Matrix.multiplyMM(expected, 0, left, 0, right, 0);
+	double[] lhsAlias = left.clone();
+	Matrix.multiplyMM(lhsAlias, 0, lhsAlias, 0, right, 0);
+        assertTrue(Arrays.equals(expected, lhsAlias));
+	double[] rhsAlias = right.clone();
+	Matrix.multiplyMM(rhsAlias, 0, left, 0, rhsAlias, 0);
+        assertTrue(Arrays.equals(expected, rhsAlias));
+    }
+
     @Test
     public void multiplyMVidentity() throws Exception {
 	double[] result = new double[4];
@@ -0,0 +1,82 @@
+package org.rajawali3d.util;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class AsciiNumberParserTest {
+
+    private static float parseFloat(String text) {
+        final byte[] data = text.getBytes(Charset.defaultCharset());
+        return AsciiNumberParser.parseFloat(data, 0, data.length);
+    }
+
+    private static int parseInt(String text) {
+        final byte[] data = text.getBytes(Charset.defaultCharset());
+        return AsciiNumberParser.parseInt(data, 0, data.length);
+    }
+
+    private static void assertSameFloat(String text) {
+        assertEquals(text, Float.floatToRawIntBits(Float.parseFloat(text)), Float.floatToRawIntBits(parseFloat(text)));
+    }
+
+    @Test
+    public void testParsesLikeFloatParseFloat() {
+        final String[] texts = {
+                "0", "-0", "-0.000000", "+1", "1.", ".5", "1.000000", "-1.000000", "0.1", "3.4028235e38", "1e-45",
+                "1.17549435E-38", "123456789.123", "0.30000001192092896", " 2.5\t", "1e10", "1E-10", "7e22",
+                "16777217", "33554435", "9007199254740993", "12345678901234567890", "NaN", "-Infinity", "0x1p3",
+                "1f", "2.5d", "1e0005"
+        };
+        for (String text : texts) {
+            assertSameFloat(text);
+        }
+    }
+
+    @Test
+    public void testParsesRandomDecimalsLikeFloatParseFloat() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 200000; ++i) {
+            final double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 6);
+            final String format = "%." + random.nextInt(12) + (random.nextInt(4) == 0 ? "e" : "f");
+            assertSameFloat(String.format(Locale.US, format, value));
+        }
+        for (int i = 0; i < 100000; ++i) {
+            // Every decimal of a float printed with full precision, which includes many float midpoints
+            assertSameFloat(Float.toString(Float.intBitsToFloat(random.nextInt())));
+            assertSameFloat(Double.toString(random.nextInt(1 << 26) / 64d));
+        }
+    }
+
+    @Test
+    public void testRejectsWhatFloatParseFloatRejects() {
+        for (String text : new String[]{ "", " ", "-", ".", "1..2", "1e", "1e+", "abc", "1 2" }) {
+            try {
+                parseFloat(text);
+                fail("Parsed " + text);
+            } catch (NumberFormatException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testParsesLikeIntegerParseInt() {
+        assertEquals(0, parseInt("0"));
+        assertEquals(42, parseInt("+42"));
+        assertEquals(-7, parseInt("-7"));
+        assertEquals(Integer.MAX_VALUE, parseInt("2147483647"));
+        assertEquals(Integer.MIN_VALUE, parseInt("-2147483648"));
+        for (String text : new String[]{ "", "-", "+", " 1", "1 ", "1.0", "2147483648", "-2147483649", "1a" }) {
+            try {
+                parseInt(text);
+                fail("Parsed " + text);
+            } catch (NumberFormatException expected) {
+            }
+        }
+    }
+}
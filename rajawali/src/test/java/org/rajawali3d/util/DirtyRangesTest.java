@@ -0,0 +1,75 @@
+package org.rajawali3d.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DirtyRangesTest {
+
+    private static void assertRanges(DirtyRanges ranges, int... bounds) {
+        assertEquals(bounds.length / 2, ranges.size());
+        for (int i = 0; i < ranges.size(); ++i) {
+            assertEquals(bounds[i * 2], ranges.getStart(i));
+            assertEquals(bounds[i * 2 + 1], ranges.getEnd(i));
+        }
+    }
+
+    @Test
+    public void testKeepsRangesSorted() {
+        final DirtyRanges ranges = new DirtyRanges();
+        ranges.add(20, 30);
+        ranges.add(0, 5);
+        ranges.add(10, 12);
+        assertRanges(ranges, 0, 5, 10, 12, 20, 30);
+        assertEquals(17, ranges.getElementCount());
+    }
+
+    @Test
+    public void testMergesOverlappingAndAdjacent() {
+        final DirtyRanges ranges = new DirtyRanges();
+        ranges.add(0, 5);
+        ranges.add(10, 15);
+        ranges.add(20, 25);
+        ranges.add(5, 10);
+        assertRanges(ranges, 0, 15, 20, 25);
+        ranges.add(3, 22);
+        assertRanges(ranges, 0, 25);
+        ranges.add(1, 2);
+        assertRanges(ranges, 0, 25);
+    }
+
+    @Test
+    public void testMergeGap() {
+        final DirtyRanges ranges = new DirtyRanges(8, 4);
+        ranges.add(0, 4);
+        ranges.add(8, 10);
+        ranges.add(15, 16);
+        assertRanges(ranges, 0, 10, 15, 16);
+    }
+
+    @Test
+    public void testCollapsesWhenFull() {
+        final DirtyRanges ranges = new DirtyRanges(2, 0);
+        ranges.add(10, 11);
+        ranges.add(20, 21);
+        ranges.add(0, 1);
+        assertRanges(ranges, 0, 21);
+    }
+
+    @Test
+    public void testClearAndEmpty() {
+        final DirtyRanges ranges = new DirtyRanges();
+        ranges.add(4, 4);
+        assertTrue(ranges.isEmpty());
+        ranges.add(1, 3);
+        ranges.clear();
+        assertTrue(ranges.isEmpty());
+        assertEquals(0, ranges.getElementCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRange() {
+        new DirtyRanges().add(5, 2);
+    }
+}
@@ -0,0 +1,80 @@
+package org.rajawali3d.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FreeListAllocatorTest {
+
+    @Test
+    public void testAllocatesFirstFit() {
+        final FreeListAllocator allocator = new FreeListAllocator(100);
+        assertEquals(0, allocator.allocate(10, 1));
+        assertEquals(10, allocator.allocate(20, 1));
+        assertEquals(30, allocator.allocate(70, 1));
+        assertEquals(-1, allocator.allocate(1, 1));
+        assertEquals(100, allocator.getUsed());
+        assertEquals(3, allocator.getAllocationCount());
+        assertEquals(0, allocator.getLargestFreeBlock());
+    }
+
+    @Test
+    public void testAlignsOffsets() {
+        final FreeListAllocator allocator = new FreeListAllocator(64);
+        assertEquals(0, allocator.allocate(6, 4));
+        assertEquals(8, allocator.allocate(4, 8));
+        // The padding between 6 and 8 stays free and can hold a small unaligned range
+        assertEquals(6, allocator.allocate(2, 2));
+        assertEquals(12, allocator.getUsed());
+    }
+
+    @Test
+    public void testReusesFreedRanges() {
+        final FreeListAllocator allocator = new FreeListAllocator(100);
+        allocator.allocate(40, 1);
+        final int middle = allocator.allocate(20, 1);
+        allocator.allocate(40, 1);
+        allocator.free(middle);
+        assertEquals(20, allocator.getLargestFreeBlock());
+        assertEquals(middle, allocator.allocate(15, 1));
+        assertEquals(-1, allocator.allocate(10, 1));
+    }
+
+    @Test
+    public void testCoalescesNeighbours() {
+        final FreeListAllocator allocator = new FreeListAllocator(90);
+        final int a = allocator.allocate(30, 1);
+        final int b = allocator.allocate(30, 1);
+        final int c = allocator.allocate(30, 1);
+        allocator.free(a);
+        allocator.free(c);
+        assertEquals(2, allocator.getFreeBlockCount());
+        allocator.free(b);
+        assertEquals(1, allocator.getFreeBlockCount());
+        assertEquals(90, allocator.getLargestFreeBlock());
+        assertEquals(0, allocator.getUsed());
+        assertEquals(0, allocator.allocate(90, 1));
+    }
+
+    @Test
+    public void testClear() {
+        final FreeListAllocator allocator = new FreeListAllocator(50);
+        allocator.allocate(20, 1);
+        allocator.allocate(20, 1);
+        allocator.clear();
+        assertEquals(0, allocator.getAllocationCount());
+        assertEquals(50, allocator.getLargestFreeBlock());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFreeUnknownOffset() {
+        final FreeListAllocator allocator = new FreeListAllocator(50);
+        allocator.allocate(20, 1);
+        allocator.free(10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAlignmentHasToBePowerOfTwo() {
+        new FreeListAllocator(50).allocate(4, 3);
+    }
+}
@@ -0,0 +1,113 @@
+package org.rajawali3d.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LzmaInputStreamTest {
+
+    /**
+     * {@link #createData()} compressed by the LZMA SDK with an unknown size and an end marker.
+     */
+    public static final String COMPRESSED = "5d00000004ffffffffffffffff003a9d800f804d1ef4a3c78e0698d259c74ffa37214848f99da6c518277ec6e7164992"
+            + "655cc90886385b78d1ec6062d4c1a819e497180b36c95ff39e0f82cf25175101913e4d0c385248cd3bbb9263a2f78862"
+            + "6c93b7534f799e72c532ab69f6933dbef86ae1ae0b39b2f5dbb4ba0b4ec7cc5c9fefdb25fa41298d2afdda18bd7d17a0"
+            + "0da6f3891687604ea04230d6316c9f6abb1696bd51435034249a422959f63a924e305ba9f8e48b2bf25600919a9d87c8"
+            + "511ce92fef00142071f21a5d67df1c92849144cf292b4fd85bd5e179954da7ca187c67d65c199f32c0be1718321059c4"
+            + "7c939eae7e33f8a3953c59dc6f7928ca5869e95ca4962b7190e7cc622d2cb875f73895bf39a8832e7542e995307d7400"
+            + "be5afea26d0f4bb199a31f8481915f1dfb23b5d718aac368790eb6a4e108df7c67e68c89bd281a2297ba3ebc4d42d782"
+            + "88c7737f902046bb09a4ab4893b102046c6a5a1c7a9957645e3b29747ddb55a7d57875ac2f4733463c13d55c3e568e9a"
+            + "51f7007f308cb0541d09807c4089eeb719315cde068f55ffea256215e6a29ae7781a9da4eda6644ddb603950f03364c5"
+            + "a1fda88e1717bacd9b172176314dfe6ce3ffc4e49fc514e4803619c709330b60887ecff0ccc2d8eae9f2a92c0783d12a"
+            + "b6f7ae42c491c6d4d50b0527210be0b49077d71dfbe1246bc479e6c3a4c9130a027a83b8139bc4706f1580b65a42167e"
+            + "ca44cd863776c4016841635ca2aa785906ff5eab91439605e339db518c40ec1a0a25c6bfb12c3b07c3b75cbec5670e01"
+            + "832e42360bd4bc4d88125125041920c842144c87971f852555edff8da96f687c84c7b90018edb22a1441ab2469ad00b2"
+            + "b5ff8b388d0f1e136464f93970e292bbfb2419a6a49fe309bd9901e51f7b479820f78b36aad25aedf51c8265970ddd34"
+            + "5a28feb0870fba74d8993b05022c90e6f6fd845a35516b5f4dc106a4519dbe7dda81ce64cab72d42fc18db0bf595205f"
+            + "070e7e8eff972ed51a7b00dd05bee9c30c3c9768c5e8e65ab4e36b2a0aeb6c0806806f7f24cb83d8a11e2c7473f94034"
+            + "dcf79baafcc20827b997cdf4ffed0c07eb";
+
+    public static byte[] createData() {
+        final String[] words = { "vertex ", "normal ", "face ", "0.5 ", "-1.25 ", "\n", "uv ", "\u0000\u0001\u0002" };
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        long seed = 1;
+        while (data.size() < 3000) {
+            seed = (seed * 1103515245L + 12345L) & 0x7fffffffL;
+            final String word = words[(int) ((seed >> 16) % 8)];
+            for (int i = 0; i < word.length(); ++i) {
+                data.write(word.charAt(i));
+            }
+            if ((seed >> 8) % 7 == 0) {
+                data.write((int) (seed >> 3) & 0xff);
+            }
+        }
+        return Arrays.copyOf(data.toByteArray(), 3000);
+    }
+
+    public static byte[] getCompressed() {
+        final byte[] bytes = new byte[COMPRESSED.length() / 2];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = (byte) Integer.parseInt(COMPRESSED.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static byte[] readAll(InputStream stream, int chunk) throws IOException {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[chunk];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            data.write(buffer, 0, read);
+        }
+        return data.toByteArray();
+    }
+
+    @Test
+    public void testDecompressesUntilEndMarker() throws Exception {
+        final byte[] expected = createData();
+        assertArrayEquals(expected, readAll(new LzmaInputStream(new ByteArrayInputStream(getCompressed())), 4096));
+        // Small reads stop in the middle of matches
+        assertArrayEquals(expected, readAll(new LzmaInputStream(new ByteArrayInputStream(getCompressed())), 3));
+    }
+
+    @Test
+    public void testStopsAtKnownSize() throws Exception {
+        final byte[] compressed = getCompressed();
+        // The size follows the properties and the dictionary size, with it the end marker is never read
+        compressed[5] = (byte) (3000 & 0xff);
+        compressed[6] = (byte) (3000 >> 8);
+        Arrays.fill(compressed, 7, 13, (byte) 0);
+        final ByteArrayInputStream source = new ByteArrayInputStream(compressed);
+        final LzmaInputStream stream = new LzmaInputStream(source);
+        assertArrayEquals(createData(), readAll(stream, 64));
+        assertEquals(-1, stream.read());
+        assertTrue(source.available() > 0);
+    }
+
+    @Test
+    public void testRejectsTruncatedData() throws Exception {
+        final byte[] compressed = getCompressed();
+        try {
+            readAll(new LzmaInputStream(new ByteArrayInputStream(Arrays.copyOf(compressed, compressed.length / 2))),
+                    4096);
+            fail("Decompressed truncated data.");
+        } catch (EOFException expected) {
+        }
+        compressed[0] = (byte) 225;
+        try {
+            new LzmaInputStream(new ByteArrayInputStream(compressed));
+            fail("Accepted invalid properties.");
+        } catch (IOException expected) {
+        }
+    }
+}
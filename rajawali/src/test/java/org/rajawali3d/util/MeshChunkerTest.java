@@ -0,0 +1,140 @@
+package org.rajawali3d.util;
+
+import org.junit.Test;
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.bounds.BoundingBox;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MeshChunkerTest {
+
+    private static final int GRID = 32;
+
+    /**
+     * A flat grid of {@link #GRID} by {@link #GRID} quads, two triangles each, in row order.
+     */
+    private static Geometry3D createGrid() {
+        final int side = GRID + 1;
+        final float[] vertices = new float[side * side * 3];
+        for (int y = 0; y < side; ++y) {
+            for (int x = 0; x < side; ++x) {
+                final int v = y * side + x;
+                vertices[v * 3] = x;
+                vertices[v * 3 + 1] = y;
+            }
+        }
+        final int[] indices = new int[GRID * GRID * 6];
+        int i = 0;
+        for (int y = 0; y < GRID; ++y) {
+            for (int x = 0; x < GRID; ++x) {
+                final int v = y * side + x;
+                indices[i++] = v;
+                indices[i++] = v + 1;
+                indices[i++] = v + side;
+                indices[i++] = v + 1;
+                indices[i++] = v + side + 1;
+                indices[i++] = v + side;
+            }
+        }
+        final Geometry3D geometry = new Geometry3D();
+        geometry.setData(vertices, null, null, null, indices, false);
+        return geometry;
+    }
+
+    @Test
+    public void testLeavesSmallMeshesWhole() {
+        final Geometry3D geometry = createGrid();
+        assertEquals(0, new MeshChunker().setMaxTriangles(GRID * GRID * 2).chunk(geometry));
+        assertEquals(0, geometry.getNumClusters());
+    }
+
+    @Test
+    public void testClustersCoverAllTriangles() {
+        final Geometry3D geometry = createGrid();
+        final int[] before = Geometry3D.getIntArrayFromBuffer(geometry.getIndices());
+        final int clusters = new MeshChunker().setMaxTriangles(100).chunk(geometry);
+        assertTrue(clusters >= GRID * GRID * 2 / 100);
+        assertEquals(clusters, geometry.getNumClusters());
+
+        int expectedOffset = 0;
+        for (int c = 0; c < clusters; ++c) {
+            assertEquals(expectedOffset, geometry.getClusterIndexOffset(c));
+            final int count = geometry.getClusterIndexCount(c);
+            assertTrue(count > 0 && count <= 300 && count % 3 == 0);
+            expectedOffset += count;
+        }
+        assertEquals(geometry.getNumIndices(), expectedOffset);
+
+        // The same triangles, only reordered
+        assertEquals(sortedTriangles(before), sortedTriangles(Geometry3D.getIntArrayFromBuffer(geometry.getIndices())));
+    }
+
+    @Test
+    public void testBoundsContainClusterTriangles() {
+        final Geometry3D geometry = createGrid();
+        final int clusters = new MeshChunker().setMaxTriangles(64).chunk(geometry);
+        final int[] indices = Geometry3D.getIntArrayFromBuffer(geometry.getIndices());
+        final FloatBuffer vertices = geometry.getVertices();
+        double area = 0;
+        for (int c = 0; c < clusters; ++c) {
+            final BoundingBox bounds = geometry.getClusterBounds(c);
+            final int start = geometry.getClusterIndexOffset(c);
+            for (int i = start, j = start + geometry.getClusterIndexCount(c); i < j; ++i) {
+                final int v = indices[i] * 3;
+                assertTrue(vertices.get(v) >= bounds.getMin().x && vertices.get(v) <= bounds.getMax().x);
+                assertTrue(vertices.get(v + 1) >= bounds.getMin().y && vertices.get(v + 1) <= bounds.getMax().y);
+            }
+            area += (bounds.getMax().x - bounds.getMin().x) * (bounds.getMax().y - bounds.getMin().y);
+        }
+        // Spatially coherent clusters barely overlap, so their boxes add up to little more than the grid
+        assertTrue(area < GRID * GRID * 1.5);
+    }
+
+    @Test
+    public void testKeepsOrderWithinClusters() {
+        final Geometry3D geometry = createGrid();
+        final int[] before = Geometry3D.getIntArrayFromBuffer(geometry.getIndices());
+        final int clusters = new MeshChunker().setMaxTriangles(128).chunk(geometry);
+        final int[] after = Geometry3D.getIntArrayFromBuffer(geometry.getIndices());
+        for (int c = 0; c < clusters; ++c) {
+            int previous = -1;
+            final int start = geometry.getClusterIndexOffset(c);
+            for (int i = start, j = start + geometry.getClusterIndexCount(c); i < j; i += 3) {
+                final int original = findTriangle(before, after, i);
+                assertTrue(original > previous);
+                previous = original;
+            }
+        }
+    }
+
+    @Test
+    public void testReplacingIndicesRemovesClusters() {
+        final Geometry3D geometry = createGrid();
+        new MeshChunker().setMaxTriangles(100).chunk(geometry);
+        geometry.setIndices(new int[]{ 0, 1, 2 }, true);
+        assertEquals(0, geometry.getNumClusters());
+    }
+
+    private static int findTriangle(int[] indices, int[] triangles, int offset) {
+        for (int t = 0; t < indices.length; t += 3) {
+            if (indices[t] == triangles[offset] && indices[t + 1] == triangles[offset + 1]
+                && indices[t + 2] == triangles[offset + 2]) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    private static String sortedTriangles(int[] indices) {
+        final long[] keys = new long[indices.length / 3];
+        for (int t = 0; t < keys.length; ++t) {
+            keys[t] = ((long) indices[t * 3] << 40) | ((long) indices[t * 3 + 1] << 20) | indices[t * 3 + 2];
+        }
+        Arrays.sort(keys);
+        return Arrays.toString(keys);
+    }
+}
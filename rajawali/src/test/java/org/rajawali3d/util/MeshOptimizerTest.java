@@ -0,0 +1,184 @@
+package org.rajawali3d.util;
+
+import org.junit.Test;
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.animation.mesh.SkinnedTestChild;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MeshOptimizerTest {
+
+    private static final int GRID = 40;
+
+    /**
+     * A grid of {@link #GRID} by {@link #GRID} quads with its triangles in random order, the worst case for a cache.
+     */
+    private static Geometry3D createShuffledGrid() {
+        final int side = GRID + 1;
+        final float[] vertices = new float[side * side * 3];
+        final float[] normals = new float[side * side * 3];
+        final float[] textureCoords = new float[side * side * 2];
+        for (int y = 0; y < side; ++y) {
+            for (int x = 0; x < side; ++x) {
+                final int v = y * side + x;
+                vertices[v * 3] = x;
+                vertices[v * 3 + 1] = y;
+                // A bump, so clusters face different directions
+                vertices[v * 3 + 2] = (float) Math.sin(x * 0.2) * (float) Math.cos(y * 0.2);
+                normals[v * 3 + 2] = 1;
+                textureCoords[v * 2] = x / (float) GRID;
+                textureCoords[v * 2 + 1] = y / (float) GRID;
+            }
+        }
+        final List<int[]> triangles = new ArrayList<>();
+        for (int y = 0; y < GRID; ++y) {
+            for (int x = 0; x < GRID; ++x) {
+                final int v = y * side + x;
+                triangles.add(new int[]{ v, v + 1, v + side });
+                triangles.add(new int[]{ v + 1, v + side + 1, v + side });
+            }
+        }
+        Collections.shuffle(triangles, new Random(7));
+        final int[] indices = new int[triangles.size() * 3];
+        for (int t = 0; t < triangles.size(); ++t) {
+            System.arraycopy(triangles.get(t), 0, indices, t * 3, 3);
+        }
+        final Geometry3D geometry = new Geometry3D();
+        geometry.setData(vertices, normals, textureCoords, null, indices, false);
+        return geometry;
+    }
+
+    /**
+     * Every triangle as its three positions, rotated so the winding is kept but the starting corner does not matter.
+     */
+    private static List<String> getTriangles(int[] indices, FloatBuffer positions) {
+        final List<String> triangles = new ArrayList<>();
+        for (int t = 0; t < indices.length / 3; ++t) {
+            final String[] corners = new String[3];
+            int first = 0;
+            for (int k = 0; k < 3; ++k) {
+                final int v = indices[t * 3 + k] * 3;
+                corners[k] = positions.get(v) + "," + positions.get(v + 1) + "," + positions.get(v + 2);
+                if (corners[k].compareTo(corners[first]) < 0) {
+                    first = k;
+                }
+            }
+            triangles.add(corners[first] + "|" + corners[(first + 1) % 3] + "|" + corners[(first + 2) % 3]);
+        }
+        Collections.sort(triangles);
+        return triangles;
+    }
+
+    @Test
+    public void testCountCacheMisses() {
+        // Two triangles sharing an edge
+        assertEquals(4, MeshOptimizer.countCacheMisses(new int[]{ 0, 1, 2, 2, 1, 3 }, 4, 16));
+        // A cache of three entries has lost vertex 0 by the time it is used again
+        assertEquals(5, MeshOptimizer.countCacheMisses(new int[]{ 0, 1, 2, 3, 2, 0 }, 4, 3));
+    }
+
+    @Test
+    public void testVertexCacheKeepsTriangles() {
+        final Geometry3D geometry = createShuffledGrid();
+        final int[] indices = Geometry3D.getIntArrayFromBuffer(geometry.getIndices());
+        final int[] optimized = MeshOptimizer.optimizeVertexCache(indices, geometry.getNumVertices(), 16);
+        assertEquals(getTriangles(indices, geometry.getVertices()), getTriangles(optimized, geometry.getVertices()));
+        final long before = MeshOptimizer.countCacheMisses(indices, geometry.getNumVertices(), 16);
+        final long after = MeshOptimizer.countCacheMisses(optimized, geometry.getNumVertices(), 16);
+        assertTrue("Misses " + before + " -> " + after, after < before / 2);
+    }
+
+    @Test
+    public void testOverdrawKeepsTriangles() {
+        final Geometry3D geometry = createShuffledGrid();
+        final int[] indices = MeshOptimizer.optimizeVertexCache(
+                Geometry3D.getIntArrayFromBuffer(geometry.getIndices()), geometry.getNumVertices(), 16);
+        final int[] sorted = MeshOptimizer.optimizeOverdraw(indices, geometry.getVertices(),
+                                                            geometry.getNumVertices(), 16, 1.05f);
+        assertEquals(getTriangles(indices, geometry.getVertices()), getTriangles(sorted, geometry.getVertices()));
+        // Clusters start on cold caches, which costs a little but not much
+        final long cached = MeshOptimizer.countCacheMisses(indices, geometry.getNumVertices(), 16);
+        final long clustered = MeshOptimizer.countCacheMisses(sorted, geometry.getNumVertices(), 16);
+        assertTrue("Misses " + cached + " -> " + clustered, clustered < cached * 1.3);
+    }
+
+    @Test
+    public void testVertexFetchOrder() {
+        final int[] indices = new int[]{ 3, 1, 0, 0, 1, 4 };
+        final int[] remap = MeshOptimizer.optimizeVertexFetch(indices, 6);
+        assertArrayEquals(new int[]{ 0, 1, 2, 2, 1, 3 }, indices);
+        assertArrayEquals(new int[]{ 2, 1, 4, 0, 3, 5 }, remap);
+    }
+
+    @Test
+    public void testOptimizeGeometry() {
+        final Geometry3D geometry = createShuffledGrid();
+        final int[] indices = Geometry3D.getIntArrayFromBuffer(geometry.getIndices());
+        final List<String> triangles = getTriangles(indices, geometry.getVertices());
+
+        final MeshOptimizer.Statistics statistics = new MeshOptimizer().optimize(geometry);
+        assertEquals(GRID * GRID * 2, statistics.getTriangleCount());
+        assertTrue(statistics.toString(), statistics.getAcmrAfter() < statistics.getAcmrBefore() / 2);
+        assertTrue(statistics.toString(), statistics.getAtvrAfter() < 1.6);
+        assertEquals(statistics.getAcmrBefore() * statistics.getTriangleCount(),
+                     statistics.getAtvrBefore() * statistics.getVertexCount(), 1e-6);
+
+        final int[] optimized = Geometry3D.getIntArrayFromBuffer(geometry.getIndices());
+        assertEquals(triangles, getTriangles(optimized, geometry.getVertices()));
+
+        // Vertices are first used in order and every attribute moved along with its position
+        int next = 0;
+        for (int index : optimized) {
+            assertTrue(index <= next);
+            if (index == next) {
+                ++next;
+            }
+        }
+        final FloatBuffer vertices = geometry.getVertices();
+        final FloatBuffer textureCoords = geometry.getTextureCoords();
+        for (int v = 0; v < geometry.getNumVertices(); ++v) {
+            assertEquals(vertices.get(v * 3) / GRID, textureCoords.get(v * 2), 1e-6);
+            assertEquals(vertices.get(v * 3 + 1) / GRID, textureCoords.get(v * 2 + 1), 1e-6);
+        }
+    }
+
+    @Test
+    public void testVertexFetchMovesBoneData() {
+        final Geometry3D grid = createShuffledGrid();
+        final SkinnedTestChild child = new SkinnedTestChild();
+        child.setData(Geometry3D.getFloatArrayFromBuffer(grid.getVertices()), null, null, null,
+                      Geometry3D.getIntArrayFromBuffer(grid.getIndices()), false);
+        // Each vertex is bound to a joint numbered after its place in the grid
+        final int side = GRID + 1;
+        final float[] joints = new float[side * side];
+        for (int v = 0; v < joints.length; ++v) {
+            joints[v] = v;
+        }
+        child.setJoints(joints);
+
+        new MeshOptimizer().optimize(child.getGeometry());
+        final FloatBuffer vertices = child.getGeometry().getVertices();
+        final float[] moved = child.getJoints(joints.length);
+        for (int v = 0; v < joints.length; ++v) {
+            assertEquals(vertices.get(v * 3 + 1) * side + vertices.get(v * 3), moved[v], 0);
+        }
+    }
+
+    @Test
+    public void testIgnoresIncompleteTriangles() {
+        final Geometry3D geometry = new Geometry3D();
+        geometry.setData(new float[]{ 0, 0, 0, 1, 0, 0, 0, 1, 0 }, null, null, null, new int[]{ 0, 1, 2, 0 }, false);
+        final MeshOptimizer.Statistics statistics = new MeshOptimizer().optimize(geometry);
+        assertEquals(0, statistics.getTriangleCount());
+        assertArrayEquals(new int[]{ 0, 1, 2, 0 }, Geometry3D.getIntArrayFromBuffer(geometry.getIndices()));
+    }
+}
@@ -0,0 +1,154 @@
+package org.rajawali3d.util;
+
+import org.junit.Test;
+import org.rajawali3d.Geometry3D;
+import org.rajawali3d.Object3D;
+import org.rajawali3d.animation.mesh.SkinnedTestChild;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class VertexWelderTest {
+
+    /**
+     * A quad written the way STL and OBJ files end up, one vertex per triangle corner.
+     */
+    private static Geometry3D createUnweldedQuad(float[] colors) {
+        final float[] vertices = new float[]{ 0, 0, 0, 1, 0, 0, 0, 1, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0 };
+        final float[] normals = new float[]{ 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1 };
+        final Geometry3D geometry = new Geometry3D();
+        geometry.setData(vertices, normals, null, colors, new int[]{ 0, 1, 2, 3, 4, 5 }, false);
+        return geometry;
+    }
+
+    private static float[] getPosition(Geometry3D geometry, int index) {
+        final FloatBuffer vertices = geometry.getVertices();
+        return new float[]{ vertices.get(index * 3), vertices.get(index * 3 + 1), vertices.get(index * 3 + 2) };
+    }
+
+    @Test
+    public void testWeldSharedCorners() {
+        final Geometry3D geometry = createUnweldedQuad(null);
+        assertEquals(2, new VertexWelder().weld(geometry));
+        assertEquals(4, geometry.getNumVertices());
+        assertEquals(12, geometry.getVertices().capacity());
+        assertEquals(12, geometry.getNormals().capacity());
+        assertEquals(8, geometry.getTextureCoords().capacity());
+        final int[] indices = Geometry3D.getIntArrayFromBuffer(geometry.getIndices());
+        assertArrayEquals(new int[]{ 0, 1, 2, 1, 3, 2 }, indices);
+        assertArrayEquals(new float[]{ 1, 1, 0 }, getPosition(geometry, 3), 0);
+    }
+
+    @Test
+    public void testDifferentAttributesAreKept() {
+        final float[] colors = new float[24];
+        colors[3 * 4] = 1;
+        final Geometry3D geometry = createUnweldedQuad(colors);
+        // The corner at 1, 0, 0 differs in color the second time around
+        assertEquals(1, new VertexWelder().weld(geometry));
+        assertEquals(5, geometry.getNumVertices());
+        assertEquals(20, geometry.getColors().capacity());
+        assertEquals(1, geometry.getColors().get(3 * 4), 0);
+    }
+
+    @Test
+    public void testNegativeZero() {
+        final Geometry3D geometry = new Geometry3D();
+        geometry.setData(new float[]{ 0, 1, 2, -0f, 1, 2, 3, 4, 5 }, null, null, null, new int[]{ 0, 1, 2 }, false);
+        assertEquals(1, new VertexWelder().weld(geometry));
+        assertArrayEquals(new int[]{ 0, 0, 1 }, Geometry3D.getIntArrayFromBuffer(geometry.getIndices()));
+    }
+
+    @Test
+    public void testEpsilon() {
+        final Geometry3D exact = new Geometry3D();
+        final float[] vertices = new float[]{ 0, 0, 0, 0.0001f, 0, 0, 1, 0, 0 };
+        exact.setData(vertices, null, null, null, new int[]{ 0, 1, 2 }, false);
+        assertEquals(0, new VertexWelder().weld(exact));
+
+        final Geometry3D snapped = new Geometry3D();
+        snapped.setData(vertices, null, null, null, new int[]{ 0, 1, 2 }, false);
+        assertEquals(1, new VertexWelder().setPositionEpsilon(0.001f).weld(snapped));
+        // The first occurrence keeps its exact values
+        assertArrayEquals(new float[]{ 0, 0, 0 }, getPosition(snapped, 0), 0);
+        assertArrayEquals(new float[]{ 1, 0, 0 }, getPosition(snapped, 1), 0);
+    }
+
+    @Test
+    public void testEpsilonWithLargeCoordinates() {
+        // Past 21474.8 the grid cells of a 1e-5 epsilon no longer fit an int
+        final float[] vertices = new float[]{
+            30000, 0, 0, 30000.004f, 0, 0, 30001, 0, 0, 30000, 0, 0, -40000, 0, 0, -40000.004f, 0, 0
+        };
+        final Geometry3D geometry = new Geometry3D();
+        geometry.setData(vertices, null, null, null, new int[]{ 0, 1, 2, 3, 4, 5 }, false);
+        assertEquals(1, new VertexWelder().setPositionEpsilon(1e-5f).weld(geometry));
+        assertArrayEquals(new int[]{ 0, 1, 2, 0, 3, 4 }, Geometry3D.getIntArrayFromBuffer(geometry.getIndices()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeEpsilon() {
+        new VertexWelder().setAttributeEpsilon(-1);
+    }
+
+    @Test
+    public void testWeldGrid() {
+        // A grid of quads with every corner written out, as loaded from an STL file
+        final int size = 64;
+        final float[] vertices = new float[size * size * 18];
+        final int[] indices = new int[size * size * 6];
+        int written = 0;
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                final int[][] corners = new int[][]{
+                    { x, y }, { x + 1, y }, { x, y + 1 }, { x + 1, y }, { x + 1, y + 1 }, { x, y + 1 }
+                };
+                for (int[] corner : corners) {
+                    vertices[written * 3] = corner[0];
+                    vertices[written * 3 + 1] = corner[1];
+                    indices[written] = written;
+                    ++written;
+                }
+            }
+        }
+        final Object3D object = new Object3D();
+        object.setData(vertices, null, null, null, indices, false);
+        new VertexWelder().weld(object);
+        assertEquals((size + 1) * (size + 1), object.getGeometry().getNumVertices());
+        assertEquals(size * size * 6, object.getGeometry().getNumIndices());
+
+        // Every triangle still references the same positions
+        final int[] welded = Geometry3D.getIntArrayFromBuffer(object.getGeometry().getIndices());
+        for (int i = 0; i < indices.length; ++i) {
+            assertArrayEquals(new float[]{ vertices[i * 3], vertices[i * 3 + 1], vertices[i * 3 + 2] },
+                              getPosition(object.getGeometry(), welded[i]), 0);
+        }
+    }
+
+    private static SkinnedTestChild createSkinnedQuad(float... joints) {
+        final SkinnedTestChild child = new SkinnedTestChild();
+        final Geometry3D quad = createUnweldedQuad(null);
+        child.setData(Geometry3D.getFloatArrayFromBuffer(quad.getVertices()), null, null, null,
+                      new int[]{ 0, 1, 2, 3, 4, 5 }, false);
+        child.setJoints(joints);
+        return child;
+    }
+
+    @Test
+    public void testWeldKeepsBoneData() {
+        // The shared corners 1 and 3 are bound alike, 2 and 5 to different joints
+        final SkinnedTestChild child = createSkinnedQuad(0, 1, 2, 1, 3, 5);
+        assertEquals(1, new VertexWelder().weld(child.getGeometry()));
+        assertEquals(5, child.getGeometry().getNumVertices());
+        assertArrayEquals(new float[]{ 0, 1, 2, 3, 5 }, child.getJoints(5), 0);
+        assertArrayEquals(new int[]{ 0, 1, 2, 1, 3, 4 },
+                          Geometry3D.getIntArrayFromBuffer(child.getGeometry().getIndices()));
+        final FloatBuffer weights = (FloatBuffer) child.getGeometry().getBufferInfo(SkinnedTestChild.BONE_WEIGHT_KEY)
+                .buffer;
+        for (int v = 0; v < 5; ++v) {
+            assertEquals(1, weights.get(v * 4), 0);
+        }
+    }
+}